@@ -27,6 +27,8 @@ CREATE INDEX certificatedata_idx7 ON CertificateData(certificateProfileId);
 -- The following index is currently needed for finding expired/expiring certificates
 -- CREATE INDEX certificatedata_idx8 ON CertificateData(expireDate, status);
 CREATE INDEX certificatedata_idx11 ON CertificateData (subjectKeyId);
+-- The following index is needed when using the Shared Prime Scan service on a large database
+-- CREATE INDEX certificatedata_idx13 ON CertificateData (updateTime, fingerprint);
 -- UNIQUE increases certainty the no two certificate with the same issuer and serial number can be issued
 -- this index can not be unique when CVC CAs are used, because CV Certificates don't have serial numbers so all is 0
 -- if no unique index is present, the uniqueness will be enforced using queries before issuance
@@ -62,6 +64,9 @@ CREATE INDEX noconflictcertificatedata_idx2 ON NoConflictCertificateData (finger
 CREATE INDEX noconflictcertificatedata_idx3 ON NoConflictCertificateData (issuerDN,status);
 CREATE INDEX noconflictcertificatedata_idx4 ON NoConflictCertificateData (certificateProfileId);
 
+-- index for polling and cleaning up the cluster cache invalidation log
+CREATE INDEX cacheinvalidationdata_idx1 ON CacheInvalidationData (timeStamp);
+
 -- index for searching for ACME accounts by public key
 CREATE INDEX acmeaccountdata_idx1 ON AcmeAccountData (currentKeyId);
 
@@ -79,3 +84,12 @@ CREATE INDEX acmeauthorizationdata_idx2 ON AcmeAuthorizationData (orderId);
 
 -- index for searching for ACME challenges by authorization id
 CREATE INDEX acmechallengedata_idx1 ON AcmeChallengeData (authorizationId);
+
+-- index for searching for approval requests by status, ordered by request date (the id makes the order unique for keyset paging)
+CREATE INDEX approvaldata_idx1 ON ApprovalData (status, requestDate, id);
+
+-- index for looking up approval requests by the approval id (hash of the request)
+CREATE INDEX approvaldata_idx2 ON ApprovalData (approvalId);
+
+-- index for searching for approval requests by approval profile and step
+CREATE INDEX approvaldata_idx3 ON ApprovalData (approvalProfileId, approvalStep);
@@ -42,6 +42,8 @@ CREATE TABLE ApprovalData (
     id INTEGER NOT NULL,
     approvalData CLOB NOT NULL,
     approvalId INTEGER NOT NULL,
+    approvalProfileId INTEGER,
+    approvalStep INTEGER,
     approvalType INTEGER NOT NULL,
     cAId INTEGER NOT NULL,
     endEntityProfileId INTEGER NOT NULL,
@@ -429,6 +431,17 @@ CREATE TABLE UserDataSourceData (
     PRIMARY KEY (id)
 );
 
+CREATE TABLE CacheInvalidationData (
+    id VARCHAR(256) NOT NULL,
+    timeStamp BIGINT NOT NULL,
+    cacheName VARCHAR(256) NOT NULL,
+    entryKey VARCHAR(256),
+    nodeId VARCHAR(256) NOT NULL,
+    rowProtection CLOB(10 K),
+    rowVersion INTEGER NOT NULL,
+    PRIMARY KEY (id)
+);
+
 CREATE TABLE AcmeNonceData (
     nonce VARCHAR(256) NOT NULL,
     timeExpires BIGINT NOT NULL,
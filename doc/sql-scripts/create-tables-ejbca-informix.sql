@@ -42,6 +42,8 @@ CREATE TABLE ApprovalData (
     id INTEGER NOT NULL,
     approvalData TEXT NOT NULL,
     approvalId INTEGER NOT NULL,
+    approvalProfileId INTEGER,
+    approvalStep INTEGER,
     approvalType INTEGER NOT NULL,
     cAId INTEGER NOT NULL,
     endEntityProfileId INTEGER NOT NULL,
@@ -434,6 +436,17 @@ CREATE TABLE NoConflictCertificateData (
     PRIMARY KEY (id)
 );
 
+CREATE TABLE CacheInvalidationData (
+    id VARCHAR(255,0) NOT NULL,
+    timeStamp DECIMAL(18,0) NOT NULL,
+    cacheName VARCHAR(255,0) NOT NULL,
+    entryKey VARCHAR(255,0),
+    nodeId VARCHAR(255,0) NOT NULL,
+    rowProtection TEXT,
+    rowVersion INTEGER NOT NULL,
+    PRIMARY KEY (id)
+);
+
 CREATE TABLE AcmeNonceData (
     nonce VARCHAR(255,0) NOT NULL,
     timeExpires DECIMAL(18,0) NOT NULL,
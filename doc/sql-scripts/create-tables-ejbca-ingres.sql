@@ -42,6 +42,8 @@ CREATE TABLE ApprovalData (
     id INT4 NOT NULL,
     approvalData LONG VARCHAR NOT NULL,
     approvalId INT4 NOT NULL,
+    approvalProfileId INT4,
+    approvalStep INT4,
     approvalType INT4 NOT NULL,
     cAId INT4 NOT NULL,
     endEntityProfileId INT4 NOT NULL,
@@ -434,6 +436,17 @@ CREATE TABLE NoConflictCertificateData (
     PRIMARY KEY (id)
 );
 
+CREATE TABLE CacheInvalidationData (
+    id VARCHAR(256) NOT NULL,
+    timeStamp INT8 NOT NULL,
+    cacheName VARCHAR(256) NOT NULL,
+    entryKey VARCHAR(256),
+    nodeId VARCHAR(256) NOT NULL,
+    rowProtection LONG VARCHAR,
+    rowVersion INT4 NOT NULL,
+    PRIMARY KEY (id)
+);
+
 CREATE TABLE AcmeNonceData (
     nonce VARCHAR(256) NOT NULL,
     timeExpires INT8 NOT NULL,
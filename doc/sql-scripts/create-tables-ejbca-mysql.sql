@@ -42,6 +42,8 @@ CREATE TABLE ApprovalData (
     id INT(11) NOT NULL,
     approvalData LONGTEXT NOT NULL,
     approvalId INT(11) NOT NULL,
+    approvalProfileId INT(11),
+    approvalStep INT(11),
     approvalType INT(11) NOT NULL,
     cAId INT(11) NOT NULL,
     endEntityProfileId INT(11) NOT NULL,
@@ -435,6 +437,17 @@ CREATE TABLE NoConflictCertificateData (
     PRIMARY KEY (id)
 );
 
+CREATE TABLE CacheInvalidationData (
+    id VARCHAR(250) BINARY NOT NULL,
+    timeStamp BIGINT(20) NOT NULL,
+    cacheName VARCHAR(250) BINARY NOT NULL,
+    entryKey VARCHAR(250) BINARY,
+    nodeId VARCHAR(250) BINARY NOT NULL,
+    rowProtection LONGTEXT,
+    rowVersion INT(11) NOT NULL,
+    PRIMARY KEY (id)
+);
+
 CREATE TABLE AcmeNonceData (
     nonce VARCHAR(250) BINARY NOT NULL,
     timeExpires BIGINT(20) NOT NULL,
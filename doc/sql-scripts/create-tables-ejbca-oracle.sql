@@ -42,6 +42,8 @@ CREATE TABLE ApprovalData (
     id NUMBER(10) NOT NULL,
     approvalData CLOB NOT NULL,
     approvalId NUMBER(10) NOT NULL,
+    approvalProfileId NUMBER(10),
+    approvalStep NUMBER(10),
     approvalType NUMBER(10) NOT NULL,
     cAId NUMBER(10) NOT NULL,
     endEntityProfileId NUMBER(10) NOT NULL,
@@ -434,6 +436,17 @@ CREATE TABLE NoConflictCertificateData (
     PRIMARY KEY (id)
 );
 
+CREATE TABLE CacheInvalidationData (
+    id VARCHAR2(255 byte) NOT NULL,
+    timeStamp NUMBER(19) NOT NULL,
+    cacheName VARCHAR2(255 byte) NOT NULL,
+    entryKey VARCHAR2(255 byte),
+    nodeId VARCHAR2(255 byte) NOT NULL,
+    rowProtection CLOB,
+    rowVersion NUMBER(10) NOT NULL,
+    PRIMARY KEY (id)
+);
+
 CREATE TABLE AcmeNonceData (
     nonce VARCHAR2(255 byte) NOT NULL,
     timeExpires NUMBER(19) NOT NULL,
@@ -42,6 +42,8 @@ CREATE TABLE ApprovalData (
     id INT4 NOT NULL,
     approvalData TEXT NOT NULL,
     approvalId INT4 NOT NULL,
+    approvalProfileId INT4,
+    approvalStep INT4,
     approvalType INT4 NOT NULL,
     cAId INT4 NOT NULL,
     endEntityProfileId INT4 NOT NULL,
@@ -430,6 +432,17 @@ CREATE TABLE NoConflictCertificateData (
     PRIMARY KEY (id)
 );
 
+CREATE TABLE CacheInvalidationData (
+    id TEXT BINARY NOT NULL,
+    timeStamp INT(8) NOT NULL,
+    cacheName TEXT BINARY NOT NULL,
+    entryKey TEXT BINARY,
+    nodeId TEXT BINARY NOT NULL,
+    rowProtection TEXT,
+    rowVersion INT4 NOT NULL,
+    PRIMARY KEY (id)
+);
+
 CREATE TABLE AcmeNonceData (
     nonce TEXT BINARY NOT NULL,
     timeExpires INT(8) NOT NULL,
@@ -34,6 +34,7 @@ drop table UserDataSourceData;
 drop table NoConflictCertificateData;
 drop table AcmeAuthorizationData;
 drop table AcmeChallengeData;
+drop table CacheInvalidationData;
 drop table AcmeNonceData;
 drop table AcmeAccountData;
 drop table AcmeOrderData;
\ No newline at end of file
@@ -36,6 +36,7 @@ drop table UserDataSourceData if exists;
 drop table NoConflictCertificateData if exists;
 drop table AcmeAuthorizationData if exists;
 drop table AcmeChallengeData if exists;
+drop table CacheInvalidationData if exists;
 drop table AcmeNonceData if exists;
 drop table AcmeAccountData if exists;
 drop table AcmeOrderData if exists;
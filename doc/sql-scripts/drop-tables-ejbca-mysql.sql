@@ -36,6 +36,7 @@ drop table if exists UserDataSourceData;
 drop table if exists NoConflictCertificateData;
 drop table if exists AcmeAuthorizationData;
 drop table if exists AcmeChallengeData;
+drop table if exists CacheInvalidationData;
 drop table if exists AcmeNonceData;
 drop table if exists AcmeAccountData;
 drop table if exists AcmeOrderData;
@@ -34,6 +34,7 @@ drop table UserDataSourceData cascade constraints;
 drop table NoConflictCertificateData cascade constraints;
 drop table AcmeAuthorizationData cascade constraints;
 drop table AcmeChallengeData cascade constraints;
+drop table CacheInvalidationData cascade constraints;
 drop table AcmeNonceData cascade constraints;
 drop table AcmeAccountData cascade constraints;
 drop table AcmeOrderData cascade constraints;
@@ -36,6 +36,7 @@ drop table if exists UserDataSourceData cascade;
 drop table if exists NoConflictCertificateData cascade;
 drop table if exists AcmeAuthorizationData cascade;
 drop table if exists AcmeChallengeData cascade;
+drop table if exists CacheInvalidationData cascade;
 drop table if exists AcmeNonceData cascade;
 drop table if exists AcmeAccountData cascade;
 drop table if exists AcmeOrderData cascade;
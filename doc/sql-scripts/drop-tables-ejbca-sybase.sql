@@ -36,6 +36,7 @@ drop table UserDataSourceData;
 drop table NoConflictCertificateData;
 drop table AcmeAuthorizationData;
 drop table AcmeChallengeData;
+drop table CacheInvalidationData;
 drop table AcmeNonceData;
 drop table AcmeAccountData;
 drop table AcmeOrderData;
@@ -43,3 +43,7 @@ DROP INDEX acmeauthorizationdata_idx1 ON AcmeAuthorizationData;
 DROP INDEX acmeauthorizationdata_idx2 ON AcmeAuthorizationData;
 
 DROP INDEX acmechallengedata_idx1 ON AcmeChallengeData;
+
+DROP INDEX approvaldata_idx1 ON ApprovalData;
+DROP INDEX approvaldata_idx2 ON ApprovalData;
+DROP INDEX approvaldata_idx3 ON ApprovalData;
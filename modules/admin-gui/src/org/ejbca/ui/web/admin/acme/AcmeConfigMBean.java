@@ -270,6 +270,7 @@ public class AcmeConfigMBean extends BaseManagedBean implements Serializable {
     public void saveGlobalConfigs(){
         globalAcmeConfigurationConfig.setDefaultAcmeConfigurationId(globalInfo.getDefaultAcmeConfiguration());
         globalAcmeConfigurationConfig.setReplayNonceValidity(Long.valueOf(globalInfo.getReplayNonceValidity()));
+        globalAcmeConfigurationConfig.setReplayNonceStrict(globalInfo.isReplayNonceStrict());
         try {
             globalConfigSession.saveConfiguration(authenticationToken, globalAcmeConfigurationConfig);
         } catch (AuthorizationDeniedException e) {
@@ -441,10 +442,12 @@ public class AcmeConfigMBean extends BaseManagedBean implements Serializable {
     public class AcmeGlobalGuiInfo {
         private String defaultAcmeConfiguration;
         private String replayNonceValidity;
+        private boolean replayNonceStrict;
 
         public AcmeGlobalGuiInfo(GlobalAcmeConfiguration globalAcmeConfigurationConfig) {
             this.defaultAcmeConfiguration = globalAcmeConfigurationConfig.getDefaultAcmeConfigurationId();
             this.replayNonceValidity = String.valueOf(globalAcmeConfigurationConfig.getReplayNonceValidity());
+            this.replayNonceStrict = globalAcmeConfigurationConfig.isReplayNonceStrict();
         }
 
         public String getDefaultAcmeConfiguration() {
@@ -463,5 +466,13 @@ public class AcmeConfigMBean extends BaseManagedBean implements Serializable {
             this.replayNonceValidity = replayNonceValidity;
         }
 
+        public boolean isReplayNonceStrict() {
+            return replayNonceStrict;
+        }
+
+        public void setReplayNonceStrict(boolean replayNonceStrict) {
+            this.replayNonceStrict = replayNonceStrict;
+        }
+
     }
 }
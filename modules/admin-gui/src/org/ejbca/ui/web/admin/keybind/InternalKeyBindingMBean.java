@@ -697,7 +697,7 @@ public class InternalKeyBindingMBean extends BaseManagedBean implements Serializ
     public void commandDisable() {
         changeStatus(internalKeyBindingGuiList.getRowData().getInternalKeyBindingId(), InternalKeyBindingStatus.DISABLED);
         flushListCaches();
-        ocspResponseGeneratorSession.reloadOcspSigningCache(); // Force a reload of OcspSigningCache to make disable take effect immediately.
+        ocspResponseGeneratorSession.refreshOcspSigningCache(); // Force a reload of OcspSigningCache to make disable take effect immediately.
     }
 
     /** Invoked when the user wants to enable an InternalKeyBinding */
@@ -28,6 +28,7 @@ import org.apache.log4j.spi.LoggingEvent;
 import org.apache.log4j.spi.ThrowableInformation;
 import org.cesecore.authorization.AuthorizationSessionLocal;
 import org.cesecore.util.ValidityDate;
+import org.ejbca.core.ejb.upgrade.MigrationProgress;
 import org.ejbca.core.ejb.upgrade.UpgradeSessionLocal;
 import org.ejbca.core.ejb.upgrade.UpgradeStatusSingletonLocal;
 import org.ejbca.ui.web.admin.BaseManagedBean;
@@ -111,6 +112,12 @@ public class UpgradeBean extends BaseManagedBean implements Serializable {
         return upgradeStatusSingleton.isPostUpgradeInProgress() || upgradeSession.getPostUpgradeStarted()!=0L;
     }
     
+    /** @return the progress, throughput and estimated time remaining of the running post-upgrade step on this node, or null */
+    public String getMigrationProgress() {
+        final MigrationProgress migrationProgress = upgradeStatusSingleton.getMigrationProgress();
+        return migrationProgress == null ? null : migrationProgress.toString();
+    }
+
     /** @return the date when a node began the cluster upgrade procedure */
     public String getPostUpgradeStartedInCluster() {
         return ValidityDate.formatAsISO8601ServerTZ(upgradeSession.getPostUpgradeStarted(), TimeZone.getDefault());
@@ -0,0 +1,165 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.ca;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.cert.X509CRLHolder;
+import org.bouncycastle.jce.X509KeyUsage;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.cesecore.certificates.ca.catoken.CAToken;
+import org.cesecore.certificates.ca.catoken.CATokenConstants;
+import org.cesecore.certificates.certificate.certextensions.AvailableCustomCertificateExtensionsConfiguration;
+import org.cesecore.certificates.certificateprofile.CertificateProfile;
+import org.cesecore.certificates.certificateprofile.CertificateProfileConstants;
+import org.cesecore.certificates.crl.RevocationReasons;
+import org.cesecore.certificates.crl.RevokedCertInfo;
+import org.cesecore.certificates.endentity.EndEntityConstants;
+import org.cesecore.certificates.endentity.EndEntityInformation;
+import org.cesecore.certificates.endentity.EndEntityType;
+import org.cesecore.certificates.endentity.EndEntityTypes;
+import org.cesecore.certificates.util.AlgorithmConstants;
+import org.cesecore.keys.token.CryptoToken;
+import org.cesecore.keys.token.CryptoTokenFactory;
+import org.cesecore.keys.token.SoftCryptoToken;
+import org.cesecore.keys.util.KeyTools;
+import org.cesecore.util.CertTools;
+import org.cesecore.util.CryptoProviderTools;
+import org.cesecore.util.StringTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks certificate and CRL generation of an {@link X509CA} with a soft crypto token, i.e. everything that is done
+ * when a certificate or CRL is issued except for the database and the session beans around it.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class X509CABenchmark {
+
+    private static final String CADN = "CN=Benchmark CA,O=PrimeKey,C=SE";
+
+    @State(Scope.Benchmark)
+    public static class CaState {
+        @Param({ AlgorithmConstants.SIGALG_SHA256_WITH_RSA, AlgorithmConstants.SIGALG_SHA256_WITH_ECDSA })
+        public String signatureAlgorithm;
+
+        CryptoToken cryptoToken;
+        X509CA ca;
+        final AvailableCustomCertificateExtensionsConfiguration cceConfig = new AvailableCustomCertificateExtensionsConfiguration();
+        final CertificateProfile certificateProfile = new CertificateProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER);
+        final EndEntityInformation endEntity = new EndEntityInformation("benchmark", "CN=User,O=PrimeKey,C=SE", CADN.hashCode(),
+                "dNSName=www.example.com,dNSName=example.com", "user@example.com", new EndEntityType(EndEntityTypes.ENDUSER), 0, 0,
+                EndEntityConstants.TOKEN_USERGEN, 0, null);
+        PublicKey endEntityPublicKey;
+
+        @Setup
+        public void setUp() throws Exception {
+            CryptoProviderTools.installBCProviderIfNotAvailable();
+            final String keySpec = getKeySpec(signatureAlgorithm);
+            final Properties cryptoTokenProperties = new Properties();
+            cryptoTokenProperties.setProperty(CryptoToken.AUTOACTIVATE_PIN_PROPERTY, "foo123");
+            cryptoToken = CryptoTokenFactory.createCryptoToken(SoftCryptoToken.class.getName(), cryptoTokenProperties, null, 1, "Benchmark");
+            cryptoToken.generateKeyPair(keySpec, CAToken.SOFTPRIVATESIGNKEYALIAS);
+            cryptoToken.generateKeyPair(keySpec, CAToken.SOFTPRIVATEDECKEYALIAS);
+            final Properties caTokenProperties = new Properties();
+            caTokenProperties.setProperty(CATokenConstants.CAKEYPURPOSE_CERTSIGN_STRING, CAToken.SOFTPRIVATESIGNKEYALIAS);
+            caTokenProperties.setProperty(CATokenConstants.CAKEYPURPOSE_CRLSIGN_STRING, CAToken.SOFTPRIVATESIGNKEYALIAS);
+            caTokenProperties.setProperty(CATokenConstants.CAKEYPURPOSE_DEFAULT_STRING, CAToken.SOFTPRIVATEDECKEYALIAS);
+            final CAToken caToken = new CAToken(cryptoToken.getId(), caTokenProperties);
+            caToken.setKeySequence(CAToken.DEFAULT_KEYSEQUENCE);
+            caToken.setKeySequenceFormat(StringTools.KEY_SEQUENCE_FORMAT_NUMERIC);
+            caToken.setSignatureAlgorithm(signatureAlgorithm);
+            caToken.setEncryptionAlgorithm(AlgorithmConstants.SIGALG_SHA256_WITH_RSA);
+            final X509CAInfo caInfo = new X509CAInfo(CADN, "Benchmark", CAConstants.CA_ACTIVE, CertificateProfileConstants.CERTPROFILE_FIXED_ROOTCA,
+                    "3650d", CAInfo.SELFSIGNED, null, caToken);
+            ca = new X509CA(caInfo);
+            ca.setCAToken(caToken);
+            final PublicKey publicKey = cryptoToken.getPublicKey(CAToken.SOFTPRIVATESIGNKEYALIAS);
+            final PrivateKey privateKey = cryptoToken.getPrivateKey(CAToken.SOFTPRIVATESIGNKEYALIAS);
+            final X509Certificate caCertificate = CertTools.genSelfCertForPurpose(CADN, 3650, null, privateKey, publicKey, signatureAlgorithm, true,
+                    X509KeyUsage.keyCertSign + X509KeyUsage.cRLSign, null, null, BouncyCastleProvider.PROVIDER_NAME);
+            final List<Certificate> caChain = new ArrayList<>();
+            caChain.add(caCertificate);
+            ca.setCertificateChain(caChain);
+            final KeyPair endEntityKeyPair = KeyTools.genKeys(keySpec, AlgorithmConstants.KEYALGORITHM_RSA.equals(getKeyAlgorithm(signatureAlgorithm))
+                    ? AlgorithmConstants.KEYALGORITHM_RSA : AlgorithmConstants.KEYALGORITHM_EC);
+            endEntityPublicKey = endEntityKeyPair.getPublic();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class CrlState extends CaState {
+        @Param({ "0", "1000", "100000" })
+        public int revokedCertificates;
+
+        final Collection<RevokedCertInfo> revoked = new ArrayList<>();
+
+        @Setup
+        public void setUpRevoked() {
+            final Random random = new Random(1);
+            final long now = System.currentTimeMillis();
+            for (int i = 0; i < revokedCertificates; i++) {
+                final byte[] fingerprint = new byte[20];
+                random.nextBytes(fingerprint);
+                final BigInteger serialNumber = new BigInteger(64, random);
+                revoked.add(new RevokedCertInfo(fingerprint, serialNumber.toByteArray(), now - random.nextInt(1000000000),
+                        RevocationReasons.KEYCOMPROMISE.getDatabaseValue(), now + 1000000000L));
+            }
+        }
+    }
+
+    @Benchmark
+    public Certificate generateCertificate(final CaState state) throws Exception {
+        return state.ca.generateCertificate(state.cryptoToken, state.endEntity, state.endEntityPublicKey, -1, null, "365d", state.certificateProfile,
+                null, state.cceConfig);
+    }
+
+    @Benchmark
+    public X509CRLHolder generateCRL(final CrlState state) throws Exception {
+        return state.ca.generateCRL(state.cryptoToken, state.revoked, 1);
+    }
+
+    private static String getKeySpec(final String signatureAlgorithm) {
+        return AlgorithmConstants.KEYALGORITHM_RSA.equals(getKeyAlgorithm(signatureAlgorithm)) ? "2048" : "secp256r1";
+    }
+
+    private static String getKeyAlgorithm(final String signatureAlgorithm) {
+        return signatureAlgorithm.endsWith("RSA") ? AlgorithmConstants.KEYALGORITHM_RSA : AlgorithmConstants.KEYALGORITHM_EC;
+    }
+}
@@ -0,0 +1,150 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.ca.internal;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.cesecore.certificates.certificate.HashID;
+import org.cesecore.certificates.util.AlgorithmConstants;
+import org.cesecore.keys.util.KeyTools;
+import org.cesecore.util.CertTools;
+import org.cesecore.util.CryptoProviderTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link CaCertificateCache} with many CA certificates: a full reload, as done by the reload timer, compared to
+ * adding and removing a single certificate, and lookups from several threads.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CaCertificateCacheBenchmark {
+
+    @Param({ "100", "1000", "5000" })
+    public int certificateCount;
+
+    /** If true, all certificates are sub CAs of the same root, which is the worst case for the issuer index */
+    @Param({ "false", "true" })
+    public boolean subCas;
+
+    private final List<Certificate> certificates = new ArrayList<>();
+    private X509Certificate extraCertificate;
+    private HashID[] subjectDnIds;
+    private HashID[] keyIds;
+    private byte[][] keyHashes;
+
+    @Setup
+    public void setUp() throws Exception {
+        CryptoProviderTools.installBCProviderIfNotAvailable();
+        subjectDnIds = new HashID[certificateCount];
+        keyIds = new HashID[certificateCount];
+        keyHashes = new byte[certificateCount][];
+        final KeyPair rootKeyPair = KeyTools.genKeys("secp256r1", AlgorithmConstants.KEYALGORITHM_ECDSA);
+        final X509Certificate root = CertTools.genSelfCert("CN=Benchmark Root CA,O=PrimeKey,C=SE", 365, null, rootKeyPair.getPrivate(),
+                rootKeyPair.getPublic(), AlgorithmConstants.SIGALG_SHA256_WITH_ECDSA, true);
+        if (subCas) {
+            certificates.add(root);
+        }
+        for (int i = 0; i < certificateCount; i++) {
+            final String dn = "CN=Benchmark CA " + i + ",O=PrimeKey,C=SE";
+            final X509Certificate certificate = subCas ? createSubCaCertificate(dn, i, root, rootKeyPair) : createCaCertificate(dn);
+            certificates.add(certificate);
+            subjectDnIds[i] = HashID.getFromSubjectDN(certificate);
+            keyIds[i] = HashID.getFromKeyID(certificate);
+            keyHashes[i] = KeyTools.createSubjectKeyId(certificate.getPublicKey()).getKeyIdentifier();
+        }
+        extraCertificate = createCaCertificate("CN=Benchmark CA extra,O=PrimeKey,C=SE");
+        CaCertificateCache.INSTANCE.loadCertificates(certificates);
+    }
+
+    private static X509Certificate createCaCertificate(final String dn) throws Exception {
+        final KeyPair keyPair = KeyTools.genKeys("secp256r1", AlgorithmConstants.KEYALGORITHM_ECDSA);
+        return CertTools.genSelfCert(dn, 365, null, keyPair.getPrivate(), keyPair.getPublic(), AlgorithmConstants.SIGALG_SHA256_WITH_ECDSA, true);
+    }
+
+    private static X509Certificate createSubCaCertificate(final String dn, final int serialNumber, final X509Certificate issuer,
+            final KeyPair issuerKeyPair) throws Exception {
+        final KeyPair keyPair = KeyTools.genKeys("secp256r1", AlgorithmConstants.KEYALGORITHM_ECDSA);
+        final long now = System.currentTimeMillis();
+        final X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(X500Name.getInstance(issuer.getSubjectX500Principal().getEncoded()),
+                BigInteger.valueOf(serialNumber + 1), new Date(now - 60000), new Date(now + 365 * 24 * 3600000L), new X500Name(dn), keyPair.getPublic());
+        builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+        return new JcaX509CertificateConverter().getCertificate(builder.build(new JcaContentSignerBuilder(AlgorithmConstants.SIGALG_SHA256_WITH_ECDSA)
+                .build(issuerKeyPair.getPrivate())));
+    }
+
+    private int nextIndex() {
+        return (int) (System.nanoTime() % certificateCount);
+    }
+
+    /** Rebuilds the cache from all certificates, as when any CA certificate has changed before incremental updates were supported */
+    @Benchmark
+    public void loadCertificates() {
+        CaCertificateCache.INSTANCE.loadCertificates(certificates);
+    }
+
+    /** Adds and then removes one certificate, keeping the size of the cache the same */
+    @Benchmark
+    public void addAndRemoveCertificate() {
+        CaCertificateCache.INSTANCE.addCertificate(extraCertificate);
+        CaCertificateCache.INSTANCE.removeCertificate(extraCertificate);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public X509Certificate findLatestBySubjectDN() {
+        return CaCertificateCache.INSTANCE.findLatestBySubjectDN(subjectDnIds[nextIndex()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public X509Certificate findBySubjectKeyIdentifier() {
+        return CaCertificateCache.INSTANCE.findBySubjectKeyIdentifier(keyIds[nextIndex()]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public X509Certificate findByKeyHash() {
+        return CaCertificateCache.INSTANCE.findByKeyHash(keyHashes[nextIndex()]);
+    }
+}
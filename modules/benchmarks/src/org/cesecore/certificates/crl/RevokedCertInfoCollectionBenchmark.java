@@ -0,0 +1,112 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.crl;
+
+import java.math.BigInteger;
+import java.util.Collection;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks storing, sorting and merging the revoked entries of a large CRL with {@link RevokedCertInfoCollection}. Uses a small
+ * memory limit, so most entries are written to disk.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RevokedCertInfoCollectionBenchmark {
+
+    private static final String FINGERPRINT = "0123456789abcdef0123456789abcdef01234567";
+    private static final long NOW = 1546300800000L;
+    private static final int MEMORY_LIMIT = 4 * 1024 * 1024;
+
+    @Param({ "100000", "500000" })
+    public int entries;
+
+    private RevokedCertInfo[] unspecified;
+    private RevokedCertInfo[] keyCompromise;
+
+    @Setup
+    public void setUp() {
+        final Random random = new Random(1);
+        unspecified = new RevokedCertInfo[entries];
+        for (int i = 0; i < unspecified.length; i++) {
+            unspecified[i] = revCertInfo(random, RevokedCertInfo.REVOCATION_REASON_UNSPECIFIED);
+        }
+        keyCompromise = new RevokedCertInfo[entries / 10];
+        for (int i = 0; i < keyCompromise.length; i++) {
+            keyCompromise[i] = revCertInfo(random, RevokedCertInfo.REVOCATION_REASON_KEYCOMPROMISE);
+        }
+    }
+
+    private static RevokedCertInfo revCertInfo(final Random random, final int reason) {
+        return new RevokedCertInfo(FINGERPRINT.getBytes(), new BigInteger(159, random).toByteArray(), NOW, reason, NOW + 86400000L);
+    }
+
+    private static RevokedCertInfoCollection fill(final RevokedCertInfo[] revokedCertInfos) {
+        final RevokedCertInfoCollection collection = new RevokedCertInfoCollection(MEMORY_LIMIT);
+        for (final RevokedCertInfo revokedCertInfo : revokedCertInfos) {
+            collection.add(revokedCertInfo);
+        }
+        collection.closeForWrite();
+        return collection;
+    }
+
+    @Benchmark
+    public int addAndSort() {
+        final RevokedCertInfoCollection collection = fill(unspecified);
+        try {
+            return collection.size();
+        } finally {
+            collection.clear();
+        }
+    }
+
+    @Benchmark
+    public int addMergeAndIterate() {
+        final RevokedCertInfoCollection a = fill(unspecified);
+        final RevokedCertInfoCollection b = fill(keyCompromise);
+        try {
+            final Collection<RevokedCertInfo> merged = RevokedCertInfo.mergeByDateAndStatus(a, b, -1);
+            int count = 0;
+            for (@SuppressWarnings("unused") final RevokedCertInfo revokedCertInfo : merged) {
+                count++;
+            }
+            if (count != unspecified.length + keyCompromise.length) {
+                throw new IllegalStateException("Merged " + count + " entries");
+            }
+            merged.clear();
+            return count;
+        } finally {
+            a.clear();
+            b.clear();
+        }
+    }
+}
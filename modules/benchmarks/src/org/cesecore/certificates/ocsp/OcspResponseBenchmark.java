@@ -0,0 +1,124 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.ocsp;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.SecureRandom;
+import java.security.cert.X509Certificate;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.ocsp.OCSPObjectIdentifiers;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateHolder;
+import org.bouncycastle.cert.ocsp.BasicOCSPResp;
+import org.bouncycastle.cert.ocsp.BasicOCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.CertificateStatus;
+import org.bouncycastle.cert.ocsp.OCSPReq;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.cert.ocsp.OCSPRespBuilder;
+import org.bouncycastle.cert.ocsp.Req;
+import org.bouncycastle.cert.ocsp.RespID;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.cesecore.certificates.util.AlgorithmConstants;
+import org.cesecore.keys.util.KeyTools;
+import org.cesecore.util.CertTools;
+import org.cesecore.util.CryptoProviderTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks building a signed OCSP response from an encoded request, in the same way as OcspResponseGeneratorSessionBean does
+ * after the certificate status has been looked up: request parsing, nonce handling, signing with {@link HsmResponseThread} and encoding.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class OcspResponseBenchmark {
+
+    private static final String ISSUER_DN = "CN=Benchmark CA,O=PrimeKey,C=SE";
+
+    @Param({ AlgorithmConstants.SIGALG_SHA256_WITH_RSA, AlgorithmConstants.SIGALG_SHA256_WITH_ECDSA })
+    public String signatureAlgorithm;
+
+    @Param({ "1", "10" })
+    public int certificateIds;
+
+    private KeyPair signerKeyPair;
+    private X509Certificate[] chain;
+    private RespID respId;
+    private byte[] request;
+
+    @Setup
+    public void setUp() throws Exception {
+        CryptoProviderTools.installBCProviderIfNotAvailable();
+        if (signatureAlgorithm.endsWith("RSA")) {
+            signerKeyPair = KeyTools.genKeys("2048", AlgorithmConstants.KEYALGORITHM_RSA);
+        } else {
+            signerKeyPair = KeyTools.genKeys("secp256r1", AlgorithmConstants.KEYALGORITHM_EC);
+        }
+        final X509Certificate issuer = CertTools.genSelfCert(ISSUER_DN, 3650, null, signerKeyPair.getPrivate(), signerKeyPair.getPublic(),
+                signatureAlgorithm, true);
+        chain = new X509Certificate[] { issuer };
+        respId = new RespID(X500Name.getInstance(issuer.getSubjectX500Principal().getEncoded()));
+        final OCSPReqBuilder requestBuilder = new OCSPReqBuilder();
+        final JcaX509CertificateHolder issuerHolder = new JcaX509CertificateHolder(issuer);
+        for (int i = 0; i < certificateIds; i++) {
+            requestBuilder.addRequest(new CertificateID(new JcaDigestCalculatorProviderBuilder().build().get(CertificateID.HASH_SHA1), issuerHolder,
+                    BigInteger.valueOf(4711 + i)));
+        }
+        final byte[] nonce = new byte[16];
+        new SecureRandom().nextBytes(nonce);
+        requestBuilder.setRequestExtensions(
+                new Extensions(new Extension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce, false, new DEROctetString(nonce))));
+        request = requestBuilder.build().getEncoded();
+    }
+
+    @Benchmark
+    public byte[] buildResponse() throws Exception {
+        final OCSPReq ocspRequest = new OCSPReq(request);
+        final Date now = new Date();
+        final Date nextUpdate = new Date(now.getTime() + 3600000L);
+        final BasicOCSPRespBuilder builder = new BasicOCSPRespBuilder(respId);
+        for (final Req req : ocspRequest.getRequestList()) {
+            builder.addResponse(req.getCertID(), CertificateStatus.GOOD, now, nextUpdate, null);
+        }
+        final Extension nonce = ocspRequest.getExtension(OCSPObjectIdentifiers.id_pkix_ocsp_nonce);
+        if (nonce != null) {
+            builder.setResponseExtensions(new Extensions(nonce));
+        }
+        final BasicOCSPResp basicResponse = new HsmResponseThread(builder, signatureAlgorithm, signerKeyPair.getPrivate(), chain,
+                BouncyCastleProvider.PROVIDER_NAME, now).call();
+        return new OCSPRespBuilder().build(OCSPRespBuilder.SUCCESSFUL, basicResponse).getEncoded();
+    }
+}
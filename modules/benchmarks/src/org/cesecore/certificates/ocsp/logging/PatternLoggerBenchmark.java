@@ -0,0 +1,174 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.ocsp.logging;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.commons.lang.time.FastDateFormat;
+import org.apache.log4j.Logger;
+import org.bouncycastle.util.encoders.Hex;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks formatting of an OCSP transaction log row with the default pattern and order, as done for every OCSP request
+ * when the transaction log is enabled. Log4j is not configured, so the row is formatted but not written.
+ * <p>
+ * The previous implementation, which evaluated the pattern with a regular expression Matcher for every row, is measured as
+ * a baseline.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PatternLoggerBenchmark {
+
+    private static final String PATTERN = "\\$\\{(.+?)\\}";
+    private static final String ORDER = "${SESSION_ID};${LOG_ID};${STATUS};${REQ_NAME}\"${CLIENT_IP}\";\"${SIGN_ISSUER_NAME_DN}\";\"${SIGN_SUBJECT_NAME}\";"
+            + "${SIGN_SERIAL_NO};\"${LOG_TIME}\";${REPLY_TIME};${NUM_CERT_ID};0;0;0;0;0;0;0;\"${ISSUER_NAME_DN}\";${ISSUER_NAME_HASH};${ISSUER_KEY};"
+            + "${DIGEST_ALGOR};${SERIAL_NOHEX};${CERT_STATUS};${CERT_PROFILE_ID};${FORWARDED_FOR}";
+    private static final String DATE_FORMAT = "yyyy-MM-dd:HH:mm:ss:z";
+    private static final String TIME_ZONE = "GMT";
+    /** Values of one request, as String, Integer or byte[] */
+    private static final Map<String, Object> VALUES = new LinkedHashMap<>();
+    static {
+        VALUES.put(PatternLogger.LOG_ID, Integer.valueOf(4711));
+        VALUES.put(PatternLogger.SESSION_ID, "ZTZmNTY3NTgtYmU5Yi00");
+        VALUES.put(PatternLogger.CLIENT_IP, "192.0.2.10");
+        VALUES.put(PatternLogger.STATUS, "0");
+        VALUES.put(TransactionLogger.REQ_NAME, "CN=Client,O=PrimeKey,C=SE");
+        VALUES.put(TransactionLogger.SIGN_ISSUER_NAME_DN, "CN=Benchmark CA,O=PrimeKey,C=SE");
+        VALUES.put(TransactionLogger.SIGN_SUBJECT_NAME, "CN=OCSP Signer,O=PrimeKey,C=SE");
+        VALUES.put(TransactionLogger.SIGN_SERIAL_NO, "4c9d3f0b8e2a17a6");
+        VALUES.put(TransactionLogger.NUM_CERT_ID, Integer.valueOf(1));
+        VALUES.put(TransactionLogger.ISSUER_NAME_DN, "CN=Benchmark CA,O=PrimeKey,C=SE");
+        VALUES.put(PatternLogger.ISSUER_NAME_HASH, new byte[20]);
+        VALUES.put(PatternLogger.ISSUER_KEY, new byte[20]);
+        VALUES.put(TransactionLogger.DIGEST_ALGOR, "1.3.14.3.2.26");
+        VALUES.put(PatternLogger.SERIAL_NOHEX, "5f2a9c0d71e4b3a8");
+        VALUES.put(TransactionLogger.CERT_STATUS, "0");
+        VALUES.put(TransactionLogger.CERT_PROFILE_ID, Integer.valueOf(1));
+    }
+
+    private static class BenchmarkLogger extends PatternLogger {
+        private static final long serialVersionUID = 1L;
+
+        BenchmarkLogger() {
+            super(true, BenchmarkLogger.class, PATTERN, ORDER, DATE_FORMAT, TIME_ZONE);
+        }
+    }
+
+    /** The PatternLogger before the pattern was compiled into a template, reduced to what is used here */
+    private static class RegexPatternLogger {
+        private final Map<String, String> valuepairs = new HashMap<String, String>();
+        private final Matcher m = Pattern.compile(PATTERN).matcher(ORDER);
+        private final Date startTime = new Date();
+        private final StringWriter sw = new StringWriter();
+        private final PrintWriter pw = new PrintWriter(sw);
+        private final Logger logger = Logger.getLogger(RegexPatternLogger.class);
+
+        RegexPatternLogger() {
+            paramPut(PatternLogger.LOG_TIME, FastDateFormat.getInstance(DATE_FORMAT, TimeZone.getTimeZone(TIME_ZONE)).format(new Date()));
+            paramPut(PatternLogger.REPLY_TIME, PatternLogger.REPLY_TIME);
+            paramPut(PatternLogger.LOG_ID, "0");
+        }
+
+        void paramPut(final String key, final String value) {
+            valuepairs.put(key, value == null ? "" : value);
+        }
+
+        private String interpolate() {
+            final StringBuffer sb = new StringBuffer(ORDER.length());
+            m.reset();
+            while (m.find()) {
+                final String value = valuepairs.get(m.group(1));
+                if (value != null) {
+                    m.appendReplacement(sb, value);
+                } else {
+                    m.appendReplacement(sb, "");
+                    sb.append(m.group(0));
+                }
+            }
+            m.appendTail(sb);
+            return sb.toString();
+        }
+
+        void writeln() {
+            pw.println(interpolate());
+        }
+
+        void flush() {
+            pw.flush();
+            String output = sw.toString();
+            output = output.replaceAll(PatternLogger.REPLY_TIME, String.valueOf(new Date().getTime() - startTime.getTime()));
+            if (output.endsWith(System.getProperty("line.separator"))) {
+                output = output.substring(0, output.length() - 1);
+            }
+            logger.debug(output);
+        }
+    }
+
+    @Benchmark
+    public PatternLogger logRow() {
+        final PatternLogger logger = new BenchmarkLogger();
+        for (final Map.Entry<String, Object> entry : VALUES.entrySet()) {
+            final Object value = entry.getValue();
+            if (value instanceof byte[]) {
+                logger.paramPut(entry.getKey(), (byte[]) value);
+            } else if (value instanceof Integer) {
+                logger.paramPut(entry.getKey(), (Integer) value);
+            } else {
+                logger.paramPut(entry.getKey(), (String) value);
+            }
+        }
+        logger.writeln();
+        logger.flush();
+        return logger;
+    }
+
+    @Benchmark
+    public Object logRowRegex() {
+        final RegexPatternLogger logger = new RegexPatternLogger();
+        for (final Map.Entry<String, Object> entry : VALUES.entrySet()) {
+            final Object value = entry.getValue();
+            if (value instanceof byte[]) {
+                logger.paramPut(entry.getKey(), new String(Hex.encode((byte[]) value)));
+            } else {
+                logger.paramPut(entry.getKey(), String.valueOf(value));
+            }
+        }
+        logger.writeln();
+        logger.flush();
+        return logger;
+    }
+}
@@ -0,0 +1,81 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.keys.token;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.cesecore.config.ConfigurationHolder;
+import org.cesecore.util.CryptoProviderTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the key lookups that are made for each signature with a {@link SoftCryptoToken}, with and without the key cache.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SoftCryptoTokenBenchmark {
+
+    private static final String ALIAS = "signKey";
+
+    @Param({ "false", "true" })
+    public String softKeyCache;
+
+    @Param({ "RSA", "EC" })
+    public String keyAlgorithm;
+
+    private CryptoToken cryptoToken;
+
+    @Setup
+    public void setUp() throws Exception {
+        CryptoProviderTools.installBCProviderIfNotAvailable();
+        ConfigurationHolder.updateConfiguration("cryptotoken.softkeycache", softKeyCache);
+        final Properties properties = new Properties();
+        properties.setProperty(SoftCryptoToken.NODEFAULTPWD, "true");
+        cryptoToken = CryptoTokenFactory.createCryptoToken(SoftCryptoToken.class.getName(), properties, null, 1, "Benchmark");
+        cryptoToken.activate("foo123".toCharArray());
+        // Other CAs on the same token
+        for (int i = 0; i < 10; i++) {
+            cryptoToken.generateKeyPair("secp256r1", "otherKey" + i);
+        }
+        cryptoToken.generateKeyPair("RSA".equals(keyAlgorithm) ? "2048" : "secp256r1", ALIAS);
+    }
+
+    @Benchmark
+    public PrivateKey getPrivateKey() throws CryptoTokenOfflineException {
+        return cryptoToken.getPrivateKey(ALIAS);
+    }
+
+    @Benchmark
+    public PublicKey getPublicKey() throws CryptoTokenOfflineException {
+        return cryptoToken.getPublicKey(ALIAS);
+    }
+}
@@ -0,0 +1,127 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.keys.validation;
+
+import java.math.BigInteger;
+import java.security.interfaces.RSAPublicKey;
+import java.util.concurrent.TimeUnit;
+
+import org.cesecore.certificates.util.AlgorithmConstants;
+import org.cesecore.keys.util.KeyTools;
+import org.cesecore.util.CryptoProviderTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the RSA modulus checks done by {@link RsaKeyValidator} and {@link RocaBrokenKey} when a certificate is issued.
+ * The previous implementations, with one BigInteger division per candidate factor and one remainder per ROCA prime, are
+ * measured as baselines.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RsaKeyValidatorBenchmark {
+
+    @Param({ "2048", "4096", "8192" })
+    public String keySize;
+
+    /**
+     * The limit passed by the validator, which is the configured smallest allowed factor plus one. 752 is the value used by the
+     * CA/B Forum baseline requirements template. Even limits only check the factor 2, see {@link RsaKeyValidator#hasSmallerFactorThan}.
+     */
+    @Param({ "753", "10001" })
+    public int smallestFactor;
+
+    private static final int[] ROCA_PRIMES = new int[] { 3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61, 67, 71, 73, 79, 83,
+            89, 97, 101, 103, 107, 109, 113, 127, 131, 137, 139, 149, 151, 157, 163, 167 };
+    private static final String[] ROCA_MARKERS = new String[] { "6", "30", "126", "1026", "5658", "107286", "199410", "8388606", "536870910",
+            "2147483646", "67109890", "2199023255550", "8796093022206", "140737488355326", "5310023542746834", "576460752303423486",
+            "1455791217086302986", "147573952589676412926", "20052041432995567486", "6041388139249378920330", "207530445072488465666",
+            "9671406556917033397649406", "618970019642690137449562110", "79228162521181866724264247298", "2535301200456458802993406410750",
+            "1760368345969468176824550810518", "50079290986288516948354744811034", "473022961816146413042658758988474",
+            "10384593717069655257060992658440190", "144390480366845522447407333004847678774", "2722258935367507707706996859454145691646",
+            "174224571863520493293247799005065324265470", "696898287454081973172991196020261297061886",
+            "713623846352979940529142984724747568191373310", "1800793591454480341970779146165214289059119882",
+            "126304807362733370595828809000324029340048915994", "11692013098647223345629478661730264157247460343806",
+            "187072209578355573530071658587684226515959365500926" };
+    private static final BigInteger[] rocaPrimes = new BigInteger[ROCA_PRIMES.length];
+    private static final BigInteger[] rocaMarkers = new BigInteger[ROCA_PRIMES.length];
+    static {
+        for (int i = 0; i < ROCA_PRIMES.length; i++) {
+            rocaPrimes[i] = BigInteger.valueOf(ROCA_PRIMES[i]);
+            rocaMarkers[i] = new BigInteger(ROCA_MARKERS[i]);
+        }
+    }
+
+    private BigInteger modulus;
+
+    @Setup
+    public void setUp() throws Exception {
+        CryptoProviderTools.installBCProviderIfNotAvailable();
+        modulus = ((RSAPublicKey) KeyTools.genKeys(keySize, AlgorithmConstants.KEYALGORITHM_RSA).getPublic()).getModulus();
+        // Computes the product of the small primes, which is then cached
+        RsaKeyValidator.hasSmallerFactorThan(modulus, smallestFactor);
+    }
+
+    @Benchmark
+    public boolean hasSmallerFactorThan() {
+        return RsaKeyValidator.hasSmallerFactorThan(modulus, smallestFactor);
+    }
+
+    /** The previous implementation, one BigInteger division per odd candidate */
+    @Benchmark
+    public boolean hasSmallerFactorThanTrialDivision() {
+        if (smallestFactor < 3) {
+            return false;
+        }
+        if (!modulus.testBit(0)) {
+            return true;
+        }
+        for (int i = smallestFactor; i > 2; i = i - 2) {
+            if (modulus.mod(BigInteger.valueOf(i)).equals(BigInteger.ZERO)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Benchmark
+    public boolean isRocaAffected() {
+        return RocaBrokenKey.isAffected(modulus);
+    }
+
+    /** The previous implementation, one BigInteger remainder, shift and and-operation per prime */
+    @Benchmark
+    public boolean isRocaAffectedPerPrime() {
+        for (int i = 0; i < rocaPrimes.length; i++) {
+            if (BigInteger.ONE.shiftLeft(modulus.remainder(rocaPrimes[i]).intValue()).and(rocaMarkers[i]).equals(BigInteger.ZERO)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,70 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.roles;
+
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link AccessRulesHelper#hasAccessToResource(HashMap, String)}, which is called for every authorization check,
+ * with the access rules of a role that has access to some of many CAs and end entity profiles.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AccessRulesHelperBenchmark {
+
+    private static final int NUMBER_OF_IDS = 500;
+
+    @Param({ "/ca_functionality/view_certificate", "/ca/250", "/ca/251", "/endentityprofilesrules/100/view_end_entity/",
+            "/endentityprofilesrules/101/edit_end_entity/" })
+    public String resource;
+
+    private final HashMap<String, Boolean> accessRules = new HashMap<>();
+
+    @Setup
+    public void setUp() {
+        accessRules.put("/ca_functionality/", Boolean.TRUE);
+        accessRules.put("/ra_functionality/", Boolean.TRUE);
+        accessRules.put("/administrator/", Boolean.TRUE);
+        for (int i = 0; i < NUMBER_OF_IDS; i += 2) {
+            accessRules.put("/ca/" + i, Boolean.TRUE);
+            accessRules.put("/endentityprofilesrules/" + i, Boolean.TRUE);
+            accessRules.put("/endentityprofilesrules/" + (i + 1) + "/view_end_entity", Boolean.TRUE);
+            accessRules.put("/endentityprofilesrules/" + (i + 1) + "/edit_end_entity", Boolean.FALSE);
+        }
+        AccessRulesHelper.normalizeResources(accessRules);
+    }
+
+    @Benchmark
+    public boolean hasAccessToResource() {
+        return AccessRulesHelper.hasAccessToResource(accessRules, resource);
+    }
+}
@@ -0,0 +1,73 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.util;
+
+import java.security.KeyPair;
+import java.security.cert.Certificate;
+import java.util.concurrent.TimeUnit;
+
+import org.cesecore.certificates.util.AlgorithmConstants;
+import org.cesecore.keys.util.KeyTools;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks DN handling in {@link CertTools}, which is done several times for every issued certificate and OCSP request.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CertToolsBenchmark {
+
+    @Param({ "CN=User,O=PrimeKey,C=SE",
+            "E=user@example.com,UID=user1,CN=User Name,SN=12345,OU=Development\\, Test,O=PrimeKey Solutions AB,L=Solna,ST=Stockholm,C=SE" })
+    public String dn;
+
+    private Certificate certificate;
+
+    @Setup
+    public void setUp() throws Exception {
+        CryptoProviderTools.installBCProviderIfNotAvailable();
+        final KeyPair keyPair = KeyTools.genKeys("secp256r1", AlgorithmConstants.KEYALGORITHM_ECDSA);
+        certificate = CertTools.genSelfCert(dn, 365, null, keyPair.getPrivate(), keyPair.getPublic(), AlgorithmConstants.SIGALG_SHA256_WITH_ECDSA, false);
+    }
+
+    @Benchmark
+    public String stringToBCDNString() {
+        return CertTools.stringToBCDNString(dn);
+    }
+
+    @Benchmark
+    public String getSubjectDN() {
+        return CertTools.getSubjectDN(certificate);
+    }
+
+    @Benchmark
+    public String getIssuerDN() {
+        return CertTools.getIssuerDN(certificate);
+    }
+}
@@ -0,0 +1,78 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.util;
+
+import java.beans.XMLDecoder;
+import java.beans.XMLEncoder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.cesecore.certificates.certificateprofile.CertificateProfile;
+import org.cesecore.certificates.certificateprofile.CertificateProfileConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks {@link SecureXMLDecoder} on the XML of certificate profiles, as stored in the database and in exported profiles.
+ * {@link XMLDecoder} is measured as a baseline.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SecureXMLDecoderBenchmark {
+
+    @Param({ "" + CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER, "" + CertificateProfileConstants.CERTPROFILE_FIXED_SUBCA })
+    public int profileType;
+
+    private byte[] xml;
+
+    @Setup
+    public void setUp() {
+        final CertificateProfile profile = new CertificateProfile(profileType);
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (final XMLEncoder encoder = new XMLEncoder(baos)) {
+            encoder.writeObject(profile.saveData());
+        }
+        xml = baos.toByteArray();
+    }
+
+    @Benchmark
+    public Object secureXmlDecoder() throws IOException {
+        try (final SecureXMLDecoder decoder = new SecureXMLDecoder(new ByteArrayInputStream(xml))) {
+            return decoder.readObject();
+        }
+    }
+
+    @Benchmark
+    public Object xmlDecoder() {
+        try (final XMLDecoder decoder = new XMLDecoder(new ByteArrayInputStream(xml))) {
+            return decoder.readObject();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.protocol.acme;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks issuing and validating ACME replay nonces with {@link AcmeReplayNonceEngine}, from one thread and from many
+ * threads as when many ACME clients are served concurrently.
+ *
+ * @version $Id$
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AcmeReplayNonceEngineBenchmark {
+
+    private AcmeReplayNonceEngine engine;
+
+    @Setup
+    public void setUp() {
+        engine = new AcmeReplayNonceEngine(Collections.singletonList("0123456789abcdef0123456789abcdef".getBytes()),
+                new byte[AcmeReplayNonceEngine.NODE_ID_LENGTH], 600 * 1000L, 60 * 1000L);
+    }
+
+    private long issueAndUse() {
+        final long now = System.currentTimeMillis();
+        final long timeCreated = engine.useNonce(engine.getReplayNonce(now), now);
+        if (timeCreated == AcmeReplayNonceEngine.INVALID) {
+            throw new IllegalStateException("Issued nonce was rejected");
+        }
+        return timeCreated;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long issueAndUseSingleThread() {
+        return issueAndUse();
+    }
+
+    @Benchmark
+    @Threads(Threads.MAX)
+    public long issueAndUseAllThreads() {
+        return issueAndUse();
+    }
+}
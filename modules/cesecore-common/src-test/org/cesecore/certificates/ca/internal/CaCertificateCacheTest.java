@@ -17,6 +17,8 @@ import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.fail;
 
+import java.math.BigInteger;
+import java.security.KeyPair;
 import java.security.SignatureException;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
@@ -26,7 +28,17 @@ import java.util.Date;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
 import org.cesecore.certificates.certificate.HashID;
+import org.cesecore.certificates.util.AlgorithmConstants;
+import org.cesecore.keys.util.KeyTools;
 import org.cesecore.util.Base64;
 import org.cesecore.util.CertTools;
 import org.cesecore.util.CryptoProviderTools;
@@ -150,6 +162,107 @@ public class CaCertificateCacheTest {
 
 	}
 
+	@Test
+	public void test03AddAndRemoveCertificates() throws Exception {
+		X509Certificate testrootcert = CertTools.getCertfromByteArray(testroot, X509Certificate.class);
+		X509Certificate testrootnewcert = CertTools.getCertfromByteArray(testrootnew, X509Certificate.class);
+		X509Certificate testsubcert = CertTools.getCertfromByteArray(testsub, X509Certificate.class);
+		Collection<Certificate> certs = new ArrayList<Certificate>();
+		certs.add(testrootcert);
+		certs.add(testsubcert);
+		CaCertificateCache cache = CaCertificateCache.INSTANCE;
+		cache.loadCertificates(certs);
+		assertEquals(2, cache.getCertificateCount());
+		assertEquals(testrootcert, cache.findLatestBySubjectDN(HashID.getFromSubjectDN(testrootcert)));
+		X509Certificate[] issued = cache.findLatestByIssuerDN(HashID.getFromSubjectDN(testrootcert));
+		assertEquals(1, issued.length);
+		assertEquals(testsubcert, issued[0]);
+
+		// The new root certificate has the same subject DN, and replaces the old one as the latest
+		cache.addCertificate(testrootnewcert);
+		assertEquals(3, cache.getCertificateCount());
+		assertEquals(testrootnewcert, cache.findLatestBySubjectDN(HashID.getFromSubjectDN(testrootcert)));
+		assertEquals(1, cache.getRootCertificates().length);
+		assertEquals(testrootnewcert, cache.getRootCertificates()[0]);
+		// The old root certificate can still be found from its key
+		assertEquals(testrootcert, cache.findBySubjectKeyIdentifier(HashID.getFromKeyID(testrootcert)));
+		// Adding the same certificate again does nothing
+		cache.addCertificate(testrootnewcert);
+		assertEquals(3, cache.getCertificateCount());
+
+		// When the new root certificate is removed, the old one is the latest again
+		cache.removeCertificate(testrootnewcert);
+		assertEquals(2, cache.getCertificateCount());
+		assertEquals(testrootcert, cache.findLatestBySubjectDN(HashID.getFromSubjectDN(testrootcert)));
+		assertEquals(testrootcert, cache.getRootCertificates()[0]);
+		assertNull(cache.findBySubjectKeyIdentifier(HashID.getFromKeyID(testrootnewcert)));
+
+		cache.removeCertificate(testsubcert);
+		assertEquals(1, cache.getCertificateCount());
+		assertNull(cache.findLatestByIssuerDN(HashID.getFromSubjectDN(testrootcert)));
+		assertNull(cache.findLatestBySubjectDN(HashID.getFromSubjectDN(testsubcert)));
+		// Removing a certificate that is not in the cache does nothing
+		cache.removeCertificate(testsubcert);
+		assertEquals(1, cache.getCertificateCount());
+	}
+
+	@Test
+	public void test04FindByKeyHash() throws Exception {
+		X509Certificate testrootcert = CertTools.getCertfromByteArray(testroot, X509Certificate.class);
+		X509Certificate testsubcert = CertTools.getCertfromByteArray(testsub, X509Certificate.class);
+		Collection<Certificate> certs = new ArrayList<Certificate>();
+		certs.add(testrootcert);
+		certs.add(testsubcert);
+		CaCertificateCache cache = CaCertificateCache.INSTANCE;
+		cache.loadCertificates(certs);
+		// The key hash of RFC 6960 is the hash of the subjectPublicKey bit string
+		byte[] keyData = SubjectPublicKeyInfo.getInstance(testsubcert.getPublicKey().getEncoded()).getPublicKeyData().getBytes();
+		assertEquals(testsubcert, cache.findByKeyHash(CertTools.generateSHA1Fingerprint(keyData)));
+		assertEquals(testsubcert, cache.findByKeyHash(CertTools.generateSHA256Fingerprint(keyData)));
+		// The SHA-1 key hash is the same as the subject key identifier
+		assertEquals(testrootcert, cache.findByKeyHash(KeyTools.createSubjectKeyId(testrootcert.getPublicKey()).getKeyIdentifier()));
+		assertNull(cache.findByKeyHash(new byte[20]));
+	}
+
+	/** Many sub CAs of the same root, loaded at once, must all be indexed under the root */
+	@Test
+	public void test05ManySubCas() throws Exception {
+		final KeyPair rootKeys = KeyTools.genKeys("secp256r1", AlgorithmConstants.KEYALGORITHM_ECDSA);
+		final X509Certificate root = CertTools.genSelfCert("CN=ManySubCasRoot", 365, null, rootKeys.getPrivate(), rootKeys.getPublic(),
+				AlgorithmConstants.SIGALG_SHA256_WITH_ECDSA, true);
+		final Collection<Certificate> certs = new ArrayList<Certificate>();
+		certs.add(root);
+		final int subCaCount = 300;
+		for (int i = 0; i < subCaCount; i++) {
+			certs.add(createSubCaCertificate("CN=ManySubCasSub" + i, root, rootKeys));
+		}
+		final CaCertificateCache cache = CaCertificateCache.INSTANCE;
+		cache.loadCertificates(certs);
+		assertEquals(subCaCount + 1, cache.getCertificateCount());
+		final HashID rootId = HashID.getFromSubjectDN(root);
+		final X509Certificate[] issued = cache.findLatestByIssuerDN(rootId);
+		assertEquals(subCaCount, issued.length);
+		final X509Certificate removed = issued[0];
+		cache.removeCertificate(removed);
+		assertEquals(subCaCount - 1, cache.findLatestByIssuerDN(rootId).length);
+		assertNull(cache.findLatestBySubjectDN(HashID.getFromSubjectDN(removed)));
+		cache.addCertificate(createSubCaCertificate("CN=ManySubCasSubExtra", root, rootKeys));
+		cache.addCertificate(removed);
+		assertEquals(subCaCount + 1, cache.findLatestByIssuerDN(rootId).length);
+		assertEquals(subCaCount + 2, cache.getCertificateCount());
+	}
+
+	private static X509Certificate createSubCaCertificate(final String dn, final X509Certificate issuer, final KeyPair issuerKeys) throws Exception {
+		final KeyPair keys = KeyTools.genKeys("secp256r1", AlgorithmConstants.KEYALGORITHM_ECDSA);
+		final long now = System.currentTimeMillis();
+		final X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(X500Name.getInstance(issuer.getSubjectX500Principal().getEncoded()),
+				BigInteger.valueOf(now).add(BigInteger.valueOf(dn.hashCode() & 0xffff)), new Date(now - 60000), new Date(now + 3600000), new X500Name(dn),
+				keys.getPublic());
+		builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+		return new JcaX509CertificateConverter().getCertificate(builder.build(new JcaContentSignerBuilder(AlgorithmConstants.SIGALG_SHA256_WITH_ECDSA)
+				.build(issuerKeys.getPrivate())));
+	}
+
 	public static Throwable threadException = null;
 	@Test
 	public void test02loadCertificates() throws Exception {
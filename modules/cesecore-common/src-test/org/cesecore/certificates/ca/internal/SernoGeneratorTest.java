@@ -22,9 +22,19 @@ import java.math.BigDecimal;
 import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.log4j.Logger;
+import org.cesecore.config.ConfigurationHolder;
 import org.junit.Test;
 
 
@@ -149,6 +159,77 @@ public class SernoGeneratorTest {
         log.info("Creating "+noRounds*1000+" 8 octet serNos with "+algo+" took "+(end-start)+" ms, thats "+div+" ms per serno");
     }
     
+    /** Test that serial numbers generated concurrently, by threads using different random number generator instances and buffered
+     * random data, are valid and unique. 8 threads generate 400.000 serial numbers in total.
+     */
+    @Test
+    public void testGenerateSernosConcurrently() throws Exception {
+        ConfigurationHolder.updateConfiguration("ca.rnginstances", "4");
+        ConfigurationHolder.updateConfiguration("ca.rngbuffersize", "16");
+        try {
+            final SernoGeneratorRandom gen = new SernoGeneratorRandom();
+            gen.setSernoOctetSize(8);
+            assertEquals("Wrong number of random number generator instances.", 4, gen.getNoRandomInstances());
+            final int noThreads = 8;
+            final int sernosPerThread = 50000;
+            final Set<BigInteger> sernos = Collections.newSetFromMap(new ConcurrentHashMap<BigInteger, Boolean>(noThreads * sernosPerThread));
+            final AtomicInteger duplicates = new AtomicInteger();
+            final AtomicInteger invalid = new AtomicInteger();
+            final ExecutorService executor = Executors.newFixedThreadPool(noThreads);
+            final long start = System.currentTimeMillis();
+            try {
+                final List<Future<?>> futures = new ArrayList<>();
+                for (int i = 0; i < noThreads; i++) {
+                    futures.add(executor.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            for (int j = 0; j < sernosPerThread; j++) {
+                                final BigInteger serno = gen.getSerno();
+                                if (!gen.checkSernoValidity(serno)) {
+                                    invalid.incrementAndGet();
+                                }
+                                if (!sernos.add(serno)) {
+                                    duplicates.incrementAndGet();
+                                }
+                            }
+                        }
+                    }));
+                }
+                for (final Future<?> future : futures) {
+                    future.get();
+                }
+            } finally {
+                executor.shutdown();
+            }
+            final long end = System.currentTimeMillis();
+            assertEquals("Invalid serial numbers were generated.", 0, invalid.get());
+            assertEquals("Duplicate serial numbers were generated.", 0, duplicates.get());
+            assertEquals(noThreads * sernosPerThread, sernos.size());
+            log.info("Creating "+noThreads*sernosPerThread+" 8 octet serNos in "+noThreads+" threads with "+gen.getAlgorithm()+" took "+(end-start)+" ms");
+        } finally {
+            ConfigurationHolder.restoreConfiguration();
+        }
+    }
+
+    /** Test that serial numbers from the buffered random data have the requested size when the size is changed after initialization. */
+    @Test
+    public void testBufferedSernosAfterSizeChange() throws Exception {
+        ConfigurationHolder.updateConfiguration("ca.rnginstances", "1");
+        ConfigurationHolder.updateConfiguration("ca.rngbuffersize", "10");
+        try {
+            final SernoGeneratorRandom gen = new SernoGeneratorRandom();
+            for (final int noOctets : new int[] { 8, 20, 4, 16 }) {
+                gen.setSernoOctetSize(noOctets);
+                for (int i = 0; i < 100; i++) {
+                    final BigInteger serno = gen.getSerno();
+                    assertTrue("Invalid "+noOctets+" octet serial number "+serno.toString(16), gen.checkSernoValidity(serno));
+                }
+            }
+        } finally {
+            ConfigurationHolder.restoreConfiguration();
+        }
+    }
+
     private void generateSernos(final int nrOctets, final String algorithm, final int maxDups, final int roundsOf1000) throws Exception {
         // this will actually create a default RNG first (depending on configuration in cesecore.properties), which will be changed by setAlgorithm below
         SernoGenerator gen = SernoGeneratorRandom.instance();
@@ -0,0 +1,73 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.certificatetransparency;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests the circuit breaker and rate limit of CT logs.
+ *
+ * @version $Id$
+ */
+public class CTLogGateTest {
+
+    private static final long NOW = 1546300800000L;
+
+    @Test
+    public void testCircuitBreaker() {
+        final CTLogGate gate = new CTLogGate(2, 1000, 0, NOW);
+        assertTrue(gate.tryAcquire(NOW));
+        gate.failure(NOW);
+        assertFalse("A single failure should not open the circuit breaker", gate.isOpen(NOW));
+        assertTrue(gate.tryAcquire(NOW));
+        gate.failure(NOW);
+        assertTrue(gate.isOpen(NOW));
+        assertFalse("Requests should fail fast during the back off time", gate.tryAcquire(NOW + 999));
+        assertTrue("A trial request should be allowed after the back off time", gate.tryAcquire(NOW + 1000));
+        assertFalse("Only one trial request should be allowed at a time", gate.tryAcquire(NOW + 1000));
+        gate.failure(NOW + 1500);
+        assertFalse("Failed trial request should open the circuit breaker again", gate.tryAcquire(NOW + 2000));
+        assertTrue(gate.tryAcquire(NOW + 2500));
+        gate.success();
+        assertFalse(gate.isOpen(NOW + 2500));
+        assertTrue(gate.tryAcquire(NOW + 2500));
+        assertTrue("Successful trial request should close the circuit breaker", gate.tryAcquire(NOW + 2500));
+    }
+
+    @Test
+    public void testDisabledCircuitBreaker() {
+        final CTLogGate gate = new CTLogGate(0, 1000, 0, NOW);
+        for (int i = 0; i < 100; i++) {
+            assertTrue(gate.tryAcquire(NOW));
+            gate.failure(NOW);
+        }
+        assertFalse(gate.isOpen(NOW));
+    }
+
+    @Test
+    public void testRateLimit() {
+        final CTLogGate gate = new CTLogGate(0, 1000, 10, NOW);
+        for (int i = 0; i < 10; i++) {
+            assertTrue("Burst of one second worth of requests should be allowed", gate.tryAcquire(NOW));
+        }
+        assertFalse(gate.tryAcquire(NOW));
+        assertFalse(gate.tryAcquire(NOW + 50));
+        assertTrue("A request should be allowed after 100 ms", gate.tryAcquire(NOW + 100));
+        assertFalse(gate.tryAcquire(NOW + 100));
+        gate.failure(NOW + 100);
+        assertTrue("A long pause should refill the bucket", gate.tryAcquire(NOW + 60000));
+    }
+}
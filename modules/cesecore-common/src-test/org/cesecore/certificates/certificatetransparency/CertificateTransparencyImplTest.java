@@ -0,0 +1,375 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.certificatetransparency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.security.auth.x500.X500Principal;
+
+import org.apache.log4j.Logger;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.cesecore.certificates.certificate.CertificateCreateException;
+import org.cesecore.certificates.certificateprofile.CertificateProfile;
+import org.cesecore.certificates.certificateprofile.CertificateProfileConstants;
+import org.cesecore.certificates.certificatetransparency.CertificateTransparency.UsageMode;
+import org.cesecore.config.ConfigurationHolder;
+import org.cesecore.keys.util.KeyTools;
+import org.cesecore.util.CertTools;
+import org.cesecore.util.CryptoProviderTools;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests submission of certificates to CT logs, running against mock CT logs on localhost.
+ *
+ * @version $Id$
+ */
+public class CertificateTransparencyImplTest {
+
+    private static final Logger log = Logger.getLogger(CertificateTransparencyImplTest.class);
+
+    private static final int TIMEOUT = 2000;
+
+    private static KeyPair caKeyPair;
+    private static X509Certificate caCert;
+    private static KeyPair leafKeyPair;
+
+    private final List<MockCTLogServer> servers = new ArrayList<>();
+    private CertificateTransparencyImpl ct;
+    private long serialNumber = 1;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        CryptoProviderTools.installBCProviderIfNotAvailable();
+        caKeyPair = KeyTools.genKeys("secp256r1", "EC");
+        leafKeyPair = KeyTools.genKeys("secp256r1", "EC");
+        caCert = CertTools.genSelfCert("CN=CT Test CA", 365, null, caKeyPair.getPrivate(), caKeyPair.getPublic(), "SHA256WithECDSA", true);
+    }
+
+    @Before
+    public void before() {
+        ConfigurationHolder.backupConfiguration();
+    }
+
+    @After
+    public void after() {
+        if (ct != null) {
+            ct.shutdown();
+        }
+        for (final MockCTLogServer server : servers) {
+            server.stop();
+        }
+        ConfigurationHolder.restoreConfiguration();
+    }
+
+    private MockCTLogServer startServer() throws Exception {
+        final MockCTLogServer server = new MockCTLogServer();
+        servers.add(server);
+        return server;
+    }
+
+    private static CTSubmissionConfigParams getConfig(final CTLogInfo... ctLogs) {
+        final Map<Integer, CTLogInfo> configuredCtLogs = new LinkedHashMap<>();
+        for (final CTLogInfo ctLog : ctLogs) {
+            configuredCtLogs.put(ctLog.getLogId(), ctLog);
+        }
+        final CTSubmissionConfigParams config = new CTSubmissionConfigParams();
+        config.setConfiguredCTLogs(configuredCtLogs);
+        config.setValidityPolicy(new GoogleCtPolicy());
+        return config;
+    }
+
+    private static CertificateProfile getProfile(final int minScts, final int maxScts, final String... labels) {
+        final CertificateProfile profile = new CertificateProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER);
+        profile.setUseCertificateTransparencyInCerts(true);
+        profile.setEnabledCTLabels(new LinkedHashSet<>(Arrays.asList(labels)));
+        profile.setNumberOfSctByCustom(true);
+        profile.setNumberOfSctByValidity(false);
+        profile.setMaxNumberOfSctByCustom(true);
+        profile.setMaxNumberOfSctByValidity(false);
+        profile.setCtMinScts(minScts);
+        profile.setCtMaxScts(maxScts);
+        profile.setCtMinSctsOcsp(minScts);
+        profile.setCtMaxSctsOcsp(maxScts);
+        return profile;
+    }
+
+    private X509v3CertificateBuilder getBuilder(final long serial) {
+        final Date notBefore = new Date(System.currentTimeMillis() - 60000L);
+        final Date notAfter = new Date(notBefore.getTime() + 90L * 24 * 3600 * 1000);
+        final X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(caCert, BigInteger.valueOf(serial), notBefore, notAfter,
+                new X500Principal("CN=ct.example.com"), leafKeyPair.getPublic());
+        try {
+            builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(false));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return builder;
+    }
+
+    private static X509Certificate sign(final X509v3CertificateBuilder builder) throws Exception {
+        return CertTools.getCertfromByteArray(builder.build(new JcaContentSignerBuilder("SHA256withECDSA").build(caKeyPair.getPrivate())).getEncoded(),
+                X509Certificate.class);
+    }
+
+    /** @return a new pre-certificate followed by the CA certificate */
+    private List<Certificate> getPreCertChain() throws Exception {
+        final X509v3CertificateBuilder builder = getBuilder(serialNumber++);
+        ct.addPreCertPoison(builder);
+        return Arrays.asList((Certificate) sign(builder), caCert);
+    }
+
+    /** @return a new certificate (without poison) followed by the CA certificate */
+    private List<Certificate> getCertChain() throws Exception {
+        return Arrays.asList((Certificate) sign(getBuilder(serialNumber++)), caCert);
+    }
+
+    private static Set<String> getLogIds(final byte[] sctList) throws Exception {
+        final Set<String> ret = new HashSet<>();
+        for (final byte[] sct : SignedCertificateTimestamp.decodeList(sctList)) {
+            ret.add(Arrays.toString(SignedCertificateTimestamp.getInstance(sct).getLogId()));
+        }
+        return ret;
+    }
+
+    /** @return the SCTs in a list, in any order */
+    private static Set<String> getScts(final byte[] sctList) throws Exception {
+        final Set<String> ret = new HashSet<>();
+        for (final byte[] sct : SignedCertificateTimestamp.decodeList(sctList)) {
+            ret.add(Arrays.toString(sct));
+        }
+        return ret;
+    }
+
+    private static String getLogId(final MockCTLogServer server) throws Exception {
+        return Arrays.toString(MessageDigest.getInstance("SHA-256").digest(server.getPublicKeyBytes()));
+    }
+
+    @Test
+    public void testSubmitPreCertificateAndVerifyFinalCertificate() throws Exception {
+        ct = new CertificateTransparencyImpl();
+        final MockCTLogServer logA1 = startServer();
+        final MockCTLogServer logA2 = startServer();
+        final MockCTLogServer logB = startServer();
+        final CTSubmissionConfigParams config = getConfig(logA1.getLogInfo("A", TIMEOUT), logA2.getLogInfo("A", TIMEOUT), logB.getLogInfo("B", TIMEOUT));
+        final CertificateProfile profile = getProfile(2, 2, "A", "B");
+        // Build the pre-certificate and the final certificate from the same contents, like X509CA does
+        final long serial = serialNumber++;
+        final X509v3CertificateBuilder precertBuilder = getBuilder(serial);
+        ct.addPreCertPoison(precertBuilder);
+        final X509Certificate precert = sign(precertBuilder);
+        assertTrue("Poison extension should be critical", precert.getCriticalExtensionOIDs().contains(CertificateTransparencyImpl.POISON_OID));
+        final byte[] sctList = ct.fetchSCTList(Arrays.asList((Certificate) precert, caCert), profile, config);
+        assertNotNull("Should get SCTs from the logs", sctList);
+        final Set<String> logIds = getLogIds(sctList);
+        assertEquals("Should get the maximum number of SCTs", 2, logIds.size());
+        assertTrue("Should get one SCT from each label", logIds.contains(getLogId(logB)));
+
+        final X509v3CertificateBuilder certBuilder = getBuilder(serial);
+        certBuilder.addExtension(new ASN1ObjectIdentifier(CertificateTransparency.SCTLIST_OID), false, new DEROctetString(sctList));
+        final X509Certificate cert = sign(certBuilder);
+        assertTrue(ct.hasSCTs(cert));
+        assertFalse(ct.hasSCTs(precert));
+        ct.allSctsAreValidOrThrow(cert, Arrays.asList((Certificate) caCert), config.getConfiguredCTLogs().values());
+
+        // SCTs for another certificate must not verify
+        final X509v3CertificateBuilder otherBuilder = getBuilder(serialNumber++);
+        otherBuilder.addExtension(new ASN1ObjectIdentifier(CertificateTransparency.SCTLIST_OID), false, new DEROctetString(sctList));
+        try {
+            ct.allSctsAreValidOrThrow(sign(otherBuilder), Arrays.asList((Certificate) caCert), config.getConfiguredCTLogs().values());
+            fail("SCTs for another certificate should not verify");
+        } catch (CertificateCreateException e) {
+            log.debug("Got expected exception: " + e.getMessage());
+        }
+    }
+
+    @Test
+    public void testCachedSctsAreReused() throws Exception {
+        ct = new CertificateTransparencyImpl();
+        final MockCTLogServer logA = startServer();
+        final MockCTLogServer logB = startServer();
+        final CTSubmissionConfigParams config = getConfig(logA.getLogInfo("A", TIMEOUT), logB.getLogInfo("B", TIMEOUT));
+        final CertificateProfile profile = getProfile(2, 2, "A", "B");
+        final List<Certificate> chain = getPreCertChain();
+        final byte[] sctList = ct.fetchSCTList(chain, profile, config);
+        assertEquals(1, logA.getRequestCount());
+        assertEquals("Retried submission should use the cached SCTs", getScts(sctList), getScts(ct.fetchSCTList(chain, profile, config)));
+        assertEquals("Retried submission should not contact the log", 1, logA.getRequestCount());
+        assertEquals(1, logB.getRequestCount());
+        ct.clearCaches();
+        ct.fetchSCTList(chain, profile, config);
+        assertEquals("Log should be contacted after the cache was cleared", 2, logA.getRequestCount());
+    }
+
+    @Test
+    public void testMinimumNumberOfScts() throws Exception {
+        ct = new CertificateTransparencyImpl();
+        final MockCTLogServer logA = startServer();
+        final MockCTLogServer logB = startServer();
+        logB.setHttpStatus(500);
+        final CTSubmissionConfigParams config = getConfig(logA.getLogInfo("A", TIMEOUT), logB.getLogInfo("B", TIMEOUT));
+        assertEquals("One SCT should be enough", 1, SignedCertificateTimestamp.decodeList(ct.fetchSCTList(getPreCertChain(), getProfile(1, 2, "A", "B"),
+                config)).size());
+        try {
+            ct.fetchSCTList(getPreCertChain(), getProfile(2, 2, "A", "B"), config);
+            fail("Should fail when too few logs respond");
+        } catch (CTLogException e) {
+            log.debug("Got expected exception: " + e.getMessage());
+        }
+        assertNull("No SCTs should be returned when no logs are enabled", ct.fetchSCTList(getPreCertChain(), getProfile(0, 2, "C"), config));
+    }
+
+    @Test(timeout = 30000)
+    public void testSlowLogTimesOut() throws Exception {
+        ct = new CertificateTransparencyImpl();
+        final MockCTLogServer fastLog = startServer();
+        final MockCTLogServer slowLog = startServer();
+        slowLog.setDelay(5000);
+        final CTSubmissionConfigParams config = getConfig(fastLog.getLogInfo("A", 500), slowLog.getLogInfo("B", 500));
+        final long start = System.currentTimeMillis();
+        final byte[] sctList = ct.fetchSCTList(getPreCertChain(), getProfile(1, 2, "A", "B"), config);
+        final long elapsed = System.currentTimeMillis() - start;
+        assertEquals(1, SignedCertificateTimestamp.decodeList(sctList).size());
+        assertTrue("Should not wait for the slow log longer than its timeout, waited " + elapsed + " ms", elapsed < 2500);
+    }
+
+    @Test
+    public void testCircuitBreaker() throws Exception {
+        ConfigurationHolder.updateConfiguration("ct.fastfail.enabled", "true");
+        ConfigurationHolder.updateConfiguration("ct.fastfail.failures", "2");
+        ConfigurationHolder.updateConfiguration("ct.fastfail.backoff", "60000");
+        ct = new CertificateTransparencyImpl();
+        final MockCTLogServer workingLog = startServer();
+        final MockCTLogServer failingLog = startServer();
+        failingLog.setHttpStatus(503);
+        final CTLogInfo failingLogInfo = failingLog.getLogInfo("B", TIMEOUT);
+        final CTSubmissionConfigParams config = getConfig(workingLog.getLogInfo("A", TIMEOUT), failingLogInfo);
+        final CertificateProfile profile = getProfile(1, 2, "A", "B");
+        ct.fetchSCTList(getPreCertChain(), profile, config);
+        assertFalse("Log should not be down after a single failure", ct.isLogDown(failingLogInfo));
+        ct.fetchSCTList(getPreCertChain(), profile, config);
+        assertTrue("Log should be down after two failures", ct.isLogDown(failingLogInfo));
+        assertEquals(2, failingLog.getRequestCount());
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(ct.fetchSCTList(getPreCertChain(), profile, config));
+        }
+        assertEquals("Requests to a log that is down should fail fast", 2, failingLog.getRequestCount());
+        assertEquals(7, workingLog.getRequestCount());
+        ct.clearCaches();
+        assertFalse("Log should be available after the caches are cleared", ct.isLogDown(failingLogInfo));
+    }
+
+    @Test
+    public void testRateLimit() throws Exception {
+        ConfigurationHolder.updateConfiguration("ct.ratelimit", "1");
+        ct = new CertificateTransparencyImpl();
+        final MockCTLogServer server = startServer();
+        final CTSubmissionConfigParams config = getConfig(server.getLogInfo("A", TIMEOUT));
+        final CertificateProfile profile = getProfile(0, 1, "A");
+        assertNotNull(ct.fetchSCTList(getPreCertChain(), profile, config));
+        // The bucket holds one second worth of submissions, so the next submissions fail fast unless a second has passed
+        int rejected = 0;
+        for (int i = 0; i < 3; i++) {
+            if (ct.fetchSCTList(getPreCertChain(), profile, config) == null) {
+                rejected++;
+            }
+        }
+        assertTrue("Submissions above the rate limit should be rejected", rejected >= 2);
+        assertEquals(4 - rejected, server.getRequestCount());
+    }
+
+    @Test
+    public void testAsyncSubmissionForOcsp() throws Exception {
+        ct = new CertificateTransparencyImpl();
+        final MockCTLogServer server = startServer();
+        final CTSubmissionConfigParams config = getConfig(server.getLogInfo("A", TIMEOUT));
+        final CertificateProfile profile = getProfile(1, 1, "A");
+        profile.setUseCertificateTransparencyInCerts(false);
+        profile.setUseCertificateTransparencyInOCSP(true);
+        // New certificates are submitted at issuance, even if existing certificates are not submitted
+        profile.setUseCTSubmitExisting(false);
+        final List<Certificate> chain = getCertChain();
+        final byte[] sctList = ct.fetchSCTListAsync(chain, profile, config, UsageMode.OCSP_NEW_CERTIFICATE).get();
+        assertNotNull(sctList);
+        assertEquals(1, server.getRequestCount());
+        final SignedCertificateTimestamp sct = SignedCertificateTimestamp.getInstance(SignedCertificateTimestamp.decodeList(sctList).get(0));
+        assertTrue("SCT for a certificate should be an X.509 entry", sct.verify(KeyTools.getPublicKeyFromBytes(server.getPublicKeyBytes()),
+                SignedCertificateTimestamp.ENTRY_TYPE_X509, null, chain.get(0).getEncoded()));
+        // The OCSP responder gets the SCTs from the cache
+        assertTrue(Arrays.equals(sctList, ct.fetchSCTList(chain, profile, config, UsageMode.OCSP)));
+        assertEquals(1, server.getRequestCount());
+        try {
+            ct.fetchSCTList(getCertChain(), profile, config, UsageMode.OCSP);
+            fail("Certificates that have not been submitted should not be submitted when responding to OCSP requests");
+        } catch (CTLogException e) {
+            assertEquals(1, server.getRequestCount());
+        }
+    }
+
+    @Test
+    public void testLogWithWrongKeyIsRejected() throws Exception {
+        ct = new CertificateTransparencyImpl();
+        final MockCTLogServer server = startServer();
+        final MockCTLogServer otherServer = startServer();
+        final CTLogInfo misconfigured = new CTLogInfo(server.getUrl(), otherServer.getPublicKeyBytes(), "A", TIMEOUT);
+        try {
+            ct.fetchSCTList(getPreCertChain(), getProfile(1, 1, "A"), getConfig(misconfigured));
+            fail("SCT signed with another key than the configured one should be rejected");
+        } catch (CTLogException e) {
+            assertEquals(1, server.getRequestCount());
+        }
+    }
+
+    @Test
+    public void testSctsByValidity() throws Exception {
+        final GoogleCtPolicy policy = new GoogleCtPolicy();
+        final long month = 30L * 24 * 3600 * 1000;
+        final Date notBefore = new Date();
+        assertEquals(2, CertificateTransparencyImpl.getSctsByValidity(genCert(notBefore, new Date(notBefore.getTime() + 3 * month)), policy));
+        assertEquals(3, CertificateTransparencyImpl.getSctsByValidity(genCert(notBefore, new Date(notBefore.getTime() + 24 * month)), policy));
+        assertEquals(5, CertificateTransparencyImpl.getSctsByValidity(genCert(notBefore, new Date(notBefore.getTime() + 60 * month)), policy));
+    }
+
+    private static X509Certificate genCert(final Date notBefore, final Date notAfter) throws Exception {
+        return sign(new JcaX509v3CertificateBuilder(caCert, BigInteger.ONE, notBefore, notAfter, new X500Principal("CN=validity"),
+                leafKeyPair.getPublic()));
+    }
+}
@@ -0,0 +1,166 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.certificatetransparency;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.io.IOUtils;
+import org.bouncycastle.util.encoders.Base64;
+import org.cesecore.keys.util.KeyTools;
+import org.cesecore.util.CertTools;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A CT log for unit tests, which listens on localhost and implements add-chain and add-pre-chain.
+ * The SCTs are signed with an EC key, but nothing is actually logged.
+ *
+ * @version $Id$
+ */
+public class MockCTLogServer {
+
+    private final HttpServer server;
+    private final KeyPair logKeyPair;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int httpStatus = 200;
+    private volatile long delay = 0;
+
+    public MockCTLogServer() throws Exception {
+        logKeyPair = KeyTools.genKeys("secp256r1", "EC");
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/ct/v1/add-chain", new SubmissionHandler(false));
+        server.createContext("/ct/v1/add-pre-chain", new SubmissionHandler(true));
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    /** @return the base URL, ending with /ct/v1/ */
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/ct/v1/";
+    }
+
+    public byte[] getPublicKeyBytes() {
+        return logKeyPair.getPublic().getEncoded();
+    }
+
+    /** @return a configuration of this log */
+    public CTLogInfo getLogInfo(final String label, final int timeout) {
+        return new CTLogInfo(getUrl(), getPublicKeyBytes(), label, timeout);
+    }
+
+    /** @return number of submissions received, including failed ones */
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    /** Makes the log respond with an HTTP error status, or 200 to work normally */
+    public void setHttpStatus(final int httpStatus) {
+        this.httpStatus = httpStatus;
+    }
+
+    /** Makes the log wait before it responds */
+    public void setDelay(final long delay) {
+        this.delay = delay;
+    }
+
+    private class SubmissionHandler implements HttpHandler {
+        private final boolean precert;
+
+        SubmissionHandler(final boolean precert) {
+            this.precert = precert;
+        }
+
+        @SuppressWarnings("unchecked")
+        @Override
+        public void handle(final HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            try {
+                final String request;
+                try (final InputStream is = exchange.getRequestBody()) {
+                    request = new String(IOUtils.toByteArray(is), StandardCharsets.UTF_8);
+                }
+                if (delay > 0) {
+                    Thread.sleep(delay);
+                }
+                if (httpStatus != 200) {
+                    exchange.sendResponseHeaders(httpStatus, -1);
+                    return;
+                }
+                final JSONArray chain = (JSONArray) ((JSONObject) new JSONParser().parse(request)).get("chain");
+                final X509Certificate leaf = CertTools.getCertfromByteArray(Base64.decode((String) chain.get(0)), X509Certificate.class);
+                final int entryType;
+                final byte[] issuerKeyHash;
+                final byte[] entry;
+                if (precert) {
+                    final X509Certificate issuer = CertTools.getCertfromByteArray(Base64.decode((String) chain.get(1)), X509Certificate.class);
+                    entryType = SignedCertificateTimestamp.ENTRY_TYPE_PRECERT;
+                    issuerKeyHash = MessageDigest.getInstance("SHA-256").digest(issuer.getPublicKey().getEncoded());
+                    entry = CertificateTransparencyImpl.removeExtension(leaf.getTBSCertificate(), CertificateTransparencyImpl.POISON_OID);
+                } else {
+                    entryType = SignedCertificateTimestamp.ENTRY_TYPE_X509;
+                    issuerKeyHash = null;
+                    entry = leaf.getEncoded();
+                }
+                final long timestamp = System.currentTimeMillis();
+                final Signature signer = Signature.getInstance("SHA256withECDSA");
+                signer.initSign(logKeyPair.getPrivate());
+                signer.update(SignedCertificateTimestamp.getSignedData(SignedCertificateTimestamp.VERSION_V1, timestamp, entryType, issuerKeyHash, entry,
+                        new byte[0]));
+                final byte[] signature = signer.sign();
+                final ByteArrayOutputStream digitallySigned = new ByteArrayOutputStream();
+                final DataOutputStream out = new DataOutputStream(digitallySigned);
+                out.writeByte(4); // SHA-256
+                out.writeByte(3); // ECDSA
+                out.writeShort(signature.length);
+                out.write(signature);
+                out.flush();
+                final JSONObject response = new JSONObject();
+                response.put("sct_version", SignedCertificateTimestamp.VERSION_V1);
+                response.put("id", Base64.toBase64String(MessageDigest.getInstance("SHA-256").digest(getPublicKeyBytes())));
+                response.put("timestamp", timestamp);
+                response.put("extensions", "");
+                response.put("signature", Base64.toBase64String(digitallySigned.toByteArray()));
+                final byte[] responseBytes = response.toJSONString().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, responseBytes.length);
+                try (final OutputStream os = exchange.getResponseBody()) {
+                    os.write(responseBytes);
+                }
+            } catch (Exception e) {
+                exchange.sendResponseHeaders(400, -1);
+            } finally {
+                exchange.close();
+            }
+        }
+    }
+}
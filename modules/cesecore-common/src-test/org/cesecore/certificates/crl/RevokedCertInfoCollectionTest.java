@@ -0,0 +1,250 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.crl;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.apache.log4j.Logger;
+import org.cesecore.util.CompressedCollection;
+import org.junit.Test;
+
+/**
+ * Tests storage, sorting and merging of revoked entries in a RevokedCertInfoCollection.
+ *
+ * @version $Id$
+ */
+public class RevokedCertInfoCollectionTest {
+
+    private static final Logger log = Logger.getLogger(RevokedCertInfoCollectionTest.class);
+
+    private static final String FINGERPRINT = "0123456789abcdef0123456789abcdef01234567";
+    private static final long NOW = 1546300800000L;
+
+    private static RevokedCertInfo revCertInfo(final BigInteger serial, final long revocationDate, final int reason) {
+        return new RevokedCertInfo(FINGERPRINT.getBytes(), serial.toByteArray(), revocationDate, reason, NOW + 86400000L);
+    }
+
+    private static BigInteger randomSerial(final Random random) {
+        return new BigInteger(159, random);
+    }
+
+    @Test
+    public void testRecordFormat() {
+        final RevokedCertInfoCollection collection = new RevokedCertInfoCollection();
+        collection.add(new RevokedCertInfo(FINGERPRINT.getBytes(), BigInteger.valueOf(4711).toByteArray(), NOW, RevokedCertInfo.REVOCATION_REASON_KEYCOMPROMISE, NOW + 1000));
+        collection.add(new RevokedCertInfo("Not-Hex".getBytes(), BigInteger.valueOf(-5).toByteArray(), 0, RevokedCertInfo.REVOCATION_REASON_REMOVEFROMCRL, 0));
+        collection.add(new RevokedCertInfo(null, new byte[] { 0, 0, 1 }, NOW, RevokedCertInfo.NOT_REVOKED, NOW));
+        collection.add(new RevokedCertInfo());
+        assertFalse("null should not be added", collection.add(null));
+        assertEquals(4, collection.size());
+        final Iterator<RevokedCertInfo> iterator = collection.iterator();
+        final RevokedCertInfo noSerial = iterator.next();
+        assertNull("Entries without serial number should be sorted first", noSerial.getUserCertificate());
+        assertNull(noSerial.getCertificateFingerprint());
+        assertNull(noSerial.getRevocationDate());
+        final RevokedCertInfo negative = iterator.next();
+        assertEquals(BigInteger.valueOf(-5), negative.getUserCertificate());
+        assertEquals("Not-Hex", negative.getCertificateFingerprint());
+        assertEquals(RevokedCertInfo.REVOCATION_REASON_REMOVEFROMCRL, negative.getReason());
+        assertNull(negative.getExpireDate());
+        final RevokedCertInfo one = iterator.next();
+        assertEquals("Redundant sign bytes should be removed", BigInteger.ONE, one.getUserCertificate());
+        assertNull(one.getCertificateFingerprint());
+        assertEquals(RevokedCertInfo.NOT_REVOKED, one.getReason());
+        final RevokedCertInfo revoked = iterator.next();
+        assertEquals(BigInteger.valueOf(4711), revoked.getUserCertificate());
+        assertEquals(FINGERPRINT, revoked.getCertificateFingerprint());
+        assertEquals(NOW, revoked.getRevocationDate().getTime());
+        assertEquals(NOW + 1000, revoked.getExpireDate().getTime());
+        assertEquals(RevokedCertInfo.REVOCATION_REASON_KEYCOMPROMISE, revoked.getReason());
+        assertFalse(iterator.hasNext());
+        collection.clear();
+    }
+
+    @Test
+    public void testNoAddAfterClose() {
+        final RevokedCertInfoCollection collection = new RevokedCertInfoCollection();
+        collection.add(revCertInfo(BigInteger.ONE, NOW, RevokedCertInfo.REVOCATION_REASON_UNSPECIFIED));
+        collection.closeForWrite();
+        try {
+            collection.add(revCertInfo(BigInteger.TEN, NOW, RevokedCertInfo.REVOCATION_REASON_UNSPECIFIED));
+            fail("RevokedCertInfoCollection should not allow add after closeForWrite().");
+        } catch (IllegalStateException e) {
+            log.debug(e.getMessage());
+        }
+        collection.clear();
+        collection.clear(); // Make sure that we can call clear multiple times
+        assertTrue(collection.isEmpty());
+        collection.add(revCertInfo(BigInteger.TEN, NOW, RevokedCertInfo.REVOCATION_REASON_UNSPECIFIED));
+        assertEquals(BigInteger.TEN, collection.iterator().next().getUserCertificate());
+        collection.clear();
+    }
+
+    @Test
+    public void testSpilledRunsAreMergedInOrder() {
+        final Random random = new Random(4711);
+        final RevokedCertInfoCollection collection = new RevokedCertInfoCollection(RevokedCertInfoCollection.MIN_MEMORY_LIMIT);
+        final List<BigInteger> serials = new ArrayList<>();
+        for (int i = 0; i < 20000; i++) {
+            // Every fourth entry is a new status of an earlier serial number. The revocation date is used as a sequence number.
+            final BigInteger serial = i % 4 == 3 ? serials.get(random.nextInt(serials.size())) : randomSerial(random);
+            serials.add(serial);
+            collection.add(revCertInfo(serial, i + 1, RevokedCertInfo.REVOCATION_REASON_UNSPECIFIED));
+        }
+        collection.closeForWrite();
+        assertTrue("Entries should have been written to disk", collection.getRunCount() > 1);
+        assertEquals(20000, collection.size());
+        for (int pass = 0; pass < 2; pass++) {
+            RevokedCertInfo previous = null;
+            int count = 0;
+            for (final RevokedCertInfo current : collection) {
+                if (previous != null) {
+                    final int order = previous.getUserCertificate().compareTo(current.getUserCertificate());
+                    assertTrue("Entries are not sorted by serial number", order <= 0);
+                    if (order == 0) {
+                        assertTrue("Entries with the same serial number are not in the order they were added",
+                                previous.getRevocationDate().before(current.getRevocationDate()));
+                    }
+                }
+                previous = current;
+                count++;
+            }
+            assertEquals("All entries should be returned in pass " + pass, 20000, count);
+        }
+        // Iterators that are not read to the end are closed by clear()
+        collection.iterator().next();
+        collection.clear();
+        assertEquals(0, collection.getRunCount());
+        assertFalse(collection.iterator().hasNext());
+    }
+
+    /** Many entries with the same serial number in one buffer must keep the order they were added in */
+    @Test
+    public void testSortIsStable() {
+        final Random random = new Random(4711);
+        final RevokedCertInfoCollection collection = new RevokedCertInfoCollection();
+        for (int i = 0; i < 10000; i++) {
+            collection.add(revCertInfo(BigInteger.valueOf(random.nextInt(100) - 50), i + 1, RevokedCertInfo.REVOCATION_REASON_UNSPECIFIED));
+        }
+        collection.closeForWrite();
+        assertEquals("Entries should be kept in memory", 0, collection.getRunCount());
+        RevokedCertInfo previous = null;
+        int count = 0;
+        for (final RevokedCertInfo current : collection) {
+            if (previous != null) {
+                final int order = previous.getUserCertificate().compareTo(current.getUserCertificate());
+                assertTrue("Entries are not sorted by serial number", order <= 0);
+                if (order == 0) {
+                    assertTrue("Entries with the same serial number are not in the order they were added",
+                            previous.getRevocationDate().before(current.getRevocationDate()));
+                }
+            }
+            previous = current;
+            count++;
+        }
+        assertEquals(10000, count);
+        collection.clear();
+    }
+
+    @Test
+    public void testSerialization() throws IOException, ClassNotFoundException {
+        final Random random = new Random(17);
+        final RevokedCertInfoCollection collection = new RevokedCertInfoCollection(RevokedCertInfoCollection.MIN_MEMORY_LIMIT);
+        for (int i = 0; i < 1000; i++) {
+            collection.add(revCertInfo(randomSerial(random), NOW + i, RevokedCertInfo.REVOCATION_REASON_SUPERSEDED));
+        }
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (final ObjectOutputStream oos = new ObjectOutputStream(baos)) {
+            oos.writeObject(collection);
+        }
+        final RevokedCertInfoCollection copy;
+        try (final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            copy = (RevokedCertInfoCollection) ois.readObject();
+        }
+        assertEquals(collection.size(), copy.size());
+        final Iterator<RevokedCertInfo> expected = collection.iterator();
+        for (final RevokedCertInfo actual : copy) {
+            final RevokedCertInfo next = expected.next();
+            assertEquals(next.getUserCertificate(), actual.getUserCertificate());
+            assertEquals(next.getRevocationDate(), actual.getRevocationDate());
+            assertArrayEquals(next.getCertificateFingerprint().getBytes(), actual.getCertificateFingerprint().getBytes());
+        }
+        collection.clear();
+        copy.clear();
+    }
+
+    /** The merge of sorted collections must give the same result as the merge of unsorted collections */
+    @Test
+    public void testSortedMergeIsEquivalent() {
+        final int[] reasons = { RevokedCertInfo.NOT_REVOKED, RevokedCertInfo.REVOCATION_REASON_CERTIFICATEHOLD, RevokedCertInfo.REVOCATION_REASON_REMOVEFROMCRL,
+                RevokedCertInfo.REVOCATION_REASON_UNSPECIFIED, RevokedCertInfo.REVOCATION_REASON_KEYCOMPROMISE };
+        final Random random = new Random(42);
+        final List<BigInteger> serials = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            serials.add(randomSerial(random));
+        }
+        final RevokedCertInfoCollection sortedA = new RevokedCertInfoCollection(RevokedCertInfoCollection.MIN_MEMORY_LIMIT);
+        final RevokedCertInfoCollection sortedB = new RevokedCertInfoCollection(RevokedCertInfoCollection.MIN_MEMORY_LIMIT);
+        final CompressedCollection<RevokedCertInfo> unsortedA = new CompressedCollection<>();
+        final CompressedCollection<RevokedCertInfo> unsortedB = new CompressedCollection<>();
+        for (int i = 0; i < serials.size(); i += 2) {
+            // 'a' may not contain duplicates
+            final RevokedCertInfo revokedCertInfo = revCertInfo(serials.get(i), NOW + random.nextInt(1000), reasons[random.nextInt(reasons.length)]);
+            sortedA.add(revokedCertInfo);
+            unsortedA.add(revokedCertInfo);
+        }
+        for (int i = 0; i < 2000; i++) {
+            final RevokedCertInfo revokedCertInfo = revCertInfo(serials.get(random.nextInt(serials.size())), NOW + random.nextInt(1000), reasons[random.nextInt(reasons.length)]);
+            sortedB.add(revokedCertInfo);
+            unsortedB.add(revokedCertInfo);
+        }
+        for (final long lastBaseCrlDate : new long[] { -1, NOW + 500 }) {
+            final Collection<RevokedCertInfo> sortedResult = RevokedCertInfo.mergeByDateAndStatus(sortedA, sortedB, lastBaseCrlDate);
+            final Collection<RevokedCertInfo> unsortedResult = RevokedCertInfo.mergeByDateAndStatus(unsortedA, unsortedB, lastBaseCrlDate);
+            assertEquals(toMap(unsortedResult), toMap(sortedResult));
+            sortedResult.clear();
+            unsortedResult.clear();
+        }
+        sortedA.clear();
+        sortedB.clear();
+        unsortedA.clear();
+        unsortedB.clear();
+    }
+
+    private static TreeMap<BigInteger, String> toMap(final Collection<RevokedCertInfo> revokedCertInfos) {
+        final TreeMap<BigInteger, String> ret = new TreeMap<>();
+        for (final RevokedCertInfo revokedCertInfo : revokedCertInfos) {
+            final String previous = ret.put(revokedCertInfo.getUserCertificate(), revokedCertInfo.getRevocationDate().getTime() + ":" + revokedCertInfo.getReason());
+            assertNull("Duplicate entry for " + revokedCertInfo.getUserCertificate(), previous);
+        }
+        return ret;
+    }
+}
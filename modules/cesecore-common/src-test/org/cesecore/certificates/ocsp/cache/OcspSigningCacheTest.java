@@ -0,0 +1,209 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.ocsp.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.cesecore.certificates.certificate.CertificateStatus;
+import org.cesecore.certificates.util.AlgorithmConstants;
+import org.cesecore.keybind.impl.OcspKeyBinding.ResponderIdType;
+import org.cesecore.keys.util.KeyTools;
+import org.cesecore.util.CertTools;
+import org.cesecore.util.CryptoProviderTools;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests staging and incremental reloads of the OCSP signing cache.
+ * 
+ * @version $Id$
+ */
+public class OcspSigningCacheTest {
+
+    private static KeyPair keyPair;
+    private static X509Certificate caCertificate1;
+    private static X509Certificate caCertificate2;
+    private static X509Certificate externalCaCertificate;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        CryptoProviderTools.installBCProviderIfNotAvailable();
+        keyPair = KeyTools.genKeys("secp256r1", AlgorithmConstants.KEYALGORITHM_ECDSA);
+        caCertificate1 = createCaCertificate("CN=OcspSigningCacheTest CA 1");
+        caCertificate2 = createCaCertificate("CN=OcspSigningCacheTest CA 2");
+        externalCaCertificate = createCaCertificate("CN=OcspSigningCacheTest External CA");
+    }
+
+    @After
+    public void after() {
+        // Leave an empty cache for other tests
+        reload(null);
+    }
+
+    private static X509Certificate createCaCertificate(final String subjectDn) throws Exception {
+        return CertTools.genSelfCert(subjectDn, 365, null, keyPair.getPrivate(), keyPair.getPublic(), AlgorithmConstants.SIGALG_SHA256_WITH_ECDSA,
+                true);
+    }
+
+    private static OcspSigningCacheEntry createCaEntry(final X509Certificate caCertificate) {
+        return new OcspSigningCacheEntry(caCertificate, CertificateStatus.OK, Collections.singletonList(caCertificate), null, keyPair.getPrivate(),
+                "BC", null, ResponderIdType.KEYHASH);
+    }
+
+    private static OcspSigningCacheEntry createPlaceholderEntry(final X509Certificate caCertificate) {
+        return new OcspSigningCacheEntry(caCertificate, CertificateStatus.OK, null, null, null, null, null, ResponderIdType.KEYHASH);
+    }
+
+    private static OcspSigningCacheEntry getEntry(final X509Certificate caCertificate) {
+        return OcspSigningCache.INSTANCE.getEntry(OcspSigningCache.getCertificateIDFromCertificate(caCertificate).get(0));
+    }
+
+    /** Commits an empty reload */
+    private static void reload(final String defaultResponderSubjectDn) {
+        OcspSigningCache.INSTANCE.stagingStart();
+        try {
+            OcspSigningCache.INSTANCE.stagingCommit(defaultResponderSubjectDn);
+        } finally {
+            OcspSigningCache.INSTANCE.stagingRelease();
+        }
+    }
+
+    @Test
+    public void testKeepUnchangedSources() {
+        final OcspSigningCacheEntry entry1 = createCaEntry(caCertificate1);
+        final OcspSigningCacheEntry entry2 = createCaEntry(caCertificate2);
+        OcspSigningCache.INSTANCE.stagingStart();
+        try {
+            OcspSigningCache.INSTANCE.stagingAdd("ca:1", Arrays.asList("v1"), entry1);
+            OcspSigningCache.INSTANCE.stagingAdd("ca:2", Arrays.asList("v1"), entry2);
+            OcspSigningCache.INSTANCE.stagingCommit(null);
+        } finally {
+            OcspSigningCache.INSTANCE.stagingRelease();
+        }
+        assertSame(entry1, getEntry(caCertificate1));
+        assertSame(entry2, getEntry(caCertificate2));
+        assertEquals("Each entry should be found by SHA-1 and SHA-256 certificate ID.", 4, OcspSigningCache.INSTANCE.getEntries().size());
+        // Reload where the first CA is unchanged, and the second has changed
+        final OcspSigningCacheEntry newEntry2 = createCaEntry(caCertificate2);
+        OcspSigningCache.INSTANCE.stagingStart();
+        try {
+            assertTrue("Unchanged source should be kept.", OcspSigningCache.INSTANCE.stagingKeep("ca:1", Arrays.asList("v1")));
+            assertFalse("Changed source should not be kept.", OcspSigningCache.INSTANCE.stagingKeep("ca:2", Arrays.asList("v2")));
+            assertFalse("Unknown source should not be kept.", OcspSigningCache.INSTANCE.stagingKeep("ca:3", Arrays.asList("v1")));
+            OcspSigningCache.INSTANCE.stagingAdd("ca:2", Arrays.asList("v2"), newEntry2);
+            OcspSigningCache.INSTANCE.stagingCommit(null);
+        } finally {
+            OcspSigningCache.INSTANCE.stagingRelease();
+        }
+        assertSame("Kept entry should be the same object.", entry1, getEntry(caCertificate1));
+        assertSame("Changed entry should be replaced.", newEntry2, getEntry(caCertificate2));
+        // Reload where the second CA is no longer present
+        OcspSigningCache.INSTANCE.stagingStart();
+        try {
+            assertTrue(OcspSigningCache.INSTANCE.stagingKeep("ca:1", Arrays.asList("v1")));
+            OcspSigningCache.INSTANCE.stagingCommit(null);
+        } finally {
+            OcspSigningCache.INSTANCE.stagingRelease();
+        }
+        assertSame(entry1, getEntry(caCertificate1));
+        assertNull("Entry of a removed source should be removed.", getEntry(caCertificate2));
+    }
+
+    @Test
+    public void testEntriesWithoutVersionAreNotKept() {
+        OcspSigningCache.INSTANCE.stagingStart();
+        try {
+            OcspSigningCache.INSTANCE.stagingAdd(createCaEntry(caCertificate1));
+            OcspSigningCache.INSTANCE.stagingAdd("ca:2", null, createCaEntry(caCertificate2));
+            OcspSigningCache.INSTANCE.stagingCommit(null);
+        } finally {
+            OcspSigningCache.INSTANCE.stagingRelease();
+        }
+        assertNotNull(getEntry(caCertificate1));
+        OcspSigningCache.INSTANCE.stagingStart();
+        try {
+            assertFalse(OcspSigningCache.INSTANCE.stagingKeep("ca:2", null));
+            OcspSigningCache.INSTANCE.stagingCommit(null);
+        } finally {
+            OcspSigningCache.INSTANCE.stagingRelease();
+        }
+        assertNull(getEntry(caCertificate1));
+        assertNull(getEntry(caCertificate2));
+    }
+
+    @Test
+    public void testLaterSourceReplacesEntry() {
+        final OcspSigningCacheEntry caEntry = createCaEntry(caCertificate1);
+        final OcspSigningCacheEntry keyBindingEntry = createCaEntry(caCertificate1);
+        OcspSigningCache.INSTANCE.stagingStart();
+        try {
+            OcspSigningCache.INSTANCE.stagingAdd("ca:1", Arrays.asList("v1"), caEntry);
+            OcspSigningCache.INSTANCE.stagingAdd("keybinding:1", Arrays.asList("v1"), keyBindingEntry);
+            OcspSigningCache.INSTANCE.stagingCommit(null);
+        } finally {
+            OcspSigningCache.INSTANCE.stagingRelease();
+        }
+        assertSame(keyBindingEntry, getEntry(caCertificate1));
+        // The order is the same when the sources are kept
+        OcspSigningCache.INSTANCE.stagingStart();
+        try {
+            assertTrue(OcspSigningCache.INSTANCE.stagingKeep("ca:1", Arrays.asList("v1")));
+            assertTrue(OcspSigningCache.INSTANCE.stagingKeep("keybinding:1", Arrays.asList("v1")));
+            OcspSigningCache.INSTANCE.stagingCommit(null);
+        } finally {
+            OcspSigningCache.INSTANCE.stagingRelease();
+        }
+        assertSame(keyBindingEntry, getEntry(caCertificate1));
+    }
+
+    @Test
+    public void testPlaceholderUsesDefaultResponder() {
+        final String defaultResponderDn = CertTools.getSubjectDN(caCertificate1);
+        OcspSigningCache.INSTANCE.stagingStart();
+        try {
+            OcspSigningCache.INSTANCE.stagingAdd("ca:1", Arrays.asList("v1"), createCaEntry(caCertificate1));
+            OcspSigningCache.INSTANCE.stagingAdd("ca:3", Arrays.asList("v1"), createPlaceholderEntry(externalCaCertificate));
+            OcspSigningCache.INSTANCE.stagingCommit(defaultResponderDn);
+        } finally {
+            OcspSigningCache.INSTANCE.stagingRelease();
+        }
+        assertNotNull(OcspSigningCache.INSTANCE.getDefaultEntry());
+        final OcspSigningCacheEntry externalEntry = getEntry(externalCaCertificate);
+        assertNotNull("Placeholder should be replaced by the default responder.", externalEntry);
+        assertFalse(externalEntry.isPlaceholder());
+        assertEquals(caCertificate1, externalEntry.getSigningCertificate());
+        // Without default responder the kept placeholder is removed
+        OcspSigningCache.INSTANCE.stagingStart();
+        try {
+            assertTrue(OcspSigningCache.INSTANCE.stagingKeep("ca:1", Arrays.asList("v1")));
+            assertTrue(OcspSigningCache.INSTANCE.stagingKeep("ca:3", Arrays.asList("v1")));
+            OcspSigningCache.INSTANCE.stagingCommit(null);
+        } finally {
+            OcspSigningCache.INSTANCE.stagingRelease();
+        }
+        assertNull(OcspSigningCache.INSTANCE.getDefaultEntry());
+        assertNull(getEntry(externalCaCertificate));
+        assertNotNull(getEntry(caCertificate1));
+    }
+}
@@ -13,6 +13,7 @@
 
 package org.cesecore.certificates.ocsp.logging;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.lang.reflect.Method;
@@ -43,6 +44,19 @@ public class PatternLoggerTest {
         log.trace("<testPatternLogger");
     }
 
+    /** Values must be written literally and unknown keys must be written as the placeholder itself. */
+    @Test
+    public void testPatternLoggerLiteralValues() throws Exception {
+        log.trace(">testPatternLoggerLiteralValues");
+        final PatternLogger patternLogger = new TestPatternLogger("\\$\\{(.+?)\\}", "a${VAR1}b${UNKNOWN}c${VAR2}", "yyyy-MM-dd", "GMT");
+        patternLogger.paramPut("VAR1", "$1\\");
+        patternLogger.paramPut("VAR2", (String) null);
+        final Method m = PatternLogger.class.getDeclaredMethod("interpolate", new Class[0]);
+        m.setAccessible(true);
+        assertEquals("a$1\\b${UNKNOWN}c", m.invoke(patternLogger));
+        log.trace("<testPatternLoggerLiteralValues");
+    }
+
     /** Helper method that replaces all ${VARx} where x={0..10} with "contentx" and asserts that the result is the expected using regexp. */
     private void testPatternLoggerInternal(String pattern, String dateFormat, String timeZone, String expected) throws Exception {
         log.trace(">testPatternLoggerInternal");
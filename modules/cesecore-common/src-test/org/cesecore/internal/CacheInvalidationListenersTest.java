@@ -0,0 +1,95 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests dispatching of cluster cache invalidations to the local caches.
+ *
+ * @version $Id$
+ */
+public class CacheInvalidationListenersTest {
+
+    private static class TestCache extends CommonCacheBase<String> {
+        private final long cacheTime;
+        TestCache(final long cacheTime) {
+            this.cacheTime = cacheTime;
+        }
+        @Override
+        protected long getCacheTime() {
+            return cacheTime;
+        }
+        @Override
+        protected long getMaxCacheLifeTime() {
+            return 0;
+        }
+    }
+
+    @Test
+    public void testListenerDispatch() {
+        final List<String> invalidated = new ArrayList<>();
+        CacheInvalidationListeners.INSTANCE.addListener("TEST_LISTENER", new CacheInvalidationListener() {
+            @Override
+            public void onInvalidation(final String entryKey) {
+                invalidated.add(entryKey);
+            }
+        });
+        assertTrue(CacheInvalidationListeners.INSTANCE.invalidate("TEST_LISTENER", "17"));
+        assertTrue(CacheInvalidationListeners.INSTANCE.invalidate("TEST_LISTENER", null));
+        assertFalse("Invalidation of a cache without listener should be ignored", CacheInvalidationListeners.INSTANCE.invalidate("TEST_UNKNOWN", "17"));
+        assertEquals(2, invalidated.size());
+        assertEquals("17", invalidated.get(0));
+        assertNull(invalidated.get(1));
+    }
+
+    @Test
+    public void testCommonCacheInvalidation() {
+        final TestCache cache = new TestCache(60000L);
+        cache.updateWith(1, 11, "one", "object one");
+        cache.updateWith(2, 22, "two", "object two");
+        assertFalse(cache.shouldCheckForUpdates(1));
+        CacheInvalidationListeners.INSTANCE.addListener("TEST_COMMONCACHE", cache);
+        CacheInvalidationListeners.INSTANCE.invalidate("TEST_COMMONCACHE", "1");
+        // The invalidated entry is kept until it has been compared with the database, but only that entry should be checked
+        assertEquals("object one", cache.getEntry(1));
+        assertTrue(cache.shouldCheckForUpdates(1));
+        assertFalse(cache.shouldCheckForUpdates(2));
+        CacheInvalidationListeners.INSTANCE.invalidate("TEST_COMMONCACHE", null);
+        assertNull(cache.getEntry(2));
+    }
+
+    /** Invalidation must work also when the cache time is so long that the entries would otherwise never be checked */
+    @Test
+    public void testInvalidationWithUnlimitedCacheTime() {
+        final TestCache cache = new TestCache(Long.MAX_VALUE);
+        cache.updateWith(1, 11, "one", "object one");
+        assertFalse(cache.shouldCheckForUpdates(1));
+        cache.markStale(1);
+        assertTrue(cache.shouldCheckForUpdates(1));
+        // Only the first caller should check the database
+        assertFalse(cache.shouldCheckForUpdates(1));
+        // Unchanged in the database, so the entry is kept and no longer stale
+        cache.updateWith(1, 11, "one", "object one");
+        assertEquals("object one", cache.getEntry(1));
+        assertFalse(cache.shouldCheckForUpdates(1));
+    }
+}
@@ -19,6 +19,9 @@ import static org.junit.Assume.assumeTrue;
 import java.security.Security;
 import java.util.Properties;
 
+import org.bouncycastle.operator.ContentSigner;
+import org.cesecore.config.ConfigurationHolder;
+import org.cesecore.keys.token.p11.P11SignerPools;
 import org.cesecore.keys.token.p11.Pkcs11SlotLabelType;
 import org.cesecore.keys.token.p11.exception.NoSuchSlotException;
 import org.cesecore.util.CryptoProviderTools;
@@ -103,6 +106,33 @@ public class PKCS11CryptoTokenTest extends CryptoTokenTestBase {
         Assert.assertNotSame("Differen token was expected!", token3.getP11slot(), token5.getP11slot());
     }
 
+    @Test
+    public void testSignerPool() throws Exception {
+        ConfigurationHolder.updateConfiguration("pkcs11.signerpool.size", "2");
+        final CryptoToken token = createPKCS11Token();
+        try {
+            token.activate(tokenpin.toCharArray());
+            token.deleteEntry("signerpooltest");
+            token.generateKeyPair("1024", "signerpooltest");
+            for (int i = 0; i < 3; i++) {
+                final ContentSigner signer = P11SignerPools.getContentSigner("SHA256WithRSA", token.getSignProviderName(),
+                        token.getPrivateKey("signerpooltest"), 20480);
+                signer.getOutputStream().write(new byte[] { 1, 2, 3 });
+                assertNotNull(signer.getSignature());
+            }
+            assertEquals("One pool should have been created for the key.", 1, P11SignerPools.getStatistics().size());
+            assertEquals(1, P11SignerPools.getStatistics().get(0).getCreated());
+            assertEquals(3, P11SignerPools.getStatistics().get(0).getBorrowed());
+            token.deactivate();
+            assertEquals("The pools of the token should be removed when the token is deactivated.", 0, P11SignerPools.getStatistics().size());
+        } finally {
+            token.activate(tokenpin.toCharArray());
+            token.deleteEntry("signerpooltest");
+            token.deactivate();
+            ConfigurationHolder.updateConfiguration("pkcs11.signerpool.size", "0");
+        }
+    }
+
     @SuppressWarnings("deprecation") //This test will be removed when the deprecated methods it tests are.
     @Test
     public void testUpgradePropertiesFileFrom5_0_x() {
@@ -12,11 +12,18 @@
  *************************************************************************/
 package org.cesecore.keys.token;
 
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.security.PrivateKey;
+import java.security.PublicKey;
 import java.util.Properties;
 
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.cesecore.config.ConfigurationHolder;
 import org.cesecore.keys.token.p11.exception.NoSuchSlotException;
 import org.cesecore.keys.util.KeyTools;
 import org.cesecore.util.CryptoProviderTools;
@@ -111,6 +118,61 @@ public class SoftCryptoTokenTest extends CryptoTokenTestBase {
 		KeyTools.testKey(cryptoToken2.getPrivateKey("foo"), cryptoToken2.getPublicKey("foo"), null);
 	}
 
+    @Test
+    public void testKeyCache() throws Exception {
+        final CryptoToken cryptoToken = createSoftToken(true);
+        cryptoToken.activate("foo123".toCharArray());
+        cryptoToken.generateKeyPair("1024", "cachetest");
+        final PrivateKey privateKey = cryptoToken.getPrivateKey("cachetest");
+        final PublicKey publicKey = cryptoToken.getPublicKey("cachetest");
+        assertSame("Private key should be cached.", privateKey, cryptoToken.getPrivateKey("cachetest"));
+        assertSame("Public key should be cached.", publicKey, cryptoToken.getPublicKey("cachetest"));
+        // Generating a new key with the same alias must replace the cached keys
+        cryptoToken.generateKeyPair("1024", "cachetest");
+        assertNotEquals("New private key should be returned after key generation.", privateKey, cryptoToken.getPrivateKey("cachetest"));
+        assertNotEquals("New public key should be returned after key generation.", publicKey, cryptoToken.getPublicKey("cachetest"));
+        KeyTools.testKey(cryptoToken.getPrivateKey("cachetest"), cryptoToken.getPublicKey("cachetest"), null);
+        // Deleted keys must not be returned from the cache
+        cryptoToken.deleteEntry("cachetest");
+        try {
+            cryptoToken.getPrivateKey("cachetest");
+            fail("Deleted key should not be returned.");
+        } catch (CryptoTokenOfflineException e) {
+            // NOPMD: expected
+        }
+        // Keys must not be available from the cache when the token is deactivated
+        cryptoToken.generateKeyPair("1024", "cachetest");
+        cryptoToken.getPrivateKey("cachetest");
+        cryptoToken.deactivate();
+        try {
+            cryptoToken.getPrivateKey("cachetest");
+            fail("Key should not be available when the token is deactivated.");
+        } catch (CryptoTokenOfflineException e) {
+            // NOPMD: expected
+        }
+    }
+
+    @Test
+    public void testZeroizeOnDeactivation() throws Exception {
+        ConfigurationHolder.updateConfiguration("cryptotoken.zeroizeondeactivation", "true");
+        try {
+            // Auto activated with the default password, which must still work after the stored password has been cleared
+            final CryptoToken cryptoToken = createSoftToken(false);
+            cryptoToken.generateKeyPair("1024", "zeroizetest");
+            cryptoToken.getPrivateKey("zeroizetest");
+            cryptoToken.deactivate();
+            assertEquals(CryptoToken.STATUS_ACTIVE, cryptoToken.getTokenStatus());
+            KeyTools.testKey(cryptoToken.getPrivateKey("zeroizetest"), cryptoToken.getPublicKey("zeroizetest"), null);
+            cryptoToken.deactivate();
+            // The key store data must still be readable with the password
+            final CryptoToken copy = CryptoTokenFactory.createCryptoToken(SoftCryptoToken.class.getName(), cryptoToken.getProperties(),
+                    cryptoToken.getTokenData(), 112, "Soft CryptoToken copy");
+            KeyTools.testKey(copy.getPrivateKey("zeroizetest"), copy.getPublicKey("zeroizetest"), null);
+        } finally {
+            ConfigurationHolder.updateConfiguration("cryptotoken.zeroizeondeactivation", "false");
+        }
+    }
+
 	@Override
 	String getProvider() {
 		return BouncyCastleProvider.PROVIDER_NAME;
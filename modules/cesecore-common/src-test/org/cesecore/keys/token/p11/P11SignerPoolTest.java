@@ -0,0 +1,253 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.keys.token.p11;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.Signature;
+
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.RuntimeOperatorException;
+import org.cesecore.keys.util.KeyTools;
+import org.cesecore.util.CryptoProviderTools;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the pool of signers, with software keys since the pool itself does not depend on PKCS#11.
+ *
+ * @version $Id$
+ */
+public class P11SignerPoolTest {
+
+    private static final String ALGORITHM = "SHA256WithRSA";
+    private static final byte[] DATA = "data to sign".getBytes(StandardCharsets.US_ASCII);
+
+    private static KeyPair keyPair;
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        CryptoProviderTools.installBCProviderIfNotAvailable();
+        keyPair = KeyTools.genKeys("1024", null, "RSA");
+    }
+
+    private static P11SignerPool createPool(final int maxSize, final long borrowTimeout, final long maxIdleTime) throws Exception {
+        final P11SignerPool pool = new P11SignerPool("test", ALGORITHM, BouncyCastleProvider.PROVIDER_NAME, keyPair.getPrivate(), maxSize,
+                borrowTimeout, maxIdleTime, 60000);
+        pool.prepare();
+        return pool;
+    }
+
+    /** A pool where the signers fail when the sessions to the HSM are lost, like signers of a network HSM that has been restarted */
+    private static class LostSessionPool extends P11SignerPool {
+        private volatile int session = 0;
+
+        private LostSessionPool(final long validationInterval) throws Exception {
+            super("test", ALGORITHM, BouncyCastleProvider.PROVIDER_NAME, keyPair.getPrivate(), 2, 1000, 60000, validationInterval);
+            prepare();
+        }
+
+        private void loseSessions() {
+            session++;
+        }
+
+        @Override
+        ContentSigner createContentSigner() throws OperatorCreationException {
+            final ContentSigner signer = super.createContentSigner();
+            final int signerSession = session;
+            return new ContentSigner() {
+                @Override
+                public AlgorithmIdentifier getAlgorithmIdentifier() {
+                    return signer.getAlgorithmIdentifier();
+                }
+
+                @Override
+                public OutputStream getOutputStream() {
+                    return signer.getOutputStream();
+                }
+
+                @Override
+                public byte[] getSignature() {
+                    if (signerSession != session) {
+                        throw new RuntimeOperatorException("Session lost.");
+                    }
+                    return signer.getSignature();
+                }
+            };
+        }
+    }
+
+    private static boolean verify(final byte[] signature) throws Exception {
+        final Signature verifier = Signature.getInstance(ALGORITHM, BouncyCastleProvider.PROVIDER_NAME);
+        verifier.initVerify(keyPair.getPublic());
+        verifier.update(DATA);
+        return verifier.verify(signature);
+    }
+
+    @Test
+    public void testSignAndReuse() throws Exception {
+        final P11SignerPool pool = createPool(4, 1000, 60000);
+        for (int i = 0; i < 3; i++) {
+            final ContentSigner signer = pool.getContentSigner();
+            try (final OutputStream os = signer.getOutputStream()) {
+                os.write(DATA);
+            }
+            assertTrue("Signature from pool should verify.", verify(signer.getSignature()));
+        }
+        final P11SignerPool.Statistics statistics = pool.getStatistics();
+        assertEquals("Signers should have been reused.", 1, statistics.getCreated());
+        assertEquals(3, statistics.getBorrowed());
+        assertEquals(0, statistics.getInUse());
+        assertEquals(1, statistics.getIdle());
+        assertEquals(3, statistics.getBorrowTime().getCount());
+    }
+
+    /** A pool that has not been prepared creates its first signer when it is needed */
+    @Test
+    public void testLazyFirstSigner() throws Exception {
+        final P11SignerPool pool = new P11SignerPool("test", ALGORITHM, BouncyCastleProvider.PROVIDER_NAME, keyPair.getPrivate(), 2, 1000, 60000,
+                60000);
+        assertEquals(0, pool.getStatistics().getCreated());
+        final ContentSigner signer = pool.getContentSigner();
+        assertEquals(PKCSObjectIdentifiers.sha256WithRSAEncryption, signer.getAlgorithmIdentifier().getAlgorithm());
+        assertEquals(1, pool.getStatistics().getCreated());
+        assertEquals(1, pool.getStatistics().getIdle());
+        try (final OutputStream os = signer.getOutputStream()) {
+            os.write(DATA);
+        }
+        assertTrue(verify(signer.getSignature()));
+        assertEquals("The signer created for the algorithm identifier should be reused.", 1, pool.getStatistics().getCreated());
+    }
+
+    @Test
+    public void testPrepareWithWrongKey() throws Exception {
+        final P11SignerPool pool = new P11SignerPool("test", "SHA256WithECDSA", BouncyCastleProvider.PROVIDER_NAME, keyPair.getPrivate(), 2, 1000,
+                60000, 60000);
+        try {
+            pool.prepare();
+            fail("A key that does not match the algorithm should be reported when the pool is prepared.");
+        } catch (OperatorCreationException e) {
+            // NOPMD: expected
+        }
+        assertEquals(0, pool.getStatistics().getIdle());
+    }
+
+    @Test
+    public void testBorrowTimeout() throws Exception {
+        final P11SignerPool pool = createPool(1, 10, 60000);
+        final P11SignerPool.PooledSigner borrowed = pool.borrow();
+        try {
+            pool.sign(DATA);
+            fail("Signing should time out when all signers are in use.");
+        } catch (RuntimeOperatorException e) {
+            // NOPMD: expected
+        }
+        assertEquals(1, pool.getStatistics().getTimeouts());
+        assertEquals(1, pool.getStatistics().getInUse());
+        pool.release(borrowed, true);
+        assertTrue("Signing should work when a signer has been returned.", verify(pool.sign(DATA)));
+        assertEquals(1, pool.getStatistics().getCreated());
+    }
+
+    @Test
+    public void testConcurrentSigners() throws Exception {
+        final P11SignerPool pool = createPool(2, 1000, 60000);
+        final P11SignerPool.PooledSigner first = pool.borrow();
+        final P11SignerPool.PooledSigner second = pool.borrow();
+        assertEquals("A second signer should be created when the first is in use.", 2, pool.getStatistics().getCreated());
+        assertEquals(2, pool.getStatistics().getInUse());
+        pool.release(first, true);
+        pool.release(second, true);
+        assertEquals(2, pool.getStatistics().getIdle());
+    }
+
+    @Test
+    public void testIdleSignersAreDiscarded() throws Exception {
+        final P11SignerPool pool = createPool(2, 1000, 0);
+        Thread.sleep(1);
+        assertTrue(verify(pool.sign(DATA)));
+        final P11SignerPool.Statistics statistics = pool.getStatistics();
+        assertEquals("The idle signer should have been replaced.", 2, statistics.getCreated());
+        assertEquals(1, statistics.getDiscarded());
+    }
+
+    @Test
+    public void testFailedSignerIsDiscarded() throws Exception {
+        final P11SignerPool pool = createPool(2, 1000, 60000);
+        final P11SignerPool.PooledSigner first = pool.borrow();
+        final P11SignerPool.PooledSigner second = pool.borrow();
+        pool.release(first, true);
+        pool.release(second, false);
+        P11SignerPool.Statistics statistics = pool.getStatistics();
+        assertEquals(1, statistics.getFailures());
+        assertEquals("Only the failed signer should be discarded.", 1, statistics.getDiscarded());
+        assertEquals(1, statistics.getIdle());
+        assertTrue(verify(pool.sign(DATA)));
+        statistics = pool.getStatistics();
+        assertEquals("The unused signer should be tested after the failure.", 1, statistics.getValidations());
+        assertEquals(0, statistics.getInvalid());
+        assertEquals("The unused signer should be reused when it works.", 2, statistics.getCreated());
+        assertTrue(verify(pool.sign(DATA)));
+        assertEquals("A signer used after the failure should not be tested again.", 1, pool.getStatistics().getValidations());
+    }
+
+    @Test
+    public void testInvalidSignersAreDiscardedAfterFailure() throws Exception {
+        final LostSessionPool pool = new LostSessionPool(60000);
+        final P11SignerPool.PooledSigner first = pool.borrow();
+        final P11SignerPool.PooledSigner second = pool.borrow();
+        pool.release(first, true);
+        pool.loseSessions();
+        pool.release(second, false);
+        assertTrue("The signature should be made with a new signer.", verify(pool.sign(DATA)));
+        final P11SignerPool.Statistics statistics = pool.getStatistics();
+        assertEquals(1, statistics.getValidations());
+        assertEquals(1, statistics.getInvalid());
+        assertEquals("The failed and the invalid signer should be discarded.", 2, statistics.getDiscarded());
+        assertEquals(3, statistics.getCreated());
+        assertEquals(1, statistics.getIdle());
+    }
+
+    @Test
+    public void testSignersAreTestedAfterValidationInterval() throws Exception {
+        final LostSessionPool pool = new LostSessionPool(0);
+        assertTrue(verify(pool.sign(DATA)));
+        assertEquals(1, pool.getStatistics().getValidations());
+        assertEquals("A signer that works should be reused.", 1, pool.getStatistics().getCreated());
+        pool.loseSessions();
+        assertTrue("A lost session should be detected before the signer is used.", verify(pool.sign(DATA)));
+        final P11SignerPool.Statistics statistics = pool.getStatistics();
+        assertEquals(2, statistics.getValidations());
+        assertEquals(1, statistics.getInvalid());
+        assertEquals(0, statistics.getFailures());
+        assertEquals(2, statistics.getCreated());
+    }
+
+    @Test
+    public void testClear() throws Exception {
+        final P11SignerPool pool = createPool(2, 1000, 60000);
+        assertEquals(1, pool.clear());
+        assertEquals(0, pool.getStatistics().getIdle());
+        assertTrue(verify(pool.sign(DATA)));
+        assertEquals(2, pool.getStatistics().getCreated());
+    }
+}
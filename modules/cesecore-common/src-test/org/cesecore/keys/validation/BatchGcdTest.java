@@ -0,0 +1,100 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.keys.validation;
+
+import static org.junit.Assert.assertEquals;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the product/remainder tree batch GCD against pairwise gcd.
+ *
+ * @version $Id$
+ */
+public class BatchGcdTest {
+
+    private final Random random = new Random(4711);
+
+    private BigInteger prime() {
+        return BigInteger.probablePrime(64, random);
+    }
+
+    @Test
+    public void testGcdWithOthers() {
+        final BigInteger p = prime();
+        final BigInteger q = prime();
+        final List<BigInteger> moduli = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            moduli.add(prime().multiply(prime()));
+        }
+        // One pair sharing p, and one modulus sharing both factors with two other moduli
+        final BigInteger sharedP1 = p.multiply(prime());
+        final BigInteger sharedP2 = p.multiply(prime());
+        final BigInteger r = prime();
+        final BigInteger sharedPQ1 = q.multiply(r);
+        final BigInteger sharedPQ2 = q.multiply(prime());
+        final BigInteger sharedPQ3 = r.multiply(prime());
+        moduli.addAll(Arrays.asList(sharedP1, sharedP2, sharedPQ1, sharedPQ2, sharedPQ3));
+        Collections.shuffle(moduli, random);
+        final BigInteger[] result = BatchGcd.gcdWithOthers(moduli);
+        for (int i = 0; i < moduli.size(); i++) {
+            assertEquals("Wrong result for modulus " + i, pairwiseGcd(moduli.get(i), moduli), result[i]);
+        }
+        assertEquals(p, result[moduli.indexOf(sharedP1)]);
+        assertEquals(sharedPQ1, result[moduli.indexOf(sharedPQ1)]);
+    }
+
+    @Test
+    public void testGcdWithProduct() {
+        final BigInteger p = prime();
+        final List<BigInteger> moduli = new ArrayList<>();
+        final List<BigInteger> others = new ArrayList<>();
+        for (int i = 0; i < 15; i++) {
+            moduli.add(prime().multiply(prime()));
+            others.add(prime().multiply(prime()));
+        }
+        final BigInteger shared = p.multiply(prime());
+        moduli.add(7, shared);
+        others.add(3, p.multiply(prime()));
+        final BigInteger[] result = BatchGcd.gcdWithProduct(moduli, others);
+        for (int i = 0; i < moduli.size(); i++) {
+            final BigInteger expected = moduli.get(i).equals(shared) ? p : BigInteger.ONE;
+            assertEquals("Wrong result for modulus " + i, expected, result[i]);
+        }
+    }
+
+    @Test
+    public void testSmallInput() {
+        final BigInteger n = prime().multiply(prime());
+        assertEquals(BigInteger.ONE, BatchGcd.gcdWithOthers(Collections.singletonList(n))[0]);
+        assertEquals(0, BatchGcd.gcdWithOthers(new ArrayList<BigInteger>()).length);
+        assertEquals(BigInteger.ONE, BatchGcd.gcdWithProduct(Collections.singletonList(n), new ArrayList<BigInteger>())[0]);
+    }
+
+    private BigInteger pairwiseGcd(final BigInteger n, final List<BigInteger> moduli) {
+        BigInteger product = BigInteger.ONE;
+        for (final BigInteger other : moduli) {
+            if (other != n) {
+                product = product.multiply(other);
+            }
+        }
+        return product.gcd(n);
+    }
+}
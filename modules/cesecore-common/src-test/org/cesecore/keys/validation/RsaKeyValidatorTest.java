@@ -28,6 +28,7 @@ import java.security.cert.X509Certificate;
 import java.security.spec.RSAPublicKeySpec;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.apache.log4j.Logger;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
@@ -352,6 +353,28 @@ public class RsaKeyValidatorTest {
         log.trace("<test01HasSmallerFactorThan()");
     }
 
+    /** Compares the gcd based check with plain trial division on odd numbers with small factors around the CA/B Forum limit. */
+    @Test
+    public void test02HasSmallerFactorThanMatchesTrialDivision() throws Exception {
+        log.trace(">test02HasSmallerFactorThanMatchesTrialDivision()");
+        final Random random = new Random(4711);
+        for (int i = 0; i < 200; i++) {
+            // Products of two numbers around 750 have a smallest factor on either side of the limit
+            final BigInteger n = BigInteger.valueOf(2 * (350 + random.nextInt(100)) + 1).multiply(BigInteger.valueOf(2 * (350 + random.nextInt(100)) + 1));
+            for (final int factor : new int[] { 3, 751, 753, 755 }) {
+                boolean expected = false;
+                for (int j = factor; j > 2; j = j - 2) {
+                    if (n.mod(BigInteger.valueOf(j)).equals(BigInteger.ZERO)) {
+                        expected = true;
+                        break;
+                    }
+                }
+                assertEquals("Wrong result for " + n + " with factor " + factor, expected, RsaKeyValidator.hasSmallerFactorThan(n, factor));
+            }
+        }
+        log.trace("<test02HasSmallerFactorThanMatchesTrialDivision()");
+    }
+
     @Test
     public void test03RsaParameterValidations() throws Exception {
         log.trace(">test03RsaParameterValidations()");
@@ -0,0 +1,128 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.log4j.Logger;
+import org.junit.Test;
+
+/**
+ * Unit tests of {@link LatencyHistogram} and the text report of {@link MetricsRegistry}.
+ *
+ * @version $Id$
+ */
+public class LatencyHistogramTest {
+
+    private static final Logger log = Logger.getLogger(LatencyHistogramTest.class);
+
+    @Test
+    public void testBucketBoundaries() {
+        long expectedLowest = 0;
+        for (int index = 0; index < 959; index++) {
+            final long lowest = LatencyHistogram.getBucketLowestValue(index);
+            final long highest = LatencyHistogram.getBucketHighestValue(index);
+            assertEquals("Buckets must be contiguous at index " + index, expectedLowest, lowest);
+            assertEquals(index, LatencyHistogram.getBucketIndex(lowest));
+            assertEquals(index, LatencyHistogram.getBucketIndex(highest));
+            // Relative precision of 1/16
+            assertTrue("Bucket " + index + " is too wide", highest - lowest <= Math.max(lowest / 16, 0));
+            expectedLowest = highest + 1;
+        }
+        assertEquals(959, LatencyHistogram.getBucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        for (long i = 1; i <= 100000; i++) {
+            histogram.recordValue(i * 1000);
+        }
+        final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(100000, snapshot.getCount());
+        assertEquals(100000000L, snapshot.getMax());
+        assertEquals(50000500.0, snapshot.getMean(), 0.1);
+        assertWithinPrecision(50000000, snapshot.getValueAtPercentile(50));
+        assertWithinPrecision(99000000, snapshot.getValueAtPercentile(99));
+        assertWithinPrecision(99900000, snapshot.getValueAtPercentile(99.9));
+        assertEquals(100000000L, snapshot.getValueAtPercentile(100));
+        assertWithinPrecision(1000, snapshot.getValueAtPercentile(0));
+    }
+
+    @Test
+    public void testNegativeValueAndReset() {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        histogram.recordValue(-5);
+        assertEquals(1, histogram.getSnapshot().getCount());
+        assertEquals(0, histogram.getSnapshot().getValueAtPercentile(50));
+        histogram.reset();
+        final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getValueAtPercentile(99));
+    }
+
+    @Test
+    public void testConcurrentRecording() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram("test");
+        final int noThreads = 4;
+        final int valuesPerThread = 1000000;
+        final List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < noThreads; i++) {
+            threads.add(new Thread() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < valuesPerThread; j++) {
+                        histogram.recordValue(j);
+                    }
+                }
+            });
+        }
+        final long start = System.nanoTime();
+        for (final Thread thread : threads) {
+            thread.start();
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        final long time = System.nanoTime() - start;
+        final LatencyHistogram.Snapshot snapshot = histogram.getSnapshot();
+        assertEquals(noThreads * valuesPerThread, snapshot.getCount());
+        assertEquals(valuesPerThread - 1, snapshot.getMax());
+        log.info("Recorded " + noThreads * valuesPerThread + " values in " + noThreads + " threads in " + time / 1000000 + " ms, "
+                + time / valuesPerThread + " ns per value and thread");
+    }
+
+    @Test
+    public void testReport() {
+        final MetricsRegistry registry = MetricsRegistry.INSTANCE;
+        registry.getHistogram("test.report").recordValue(2000000);
+        registry.getCounter("test.reportcounter").add(3);
+        final String report = registry.getReport();
+        assertTrue(report, report.contains("# TYPE test_report_seconds summary\n"));
+        assertTrue(report, report.contains("test_report_seconds_count 1\n"));
+        assertTrue(report, report.contains("test_report_seconds_max 0.002000000\n"));
+        assertTrue(report, report.contains("test_reportcounter_total 3\n"));
+        assertEquals(1, registry.getCount("test.report"));
+        assertEquals(2.0, registry.getMaxMillis("test.report"), 0.0);
+        assertEquals(0, registry.getCount("test.nosuchhistogram"));
+    }
+
+    private void assertWithinPrecision(final long expected, final long actual) {
+        assertTrue("Expected " + expected + " but was " + actual, Math.abs(actual - expected) <= expected / 16);
+    }
+}
@@ -103,7 +103,6 @@ import org.bouncycastle.cms.jcajce.JceCMSContentEncryptorBuilder;
 import org.bouncycastle.cms.jcajce.JceKeyTransEnvelopedRecipient;
 import org.bouncycastle.cms.jcajce.JceKeyTransRecipientInfoGenerator;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
-import org.bouncycastle.operator.BufferingContentSigner;
 import org.bouncycastle.operator.ContentSigner;
 import org.bouncycastle.operator.ContentVerifierProvider;
 import org.bouncycastle.operator.OperatorCreationException;
@@ -151,9 +150,11 @@ import org.cesecore.keys.token.CryptoToken;
 import org.cesecore.keys.token.CryptoTokenOfflineException;
 import org.cesecore.keys.token.IllegalCryptoTokenException;
 import org.cesecore.keys.token.NullCryptoToken;
+import org.cesecore.keys.token.p11.P11SignerPools;
 import org.cesecore.keys.util.KeyTools;
 import org.cesecore.keys.validation.IssuancePhase;
 import org.cesecore.keys.validation.ValidationException;
+import org.cesecore.metrics.IssuanceStage;
 import org.cesecore.util.CeSecoreNameStyle;
 import org.cesecore.util.CertTools;
 import org.cesecore.util.PrintableStringNameStyle;
@@ -1315,9 +1316,10 @@ public class X509CA extends CA implements Serializable {
                  *  It should have CA=true and ExtKeyUsage=PRECERTIFICATE_SIGNING_OID,
                  *  and should not have any other key usages.
                  */
-                final ContentSigner signer = new BufferingContentSigner(
-                        new JcaContentSignerBuilder(sigAlg).setProvider(provider).build(caPrivateKey), 20480);
+                final long precertSignStart = System.nanoTime();
+                final ContentSigner signer = P11SignerPools.getContentSigner(sigAlg, provider, caPrivateKey, 20480);
                 final X509CertificateHolder certHolder = precertbuilder.build(signer);
+                IssuanceStage.SIGNING.recordSince(precertSignStart);
                 final X509Certificate cert = CertTools.getCertfromByteArray(certHolder.getEncoded(), X509Certificate.class);
                 // ECA-6051 Re-Factored with Domain Service Layer.
                 if (certGenParams.getAuthenticationToken() != null && certGenParams.getCertificateValidationDomainService() != null) {
@@ -1342,8 +1344,10 @@ public class X509CA extends CA implements Serializable {
 
                     // Submit to logs and get signed timestamps
                     byte[] sctlist = null;
+                    final long ctStart = System.nanoTime();
                     try {
                         sctlist = ct.fetchSCTList(chain, certProfile, certGenParams.getCTSubmissionConfigParams());
+                        IssuanceStage.CERTIFICATE_TRANSPARENCY.recordSince(ctStart);
                     }  finally {
                         // Notify that pre-cert has been successfully or unsuccessfully submitted so it can be audit logged.
                         certGenParams.getCTAuditLogCallback().logPreCertSubmission(this, subject, cert, sctlist != null);
@@ -1384,8 +1388,10 @@ public class X509CA extends CA implements Serializable {
         if (log.isTraceEnabled()) {
             log.trace(">certgen.generate");
         }
-        final ContentSigner signer = new BufferingContentSigner(new JcaContentSignerBuilder(sigAlg).setProvider(provider).build(caPrivateKey), 20480);
+        final long signStart = System.nanoTime();
+        final ContentSigner signer = P11SignerPools.getContentSigner(sigAlg, provider, caPrivateKey, 20480);
         final X509CertificateHolder certHolder = certbuilder.build(signer);
+        IssuanceStage.SIGNING.recordSince(signStart);
         X509Certificate cert;
         try {
             cert = CertTools.getCertfromByteArray(certHolder.getEncoded(), X509Certificate.class);
@@ -1433,6 +1439,18 @@ public class X509CA extends CA implements Serializable {
                     ? null
                     : certGenParams.getCTSubmissionConfigParams().getConfiguredCTLogs().values();
             ct.allSctsAreValidOrThrow(cert, getCertificateChain(), ctLogs);
+
+            // When the SCTs are delivered in OCSP responses rather than in the certificate, submit the certificate in the
+            // background. The SCTs are cached, so they don't have to be fetched when the first OCSP response is created.
+            // The certificate is new, so it is submitted even if the profile does not allow submitting existing certificates.
+            if (!certProfile.isUseCertificateTransparencyInCerts() && certProfile.isUseCertificateTransparencyInOCSP() && certGenParams != null
+                    && certGenParams.getCTSubmissionConfigParams() != null
+                    && MapUtils.isNotEmpty(certGenParams.getCTSubmissionConfigParams().getConfiguredCTLogs())) {
+                final List<Certificate> chain = new ArrayList<>();
+                chain.add(cert);
+                chain.addAll(getCertificateChain());
+                ct.fetchSCTListAsync(chain, certProfile, certGenParams.getCTSubmissionConfigParams(), CertificateTransparency.UsageMode.OCSP_NEW_CERTIFICATE);
+            }
         }
 
         //Sub CA certificates check: Check AKI against parent CA SKI and IssuerDN against parent CA SubjectDN
@@ -1756,7 +1774,7 @@ public class X509CA extends CA implements Serializable {
         }
         final String alias = getCAToken().getAliasFromPurpose(CATokenConstants.CAKEYPURPOSE_CRLSIGN);
         try {
-            final ContentSigner signer = new BufferingContentSigner(new JcaContentSignerBuilder(sigAlg).setProvider(cryptoToken.getSignProviderName()).build(cryptoToken.getPrivateKey(alias)), 20480);
+            final ContentSigner signer = P11SignerPools.getContentSigner(sigAlg, cryptoToken.getSignProviderName(), cryptoToken.getPrivateKey(alias), 20480);
             crl = crlgen.build(signer);
         } catch (OperatorCreationException e) {
             // Very fatal error
@@ -18,12 +18,9 @@ import java.io.StringWriter;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Map;
-import java.util.Map.Entry;
-import java.util.Set;
+import java.util.List;
 
 import org.apache.log4j.Logger;
 import org.cesecore.certificates.certificate.HashID;
@@ -35,6 +32,9 @@ import org.cesecore.util.CertTools;
 /**
  * A cache for storing CA certificates
  *
+ * The certificates are kept in an immutable {@link CaCertificateIndex}, that is replaced as a whole when the cache is changed.
+ * Lookups only read the current index and never wait for a reload or for another lookup.
+ *
  * @version $Id: CaCertificateCache.java 31476 2019-02-13 08:50:00Z anatom $
  *
  */
@@ -43,20 +43,14 @@ public enum CaCertificateCache  {
     
 	private final Logger log = Logger.getLogger(CaCertificateCache.class);
 
-    /** Mapping from subjectDN to key in the certs HashMap. */
-    private Map<Integer, X509Certificate> certsFromSubjectDN = new HashMap<Integer, X509Certificate>();
-    /** Mapping from issuerDN to key in the certs HashMap. */
-    private Map<Integer, Set<X509Certificate>> certsFromIssuerDN = new HashMap<Integer, Set<X509Certificate>>();
-    /** Mapping from subject key identifier to key in the certs HashMap. */
-    private Map<Integer, X509Certificate> certsFromSubjectKeyIdentifier = new HashMap<Integer, X509Certificate>();
-    /** All root certificates. */
-    private Set<X509Certificate> rootCertificates = new HashSet<X509Certificate>();
+    /** The current index of all CA certificates. Replaced, never modified, when certificates are loaded, added or removed. */
+    private volatile CaCertificateIndex index = CaCertificateIndex.EMPTY;
 
 	/** Cache time counter, set and used by loadCertificates */
-	private long certValidTo = 0;
+	private volatile long certValidTo = 0;
 
     public X509Certificate findLatestBySubjectDN(final HashID id) {
-        final X509Certificate ret = certsFromSubjectDN.get(id.getKey());
+        final X509Certificate ret = index.findLatestBySubjectDN(id.getKey());
         if (ret==null && log.isDebugEnabled()) {
             log.debug("Certificate not found from SubjectDN HashId in certsFromSubjectDN map. HashID=" + id.getB64());
         }
@@ -64,37 +58,48 @@ public enum CaCertificateCache  {
 	}
 
 	public X509Certificate[] findLatestByIssuerDN(final HashID id) {	    
-        final Set<X509Certificate> sCert = certsFromIssuerDN.get(id.getKey());
-        if (sCert == null || sCert.isEmpty()) {
-            if (log.isDebugEnabled()) {
-                log.debug("Certificate not found from IssuerDN HashId in certsFromIssuerDN map. HashID=" + id.getB64());
-            }
-            return null;
+        final X509Certificate[] ret = index.findLatestByIssuerDN(id.getKey());
+        if (ret == null && log.isDebugEnabled()) {
+            log.debug("Certificate not found from IssuerDN HashId in certsFromIssuerDN map. HashID=" + id.getB64());
         }
-        return sCert.toArray(new X509Certificate[sCert.size()]);
-
+        return ret;
     }
 
     public X509Certificate[] getRootCertificates() {
-        return rootCertificates.toArray(new X509Certificate[0]);
+        return index.getRootCertificates();
     }
 
     public X509Certificate findBySubjectKeyIdentifier(final HashID id) {
-        final X509Certificate ret = certsFromSubjectKeyIdentifier.get(id.getKey());
+        final X509Certificate ret = index.findBySubjectKeyIdentifier(id.getKey());
         if (ret==null && log.isDebugEnabled()) {
             log.debug("Certificate not found from SubjectKeyIdentifier HashId in certsFromSubjectKeyIdentifier map. HashID=" + id.getB64());
         }
         return ret;
     }
 
+    /**
+     * Finds a CA certificate from the hash of its public key, as used in the CertID and ResponderID of OCSP (RFC 6960).
+     * The hash is calculated over the value of the subjectPublicKey bit string, without tag and length.
+     *
+     * @param keyHash the SHA-1 or SHA-256 hash of the public key
+     * @return the latest certificate with the public key, or null if not found
+     */
+    public X509Certificate findByKeyHash(final byte[] keyHash) {
+        final X509Certificate ret = index.findByKeyHash(keyHash);
+        if (ret==null && log.isDebugEnabled()) {
+            log.debug("Certificate not found from key hash in certsFromKeyHash map. Key hash=" + new String(Base64.encode(keyHash, false)));
+        }
+        return ret;
+    }
+
     public boolean isCacheExpired() {
         return certValidTo < System.currentTimeMillis();
     }
 
 	/** Loads the CA certificate cache  with a bunch of certificates.
 	 *
-	 * We keep this method as synchronized to avoid ConcurrentModificationException, it should not take more than a few microseconds to complete.
-	 * We also only want one single thread to do the cache rebuilding.
+	 * A new index is built from the certificates and then replaces the current one, so lookups done during the loading are
+	 * answered from the previous index. The method is synchronized so that it can not overwrite a concurrent change.
 	 * Only X509Certificates will be considered and other types, as well as invalid coded certificates, will be ignored.
 	 * 
 	 * @param certs A collection of X509Certificates to put in the CA certificate cache, if empty or null the cache will be emptied
@@ -103,95 +108,100 @@ public enum CaCertificateCache  {
         if (log.isDebugEnabled()) {
             log.debug("Loaded " + (certs == null ? "0" : Integer.toString(certs.size())) + " ca certificates");
         }
-
-        Map<Integer, X509Certificate> newCertsFromSubjectDN = new HashMap<Integer, X509Certificate>();
-        Map<Integer, Set<X509Certificate>> newCertsFromIssuerDN = new HashMap<Integer, Set<X509Certificate>>();
-        Map<Integer, X509Certificate> newCertsFromSubjectKeyIdentifier = new HashMap<Integer, X509Certificate>();
-        Set<X509Certificate> newRootCertificates = new HashSet<X509Certificate>();
+        final List<CaCertificateIndex.Entry> entries = new ArrayList<>();
         if (certs != null) {
-            for (final Certificate tmp : certs) {
-                if (!(tmp instanceof X509Certificate)) {
-                    log.debug("Not adding CA certificate of type: " + tmp.getType());
-                    continue;
-                }
-                final X509Certificate cert = (X509Certificate) tmp;
-                try { // test if certificate is OK. we have experienced that BC could decode a certificate that later on could not be used.
-                    final Integer key = HashID.getFromKeyID(cert).getKey();
-                    final X509Certificate pastCert = newCertsFromSubjectKeyIdentifier.get(key);
-                    // Add the entry if it's the first, or if it is more recent than the one existing (in that case replace it)
-                    if ( pastCert == null || (pastCert != null && CertTools.getNotBefore(cert).after(CertTools.getNotBefore(pastCert))) ) {
-                        newCertsFromSubjectKeyIdentifier.put(key, cert);
-                    }
-                } catch (Throwable t) { // NOPMD: catch all to not break with an error here.
-                    if (log.isDebugEnabled()) {
-                        final StringWriter sw = new StringWriter();
-                        final PrintWriter pw = new PrintWriter(sw);
-                        pw.println("Erroneous certificate fetched from database.");
-                        pw.println("The public key can not be extracted from the certificate.");
-                        pw.println("Here follows a base64 encoding of the certificate:");
-                        try {
-                            final String b64encoded = new String(Base64.encode(cert.getEncoded()));
-                            pw.println(CertTools.BEGIN_CERTIFICATE);
-                            pw.println(b64encoded);
-                            pw.println(CertTools.END_CERTIFICATE);
-                        } catch (CertificateEncodingException e) {
-                            pw.println("Not possible to encode certificate.");
-                        }
-                        pw.flush();
-                        log.debug(sw.toString());
-                    }
-                    continue;
-                }
-                final Integer subjectDNKey = HashID.getFromSubjectDN(cert).getKey();
-                // Check if we already have a certificate from this issuer in the HashMap.
-                // We only want to store the latest cert from each issuer in this map
-                final X509Certificate pastCert = newCertsFromSubjectDN.get(subjectDNKey);
-                final boolean isLatest;
-                if (pastCert != null) {
-                    if (CertTools.getNotBefore(cert).after(CertTools.getNotBefore(pastCert))) {
-                        isLatest = true;
-                    } else {
-                        isLatest = false;
-                    }
-                } else {
-                    isLatest = true;
-                }
-                if (isLatest) {
-                    newCertsFromSubjectDN.put(subjectDNKey, cert);
-                    final Integer issuerDNKey = HashID.getFromIssuerDN(cert).getKey();
-                    if (!issuerDNKey.equals(subjectDNKey)) { // don't add roots to themselves
-                        Set<X509Certificate> sIssuer = newCertsFromIssuerDN.get(issuerDNKey);
-                        if (sIssuer == null) {
-                            sIssuer = new HashSet<X509Certificate>();
-                            newCertsFromIssuerDN.put(issuerDNKey, sIssuer);
-                        }
-                        sIssuer.add(cert);
-                        sIssuer.remove(pastCert);
-                    } else {
-                        newRootCertificates.add(cert);
-                        newRootCertificates.remove(pastCert);
-                    }
+            for (final Certificate cert : certs) {
+                final CaCertificateIndex.Entry entry = createEntry(cert);
+                if (entry != null) {
+                    entries.add(entry);
                 }
             }
         }
+        final CaCertificateIndex newIndex = CaCertificateIndex.EMPTY.withAdded(entries);
         // Log what we have stored in the cache
         if (log.isDebugEnabled()) {
             final StringWriter sw = new StringWriter();
             final PrintWriter pw = new PrintWriter(sw, true);
             pw.println("Found the following CA certificates :");
-            for (Entry<Integer, X509Certificate> key : newCertsFromSubjectKeyIdentifier.entrySet()) {
-                final Certificate cert = key.getValue();
+            for (final Certificate cert : newIndex.getCertificates()) {
                 pw.print(CertTools.getSubjectDN(cert));
                 pw.print(',');
                 pw.println(CertTools.getSerialNumberAsString(cert));
             }
             log.debug(sw);
         }
-        //Replace the old caches
-        certsFromSubjectKeyIdentifier = newCertsFromSubjectKeyIdentifier;
-        certsFromIssuerDN = newCertsFromIssuerDN;
-        certsFromSubjectDN = newCertsFromSubjectDN;
-        rootCertificates = newRootCertificates;
+        //Replace the old cache
+        index = newIndex;
         certValidTo = System.currentTimeMillis() + OcspConfiguration.getSigningCertsValidTimeInMilliseconds();
     }
+
+    /**
+     * Adds a CA certificate to the cache, without reloading the other certificates.
+     * If it is newer than the certificate of the CA in the cache, it will be returned as the latest certificate of the CA.
+     *
+     * @param cert the CA certificate. Certificates that are not X509Certificates or that are already in the cache are ignored.
+     */
+    public synchronized void addCertificate(final Certificate cert) {
+        final CaCertificateIndex.Entry entry = createEntry(cert);
+        if (entry != null) {
+            final List<CaCertificateIndex.Entry> entries = new ArrayList<>(1);
+            entries.add(entry);
+            index = index.withAdded(entries);
+            if (log.isDebugEnabled()) {
+                log.debug("Added CA certificate to cache: " + CertTools.getSubjectDN(cert) + "," + CertTools.getSerialNumberAsString(cert));
+            }
+        }
+    }
+
+    /**
+     * Removes a CA certificate from the cache, without reloading the other certificates.
+     * If it was the latest certificate of the CA, the previous certificate of the CA will be returned as the latest instead.
+     *
+     * @param cert the CA certificate. Nothing is done if it is not in the cache.
+     */
+    public synchronized void removeCertificate(final Certificate cert) {
+        final CaCertificateIndex.Entry entry = createEntry(cert);
+        if (entry != null) {
+            index = index.withRemoved(entry);
+            if (log.isDebugEnabled()) {
+                log.debug("Removed CA certificate from cache: " + CertTools.getSubjectDN(cert) + "," + CertTools.getSerialNumberAsString(cert));
+            }
+        }
+    }
+
+    /** @return the number of certificates in the cache, including older certificates of each CA */
+    public int getCertificateCount() {
+        return index.size();
+    }
+
+    /** @return an entry to be added to the index, or null if the certificate is not an X509Certificate or can not be used */
+    private CaCertificateIndex.Entry createEntry(final Certificate tmp) {
+        if (!(tmp instanceof X509Certificate)) {
+            log.debug("Not adding CA certificate of type: " + tmp.getType());
+            return null;
+        }
+        final X509Certificate cert = (X509Certificate) tmp;
+        try { // test if certificate is OK. we have experienced that BC could decode a certificate that later on could not be used.
+            return new CaCertificateIndex.Entry(cert);
+        } catch (Throwable t) { // NOPMD: catch all to not break with an error here.
+            if (log.isDebugEnabled()) {
+                final StringWriter sw = new StringWriter();
+                final PrintWriter pw = new PrintWriter(sw);
+                pw.println("Erroneous certificate fetched from database.");
+                pw.println("The public key can not be extracted from the certificate.");
+                pw.println("Here follows a base64 encoding of the certificate:");
+                try {
+                    final String b64encoded = new String(Base64.encode(cert.getEncoded()));
+                    pw.println(CertTools.BEGIN_CERTIFICATE);
+                    pw.println(b64encoded);
+                    pw.println(CertTools.END_CERTIFICATE);
+                } catch (CertificateEncodingException e) {
+                    pw.println("Not possible to encode certificate.");
+                }
+                pw.flush();
+                log.debug(sw.toString());
+            }
+            return null;
+        }
+    }
 }
@@ -0,0 +1,328 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+
+package org.cesecore.certificates.ca.internal;
+
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.util.encoders.Hex;
+import org.cesecore.certificates.certificate.HashID;
+import org.cesecore.util.CertTools;
+
+/**
+ * Immutable index of CA certificates, used by {@link CaCertificateCache}.
+ *
+ * An index is never changed after it has been created, so it can be read by any number of threads without locking.
+ * Certificates are added and removed by creating a new index, that shares the unchanged parts with the old one.
+ * All certificates are kept, sorted with the latest first, so that the previous certificate of a CA is found again
+ * when the latest one is removed.
+ *
+ * @version $Id$
+ */
+final class CaCertificateIndex {
+
+    static final CaCertificateIndex EMPTY = new CaCertificateIndex(new HashMap<Integer, List<Entry>>(), new HashMap<Integer, List<Entry>>(),
+            new HashMap<String, List<Entry>>(), new HashMap<Integer, Set<X509Certificate>>(), new HashSet<X509Certificate>());
+
+    /** A certificate with the keys it is indexed by, so that the hashes only are calculated once */
+    static final class Entry {
+        private final X509Certificate certificate;
+        private final Date notBefore;
+        private final Integer subjectDnKey;
+        private final Integer issuerDnKey;
+        private final Integer keyIdKey;
+        /** Hex encoded SHA-1 and SHA-256 hashes of the public key, or null if the public key could not be parsed */
+        private final String sha1KeyHash;
+        private final String sha256KeyHash;
+
+        /**
+         * @throws RuntimeException if the public key can not be extracted from the certificate.
+         * We have experienced that BC could decode a certificate that later on could not be used.
+         */
+        Entry(final X509Certificate certificate) {
+            this.certificate = certificate;
+            this.keyIdKey = HashID.getFromKeyID(certificate).getKey();
+            this.notBefore = CertTools.getNotBefore(certificate);
+            this.subjectDnKey = HashID.getFromSubjectDN(certificate).getKey();
+            this.issuerDnKey = HashID.getFromIssuerDN(certificate).getKey();
+            final byte[] keyData = getPublicKeyData(certificate);
+            this.sha1KeyHash = keyData == null ? null : Hex.toHexString(CertTools.generateSHA1Fingerprint(keyData));
+            this.sha256KeyHash = keyData == null ? null : Hex.toHexString(CertTools.generateSHA256Fingerprint(keyData));
+        }
+
+        X509Certificate getCertificate() {
+            return certificate;
+        }
+
+        private boolean isRoot() {
+            return subjectDnKey.equals(issuerDnKey);
+        }
+
+        /** @return the content of the subjectPublicKey bit string, that is hashed for the key hash of RFC 6960, or null if not available */
+        private static byte[] getPublicKeyData(final X509Certificate certificate) {
+            try {
+                return SubjectPublicKeyInfo.getInstance(certificate.getPublicKey().getEncoded()).getPublicKeyData().getBytes();
+            } catch (RuntimeException e) {
+                return null;
+            }
+        }
+    }
+
+    /** All certificates for each subject DN, the latest first */
+    private final Map<Integer, List<Entry>> certsFromSubjectDN;
+    /** All certificates for each subject key identifier, the latest first */
+    private final Map<Integer, List<Entry>> certsFromSubjectKeyIdentifier;
+    /** All certificates for each SHA-1 and SHA-256 public key hash, the latest first */
+    private final Map<String, List<Entry>> certsFromKeyHash;
+    /** The latest certificate of each subject DN, that is not a root certificate, for each issuer DN */
+    private final Map<Integer, Set<X509Certificate>> certsFromIssuerDN;
+    /** The latest certificate of each root CA */
+    private final Set<X509Certificate> rootCertificates;
+
+    private CaCertificateIndex(final Map<Integer, List<Entry>> certsFromSubjectDN, final Map<Integer, List<Entry>> certsFromSubjectKeyIdentifier,
+            final Map<String, List<Entry>> certsFromKeyHash, final Map<Integer, Set<X509Certificate>> certsFromIssuerDN,
+            final Set<X509Certificate> rootCertificates) {
+        this.certsFromSubjectDN = certsFromSubjectDN;
+        this.certsFromSubjectKeyIdentifier = certsFromSubjectKeyIdentifier;
+        this.certsFromKeyHash = certsFromKeyHash;
+        this.certsFromIssuerDN = certsFromIssuerDN;
+        this.rootCertificates = rootCertificates;
+    }
+
+    X509Certificate findLatestBySubjectDN(final Integer key) {
+        return getLatest(certsFromSubjectDN.get(key));
+    }
+
+    /** @return the certificates issued by the issuer, or null if there are none */
+    X509Certificate[] findLatestByIssuerDN(final Integer key) {
+        final Set<X509Certificate> certs = certsFromIssuerDN.get(key);
+        if (certs == null || certs.isEmpty()) {
+            return null;
+        }
+        return certs.toArray(new X509Certificate[certs.size()]);
+    }
+
+    X509Certificate findBySubjectKeyIdentifier(final Integer key) {
+        return getLatest(certsFromSubjectKeyIdentifier.get(key));
+    }
+
+    X509Certificate findByKeyHash(final byte[] keyHash) {
+        return getLatest(certsFromKeyHash.get(Hex.toHexString(keyHash)));
+    }
+
+    X509Certificate[] getRootCertificates() {
+        return rootCertificates.toArray(new X509Certificate[rootCertificates.size()]);
+    }
+
+    /** @return all certificates in the index, the latest certificate of each subject DN first */
+    List<X509Certificate> getCertificates() {
+        final List<X509Certificate> ret = new ArrayList<>();
+        for (final List<Entry> entries : certsFromSubjectDN.values()) {
+            for (final Entry entry : entries) {
+                ret.add(entry.certificate);
+            }
+        }
+        return ret;
+    }
+
+    int size() {
+        int size = 0;
+        for (final List<Entry> entries : certsFromSubjectDN.values()) {
+            size += entries.size();
+        }
+        return size;
+    }
+
+    /** @return a new index with the certificates added. Certificates that already are in the index are ignored. */
+    CaCertificateIndex withAdded(final Collection<Entry> entries) {
+        final Builder builder = new Builder(this);
+        for (final Entry entry : entries) {
+            builder.add(entry);
+        }
+        return builder.build();
+    }
+
+    /** @return a new index without the certificate, or this index if the certificate is not in it */
+    CaCertificateIndex withRemoved(final Entry entry) {
+        final List<Entry> entries = certsFromSubjectDN.get(entry.subjectDnKey);
+        if (indexOf(entries, entry.certificate) < 0) {
+            return this;
+        }
+        final Builder builder = new Builder(this);
+        builder.remove(entry);
+        return builder.build();
+    }
+
+    private static X509Certificate getLatest(final List<Entry> entries) {
+        return entries == null || entries.isEmpty() ? null : entries.get(0).certificate;
+    }
+
+    private static int indexOf(final List<Entry> entries, final X509Certificate certificate) {
+        if (entries != null) {
+            for (int i = 0; i < entries.size(); i++) {
+                if (entries.get(i).certificate.equals(certificate)) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Creates a new index from an existing one. The maps of the existing index are copied, and each list or set
+     * in them is copied the first time it is changed, so the existing index is never modified. Later changes of the
+     * same list or set are made to the copy, so that adding many certificates at once takes linear time.
+     */
+    private static class Builder {
+        private final Map<Integer, List<Entry>> certsFromSubjectDN;
+        private final Map<Integer, List<Entry>> certsFromSubjectKeyIdentifier;
+        private final Map<String, List<Entry>> certsFromKeyHash;
+        private final Map<Integer, Set<X509Certificate>> certsFromIssuerDN;
+        private final Set<X509Certificate> rootCertificates;
+        /** The latest certificate of each subject DN that has been changed, before it was changed */
+        private final Map<Integer, Entry> previousLatest = new HashMap<>();
+        /** Lists and sets that have been created by this builder, and may be changed in place */
+        private final Set<Object> copies = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+
+        private Builder(final CaCertificateIndex index) {
+            this.certsFromSubjectDN = new HashMap<>(index.certsFromSubjectDN);
+            this.certsFromSubjectKeyIdentifier = new HashMap<>(index.certsFromSubjectKeyIdentifier);
+            this.certsFromKeyHash = new HashMap<>(index.certsFromKeyHash);
+            this.certsFromIssuerDN = new HashMap<>(index.certsFromIssuerDN);
+            this.rootCertificates = new HashSet<>(index.rootCertificates);
+        }
+
+        private void add(final Entry entry) {
+            final List<Entry> entries = certsFromSubjectDN.get(entry.subjectDnKey);
+            if (indexOf(entries, entry.certificate) >= 0) {
+                return;
+            }
+            rememberPreviousLatest(entry.subjectDnKey, entries);
+            insert(certsFromSubjectDN, entry.subjectDnKey, entry);
+            insert(certsFromSubjectKeyIdentifier, entry.keyIdKey, entry);
+            if (entry.sha1KeyHash != null) {
+                insert(certsFromKeyHash, entry.sha1KeyHash, entry);
+                insert(certsFromKeyHash, entry.sha256KeyHash, entry);
+            }
+        }
+
+        private void remove(final Entry entry) {
+            rememberPreviousLatest(entry.subjectDnKey, certsFromSubjectDN.get(entry.subjectDnKey));
+            remove(certsFromSubjectDN, entry.subjectDnKey, entry.certificate);
+            remove(certsFromSubjectKeyIdentifier, entry.keyIdKey, entry.certificate);
+            if (entry.sha1KeyHash != null) {
+                remove(certsFromKeyHash, entry.sha1KeyHash, entry.certificate);
+                remove(certsFromKeyHash, entry.sha256KeyHash, entry.certificate);
+            }
+        }
+
+        private void rememberPreviousLatest(final Integer subjectDnKey, final List<Entry> entries) {
+            if (!previousLatest.containsKey(subjectDnKey)) {
+                previousLatest.put(subjectDnKey, entries == null || entries.isEmpty() ? null : entries.get(0));
+            }
+        }
+
+        /** @return the list of the key, copied if it belongs to the existing index, or a new list if there is none */
+        private <K> List<Entry> getWritable(final Map<K, List<Entry>> map, final K key) {
+            final List<Entry> existing = map.get(key);
+            if (existing != null && copies.contains(existing)) {
+                return existing;
+            }
+            final List<Entry> entries = existing == null ? new ArrayList<Entry>(1) : new ArrayList<>(existing);
+            copies.add(entries);
+            map.put(key, entries);
+            return entries;
+        }
+
+        /** Inserts the entry after all entries that are not older, so that the first added wins if two certificates have the same notBefore */
+        private <K> void insert(final Map<K, List<Entry>> map, final K key, final Entry entry) {
+            final List<Entry> entries = getWritable(map, key);
+            int i = 0;
+            while (i < entries.size() && !entries.get(i).notBefore.before(entry.notBefore)) {
+                i++;
+            }
+            entries.add(i, entry);
+        }
+
+        private <K> void remove(final Map<K, List<Entry>> map, final K key, final X509Certificate certificate) {
+            final int i = indexOf(map.get(key), certificate);
+            if (i < 0) {
+                return;
+            }
+            final List<Entry> entries = getWritable(map, key);
+            entries.remove(i);
+            if (entries.isEmpty()) {
+                map.remove(key);
+            }
+        }
+
+        /** Updates the issuer and root indexes for the subject DNs where the latest certificate has changed */
+        private CaCertificateIndex build() {
+            for (final Map.Entry<Integer, Entry> changed : previousLatest.entrySet()) {
+                final Entry previous = changed.getValue();
+                final List<Entry> entries = certsFromSubjectDN.get(changed.getKey());
+                final Entry latest = entries == null ? null : entries.get(0);
+                if (previous == latest) {
+                    continue;
+                }
+                if (previous != null) {
+                    if (previous.isRoot()) {
+                        rootCertificates.remove(previous.certificate);
+                    } else {
+                        updateIssuer(previous.issuerDnKey, previous.certificate, false);
+                    }
+                }
+                if (latest != null) {
+                    if (latest.isRoot()) {
+                        rootCertificates.add(latest.certificate);
+                    } else {
+                        updateIssuer(latest.issuerDnKey, latest.certificate, true);
+                    }
+                }
+            }
+            return new CaCertificateIndex(certsFromSubjectDN, certsFromSubjectKeyIdentifier, certsFromKeyHash, certsFromIssuerDN, rootCertificates);
+        }
+
+        private void updateIssuer(final Integer issuerDnKey, final X509Certificate certificate, final boolean add) {
+            final Set<X509Certificate> existing = certsFromIssuerDN.get(issuerDnKey);
+            final Set<X509Certificate> certs;
+            if (existing != null && copies.contains(existing)) {
+                certs = existing;
+            } else {
+                certs = existing == null ? new HashSet<X509Certificate>() : new HashSet<>(existing);
+                copies.add(certs);
+            }
+            if (add) {
+                certs.add(certificate);
+            } else {
+                certs.remove(certificate);
+            }
+            if (certs.isEmpty()) {
+                certsFromIssuerDN.remove(issuerDnKey);
+            } else {
+                certsFromIssuerDN.put(issuerDnKey, certs);
+            }
+        }
+    }
+}
@@ -28,6 +28,10 @@ import org.cesecore.internal.InternalResources;
 /**
  * Implements a singleton serial number generator using SecureRandom. This generator generates random 8 octec (64 bits) serial numbers.
  * 
+ * To let many threads issue certificates concurrently, the generator uses several separately created and seeded SecureRandom instances
+ * (see ca.rnginstances), and each thread uses one of them, chosen by thread ID. Random data can optionally be fetched for several serial
+ * numbers at a time (see ca.rngbuffersize). Every serial number is still made from noOctets fresh random bytes from one of the instances.
+ * 
  * RFC3280 defines serialNumber be positive INTEGER, and X.690 defines INTEGER consist of one or more octets. X.690 also defines as follows:
  * 
  * If the contents octets of an integer value encoding consist of more than one octet, then the bits of the first octet and bit 8 of the second octet:
@@ -61,19 +65,77 @@ public class SernoGeneratorRandom implements SernoGenerator {
     /** random generator algorithm, default SHA1PRNG */
     private String algorithm = "SHA1PRNG";
 
-    /** number of bytes serial number to generate, default 8 */
-    private int noOctets = 8;
-
-    /** random generator */
-    private SecureRandom random;
+    /** random generators, one of which is used by each thread */
+    private volatile RandomStripe[] stripes;
 
     /** A handle to the unique Singleton instance. */
-    private static SernoGeneratorRandom instance = null;
+    private static volatile SernoGeneratorRandom instance = null;
+
+    /** size and lowest and highest possible value we should deliver when getSerno is called, default values for 64 bit serials */
+    private volatile SernoRange range = new SernoRange(8);
+
+    /** Immutable size and allowed values of the serial numbers, replaced as a whole when the size is changed */
+    private static final class SernoRange {
+        /** number of bytes serial number to generate */
+        private final int noOctets;
+        /** lowest possible value we should deliver when getSerno is called */
+        private final BigInteger lowest;
+        /** highest possible value we should deliver when getSerno is called */
+        private final BigInteger highest;
+
+        private SernoRange(final int noOctets) {
+            this.noOctets = noOctets;
+            if (noOctets == 0) {
+                // We allow 0 octets for testing
+                lowest = BigInteger.ZERO;
+                highest = BigInteger.ZERO;
+                return;
+            }
+            char[] arr = new char[noOctets*2];
+            // 00800000 (filled with 0 to the no of octets)
+            Arrays.fill(arr, '0');
+            arr[2] = '8';
+            lowest = new BigInteger(String.valueOf(arr), 16);
+            // 7FFFFFFF (filled with F to the no of octets)
+            Arrays.fill(arr, 'F');
+            arr[0] = '7';
+            highest = new BigInteger(String.valueOf(arr), 16);
+        }
+    }
+
+    /** One of the random generators, with an optional buffer of random data that is handed out a serial number at a time */
+    private static final class RandomStripe {
+        private final SecureRandom random;
+        private final byte[] buffer;
+        private int position;
+
+        private RandomStripe(final SecureRandom random, final int bufferLength) {
+            this.random = random;
+            this.buffer = bufferLength > 0 ? new byte[bufferLength] : null;
+            this.position = bufferLength;
+        }
 
-    /** lowest possible value we should deliver when getSerno is called */
-    private BigInteger lowest = new BigInteger("0080000000000000", 16); // Default value for 64 bit serials
-    /** highest possible value we should deliver when getSerno is called */
-    private BigInteger highest = new BigInteger("7FFFFFFFFFFFFFFF", 16); // Default value for 64 bit serials
+        private synchronized void nextBytes(final byte[] bytes) {
+            if (buffer == null || bytes.length > buffer.length) {
+                random.nextBytes(bytes);
+                return;
+            }
+            if (buffer.length - position < bytes.length) {
+                random.nextBytes(buffer);
+                position = 0;
+            }
+            System.arraycopy(buffer, position, bytes, 0, bytes.length);
+            // Random data is used only once, and is not kept in memory after it has been used
+            Arrays.fill(buffer, position, position + bytes.length, (byte) 0);
+            position += bytes.length;
+        }
+
+        private synchronized void setSeed(final long seed) {
+            random.setSeed(seed);
+            // Buffered data was generated before the seed was added
+            position = buffer == null ? 0 : buffer.length;
+        }
+    }
 
     /**
      * Creates a serial number generator using SecureRandom
@@ -91,13 +153,39 @@ public class SernoGeneratorRandom implements SernoGenerator {
     }
 
     private void init() {
+        int noInstances = CesecoreConfiguration.getCaSerialNumberRngInstances();
+        if (noInstances <= 0) {
+            noInstances = 2 * Runtime.getRuntime().availableProcessors();
+        }
+        final int bufferSize = Math.max(1, CesecoreConfiguration.getCaSerialNumberRngBufferSize());
+        // A buffer for a single serial number would just be an extra copy
+        final int bufferLength = bufferSize > 1 ? bufferSize * Math.max(range.noOctets, 1) : 0;
+        final RandomStripe[] newStripes = new RandomStripe[noInstances];
+        for (int i = 0; i < noInstances; i++) {
+            newStripes[i] = new RandomStripe(createRandom(i == 0), bufferLength);
+        }
+        stripes = newStripes;
+        if (log.isDebugEnabled()) {
+            log.debug("Using " + noInstances + " " + algorithm + " serialNumber RNG instances, fetching random data for " + bufferSize
+                    + " serial numbers at a time.");
+        }
+    }
+
+    /**
+     * Creates and seeds a random number generator with the configured algorithm.
+     * @param logAlgorithm true to log the algorithm, which is only done for the first of the instances.
+     */
+    private SecureRandom createRandom(final boolean logAlgorithm) {
         // Init random number generator for random serial numbers. 
         // SecureRandom provides a cryptographically strong random number generator (RNG).
+        SecureRandom random = null;
         try {
             // Use a specified algorithm if ca.rngalgorithm is provided and it's not set to default
             if (!StringUtils.isEmpty(algorithm) && !StringUtils.containsIgnoreCase(algorithm, "default")) {
                 random = SecureRandom.getInstance(algorithm);
-                log.info("Using "+algorithm+" serialNumber RNG algorithm.");
+                if (logAlgorithm) {
+                    log.info("Using "+algorithm+" serialNumber RNG algorithm.");
+                }
             } else if (!StringUtils.isEmpty(algorithm) && StringUtils.equalsIgnoreCase(algorithm, "defaultstrong")) {
                 // If defaultstrong is specified and we use >=JDK8 try the getInstanceStrong to get a guaranteed strong random number generator.
                 // Note that this may give you a generator that takes >30 seconds to create a single random number. 
@@ -105,7 +193,9 @@ public class SernoGeneratorRandom implements SernoGenerator {
                 try {
                     final Method methodGetInstanceStrong = SecureRandom.class.getDeclaredMethod("getInstanceStrong");
                     random = (SecureRandom) methodGetInstanceStrong.invoke(null);
-                    log.info("Using SecureRandom.getInstanceStrong() with " + random.getAlgorithm() + " for serialNumber RNG algorithm.");
+                    if (logAlgorithm) {
+                        log.info("Using SecureRandom.getInstanceStrong() with " + random.getAlgorithm() + " for serialNumber RNG algorithm.");
+                    }
                 } catch (NoSuchMethodException | SecurityException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
                     throw new IllegalStateException("SecureRandom.getInstanceStrong() is not available or failed invocation. (This method was added in Java 8.)");
                 }
@@ -114,7 +204,9 @@ public class SernoGeneratorRandom implements SernoGenerator {
                 // On Linux the default Java implementation uses the (secure) /dev/(u)random, but on windows something else
                 // On JDK8/Linux this gives you a NativePRNG, while SecureRandom.getInstanceStrong() gives a NativePRNGBlocking.
                 random = new SecureRandom();
-                log.info("Using default " + random.getAlgorithm() + " serialNumber RNG algorithm.");
+                if (logAlgorithm) {
+                    log.info("Using default " + random.getAlgorithm() + " serialNumber RNG algorithm.");
+                }
             }
         } catch (NoSuchAlgorithmException e) {
             //This state is unrecoverable, and since algorithm is set in configuration requires a redeploy to handle
@@ -125,7 +217,9 @@ public class SernoGeneratorRandom implements SernoGenerator {
             throw new IllegalStateException("Algorithm " + algorithm + " was not a valid algorithm.");
         }
         // Call nextBytes directly after in order to force seeding if not already done. SecureRandom typically seeds on first call.
+        // Each instance seeds itself, so the instances produce independent sequences.
         random.nextBytes(new byte[20]);
+        return random;
     }
 
     /**
@@ -133,30 +227,36 @@ public class SernoGeneratorRandom implements SernoGenerator {
      * 
      * @return An instance of the serial number generator.
      */
-    public static synchronized SernoGenerator instance() {
+    public static SernoGenerator instance() {
         if (instance == null) {
-            instance = new SernoGeneratorRandom();
+            synchronized (SernoGeneratorRandom.class) {
+                if (instance == null) {
+                    instance = new SernoGeneratorRandom();
+                }
+            }
         }
         return instance;
     }
 
     @Override
-    public synchronized BigInteger getSerno() {
+    public BigInteger getSerno() {
+        final SernoRange currentRange = range;
         // This is only for testing, of size is set to 0 we will generate random number
         // between 1 and 4, this will give collisions often...
-        if (noOctets == 0) {
+        if (currentRange.noOctets == 0) {
             Random rand = new Random();
             return new java.math.BigInteger(Long.toString(rand.nextInt(4)));
         }
-
-        final byte[] sernobytes = new byte[noOctets];
+        final RandomStripe[] currentStripes = stripes;
+        final RandomStripe stripe = currentStripes[(int) (Thread.currentThread().getId() % currentStripes.length)];
+        final byte[] sernobytes = new byte[currentRange.noOctets];
         boolean ok = false;
         BigInteger serno = null;
         while (!ok) {
-            random.nextBytes(sernobytes);
+            stripe.nextBytes(sernobytes);
             serno = (new java.math.BigInteger(sernobytes)).abs();
             // Must be within the range 0080000000000000 - 7FFFFFFFFFFFFFFF
-            if (checkSernoValidity(serno)) {
+            if (checkSernoValidity(serno, currentRange)) {
                 ok = true;
             } else {
                 String msg = intres.getLocalizedMessage("sernogenerator.discarding");
@@ -167,7 +267,11 @@ public class SernoGeneratorRandom implements SernoGenerator {
     }
 
     protected boolean checkSernoValidity(final BigInteger serno) {
-        if ((serno.compareTo(lowest) >= 0) && (serno.compareTo(highest) <= 0)) {
+        return checkSernoValidity(serno, range);
+    }
+
+    private static boolean checkSernoValidity(final BigInteger serno, final SernoRange sernoRange) {
+        if ((serno.compareTo(sernoRange.lowest) >= 0) && (serno.compareTo(sernoRange.highest) <= 0)) {
             return true;
         }
         return false;
@@ -175,21 +279,22 @@ public class SernoGeneratorRandom implements SernoGenerator {
 
     @Override
     public int getNoSernoBytes() {
-        return noOctets;
+        return range.noOctets;
     }
 
     @Override
     public void setSeed(final long seed) {
-        random.setSeed(seed);
+        for (final RandomStripe stripe : stripes) {
+            stripe.setSeed(seed);
+        }
     }
 
     @Override
-    public void setAlgorithm(final String algo) throws NoSuchAlgorithmException {
+    public synchronized void setAlgorithm(final String algo) throws NoSuchAlgorithmException {
         // Since re-initialization is expensive, we only do it if we changed the algo
         if (this.algorithm == null || !this.algorithm.equals(algo)) {
             this.algorithm = algo;
             // We must force re-init after choosing a new algorithm
-            this.random = null;
             init();
         }
     }
@@ -198,26 +303,24 @@ public class SernoGeneratorRandom implements SernoGenerator {
      * @return the random generator algorithm as reported by the underlying Java random number generator.
      */
     protected String getAlgorithm() {
-        return random.getAlgorithm();
+        return stripes[0].random.getAlgorithm();
+    }
+
+    /** Available for testing
+     * @return the number of random number generator instances used.
+     */
+    protected int getNoRandomInstances() {
+        return stripes.length;
     }
     
     @Override
     public void setSernoOctetSize(final int noOctets) {
-        if (this.noOctets != noOctets) {
+        if (range.noOctets != noOctets) {
         	// We allow 0 octets for testing
             if ((noOctets > 20) && (noOctets != 0)) {
                 throw new IllegalArgumentException("SernoOctetSize must be between 4 and 20 bytes for this generator.");
             }
-            char[] arr = new char[noOctets*2];
-            // 00800000 (filled with 0 to the no of octets)
-            Arrays.fill(arr, '0');
-            arr[2] = '8';
-            lowest = new BigInteger(String.valueOf(arr), 16);
-            // 7FFFFFFF (filled with F to the no of octets)
-            Arrays.fill(arr, 'F');
-            arr[0] = '7';
-            highest = new BigInteger(String.valueOf(arr), 16);
-            this.noOctets = noOctets;
+            range = new SernoRange(noOctets);
         }
     }
 
@@ -0,0 +1,116 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.certificatetransparency;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.util.List;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.BoundedInputStream;
+import org.bouncycastle.util.encoders.Base64;
+import org.bouncycastle.util.encoders.DecoderException;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.json.simple.parser.JSONParser;
+import org.json.simple.parser.ParseException;
+
+/**
+ * Submits certificate chains to a CT log with the add-chain and add-pre-chain methods in RFC 6962 section 4.
+ *
+ * @version $Id$
+ */
+final class CTLogClient {
+
+    /** Maximum size of a response that is read from a log. Longer responses are truncated, and fail to parse. */
+    private static final int MAX_RESPONSE_SIZE = 64 * 1024;
+
+    private CTLogClient() { }
+
+    /**
+     * Submits a chain to a log. The timeout is applied to both connecting and reading the response.
+     *
+     * @param ctLog the log to submit to
+     * @param chain leaf certificate or pre-certificate followed by the issuer chain
+     * @param precert true to use add-pre-chain, false to use add-chain
+     * @return the SCT returned by the log, which has not been verified
+     * @throws IOException if the log could not be reached, responded with an error or the response could not be parsed
+     */
+    @SuppressWarnings("unchecked")
+    static SignedCertificateTimestamp submit(final CTLogInfo ctLog, final List<Certificate> chain, final boolean precert) throws IOException {
+        final JSONArray encodedChain = new JSONArray();
+        for (final Certificate cert : chain) {
+            try {
+                encodedChain.add(Base64.toBase64String(cert.getEncoded()));
+            } catch (CertificateEncodingException e) {
+                throw new IOException("Could not encode certificate: " + e.getMessage(), e);
+            }
+        }
+        final JSONObject request = new JSONObject();
+        request.put("chain", encodedChain);
+        final byte[] requestBytes = request.toJSONString().getBytes(StandardCharsets.UTF_8);
+
+        final URL url = new URL(ctLog.getUrl() + (precert ? "add-pre-chain" : "add-chain"));
+        final HttpURLConnection con = (HttpURLConnection) url.openConnection();
+        try {
+            con.setConnectTimeout(ctLog.getTimeout());
+            con.setReadTimeout(ctLog.getTimeout());
+            con.setDoOutput(true);
+            con.setRequestMethod("POST");
+            con.setRequestProperty("Content-Type", "application/json");
+            con.setFixedLengthStreamingMode(requestBytes.length);
+            try (final OutputStream os = con.getOutputStream()) {
+                os.write(requestBytes);
+            }
+            final int httpRespCode = con.getResponseCode();
+            if (httpRespCode != HttpURLConnection.HTTP_OK) {
+                throw new IOException("CT log " + ctLog.getUrl() + " responded with HTTP status " + httpRespCode);
+            }
+            try (final InputStream is = con.getInputStream()) {
+                final byte[] response = IOUtils.toByteArray(new BoundedInputStream(is, MAX_RESPONSE_SIZE));
+                return parseResponse(new String(response, StandardCharsets.UTF_8));
+            }
+        } finally {
+            con.disconnect();
+        }
+    }
+
+    /** Parses the JSON response to add-chain or add-pre-chain */
+    static SignedCertificateTimestamp parseResponse(final String response) throws IOException {
+        try {
+            final Object parsed = new JSONParser().parse(response);
+            if (!(parsed instanceof JSONObject)) {
+                throw new IOException("Response from CT log is not a JSON object");
+            }
+            final JSONObject json = (JSONObject) parsed;
+            final Object version = json.get("sct_version");
+            final Object id = json.get("id");
+            final Object timestamp = json.get("timestamp");
+            final Object extensions = json.get("extensions");
+            final Object signature = json.get("signature");
+            if (!(version instanceof Number) || !(id instanceof String) || !(timestamp instanceof Number) || !(signature instanceof String)) {
+                throw new IOException("Response from CT log is missing required fields");
+            }
+            return new SignedCertificateTimestamp(((Number) version).intValue(), Base64.decode((String) id), ((Number) timestamp).longValue(),
+                    extensions instanceof String ? Base64.decode((String) extensions) : new byte[0], Base64.decode((String) signature));
+        } catch (ParseException | DecoderException e) {
+            throw new IOException("Could not parse response from CT log: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,113 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.certificatetransparency;
+
+/**
+ * Decides whether a request may be sent to a CT log, with a circuit breaker and a rate limit.
+ *
+ * The circuit breaker opens after a number of consecutive failures, and requests then fail fast
+ * until the back off time is over. After that, a single trial request is let through. If it succeeds
+ * the circuit breaker closes, otherwise it stays open for another back off period.
+ *
+ * The rate limit is a token bucket which allows bursts of up to one second worth of requests.
+ *
+ * All methods are thread-safe.
+ *
+ * @version $Id$
+ */
+final class CTLogGate {
+
+    private final int failureThreshold;
+    private final long backOff;
+    private final double permitsPerSecond;
+
+    private int consecutiveFailures = 0;
+    private long openUntil = 0;
+    private boolean trialInProgress = false;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * @param failureThreshold number of consecutive failures before the circuit breaker opens, or 0 to never open it
+     * @param backOff time in milliseconds that the circuit breaker stays open
+     * @param permitsPerSecond maximum number of requests per second, or 0 for no limit
+     * @param now current time in milliseconds
+     */
+    CTLogGate(final int failureThreshold, final long backOff, final double permitsPerSecond, final long now) {
+        this.failureThreshold = failureThreshold;
+        this.backOff = backOff;
+        this.permitsPerSecond = permitsPerSecond;
+        this.tokens = getBucketSize();
+        this.lastRefill = now;
+    }
+
+    private double getBucketSize() {
+        return Math.max(1.0, permitsPerSecond);
+    }
+
+    /**
+     * Requests permission to send a request to the log. If true is returned, the caller must report the outcome
+     * with {@link #success()} or {@link #failure(long)}.
+     *
+     * @param now current time in milliseconds
+     * @return false if the circuit breaker is open, or if the rate limit has been reached
+     */
+    synchronized boolean tryAcquire(final long now) {
+        boolean trial = false;
+        if (isTripped()) {
+            if (now < openUntil || trialInProgress) {
+                return false;
+            }
+            trial = true;
+        }
+        if (permitsPerSecond > 0) {
+            tokens = Math.min(getBucketSize(), tokens + (now - lastRefill) * permitsPerSecond / 1000.0);
+            lastRefill = now;
+            if (tokens < 1.0) {
+                return false;
+            }
+            tokens -= 1.0;
+        }
+        trialInProgress = trial;
+        return true;
+    }
+
+    /** Reports that a request succeeded, which closes the circuit breaker */
+    synchronized void success() {
+        consecutiveFailures = 0;
+        trialInProgress = false;
+    }
+
+    /**
+     * Reports that a request failed, because the log could not be reached or responded with an error
+     * @param now current time in milliseconds
+     */
+    synchronized void failure(final long now) {
+        if (consecutiveFailures < Integer.MAX_VALUE) {
+            consecutiveFailures++;
+        }
+        trialInProgress = false;
+        if (isTripped()) {
+            openUntil = now + backOff;
+        }
+    }
+
+    /** @return true if requests currently fail fast because the log is considered to be down */
+    synchronized boolean isOpen(final long now) {
+        return isTripped() && (now < openUntil || trialInProgress);
+    }
+
+    private boolean isTripped() {
+        return failureThreshold > 0 && consecutiveFailures >= failureThreshold;
+    }
+}
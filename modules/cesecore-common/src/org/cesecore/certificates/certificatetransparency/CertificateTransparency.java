@@ -16,6 +16,7 @@ import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.Future;
 
 import org.bouncycastle.cert.X509v3CertificateBuilder;
 import org.cesecore.certificates.certificate.CertificateCreateException;
@@ -44,6 +45,8 @@ public interface CertificateTransparency {
         CERTIFICATE,
         /** Requesting a SCT for inclusion in a OCSP response */
         OCSP,
+        /** Submitting a new certificate, whose SCTs will be included in OCSP responses. Always submitted, like CERTIFICATE. */
+        OCSP_NEW_CERTIFICATE,
         /** Publishing a certificate to all CT logs */
         PUBLISHER;
     };
@@ -69,6 +72,16 @@ public interface CertificateTransparency {
      */
     byte[] fetchSCTList(List<Certificate> chain, CertificateProfile certProfile, CTSubmissionConfigParams config, UsageMode usageMode) throws CTLogException;
 
+    /**
+     * Submits a certificate to the CT logs in the background. The SCTs are cached, so that a later call to
+     * {@link #fetchSCTList(List, CertificateProfile, CTSubmissionConfigParams, UsageMode)} for the same certificate
+     * returns them without contacting the logs, e.g. when the SCTs are added to OCSP responses or to a TLS extension.
+     *
+     * @return the result of the submission, as returned by fetchSCTList
+     * @see CertificateTransparency#fetchSCTList(List, CertificateProfile, CTSubmissionConfigParams, UsageMode)
+     */
+    Future<byte[]> fetchSCTListAsync(List<Certificate> chain, CertificateProfile certProfile, CTSubmissionConfigParams config, UsageMode usageMode);
+
     /**
      * Adds a critical extension to prevent the certificate from being used
      */
@@ -80,7 +93,7 @@ public interface CertificateTransparency {
     boolean hasSCTs(Certificate cert);
 
     /**
-     * Clears the URL availability status (fast fail) cache.
+     * Clears the URL availability status (fast fail) cache and the SCT cache.
      * To clear the OCSP CT cache, use OcspExtensionsCache.reloadCache()
      */
     void clearCaches();
@@ -29,8 +29,8 @@ public enum CertificateTransparencyFactory {
     private CertificateTransparencyFactory() {
         CertificateTransparency instance;
         try {
-            // No lock is used since the CertificateTransparencyImpl class has no state
-            // so it's OK with multiple instances.
+            // No lock is needed, since the JVM initializes the enum constant only once.
+            // The CertificateTransparencyImpl instance holds the SCT cache and the log availability state.
             instance = (CertificateTransparency)Class.forName(IMPLEMENTATION_CLASSNAME).newInstance();
         } catch (Exception e) { // NOPMD not a good idea to throw an exception in a enum constructor
             instance = null;
@@ -0,0 +1,551 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.certificatetransparency;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.ASN1TaggedObject;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.cert.CertIOException;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.util.encoders.Base64;
+import org.cesecore.certificates.certificate.CertificateCreateException;
+import org.cesecore.certificates.certificateprofile.CertificateProfile;
+import org.cesecore.config.CesecoreConfiguration;
+import org.cesecore.util.ConcurrentCache;
+
+/**
+ * Submits certificates and pre-certificates to Certificate Transparency logs (RFC 6962).
+ *
+ * A certificate is submitted to all logs with a label that is enabled in the certificate profile in parallel, and the
+ * SCTs are collected until the maximum number of SCTs has been reached (preferring one SCT per label), all logs have
+ * responded, or the timeout of the slowest log has passed. Each log has a circuit breaker and a rate limit
+ * ({@link CTLogGate}), so that a log which is down, or overloaded, fails fast and the SCT is taken from another log.
+ *
+ * Each SCT is verified against the public key of the log, and cached per certificate and log. A retried issuance of the
+ * same pre-certificate, or an OCSP response for a certificate that has been submitted with
+ * {@link #fetchSCTListAsync(List, CertificateProfile, CTSubmissionConfigParams, UsageMode)}, is then served from the cache.
+ *
+ * @version $Id$
+ */
+public class CertificateTransparencyImpl implements CertificateTransparency {
+
+    private static final Logger log = Logger.getLogger(CertificateTransparencyImpl.class);
+
+    /** Critical extension which prevents a pre-certificate from being used, RFC 6962 section 3.1 */
+    public static final String POISON_OID = "1.3.6.1.4.1.11129.2.4.3";
+
+    private static final int TBS_EXTENSIONS_TAG = 3;
+
+    private final ExecutorService submissionExecutor;
+    private final ExecutorService asyncExecutor;
+    /** Encoded SCTs, by certificate hash and log */
+    private final ConcurrentCache<String, byte[]> sctCache = new ConcurrentCache<>();
+    /** Circuit breakers and rate limits, by log URL */
+    private final ConcurrentMap<String, CTLogGate> gates = new ConcurrentHashMap<>();
+    private final int failureThreshold;
+    private final long backOff;
+    private final long rateLimit;
+
+    /** Creates a CT implementation with the settings in cesecore.properties */
+    public CertificateTransparencyImpl() {
+        final int threads = CesecoreConfiguration.getCTSubmissionThreads();
+        submissionExecutor = createExecutor("CtLogSubmission", threads);
+        asyncExecutor = createExecutor("CtAsyncSubmission", threads);
+        sctCache.setEnabled(CesecoreConfiguration.getCTCacheEnabled());
+        sctCache.setMaxEntries(CesecoreConfiguration.getCTCacheMaxEntries());
+        sctCache.setCleanupInterval(CesecoreConfiguration.getCTCacheCleanupInterval());
+        failureThreshold = CesecoreConfiguration.getCTFastFailEnabled() ? CesecoreConfiguration.getCTFastFailFailures() : 0;
+        backOff = CesecoreConfiguration.getCTFastFailBackOff();
+        rateLimit = CesecoreConfiguration.getCTRateLimit();
+    }
+
+    private static ExecutorService createExecutor(final String name, final int threads) {
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(final Runnable runnable) {
+                        final Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /** Stops the submission threads. Only used by tests, since the instance normally lives as long as the application. */
+    void shutdown() {
+        asyncExecutor.shutdownNow();
+        submissionExecutor.shutdownNow();
+    }
+
+    @Override
+    public byte[] fetchSCTList(final List<Certificate> chain, final CertificateProfile certProfile, final CTSubmissionConfigParams config)
+            throws CTLogException {
+        return fetchSCTList(chain, certProfile, config, UsageMode.CERTIFICATE);
+    }
+
+    @Override
+    public byte[] fetchSCTList(final List<Certificate> chain, final CertificateProfile certProfile, final CTSubmissionConfigParams config,
+            final UsageMode usageMode) throws CTLogException {
+        if (chain == null || chain.isEmpty() || !(chain.get(0) instanceof X509Certificate)) {
+            throw new IllegalArgumentException("The chain must start with an X.509 certificate.");
+        }
+        final X509Certificate leaf = (X509Certificate) chain.get(0);
+        final List<CTLogInfo> ctLogs = getLogsForCertificate(leaf, certProfile, config);
+        if (ctLogs.isEmpty()) {
+            if (log.isDebugEnabled()) {
+                log.debug("No CT logs are enabled in the certificate profile for a certificate expiring " + leaf.getNotAfter());
+            }
+            return null;
+        }
+        final boolean precert = leaf.getCriticalExtensionOIDs() != null && leaf.getCriticalExtensionOIDs().contains(POISON_OID);
+        final LogEntry entry;
+        try {
+            if (precert) {
+                if (chain.size() < 2) {
+                    throw new CTLogException("The issuer certificate is required when submitting a pre-certificate.");
+                }
+                entry = new LogEntry(SignedCertificateTimestamp.ENTRY_TYPE_PRECERT, sha256(chain.get(1).getPublicKey().getEncoded()),
+                        removeExtension(leaf.getTBSCertificate(), POISON_OID));
+            } else {
+                entry = new LogEntry(SignedCertificateTimestamp.ENTRY_TYPE_X509, null, leaf.getEncoded());
+            }
+        } catch (CertificateEncodingException | IOException e) {
+            throw new CTLogException(e);
+        }
+        final int minScts = getMinScts(leaf, certProfile, config, usageMode);
+        final int maxScts = Math.max(minScts, usageMode == UsageMode.PUBLISHER ? ctLogs.size() : getMaxScts(leaf, certProfile, config, usageMode));
+        // Existing certificates are only submitted if the profile allows it. Otherwise only SCTs from earlier submissions are used.
+        final boolean submitNew = usageMode == UsageMode.CERTIFICATE || usageMode == UsageMode.OCSP_NEW_CERTIFICATE
+                || certProfile.isUseCTSubmitExisting();
+        final int maxRetries = Math.max(0, certProfile.getCTMaxRetries());
+
+        final CompletionService<LogResult> completionService = new ExecutorCompletionService<>(submissionExecutor);
+        final List<Future<LogResult>> futures = new ArrayList<>(ctLogs.size());
+        final Set<String> labels = new LinkedHashSet<>();
+        long maxTimeout = 0;
+        for (final CTLogInfo ctLog : ctLogs) {
+            labels.add(ctLog.getLabel());
+            maxTimeout = Math.max(maxTimeout, ctLog.getTimeout());
+            futures.add(completionService.submit(new Callable<LogResult>() {
+                @Override
+                public LogResult call() {
+                    return new LogResult(ctLog, getSct(ctLog, chain, precert, entry, maxRetries, submitNew));
+                }
+            }));
+        }
+        final long deadline = System.currentTimeMillis() + maxTimeout * (maxRetries + 1L);
+        final List<LogResult> results = new ArrayList<>();
+        final Set<String> coveredLabels = new LinkedHashSet<>();
+        try {
+            for (int pending = futures.size(); pending > 0; pending--) {
+                if (results.size() >= maxScts && (coveredLabels.size() == labels.size() || coveredLabels.size() >= maxScts)) {
+                    break;
+                }
+                final long remaining = deadline - System.currentTimeMillis();
+                final Future<LogResult> future = remaining > 0 ? completionService.poll(remaining, TimeUnit.MILLISECONDS) : null;
+                if (future == null) {
+                    log.info("Timed out waiting for " + pending + " CT logs to respond.");
+                    break;
+                }
+                final LogResult result = future.get();
+                if (result.sct != null) {
+                    results.add(result);
+                    coveredLabels.add(result.ctLog.getLabel());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CTLogException("Interrupted while waiting for CT logs to respond.");
+        } catch (ExecutionException e) {
+            // Not expected, since failures are handled in getSct
+            throw new CTLogException(e);
+        } finally {
+            // Submissions in progress complete in the background, and their SCTs are cached
+            for (final Future<LogResult> future : futures) {
+                future.cancel(false);
+            }
+        }
+
+        final List<byte[]> scts = selectScts(results, maxScts);
+        if (scts.size() < minScts) {
+            throw new CTLogException("Got " + scts.size() + " SCTs from " + ctLogs.size() + " CT logs, but " + minScts
+                    + " SCTs are required by the certificate profile.");
+        }
+        if (scts.isEmpty()) {
+            return null;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Got " + scts.size() + " SCTs from " + ctLogs.size() + " CT logs, using usage mode " + usageMode);
+        }
+        return SignedCertificateTimestamp.encodeList(scts);
+    }
+
+    /** Takes one SCT per label first, and then any other SCTs, in the order they arrived */
+    private static List<byte[]> selectScts(final List<LogResult> results, final int maxScts) {
+        final List<byte[]> scts = new ArrayList<>();
+        final Set<String> selectedLabels = new LinkedHashSet<>();
+        final boolean[] selected = new boolean[results.size()];
+        for (int i = 0; i < results.size() && scts.size() < maxScts; i++) {
+            if (selectedLabels.add(results.get(i).ctLog.getLabel())) {
+                selected[i] = true;
+                scts.add(results.get(i).sct);
+            }
+        }
+        for (int i = 0; i < results.size() && scts.size() < maxScts; i++) {
+            if (!selected[i]) {
+                scts.add(results.get(i).sct);
+            }
+        }
+        return scts;
+    }
+
+    @Override
+    public Future<byte[]> fetchSCTListAsync(final List<Certificate> chain, final CertificateProfile certProfile,
+            final CTSubmissionConfigParams config, final UsageMode usageMode) {
+        return asyncExecutor.submit(new Callable<byte[]>() {
+            @Override
+            public byte[] call() throws CTLogException {
+                try {
+                    return fetchSCTList(chain, certProfile, config, usageMode);
+                } catch (CTLogException e) {
+                    log.info("Background submission to CT logs failed: " + e.getMessage());
+                    throw e;
+                }
+            }
+        });
+    }
+
+    /**
+     * Returns the SCT from a log, from the cache or by submitting the certificate.
+     * @return the encoded SCT, or null if it could not be retrieved
+     */
+    private byte[] getSct(final CTLogInfo ctLog, final List<Certificate> chain, final boolean precert, final LogEntry entry,
+            final int maxRetries, final boolean submitNew) {
+        final ConcurrentCache<String, byte[]>.Entry cacheEntry = sctCache.openCacheEntry(entry.getHash() + ";" + ctLog.getLogId(),
+                ctLog.getTimeout());
+        if (cacheEntry == null) {
+            // Another thread is submitting the same certificate to the log, and did not complete in time
+            return null;
+        }
+        try {
+            if (cacheEntry.isInCache()) {
+                return cacheEntry.getValue();
+            }
+            if (!submitNew) {
+                return null;
+            }
+            final byte[] sct = submit(ctLog, chain, precert, entry, maxRetries);
+            if (sct != null) {
+                cacheEntry.putValue(sct);
+            }
+            return sct;
+        } finally {
+            cacheEntry.close();
+        }
+    }
+
+    private byte[] submit(final CTLogInfo ctLog, final List<Certificate> chain, final boolean precert, final LogEntry entry, final int maxRetries) {
+        final CTLogGate gate = getGate(ctLog);
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            if (!gate.tryAcquire(System.currentTimeMillis())) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Not submitting to CT log " + ctLog.getUrl() + ", since it is down or the rate limit has been reached.");
+                }
+                return null;
+            }
+            try {
+                final SignedCertificateTimestamp sct = CTLogClient.submit(ctLog, chain, precert);
+                if (!Arrays.equals(sct.getLogId(), getLogKeyId(ctLog))
+                        || !sct.verify(ctLog.getLogPublicKey(), entry.entryType, entry.issuerKeyHash, entry.data)) {
+                    throw new IOException("CT log " + ctLog.getUrl() + " returned an SCT which does not verify with the public key of the log.");
+                }
+                gate.success();
+                return sct.getEncoded();
+            } catch (IOException e) {
+                gate.failure(System.currentTimeMillis());
+                log.info("Failed to submit certificate to CT log " + ctLog.getUrl() + " (attempt " + (attempt + 1) + " of " + (maxRetries + 1)
+                        + "): " + e.getMessage());
+            }
+        }
+        return null;
+    }
+
+    private CTLogGate getGate(final CTLogInfo ctLog) {
+        CTLogGate gate = gates.get(ctLog.getUrl());
+        if (gate == null) {
+            final CTLogGate newGate = new CTLogGate(failureThreshold, backOff, rateLimit, System.currentTimeMillis());
+            gate = gates.putIfAbsent(ctLog.getUrl(), newGate);
+            if (gate == null) {
+                gate = newGate;
+            }
+        }
+        return gate;
+    }
+
+    /** @return true if requests to the log currently fail fast, because the log is considered to be down */
+    boolean isLogDown(final CTLogInfo ctLog) {
+        final CTLogGate gate = gates.get(ctLog.getUrl());
+        return gate != null && gate.isOpen(System.currentTimeMillis());
+    }
+
+    /** Returns the logs with a label that is enabled in the certificate profile, and which accept the expiration year of the certificate */
+    private static List<CTLogInfo> getLogsForCertificate(final X509Certificate leaf, final CertificateProfile certProfile,
+            final CTSubmissionConfigParams config) {
+        final List<CTLogInfo> ret = new ArrayList<>();
+        final Map<Integer, CTLogInfo> configuredCtLogs = config == null ? null : config.getConfiguredCTLogs();
+        if (configuredCtLogs == null) {
+            return ret;
+        }
+        final Calendar notAfter = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        notAfter.setTime(leaf.getNotAfter());
+        for (final String label : certProfile.getEnabledCtLabels()) {
+            for (final CTLogInfo ctLog : configuredCtLogs.values()) {
+                if (label.equals(ctLog.getLabel())
+                        && (ctLog.getExpirationYearRequired() == null || ctLog.getExpirationYearRequired() == notAfter.get(Calendar.YEAR))) {
+                    ret.add(ctLog);
+                }
+            }
+        }
+        return ret;
+    }
+
+    private static int getMinScts(final X509Certificate leaf, final CertificateProfile certProfile, final CTSubmissionConfigParams config,
+            final UsageMode usageMode) {
+        if (certProfile.isNumberOfSctByValidity() && config.getValidityPolicy() != null) {
+            return getSctsByValidity(leaf, config.getValidityPolicy());
+        }
+        return isOcsp(usageMode) ? certProfile.getCtMinSctsOcsp() : certProfile.getCtMinScts();
+    }
+
+    private static int getMaxScts(final X509Certificate leaf, final CertificateProfile certProfile, final CTSubmissionConfigParams config,
+            final UsageMode usageMode) {
+        if (certProfile.isMaxNumberOfSctByValidity() && config.getValidityPolicy() != null) {
+            return getSctsByValidity(leaf, config.getValidityPolicy());
+        }
+        return isOcsp(usageMode) ? certProfile.getCtMaxSctsOcsp() : certProfile.getCtMaxScts();
+    }
+
+    private static boolean isOcsp(final UsageMode usageMode) {
+        return usageMode == UsageMode.OCSP || usageMode == UsageMode.OCSP_NEW_CERTIFICATE;
+    }
+
+    /** Returns the number of SCTs the policy requires for the validity of the certificate, in whole months */
+    static int getSctsByValidity(final X509Certificate leaf, final GoogleCtPolicy policy) {
+        final Calendar notBefore = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        notBefore.setTime(leaf.getNotBefore());
+        final Calendar notAfter = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        notAfter.setTime(leaf.getNotAfter());
+        int months = (notAfter.get(Calendar.YEAR) - notBefore.get(Calendar.YEAR)) * 12 + notAfter.get(Calendar.MONTH) - notBefore.get(Calendar.MONTH);
+        if (notAfter.get(Calendar.DAY_OF_MONTH) < notBefore.get(Calendar.DAY_OF_MONTH)) {
+            months--;
+        }
+        for (int i = 0; i < policy.getNumberOfBreakpoints(); i++) {
+            if (months < policy.getLessThanMonthsByIndex(i)) {
+                return policy.getMinSctsByIndex(i);
+            }
+        }
+        return policy.getMinSctsByIndex(policy.getNumberOfBreakpoints() - 1);
+    }
+
+    @Override
+    public void addPreCertPoison(final X509v3CertificateBuilder precertbuilder) {
+        try {
+            precertbuilder.addExtension(new ASN1ObjectIdentifier(POISON_OID), true, DERNull.INSTANCE);
+        } catch (CertIOException e) {
+            throw new IllegalStateException("Could not add the CT poison extension.", e);
+        }
+    }
+
+    @Override
+    public boolean hasSCTs(final Certificate cert) {
+        if (!(cert instanceof X509Certificate)) {
+            return false;
+        }
+        final byte[] extensionValue = ((X509Certificate) cert).getExtensionValue(SCTLIST_OID);
+        if (extensionValue == null) {
+            return false;
+        }
+        try {
+            return !SignedCertificateTimestamp.decodeList(getSctList(extensionValue)).isEmpty();
+        } catch (IOException | IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public void clearCaches() {
+        gates.clear();
+        sctCache.clear();
+    }
+
+    @Override
+    public void allSctsAreValidOrThrow(final X509Certificate leafCertificate, final List<Certificate> issuerCertificates,
+            final Collection<CTLogInfo> ctLogs) throws CertificateCreateException {
+        final byte[] extensionValue = leafCertificate.getExtensionValue(SCTLIST_OID);
+        if (extensionValue == null) {
+            return;
+        }
+        if (ctLogs == null || ctLogs.isEmpty()) {
+            throw new CertificateCreateException("The certificate contains SCTs, but no CT logs are available to verify them with.");
+        }
+        if (issuerCertificates == null || issuerCertificates.isEmpty()) {
+            throw new CertificateCreateException("The certificate contains SCTs, but the issuer certificate is not available.");
+        }
+        try {
+            // The SCTs in the certificate were issued for the pre-certificate, which had the same contents except for the SCT extension
+            final LogEntry entry = new LogEntry(SignedCertificateTimestamp.ENTRY_TYPE_PRECERT, sha256(issuerCertificates.get(0).getPublicKey().getEncoded()),
+                    removeExtension(leafCertificate.getTBSCertificate(), SCTLIST_OID));
+            for (final byte[] encodedSct : SignedCertificateTimestamp.decodeList(getSctList(extensionValue))) {
+                final SignedCertificateTimestamp sct = SignedCertificateTimestamp.getInstance(encodedSct);
+                CTLogInfo issuingLog = null;
+                for (final CTLogInfo ctLog : ctLogs) {
+                    if (Arrays.equals(sct.getLogId(), getLogKeyId(ctLog))) {
+                        issuingLog = ctLog;
+                        break;
+                    }
+                }
+                if (issuingLog == null) {
+                    throw new CertificateCreateException("The certificate contains an SCT from an unknown CT log with log ID "
+                            + Base64.toBase64String(sct.getLogId()) + ".");
+                }
+                if (!sct.verify(issuingLog.getLogPublicKey(), entry.entryType, entry.issuerKeyHash, entry.data)) {
+                    throw new CertificateCreateException("The SCT from CT log " + issuingLog.getUrl() + " does not verify over the certificate.");
+                }
+            }
+        } catch (CertificateEncodingException | IOException | IllegalArgumentException e) {
+            throw new CertificateCreateException("Could not parse the SCTs in the certificate: " + e.getMessage(), e);
+        }
+    }
+
+    /** Unwraps the SCT list from the DER encoded extension value returned by X509Certificate.getExtensionValue */
+    private static byte[] getSctList(final byte[] extensionValue) {
+        return ASN1OctetString.getInstance(ASN1OctetString.getInstance(extensionValue).getOctets()).getOctets();
+    }
+
+    /**
+     * Returns a DER encoded TBSCertificate with an extension removed, e.g. the poison extension of a pre-certificate.
+     * The order of the other extensions is kept.
+     */
+    static byte[] removeExtension(final byte[] tbsCertificate, final String oid) throws IOException {
+        final ASN1ObjectIdentifier removedOid = new ASN1ObjectIdentifier(oid);
+        final ASN1EncodableVector tbs = new ASN1EncodableVector();
+        final Enumeration<?> fields = ASN1Sequence.getInstance(tbsCertificate).getObjects();
+        while (fields.hasMoreElements()) {
+            final ASN1Encodable field = (ASN1Encodable) fields.nextElement();
+            if (field instanceof ASN1TaggedObject && ((ASN1TaggedObject) field).getTagNo() == TBS_EXTENSIONS_TAG) {
+                final Extensions extensions = Extensions.getInstance((ASN1TaggedObject) field, true);
+                final ASN1EncodableVector keptExtensions = new ASN1EncodableVector();
+                for (final ASN1ObjectIdentifier extensionOid : extensions.getExtensionOIDs()) {
+                    if (!extensionOid.equals(removedOid)) {
+                        final Extension extension = extensions.getExtension(extensionOid);
+                        keptExtensions.add(extension);
+                    }
+                }
+                if (keptExtensions.size() > 0) {
+                    tbs.add(new DERTaggedObject(true, TBS_EXTENSIONS_TAG, new DERSequence(keptExtensions)));
+                }
+            } else {
+                tbs.add(field);
+            }
+        }
+        return new DERSequence(tbs).getEncoded(ASN1Encoding.DER);
+    }
+
+    /** @return the log ID, which is the SHA-256 hash of the public key of the log */
+    private static byte[] getLogKeyId(final CTLogInfo ctLog) {
+        return sha256(ctLog.getLogPublicKey().getEncoded());
+    }
+
+    private static byte[] sha256(final byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /** The data that a log signs in an SCT, for a certificate or pre-certificate */
+    private static final class LogEntry {
+        private final int entryType;
+        private final byte[] issuerKeyHash;
+        private final byte[] data;
+        private final String hash;
+
+        private LogEntry(final int entryType, final byte[] issuerKeyHash, final byte[] data) {
+            this.entryType = entryType;
+            this.issuerKeyHash = issuerKeyHash;
+            this.data = data;
+            this.hash = Base64.toBase64String(sha256(SignedCertificateTimestamp.getSignedData(SignedCertificateTimestamp.VERSION_V1, 0L,
+                    entryType, issuerKeyHash, data, new byte[0])));
+        }
+
+        /** @return a hash which identifies the certificate or pre-certificate, used as key in the SCT cache */
+        private String getHash() {
+            return hash;
+        }
+    }
+
+    /** An SCT from a log, or null if the log did not return a valid SCT */
+    private static final class LogResult {
+        private final CTLogInfo ctLog;
+        private final byte[] sct;
+
+        private LogResult(final CTLogInfo ctLog, final byte[] sct) {
+            this.ctLog = ctLog;
+            this.sct = sct;
+        }
+    }
+}
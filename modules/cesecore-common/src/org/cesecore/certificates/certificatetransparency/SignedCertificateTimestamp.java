@@ -0,0 +1,257 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.certificatetransparency;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.bouncycastle.util.io.Streams;
+
+/**
+ * A Signed Certificate Timestamp (SCT) as defined in RFC 6962 section 3.2, with methods for
+ * the TLS encoding used in the SCT list extension, and for verifying the signature of the log.
+ *
+ * @version $Id$
+ */
+public final class SignedCertificateTimestamp {
+
+    /** SCT version v1 */
+    public static final int VERSION_V1 = 0;
+    /** LogEntryType of a certificate submitted with add-chain */
+    public static final int ENTRY_TYPE_X509 = 0;
+    /** LogEntryType of a pre-certificate submitted with add-pre-chain */
+    public static final int ENTRY_TYPE_PRECERT = 1;
+
+    private static final int SIGNATURE_TYPE_CERTIFICATE_TIMESTAMP = 0;
+    private static final int HASH_ALGORITHM_SHA256 = 4;
+    private static final int SIGNATURE_ALGORITHM_RSA = 1;
+    private static final int SIGNATURE_ALGORITHM_ECDSA = 3;
+    private static final int LOG_ID_LENGTH = 32;
+
+    private final int version;
+    private final byte[] logId;
+    private final long timestamp;
+    private final byte[] extensions;
+    private final int hashAlgorithm;
+    private final int signatureAlgorithm;
+    private final byte[] signature;
+
+    /**
+     * @param version SCT version, {@link #VERSION_V1}
+     * @param logId SHA-256 hash of the public key of the log
+     * @param timestamp milliseconds since the epoch
+     * @param extensions CT extensions, empty if none
+     * @param digitallySigned TLS encoded DigitallySigned struct, i.e. hash algorithm, signature algorithm and signature
+     * @throws IOException if the values are malformed
+     */
+    public SignedCertificateTimestamp(final int version, final byte[] logId, final long timestamp, final byte[] extensions,
+            final byte[] digitallySigned) throws IOException {
+        if (logId == null || logId.length != LOG_ID_LENGTH) {
+            throw new IOException("Log ID must be " + LOG_ID_LENGTH + " bytes");
+        }
+        this.version = version;
+        this.logId = logId.clone();
+        this.timestamp = timestamp;
+        this.extensions = extensions == null ? new byte[0] : extensions.clone();
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(digitallySigned));
+        try {
+            this.hashAlgorithm = in.readUnsignedByte();
+            this.signatureAlgorithm = in.readUnsignedByte();
+            this.signature = readOpaque(in, 2);
+            if (in.available() != 0) {
+                throw new IOException("Trailing data after signature");
+            }
+        } catch (EOFException e) {
+            throw new IOException("Truncated signature", e);
+        }
+    }
+
+    /**
+     * Parses a TLS encoded SCT, as found in an SCT list.
+     * @throws IOException if the SCT is malformed
+     */
+    public static SignedCertificateTimestamp getInstance(final byte[] encoded) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(encoded));
+        try {
+            final int version = in.readUnsignedByte();
+            if (version != VERSION_V1) {
+                throw new IOException("Unsupported SCT version " + version);
+            }
+            final byte[] logId = new byte[LOG_ID_LENGTH];
+            in.readFully(logId);
+            final long timestamp = in.readLong();
+            final byte[] extensions = readOpaque(in, 2);
+            final byte[] digitallySigned = Streams.readAll(in);
+            return new SignedCertificateTimestamp(version, logId, timestamp, extensions, digitallySigned);
+        } catch (EOFException e) {
+            throw new IOException("Truncated SCT", e);
+        }
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    /** @return the SHA-256 hash of the public key of the log that issued this SCT */
+    public byte[] getLogId() {
+        return logId.clone();
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /** @return the TLS encoding of this SCT, i.e. a SerializedSCT in an SCT list */
+    public byte[] getEncoded() {
+        try {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            final DataOutputStream out = new DataOutputStream(baos);
+            out.writeByte(version);
+            out.write(logId);
+            out.writeLong(timestamp);
+            writeOpaque(out, extensions, 2);
+            out.writeByte(hashAlgorithm);
+            out.writeByte(signatureAlgorithm);
+            writeOpaque(out, signature, 2);
+            out.flush();
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e); // Can't happen with a ByteArrayOutputStream
+        }
+    }
+
+    /**
+     * Verifies the signature of the log over a log entry.
+     *
+     * @param logPublicKey public key of the log
+     * @param entryType {@link #ENTRY_TYPE_X509} or {@link #ENTRY_TYPE_PRECERT}
+     * @param issuerKeyHash SHA-256 hash of the SubjectPublicKeyInfo of the issuer, only used for pre-certificates
+     * @param entry the DER encoded certificate, or the DER encoded TBSCertificate of a pre-certificate without the poison extension
+     * @return true if the SCT was issued by the log and the signature is valid
+     */
+    public boolean verify(final PublicKey logPublicKey, final int entryType, final byte[] issuerKeyHash, final byte[] entry) {
+        if (hashAlgorithm != HASH_ALGORITHM_SHA256) {
+            return false;
+        }
+        final String algorithm;
+        if (signatureAlgorithm == SIGNATURE_ALGORITHM_ECDSA) {
+            algorithm = "SHA256withECDSA";
+        } else if (signatureAlgorithm == SIGNATURE_ALGORITHM_RSA) {
+            algorithm = "SHA256withRSA";
+        } else {
+            return false;
+        }
+        try {
+            final Signature verifier = Signature.getInstance(algorithm);
+            verifier.initVerify(logPublicKey);
+            verifier.update(getSignedData(version, timestamp, entryType, issuerKeyHash, entry, extensions));
+            return verifier.verify(signature);
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Returns the data which the log signs when issuing an SCT (the digitally-signed struct in RFC 6962 section 3.2).
+     */
+    static byte[] getSignedData(final int version, final long timestamp, final int entryType, final byte[] issuerKeyHash, final byte[] entry,
+            final byte[] extensions) {
+        try {
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream(entry.length + 64);
+            final DataOutputStream out = new DataOutputStream(baos);
+            out.writeByte(version);
+            out.writeByte(SIGNATURE_TYPE_CERTIFICATE_TIMESTAMP);
+            out.writeLong(timestamp);
+            out.writeShort(entryType);
+            if (entryType == ENTRY_TYPE_PRECERT) {
+                out.write(issuerKeyHash);
+            }
+            writeOpaque(out, entry, 3);
+            writeOpaque(out, extensions, 2);
+            out.flush();
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Encodes a list of TLS encoded SCTs into a SignedCertificateTimestampList, which is the
+     * value of the SCT list certificate and OCSP extensions.
+     */
+    public static byte[] encodeList(final List<byte[]> encodedScts) {
+        try {
+            final ByteArrayOutputStream list = new ByteArrayOutputStream();
+            final DataOutputStream listOut = new DataOutputStream(list);
+            for (final byte[] sct : encodedScts) {
+                writeOpaque(listOut, sct, 2);
+            }
+            listOut.flush();
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            writeOpaque(new DataOutputStream(baos), list.toByteArray(), 2);
+            return baos.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decodes a SignedCertificateTimestampList into the TLS encoded SCTs in it.
+     * @throws IOException if the list is malformed
+     */
+    public static List<byte[]> decodeList(final byte[] encodedList) throws IOException {
+        final DataInputStream in = new DataInputStream(new ByteArrayInputStream(encodedList));
+        try {
+            final DataInputStream listIn = new DataInputStream(new ByteArrayInputStream(readOpaque(in, 2)));
+            if (in.available() != 0) {
+                throw new IOException("Trailing data after SCT list");
+            }
+            final List<byte[]> ret = new ArrayList<>();
+            while (listIn.available() > 0) {
+                ret.add(readOpaque(listIn, 2));
+            }
+            return ret;
+        } catch (EOFException e) {
+            throw new IOException("Truncated SCT list", e);
+        }
+    }
+
+    private static byte[] readOpaque(final DataInputStream in, final int lengthBytes) throws IOException {
+        int length = 0;
+        for (int i = 0; i < lengthBytes; i++) {
+            length = (length << 8) | in.readUnsignedByte();
+        }
+        final byte[] ret = new byte[length];
+        in.readFully(ret);
+        return ret;
+    }
+
+    private static void writeOpaque(final DataOutputStream out, final byte[] value, final int lengthBytes) throws IOException {
+        if (value.length >= 1 << (8 * lengthBytes)) {
+            throw new IOException("Value of " + value.length + " bytes is too long for a " + lengthBytes + " byte length");
+        }
+        for (int i = lengthBytes - 1; i >= 0; i--) {
+            out.writeByte(value.length >>> (8 * i));
+        }
+        out.write(value);
+    }
+}
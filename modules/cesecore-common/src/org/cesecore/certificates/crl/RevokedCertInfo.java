@@ -17,10 +17,10 @@ import java.math.BigInteger;
 import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
-import org.cesecore.util.CompressedCollection;
 
 /**
  * Holds information about a revoked certificate. The information kept here is the
@@ -112,6 +112,26 @@ public class RevokedCertInfo implements Serializable {
         this.userCertificate = serno==null ? null : serno.toByteArray();
     }
 
+    /** @return the serial number as two's complement big-endian bytes, without creating a BigInteger */
+    byte[] getUserCertificateBytes() {
+        return userCertificate;
+    }
+
+    /** @return the fingerprint as bytes, without creating a String */
+    byte[] getFingerprintBytes() {
+        return fingerprint;
+    }
+
+    /** @return the revocation date in milliseconds, or 0 if not set */
+    long getRevocationDateMillis() {
+        return revocationDate;
+    }
+
+    /** @return the expire date in milliseconds, or 0 if not set */
+    long getExpireDateMillis() {
+        return expireDate;
+    }
+
     /** 
      * @return true is there is a revocationDate set (getRevocationDate() != null), false otherwise
      */
@@ -228,17 +248,92 @@ public class RevokedCertInfo implements Serializable {
      * <li>Permanent status changes always win over temporary ones ("on hold" / "re-activate")
      * <li>More recent temporary status changes win over older ones
      * </ul>
+     * If both collections are {@link RevokedCertInfoCollection}s, which are sorted by serial number, the entries are merged while
+     * iterating over both collections, so only the entries for one serial number are kept in memory at a time.
      * 
      * @param a First collection of RevokedCertInfo. May <b>not</b> contain duplicates for the same serial number.
      * @param b Second collection of RevokedCertInfo. May contain duplicates
      * @param lastBaseCrlDate Entries in unrevoked state will only be included if they are more recent than this date. (<= 0 means never include them)
-     * @return CompressionCollection of certificates. May simply be a reference to <code>a</code> if <code>b</code> is empty, or a new merged CompressedCollection with any duplicates removed.
+     * @return RevokedCertInfoCollection of certificates. May simply be a reference to <code>a</code> if <code>b</code> is empty, or a new merged RevokedCertInfoCollection with any duplicates removed.
      */
     public static Collection<RevokedCertInfo> mergeByDateAndStatus(final Collection<RevokedCertInfo> a, final Collection<RevokedCertInfo> b, final long lastBaseCrlDate) {
         // We can optimize this case, but not the reverse, since b can contain duplicates that should be filtered.
         if (b.isEmpty()) {
             return a;
         }
+        final RevokedCertInfoCollection mergedRevokedData = new RevokedCertInfoCollection();
+        if (a instanceof RevokedCertInfoCollection && b instanceof RevokedCertInfoCollection) {
+            mergeSorted(a.iterator(), b.iterator(), lastBaseCrlDate, mergedRevokedData);
+        } else {
+            mergeUnsorted(a, b, lastBaseCrlDate, mergedRevokedData);
+        }
+        mergedRevokedData.closeForWrite();
+        if (log.isDebugEnabled()) {
+            log.debug("mergeByDateAndStatus: Merged to " + mergedRevokedData.size() + " entries");
+        }
+        return mergedRevokedData;
+    }
+
+    /** Merges two iterators that return entries sorted by serial number, one serial number at a time */
+    private static void mergeSorted(final Iterator<RevokedCertInfo> a, final Iterator<RevokedCertInfo> b, final long lastBaseCrlDate,
+            final Collection<RevokedCertInfo> mergedRevokedData) {
+        RevokedCertInfo nextA = a.hasNext() ? a.next() : null;
+        RevokedCertInfo nextB = b.hasNext() ? b.next() : null;
+        while (nextA != null || nextB != null) {
+            final BigInteger serial;
+            if (nextA == null) {
+                serial = nextB.getUserCertificate();
+            } else if (nextB == null) {
+                serial = nextA.getUserCertificate();
+            } else {
+                final BigInteger serialA = nextA.getUserCertificate();
+                final BigInteger serialB = nextB.getUserCertificate();
+                serial = compareSerials(serialA, serialB) <= 0 ? serialA : serialB;
+            }
+            RevokedCertInfo permRevoked = null;
+            RevokedCertInfo tempRevoked = null;
+            while (nextA != null && compareSerials(nextA.getUserCertificate(), serial) == 0) {
+                if (nextA.isPermanentlyRevoked()) {
+                    permRevoked = nextA;
+                } else {
+                    tempRevoked = nextA;
+                }
+                nextA = a.hasNext() ? a.next() : null;
+            }
+            while (nextB != null && compareSerials(nextB.getUserCertificate(), serial) == 0) {
+                final Date revdate = nextB.getRevocationDate();
+                if (permRevoked != null) {
+                    // Older permanent status changes win over newer ones
+                    if (permRevoked.getRevocationDate().after(revdate) && nextB.isPermanentlyRevoked()) {
+                        permRevoked = nextB;
+                    }
+                } else if (nextB.isPermanentlyRevoked()) {
+                    // Permanently revoked wins over temporary revoked/re-activated
+                    permRevoked = nextB;
+                } else if (tempRevoked == null || tempRevoked.getRevocationDate().before(revdate)) {
+                    // More recent temporary status changes win over older ones
+                    tempRevoked = nextB;
+                }
+                nextB = b.hasNext() ? b.next() : null;
+            }
+            if (permRevoked != null) {
+                mergedRevokedData.add(permRevoked); // Permanently revoked entries are always added
+            } else if (tempRevoked.isRevoked() || (lastBaseCrlDate > 0 && tempRevoked.getRevocationDate().getTime() > lastBaseCrlDate)) {
+                // REMOVEFROMCRL entries are not added in Base CRLs (lastBaseCrlDate=0) or if already removed from the latest Base CRL
+                mergedRevokedData.add(tempRevoked);
+            }
+        }
+    }
+
+    private static int compareSerials(final BigInteger serial1, final BigInteger serial2) {
+        if (serial1 == null || serial2 == null) {
+            return serial1 == null ? (serial2 == null ? 0 : -1) : 1;
+        }
+        return serial1.compareTo(serial2);
+    }
+
+    private static void mergeUnsorted(final Collection<RevokedCertInfo> a, final Collection<RevokedCertInfo> b, final long lastBaseCrlDate,
+            final Collection<RevokedCertInfo> mergedRevokedData) {
         // Merge revocation information
         final Map<BigInteger,RevokedCertInfo> permRevoked = new HashMap<>();
         final Map<BigInteger,RevokedCertInfo> tempRevoked = new HashMap<>();
@@ -274,7 +369,6 @@ public class RevokedCertInfo implements Serializable {
                 tempRevoked.put(serial, revoked);
             }
         }
-        final CompressedCollection<RevokedCertInfo> mergedRevokedData = new CompressedCollection<>();
         mergedRevokedData.addAll(permRevoked.values()); // Permanently revoked entries are always added
         for (final RevokedCertInfo revoked : tempRevoked.values()) {
             if (!revoked.isRevoked() && (lastBaseCrlDate <= 0 || revoked.getRevocationDate().getTime() <= lastBaseCrlDate)) {
@@ -282,10 +376,5 @@ public class RevokedCertInfo implements Serializable {
             }
             mergedRevokedData.add(revoked);
         }
-        mergedRevokedData.closeForWrite();
-        if (log.isDebugEnabled()) {
-            log.debug("mergeByDateAndStatus: Merged to " + mergedRevokedData.size() + " entries");
-        }
-        return mergedRevokedData;
     }
 }
@@ -0,0 +1,558 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.crl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import org.apache.log4j.Logger;
+import org.cesecore.config.CesecoreConfiguration;
+
+/**
+ * Collection of revoked entries, that is used instead of a CompressedCollection when listing revoked certificates for CRLs.
+ *
+ * Each entry is stored as a binary record with a fixed layout header, followed by the serial number and the fingerprint:
+ * <pre>
+ * offset length
+ *      0      1  revocation reason
+ *      1      1  length of the serial number (0 for no serial number)
+ *      2      1  length of the stored fingerprint
+ *      3      1  flags ({@link #FLAG_FINGERPRINT_NULL}, {@link #FLAG_FINGERPRINT_HEX})
+ *      4      8  revocation date
+ *     12      8  expire date
+ *     20      n  serial number, as two's complement big-endian bytes
+ *   20+n      m  fingerprint, as packed binary if it was a lower case hex string, otherwise as bytes
+ * </pre>
+ * A typical entry with a 20 byte serial number and a SHA-1 fingerprint takes 60 bytes, and no objects are kept per entry.
+ *
+ * Records are appended to an in memory buffer. When the buffer reaches the memory limit, the records in it are sorted by
+ * serial number and appended as a sorted run to a temporary file. The iterator merges the runs, so entries are always
+ * returned sorted by serial number, and entries with the same serial number are returned in the order they were added.
+ * This allows {@link RevokedCertInfo#mergeByDateAndStatus(java.util.Collection, java.util.Collection, long)} to merge
+ * entries without keeping them in a map.
+ *
+ * To remove the temporary file, {@link #clear()} must be called when the collection is no longer needed.
+ * The implementation is not thread safe.
+ *
+ * @version $Id$
+ */
+public class RevokedCertInfoCollection extends AbstractCollection<RevokedCertInfo> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    private static final Logger log = Logger.getLogger(RevokedCertInfoCollection.class);
+
+    static final int HEADER_LENGTH = 20;
+    static final int MAX_RECORD_LENGTH = HEADER_LENGTH + 255 + 255;
+    static final int FLAG_FINGERPRINT_NULL = 1;
+    static final int FLAG_FINGERPRINT_HEX = 2;
+    /** The memory limit is never lower than this, so that a record always fits in the buffer */
+    static final int MIN_MEMORY_LIMIT = 4096;
+    private static final int INITIAL_BUFFER_SIZE = 8192;
+    private static final int INSERTION_SORT_THRESHOLD = 16;
+    private static final int FILE_BUFFER_SIZE = 65536;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final int memoryLimit;
+    private transient byte[] buffer;
+    private transient int bufferLength;
+    private transient int[] recordOffsets;
+    private transient int recordCount;
+    /** Offsets of the records in the buffer, sorted by serial number. Set by closeForWrite() */
+    private transient int[] sortedOffsets;
+    private transient File spillFile;
+    private transient OutputStream spillOutput;
+    private transient long spillLength;
+    /** Start position in the temporary file and number of records of each spilled run */
+    private transient List<long[]> runs;
+    private transient int size;
+    private transient List<Closeable> openStreams;
+
+    /** Creates a collection that keeps at most "database.crlgenmemorylimit" bytes of records in memory. */
+    public RevokedCertInfoCollection() {
+        this(CesecoreConfiguration.getDatabaseRevokedCertInfoMemoryLimit());
+    }
+
+    /** @param memoryLimit the number of bytes of records that are kept in memory, before they are written to a temporary file */
+    public RevokedCertInfoCollection(final int memoryLimit) {
+        this.memoryLimit = Math.max(memoryLimit, MIN_MEMORY_LIMIT);
+        init();
+    }
+
+    private void init() {
+        buffer = new byte[Math.min(INITIAL_BUFFER_SIZE, memoryLimit)];
+        bufferLength = 0;
+        recordOffsets = new int[INITIAL_BUFFER_SIZE / 64];
+        recordCount = 0;
+        sortedOffsets = null;
+        spillFile = null;
+        spillOutput = null;
+        spillLength = 0;
+        runs = new ArrayList<>();
+        size = 0;
+        openStreams = new ArrayList<>();
+    }
+
+    @Override
+    public boolean add(final RevokedCertInfo revokedCertInfo) {
+        if (sortedOffsets != null) {
+            throw new IllegalStateException("closeForWrite() has already been called without clear() for this RevokedCertInfoCollection.");
+        }
+        if (revokedCertInfo == null) {
+            return false;
+        }
+        final byte[] serial = getMinimalSerial(revokedCertInfo.getUserCertificateBytes());
+        final byte[] fingerprint = revokedCertInfo.getFingerprintBytes();
+        final boolean hex = isLowerCaseHex(fingerprint);
+        final int fingerprintLength = fingerprint == null ? 0 : hex ? fingerprint.length / 2 : fingerprint.length;
+        if (serial.length > 255 || fingerprintLength > 255) {
+            throw new IllegalArgumentException("Serial number or fingerprint of " + revokedCertInfo + " is too long to be stored.");
+        }
+        final int recordLength = HEADER_LENGTH + serial.length + fingerprintLength;
+        if (bufferLength + recordLength > memoryLimit) {
+            spill();
+        }
+        ensureCapacity(recordLength);
+        final int offset = bufferLength;
+        buffer[offset] = (byte) revokedCertInfo.getReason();
+        buffer[offset + 1] = (byte) serial.length;
+        buffer[offset + 2] = (byte) fingerprintLength;
+        buffer[offset + 3] = (byte) (fingerprint == null ? FLAG_FINGERPRINT_NULL : hex ? FLAG_FINGERPRINT_HEX : 0);
+        putLong(buffer, offset + 4, revokedCertInfo.getRevocationDateMillis());
+        putLong(buffer, offset + 12, revokedCertInfo.getExpireDateMillis());
+        System.arraycopy(serial, 0, buffer, offset + HEADER_LENGTH, serial.length);
+        final int fingerprintOffset = offset + HEADER_LENGTH + serial.length;
+        if (hex) {
+            for (int i = 0; i < fingerprintLength; i++) {
+                buffer[fingerprintOffset + i] = (byte) ((Character.digit(fingerprint[2 * i], 16) << 4) | Character.digit(fingerprint[2 * i + 1], 16));
+            }
+        } else if (fingerprint != null) {
+            System.arraycopy(fingerprint, 0, buffer, fingerprintOffset, fingerprint.length);
+        }
+        recordOffsets[recordCount++] = offset;
+        bufferLength += recordLength;
+        size++;
+        return true;
+    }
+
+    private void ensureCapacity(final int recordLength) {
+        if (bufferLength + recordLength > buffer.length) {
+            buffer = Arrays.copyOf(buffer, (int) Math.min(Math.max(2L * buffer.length, bufferLength + recordLength), memoryLimit));
+        }
+        if (recordCount == recordOffsets.length) {
+            recordOffsets = Arrays.copyOf(recordOffsets, 2 * recordOffsets.length);
+        }
+    }
+
+    /** Sorts the records in the buffer and appends them as a new run to the temporary file */
+    private void spill() {
+        try {
+            if (spillOutput == null) {
+                spillFile = File.createTempFile("revokedcertinfo", ".bin");
+                spillOutput = new BufferedOutputStream(new FileOutputStream(spillFile), FILE_BUFFER_SIZE);
+            }
+            for (final int offset : sortBuffer()) {
+                spillOutput.write(buffer, offset, getRecordLength(buffer, offset));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to write revoked entries to temporary file: " + e.getMessage(), e);
+        }
+        runs.add(new long[] { spillLength, recordCount });
+        spillLength += bufferLength;
+        if (log.isDebugEnabled()) {
+            log.debug("Wrote run " + runs.size() + " of " + recordCount + " entries to " + spillFile.getAbsolutePath() + ". Total size is " + spillLength + " bytes.");
+        }
+        bufferLength = 0;
+        recordCount = 0;
+    }
+
+    /** @return the offsets of the records in the buffer, sorted by serial number. The sort is stable. */
+    private int[] sortBuffer() {
+        final int[] ret = Arrays.copyOf(recordOffsets, recordCount);
+        if (recordCount > 1) {
+            mergeSort(buffer, ret, Arrays.copyOf(ret, recordCount), 0, recordCount);
+        }
+        return ret;
+    }
+
+    /**
+     * Sorts the record offsets in dst[from..to) by serial number, using src as scratch space, which must contain the same
+     * offsets on entry. Equal records keep their order, and the offsets are sorted as primitives so no objects are created per record.
+     */
+    private static void mergeSort(final byte[] data, final int[] dst, final int[] src, final int from, final int to) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            for (int i = from + 1; i < to; i++) {
+                final int offset = dst[i];
+                int j = i;
+                while (j > from && compareSerials(data, dst[j - 1], data, offset) > 0) {
+                    dst[j] = dst[j - 1];
+                    j--;
+                }
+                dst[j] = offset;
+            }
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        // Sort the halves into src, then merge them back into dst
+        mergeSort(data, src, dst, from, middle);
+        mergeSort(data, src, dst, middle, to);
+        if (compareSerials(data, src[middle - 1], data, src[middle]) <= 0) {
+            System.arraycopy(src, from, dst, from, to - from);
+            return;
+        }
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compareSerials(data, src[left], data, src[right]) <= 0)) {
+                dst[i] = src[left++];
+            } else {
+                dst[i] = src[right++];
+            }
+        }
+    }
+
+    /** Signal that no more entries will be added to this collection. Called automatically by {@link #iterator()}. */
+    public void closeForWrite() {
+        if (sortedOffsets != null) {
+            return;
+        }
+        sortedOffsets = sortBuffer();
+        if (spillOutput != null) {
+            try {
+                spillOutput.close();
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to write revoked entries to temporary file: " + e.getMessage(), e);
+            }
+            spillOutput = null;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Stored " + size + " entries in " + bufferLength + " bytes of memory and " + spillLength + " bytes in " + runs.size() + " runs on disk.");
+        }
+    }
+
+    /** Removes all entries, and the temporary file. The collection can be used again after this call. */
+    @Override
+    public void clear() {
+        for (final Closeable stream : openStreams) {
+            closeQuietly(stream);
+        }
+        if (spillOutput != null) {
+            closeQuietly(spillOutput);
+        }
+        if (spillFile != null && !spillFile.delete()) {
+            log.warn("Failed to delete temporary file " + spillFile.getAbsolutePath());
+        }
+        init();
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** @return the number of runs that have been written to the temporary file */
+    int getRunCount() {
+        return runs.size();
+    }
+
+    /** @return an iterator over the entries, sorted by serial number. Each call returns a new RevokedCertInfo object. */
+    @Override
+    public Iterator<RevokedCertInfo> iterator() {
+        final RecordMerger merger = new RecordMerger();
+        final byte[] record = new byte[MAX_RECORD_LENGTH];
+        return new Iterator<RevokedCertInfo>() {
+            @Override
+            public boolean hasNext() {
+                return merger.hasNext();
+            }
+
+            @Override
+            public RevokedCertInfo next() {
+                merger.next(record);
+                return decode(record);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    /** Merges the sorted runs in the temporary file and in memory */
+    private final class RecordMerger {
+        private final PriorityQueue<RecordSource> queue;
+
+        RecordMerger() {
+            closeForWrite();
+            final List<RecordSource> sources = new ArrayList<>(runs.size() + 1);
+            for (final long[] run : runs) {
+                sources.add(new FileRecordSource(sources.size(), run[0], run[1]));
+            }
+            sources.add(new MemoryRecordSource(sources.size()));
+            queue = new PriorityQueue<>(sources.size(), new Comparator<RecordSource>() {
+                @Override
+                public int compare(final RecordSource source1, final RecordSource source2) {
+                    final int ret = compareSerials(source1.record, 0, source2.record, 0);
+                    // Entries with the same serial number are returned in the order they were added, and earlier runs were added first
+                    return ret != 0 ? ret : Integer.compare(source1.index, source2.index);
+                }
+            });
+            for (final RecordSource source : sources) {
+                if (source.advance()) {
+                    queue.add(source);
+                }
+            }
+        }
+
+        boolean hasNext() {
+            return !queue.isEmpty();
+        }
+
+        /** Copies the next record to the given array. @return the length of the record */
+        int next(final byte[] record) {
+            final RecordSource source = queue.poll();
+            if (source == null) {
+                throw new NoSuchElementException();
+            }
+            final int length = getRecordLength(source.record, 0);
+            System.arraycopy(source.record, 0, record, 0, length);
+            if (source.advance()) {
+                queue.add(source);
+            }
+            return length;
+        }
+    }
+
+    /** A sorted run of records, that is read one record at a time */
+    private abstract static class RecordSource {
+        final int index;
+        final byte[] record = new byte[MAX_RECORD_LENGTH];
+
+        RecordSource(final int index) {
+            this.index = index;
+        }
+
+        /** Reads the next record into {@link #record}. @return false if there are no more records */
+        abstract boolean advance();
+    }
+
+    private class MemoryRecordSource extends RecordSource {
+        private int position = 0;
+
+        MemoryRecordSource(final int index) {
+            super(index);
+        }
+
+        @Override
+        boolean advance() {
+            if (sortedOffsets == null || position >= sortedOffsets.length) {
+                return false;
+            }
+            final int offset = sortedOffsets[position++];
+            System.arraycopy(buffer, offset, record, 0, getRecordLength(buffer, offset));
+            return true;
+        }
+    }
+
+    private class FileRecordSource extends RecordSource {
+        private final DataInputStream in;
+        private long remaining;
+
+        FileRecordSource(final int index, final long start, final long count) {
+            super(index);
+            this.remaining = count;
+            try {
+                final InputStream fileInputStream = new FileInputStream(spillFile);
+                in = new DataInputStream(new BufferedInputStream(fileInputStream, FILE_BUFFER_SIZE));
+                openStreams.add(in);
+                long skipped = 0;
+                while (skipped < start) {
+                    final long ret = fileInputStream.skip(start - skipped);
+                    if (ret <= 0) {
+                        throw new EOFException("Unexpected end of temporary file " + spillFile.getAbsolutePath());
+                    }
+                    skipped += ret;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read revoked entries from temporary file: " + e.getMessage(), e);
+            }
+        }
+
+        @Override
+        boolean advance() {
+            if (remaining == 0) {
+                return false;
+            }
+            try {
+                in.readFully(record, 0, HEADER_LENGTH);
+                in.readFully(record, HEADER_LENGTH, getRecordLength(record, 0) - HEADER_LENGTH);
+                if (--remaining == 0) {
+                    // Release the file handle as soon as the run has been read
+                    openStreams.remove(in);
+                    closeQuietly(in);
+                }
+                return true;
+            } catch (IOException e) {
+                throw new IllegalStateException("Failed to read revoked entries from temporary file: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    static int getRecordLength(final byte[] data, final int offset) {
+        return HEADER_LENGTH + (data[offset + 1] & 0xff) + (data[offset + 2] & 0xff);
+    }
+
+    /**
+     * Compares the serial numbers of two records numerically. Serial numbers are stored as minimal two's complement
+     * big-endian bytes, so they can be compared without creating BigIntegers. Records without a serial number are sorted first.
+     */
+    static int compareSerials(final byte[] data1, final int offset1, final byte[] data2, final int offset2) {
+        final int length1 = data1[offset1 + 1] & 0xff;
+        final int length2 = data2[offset2 + 1] & 0xff;
+        if (length1 == 0 || length2 == 0) {
+            return Integer.compare(length1, length2);
+        }
+        final boolean negative1 = data1[offset1 + HEADER_LENGTH] < 0;
+        final boolean negative2 = data2[offset2 + HEADER_LENGTH] < 0;
+        if (negative1 != negative2) {
+            return negative1 ? -1 : 1;
+        }
+        if (length1 != length2) {
+            // A longer positive number is larger, and a longer negative number is smaller
+            return negative1 ? Integer.compare(length2, length1) : Integer.compare(length1, length2);
+        }
+        for (int i = 0; i < length1; i++) {
+            final int ret = Integer.compare(data1[offset1 + HEADER_LENGTH + i] & 0xff, data2[offset2 + HEADER_LENGTH + i] & 0xff);
+            if (ret != 0) {
+                return ret;
+            }
+        }
+        return 0;
+    }
+
+    /** @return the serial number without redundant sign bytes, or an empty array if there is no serial number */
+    private static byte[] getMinimalSerial(final byte[] serial) {
+        if (serial == null) {
+            return new byte[0];
+        }
+        int start = 0;
+        while (start < serial.length - 1 && ((serial[start] == 0 && serial[start + 1] >= 0) || (serial[start] == -1 && serial[start + 1] < 0))) {
+            start++;
+        }
+        return start == 0 ? serial : Arrays.copyOfRange(serial, start, serial.length);
+    }
+
+    private static boolean isLowerCaseHex(final byte[] fingerprint) {
+        if (fingerprint == null || fingerprint.length == 0 || fingerprint.length % 2 != 0) {
+            return false;
+        }
+        for (final byte b : fingerprint) {
+            if (!((b >= '0' && b <= '9') || (b >= 'a' && b <= 'f'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static RevokedCertInfo decode(final byte[] record) {
+        final int serialLength = record[1] & 0xff;
+        final int fingerprintLength = record[2] & 0xff;
+        final int flags = record[3];
+        final byte[] serial = serialLength == 0 ? null : Arrays.copyOfRange(record, HEADER_LENGTH, HEADER_LENGTH + serialLength);
+        final int fingerprintOffset = HEADER_LENGTH + serialLength;
+        final byte[] fingerprint;
+        if ((flags & FLAG_FINGERPRINT_NULL) != 0) {
+            fingerprint = null;
+        } else if ((flags & FLAG_FINGERPRINT_HEX) != 0) {
+            fingerprint = new byte[2 * fingerprintLength];
+            for (int i = 0; i < fingerprintLength; i++) {
+                fingerprint[2 * i] = (byte) HEX[(record[fingerprintOffset + i] >> 4) & 0xf];
+                fingerprint[2 * i + 1] = (byte) HEX[record[fingerprintOffset + i] & 0xf];
+            }
+        } else {
+            fingerprint = Arrays.copyOfRange(record, fingerprintOffset, fingerprintOffset + fingerprintLength);
+        }
+        return new RevokedCertInfo(fingerprint, serial, getLong(record, 4), record[0], getLong(record, 12));
+    }
+
+    private static void putLong(final byte[] data, final int offset, final long value) {
+        for (int i = 0; i < 8; i++) {
+            data[offset + i] = (byte) (value >>> (56 - 8 * i));
+        }
+    }
+
+    private static long getLong(final byte[] data, final int offset) {
+        long ret = 0;
+        for (int i = 0; i < 8; i++) {
+            ret = (ret << 8) | (data[offset + i] & 0xff);
+        }
+        return ret;
+    }
+
+    private static void closeQuietly(final Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            log.error(e.getMessage(), e);
+        }
+    }
+
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        // The records are written as they are stored, sorted by serial number
+        final RecordMerger merger = new RecordMerger();
+        final byte[] record = new byte[MAX_RECORD_LENGTH];
+        while (merger.hasNext()) {
+            out.write(record, 0, merger.next(record));
+        }
+    }
+
+    private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        init();
+        final int count = in.readInt();
+        final byte[] record = new byte[MAX_RECORD_LENGTH];
+        for (int i = 0; i < count; i++) {
+            in.readFully(record, 0, HEADER_LENGTH);
+            in.readFully(record, HEADER_LENGTH, getRecordLength(record, 0) - HEADER_LENGTH);
+            add(decode(record));
+        }
+        closeForWrite();
+    }
+}
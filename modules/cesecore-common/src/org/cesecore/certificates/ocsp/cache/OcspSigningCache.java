@@ -17,7 +17,9 @@ import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.locks.ReentrantLock;
@@ -38,21 +40,52 @@ import org.cesecore.util.CertTools;
 /**
  * Hold information needed to create OCSP responses without database lookups.
  * 
+ * Lookups are made in an immutable index that is replaced when the cache is reloaded, so they need no locking.
+ * Entries are staged per source, a CA or an OcspKeyBinding, together with a version of the data they were created from.
+ * A reload may keep the entries of a source with an unchanged version, see {@link #stagingKeep(String, Object)}, so
+ * only the sources that have changed since the last reload have to be read from the database.
+ * 
  * @version $Id: OcspSigningCache.java 28643 2018-04-06 08:53:57Z samuellb $
  */
 public enum OcspSigningCache {
     INSTANCE;
     
-    private Map<Integer, OcspSigningCacheEntry> cache = new HashMap<Integer, OcspSigningCacheEntry>();
-    private Map<Integer, OcspSigningCacheEntry> staging = new HashMap<Integer, OcspSigningCacheEntry>();
-    private OcspSigningCacheEntry defaultResponderCacheEntry = null;
+    private volatile Index index = new Index(Collections.<Integer, OcspSigningCacheEntry>emptyMap(), null,
+            Collections.<String, Source>emptyMap());
+    /** Sources in the order they were staged, since entries of later sources replace entries of earlier sources with the same id */
+    private Map<String, Source> staging = new LinkedHashMap<String, Source>();
+    private int stagedWithoutSource = 0;
     private final ReentrantLock lock = new ReentrantLock(false);
     private final static Logger log = Logger.getLogger(OcspSigningCache.class);
     /** Flag to detect and log non-existence of a default responder once. */
     private boolean logDefaultHasRunOnce = false;
 
+    /** Entries staged from one CA or OcspKeyBinding, before placeholders are replaced with the default responder */
+    private static final class Source {
+        private final Object version;
+        private final List<OcspSigningCacheEntry> entries;
+
+        private Source(final Object version, final List<OcspSigningCacheEntry> entries) {
+            this.version = version;
+            this.entries = entries;
+        }
+    }
+
+    /** Immutable snapshot of the cache */
+    private static final class Index {
+        private final Map<Integer, OcspSigningCacheEntry> entries;
+        private final OcspSigningCacheEntry defaultEntry;
+        private final Map<String, Source> sources;
+
+        private Index(final Map<Integer, OcspSigningCacheEntry> entries, final OcspSigningCacheEntry defaultEntry, final Map<String, Source> sources) {
+            this.entries = entries;
+            this.defaultEntry = defaultEntry;
+            this.sources = sources;
+        }
+    }
+
     public OcspSigningCacheEntry getEntry(final CertificateID certID) {
-        return cache.get(getCacheIdFromCertificateID(certID));
+        return index.entries.get(getCacheIdFromCertificateID(certID));
     }
 
     /**
@@ -60,29 +93,74 @@ public enum OcspSigningCache {
      * @return the entry corresponding to the default responder, or null if it wasn't found.
      */
     public OcspSigningCacheEntry getDefaultEntry() {
-        return defaultResponderCacheEntry;
+        return index.defaultEntry;
     }
 
     /** WARNING: This method potentially exports references to CAs private keys! */
     public Collection<OcspSigningCacheEntry> getEntries() {
-        return cache.values();
+        return index.entries.values();
     }
 
     public void stagingStart() {
         lock.lock();
-        staging = new HashMap<Integer, OcspSigningCacheEntry>();
+        staging = new LinkedHashMap<String, Source>();
+        stagedWithoutSource = 0;
     }
 
+    /** Stages an entry without a source, that is always replaced at the next reload */
     public void stagingAdd(OcspSigningCacheEntry ocspSigningCacheEntry) {
-        List<CertificateID> certIDs = ocspSigningCacheEntry.getCertificateID();
-        for (CertificateID certID : certIDs) {
-            staging.put(getCacheIdFromCertificateID(certID), ocspSigningCacheEntry);            
+        stagingAdd("entry:" + stagedWithoutSource++, null, ocspSigningCacheEntry);
+    }
+
+    /**
+     * Stages the entry created from a source.
+     * 
+     * @param sourceId identifies the CA or OcspKeyBinding that the entry was created from
+     * @param version the version of the data that the entry was created from, compared with {@link Object#equals(Object)} at the next reload,
+     *      or null if the entry should always be recreated
+     * @param ocspSigningCacheEntry the entry, or null if no entry could be created from this version of the source
+     */
+    public void stagingAdd(final String sourceId, final Object version, final OcspSigningCacheEntry ocspSigningCacheEntry) {
+        final List<OcspSigningCacheEntry> entries;
+        if (ocspSigningCacheEntry == null) {
+            entries = Collections.emptyList();
+        } else {
+            entries = Collections.singletonList(ocspSigningCacheEntry);
+        }
+        // Re-insert so that the source is ordered after the sources that were staged before it
+        staging.remove(sourceId);
+        staging.put(sourceId, new Source(version, entries));
+    }
+
+    /**
+     * Stages the entries of a source from the current cache, if they were created from the same version of the source.
+     * 
+     * @param sourceId identifies the CA or OcspKeyBinding
+     * @param version the current version of the data of the source
+     * @return true if the entries were kept, false if the source must be staged with {@link #stagingAdd(String, Object, OcspSigningCacheEntry)}
+     */
+    public boolean stagingKeep(final String sourceId, final Object version) {
+        final Source source = index.sources.get(sourceId);
+        if (version == null || source == null || !version.equals(source.version)) {
+            return false;
         }
+        staging.remove(sourceId);
+        staging.put(sourceId, source);
+        return true;
     }
 
     public void stagingCommit(final String defaultResponderSubjectDn) {
+        // Entries of later sources replace entries of earlier sources, e.g. an OcspKeyBinding replaces the entry of its CA
+        final Map<Integer, OcspSigningCacheEntry> stagedEntries = new HashMap<Integer, OcspSigningCacheEntry>();
+        for (final Source source : staging.values()) {
+            for (final OcspSigningCacheEntry entry : source.entries) {
+                for (final CertificateID certID : entry.getCertificateID()) {
+                    stagedEntries.put(getCacheIdFromCertificateID(certID), entry);
+                }
+            }
+        }
         OcspSigningCacheEntry defaultResponderCacheEntry = null;
-        for (final OcspSigningCacheEntry entry : staging.values()) {
+        for (final OcspSigningCacheEntry entry : stagedEntries.values()) {
             if (entry.getOcspSigningCertificate() != null) {
                 final X509Certificate signingCertificate = entry.getOcspSigningCertificate();
                 if (CertTools.getIssuerDN(signingCertificate).equals(defaultResponderSubjectDn)) {
@@ -98,10 +176,9 @@ public enum OcspSigningCache {
             }
         }
         //Lastly, walk through the list of entries and replace all placeholders with the default responder
-        Map<Integer, OcspSigningCacheEntry> modifiedEntries = new HashMap<Integer, OcspSigningCacheEntry>();
-        List<Integer> removedEntries = new ArrayList<Integer>();
-        for (Integer key : staging.keySet()) {
-            OcspSigningCacheEntry entry = staging.get(key);
+        final Map<Integer, OcspSigningCacheEntry> committed = new HashMap<Integer, OcspSigningCacheEntry>();
+        for (final Map.Entry<Integer, OcspSigningCacheEntry> stagedEntry : stagedEntries.entrySet()) {
+            OcspSigningCacheEntry entry = stagedEntry.getValue();
             //If entry has been created without a private key, replace it with the default responder.
             if (entry.isPlaceholder()) {
                 if (defaultResponderCacheEntry != null) {
@@ -109,24 +186,26 @@ public enum OcspSigningCache {
                             defaultResponderCacheEntry.getCaCertificateChain(), defaultResponderCacheEntry.getOcspSigningCertificate(),
                             defaultResponderCacheEntry.getPrivateKey(), defaultResponderCacheEntry.getSignatureProviderName(),
                             defaultResponderCacheEntry.getOcspKeyBinding(), defaultResponderCacheEntry.getResponderIdType());
-                    modifiedEntries.put(key, entry);
                 } else {
                     //If no default responder is defined, remove placeholder. 
-                    removedEntries.add(key);
+                    continue;
                 }
             }
+            committed.put(stagedEntry.getKey(), entry);
         }
-        staging.putAll(modifiedEntries);
-        for (Integer removedKey : removedEntries) {
-            staging.remove(removedKey);
-        }
-        logDefaultResponderChanges(this.defaultResponderCacheEntry, defaultResponderCacheEntry, defaultResponderSubjectDn);
-        cache = staging;
-        this.defaultResponderCacheEntry = defaultResponderCacheEntry;
+        final Index current = index;
+        logDefaultResponderChanges(current.defaultEntry, defaultResponderCacheEntry, defaultResponderSubjectDn);
+        index = new Index(Collections.unmodifiableMap(committed), defaultResponderCacheEntry, staging);
         if (log.isDebugEnabled()) {
-            log.debug("Committing the following to OCSP cache:");
-            for (final Integer key : staging.keySet()) {
-                final OcspSigningCacheEntry entry = staging.get(key);
+            int kept = 0;
+            for (final Map.Entry<String, Source> source : staging.entrySet()) {
+                if (current.sources.get(source.getKey()) == source.getValue()) {
+                    kept++;
+                }
+            }
+            log.debug("Committing the following to OCSP cache, keeping the entries of " + kept + " of " + staging.size() + " unchanged sources:");
+            for (final Integer key : committed.keySet()) {
+                final OcspSigningCacheEntry entry = committed.get(key);
                 log.debug(" KeyBindingId: " + key + ", SubjectDN '" + CertTools.getSubjectDN(entry.getFullCertificateChain().get(0))
                         + "', IssuerDN '" + CertTools.getIssuerDN(entry.getFullCertificateChain().get(0)) + "', SerialNumber "
                         + entry.getFullCertificateChain().get(0).getSerialNumber().toString() + "/"
@@ -136,6 +215,7 @@ public enum OcspSigningCache {
                 }
             }
         }
+        staging = new LinkedHashMap<String, Source>();
     }
 
     public void stagingRelease() {
@@ -197,17 +277,20 @@ public enum OcspSigningCache {
      */
     public void addSingleEntry(OcspSigningCacheEntry ocspSigningCacheEntry) {
         List<CertificateID> certIDs = ocspSigningCacheEntry.getCertificateID();
-        for (CertificateID certID : certIDs) {
-            int cacheId = getCacheIdFromCertificateID(certID);
-            lock.lock();
-            try {
+        lock.lock();
+        try {
+            final Index current = index;
+            final Map<Integer, OcspSigningCacheEntry> entries = new HashMap<Integer, OcspSigningCacheEntry>(current.entries);
+            for (CertificateID certID : certIDs) {
+                int cacheId = getCacheIdFromCertificateID(certID);
                 //Make sure that another thread didn't add the same entry while this one was waiting.
-                if (!cache.containsKey(cacheId)) {
-                    cache.put(cacheId, ocspSigningCacheEntry);
+                if (!entries.containsKey(cacheId)) {
+                    entries.put(cacheId, ocspSigningCacheEntry);
                 }
-            } finally {
-                lock.unlock();
             }
+            index = new Index(Collections.unmodifiableMap(entries), current.defaultEntry, current.sources);
+        } finally {
+            lock.unlock();
         }
     }
 
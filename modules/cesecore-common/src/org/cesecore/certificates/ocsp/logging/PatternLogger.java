@@ -13,15 +13,11 @@
 
 package org.cesecore.certificates.ocsp.logging;
 
-import java.io.PrintWriter;
 import java.io.Serializable;
-import java.io.StringWriter;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.TimeZone;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.commons.lang.time.FastDateFormat;
@@ -31,7 +27,8 @@ import org.bouncycastle.util.encoders.Hex;
 /**
  * This class can be extended to create highly configurable log classes. Values that are to be logged are stored in a Hashmap and the output is
  * configured using a Java.util.regex.Matcher and a sortString. The extending classes also need to supply a Logger and a String specifying how to log
- * Dates.
+ * Dates. The pattern and sortString are compiled once into a shared {@link PatternLoggerTemplate}, so no regular expression is evaluated per
+ * request.
  * 
  * Use paramPut(String key, String value) to add values, Use writeln() to log all the stored values and then use flush() to store them to file.
  * 
@@ -82,12 +79,13 @@ public abstract class PatternLogger implements Serializable {
      */
     public static final String PROCESS_TIME = "PROCESS_TIME";
 
+    private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+
     private final Map<String, String> valuepairs = new HashMap<String, String>();
     private final String matchString;
     private final String matchPattern;
-    // Matcher is not Serializable
-    private transient Matcher m;
-    private final String orderString;
+    // The compiled template is shared and not Serializable
+    private transient PatternLoggerTemplate template;
     private final Date startTime;
     private Date startProcessTime = null;
     private boolean doLogging;
@@ -96,8 +94,7 @@ public abstract class PatternLogger implements Serializable {
     private transient Logger logger;
 
     // for writing the output
-    private transient StringWriter sw;
-    private transient PrintWriter pw;
+    private transient StringBuilder rows;
 
     /**
      * @param doLogging
@@ -118,7 +115,6 @@ public abstract class PatternLogger implements Serializable {
         this.doLogging = doLogging;
         this.matchString = matchString;
         this.matchPattern = matchPattern;
-        this.orderString = matchString;
         this.loggerClass = loggerClass;
         this.startTime = new Date();
         final FastDateFormat dateformat;
@@ -127,18 +123,18 @@ public abstract class PatternLogger implements Serializable {
         } else {
                 dateformat = FastDateFormat.getInstance(logDateFormat, TimeZone.getTimeZone(timeZone));
         }
-        paramPut(LOG_TIME, dateformat.format(new Date()));
+        paramPut(LOG_TIME, dateformat.format(this.startTime));
         this.paramPut(REPLY_TIME, REPLY_TIME);
         this.paramPut(LOG_ID, "0");
     }
-    
-    private Matcher getMatcher() {
-        if (this.m == null) {
-            // We have to instantiate the Matcher in the class and can not have it as an instance variable.
+
+    private PatternLoggerTemplate getTemplate() {
+        if (this.template == null) {
+            // The template is compiled once per pattern and shared, but we can not serialize it.
             // This is because we are sending this object to a remote EJB (at least in system tests)
-            this.m = Pattern.compile(matchPattern).matcher(matchString);
+            this.template = PatternLoggerTemplate.getInstance(matchPattern, matchString);
         }
-        return this.m;
+        return this.template;
     }
 
     private Logger getLogger() {
@@ -150,51 +146,37 @@ public abstract class PatternLogger implements Serializable {
         return this.logger;
     }
 
-    private PrintWriter getPrintWriter() {
-        if (this.pw == null) {
-            this.sw = new StringWriter();
-            this.pw = new PrintWriter(this.sw);
+    private StringBuilder getRows() {
+        if (this.rows == null) {
+            this.rows = new StringBuilder(getTemplate().getEstimatedRowLength());
         }
-        return pw;
+        return rows;
     }
-    
+
     /**
      * 
      * @return output to be logged
      */
     private String interpolate() {
-        final StringBuffer sb = new StringBuffer(this.orderString.length());
-        final Matcher matcher = getMatcher();
-        matcher.reset();
-        while (matcher.find()) {
-            // when the pattern is ${identifier}, group 0 is 'identifier'
-            final String key = matcher.group(1);
-            final String value = this.valuepairs.get(key);
-
-            // if the pattern does exists, replace it by its value
-            // otherwise keep the pattern ( it is group(0) )
-            if (value != null) {
-                matcher.appendReplacement(sb, value);
-            } else {
-                // I'm doing this to avoid the backreference problem as there will be a $
-                // if I replace directly with the group 0 (which is also a pattern)
-                matcher.appendReplacement(sb, "");
-                final String unknown = matcher.group(0);
-                sb.append(unknown);
-            }
-        }
-        matcher.appendTail(sb);
+        final StringBuilder sb = new StringBuilder(getTemplate().getEstimatedRowLength());
+        getTemplate().appendTo(sb, this.valuepairs);
         return sb.toString();
     }
 
     /**
      * Hex-encodes the bytes.
      * method that makes sure that a "" is inserted instead of null
+     * <p>
+     * The value is not stored at all if logging is disabled, or if the key is not referenced by the pattern, since it would never be
+     * written anyway.
      * @param key
      * @param value
      */
     public void paramPut(String key, byte[] value) {
-        paramPut(key, new String(Hex.encode(value)));
+        // Hex encoding is expensive for large values (such as the whole request), so skip it if the value will never be written
+        if (doLogging && getTemplate().isReferenced(key)) {
+            paramPut(key, value == null ? null : Hex.toHexString(value));
+        }
     }
 
     /**
@@ -232,24 +214,24 @@ public abstract class PatternLogger implements Serializable {
      */
     public void writeln() {
         if (doLogging) {
-            getPrintWriter().println(interpolate());
+            final StringBuilder sb = getRows();
+            if (sb.length() > 0) {
+                sb.append(LINE_SEPARATOR);
+            }
+            getTemplate().appendTo(sb, this.valuepairs);
         }
     }
 
     /**
-     * Writes all the rows created by writeln() to the Logger
+     * Writes all the rows created by writeln() to the Logger. The rows are kept, so a later flush writes them again.
      */
     public void flush() {
         if (doLogging) {
-            getPrintWriter().flush();
-            String output = this.sw.toString();
-            output = output.replaceAll(REPLY_TIME, String.valueOf(new Date().getTime() - this.startTime.getTime()));
+            final long now = System.currentTimeMillis();
+            String output = getRows().toString();
+            output = StringUtils.replace(output, REPLY_TIME, String.valueOf(now - this.startTime.getTime()));
             if (startProcessTime != null) {
-                output = output.replaceAll(PROCESS_TIME, String.valueOf(new Date().getTime() - this.startProcessTime.getTime()));
-            }
-            //Remove an extra linebreak between flushes.
-            if(output.endsWith(System.getProperty("line.separator"))) {
-                output = output.substring(0, output.length()-1);
+                output = StringUtils.replace(output, PROCESS_TIME, String.valueOf(now - this.startProcessTime.getTime()));
             }
             getLogger().debug(output); // Finally output the log row to the logging device
         }
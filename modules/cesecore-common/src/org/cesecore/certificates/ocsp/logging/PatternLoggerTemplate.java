@@ -0,0 +1,120 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.certificates.ocsp.logging;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pre-compiled form of a PatternLogger match pattern and order string.
+ *
+ * The regular expression is only evaluated once for each distinct pattern and order string. The result is a list of literal
+ * segments interleaved with the keys that should be looked up when a log row is written, so writing a row is a plain sequence
+ * of StringBuilder appends.
+ *
+ * Instances are immutable and shared between all loggers using the same configuration.
+ *
+ * @version $Id$
+ */
+final class PatternLoggerTemplate {
+
+    /** There is normally only a handful of configured patterns (transaction and audit log), so this will stay small. */
+    private static final ConcurrentMap<String, PatternLoggerTemplate> templates = new ConcurrentHashMap<>();
+
+    /** Literal text before each key, and after the last key. Always one element longer than keys. */
+    private final String[] literals;
+    /** The keys as matched by group 1 of the pattern */
+    private final String[] keys;
+    /** The full text matched for each key (group 0), written as is if no value is available for the key */
+    private final String[] placeholders;
+    private final Set<String> referencedKeys;
+    private final int literalLength;
+
+    private PatternLoggerTemplate(final String matchPattern, final String matchString) {
+        final List<String> literalList = new ArrayList<>();
+        final List<String> keyList = new ArrayList<>();
+        final List<String> placeholderList = new ArrayList<>();
+        final Matcher matcher = Pattern.compile(matchPattern).matcher(matchString);
+        int position = 0;
+        int length = 0;
+        while (matcher.find()) {
+            final String literal = matchString.substring(position, matcher.start());
+            literalList.add(literal);
+            length += literal.length();
+            // when the pattern is ${identifier}, group 1 is 'identifier'
+            keyList.add(matcher.group(1));
+            placeholderList.add(matcher.group(0));
+            position = matcher.end();
+        }
+        final String tail = matchString.substring(position);
+        literalList.add(tail);
+        length += tail.length();
+        this.literals = literalList.toArray(new String[literalList.size()]);
+        this.keys = keyList.toArray(new String[keyList.size()]);
+        this.placeholders = placeholderList.toArray(new String[placeholderList.size()]);
+        this.referencedKeys = Collections.unmodifiableSet(new HashSet<>(keyList));
+        this.literalLength = length;
+    }
+
+    /**
+     * @param matchPattern a regular expression where group 1 is the key to look up, e.g. <code>\$\{(.+?)\}</code>
+     * @param matchString the string specifying the order in which values are logged
+     * @return a shared, compiled template for the given pattern and order string
+     */
+    static PatternLoggerTemplate getInstance(final String matchPattern, final String matchString) {
+        final String cacheKey = matchPattern + '\n' + matchString;
+        PatternLoggerTemplate template = templates.get(cacheKey);
+        if (template == null) {
+            template = new PatternLoggerTemplate(matchPattern, matchString);
+            final PatternLoggerTemplate existing = templates.putIfAbsent(cacheKey, template);
+            if (existing != null) {
+                template = existing;
+            }
+        }
+        return template;
+    }
+
+    /** @return true if the key is used anywhere in the order string, i.e. if the value for it will be written at all */
+    boolean isReferenced(final String key) {
+        return referencedKeys.contains(key);
+    }
+
+    /** @return a rough size estimate of a single log row, usable as initial buffer capacity */
+    int getEstimatedRowLength() {
+        return literalLength + 16 * keys.length;
+    }
+
+    /**
+     * Appends a log row to the buffer. Values are appended literally, so values containing '$' or '\' are written as is.
+     * Keys without a value are written as the original placeholder.
+     *
+     * @param sb the buffer to append to
+     * @param values the values to substitute the keys with
+     */
+    void appendTo(final StringBuilder sb, final Map<String, String> values) {
+        for (int i = 0; i < keys.length; i++) {
+            sb.append(literals[i]);
+            final String value = values.get(keys[i]);
+            sb.append(value != null ? value : placeholders[i]);
+        }
+        sb.append(literals[keys.length]);
+    }
+}
@@ -79,6 +79,22 @@ public final class CesecoreConfiguration {
         return ConfigurationHolder.getString("ca.rngalgorithm");
     }
 
+    /**
+     * The number of random number generator instances used for serial number generation, so that concurrent issuance does not wait
+     * for a single generator. 0 means twice the number of available processors.
+     */
+    public static int getCaSerialNumberRngInstances() {
+        return (int) getLongValue("ca.rnginstances", 0L, "number of random number generators, 0 for twice the number of processors");
+    }
+
+    /**
+     * The number of serial numbers worth of random data that is fetched from the random number generator at a time.
+     * 1 means that the random number generator is called for each serial number.
+     */
+    public static int getCaSerialNumberRngBufferSize() {
+        return (int) getLongValue("ca.rngbuffersize", 1L, "number of serial numbers");
+    }
+
     /**
      * The date and time from which an expire date of a certificate is to be considered to be too far in the future.
      */
@@ -217,6 +233,19 @@ public final class CesecoreConfiguration {
         return getLongValue("globalconfiguration.cachetime", 30000L, "milliseconds to cache authorization");
     }
 
+    /**
+     * Parameter to specify how often each node polls the cluster cache invalidation log in the database, or -1 if changes made on other nodes
+     * are only picked up when the cache time of each cache expires.
+     */
+    public static long getCacheInvalidationPollInterval() {
+        return getLongValue("cache.invalidation.pollinterval", -1L, "milliseconds between polls of the cache invalidation log");
+    }
+
+    /** @return how long entries are kept in the cluster cache invalidation log before they are removed. */
+    public static long getCacheInvalidationRetentionTime() {
+        return getLongValue("cache.invalidation.retentiontime", 300000L, "milliseconds to keep cache invalidation log entries");
+    }
+
     private static long getLongValue(final String propertyName, final long defaultValue, final String unit) {
         final String value = ConfigurationHolder.getString(propertyName);
         long time = defaultValue;
@@ -386,6 +415,11 @@ public final class CesecoreConfiguration {
         return Long.valueOf(getLongValue("database.crlgenfetchsize", 500000L, "rows")).intValue();
     }
 
+    /** @return the number of bytes of revoked entries that are kept in memory, before they are written to a temporary file, when creating CRLs. */
+    public static int getDatabaseRevokedCertInfoMemoryLimit() {
+        return Long.valueOf(getLongValue("database.crlgenmemorylimit", 33554432L, "bytes")).intValue();
+    }
+
     /**
      * Used just in {@link #getForbiddenCharacters()}. The method is called very
      * often so we declare this String in the class so it does not have to be
@@ -415,11 +449,47 @@ public final class CesecoreConfiguration {
         return value==null || Boolean.parseBoolean(value.trim());
     }
 
+    /**
+     * The maximum number of signers kept for each PKCS#11 key and signature algorithm, which is also the maximum number of
+     * signatures made at the same time with the key. 0 disables the pool, and a new signer is created for each signature.
+     */
+    public static int getP11SignerPoolSize() {
+        return (int) getLongValue("pkcs11.signerpool.size", 0L, "number of signers for each key");
+    }
+
+    /** How long time (in milliseconds) to wait for a free signer when all signers of a PKCS#11 key are in use. */
+    public static long getP11SignerPoolBorrowTimeout() {
+        return getLongValue("pkcs11.signerpool.borrowtimeout", 10000L, "milliseconds");
+    }
+
+    /** How long time (in milliseconds) an unused signer is kept in the pool of a PKCS#11 key before it is discarded. */
+    public static long getP11SignerPoolMaxIdleTime() {
+        return getLongValue("pkcs11.signerpool.maxidletime", 600000L, "milliseconds");
+    }
+
+    /**
+     * How long time (in milliseconds) a signer in the pool of a PKCS#11 key may be unused before it is tested with a signature
+     * before it is used again. 0 tests a signer before each use.
+     */
+    public static long getP11SignerPoolValidationInterval() {
+        return getLongValue("pkcs11.signerpool.validationinterval", 60000L, "milliseconds");
+    }
+
     /** @return true key store content of Crypto Tokens should be cached. */
     public static boolean isKeyStoreCacheEnabled() {
         return Boolean.parseBoolean(ConfigurationHolder.getString("cryptotoken.keystorecache"));
     }
 
+    /** @return true if the decoded keys of activated soft crypto tokens should be cached by alias. */
+    public static boolean isSoftKeyCacheEnabled() {
+        return Boolean.parseBoolean(ConfigurationHolder.getString("cryptotoken.softkeycache"));
+    }
+
+    /** @return true if cached private keys and the key store password of soft crypto tokens should be cleared from memory on deactivation. */
+    public static boolean isZeroizeOnDeactivationEnabled() {
+        return Boolean.parseBoolean(ConfigurationHolder.getString("cryptotoken.zeroizeondeactivation"));
+    }
+
     /** @return a list of enabled TLS protocol versions and cipher suites */
     /*
      * Java 6: http://docs.oracle.com/javase/6/docs/technotes/guides/security/SunProviders.html#SunJSSEProvider
@@ -490,6 +560,30 @@ public final class CesecoreConfiguration {
         return getLongValue("ct.fastfail.backoff", 1000L, "milliseconds");
     }
 
+    /**
+     * Number of consecutive failed requests after which a log is considered to be down, when
+     * fast fail is enabled. After the back off time, a single request is let through to probe
+     * the log again. The default is 1.
+     *
+     * @see getCTFastFailEnabled
+     */
+    public static int getCTFastFailFailures() {
+        return (int) Math.max(1L, getLongValue("ct.fastfail.failures", 1L, "number of failed requests"));
+    }
+
+    /**
+     * Maximum number of submissions per second to each CT log, or 0 for no limit. Submissions
+     * above the limit fail fast, so that the SCT is taken from another log instead. The default is 0.
+     */
+    public static long getCTRateLimit() {
+        return getLongValue("ct.ratelimit", 0L, "submissions per second");
+    }
+
+    /** Maximum number of concurrent submissions to CT logs. The default is 32. */
+    public static int getCTSubmissionThreads() {
+        return (int) Math.max(1L, getLongValue("ct.submission.threads", 32L, "number of threads"));
+    }
+
     /**
      * @return true if key should be unmodifiable after generation.
      */
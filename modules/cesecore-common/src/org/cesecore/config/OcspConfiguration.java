@@ -38,6 +38,7 @@ public class OcspConfiguration {
     @Deprecated // Deprecated in 6.2.4, remains to allow migration from previous versions
     public static final String DEFAULT_RESPONDER = "ocsp.defaultresponder";
     public static final String SIGNING_CERTD_VALID_TIME = "ocsp.signingCertsValidTime";
+    public static final String SIGNING_CERTS_FULL_RELOAD_TIME = "ocsp.signingCertsFullReloadTime";
     public static final String REQUEST_SIGNING_CERT_REVOCATION_CACHE_TIME = "ocsp.reqsigncertrevcachetime";
     public static final String SIGNING_TRUSTSTORE_VALID_TIME = "ocsp.signtrustvalidtime";
     public static final String SIGNATUREREQUIRED = "ocsp.signaturerequired";
@@ -141,6 +142,22 @@ public class OcspConfiguration {
         return timeInSeconds*1000;
     }
 
+    /**
+     * The longest time in milliseconds between reloads of the OCSP signing certificates that rebuild all entries. Other reloads
+     * only rebuild the entries of CAs and OcspKeyBindings that have changed, or whose CA or OCSP signing certificate has been revoked.
+     */
+    public static long getSigningCertsFullReloadTimeInMilliseconds() {
+        long timeInSeconds;
+        final long defaultTimeInSeconds = 3600; // 1 hour
+        try {
+            timeInSeconds = Long.parseLong(ConfigurationHolder.getString(SIGNING_CERTS_FULL_RELOAD_TIME));
+        } catch (NumberFormatException e) {
+            timeInSeconds = defaultTimeInSeconds;
+            log.warn(SIGNING_CERTS_FULL_RELOAD_TIME + " is not a decimal integer. Using default 1 hour");
+        }
+        return timeInSeconds*1000;
+    }
+
     /**
      * The interval on which new OCSP signing certificates are loaded in milliseconds
      */
@@ -0,0 +1,29 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.internal;
+
+/**
+ * Callback for evicting entries from a local cache when the cached object has been changed on another node in the cluster.
+ *
+ * @see CacheInvalidationListeners
+ * @version $Id$
+ */
+public interface CacheInvalidationListener {
+
+    /**
+     * Invoked when an object in the cache has been changed on another node.
+     *
+     * @param entryKey key of the changed object, or null if the whole cache should be flushed
+     */
+    void onInvalidation(String entryKey);
+}
@@ -0,0 +1,95 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.internal;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Singleton for dispatching cluster cache invalidations to the local caches, by cache name.
+ *
+ * Changes to cached objects are written to the cache invalidation log in the database, together with the name of the
+ * cache and the key of the changed entry. Each node polls the log and invokes the listener registered for the cache name here.
+ *
+ * @version $Id$
+ */
+public enum CacheInvalidationListeners {
+    INSTANCE;
+
+    public static final String CA = "CA";
+    public static final String CRYPTOTOKEN = "CRYPTOTOKEN";
+    public static final String INTERNALKEYBINDING = "INTERNALKEYBINDING";
+    public static final String VALIDATOR = "VALIDATOR";
+    public static final String PUBLISHER = "PUBLISHER";
+    public static final String CERTIFICATEPROFILE = "CERTIFICATEPROFILE";
+    public static final String ENDENTITYPROFILE = "ENDENTITYPROFILE";
+    public static final String GLOBALCONFIGURATION = "GLOBALCONFIGURATION";
+    /** Invalidations of the CRL store cache, with the issuer DN of a newly stored CRL as entry key */
+    public static final String CRL = "CRL";
+
+    private final Logger log = Logger.getLogger(CacheInvalidationListeners.class);
+    private final Map<String, CacheInvalidationListener> listeners = new ConcurrentHashMap<>();
+
+    /** Subscribe the listener to invalidations of the named cache, replacing any previously registered listener */
+    public void addListener(final String cacheName, final CacheInvalidationListener listener) {
+        listeners.put(cacheName, listener);
+        if (log.isDebugEnabled()) {
+            log.debug("Cache '" + cacheName + "' is now subscribing to cache invalidation events.");
+        }
+    }
+
+    /**
+     * Subscribe a {@link CommonCache} with integer ids to invalidations of the named cache. Invalidated entries are marked as stale,
+     * so they are compared with the database the next time they are used.
+     */
+    public void addListener(final String cacheName, final CommonCache<?> cache) {
+        addListener(cacheName, new CacheInvalidationListener() {
+            @Override
+            public void onInvalidation(final String entryKey) {
+                if (entryKey == null) {
+                    cache.flush();
+                } else {
+                    try {
+                        cache.markStale(Integer.parseInt(entryKey));
+                    } catch (NumberFormatException e) {
+                        cache.flush();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Evicts an entry from the named local cache.
+     *
+     * @param cacheName name of the cache
+     * @param entryKey key of the entry, or null to flush the whole cache
+     * @return true if a listener was registered for the cache
+     */
+    public boolean invalidate(final String cacheName, final String entryKey) {
+        final CacheInvalidationListener listener = listeners.get(cacheName);
+        if (listener == null) {
+            if (log.isDebugEnabled()) {
+                log.debug("No listener registered for cache '" + cacheName + "'. Ignoring invalidation of entry " + entryKey);
+            }
+            return false;
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Invalidating entry " + entryKey + " in cache '" + cacheName + "'.");
+        }
+        listener.onInvalidation(entryKey);
+        return true;
+    }
+}
@@ -52,6 +52,12 @@ public interface CommonCache<T> {
     /** Remove the specified entry from the cache and mapping if it exists. */
     void removeEntry(int id);
 
+    /**
+     * Mark the specified entry as expired, so that the next {@link #shouldCheckForUpdates(int)} returns true. Unlike {@link #removeEntry(int)}
+     * the cached object is kept until the caller has compared the digest with the database, which keeps for example the activation of crypto tokens.
+     */
+    void markStale(int id);
+
     /** Provides functionality of an IdToNameMap. 
      * @return return the name from the entry, given the id, or null if it does not exist.
      */
@@ -35,6 +35,8 @@ public abstract class CommonCacheBase<T> implements CommonCache<T> {
     
     private class CacheEntry {
         long lastUpdate;
+        /** Set when the object has been changed by another node, so it is checked against the database regardless of the cache time */
+        volatile boolean stale = false;
         final int digest;
         final String name;
         final T object;
@@ -92,13 +94,15 @@ public abstract class CommonCacheBase<T> implements CommonCache<T> {
             // No such object in cache, caller should check db
             return true;
         }
-        if (cacheEntry.lastUpdate+cacheTime<now) {
+        // Compare the age with the cache time, since lastUpdate+cacheTime overflows for very long cache times
+        if (cacheEntry.stale || now-cacheEntry.lastUpdate>cacheTime) {
             // We probably need to update, but re-check using synchronization
             synchronized (cacheEntry) {
-                if (cacheEntry.lastUpdate+cacheTime<now) {
+                if (cacheEntry.stale || now-cacheEntry.lastUpdate>cacheTime) {
                     // Object is present in cache, but cache has expired so the caller should update the cache
                     // To prevent other threads to ask the database for the same thing, we reset the cache time.
                     cacheEntry.lastUpdate = now;
+                    cacheEntry.stale = false;
                     return true;
                 }
             }
@@ -112,6 +116,16 @@ public abstract class CommonCacheBase<T> implements CommonCache<T> {
         updateWith(id, 0, null, null);
     }
 
+    @Override
+    public void markStale(int id) {
+        final CacheEntry cacheEntry = cache.get(Integer.valueOf(id));
+        if (cacheEntry != null) {
+            synchronized (cacheEntry) {
+                cacheEntry.stale = true;
+            }
+        }
+    }
+
     @Override
     public boolean willUpdate(int id, int digest) {
         // Same version in cache as provided Object?
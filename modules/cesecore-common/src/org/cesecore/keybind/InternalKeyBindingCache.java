@@ -68,6 +68,11 @@ public enum InternalKeyBindingCache implements CommonCache<InternalKeyBinding> {
     public void removeEntry(int signerId) {
         internalKeyBindingCache.removeEntry(signerId);
     }
+
+    @Override
+    public void markStale(int signerId) {
+        internalKeyBindingCache.markStale(signerId);
+    }
     
     @Override
     public String getName(int id) {
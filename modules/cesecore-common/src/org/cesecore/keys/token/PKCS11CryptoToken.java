@@ -29,6 +29,7 @@ import org.apache.commons.lang.BooleanUtils;
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.cesecore.internal.InternalResources;
+import org.cesecore.keys.token.p11.P11SignerPools;
 import org.cesecore.keys.token.p11.P11Slot;
 import org.cesecore.keys.token.p11.P11SlotUser;
 import org.cesecore.keys.token.p11.Pkcs11SlotLabel;
@@ -191,6 +192,8 @@ public class PKCS11CryptoToken extends BaseCryptoToken implements P11SlotUser {
             // Exception should only be thrown if loading a non-null KeyStore fails
             throw new IllegalStateException("This should never happen.");
         }
+        // The keys of the token can not be used any more
+        P11SignerPools.clear(getSignProviderName());
         if (this.p11slot != null) {
             this.p11slot.logoutFromSlotIfNoTokensActive();            
         } else {
@@ -202,6 +205,7 @@ public class PKCS11CryptoToken extends BaseCryptoToken implements P11SlotUser {
 
     @Override
     public void reset() {
+        P11SignerPools.clear(getSignProviderName());
         if (this.p11slot != null) {
             this.p11slot.reset();
         }
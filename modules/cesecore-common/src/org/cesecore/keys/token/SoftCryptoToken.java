@@ -22,10 +22,13 @@ import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.SignatureException;
+import java.security.cert.Certificate;
 import java.security.cert.CertificateException;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.Arrays;
 import java.util.Properties;
 
 import javax.crypto.Cipher;
@@ -70,6 +73,8 @@ public class SoftCryptoToken extends BaseCryptoToken {
 
     private byte[] keystoreData;
     private char[] keyStorePass;
+    /** Keys by alias while the token is active, or null if the token is not active or the cache is disabled */
+    private transient volatile SoftKeyCache keyCache;
 
     public SoftCryptoToken() {
         super();
@@ -123,7 +128,7 @@ public class SoftCryptoToken extends BaseCryptoToken {
                 KeyStore keystore = loadKeyStore(keystoreData, authCode);
                 setKeyStore(keystore);
                 // If everything was OK we cache the load/save password so we can store the keystore
-                keyStorePass = authCode;
+                keyStorePass = copyOf(authCode);
             } catch (IOException e) {
                 String msg = intres.getLocalizedMessage("token.erroractivate", getId(), e.getMessage());
                 log.info(msg, e);
@@ -148,7 +153,7 @@ public class SoftCryptoToken extends BaseCryptoToken {
                 //keystore.load(null, authCode);
                 setKeyStore(keystore);
                 // If everything was OK we cache the load/save password so we can store the keystore
-                keyStorePass = authCode;
+                keyStorePass = copyOf(authCode);
                 storeKeyStore();
             } catch (KeyStoreException e) {
                 log.error(e);
@@ -204,6 +209,76 @@ public class SoftCryptoToken extends BaseCryptoToken {
         }
     }
 
+    /** The password is kept for storing the keystore, in a copy that can be cleared without affecting the caller */
+    private static char[] copyOf(final char[] authCode) {
+        return authCode == null ? null : authCode.clone();
+    }
+
+    @Override
+    protected void setKeyStore(final KeyStore keystore) throws KeyStoreException {
+        super.setKeyStore(keystore);
+        keyCache = keystore != null && CesecoreConfiguration.isSoftKeyCacheEnabled() ? new SoftKeyCache() : null;
+    }
+
+    @Override
+    public PrivateKey getPrivateKey(final String alias) throws CryptoTokenOfflineException {
+        final SoftKeyCache cache = keyCache;
+        if (cache == null) {
+            return super.getPrivateKey(alias);
+        }
+        final PrivateKey cached = cache.getPrivateKey(alias);
+        if (cached != null) {
+            return cached;
+        }
+        final long generation = cache.getGeneration();
+        final PrivateKey privateKey = super.getPrivateKey(alias);
+        cache.putPrivateKey(alias, privateKey, generation);
+        return privateKey;
+    }
+
+    @Override
+    public PublicKey getPublicKey(final String alias) throws CryptoTokenOfflineException {
+        final SoftKeyCache cache = keyCache;
+        if (cache == null) {
+            return super.getPublicKey(alias);
+        }
+        final PublicKey cached = cache.getPublicKey(alias);
+        if (cached != null) {
+            return cached;
+        }
+        final long generation = cache.getGeneration();
+        final PublicKey publicKey = super.getPublicKey(alias);
+        cache.putPublicKey(alias, publicKey, generation);
+        return publicKey;
+    }
+
+    /** Removes the keys of an alias that has been changed from the key cache. Lookups that started before the change are not cached. */
+    private void invalidateCachedKeys(final String alias) {
+        final SoftKeyCache cache = keyCache;
+        if (cache != null) {
+            cache.invalidate(alias);
+        }
+    }
+
+    @Override
+    public void setProperties(final Properties properties) {
+        super.setProperties(properties);
+        // The properties decide how public keys are encoded
+        final SoftKeyCache cache = keyCache;
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    @Override
+    public void storeKey(final String alias, final Key key, final Certificate[] chain, final char[] password) throws KeyStoreException {
+        try {
+            super.storeKey(alias, key, chain, password);
+        } finally {
+            invalidateCachedKeys(alias);
+        }
+    }
+
     private KeyStore loadKeyStore(final byte[] ksdata, final char[] keystorepass) throws NoSuchAlgorithmException, CertificateException, IOException,
             KeyStoreException, NoSuchProviderException {
         CryptoProviderTools.installBCProviderIfNotAvailable();
@@ -221,12 +296,22 @@ public class SoftCryptoToken extends BaseCryptoToken {
     @Override
     public void deactivate() {
         storeKeyStore();
+        final SoftKeyCache oldKeyCache = keyCache;
         try {
             setKeyStore(null);
         } catch (KeyStoreException e) {
         	// Exception should only be thrown if loading a non-null KeyStore fails
             throw new IllegalStateException("This should never happen.");
         }
+        if (CesecoreConfiguration.isZeroizeOnDeactivationEnabled()) {
+            if (oldKeyCache != null) {
+                oldKeyCache.destroy();
+            }
+            if (keyStorePass != null) {
+                Arrays.fill(keyStorePass, '\0');
+                keyStorePass = null;
+            }
+        }
         String msg = intres.getLocalizedMessage("token.deactivate", getId());
         log.info(msg);
     }
@@ -294,6 +379,8 @@ public class SoftCryptoToken extends BaseCryptoToken {
             } catch (KeyStoreException e) { // NOPMD
                 // P12 keystore throws when the alias can not be found, in contrary to PKCS#11 keystores
                 // Java API is vague about what should happen so...
+            } finally {
+                invalidateCachedKeys(alias);
             }
             storeKeyStore();
         } else {
@@ -306,7 +393,11 @@ public class SoftCryptoToken extends BaseCryptoToken {
             CryptoTokenOfflineException {
         if (StringUtils.isNotEmpty(alias)) {
             KeyStoreTools cont = new KeyStoreTools(getKeyStore(), getSignProviderName());
-            cont.generateKeyPair(keySpec, alias);
+            try {
+                cont.generateKeyPair(keySpec, alias);
+            } finally {
+                invalidateCachedKeys(alias);
+            }
             storeKeyStore();
         } else {
             log.debug("Trying to generate keys with empty alias.");
@@ -354,7 +445,11 @@ public class SoftCryptoToken extends BaseCryptoToken {
     IOException, CryptoTokenOfflineException {
         if (StringUtils.isNotEmpty(alias)) {
             KeyStoreTools cont = new KeyStoreTools(getKeyStore(), getSignProviderName());
-            cont.generateKeyPair(spec, alias);
+            try {
+                cont.generateKeyPair(spec, alias);
+            } finally {
+                invalidateCachedKeys(alias);
+            }
             storeKeyStore();
         } else {
             log.debug("Trying to generate keys with empty alias.");
@@ -0,0 +1,125 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.keys.token;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.security.auth.DestroyFailedException;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Cache of the keys of an activated {@link SoftCryptoToken}, by alias.
+ *
+ * Looking up a key through the key store wrapper decodes the public key from its certificate, and possibly converts it to explicit
+ * ECC parameters, for every call. This cache keeps the decoded objects until the alias is changed or the token is deactivated.
+ *
+ * Readers are lock free. A key that is looked up while the alias is invalidated is not cached, since it may be the old key.
+ *
+ * @version $Id$
+ */
+final class SoftKeyCache {
+
+    private static final Logger log = Logger.getLogger(SoftKeyCache.class);
+
+    /** Copied on write, so that lookups need no locking */
+    private volatile Map<String, PrivateKey> privateKeys = new HashMap<>();
+    private volatile Map<String, PublicKey> publicKeys = new HashMap<>();
+    /** Incremented each time the cache is invalidated */
+    private volatile long generation = 0;
+
+    /** @return the generation to pass to the put methods, read before a key is looked up in the key store */
+    long getGeneration() {
+        return generation;
+    }
+
+    /** @return the cached private key, or null if the alias has not been cached */
+    PrivateKey getPrivateKey(final String alias) {
+        return privateKeys.get(alias);
+    }
+
+    /** @return the cached public key, or null if the alias has not been cached */
+    PublicKey getPublicKey(final String alias) {
+        return publicKeys.get(alias);
+    }
+
+    /** Caches a private key, unless the cache has been invalidated since the given generation */
+    synchronized void putPrivateKey(final String alias, final PrivateKey privateKey, final long fromGeneration) {
+        if (fromGeneration == generation) {
+            final Map<String, PrivateKey> clone = new HashMap<>(privateKeys);
+            clone.put(alias, privateKey);
+            privateKeys = clone;
+        }
+    }
+
+    /** Caches a public key, unless the cache has been invalidated since the given generation */
+    synchronized void putPublicKey(final String alias, final PublicKey publicKey, final long fromGeneration) {
+        if (fromGeneration == generation) {
+            final Map<String, PublicKey> clone = new HashMap<>(publicKeys);
+            clone.put(alias, publicKey);
+            publicKeys = clone;
+        }
+    }
+
+    /** Removes the keys of an alias, that has been generated, stored or deleted */
+    synchronized void invalidate(final String alias) {
+        generation++;
+        if (privateKeys.containsKey(alias)) {
+            final Map<String, PrivateKey> clone = new HashMap<>(privateKeys);
+            clone.remove(alias);
+            privateKeys = clone;
+        }
+        if (publicKeys.containsKey(alias)) {
+            final Map<String, PublicKey> clone = new HashMap<>(publicKeys);
+            clone.remove(alias);
+            publicKeys = clone;
+        }
+    }
+
+    /** Removes all keys, for example when the token properties have changed */
+    synchronized void invalidateAll() {
+        generation++;
+        privateKeys = new HashMap<>();
+        publicKeys = new HashMap<>();
+    }
+
+    /**
+     * Removes all keys and destroys the private keys, so that the key material is cleared from memory when the provider supports it.
+     * The keys must not be used afterwards, also not by other holders of the same key objects.
+     */
+    synchronized void destroy() {
+        final Map<String, PrivateKey> keys = privateKeys;
+        invalidateAll();
+        int notDestroyed = 0;
+        for (final PrivateKey privateKey : keys.values()) {
+            if (!privateKey.isDestroyed()) {
+                try {
+                    privateKey.destroy();
+                } catch (DestroyFailedException e) {
+                    notDestroyed++;
+                }
+            }
+        }
+        if (notDestroyed > 0 && log.isDebugEnabled()) {
+            log.debug(notDestroyed + " of " + keys.size() + " private keys could not be destroyed, since the provider does not support it.");
+        }
+    }
+
+    /** @return the number of cached private and public keys */
+    int size() {
+        return privateKeys.size() + publicKeys.size();
+    }
+}
@@ -0,0 +1,411 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.keys.token.p11;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.PrivateKey;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.RuntimeOperatorException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.cesecore.metrics.LatencyHistogram;
+
+/**
+ * A bounded pool of initialized signers for one key and signature algorithm.
+ *
+ * Creating a signer looks up the signature implementation of the provider and initializes it with the key, which for a PKCS#11
+ * key means calls to the HSM. A signer from the pool is already initialized, and is reset by each signature so that it can be
+ * used again. The size of the pool limits the number of signatures made at the same time with the key, so that the number of
+ * sessions that the HSM allows is not exceeded. When all signers are in use, a signature waits for a free signer at most the
+ * borrow timeout.
+ *
+ * Signers that have not been used for the max idle time are discarded, since network HSMs may close idle sessions. A signer
+ * that fails is discarded, and since a failure usually means that the sessions to the HSM are lost, all unused signers are
+ * tested with a signature before they are used again. Signers that have not been used for the validation interval are also
+ * tested before they are used. A signer that fails the test is discarded, and the next unused signer is tried instead.
+ * Discarded signers are replaced with new ones when needed. The signature that failed is not retried.
+ *
+ * No signer is created until {@link #prepare()} is called or the first signature is made, so a pool that is not used does not
+ * take a session from the HSM.
+ *
+ * @version $Id$
+ */
+public class P11SignerPool {
+
+    private static final Logger log = Logger.getLogger(P11SignerPool.class);
+
+    /** Signed when a signer is tested */
+    private static final byte[] VALIDATION_DATA = { 0x00, 0x01, 0x02, 0x03 };
+
+    private final String name;
+    private final String signatureAlgorithm;
+    private final String providerName;
+    private final PrivateKey privateKey;
+    private final long borrowTimeout;
+    private final long maxIdleTime;
+    private final long validationInterval;
+    /** Time of the last failed signature. Signers used before it are tested before they are used again. */
+    private volatile long lastFailure;
+    private volatile boolean hasFailed = false;
+    /** Set when the first signer is created */
+    private volatile AlgorithmIdentifier algorithmIdentifier;
+    /** One permit for each signer that may be created, so that at most maxSize signers are in use at the same time */
+    private final Semaphore permits;
+    /** Unused signers, the most recently used first */
+    private final ConcurrentLinkedDeque<PooledSigner> idleSigners = new ConcurrentLinkedDeque<>();
+    private final LatencyHistogram borrowTime;
+    private final AtomicLong created = new AtomicLong();
+    private final AtomicLong discarded = new AtomicLong();
+    private final AtomicLong borrowed = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong validations = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicInteger inUse = new AtomicInteger();
+
+    static class PooledSigner {
+        private final ContentSigner signer;
+        private long lastUsed;
+
+        private PooledSigner(final ContentSigner signer) {
+            this.signer = signer;
+            this.lastUsed = System.nanoTime();
+        }
+    }
+
+    /**
+     * Creates the pool, without any signer.
+     *
+     * @param name name of the pool, used in logs and statistics
+     * @param signatureAlgorithm the signature algorithm, e.g. SHA256WithRSA
+     * @param providerName name of the provider of the key
+     * @param privateKey the key to sign with
+     * @param maxSize the maximum number of signers, which is the maximum number of signatures made at the same time
+     * @param borrowTimeout milliseconds to wait for a free signer
+     * @param maxIdleTime milliseconds that an unused signer is kept
+     * @param validationInterval milliseconds that a signer may be unused before it is tested before it is used. 0 tests it before each use.
+     */
+    public P11SignerPool(final String name, final String signatureAlgorithm, final String providerName, final PrivateKey privateKey,
+            final int maxSize, final long borrowTimeout, final long maxIdleTime, final long validationInterval) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("The size of a signer pool must be at least 1.");
+        }
+        this.name = name;
+        this.signatureAlgorithm = signatureAlgorithm;
+        this.providerName = providerName;
+        this.privateKey = privateKey;
+        this.borrowTimeout = borrowTimeout;
+        this.maxIdleTime = TimeUnit.MILLISECONDS.toNanos(maxIdleTime);
+        this.validationInterval = TimeUnit.MILLISECONDS.toNanos(validationInterval);
+        this.permits = new Semaphore(maxSize, true);
+        this.borrowTime = new LatencyHistogram(name);
+    }
+
+    /**
+     * Creates the first signer, so that errors in the key or algorithm are reported here instead of at the first signature.
+     *
+     * @throws OperatorCreationException if a signer could not be created with the key and algorithm
+     */
+    public void prepare() throws OperatorCreationException {
+        idleSigners.push(createSigner());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** @return a content signer that buffers the data and signs it with a signer from the pool when the signature is requested */
+    public ContentSigner getContentSigner() {
+        return new PooledContentSigner();
+    }
+
+    /**
+     * Signs data with a signer from the pool.
+     *
+     * @param data the data to sign
+     * @return the signature
+     * @throws RuntimeOperatorException if no signer was free within the borrow timeout, or if signing failed
+     */
+    public byte[] sign(final byte[] data) {
+        final PooledSigner pooledSigner = borrow();
+        boolean success = false;
+        try {
+            final OutputStream os = pooledSigner.signer.getOutputStream();
+            os.write(data);
+            final byte[] signature = pooledSigner.signer.getSignature();
+            success = true;
+            return signature;
+        } catch (IOException e) {
+            throw new RuntimeOperatorException("Failed to sign with signer from pool '" + name + "': " + e.getMessage(), e);
+        } finally {
+            release(pooledSigner, success);
+        }
+    }
+
+    /** Takes a signer from the pool, or creates one. Must be followed by {@link #release(PooledSigner, boolean)}. */
+    PooledSigner borrow() {
+        final long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(borrowTimeout, TimeUnit.MILLISECONDS)) {
+                timeouts.incrementAndGet();
+                throw new RuntimeOperatorException("No signer in pool '" + name + "' was free within " + borrowTimeout + " ms.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeOperatorException("Interrupted while waiting for a signer from pool '" + name + "'.", e);
+        }
+        borrowTime.recordSince(start);
+        try {
+            PooledSigner pooledSigner;
+            while ((pooledSigner = idleSigners.poll()) != null) {
+                final long now = System.nanoTime();
+                if (now - pooledSigner.lastUsed > maxIdleTime) {
+                    discarded.incrementAndGet();
+                    if (log.isDebugEnabled()) {
+                        log.debug("Discarding idle signer from pool '" + name + "'.");
+                    }
+                    continue;
+                }
+                if (!isValidationNeeded(pooledSigner, now)) {
+                    break;
+                }
+                if (isValid(pooledSigner)) {
+                    pooledSigner.lastUsed = System.nanoTime();
+                    break;
+                }
+                discarded.incrementAndGet();
+                log.info("Discarding signer from pool '" + name + "' that could not make a test signature.");
+            }
+            if (pooledSigner == null) {
+                pooledSigner = createSigner();
+            }
+            borrowed.incrementAndGet();
+            inUse.incrementAndGet();
+            return pooledSigner;
+        } catch (OperatorCreationException e) {
+            permits.release();
+            failures.incrementAndGet();
+            throw new RuntimeOperatorException("Failed to create signer for pool '" + name + "': " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+    }
+
+    /** Returns a signer to the pool, or discards it if signing failed, so that the unused signers are tested before they are used */
+    void release(final PooledSigner pooledSigner, final boolean success) {
+        inUse.decrementAndGet();
+        if (success) {
+            pooledSigner.lastUsed = System.nanoTime();
+            idleSigners.push(pooledSigner);
+        } else {
+            failures.incrementAndGet();
+            discarded.incrementAndGet();
+            lastFailure = System.nanoTime();
+            hasFailed = true;
+            log.info("Signing failed with signer from pool '" + name + "'. Discarded the signer, and the " + idleSigners.size()
+                    + " unused signers will be tested before they are used.");
+        }
+        permits.release();
+    }
+
+    /** @return true if the signer has not been used for the validation interval, or has not been used since a signature failed */
+    private boolean isValidationNeeded(final PooledSigner pooledSigner, final long now) {
+        return now - pooledSigner.lastUsed >= validationInterval || (hasFailed && pooledSigner.lastUsed - lastFailure <= 0);
+    }
+
+    /** @return true if the signer could make a test signature, which also resets it so that it can be used again */
+    private boolean isValid(final PooledSigner pooledSigner) {
+        validations.incrementAndGet();
+        try {
+            pooledSigner.signer.getOutputStream().write(VALIDATION_DATA);
+            if (pooledSigner.signer.getSignature().length > 0) {
+                return true;
+            }
+        } catch (IOException | RuntimeException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Test signature failed with signer from pool '" + name + "': " + e.getMessage());
+            }
+        }
+        invalid.incrementAndGet();
+        return false;
+    }
+
+    private PooledSigner createSigner() throws OperatorCreationException {
+        final ContentSigner signer = createContentSigner();
+        if (algorithmIdentifier == null) {
+            algorithmIdentifier = signer.getAlgorithmIdentifier();
+        }
+        created.incrementAndGet();
+        if (log.isDebugEnabled()) {
+            log.debug("Created signer for pool '" + name + "'.");
+        }
+        return new PooledSigner(signer);
+    }
+
+    /** @return a new signer for the key, initialized for signing */
+    ContentSigner createContentSigner() throws OperatorCreationException {
+        return new JcaContentSignerBuilder(signatureAlgorithm).setProvider(providerName).build(privateKey);
+    }
+
+    /** @return the algorithm identifier of the signers, after creating the first signer if none has been created */
+    private AlgorithmIdentifier getAlgorithmIdentifier() {
+        if (algorithmIdentifier == null) {
+            release(borrow(), true);
+        }
+        return algorithmIdentifier;
+    }
+
+    /**
+     * Discards all unused signers. Signers in use are returned to the pool when they are done.
+     * @return the number of discarded signers
+     */
+    public int clear() {
+        int count = 0;
+        while (idleSigners.poll() != null) {
+            count++;
+        }
+        discarded.addAndGet(count);
+        return count;
+    }
+
+    /** @return the current statistics of the pool */
+    public Statistics getStatistics() {
+        return new Statistics(this);
+    }
+
+    /**
+     * Statistics of a pool at one point in time.
+     */
+    public static class Statistics {
+        private final String name;
+        private final long created;
+        private final long discarded;
+        private final long borrowed;
+        private final long timeouts;
+        private final long failures;
+        private final long validations;
+        private final long invalid;
+        private final int inUse;
+        private final int idle;
+        private final LatencyHistogram.Snapshot borrowTime;
+
+        private Statistics(final P11SignerPool pool) {
+            this.name = pool.name;
+            this.created = pool.created.get();
+            this.discarded = pool.discarded.get();
+            this.borrowed = pool.borrowed.get();
+            this.timeouts = pool.timeouts.get();
+            this.failures = pool.failures.get();
+            this.validations = pool.validations.get();
+            this.invalid = pool.invalid.get();
+            this.inUse = pool.inUse.get();
+            this.idle = pool.idleSigners.size();
+            this.borrowTime = pool.borrowTime.getSnapshot();
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** @return the number of signers that have been created */
+        public long getCreated() {
+            return created;
+        }
+
+        /** @return the number of signers that have been discarded, because they failed, failed the test signature, were idle too long or the pool was
+         *         cleared */
+        public long getDiscarded() {
+            return discarded;
+        }
+
+        /** @return the number of signatures that have been started */
+        public long getBorrowed() {
+            return borrowed;
+        }
+
+        /** @return the number of signatures that failed because no signer was free within the borrow timeout */
+        public long getTimeouts() {
+            return timeouts;
+        }
+
+        /** @return the number of signatures that failed, or signers that could not be created */
+        public long getFailures() {
+            return failures;
+        }
+
+        /** @return the number of times a signer has been tested with a signature before it was used */
+        public long getValidations() {
+            return validations;
+        }
+
+        /** @return the number of signers that have been discarded because they failed the test signature */
+        public long getInvalid() {
+            return invalid;
+        }
+
+        /** @return the number of signers that are used right now */
+        public int getInUse() {
+            return inUse;
+        }
+
+        /** @return the number of unused signers in the pool */
+        public int getIdle() {
+            return idle;
+        }
+
+        /** @return the times waited for a free signer */
+        public LatencyHistogram.Snapshot getBorrowTime() {
+            return borrowTime;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": borrowed=" + borrowed + ", created=" + created + ", discarded=" + discarded + ", timeouts=" + timeouts
+                    + ", failures=" + failures + ", validations=" + validations + ", invalid=" + invalid + ", inUse=" + inUse + ", idle=" + idle
+                    + ", borrowTimeP99=" + TimeUnit.NANOSECONDS.toMicros(borrowTime.getValueAtPercentile(99.0)) + "us";
+        }
+    }
+
+    /**
+     * A content signer that buffers the data, so that a signer from the pool only is used while the signature is calculated.
+     */
+    private class PooledContentSigner implements ContentSigner {
+        private final ByteArrayOutputStream data = new ByteArrayOutputStream();
+
+        @Override
+        public AlgorithmIdentifier getAlgorithmIdentifier() {
+            return P11SignerPool.this.getAlgorithmIdentifier();
+        }
+
+        @Override
+        public OutputStream getOutputStream() {
+            return data;
+        }
+
+        @Override
+        public byte[] getSignature() {
+            return sign(data.toByteArray());
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.keys.token.p11;
+
+import java.security.PrivateKey;
+import java.security.Provider;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.log4j.Logger;
+import org.bouncycastle.operator.BufferingContentSigner;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.OperatorCreationException;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.cesecore.config.CesecoreConfiguration;
+
+/**
+ * Creates content signers for certificates, CRLs and OCSP responses. Signers for keys of PKCS#11 providers are taken from a
+ * {@link P11SignerPool} for each key and signature algorithm, if the pool is enabled with pkcs11.signerpool.size.
+ * Other keys get a new signer each time.
+ *
+ * The pools of a provider are removed when a crypto token using the provider is deactivated or reset, since the keys of the
+ * token are not valid any more.
+ *
+ * @version $Id$
+ */
+public final class P11SignerPools {
+
+    private static final Logger log = Logger.getLogger(P11SignerPools.class);
+
+    /** Pools are also created for keys that are read again from the key store, so remove all pools if there are this many */
+    private static final int MAX_POOLS = 1000;
+
+    private static final ConcurrentMap<PoolKey, P11SignerPool> pools = new ConcurrentHashMap<>();
+
+    private P11SignerPools() {}
+
+    /** Identifies a pool. Keys are compared by identity, since the same key object is used as long as the crypto token is active. */
+    private static class PoolKey {
+        private final String providerName;
+        private final String signatureAlgorithm;
+        private final PrivateKey privateKey;
+
+        private PoolKey(final String providerName, final String signatureAlgorithm, final PrivateKey privateKey) {
+            this.providerName = providerName;
+            this.signatureAlgorithm = signatureAlgorithm;
+            this.privateKey = privateKey;
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            if (!(o instanceof PoolKey)) {
+                return false;
+            }
+            final PoolKey other = (PoolKey) o;
+            return privateKey == other.privateKey && providerName.equals(other.providerName) && signatureAlgorithm.equals(other.signatureAlgorithm);
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(privateKey) * 31 + signatureAlgorithm.hashCode();
+        }
+    }
+
+    /**
+     * Gets a content signer for one signature.
+     *
+     * @param signatureAlgorithm the signature algorithm, e.g. SHA256WithRSA
+     * @param providerName name of the provider of the key
+     * @param privateKey the key to sign with
+     * @param bufferSize the buffer size of the signer when it is not taken from a pool
+     * @return a content signer
+     * @throws OperatorCreationException if a signer could not be created with the key and algorithm
+     */
+    public static ContentSigner getContentSigner(final String signatureAlgorithm, final String providerName, final PrivateKey privateKey,
+            final int bufferSize) throws OperatorCreationException {
+        final int poolSize = CesecoreConfiguration.getP11SignerPoolSize();
+        if (poolSize < 1 || providerName == null || privateKey == null || !isPkcs11Provider(providerName)) {
+            return new BufferingContentSigner(new JcaContentSignerBuilder(signatureAlgorithm).setProvider(providerName).build(privateKey), bufferSize);
+        }
+        final PoolKey poolKey = new PoolKey(providerName, signatureAlgorithm, privateKey);
+        P11SignerPool pool = pools.get(poolKey);
+        if (pool == null) {
+            if (pools.size() >= MAX_POOLS) {
+                log.info("There are " + pools.size() + " PKCS#11 signer pools. Removing all of them.");
+                clearAll();
+            }
+            final P11SignerPool newPool = new P11SignerPool(providerName + " " + signatureAlgorithm, signatureAlgorithm, providerName, privateKey,
+                    poolSize, CesecoreConfiguration.getP11SignerPoolBorrowTimeout(), CesecoreConfiguration.getP11SignerPoolMaxIdleTime(),
+                    CesecoreConfiguration.getP11SignerPoolValidationInterval());
+            pool = pools.putIfAbsent(poolKey, newPool);
+            if (pool == null) {
+                // Only the pool that is used creates a signer, so that a lost race does not take a session from the HSM
+                try {
+                    newPool.prepare();
+                } catch (OperatorCreationException | RuntimeException e) {
+                    pools.remove(poolKey, newPool);
+                    throw e;
+                }
+                pool = newPool;
+                if (log.isDebugEnabled()) {
+                    log.debug("Created PKCS#11 signer pool '" + pool.getName() + "' with at most " + poolSize + " signers.");
+                }
+            }
+        }
+        return pool.getContentSigner();
+    }
+
+    private static boolean isPkcs11Provider(final String providerName) {
+        final Provider provider = Security.getProvider(providerName);
+        if (provider == null) {
+            return false;
+        }
+        final String className = provider.getClass().getName();
+        return className.equals(Pkcs11SlotLabel.SUN_PKCS11_CLASS) || className.equals(Pkcs11SlotLabel.IAIK_PKCS11_CLASS);
+    }
+
+    /**
+     * Removes the pools of all keys of a provider. Called when a crypto token using the provider is deactivated or reset.
+     * @param providerName name of the provider
+     */
+    public static void clear(final String providerName) {
+        for (final Iterator<PoolKey> iterator = pools.keySet().iterator(); iterator.hasNext();) {
+            final PoolKey poolKey = iterator.next();
+            if (poolKey.providerName.equals(providerName)) {
+                final P11SignerPool pool = pools.get(poolKey);
+                iterator.remove();
+                if (pool != null) {
+                    pool.clear();
+                    log.info("Removed PKCS#11 signer pool. " + pool.getStatistics());
+                }
+            }
+        }
+    }
+
+    /** Removes all pools. */
+    public static void clearAll() {
+        for (final P11SignerPool pool : pools.values()) {
+            pool.clear();
+        }
+        pools.clear();
+    }
+
+    /** @return the statistics of all pools */
+    public static List<P11SignerPool.Statistics> getStatistics() {
+        final List<P11SignerPool.Statistics> ret = new ArrayList<>();
+        for (final P11SignerPool pool : pools.values()) {
+            ret.add(pool.getStatistics());
+        }
+        return ret;
+    }
+}
@@ -0,0 +1,119 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.keys.validation;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Batch GCD of RSA moduli using product and remainder trees, as described by D. J. Bernstein in
+ * "How to find smooth parts of integers" and used in "Mining Your Ps and Qs" (Heninger et al.).
+ *
+ * Instead of computing the gcd of every pair of moduli, which is quadratic in the number of moduli, each modulus is reduced
+ * modulo the product of all the other moduli with a remainder tree. A result greater than one means that the modulus shares
+ * a prime factor with at least one other modulus. A result equal to the modulus itself means that both prime factors are shared
+ * (or that the same modulus is present twice, so callers should remove duplicates first).
+ *
+ * @version $Id$
+ */
+public final class BatchGcd {
+
+    private BatchGcd() {}
+
+    /**
+     * Computes gcd(n, product of all other moduli in the list) for each modulus n.
+     *
+     * @param moduli list of positive moduli, without duplicates
+     * @return array with the gcd for each modulus, in the same order as the list
+     */
+    public static BigInteger[] gcdWithOthers(final List<BigInteger> moduli) {
+        final BigInteger[] ret = new BigInteger[moduli.size()];
+        if (moduli.size() < 2) {
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = BigInteger.ONE;
+            }
+            return ret;
+        }
+        final List<BigInteger[]> productTree = productTree(moduli);
+        // Descend the tree, reducing the product modulo the square of each node
+        BigInteger[] remainders = productTree.get(productTree.size() - 1);
+        for (int level = productTree.size() - 2; level >= 0; level--) {
+            final BigInteger[] nodes = productTree.get(level);
+            final BigInteger[] next = new BigInteger[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                next[i] = remainders[i / 2].mod(nodes[i].multiply(nodes[i]));
+            }
+            remainders = next;
+        }
+        for (int i = 0; i < ret.length; i++) {
+            final BigInteger n = moduli.get(i);
+            // (P mod n^2) / n = (P/n) mod n, i.e. the product of the other moduli reduced modulo n
+            ret[i] = remainders[i].divide(n).gcd(n);
+        }
+        return ret;
+    }
+
+    /**
+     * Computes gcd(n, product of others) for each modulus n in moduli. Used to check a set of moduli against another, disjoint,
+     * set without having both sets in the same product tree.
+     *
+     * @param moduli list of positive moduli to compute the gcd for
+     * @param others list of positive moduli to compare against
+     * @return array with the gcd for each element in moduli, in the same order as the list
+     */
+    public static BigInteger[] gcdWithProduct(final List<BigInteger> moduli, final List<BigInteger> others) {
+        final BigInteger[] ret = new BigInteger[moduli.size()];
+        if (moduli.isEmpty()) {
+            return ret;
+        }
+        if (others.isEmpty()) {
+            for (int i = 0; i < ret.length; i++) {
+                ret[i] = BigInteger.ONE;
+            }
+            return ret;
+        }
+        final List<BigInteger[]> othersTree = productTree(others);
+        final BigInteger othersProduct = othersTree.get(othersTree.size() - 1)[0];
+        final List<BigInteger[]> productTree = productTree(moduli);
+        BigInteger[] remainders = new BigInteger[] { othersProduct.mod(productTree.get(productTree.size() - 1)[0]) };
+        for (int level = productTree.size() - 2; level >= 0; level--) {
+            final BigInteger[] nodes = productTree.get(level);
+            final BigInteger[] next = new BigInteger[nodes.length];
+            for (int i = 0; i < nodes.length; i++) {
+                next[i] = remainders[i / 2].mod(nodes[i]);
+            }
+            remainders = next;
+        }
+        for (int i = 0; i < ret.length; i++) {
+            ret[i] = remainders[i].gcd(moduli.get(i));
+        }
+        return ret;
+    }
+
+    /** @return the levels of the product tree, with the leaves at index 0 and the root (a single element) last */
+    private static List<BigInteger[]> productTree(final List<BigInteger> values) {
+        final List<BigInteger[]> tree = new ArrayList<>();
+        BigInteger[] level = values.toArray(new BigInteger[values.size()]);
+        tree.add(level);
+        while (level.length > 1) {
+            final BigInteger[] next = new BigInteger[(level.length + 1) / 2];
+            for (int i = 0; i < next.length; i++) {
+                next[i] = 2 * i + 1 < level.length ? level[2 * i].multiply(level[2 * i + 1]) : level[2 * i];
+            }
+            tree.add(next);
+            level = next;
+        }
+        return tree;
+    }
+}
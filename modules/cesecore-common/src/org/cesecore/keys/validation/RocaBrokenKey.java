@@ -36,13 +36,6 @@ import java.math.BigInteger;
 public class RocaBrokenKey {
     private static final int[] prims = new int[]{3, 5, 7, 11, 13, 17, 19, 23, 29, 31, 37, 41, 43, 47, 53, 59, 61, 67, 71, 73, 79, 83, 89, 97, 101,
             103, 107, 109, 113, 127, 131, 137, 139, 149, 151, 157, 163, 167};
-    private static final BigInteger[] primes = new BigInteger[prims.length];
-
-    static {
-        for (int i = 0; i < prims.length; i++) {
-            primes[i] = BigInteger.valueOf(prims[i]);
-        }
-    }
 
     private static final BigInteger[] markers = new BigInteger[]{
             new BigInteger("6"),
@@ -101,14 +94,60 @@ public class RocaBrokenKey {
 //        return true;
 //    }
 
+    /**
+     * Residue tables derived from the markers above: allowedResidues[i][r] is true if the marker for prims[i] has bit r set.
+     * A modulus is affected only if the residue modulo every prime is an allowed one.
+     */
+    private static final boolean[][] allowedResidues = new boolean[prims.length][];
+    /**
+     * The primes grouped so that the product of each group fits in a long. The modulus is reduced once per group with
+     * BigInteger arithmetic, and the residues for the individual primes are then computed with plain long arithmetic.
+     */
+    private static final BigInteger[] groupProducts;
+    /** Index in prims of the first prime in each group, with an extra element for the end of the last group */
+    private static final int[] groupStarts;
+
+    static {
+        for (int i = 0; i < prims.length; i++) {
+            allowedResidues[i] = new boolean[prims[i]];
+            for (int r = 0; r < prims[i]; r++) {
+                allowedResidues[i][r] = markers[i].testBit(r);
+            }
+        }
+        final int[] starts = new int[prims.length + 1];
+        final long[] products = new long[prims.length];
+        int groups = 0;
+        long product = 1;
+        for (int i = 0; i < prims.length; i++) {
+            if (i == 0 || product > Long.MAX_VALUE / prims[i]) {
+                if (i > 0) {
+                    products[groups - 1] = product;
+                }
+                starts[groups++] = i;
+                product = 1;
+            }
+            product *= prims[i];
+        }
+        products[groups - 1] = product;
+        starts[groups] = prims.length;
+        groupProducts = new BigInteger[groups];
+        groupStarts = new int[groups + 1];
+        for (int i = 0; i < groups; i++) {
+            groupProducts[i] = BigInteger.valueOf(products[i]);
+        }
+        System.arraycopy(starts, 0, groupStarts, 0, groups + 1);
+    }
+
     public static boolean isAffected(BigInteger modulus) {
-        for (int i = 0; i < primes.length; i++) {
-            if (BigInteger.ONE.shiftLeft(modulus.remainder(primes[i]).intValue()).and(markers[i]).equals(BigInteger.ZERO)) {
-                return false;
+        for (int group = 0; group < groupProducts.length; group++) {
+            final long residue = modulus.mod(groupProducts[group]).longValue();
+            for (int i = groupStarts[group]; i < groupStarts[group + 1]; i++) {
+                if (!allowedResidues[i][(int) (residue % prims[i])]) {
+                    return false;
+                }
             }
         }
         return true;
     }
 
 }
-
@@ -18,10 +18,13 @@ import java.security.PublicKey;
 import java.security.SecureRandom;
 import java.security.interfaces.RSAPublicKey;
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -173,28 +176,67 @@ public class RsaKeyValidator extends KeyValidatorBase {
   //        return true;
   //    }
 
+    /** Products of all odd primes up to a given trial division limit, computed once per configured limit. */
+    private static final ConcurrentMap<Integer, BigInteger> oddPrimorials = new ConcurrentHashMap<>();
+
     /**
      * Gets the smallest factor of the positive natural number greater than 2.
+     *
+     * The trial division candidates are intFactor, intFactor-2, ..., down to 3. Instead of dividing by every candidate,
+     * the modulus is checked against the product of all odd primes up to intFactor with a single gcd, which is equivalent
+     * since any odd divisor has an odd prime divisor not larger than itself. When intFactor is even all candidates are even,
+     * so only the check for the factor 2 applies.
+     *
      * @param n the number
      * @return the smallest factor or 2 for n=0.
      */
     protected static final boolean hasSmallerFactorThan(BigInteger n, int intFactor) {
-        //        BigInteger factor = BigInteger.valueOf(intFactor);
-        final BigInteger two = new BigInteger("2");
         if (intFactor < 3) {
             return false;
         }
-        if (n.mod(two).equals(BigInteger.ZERO) && intFactor > 2) {
+        if (!n.testBit(0)) {
             return true;
         }
-        for (int i = intFactor; i > 2; i = i - 2) {
-            if (n.mod(BigInteger.valueOf(i)).equals(BigInteger.ZERO)) {
-                return true;
+        if (intFactor % 2 == 0) {
+            return false;
+        }
+        return n.gcd(getOddPrimorial(intFactor)).compareTo(BigInteger.ONE) > 0;
+    }
+
+    /** @return the product of all odd primes less than or equal to limit */
+    private static BigInteger getOddPrimorial(final int limit) {
+        BigInteger primorial = oddPrimorials.get(limit);
+        if (primorial == null) {
+            // Sieve of Eratosthenes over the odd numbers, index i represents 2*i+1
+            final int size = (limit - 1) / 2 + 1;
+            final BitSet composite = new BitSet(size);
+            final List<BigInteger> primes = new ArrayList<>();
+            for (int i = 1; i < size; i++) {
+                if (!composite.get(i)) {
+                    final long prime = 2L * i + 1;
+                    primes.add(BigInteger.valueOf(prime));
+                    for (long j = (prime * prime - 1) / 2; j < size; j += prime) {
+                        composite.set((int) j);
+                    }
+                }
             }
+            primorial = product(primes, 0, primes.size());
+            oddPrimorials.putIfAbsent(limit, primorial);
         }
-        return false;
+        return primorial;
     }
 
+    /** Multiplies the numbers pairwise, which is a lot faster than a running product for large sets. */
+    private static BigInteger product(final List<BigInteger> values, final int from, final int to) {
+        if (to - from == 0) {
+            return BigInteger.ONE;
+        }
+        if (to - from == 1) {
+            return values.get(from);
+        }
+        final int middle = (from + to) >>> 1;
+        return product(values, from, middle).multiply(product(values, middle, to));
+    }
 
     /**
      * Public constructor needed for deserialization.
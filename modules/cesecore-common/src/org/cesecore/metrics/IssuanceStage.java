@@ -0,0 +1,72 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The stages of certificate issuance, with a latency histogram for each stage in the {@link MetricsRegistry}.
+ *
+ * A stage is timed with <code>final long start = System.nanoTime(); ...; IssuanceStage.SIGNING.recordSince(start);</code>
+ * Only successfully completed stages are recorded, failed issuances are counted by {@link #countFailure()}.
+ *
+ * @version $Id$
+ */
+public enum IssuanceStage {
+    /** The whole issuance in SignSession, from request to published certificate */
+    ISSUANCE("issuance.total"),
+    /** Authentication of the end entity, including the lookup in the database */
+    END_ENTITY_LOOKUP("issuance.endentitylookup"),
+    /** The certificate creation in CertificateCreateSession, which includes the stages below */
+    CREATE_CERTIFICATE("issuance.createcertificate"),
+    /** Authorization of the administrator to create certificates and access the CA */
+    AUTHORIZATION("issuance.authorization"),
+    /** Fetching the certificate profile, including the authorization to it */
+    CERTIFICATE_PROFILE("issuance.certificateprofile"),
+    /** Public key, DNS name and certificate validators */
+    VALIDATION("issuance.validation"),
+    /** Unique subject DN and public key checks of the CA */
+    KEY_CHECK("issuance.keycheck"),
+    /** Signing of the certificate and pre-certificate with the CA key */
+    SIGNING("issuance.signing"),
+    /** Submission of the pre-certificate to Certificate Transparency logs */
+    CERTIFICATE_TRANSPARENCY("issuance.ct"),
+    /** Storing the certificate in the database */
+    STORE("issuance.store"),
+    /** Publishing the certificate to the publishers of the certificate profile */
+    PUBLISHING("issuance.publishing"),
+    /** Writing the security events audit log */
+    AUDIT_LOG("issuance.auditlog");
+
+    private static final LongAdder failures = MetricsRegistry.INSTANCE.getCounter("issuance.failures");
+
+    private final LatencyHistogram histogram;
+
+    private IssuanceStage(final String histogramName) {
+        this.histogram = MetricsRegistry.INSTANCE.getHistogram(histogramName);
+    }
+
+    /** Records the time since startNanos, a value from {@link System#nanoTime()}, as the duration of the stage */
+    public void recordSince(final long startNanos) {
+        histogram.recordSince(startNanos);
+    }
+
+    public LatencyHistogram getHistogram() {
+        return histogram;
+    }
+
+    /** Counts an issuance that failed */
+    public static void countFailure() {
+        failures.increment();
+    }
+}
@@ -0,0 +1,178 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations in nanoseconds, with a fixed relative precision.
+ *
+ * Values are counted in log-linear buckets, in the same way as HdrHistogram: each power of two is divided into
+ * {@value #SUB_BUCKET_COUNT} buckets, so a value is reported with an error of at most 1/{@value #SUB_BUCKET_COUNT} (6.25%).
+ * Recording a value is a few atomic increments without any allocation, so histograms can be kept on in production.
+ *
+ * @version $Id$
+ */
+public final class LatencyHistogram {
+
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /** Values below SUB_BUCKET_COUNT are counted exactly, and then SUB_BUCKET_COUNT buckets for each remaining power of two */
+    private static final int BUCKET_COUNT = (Long.SIZE - SUB_BUCKET_BITS) * SUB_BUCKET_COUNT;
+
+    private final String name;
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder sum = new LongAdder();
+    private final AtomicLong max = new AtomicLong();
+
+    public LatencyHistogram(final String name) {
+        this.name = name;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Records a duration in nanoseconds. Negative durations, from a clock that went backwards, are recorded as 0. */
+    public void recordValue(final long nanos) {
+        final long value = Math.max(nanos, 0L);
+        counts.incrementAndGet(getBucketIndex(value));
+        sum.add(value);
+        long currentMax = max.get();
+        while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+            currentMax = max.get();
+        }
+    }
+
+    /** Records the time since startNanos, a value from {@link System#nanoTime()} */
+    public void recordSince(final long startNanos) {
+        recordValue(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Clears all recorded values. Values that are recorded concurrently with the reset may be partially cleared,
+     * which only affects the sum and maximum of the next snapshot.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        sum.reset();
+        max.set(0);
+    }
+
+    /** @return a copy of the recorded values, that is not affected by values recorded later */
+    public Snapshot getSnapshot() {
+        final long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(name, copy, count, sum.sum(), max.get());
+    }
+
+    static int getBucketIndex(final long value) {
+        if (value < SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        // Shift the value so that the highest bit is bit SUB_BUCKET_BITS, and the bits below it select the sub bucket
+        final int shift = (Long.SIZE - 1 - Long.numberOfLeadingZeros(value)) - SUB_BUCKET_BITS;
+        final int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+        return (shift + 1) * SUB_BUCKET_COUNT + subBucket;
+    }
+
+    /** @return the lowest value that is counted in the bucket */
+    static long getBucketLowestValue(final int index) {
+        if (index < SUB_BUCKET_COUNT) {
+            return index;
+        }
+        final int shift = index / SUB_BUCKET_COUNT - 1;
+        final long subBucket = index % SUB_BUCKET_COUNT;
+        return (SUB_BUCKET_COUNT + subBucket) << shift;
+    }
+
+    /** @return the highest value that is counted in the bucket */
+    static long getBucketHighestValue(final int index) {
+        if (index == BUCKET_COUNT - 1) {
+            return Long.MAX_VALUE;
+        }
+        return getBucketLowestValue(index + 1) - 1;
+    }
+
+    /**
+     * Recorded values of a histogram at one point in time.
+     */
+    public static final class Snapshot {
+        private final String name;
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(final String name, final long[] counts, final long count, final long sum, final long max) {
+            this.name = name;
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /** @return the number of recorded values */
+        public long getCount() {
+            return count;
+        }
+
+        /** @return the sum of the recorded values in nanoseconds */
+        public long getSum() {
+            return sum;
+        }
+
+        /** @return the mean of the recorded values in nanoseconds, or 0 if no values have been recorded */
+        public double getMean() {
+            return count == 0 ? 0 : (double) sum / count;
+        }
+
+        /** @return the largest recorded value in nanoseconds */
+        public long getMax() {
+            return max;
+        }
+
+        /**
+         * @param percentile a percentile between 0 and 100, e.g. 99.9
+         * @return a value in nanoseconds that at least the given percentage of the recorded values are less than or equal to,
+         * within the precision of the histogram, or 0 if no values have been recorded
+         */
+        public long getValueAtPercentile(final double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            final double fraction = Math.min(Math.max(percentile, 0.0), 100.0) / 100.0;
+            final long rank = Math.max(1, (long) Math.ceil(fraction * count));
+            long cumulative = 0;
+            for (int i = 0; i < counts.length; i++) {
+                cumulative += counts[i];
+                if (cumulative >= rank) {
+                    return Math.min(getBucketHighestValue(i), max);
+                }
+            }
+            return max;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX management interface of the {@link MetricsRegistry}, registered as {@value MetricsRegistry#OBJECT_NAME}.
+ *
+ * @version $Id$
+ */
+public interface MetricsMXBean {
+
+    /** @return the names of all histograms */
+    String[] getHistogramNames();
+
+    /** @return the values of all counters, by name */
+    Map<String, Long> getCounters();
+
+    /** @return the number of values recorded by the named histogram, or 0 if there is no such histogram */
+    long getCount(String histogramName);
+
+    /** @return the mean of the values recorded by the named histogram in milliseconds */
+    double getMeanMillis(String histogramName);
+
+    /** @return the given percentile (0-100) of the values recorded by the named histogram in milliseconds */
+    double getPercentileMillis(String histogramName, double percentile);
+
+    /** @return the largest value recorded by the named histogram in milliseconds */
+    double getMaxMillis(String histogramName);
+
+    /** @return all metrics, in the text format also returned by the health check servlet */
+    String getReport();
+
+    /** Clears all histograms and counters */
+    void reset();
+}
@@ -0,0 +1,211 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.InstanceNotFoundException;
+import javax.management.MBeanRegistrationException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.NotCompliantMBeanException;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Singleton registry of in-process latency histograms and counters, by name.
+ *
+ * Histograms and counters are created on first use and live as long as the class. Callers on hot paths should look them up
+ * once and keep the reference, see {@link IssuanceStage}. The metrics are available over JMX, when {@link #registerMBean()}
+ * has been called, and in text format from {@link #getReport()}.
+ *
+ * @version $Id$
+ */
+public enum MetricsRegistry implements MetricsMXBean {
+    INSTANCE;
+
+    public static final String OBJECT_NAME = "org.cesecore:type=Metrics";
+
+    private static final double NANOS_PER_MILLI = 1000000.0;
+    private static final double NANOS_PER_SECOND = 1000000000.0;
+    private static final double[] REPORTED_QUANTILES = { 0.5, 0.9, 0.99, 0.999 };
+
+    private final Logger log = Logger.getLogger(MetricsRegistry.class);
+    private final ConcurrentMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /** @return the histogram with the given name, which is created if it does not exist */
+    public LatencyHistogram getHistogram(final String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            final LatencyHistogram created = new LatencyHistogram(name);
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    /** @return the counter with the given name, which is created if it does not exist */
+    public LongAdder getCounter(final String name) {
+        LongAdder counter = counters.get(name);
+        if (counter == null) {
+            final LongAdder created = new LongAdder();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /** @return snapshots of all histograms, sorted by name */
+    public SortedMap<String, LatencyHistogram.Snapshot> getHistogramSnapshots() {
+        final SortedMap<String, LatencyHistogram.Snapshot> ret = new TreeMap<>();
+        for (final LatencyHistogram histogram : histograms.values()) {
+            ret.put(histogram.getName(), histogram.getSnapshot());
+        }
+        return ret;
+    }
+
+    @Override
+    public String[] getHistogramNames() {
+        return new TreeMap<>(histograms).keySet().toArray(new String[0]);
+    }
+
+    @Override
+    public SortedMap<String, Long> getCounters() {
+        final SortedMap<String, Long> ret = new TreeMap<>();
+        for (final Map.Entry<String, LongAdder> entry : counters.entrySet()) {
+            ret.put(entry.getKey(), entry.getValue().sum());
+        }
+        return ret;
+    }
+
+    @Override
+    public long getCount(final String histogramName) {
+        final LatencyHistogram.Snapshot snapshot = getSnapshot(histogramName);
+        return snapshot == null ? 0 : snapshot.getCount();
+    }
+
+    @Override
+    public double getMeanMillis(final String histogramName) {
+        final LatencyHistogram.Snapshot snapshot = getSnapshot(histogramName);
+        return snapshot == null ? 0 : snapshot.getMean() / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getPercentileMillis(final String histogramName, final double percentile) {
+        final LatencyHistogram.Snapshot snapshot = getSnapshot(histogramName);
+        return snapshot == null ? 0 : snapshot.getValueAtPercentile(percentile) / NANOS_PER_MILLI;
+    }
+
+    @Override
+    public double getMaxMillis(final String histogramName) {
+        final LatencyHistogram.Snapshot snapshot = getSnapshot(histogramName);
+        return snapshot == null ? 0 : snapshot.getMax() / NANOS_PER_MILLI;
+    }
+
+    private LatencyHistogram.Snapshot getSnapshot(final String histogramName) {
+        final LatencyHistogram histogram = histograms.get(histogramName);
+        return histogram == null ? null : histogram.getSnapshot();
+    }
+
+    /**
+     * Returns all metrics in the Prometheus text exposition format. Histograms are reported as summaries in seconds, with a
+     * separate gauge for the maximum, and the name converted to a valid metric name, e.g. "issuance.signing" becomes
+     * "issuance_signing_seconds".
+     */
+    @Override
+    public String getReport() {
+        final StringBuilder sb = new StringBuilder();
+        for (final LatencyHistogram.Snapshot snapshot : getHistogramSnapshots().values()) {
+            final String metricName = toMetricName(snapshot.getName()) + "_seconds";
+            sb.append("# TYPE ").append(metricName).append(" summary\n");
+            for (final double quantile : REPORTED_QUANTILES) {
+                sb.append(metricName).append("{quantile=\"").append(quantile).append("\"} ")
+                        .append(toSeconds(snapshot.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            sb.append(metricName).append("_sum ").append(toSeconds(snapshot.getSum())).append('\n');
+            sb.append(metricName).append("_count ").append(snapshot.getCount()).append('\n');
+            sb.append("# TYPE ").append(metricName).append("_max gauge\n");
+            sb.append(metricName).append("_max ").append(toSeconds(snapshot.getMax())).append('\n');
+        }
+        for (final Map.Entry<String, Long> entry : getCounters().entrySet()) {
+            final String metricName = toMetricName(entry.getKey()) + "_total";
+            sb.append("# TYPE ").append(metricName).append(" counter\n");
+            sb.append(metricName).append(' ').append(entry.getValue()).append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static String toMetricName(final String name) {
+        return name.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+
+    private static String toSeconds(final double nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / NANOS_PER_SECOND);
+    }
+
+    @Override
+    public void reset() {
+        for (final LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+        for (final LongAdder counter : counters.values()) {
+            counter.reset();
+        }
+    }
+
+    /** Makes the metrics available over JMX in the platform MBean server. Does nothing if they are already registered. */
+    public void registerMBean() {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (!mBeanServer.isRegistered(objectName)) {
+                mBeanServer.registerMBean(new StandardMBean(this, MetricsMXBean.class, true), objectName);
+                log.debug("Registered metrics MBean " + OBJECT_NAME);
+            }
+        } catch (InstanceAlreadyExistsException e) {
+            log.debug("Metrics MBean was registered concurrently.");
+        } catch (MalformedObjectNameException | MBeanRegistrationException | NotCompliantMBeanException | SecurityException e) {
+            log.warn("Could not register metrics MBean " + OBJECT_NAME + ": " + e.getMessage());
+        }
+    }
+
+    /** Removes the metrics from the platform MBean server, if they are registered. */
+    public void unregisterMBean() {
+        try {
+            final MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            final ObjectName objectName = new ObjectName(OBJECT_NAME);
+            if (mBeanServer.isRegistered(objectName)) {
+                mBeanServer.unregisterMBean(objectName);
+            }
+        } catch (InstanceNotFoundException e) {
+            log.debug("Metrics MBean was unregistered concurrently.");
+        } catch (MalformedObjectNameException | MBeanRegistrationException | SecurityException e) {
+            log.warn("Could not unregister metrics MBean " + OBJECT_NAME + ": " + e.getMessage());
+        }
+    }
+}
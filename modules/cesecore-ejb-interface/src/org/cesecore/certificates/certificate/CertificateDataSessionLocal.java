@@ -90,6 +90,29 @@ public interface CertificateDataSessionLocal extends CertificateDataSession {
     List<CertificateData> findByExpireDateAndTypeWithLimit(long expireDate, int certificateType, int maxNumberOfResults);
     
     List<String> findUsernamesByExpireTimeWithLimit(long minExpireTime, long maxExpireTime, int maxResults);
+
+    /**
+     * Get the next batch of certificates ordered by update time and fingerprint. Used for processing all certificates in chunks,
+     * where the last returned update time and fingerprint are passed as the starting point for the next batch.
+     *
+     * @param updateTime update time of the last processed certificate, 0 to start from the beginning
+     * @param fingerprint fingerprint of the last processed certificate, or an empty String to start from the beginning
+     * @param maxResults the maximum number of certificates to return
+     * @return return the query results as a List.
+     */
+    List<CertificateData> findNextBatchByUpdateTime(long updateTime, String fingerprint, int maxResults);
+
+    /**
+     * Finds the next batch of certificates that expire before the given time, but that have expireTime>=now and status "active" or
+     * "notifiedaboutexpiration", ordered by expire date and fingerprint.
+     *
+     * @param expireDate the time by which the certificates will be expired
+     * @param afterExpireDate expire date of the last certificate of the previous batch, 0 to start from the beginning
+     * @param afterFingerprint fingerprint of the last certificate of the previous batch, or an empty String to start from the beginning
+     * @param maxResults the maximum number of certificates to return
+     * @return return the query results as a List.
+     */
+    List<CertificateData> findNextBatchByExpireDate(long expireDate, long afterExpireDate, String afterFingerprint, int maxResults);
     
     /**
      * Get a list of {@link Certificate} from a list of list of {@link CertificateData}.
@@ -142,5 +165,21 @@ public interface CertificateDataSessionLocal extends CertificateDataSession {
      */
     List<Object[]> findExpirationInfo(Collection<String> cas, Collection<Integer> certificateProfiles,
             long activeNotifiedExpireDateMin, long activeNotifiedExpireDateMax, long activeExpireDateMin);
+
+    /**
+     * Fetch a page of the certificate fingerprints and corresponding username returned by
+     * {@link #findExpirationInfo(Collection, Collection, long, long, long)}, ordered by fingerprint. Used to process a large number of expiring
+     * certificates in chunks, where the last returned fingerprint is passed as the starting point for the next chunk.
+     *
+     * @param lastFingerprint fingerprint of the last processed certificate, or null to start from the beginning
+     * @param maxResults the maximum number of rows to return
+     * @return [0] = (String) fingerprint, [1] = (String) username
+     * @see #findExpirationInfo(Collection, Collection, long, long, long)
+     */
+    List<Object[]> findExpirationInfo(Collection<String> cas, Collection<Integer> certificateProfiles,
+            long activeNotifiedExpireDateMin, long activeNotifiedExpireDateMax, long activeExpireDateMin, String lastFingerprint, int maxResults);
+
+    /** @return the CertificateData rows with the given fingerprints. Fingerprints that do not exist are ignored. */
+    List<CertificateData> findByFingerprints(Collection<String> fingerprints);
     
 }
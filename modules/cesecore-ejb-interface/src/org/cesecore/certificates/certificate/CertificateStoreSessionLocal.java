@@ -101,6 +101,22 @@ public interface CertificateStoreSessionLocal extends CertificateStoreSession {
      * @return [0] = (String) fingerprint, [1] = (String) username
      */
     List<Object[]> findExpirationInfo(Collection<String> cas, Collection<Integer> certificateProfiles, long activeNotifiedExpireDateMin, long activeNotifiedExpireDateMax, long activeExpireDateMin);
+
+    /**
+     * Fetch a page of certificate fingerprints and corresponding username, ordered by fingerprint.
+     * 
+     * @param cas A list of CAs that the sought certificates should be issued from
+     * @param certificateProfiles A list if certificateprofiles to sort from. Will be ignored if left empty. 
+     * @param activeNotifiedExpireDateMin The minimal date for expiration notification
+     * @param activeNotifiedExpireDateMax The maxmimal date for expiration notification
+     * @param activeExpireDateMin the current rune timestamp + the threshold 
+     * @param lastFingerprint fingerprint of the last row in the previous page, or null for the first page
+     * @param maxResults the maximum number of rows to return
+     * 
+     * @return [0] = (String) fingerprint, [1] = (String) username
+     */
+    List<Object[]> findExpirationInfo(Collection<String> cas, Collection<Integer> certificateProfiles, long activeNotifiedExpireDateMin,
+            long activeNotifiedExpireDateMax, long activeExpireDateMin, String lastFingerprint, int maxResults);
     
     /**
      * Query if we have a clear cut case where no username or the provided username is the only user of the subjectDN and subjectKeyId.
@@ -218,6 +234,30 @@ public interface CertificateStoreSessionLocal extends CertificateStoreSession {
      */
     List<CertificateDataWrapper> getCertificateDatasBySubjectAndIssuer(String subjectDN, String issuerDN, boolean onlyActive);
 
+    /**
+     * Lists the next batch of certificate datas ordered by update time and fingerprint, for processing all certificates in chunks.
+     * Pass the update time and fingerprint of the last certificate data of the previous batch to get the next batch.
+     *
+     * @param updateTime update time of the last processed certificate, 0 to start from the beginning
+     * @param fingerprint fingerprint of the last processed certificate, or an empty String to start from the beginning
+     * @param maxResults the maximum number of certificate datas to return
+     * @return List of certificate datas ordered by update time and fingerprint, or an empty List if there are no more
+     */
+    List<CertificateDataWrapper> getCertificateDatasByUpdateTime(long updateTime, String fingerprint, int maxResults);
+
+    /**
+     * Lists the next page of certificate datas that expire before the given date, but that have expireTime>=now and status "active" or
+     * "notifiedaboutexpiration", ordered by expire date and fingerprint. Pass the expire date and fingerprint of the last certificate
+     * data of the previous page to get the next page.
+     *
+     * @param expirationDate the time by which the certificates will be expired
+     * @param afterExpireDate expire date of the last certificate of the previous page, 0 to start from the beginning
+     * @param afterFingerprint fingerprint of the last certificate of the previous page, or an empty String to start from the beginning
+     * @param maxResults the maximum number of certificate datas to return
+     * @return List of certificate datas ordered by expire date and fingerprint, or an empty List if there are no more
+     */
+    List<CertificateDataWrapper> getCertificateDatasByExpireDate(Date expirationDate, long afterExpireDate, String afterFingerprint, int maxResults);
+
     /**
      * Lists certificate datas for a given subject.
      * 
@@ -248,6 +288,18 @@ public interface CertificateStoreSessionLocal extends CertificateStoreSession {
      */
     void setRolloverDoneStatus(AuthenticationToken admin, String fingerprint) throws AuthorizationDeniedException;
 
+    /**
+     * Update the status of a number of certificates in a single transaction. Each status change is audit logged in the same way as
+     * with {@link #setStatus(AuthenticationToken, String, int)}.
+     * 
+     * @param admin Administrator performing the operation
+     * @param fingerprints fingerprints of the certificates to update
+     * @param status one of CertificateConstants.CERT_..., except CERT_REVOKED and CERT_ACTIVE
+     * @return the number of certificates that were updated. Fingerprints that do not exist are ignored.
+     * @throws AuthorizationDeniedException if the administrator is not authorized to the CA of one of the certificates, in which case no status is changed
+     */
+    int setStatus(AuthenticationToken admin, Collection<String> fingerprints, int status) throws AuthorizationDeniedException;
+
     /** Method for speedy checks if a certificate exists for issuerDN, serno
      * 
      * @param issuerDN issuer DN of the desired certificate.
@@ -58,6 +58,26 @@ public interface CertificateProfileSession {
     public int addCertificateProfile(AuthenticationToken admin, int id, String name, CertificateProfile profile)
             throws CertificateProfileExistsException, AuthorizationDeniedException;
 
+    /**
+     * 
+     * @return a collection of all existing certificate profiles.
+     */
+    Map<Integer, CertificateProfile> getAllCertificateProfiles();
+
+    /**
+     * Adds or updates a batch of certificate profiles in a single transaction. A profile whose name already exists with the same id
+     * is updated, and all other profiles are added with the given id. The profile cache is reloaded once for the whole batch.
+     *
+     * @param admin administrator performing the task
+     * @param idToNameMap names of the profiles, by profile id
+     * @param profiles the profiles to add or update, by profile id
+     *
+     * @throws CertificateProfileExistsException if a profile could not be added because the id or name is taken. Nothing in the batch is stored.
+     * @throws AuthorizationDeniedException if admin is not authorized to edit one of the profiles. Nothing in the batch is stored.
+     */
+    void importCertificateProfiles(AuthenticationToken admin, Map<Integer, String> idToNameMap, Map<Integer, CertificateProfile> profiles)
+            throws CertificateProfileExistsException, AuthorizationDeniedException;
+
     /**
      * Updates certificate profile data
      * 
@@ -12,8 +12,6 @@
  *************************************************************************/
 package org.cesecore.certificates.certificateprofile;
 
-import java.util.Map;
-
 import javax.ejb.Local;
 
 import org.cesecore.authentication.tokens.AuthenticationToken;
@@ -24,12 +22,6 @@ import org.cesecore.authentication.tokens.AuthenticationToken;
 @Local
 public interface CertificateProfileSessionLocal extends CertificateProfileSession {
 
-    /**
-     * 
-     * @return a collection of all existing certificate profiles.
-     */
-    Map<Integer, CertificateProfile> getAllCertificateProfiles();
-    
     /**
      * Checks authorization to profiles. Only profiles that refer to CA's that the authentication token is 
      * authorized to will be OK. Also checks the passed in extra resources. 
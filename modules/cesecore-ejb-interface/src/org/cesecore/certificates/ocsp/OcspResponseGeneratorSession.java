@@ -50,6 +50,12 @@ public interface OcspResponseGeneratorSession {
     
     /** Reloads the cache of OCSP signers. */
     void reloadOcspSigningCache();
+
+    /**
+     * Reloads the entries of the cache of OCSP signers for CAs, OcspKeyBindings and CryptoTokens that have changed since the last reload.
+     * Use {@link #reloadOcspSigningCache()} to also detect revocation of CA and OCSP signing certificates.
+     */
+    void refreshOcspSigningCache();
     
     /** Reloads the cache of OCSP extensions (including extension specific caches, e.g. the CT OCSP response extensions cache). */
     void reloadOcspExtensionsCache();
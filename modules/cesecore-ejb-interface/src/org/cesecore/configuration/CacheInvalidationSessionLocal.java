@@ -0,0 +1,56 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.configuration;
+
+import javax.ejb.Local;
+import javax.ejb.Timer;
+
+/**
+ * Session bean for the cluster cache invalidation log, see {@link org.cesecore.internal.CacheInvalidationListeners}.
+ *
+ * @version $Id$
+ */
+@Local
+public interface CacheInvalidationSessionLocal {
+
+    /**
+     * Writes an entry to the cache invalidation log, in the transaction of the caller, so that other nodes evict the entry
+     * from their caches once the change is committed. Does nothing if polling of the log is disabled.
+     *
+     * @param cacheName name of the cache, one of the constants in {@link org.cesecore.internal.CacheInvalidationListeners}
+     * @param entryKey key of the changed entry, typically the database id, or null if the whole cache should be flushed
+     */
+    void signalInvalidation(String cacheName, String entryKey);
+
+    /** @see #signalInvalidation(String, String) */
+    void signalInvalidation(String cacheName, int id);
+
+    /**
+     * Reads the entries written by other nodes since the last poll and invokes the registered cache invalidation listeners.
+     * Entries older than the configured retention time are removed from time to time.
+     */
+    void pollInvalidationLog();
+
+    /**
+     * Removes entries older than the specified time from the cache invalidation log.
+     *
+     * @return the number of removed entries
+     */
+    int removeInvalidationLogEntries(long olderThan);
+
+    /** Invoked by background poll timeouts */
+    void timeOut(Timer timer);
+
+    /** Subscribes the CESeCore caches to cache invalidations and initializes background polling of the cache invalidation log, if enabled */
+    void scheduleBackgroundPoll();
+}
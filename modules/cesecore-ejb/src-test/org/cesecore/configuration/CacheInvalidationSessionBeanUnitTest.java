@@ -0,0 +1,172 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.configuration;
+
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.reset;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+import org.cesecore.certificates.ocsp.OcspResponseGeneratorSessionLocal;
+import org.cesecore.config.CesecoreConfiguration;
+import org.cesecore.config.ConfigurationHolder;
+import org.cesecore.internal.CacheInvalidationListener;
+import org.cesecore.internal.CacheInvalidationListeners;
+import org.easymock.Capture;
+import org.easymock.EasyMockRunner;
+import org.easymock.Mock;
+import org.easymock.TestSubject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Unit tests of writing and polling the cluster cache invalidation log, with a mocked database.
+ *
+ * @version $Id$
+ */
+@RunWith(EasyMockRunner.class)
+public class CacheInvalidationSessionBeanUnitTest {
+
+    private static final String TEST_CACHE = "TEST_CACHEINVALIDATIONSESSION";
+    private static final String OTHER_NODE = "othernode";
+
+    @TestSubject
+    private final CacheInvalidationSessionBean cacheInvalidationSession = new CacheInvalidationSessionBean();
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private OcspResponseGeneratorSessionLocal ocspResponseGeneratorSession;
+
+    @Mock
+    private TypedQuery<CacheInvalidationData> query;
+
+    private final List<String> invalidated = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        ConfigurationHolder.updateConfiguration("cache.invalidation.pollinterval", "1000");
+        ConfigurationHolder.updateConfiguration("cache.invalidation.retentiontime", String.valueOf(Long.MAX_VALUE / 2));
+        ConfigurationHolder.updateConfiguration("cluster.nodeid", "thisnode");
+        CacheInvalidationListeners.INSTANCE.addListener(TEST_CACHE, new CacheInvalidationListener() {
+            @Override
+            public void onInvalidation(final String entryKey) {
+                invalidated.add(entryKey);
+            }
+        });
+    }
+
+    @After
+    public void tearDown() {
+        ConfigurationHolder.restoreConfiguration();
+    }
+
+    private static CacheInvalidationData entry(final String cacheName, final String entryKey, final String nodeId) {
+        return new CacheInvalidationData(UUID.randomUUID().toString(), System.currentTimeMillis(), cacheName, entryKey, nodeId);
+    }
+
+    private void expectPoll(final List<CacheInvalidationData> entries) {
+        expect(entityManager.createQuery(anyString(), eq(CacheInvalidationData.class))).andReturn(query);
+        expect(query.setParameter(eq("since"), anyLong())).andReturn(query);
+        expect(query.getResultList()).andReturn(entries);
+    }
+
+    @Test
+    public void testSignalInvalidation() {
+        final Capture<CacheInvalidationData> persisted = Capture.newInstance();
+        entityManager.persist(capture(persisted));
+        expectLastCall();
+        replay(entityManager);
+        cacheInvalidationSession.signalInvalidation(TEST_CACHE, 17);
+        verify(entityManager);
+        assertEquals(TEST_CACHE, persisted.getValue().getCacheName());
+        assertEquals("17", persisted.getValue().getEntryKey());
+        assertEquals(CesecoreConfiguration.getNodeIdentifier(), persisted.getValue().getNodeId());
+    }
+
+    @Test
+    public void testSignalInvalidationWhenDisabled() {
+        ConfigurationHolder.updateConfiguration("cache.invalidation.pollinterval", "-1");
+        replay(entityManager);
+        // Nothing should be written, since the table may not exist
+        cacheInvalidationSession.signalInvalidation(TEST_CACHE, 17);
+        verify(entityManager);
+    }
+
+    /** Entries of other nodes must be dispatched once, even if they are read again in the overlap of the next poll */
+    @Test
+    public void testPollDispatchesEntriesOfOtherNodesOnce() {
+        final CacheInvalidationData ownEntry = entry(TEST_CACHE, "1", CesecoreConfiguration.getNodeIdentifier());
+        final CacheInvalidationData otherEntry = entry(TEST_CACHE, "2", OTHER_NODE);
+        final CacheInvalidationData flushEntry = entry(TEST_CACHE, null, OTHER_NODE);
+        expectPoll(Arrays.asList(ownEntry, otherEntry));
+        replay(entityManager, query, ocspResponseGeneratorSession);
+        cacheInvalidationSession.pollInvalidationLog();
+        verify(entityManager, query, ocspResponseGeneratorSession);
+        assertEquals(Collections.singletonList("2"), invalidated);
+
+        reset(entityManager, query);
+        expectPoll(Arrays.asList(ownEntry, otherEntry, flushEntry));
+        replay(entityManager, query);
+        cacheInvalidationSession.pollInvalidationLog();
+        verify(entityManager, query);
+        assertEquals(2, invalidated.size());
+        assertNull(invalidated.get(1));
+    }
+
+    /** The OCSP signing cache is built from CAs, crypto tokens and key bindings, so it must be refreshed when one of them changes */
+    @Test
+    public void testPollRefreshesOcspSigningCache() {
+        CacheInvalidationListeners.INSTANCE.addListener(CacheInvalidationListeners.INTERNALKEYBINDING, new CacheInvalidationListener() {
+            @Override
+            public void onInvalidation(final String entryKey) {
+                invalidated.add(entryKey);
+            }
+        });
+        expectPoll(Arrays.asList(entry(CacheInvalidationListeners.INTERNALKEYBINDING, "3", OTHER_NODE), entry(TEST_CACHE, "4", OTHER_NODE)));
+        ocspResponseGeneratorSession.refreshOcspSigningCache();
+        expectLastCall().once();
+        replay(entityManager, query, ocspResponseGeneratorSession);
+        cacheInvalidationSession.pollInvalidationLog();
+        verify(entityManager, query, ocspResponseGeneratorSession);
+        assertEquals(Arrays.asList("3", "4"), invalidated);
+    }
+
+    @Test
+    public void testPollWithoutEntries() {
+        expectPoll(Collections.<CacheInvalidationData>emptyList());
+        replay(entityManager, query, ocspResponseGeneratorSession);
+        cacheInvalidationSession.pollInvalidationLog();
+        verify(entityManager, query, ocspResponseGeneratorSession);
+        assertEquals(0, invalidated.size());
+    }
+}
@@ -60,7 +60,9 @@ import org.cesecore.certificates.ca.internal.CaIDCacheBean;
 import org.cesecore.certificates.certificate.CertificateWrapper;
 import org.cesecore.certificates.certificate.certextensions.AvailableCustomCertificateExtensionsConfiguration;
 import org.cesecore.config.CesecoreConfiguration;
+import org.cesecore.configuration.CacheInvalidationSessionLocal;
 import org.cesecore.configuration.GlobalConfigurationSessionLocal;
+import org.cesecore.internal.CacheInvalidationListeners;
 import org.cesecore.internal.InternalResources;
 import org.cesecore.internal.UpgradeableDataHashMap;
 import org.cesecore.jndi.JndiConstants;
@@ -98,6 +100,8 @@ public class CaSessionBean implements CaSessionLocal, CaSessionRemote {
     @EJB
     private AuthorizationSessionLocal authorizationSession;
     @EJB
+    private CacheInvalidationSessionLocal cacheInvalidationSession;
+    @EJB
     private CryptoTokenManagementSessionLocal cryptoTokenManagementSession;
     @EJB
     private CryptoTokenSessionLocal cryptoTokenSession;
@@ -490,6 +494,7 @@ public class CaSessionBean implements CaSessionLocal, CaSessionRemote {
             entityManager.remove(cadata);
             // Invalidate CA cache to refresh information
             CaCache.INSTANCE.removeEntry(caid);
+            cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.CA, caid);
             caIDCache.forceCacheExpiration(); // Clear ID cache so this one will be reloaded as well.
             final String detailsMsg = intres.getLocalizedMessage("caadmin.removedca", Integer.valueOf(caid), cadata.getName());
             logSession.log(EventTypes.CA_DELETION, EventStatus.SUCCESS, ModuleTypes.CA, ServiceTypes.CORE,admin.toString(), String.valueOf(caid), null, null, detailsMsg);
@@ -512,6 +517,7 @@ public class CaSessionBean implements CaSessionLocal, CaSessionRemote {
             // Invalidate CA cache to refresh information
             int caid = cadata.getCaId().intValue();
             CaCache.INSTANCE.removeEntry(caid);
+            cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.CA, caid);
             caIDCache.forceCacheExpiration(); // Clear ID cache so this one will be reloaded as well.
             final String detailsMsg = intres.getLocalizedMessage("caadmin.renamedca", oldname, cadata.getCaId(), newname);
             logSession.log(EventTypes.CA_RENAMING, EventStatus.SUCCESS, ModuleTypes.CA, ServiceTypes.CORE,admin.toString(), String.valueOf(caid), null, null, detailsMsg);
@@ -861,6 +867,7 @@ public class CaSessionBean implements CaSessionLocal, CaSessionRemote {
         caData = entityManager.merge(caData);
         // Since loading a CA is quite complex (populating CAInfo etc), we simple purge the cache here
         CaCache.INSTANCE.removeEntry(caId);
+        cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.CA, caId);
         caIDCache.forceCacheExpiration();
         return caId;
     }
@@ -67,6 +67,11 @@ public enum CaCache implements CommonCache<CA> {
     public void removeEntry(int caId) {
         caCache.removeEntry(caId);
     }
+
+    @Override
+    public void markStale(int caId) {
+        caCache.markStale(caId);
+    }
     
     @Override
     public String getName(int id) {
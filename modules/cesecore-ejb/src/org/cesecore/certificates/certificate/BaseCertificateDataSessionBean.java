@@ -21,8 +21,8 @@ import javax.persistence.Query;
 
 import org.apache.log4j.Logger;
 import org.cesecore.certificates.crl.RevokedCertInfo;
+import org.cesecore.certificates.crl.RevokedCertInfoCollection;
 import org.cesecore.config.CesecoreConfiguration;
-import org.cesecore.util.CompressedCollection;
 import org.cesecore.util.ValueExtractor;
 
 /**
@@ -84,7 +84,7 @@ public abstract class BaseCertificateDataSessionBean {
         final int maxResults = CesecoreConfiguration.getDatabaseRevokedCertInfoFetchSize();
         query.setMaxResults(maxResults);
         int firstResult = 0;
-        final CompressedCollection<RevokedCertInfo> revokedCertInfos = new CompressedCollection<>();
+        final RevokedCertInfoCollection revokedCertInfos = new RevokedCertInfoCollection();
         while (true) {
             query.setFirstResult(firstResult);
             @SuppressWarnings("unchecked")
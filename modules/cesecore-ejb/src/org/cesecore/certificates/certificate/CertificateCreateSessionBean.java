@@ -99,6 +99,7 @@ import org.cesecore.keys.util.KeyTools;
 import org.cesecore.keys.validation.IssuancePhase;
 import org.cesecore.keys.validation.KeyValidatorSessionLocal;
 import org.cesecore.keys.validation.ValidationException;
+import org.cesecore.metrics.IssuanceStage;
 import org.cesecore.util.Base64;
 import org.cesecore.util.CertTools;
 import org.cesecore.util.CryptoProviderTools;
@@ -329,14 +330,18 @@ public class CertificateCreateSessionBean implements CertificateCreateSessionLoc
         if (log.isTraceEnabled()) {
             log.trace(">createCertificate(EndEntityInformation, CA, X500Name, pk, ku, notBefore, notAfter, extesions, sequence)");
         }
+        final long createStart = System.nanoTime();
         
         // Even though CA is passed as an argument to this method, we do check authorization on that.
         // To make sure we properly log authorization checks needed to issue a cert.
         // We need to check that admin have rights to create certificates, and have access to the CA
+        long stageStart = System.nanoTime();
         if (!authorizationSession.isAuthorized(admin, StandardRules.CREATECERT.resource(), StandardRules.CAACCESS.resource() + ca.getCAId())) {
             final String msg = intres.getLocalizedMessage("createcert.notauthorized", admin.toString(), ca.getCAId());
+            IssuanceStage.countFailure();
             throw new AuthorizationDeniedException(msg);
         }
+        IssuanceStage.AUTHORIZATION.recordSince(stageStart);
 
         // Audit log that we received the request
         final Map<String, Object> details = new LinkedHashMap<String, Object>();
@@ -352,34 +357,49 @@ public class CertificateCreateSessionBean implements CertificateCreateSessionLoc
         details.put("notafter", notAfter);
         details.put("sequence", sequence);
         details.put("publickey", new String(Base64.encode(pk.getEncoded(), false)));
+        stageStart = System.nanoTime();
         logSession.log(EventTypes.CERT_REQUEST, EventStatus.SUCCESS, ModuleTypes.CERTIFICATE, ServiceTypes.CORE, admin.toString(),
                 String.valueOf(ca.getCAId()), null, endEntityInformation.getUsername(), details);
+        IssuanceStage.AUDIT_LOG.recordSince(stageStart);
         
         // Retrieve the certificate profile this user should have, checking for authorization to the profile
         final int certProfileId = endEntityInformation.getCertificateProfileId();
-        final CertificateProfile certProfile = getCertificateProfile(certProfileId, ca.getCAId());
+        stageStart = System.nanoTime();
+        final CertificateProfile certProfile;
+        try {
+            certProfile = getCertificateProfile(certProfileId, ca.getCAId());
+        } catch (AuthorizationDeniedException e) {
+            IssuanceStage.countFailure();
+            throw e;
+        }
+        IssuanceStage.CERTIFICATE_PROFILE.recordSince(stageStart);
         
         final ExtendedInformation ei = endEntityInformation.getExtendedInformation();
         
         // Validate ValidatorPhase.DATA_VALIDATION
+        stageStart = System.nanoTime();
         try {
             // Which public key to validate follows the criteria established in RequestAndPublicKeySelector, which is the same as used in the CA.
             final RequestAndPublicKeySelector pkSelector = new RequestAndPublicKeySelector(request, pk, ei);
             keyValidatorSession.validatePublicKey(admin, ca, endEntityInformation, certProfile, notBefore, notAfter,
                     pkSelector.getPublicKey());
         } catch(ValidationException e) {
+            IssuanceStage.countFailure();
             throw new CertificateCreateException(ErrorCode.ILLEGAL_KEY, e);
         }
         try {
             keyValidatorSession.validateDnsNames(admin, ca, endEntityInformation, request);
         } catch (ValidationException e) {
+            IssuanceStage.countFailure();
             // Re-factor: ErrorCode could be specified more precisely.
             throw new CertificateCreateException(ErrorCode.NOT_AUTHORIZED, e.getLocalizedMessage());
         }
+        IssuanceStage.VALIDATION.recordSince(stageStart);
         
         // Set up audit logging of CT pre-certificate
         addCTLoggingCallback(certGenParams, admin.toString());
 
+        boolean issued = false;
         try {
             CertificateDataWrapper result = null;
             // If the user is of type USER_INVALID, it cannot have any other type (in the mask)
@@ -388,8 +408,10 @@ public class CertificateCreateSessionBean implements CertificateCreateSessionLoc
                 throw new CertificateCreateException(ErrorCode.INTERNAL_ERROR, msg);
             }
             
+            stageStart = System.nanoTime();
             assertSubjectEnforcements(ca.getCAInfo(), endEntityInformation);
             assertSubjectKeyIdEnforcements(ca.getCAInfo(), endEntityInformation, pk);
+            IssuanceStage.KEY_CHECK.recordSince(stageStart);
     
             //certProfile.verifyKey(pk); Verifying the public key against certificate profile is going to be executed in *CA.generateCertificate
 
@@ -464,11 +486,13 @@ public class CertificateCreateSessionBean implements CertificateCreateSessionLoc
                 
                 // Validate ValidatorPhase.CERTIFICATE_VALIDATION (X.509 CA only)
                 if (CAInfo.CATYPE_X509 == ca.getCAType()) {
+                    stageStart = System.nanoTime();
                     try {
                         keyValidatorSession.validateCertificate(admin, IssuancePhase.CERTIFICATE_VALIDATION, ca, endEntityInformation, (X509Certificate) cert);
                     } catch (ValidationException e) {
                         throw new CertificateCreateException(ErrorCode.INVALID_CERTIFICATE, e);
                     }
+                    IssuanceStage.VALIDATION.recordSince(stageStart);
                 }
                 
                 cafingerprint = CertTools.getFingerprintAsString(ca.getCACertificate());
@@ -501,8 +525,10 @@ public class CertificateCreateSessionBean implements CertificateCreateSessionLoc
                     
                     // Authorization was already checked by since this is a private method, the CA parameter should
                     // not be possible to get without authorization
+                    stageStart = System.nanoTime();
                     result = certificateStoreSession.storeCertificateNoAuth(admin, cert, endEntityInformation.getUsername(), cafingerprint, certificateRequest, 
                             CertificateConstants.CERT_ACTIVE, certProfile.getType(), certProfileId, endEntityInformation.getEndEntityProfileId(), tag, updateTime);
+                    IssuanceStage.STORE.recordSince(stageStart);
                     storeEx = null;
                     break;
                 } catch (CertificateSerialNumberException e) {
@@ -558,8 +584,12 @@ public class CertificateCreateSessionBean implements CertificateCreateSessionLoc
                 //Should not be able to happen at this point
                 throw new IllegalStateException();
             }
+            stageStart = System.nanoTime();
             logSession.log(EventTypes.CERT_CREATION, EventStatus.SUCCESS, ModuleTypes.CERTIFICATE, ServiceTypes.CORE, admin.toString(), String.valueOf(ca.getCAId()), serialNo, endEntityInformation.getUsername(),
             		issuedetails);
+            IssuanceStage.AUDIT_LOG.recordSince(stageStart);
+            IssuanceStage.CREATE_CERTIFICATE.recordSince(createStart);
+            issued = true;
 
             if (log.isTraceEnabled()) {
                 log.trace("<createCertificate(EndEntityInformation, CA, X500Name, pk, ku, notBefore, notAfter, extesions, sequence)");
@@ -615,6 +645,10 @@ public class CertificateCreateSessionBean implements CertificateCreateSessionLoc
             auditFailure(admin, e, null, "<createCertificate(EndEntityInformation, CA, X500Name, pk, ku, notBefore, notAfter, extesions, sequence)", ca.getCAId(), endEntityInformation.getUsername());
             // Rollback
             throw new CertificateCreateException(e);
+        } finally {
+            if (!issued) {
+                IssuanceStage.countFailure();
+            }
         }
     }
 
@@ -253,6 +253,16 @@ public class CertificateDataSessionBean extends BaseCertificateDataSessionBean i
         return query.getResultList();
     }
 
+    @Override
+    public List<CertificateData> findNextBatchByUpdateTime(final long updateTime, final String fingerprint, final int maxResults) {
+        final TypedQuery<CertificateData> query = entityManager.createQuery("SELECT a FROM CertificateData a WHERE a.updateTime>:updateTime"
+                + " OR (a.updateTime=:updateTime AND a.fingerprint>:fingerprint) ORDER BY a.updateTime ASC, a.fingerprint ASC", CertificateData.class);
+        query.setParameter("updateTime", updateTime);
+        query.setParameter("fingerprint", fingerprint);
+        query.setMaxResults(maxResults);
+        return query.getResultList();
+    }
+
     @Override
     public List<CertificateData> findByExpireDateWithLimitAndOffset(long expireDate, int maxNumberOfResults, int offset) {
         final long now = System.currentTimeMillis();
@@ -267,6 +277,23 @@ public class CertificateDataSessionBean extends BaseCertificateDataSessionBean i
         return query.getResultList();
     }
 
+    @Override
+    public List<CertificateData> findNextBatchByExpireDate(final long expireDate, final long afterExpireDate, final String afterFingerprint, final int maxResults) {
+        final long now = System.currentTimeMillis();
+        final TypedQuery<CertificateData> query = entityManager.createQuery("SELECT a FROM CertificateData a WHERE a.expireDate<:expireDate"
+                + " AND a.expireDate>=:now AND (a.status=:status1 OR a.status=:status2)"
+                + " AND (a.expireDate>:afterExpireDate OR (a.expireDate=:afterExpireDate AND a.fingerprint>:afterFingerprint))"
+                + " ORDER BY a.expireDate ASC, a.fingerprint ASC", CertificateData.class);
+        query.setParameter("expireDate", expireDate);
+        query.setParameter("now", now);
+        query.setParameter("status1", CertificateConstants.CERT_ACTIVE);
+        query.setParameter("status2", CertificateConstants.CERT_NOTIFIEDABOUTEXPIRATION);
+        query.setParameter("afterExpireDate", afterExpireDate);
+        query.setParameter("afterFingerprint", afterFingerprint);
+        query.setMaxResults(maxResults);
+        return query.getResultList();
+    }
+
 
     @Override
     public int countByExpireDate(long expireDate) {
@@ -435,17 +462,30 @@ public class CertificateDataSessionBean extends BaseCertificateDataSessionBean i
     }
 
     @Override
-    @SuppressWarnings("unchecked")
     public List<Object[]> findExpirationInfo(final Collection<String> cas, final Collection<Integer> certificateProfiles,
             final long activeNotifiedExpireDateMin, final long activeNotifiedExpireDateMax, final long activeExpireDateMin) {
+        return findExpirationInfo(cas, certificateProfiles, activeNotifiedExpireDateMin, activeNotifiedExpireDateMax, activeExpireDateMin, null, 0);
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<Object[]> findExpirationInfo(final Collection<String> cas, final Collection<Integer> certificateProfiles,
+            final long activeNotifiedExpireDateMin, final long activeNotifiedExpireDateMax, final long activeExpireDateMin,
+            final String lastFingerprint, final int maxResults) {
         // We don't select the base64 certificate data here, because it may be a LONG data type which we can't simply select, or we don't want to read all the data.
+        final boolean paging = maxResults > 0 || lastFingerprint != null;
         final Query query = entityManager.createNativeQuery("SELECT DISTINCT fingerprint as fingerprint, username as username"
                 + " FROM CertificateData WHERE "
                 + "issuerDN IN (:cas) AND "
                 // If the list of certificate profiles is empty, ignore it as a parameter
                 + (!certificateProfiles.isEmpty() ? "certificateProfileId IN (:certificateProfiles) AND" : "")
                 + "(expireDate>:activeNotifiedExpireDateMin) AND " + "(expireDate<:activeNotifiedExpireDateMax) AND (status=:status1"
-                + " OR status=:status2) AND (expireDate>=:activeExpireDateMin OR " + "status=:status3)", "FingerprintUsernameSubset");
+                + " OR status=:status2) AND (expireDate>=:activeExpireDateMin OR " + "status=:status3)"
+                // When paging, continue after the last row of the previous page. Ordering by primary key makes this stable even if rows
+                // in the previous pages have had their status changed in the meantime. The first page has no lower bound, since Oracle
+                // treats an empty string as NULL, which no fingerprint is greater than.
+                + (lastFingerprint != null ? " AND fingerprint>:lastFingerprint" : "")
+                + (paging ? " ORDER BY fingerprint" : ""), "FingerprintUsernameSubset");
         query.setParameter("cas", cas);
         if(!certificateProfiles.isEmpty()) {
             query.setParameter("certificateProfiles", certificateProfiles);
@@ -456,10 +496,25 @@ public class CertificateDataSessionBean extends BaseCertificateDataSessionBean i
         query.setParameter("status2", CertificateConstants.CERT_NOTIFIEDABOUTEXPIRATION);
         query.setParameter("activeExpireDateMin", activeExpireDateMin);
         query.setParameter("status3", CertificateConstants.CERT_ACTIVE);
+        if (lastFingerprint != null) {
+            query.setParameter("lastFingerprint", lastFingerprint);
+        }
+        if (maxResults > 0) {
+            query.setMaxResults(maxResults);
+        }
         // How to debug log the SQL query:
         // log.debug("findExpirationInfo: "+query.unwrap(org.hibernate.Query.class).getQueryString());
         return query.getResultList();
     }
 
+    @Override
+    public List<CertificateData> findByFingerprints(final Collection<String> fingerprints) {
+        if (fingerprints.isEmpty()) {
+            return new LinkedList<>();
+        }
+        final TypedQuery<CertificateData> query = entityManager.createQuery("SELECT a FROM CertificateData a WHERE a.fingerprint IN (:fingerprints)", CertificateData.class);
+        query.setParameter("fingerprints", fingerprints);
+        return query.getResultList();
+    }
 
 }
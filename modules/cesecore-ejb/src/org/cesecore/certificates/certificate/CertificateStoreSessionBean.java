@@ -497,6 +497,34 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
         return ret;
     }
 
+    @Override
+    public List<CertificateDataWrapper> getCertificateDatasByUpdateTime(final long updateTime, final String fingerprint, final int maxResults) {
+        final List<CertificateDataWrapper> ret = new ArrayList<>();
+        for (final CertificateData certificateData : certificateDataSession.findNextBatchByUpdateTime(updateTime, fingerprint, maxResults)) {
+            if (CesecoreConfiguration.useBase64CertTable()) {
+                ret.add(new CertificateDataWrapper(certificateData, Base64CertData.findByFingerprint(entityManager, certificateData.getFingerprint())));
+            } else {
+                ret.add(new CertificateDataWrapper(certificateData, null));
+            }
+        }
+        return ret;
+    }
+
+    @Override
+    public List<CertificateDataWrapper> getCertificateDatasByExpireDate(final Date expirationDate, final long afterExpireDate, final String afterFingerprint,
+            final int maxResults) {
+        final List<CertificateDataWrapper> ret = new ArrayList<>();
+        for (final CertificateData certificateData : certificateDataSession.findNextBatchByExpireDate(expirationDate.getTime(), afterExpireDate,
+                afterFingerprint, maxResults)) {
+            if (CesecoreConfiguration.useBase64CertTable()) {
+                ret.add(new CertificateDataWrapper(certificateData, Base64CertData.findByFingerprint(entityManager, certificateData.getFingerprint())));
+            } else {
+                ret.add(new CertificateDataWrapper(certificateData, null));
+            }
+        }
+        return ret;
+    }
+
     @Override
     public X509Certificate findLatestX509CertificateBySubject(String subjectDN) {
         return findLatestX509CertificateBySubject(subjectDN, null, false);
@@ -1284,6 +1312,13 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
                 activeExpireDateMin);
     }
 
+    @Override
+    public List<Object[]> findExpirationInfo(Collection<String> cas, Collection<Integer> certificateProfiles, long activeNotifiedExpireDateMin,
+            long activeNotifiedExpireDateMax, long activeExpireDateMin, String lastFingerprint, int maxResults) {
+        return certificateDataSession.findExpirationInfo(cas, certificateProfiles, activeNotifiedExpireDateMin, activeNotifiedExpireDateMax,
+                activeExpireDateMin, lastFingerprint, maxResults);
+    }
+
     private void changeStatus(AuthenticationToken admin, CertificateData certificateData, int status) throws AuthorizationDeniedException {
         if (log.isDebugEnabled()) {
             log.debug("Set status " + status + " for certificate with fp: " + certificateData.getFingerprint());
@@ -1328,6 +1363,27 @@ public class CertificateStoreSessionBean implements CertificateStoreSessionRemot
         return (certificateData != null);
     }
 
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public int setStatus(AuthenticationToken admin, Collection<String> fingerprints, int status) throws IllegalArgumentException, AuthorizationDeniedException {
+        if (status == CertificateConstants.CERT_REVOKED || status == CertificateConstants.CERT_ACTIVE) {
+            final String msg = INTRES.getLocalizedMessage("store.errorsetstatusargument", fingerprints, status);
+            throw new IllegalArgumentException(msg);
+        }
+        if (fingerprints.isEmpty()) {
+            return 0;
+        }
+        // Load all rows with one query, instead of one lookup per certificate
+        final List<CertificateData> certificateDatas = certificateDataSession.findByFingerprints(fingerprints);
+        for (final CertificateData certificateData : certificateDatas) {
+            changeStatus(admin, certificateData, status);
+        }
+        if (log.isDebugEnabled() && certificateDatas.size() != fingerprints.size()) {
+            log.debug("Set status " + status + " for " + certificateDatas.size() + " of " + fingerprints.size() + " certificates, the rest were not found.");
+        }
+        return certificateDatas.size();
+    }
+
     @Override
     @TransactionAttribute(TransactionAttributeType.REQUIRED)
     public void setRolloverDoneStatus(AuthenticationToken admin, String fingerprint) throws IllegalArgumentException, AuthorizationDeniedException {
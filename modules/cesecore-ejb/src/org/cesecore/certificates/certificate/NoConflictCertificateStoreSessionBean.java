@@ -205,7 +205,13 @@ public class NoConflictCertificateStoreSessionBean implements NoConflictCertific
         if (log.isDebugEnabled()) {
             log.debug("listRevokedCertInfo: Got " + revokedInCertData.size() + " entries from CertificateData and " + revokedInNoConflictData.size() + " entries from NoConflictCertificateData");
         }
-        return RevokedCertInfo.mergeByDateAndStatus(revokedInCertData, revokedInNoConflictData, lastbasecrldate);
+        final Collection<RevokedCertInfo> merged = RevokedCertInfo.mergeByDateAndStatus(revokedInCertData, revokedInNoConflictData, lastbasecrldate);
+        // Release the resources, e.g. temporary files, of the collections that are not returned
+        if (merged != revokedInCertData) {
+            revokedInCertData.clear();
+        }
+        revokedInNoConflictData.clear();
+        return merged;
     }
     
     /**
@@ -25,7 +25,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
+import javax.annotation.Resource;
 import javax.ejb.EJB;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
@@ -45,6 +47,8 @@ import org.cesecore.authorization.control.StandardRules;
 import org.cesecore.certificates.ca.CaSessionLocal;
 import org.cesecore.certificates.certificate.CertificateConstants;
 import org.cesecore.config.CesecoreConfiguration;
+import org.cesecore.configuration.CacheInvalidationSessionLocal;
+import org.cesecore.internal.CacheInvalidationListeners;
 import org.cesecore.internal.InternalResources;
 import org.cesecore.jndi.JndiConstants;
 import org.cesecore.util.ProfileID;
@@ -66,12 +70,16 @@ public class CertificateProfileSessionBean implements CertificateProfileSessionL
 
     @PersistenceContext(unitName = CesecoreConfiguration.PERSISTENCE_UNIT)
     private EntityManager entityManager;
+    @Resource
+    private SessionContext sessionContext;
 
     @EJB
     private CaSessionLocal caSession;
     @EJB
     private AuthorizationSessionLocal authorizationSession;
     @EJB
+    private CacheInvalidationSessionLocal cacheInvalidationSession;
+    @EJB
     private SecurityEventsLoggerSessionLocal logSession;
 
     @Override
@@ -85,6 +93,39 @@ public class CertificateProfileSessionBean implements CertificateProfileSessionL
     @TransactionAttribute(TransactionAttributeType.REQUIRED)
     public int addCertificateProfile(final AuthenticationToken admin, final int id, final String name, final CertificateProfile profile)
             throws CertificateProfileExistsException, AuthorizationDeniedException {
+        addCertificateProfileNoFlushCache(admin, id, name, profile);
+        flushProfileCache();
+        cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.CERTIFICATEPROFILE, null);
+        return id;
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    public void importCertificateProfiles(final AuthenticationToken admin, final Map<Integer, String> idToNameMap,
+            final Map<Integer, CertificateProfile> profiles) throws CertificateProfileExistsException, AuthorizationDeniedException {
+        try {
+            for (final Entry<Integer, CertificateProfile> entry : profiles.entrySet()) {
+                final int id = entry.getKey();
+                final String name = idToNameMap.get(entry.getKey());
+                final CertificateProfileData existing = CertificateProfileData.findByProfileName(entityManager, name);
+                if (existing != null && existing.getId().intValue() == id) {
+                    internalChangeCertificateProfileNoFlushCache(admin, name, entry.getValue());
+                } else {
+                    addCertificateProfileNoFlushCache(admin, id, name, entry.getValue());
+                }
+            }
+        } catch (CertificateProfileExistsException e) {
+            sessionContext.setRollbackOnly(); // This is an application exception so it wont trigger a roll-back automatically
+            throw e;
+        }
+        // Reload the cache once for the whole batch, since each reload reads all profiles from the database
+        flushProfileCache();
+        cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.CERTIFICATEPROFILE, null);
+    }
+
+    /** Persists a new profile, and leaves it to the caller to flush the profile cache */
+    private void addCertificateProfileNoFlushCache(final AuthenticationToken admin, final int id, final String name, final CertificateProfile profile)
+            throws CertificateProfileExistsException, AuthorizationDeniedException {
         if (isCertificateProfileNameFixed(name)) {
             final String msg = INTRES.getLocalizedMessage("store.errorcertprofilefixed", name);
             LOG.info(msg);
@@ -107,13 +148,11 @@ public class CertificateProfileSessionBean implements CertificateProfileSessionL
         if (isFreeCertificateProfileId(id)) {
             if (CertificateProfileData.findByProfileName(entityManager, name) == null) {
                 entityManager.persist(new CertificateProfileData(Integer.valueOf(id), name, profile));
-                flushProfileCache();
                 final String msg = INTRES.getLocalizedMessage("store.addedcertprofile", name);
                 Map<String, Object> details = new LinkedHashMap<String, Object>();
                 details.put("msg", msg);
                 logSession.log(EventTypes.CERTPROFILE_CREATION, EventStatus.SUCCESS, ModuleTypes.CERTIFICATEPROFILE, ServiceTypes.CORE,
                         admin.toString(), null, null, null, details);
-                return id;
             } else {
                 final String msg = INTRES.getLocalizedMessage("store.errorcertprofileexists", name);
                 Map<String, Object> details = new LinkedHashMap<String, Object>();
@@ -132,6 +171,7 @@ public class CertificateProfileSessionBean implements CertificateProfileSessionL
             throws AuthorizationDeniedException {
         internalChangeCertificateProfileNoFlushCache(admin, name, profile);
         flushProfileCache();
+        cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.CERTIFICATEPROFILE, null);
     }
 
     @Override
@@ -211,6 +251,7 @@ public class CertificateProfileSessionBean implements CertificateProfileSessionL
             if (CertificateProfileData.findByProfileName(entityManager, newname) == null) {
                 entityManager.persist(new CertificateProfileData(findFreeCertificateProfileId(), newname, profile));
                 flushProfileCache();
+                cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.CERTIFICATEPROFILE, null);
                 final String msg = INTRES.getLocalizedMessage("store.addedprofilewithtempl", newname, orgname);
                 Map<String, Object> details = new LinkedHashMap<String, Object>();
                 details.put("msg", msg);
@@ -426,6 +467,7 @@ public class CertificateProfileSessionBean implements CertificateProfileSessionL
 
                 pdl.setCertificateProfileName(newname);
                 flushProfileCache();
+                cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.CERTIFICATEPROFILE, null);
                 final String msg = INTRES.getLocalizedMessage("store.renamedprofile", oldname, newname);
                 Map<String, Object> details = new LinkedHashMap<String, Object>();
                 details.put("msg", msg);
@@ -452,6 +494,7 @@ public class CertificateProfileSessionBean implements CertificateProfileSessionL
 
             entityManager.remove(pdl);
             flushProfileCache();
+            cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.CERTIFICATEPROFILE, null);
             final String msg = INTRES.getLocalizedMessage("store.removedprofile", name);
             Map<String, Object> details = new LinkedHashMap<String, Object>();
             details.put("msg", msg);
@@ -35,6 +35,8 @@ import org.cesecore.authorization.AuthorizationDeniedException;
 import org.cesecore.authorization.AuthorizationSessionLocal;
 import org.cesecore.authorization.control.StandardRules;
 import org.cesecore.config.CesecoreConfiguration;
+import org.cesecore.configuration.CacheInvalidationSessionLocal;
+import org.cesecore.internal.CacheInvalidationListeners;
 import org.cesecore.internal.InternalResources;
 import org.cesecore.jndi.JndiConstants;
 import org.cesecore.util.CertTools;
@@ -61,6 +63,8 @@ public class CrlStoreSessionBean implements CrlStoreSessionLocal, CrlStoreSessio
     private AuthorizationSessionLocal authorizationSession;
     @EJB
     private SecurityEventsLoggerSessionLocal logSession;
+    @EJB
+    private CacheInvalidationSessionLocal cacheInvalidationSession;
 
     @Override
     public void storeCRL(AuthenticationToken admin, byte[] incrl, String cafp, int number, String issuerDN, Date thisUpdate, Date nextUpdate,
@@ -87,6 +91,9 @@ public class CrlStoreSessionBean implements CrlStoreSessionLocal, CrlStoreSessio
             Map<String, Object> details = new LinkedHashMap<String, Object>();
             details.put("msg", msg);
             logSession.log(EventTypes.CRL_STORED, EventStatus.SUCCESS, ModuleTypes.CRL, ServiceTypes.CORE, admin.toString(), String.valueOf(caid), null, null, details);
+            // Let the CRL store caches on this node, and on the other nodes in the cluster, pick up the new CRL
+            CacheInvalidationListeners.INSTANCE.invalidate(CacheInvalidationListeners.CRL, issuerDN);
+            cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.CRL, issuerDN);
         } catch (Exception e) {
             String msg = intres.getLocalizedMessage("store.errorstorecrl", Integer.valueOf(number), issuerDN);
             log.error(msg, e);
@@ -38,6 +38,7 @@ import java.security.cert.CertificateExpiredException;
 import java.security.cert.CertificateNotYetValidException;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -195,6 +196,8 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
     private static final InternalResources intres = InternalResources.getInstance();
     
     private static volatile ExecutorService service = Executors.newCachedThreadPool();
+    /** Time of the last reload of the OcspSigningCache that rebuilt all entries */
+    private static volatile long lastFullOcspSigningCacheReload = 0;
     
     @Resource
     private SessionContext sessionContext;
@@ -264,9 +267,34 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
     @Override
     @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public void reloadOcspSigningCache() {
+        reloadOcspSigningCache(true);
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void refreshOcspSigningCache() {
+        reloadOcspSigningCache(false);
+    }
+
+    /**
+     * Reloads the OcspSigningCache from the CAs and OcspKeyBindings.
+     * 
+     * The entries of a CA or an OcspKeyBinding are kept from the previous reload if the data they were created from is unchanged,
+     * which is detected from the CA update time, the revocation status of the CA and OCSP signing certificates, and from the cached
+     * OcspKeyBinding and CryptoToken objects, that are replaced when their database rows change. Changes in the HSM, such as a key
+     * that is replaced under the same alias, are not detected this way, so all entries are rebuilt at least every
+     * {@link OcspConfiguration#getSigningCertsFullReloadTimeInMilliseconds()}.
+     * 
+     * @param fullReload true to rebuild all entries
+     */
+    private void reloadOcspSigningCache(boolean fullReload) {
     	if (log.isTraceEnabled()) {
-    		log.trace(">reloadOcspSigningCache");
+    		log.trace(">reloadOcspSigningCache: " + fullReload);
     	}
+        final long startTime = System.currentTimeMillis();
+        if (startTime - lastFullOcspSigningCacheReload >= OcspConfiguration.getSigningCertsFullReloadTimeInMilliseconds()) {
+            fullReload = true;
+        }
         // Cancel any waiting timers of this type
         cancelTimers(TIMERID_OCSPSIGNINGCACHE);
         try {      
@@ -275,8 +303,11 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                 log.debug(intres.getLocalizedMessage("ocsp.classnotfound", hardTokenClassName));
             }
             GlobalOcspConfiguration ocspConfiguration = (GlobalOcspConfiguration) globalConfigurationSession.getCachedConfiguration(GlobalOcspConfiguration.OCSP_CONFIGURATION_ID);
+            final ResponderIdType responderIdType = ocspConfiguration.getOcspResponderIdType();
             OcspSigningCache.INSTANCE.stagingStart();
             try {
+                // Changes to any CA may change the CA certificate chains of the OcspKeyBindings
+                long caDigest = 0;
                 // Populate OcspSigningCache
                 // Add all potential CA's as OCSP responders to the staging area
                 for (final Integer caId : caSession.getAllCaIds()) {
@@ -287,6 +318,12 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                         // Bravely ignore OCSP for CVC CAs
                         continue;
                     }
+                    final String sourceId = "ca:" + caId;
+                    final Date updateTime = caInfo.getUpdateTime();
+                    // Revocation of the CA certificate does not change the CA, so it is checked on every reload
+                    final Object caCertificateStatusVersion = getRevocationStatusVersion(caInfo.getCertificateChain());
+                    caDigest = 31 * (31 * (31 * (31 * caDigest + caId.intValue()) + (updateTime == null ? 0 : updateTime.getTime()))
+                            + caInfo.getStatus()) + (caCertificateStatusVersion == null ? 0 : caCertificateStatusVersion.hashCode());
                     if (caInfo.getStatus() == CAConstants.CA_ACTIVE) {
                         //Cache active CAs as signers
                         if (log.isDebugEnabled()) {
@@ -309,6 +346,11 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                                     + " could not be used. CryptoToken is off-line for CA with id " + caId + ": " + e.getMessage());
                             continue;
                         }
+                        final Object version = Arrays.asList(updateTime, Integer.valueOf(caInfo.getStatus()), caCertificateStatusVersion, cryptoToken,
+                                Integer.valueOf(cryptoToken.getTokenStatus()), keyPairAlias, responderIdType);
+                        if (!fullReload && OcspSigningCache.INSTANCE.stagingKeep(sourceId, version)) {
+                            continue;
+                        }
                         final PrivateKey privateKey;
                         try {
                             privateKey = cryptoToken.getPrivateKey(keyPairAlias);
@@ -325,8 +367,8 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                         if (caCertificateChain.size() > 0) {
                             X509Certificate caCertificate = caCertificateChain.get(0);
                             final CertificateStatus caCertificateStatus = getRevocationStatusWhenCasPrivateKeyIsCompromised(caCertificate, false);
-                            OcspSigningCache.INSTANCE.stagingAdd(new OcspSigningCacheEntry(caCertificate, caCertificateStatus, caCertificateChain,
-                                    null, privateKey, signatureProviderName, null, ocspConfiguration.getOcspResponderIdType()));
+                            OcspSigningCache.INSTANCE.stagingAdd(sourceId, version, new OcspSigningCacheEntry(caCertificate, caCertificateStatus,
+                                    caCertificateChain, null, privateKey, signatureProviderName, null, responderIdType));
                             // Check if CA cert has been revoked (only key compromise as returned above). Always make this check, even if this CA has an OCSP signing certificate, because
                             // signing will still fail even if the signing cert is valid. Shouldn't happen, but log it just in case.
                             if (caCertificateStatus.equals(CertificateStatus.REVOKED)) {
@@ -346,6 +388,11 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                         }
                     } else if (caInfo.getStatus() == CAConstants.CA_EXTERNAL) {
                         // If set, all external CA's without a keybinding (set below) will be responded to by the default responder. 
+                        final Object version = Arrays.asList(updateTime, Integer.valueOf(caInfo.getStatus()), caCertificateStatusVersion,
+                                responderIdType);
+                        if (!fullReload && OcspSigningCache.INSTANCE.stagingKeep(sourceId, version)) {
+                            continue;
+                        }
                         for (final Certificate certificate : caInfo.getCertificateChain()) {
                             caCertificateChain.add((X509Certificate) certificate);
                         }
@@ -365,8 +412,8 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                                     + CertTools.getNotAfter(caCertificateChain.get(0)) + ".");
                         }
                         //Add an entry with just a chain and nothing else
-                        OcspSigningCache.INSTANCE.stagingAdd(new OcspSigningCacheEntry(caCertificateChain.get(0), caCertificateStatus, null, null,
-                                null, null, null, ocspConfiguration.getOcspResponderIdType()));
+                        OcspSigningCache.INSTANCE.stagingAdd(sourceId, version, new OcspSigningCacheEntry(caCertificateChain.get(0),
+                                caCertificateStatus, null, null, null, null, null, responderIdType));
 
                     }
                 }
@@ -382,6 +429,20 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                         }
                         continue;
                     }
+                    final String sourceId = "keybinding:" + internalKeyBindingId;
+                    // The cached OcspKeyBinding and CryptoToken objects are replaced when they are changed in the database
+                    final CryptoToken cryptoToken = cryptoTokenSession.getCryptoToken(ocspKeyBinding.getCryptoTokenId());
+                    final CertificateInfo ocspSigningCertificateInfo = certificateStoreSession.getCertificateInfo(ocspKeyBinding.getCertificateId());
+                    final Object ocspSigningCertificateStatusVersion = ocspSigningCertificateInfo == null ? null
+                            : Arrays.asList(Integer.valueOf(ocspSigningCertificateInfo.getStatus()),
+                                    Integer.valueOf(ocspSigningCertificateInfo.getRevocationReason()),
+                                    ocspSigningCertificateInfo.getRevocationDate());
+                    final Object version = Arrays.asList(ocspKeyBinding, cryptoToken,
+                            cryptoToken == null ? null : Integer.valueOf(cryptoToken.getTokenStatus()), ocspSigningCertificateStatusVersion,
+                            Long.valueOf(caDigest));
+                    if (!fullReload && OcspSigningCache.INSTANCE.stagingKeep(sourceId, version)) {
+                        continue;
+                    }
                     final X509Certificate ocspSigningCertificate = (X509Certificate) certificateStoreSession.findCertificateByFingerprint(ocspKeyBinding.getCertificateId());
                     if (ocspSigningCertificate == null) {
                         log.warn("OCSP signing certificate with referenced fingerprint " + ocspKeyBinding.getCertificateId() +
@@ -404,13 +465,19 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                     if (ocspSigningCacheEntry == null) {
                         continue;
                     } else {
-                        OcspSigningCache.INSTANCE.stagingAdd(ocspSigningCacheEntry);
+                        OcspSigningCache.INSTANCE.stagingAdd(sourceId, version, ocspSigningCacheEntry);
                     }
                 }
                 OcspSigningCache.INSTANCE.stagingCommit(ocspConfiguration.getOcspDefaultResponderReference());
+                if (fullReload) {
+                    lastFullOcspSigningCacheReload = startTime;
+                }
             } finally {
                 OcspSigningCache.INSTANCE.stagingRelease();
             }
+            if (log.isDebugEnabled()) {
+                log.debug((fullReload ? "Full" : "Incremental") + " reload of OcspSigningCache took " + (System.currentTimeMillis() - startTime) + " ms.");
+            }
         } finally {
             // Schedule a new timer of this type
             addTimer(OcspConfiguration.getSigningCertsValidTimeInMilliseconds(), TIMERID_OCSPSIGNINGCACHE);
@@ -462,6 +529,19 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                 signatureProviderName, ocspKeyBinding, respIdType);
     }
     
+    /**
+     * @param caCertificateChain the certificate chain of a CA, the CA certificate first
+     * @return an object that is equal for equal revocation status of the CA certificate, or null if the chain is empty
+     */
+    private Object getRevocationStatusVersion(final List<Certificate> caCertificateChain) {
+        if (caCertificateChain == null || caCertificateChain.isEmpty()) {
+            return null;
+        }
+        final Certificate caCertificate = caCertificateChain.get(0);
+        final CertificateStatus status = certificateStoreSession.getStatus(CertTools.getIssuerDN(caCertificate), CertTools.getSerialNumber(caCertificate));
+        return Arrays.asList(status.toString(), Integer.valueOf(status.revocationReason), status.revocationDate);
+    }
+
     /** 
      * RFC 6960 Section 2.7 states that if it is known CA's private key has been compromised, it MAY return the "revoked"
      * state for all certificates issued by that CA.
@@ -994,8 +1074,8 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
         if (log.isTraceEnabled()) {
             log.trace(">timeoutHandler: " + timer.getInfo().toString());
         }
-        // reloadTokenAndChainCache cancels old timers and adds a new timer
-        reloadOcspSigningCache();
+        // reloadOcspSigningCache cancels old timers and adds a new timer. Only changed entries are reloaded, unless a full reload is due.
+        reloadOcspSigningCache(false);
         if (log.isTraceEnabled()) {
             log.trace("<timeoutHandler");
         }
@@ -1087,7 +1167,7 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
         }
         if (auditLogger.isEnabled()) {
             auditLogger.paramPut(PatternLogger.PROCESS_TIME, PatternLogger.PROCESS_TIME);
-            auditLogger.paramPut(AuditLogger.OCSPREQUEST, new String(Hex.encode(request)));
+            auditLogger.paramPut(AuditLogger.OCSPREQUEST, request);
         }
         OCSPReq req;
         long maxAge = OcspConfiguration.getMaxAge(CertificateProfileConstants.CERTPROFILE_NO_PROFILE);
@@ -1143,15 +1223,18 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
                     auditLogger.paramPut(AuditLogger.SERIAL_NOHEX, certId.getSerialNumber().toByteArray());
                     auditLogger.paramPut(AuditLogger.ISSUER_NAME_HASH, certId.getIssuerNameHash());
                 }
-                byte[] hashbytes = certId.getIssuerNameHash();
-                String hash = null;
-                if (hashbytes != null) {
-                    hash = new String(Hex.encode(hashbytes));
-                }
-                if (xForwardedFor==null) {
-                    log.info(intres.getLocalizedMessage("ocsp.inforeceivedrequest", certId.getSerialNumber().toString(16), hash, remoteAddress));
-                } else {
-                    log.info(intres.getLocalizedMessage("ocsp.inforeceivedrequestwxff", certId.getSerialNumber().toString(16), hash, remoteAddress, xForwardedFor));
+                // Formatting this message for every CertID is costly under high load, so only do it when someone will read it
+                if (log.isInfoEnabled()) {
+                    byte[] hashbytes = certId.getIssuerNameHash();
+                    String hash = null;
+                    if (hashbytes != null) {
+                        hash = new String(Hex.encode(hashbytes));
+                    }
+                    if (xForwardedFor==null) {
+                        log.info(intres.getLocalizedMessage("ocsp.inforeceivedrequest", certId.getSerialNumber().toString(16), hash, remoteAddress));
+                    } else {
+                        log.info(intres.getLocalizedMessage("ocsp.inforeceivedrequestwxff", certId.getSerialNumber().toString(16), hash, remoteAddress, xForwardedFor));
+                    }
                 }
                 // Locate the CA which gave out the certificate
                 ocspSigningCacheEntry = OcspSigningCache.INSTANCE.getEntry(certId);
@@ -1510,7 +1593,7 @@ public class OcspResponseGeneratorSessionBean implements OcspResponseGeneratorSe
         try {
             respBytes = ocspResponse.getEncoded();
             if (auditLogger.isEnabled()) {
-                auditLogger.paramPut(AuditLogger.OCSPRESPONSE, new String(Hex.encode(respBytes)));
+                auditLogger.paramPut(AuditLogger.OCSPRESPONSE, respBytes);
                 auditLogger.writeln();
                 auditLogger.flush();
             }
@@ -0,0 +1,198 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.configuration;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.Resource;
+import javax.ejb.EJB;
+import javax.ejb.SessionContext;
+import javax.ejb.Stateless;
+import javax.ejb.Timeout;
+import javax.ejb.Timer;
+import javax.ejb.TimerConfig;
+import javax.ejb.TimerService;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.Query;
+import javax.persistence.TypedQuery;
+
+import org.apache.log4j.Logger;
+import org.cesecore.certificates.ca.internal.CaCache;
+import org.cesecore.certificates.ocsp.OcspResponseGeneratorSessionLocal;
+import org.cesecore.config.CesecoreConfiguration;
+import org.cesecore.internal.CacheInvalidationListeners;
+import org.cesecore.keybind.InternalKeyBindingCache;
+import org.cesecore.keys.token.CryptoTokenCache;
+import org.cesecore.keys.validation.ValidatorCache;
+
+/**
+ * Bean to handle the CacheInvalidationData entity.
+ *
+ * Each node polls the log with a single action timer. Since a change can be committed some time after its entry was written, and the
+ * clocks of the nodes may differ slightly, each poll reads all entries written since somewhat before the previous poll and skips
+ * the ones that have already been processed.
+ *
+ * The OcspSigningCache is built from CAs, crypto tokens and internal key bindings, so it is refreshed after any of those have been
+ * invalidated. The refresh only rebuilds the entries whose source objects changed.
+ *
+ * @version $Id$
+ */
+@Stateless
+@TransactionAttribute(TransactionAttributeType.REQUIRED)
+public class CacheInvalidationSessionBean implements CacheInvalidationSessionLocal {
+
+    private static final Logger log = Logger.getLogger(CacheInvalidationSessionBean.class);
+
+    private static final String TIMER_NAME = "CacheInvalidationSessionTimer";
+    /** How far back before the previous poll each poll reads, to allow for slow commits and clock differences between nodes */
+    private static final long POLL_OVERLAP = 30000L;
+
+    /** Poll state shared by all bean instances. Only one timeout is active at a time. */
+    private static volatile long lastPollTime = -1;
+    private static volatile long lastCleanupTime = 0;
+    /** Ids of processed entries within the poll overlap, mapped to their time stamps */
+    private static final Map<String, Long> processedIds = new ConcurrentHashMap<>();
+
+    @PersistenceContext(unitName = CesecoreConfiguration.PERSISTENCE_UNIT)
+    private EntityManager entityManager;
+    @EJB
+    private OcspResponseGeneratorSessionLocal ocspResponseGeneratorSession;
+
+    @Resource
+    private SessionContext sessionContext;
+    private TimerService timerService; // When the sessionContext is injected, the timerService should be looked up.
+    private CacheInvalidationSessionLocal cacheInvalidationSession;
+
+    @PostConstruct
+    public void postConstruct() {
+        timerService = sessionContext.getTimerService();
+        cacheInvalidationSession = sessionContext.getBusinessObject(CacheInvalidationSessionLocal.class);
+    }
+
+    @Override
+    public void signalInvalidation(final String cacheName, final String entryKey) {
+        if (CesecoreConfiguration.getCacheInvalidationPollInterval() <= 0) {
+            return; // Nobody is listening, and the table might not even exist
+        }
+        final CacheInvalidationData data = new CacheInvalidationData(UUID.randomUUID().toString(), System.currentTimeMillis(), cacheName, entryKey,
+                CesecoreConfiguration.getNodeIdentifier());
+        entityManager.persist(data);
+        if (log.isDebugEnabled()) {
+            log.debug("Signaled invalidation of entry " + entryKey + " in cache '" + cacheName + "'.");
+        }
+    }
+
+    @Override
+    public void signalInvalidation(final String cacheName, final int id) {
+        signalInvalidation(cacheName, String.valueOf(id));
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    public void pollInvalidationLog() {
+        final long now = System.currentTimeMillis();
+        if (lastPollTime < 0) {
+            // Caches are populated from the database after startup, so older changes are of no interest
+            lastPollTime = now;
+        }
+        final long since = lastPollTime - POLL_OVERLAP;
+        final TypedQuery<CacheInvalidationData> query = entityManager.createQuery(
+                "SELECT a FROM CacheInvalidationData a WHERE a.timeStamp>=:since ORDER BY a.timeStamp", CacheInvalidationData.class);
+        query.setParameter("since", since);
+        final List<CacheInvalidationData> entries = query.getResultList();
+        final String nodeId = CesecoreConfiguration.getNodeIdentifier();
+        boolean refreshOcspSigningCache = false;
+        for (final CacheInvalidationData entry : entries) {
+            if (processedIds.put(entry.getId(), entry.getTimeStamp()) == null && !nodeId.equals(entry.getNodeId())) {
+                // The node that made the change has already updated its own cache
+                CacheInvalidationListeners.INSTANCE.invalidate(entry.getCacheName(), entry.getEntryKey());
+                refreshOcspSigningCache |= isOcspSigningSource(entry.getCacheName());
+            }
+        }
+        if (refreshOcspSigningCache) {
+            ocspResponseGeneratorSession.refreshOcspSigningCache();
+        }
+        for (final Iterator<Long> iterator = processedIds.values().iterator(); iterator.hasNext();) {
+            if (iterator.next() < since) {
+                iterator.remove();
+            }
+        }
+        lastPollTime = now;
+        final long retentionTime = CesecoreConfiguration.getCacheInvalidationRetentionTime();
+        if (lastCleanupTime + retentionTime < now) {
+            lastCleanupTime = now;
+            final int removed = cacheInvalidationSession.removeInvalidationLogEntries(now - Math.max(retentionTime, 2 * POLL_OVERLAP));
+            if (log.isDebugEnabled()) {
+                log.debug("Removed " + removed + " expired entries from the cache invalidation log.");
+            }
+        }
+    }
+
+    /** @return true if objects in the named cache are used to build the OcspSigningCache */
+    private boolean isOcspSigningSource(final String cacheName) {
+        return CacheInvalidationListeners.CA.equals(cacheName) || CacheInvalidationListeners.CRYPTOTOKEN.equals(cacheName)
+                || CacheInvalidationListeners.INTERNALKEYBINDING.equals(cacheName);
+    }
+
+    @Override
+    public int removeInvalidationLogEntries(final long olderThan) {
+        final Query query = entityManager.createQuery("DELETE FROM CacheInvalidationData a WHERE a.timeStamp<:olderThan");
+        query.setParameter("olderThan", olderThan);
+        return query.executeUpdate();
+    }
+
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void scheduleBackgroundPoll() {
+        CacheInvalidationListeners.INSTANCE.addListener(CacheInvalidationListeners.CA, CaCache.INSTANCE);
+        CacheInvalidationListeners.INSTANCE.addListener(CacheInvalidationListeners.CRYPTOTOKEN, CryptoTokenCache.INSTANCE);
+        CacheInvalidationListeners.INSTANCE.addListener(CacheInvalidationListeners.INTERNALKEYBINDING, InternalKeyBindingCache.INSTANCE);
+        CacheInvalidationListeners.INSTANCE.addListener(CacheInvalidationListeners.VALIDATOR, ValidatorCache.INSTANCE);
+        for (final Timer timer : timerService.getTimers()) {
+            timer.cancel();
+        }
+        final long interval = CesecoreConfiguration.getCacheInvalidationPollInterval();
+        if (interval > 0) {
+            timerService.createSingleActionTimer(interval, new TimerConfig(TIMER_NAME, false));
+        } else {
+            log.debug("Cache invalidation polling disabled (-1), not creating timer.");
+        }
+    }
+
+    @Override
+    @Timeout
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
+    public void timeOut(final Timer timer) {
+        try {
+            cacheInvalidationSession.pollInvalidationLog();
+        } catch (RuntimeException e) {
+            // Keep polling, for example if the database is temporarily unavailable
+            log.warn("Failed to poll the cache invalidation log: " + e.getMessage());
+            if (log.isDebugEnabled()) {
+                log.debug("Failed to poll the cache invalidation log", e);
+            }
+        }
+        final long interval = CesecoreConfiguration.getCacheInvalidationPollInterval();
+        if (interval > 0) {
+            timerService.createSingleActionTimer(interval, new TimerConfig(TIMER_NAME, false));
+        }
+    }
+}
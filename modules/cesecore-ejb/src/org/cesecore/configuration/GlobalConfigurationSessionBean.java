@@ -42,6 +42,7 @@ import org.cesecore.authorization.control.StandardRules;
 import org.cesecore.certificates.certificate.certextensions.AvailableCustomCertificateExtensionsConfiguration;
 import org.cesecore.config.AvailableExtendedKeyUsagesConfiguration;
 import org.cesecore.config.CesecoreConfiguration;
+import org.cesecore.internal.CacheInvalidationListeners;
 import org.cesecore.internal.InternalResources;
 import org.cesecore.internal.UpgradeableDataHashMap;
 import org.cesecore.jndi.JndiConstants;
@@ -67,6 +68,8 @@ public class GlobalConfigurationSessionBean implements GlobalConfigurationSessio
     private SecurityEventsLoggerSessionLocal auditSession;
     @EJB
     private AuthorizationSessionLocal authorizationSession;
+    @EJB
+    private CacheInvalidationSessionLocal cacheInvalidationSession;
 
     @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     @Override
@@ -132,6 +135,7 @@ public class GlobalConfigurationSessionBean implements GlobalConfigurationSessio
             final Map<Object, Object> orgmap = (Map<Object, Object>) GlobalConfigurationCacheHolder.INSTANCE.getConfiguration(gcdata.getData(), configID).saveData();
             gcdata.setConfiguration(conf);
             GlobalConfigurationCacheHolder.INSTANCE.updateConfiguration(conf, configID);
+            cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.GLOBALCONFIGURATION, configID);
             @SuppressWarnings("unchecked")
             final Map<Object, Object> newmap = (Map<Object, Object>) conf.saveData();
             // Get the diff of what changed
@@ -151,6 +155,7 @@ public class GlobalConfigurationSessionBean implements GlobalConfigurationSessio
                 GlobalConfigurationData gcd = new GlobalConfigurationData(configID, conf);
                 entityManager.persist(gcd);
                 GlobalConfigurationCacheHolder.INSTANCE.updateConfiguration(conf, configID);
+                cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.GLOBALCONFIGURATION, configID);
                 final String msg = intres.getLocalizedMessage("globalconfig.createdconf", configID);
                 auditSession.log(EventTypes.SYSTEMCONF_CREATE, EventStatus.SUCCESS, ModuleTypes.GLOBALCONF, ServiceTypes.CORE,
                         admin.toString(), null, null, null, msg);
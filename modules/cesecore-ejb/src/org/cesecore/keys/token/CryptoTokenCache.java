@@ -68,6 +68,11 @@ public enum CryptoTokenCache implements CommonCache<CryptoToken> {
     public void removeEntry(int cryptoTokenId) {
         cryptoTokenCache.removeEntry(cryptoTokenId);
     }
+
+    @Override
+    public void markStale(int cryptoTokenId) {
+        cryptoTokenCache.markStale(cryptoTokenId);
+    }
     
     @Override
     public String getName(int id) {
@@ -18,6 +18,7 @@ import java.util.Map;
 import java.util.Properties;
 
 import javax.annotation.PostConstruct;
+import javax.ejb.EJB;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
@@ -27,6 +28,8 @@ import javax.persistence.Query;
 
 import org.apache.log4j.Logger;
 import org.cesecore.config.CesecoreConfiguration;
+import org.cesecore.configuration.CacheInvalidationSessionLocal;
+import org.cesecore.internal.CacheInvalidationListeners;
 import org.cesecore.internal.InternalResources;
 import org.cesecore.jndi.JndiConstants;
 import org.cesecore.keys.token.p11.exception.NoSuchSlotException;
@@ -47,6 +50,8 @@ public class CryptoTokenSessionBean implements CryptoTokenSessionLocal, CryptoTo
 
     @PersistenceContext(unitName = CesecoreConfiguration.PERSISTENCE_UNIT)
     private EntityManager entityManager;
+    @EJB
+    private CacheInvalidationSessionLocal cacheInvalidationSession;
 
     @PostConstruct
     public void postConstruct() {
@@ -167,6 +172,7 @@ public class CryptoTokenSessionBean implements CryptoTokenSessionLocal, CryptoTo
         cryptoTokenData = createOrUpdateCryptoTokenData(cryptoTokenData);
         // Update cache with provided token (it might be active and we like keeping things active)
         CryptoTokenCache.INSTANCE.updateWith(cryptoTokenId, cryptoTokenData.getProtectString(0).hashCode(), tokenName, cryptoToken);
+        cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.CRYPTOTOKEN, cryptoTokenId);
         if (log.isTraceEnabled()) {
             log.trace("<addCryptoToken " + cryptoToken.getTokenName());
         }
@@ -177,6 +183,7 @@ public class CryptoTokenSessionBean implements CryptoTokenSessionLocal, CryptoTo
     public boolean removeCryptoToken(final int cryptoTokenId) {
         final boolean ret = deleteCryptoTokenData(cryptoTokenId);
         CryptoTokenCache.INSTANCE.updateWith(cryptoTokenId, 0, null, null);
+        cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.CRYPTOTOKEN, cryptoTokenId);
         return ret;
     }
     
@@ -57,7 +57,9 @@ import org.cesecore.certificates.certificateprofile.CertificateProfile;
 import org.cesecore.certificates.certificateprofile.CertificateProfileSessionLocal;
 import org.cesecore.certificates.endentity.EndEntityInformation;
 import org.cesecore.config.ExternalScriptsConfiguration;
+import org.cesecore.configuration.CacheInvalidationSessionLocal;
 import org.cesecore.configuration.GlobalConfigurationSessionLocal;
+import org.cesecore.internal.CacheInvalidationListeners;
 import org.cesecore.internal.InternalResources;
 import org.cesecore.jndi.JndiConstants;
 import org.cesecore.profiles.ProfileData;
@@ -85,6 +87,8 @@ public class KeyValidatorSessionBean implements KeyValidatorSessionLocal, KeyVal
     @EJB
     private AuthorizationSessionLocal authorizationSession;
     @EJB
+    private CacheInvalidationSessionLocal cacheInvalidationSession;
+    @EJB
     private GlobalConfigurationSessionLocal globalConfigurationSession;
     @EJB
     private CaSessionLocal caSession;
@@ -143,6 +147,7 @@ public class KeyValidatorSessionBean implements KeyValidatorSessionLocal, KeyVal
             profileSession.changeProfile(validator);
             // Since loading a KeyValidator is quite complex, we simple purge the cache here.
             ValidatorCache.INSTANCE.removeEntry(data.getId());
+            cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.VALIDATOR, data.getId());
             message = intres.getLocalizedMessage("validator.changed_validator", name);
             final Map<String, Object> details = new LinkedHashMap<String, Object>();
             details.put("msg", message);
@@ -181,6 +186,7 @@ public class KeyValidatorSessionBean implements KeyValidatorSessionLocal, KeyVal
         profileSession.removeProfile(data);
         // Purge the cache here.
         ValidatorCache.INSTANCE.removeEntry(data.getId());
+        cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.VALIDATOR, data.getId());
         message = intres.getLocalizedMessage("validator.removed_validator", data.getProfileName());
         final Map<String, Object> details = new LinkedHashMap<String, Object>();
         details.put("msg", message);
@@ -214,6 +220,7 @@ public class KeyValidatorSessionBean implements KeyValidatorSessionLocal, KeyVal
                 profileSession.removeProfile(data);
                 // Purge the cache here.
                 ValidatorCache.INSTANCE.removeEntry(data.getId());
+                cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.VALIDATOR, data.getId());
                 message = intres.getLocalizedMessage("validator.removed_validator", data.getProfileName());
                 final Map<String, Object> details = new LinkedHashMap<String, Object>();
                 details.put("msg", message);
@@ -297,6 +304,7 @@ public class KeyValidatorSessionBean implements KeyValidatorSessionLocal, KeyVal
                 success = true;
                 // Since loading a key validator is quite complex, we simple purge the cache here.
                 ValidatorCache.INSTANCE.removeEntry(data.getId());
+                cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.VALIDATOR, data.getId());
             }
         }
         if (success) {
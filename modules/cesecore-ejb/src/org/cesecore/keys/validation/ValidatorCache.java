@@ -70,6 +70,11 @@ public enum ValidatorCache implements CommonCache<Validator> {
         cache.removeEntry(id);
     }
 
+    @Override
+    public void markStale(int id) {
+        cache.markStale(id);
+    }
+
     @Override
     public String getName(int id) {
         return cache.getName(id);
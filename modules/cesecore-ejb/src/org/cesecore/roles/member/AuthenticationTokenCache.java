@@ -78,6 +78,11 @@ public enum AuthenticationTokenCache implements CommonCache<AuthenticationTokenC
     public void removeEntry(final int id) {
         cache.removeEntry(id);
     }
+
+    @Override
+    public void markStale(final int id) {
+        cache.markStale(id);
+    }
     
     @Override
     public String getName(int id) {
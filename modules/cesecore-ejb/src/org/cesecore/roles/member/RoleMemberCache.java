@@ -70,6 +70,11 @@ public enum RoleMemberCache implements CommonCache<RoleMember> {
     public void removeEntry(final int id) {
         cache.removeEntry(id);
     }
+
+    @Override
+    public void markStale(final int id) {
+        cache.markStale(id);
+    }
     
     @Override
     public String getName(int id) {
@@ -0,0 +1,135 @@
+/*************************************************************************
+ *                                                                       *
+ *  CESeCore: CE Security Core                                           *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.cesecore.configuration;
+
+import java.io.Serializable;
+
+import javax.persistence.Entity;
+import javax.persistence.PostLoad;
+import javax.persistence.PrePersist;
+import javax.persistence.PreUpdate;
+import javax.persistence.Table;
+import javax.persistence.Transient;
+import javax.persistence.Version;
+
+import org.cesecore.dbprotection.ProtectedData;
+import org.cesecore.dbprotection.ProtectionStringBuilder;
+
+/**
+ * Entry in the cluster cache invalidation log. A row is written each time an object that is cached on all nodes is changed,
+ * and the other nodes poll the table and evict the affected cache entry.
+ *
+ * @version $Id$
+ */
+@Entity
+@Table(name = "CacheInvalidationData")
+public class CacheInvalidationData extends ProtectedData implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private String id;
+    private long timeStamp;
+    private String cacheName;
+    private String entryKey;
+    private String nodeId;
+    private int rowVersion = 0;
+    private String rowProtection;
+
+    public CacheInvalidationData() {}
+
+    /**
+     * @param id unique id of the log entry
+     * @param timeStamp time the entry was written
+     * @param cacheName name of the cache, one of the constants in {@link org.cesecore.internal.CacheInvalidationListeners}
+     * @param entryKey key of the changed entry, or null if the whole cache should be flushed
+     * @param nodeId identifier of the node that made the change
+     */
+    public CacheInvalidationData(final String id, final long timeStamp, final String cacheName, final String entryKey, final String nodeId) {
+        setId(id);
+        setTimeStamp(timeStamp);
+        setCacheName(cacheName);
+        setEntryKey(entryKey);
+        setNodeId(nodeId);
+    }
+
+    // @Id @Column
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    // @Column
+    public long getTimeStamp() { return timeStamp; }
+    public void setTimeStamp(long timeStamp) { this.timeStamp = timeStamp; }
+
+    // @Column
+    public String getCacheName() { return cacheName; }
+    public void setCacheName(String cacheName) { this.cacheName = cacheName; }
+
+    // @Column
+    public String getEntryKey() { return entryKey; }
+    public void setEntryKey(String entryKey) { this.entryKey = entryKey; }
+
+    // @Column
+    public String getNodeId() { return nodeId; }
+    public void setNodeId(String nodeId) { this.nodeId = nodeId; }
+
+    // @Column
+    @Version
+    public int getRowVersion() { return rowVersion; }
+    public void setRowVersion(int rowVersion) { this.rowVersion = rowVersion; }
+
+    // @Column
+    @Override
+    public String getRowProtection() { return rowProtection; }
+    @Override
+    public void setRowProtection(String rowProtection) { this.rowProtection = rowProtection; }
+
+    //
+    // Start Database integrity protection methods
+    //
+
+    @Transient
+    @Override
+    protected String getProtectString(final int version) {
+        // rowVersion is automatically updated by JPA, so it's not important, it is only used for optimistic locking so we will not include that in the database protection
+        return new ProtectionStringBuilder().append(getId()).append(getTimeStamp()).append(getCacheName()).append(getEntryKey()).append(getNodeId()).toString();
+    }
+
+    @Transient
+    @Override
+    protected int getProtectVersion() {
+        return 1;
+    }
+
+    @PrePersist
+    @PreUpdate
+    @Override
+    protected void protectData() {
+        super.protectData();
+    }
+
+    @PostLoad
+    @Override
+    protected void verifyData() {
+        super.verifyData();
+    }
+
+    @Override
+    @Transient
+    protected String getRowId() {
+        return getId();
+    }
+
+    //
+    // End Database integrity protection methods
+    //
+}
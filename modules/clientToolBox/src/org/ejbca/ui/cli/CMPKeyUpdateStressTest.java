@@ -777,8 +777,7 @@ public class CMPKeyUpdateStressTest extends ClientToolBox {
 		final String hostName;
 		final String keystoreFile;
 		final String keystorePassword;
-		final int numberOfThreads;
-		final int numberOfTests;
+		final NrOfThreadsAndNrOfTests notanot;
 		final int waitTime;
 		final int port;
 		//	  final boolean isHttp;
@@ -789,7 +788,7 @@ public class CMPKeyUpdateStressTest extends ClientToolBox {
 			if (args.length < 5) {
 				System.out.println(
 						args[0] +
-						" <host name> <keystore (p12) directory> <keystore password> <alias> [<'m:n' m # of threads, n # of tests>] [<wait time (ms) between each thread is started>] [<port>] [<URL path of servlet. use 'null' to get EJBCA (not proxy) default>] [<certificate file prefix. set this if you want all received certificates stored on files>]"
+						" <host name> <keystore (p12) directory> <keystore password> <alias> [<"+NrOfThreadsAndNrOfTests.USAGE+">] [<wait time (ms) between each thread is started>] [<port>] [<URL path of servlet. use 'null' to get EJBCA (not proxy) default>] [<certificate file prefix. set this if you want all received certificates stored on files>]"
 						);
 				System.out.println();
 				System.out.println("Requirements for the 'CMP Alias':");
@@ -806,9 +805,7 @@ public class CMPKeyUpdateStressTest extends ClientToolBox {
 			this.keystoreFile = args[2];
 			this.keystorePassword = args[3];
 			final String alias = args[4];
-			final NrOfThreadsAndNrOfTests notanot = new NrOfThreadsAndNrOfTests(args.length>5 ? args[5] : null);
-			this.numberOfThreads = notanot.getThreads();
-			this.numberOfTests = notanot.getTests();
+			this.notanot = new NrOfThreadsAndNrOfTests(args.length>5 ? args[5] : null);
 			this.waitTime = args.length > 6 ? Integer.parseInt(args[6].trim()) : 0;
 			this.port = args.length > 7 ? Integer.parseInt(args[7].trim()) : 8080;
 			this.urlPath = (args.length > 8 && args[8].toLowerCase().indexOf("null") < 0 ? args[8].trim() : "/ejbca/publicweb/cmp") + '/' + alias;
@@ -884,11 +881,11 @@ public class CMPKeyUpdateStressTest extends ClientToolBox {
 			final CLIArgs cliArgs = new CLIArgs(args);
 			final PerformanceTest performanceTest = new PerformanceTest();
 			final KeyStore[] keyStores = getKeyStores(cliArgs.keystoreFile, cliArgs.keystorePassword);
-			if ( cliArgs.numberOfThreads>keyStores.length ) {
-				System.out.println("There are only "+keyStores.length+" key store files but "+cliArgs.numberOfThreads+" threads was specified.");
+			if ( cliArgs.notanot.getThreads()>keyStores.length ) {
+				System.out.println("There are only "+keyStores.length+" key store files but "+cliArgs.notanot.getThreads()+" threads was specified.");
 				System.exit(-1);
 			}
-			performanceTest.execute(new MyCommandFactory(cliArgs, performanceTest, keyStores), cliArgs.numberOfThreads, cliArgs.numberOfTests, cliArgs.waitTime, System.out);
+			performanceTest.execute(new MyCommandFactory(cliArgs, performanceTest, keyStores), cliArgs.notanot, cliArgs.waitTime, System.out);
 		} catch ( SecurityException e ) {
 			throw e; // this exception was thrown by the clientToolBoxTest at exit. let it be handled by the testing framework.
 		} catch (Exception e) {
@@ -136,8 +136,7 @@ class CMPTest extends ClientToolBox {
                     final int _port,
                     final boolean _isHttp,
                     final InputStream certInputStream,
-                    final int numberOfThreads,
-                    final int numberOfTests,
+                    final NrOfThreadsAndNrOfTests notanot,
                     final int waitTime,
                     final String alias,
                     final String _urlPath,
@@ -155,7 +154,7 @@ class CMPTest extends ClientToolBox {
             this.keyPair = keygen.generateKeyPair();
 
             this.performanceTest = new PerformanceTest();
-            this.performanceTest.execute(new MyCommandFactory(), numberOfThreads, numberOfTests, waitTime, System.out);
+            this.performanceTest.execute(new MyCommandFactory(), notanot, waitTime, System.out);
         }
         private CertRequest genCertReq(final X500Name userDN,
                                        final Extensions extensions) throws IOException {
@@ -899,7 +898,7 @@ class CMPTest extends ClientToolBox {
         final String urlPath;
         final String resultFilePrefix;
         if ( args.length < 3 ) {
-            System.out.println(args[0]+" <host name> <CA certificate file name> [<'m:n' m # of threads, n # of tests>] [<wait time (ms) between each thread is started>] [<alias>] [<port>] [<protocol, http default, write tcp if you want socket.>] [<URL path of servlet. use 'null' to get EJBCA (not proxy) default>] [<certificate file prefix. set this if you want all received certificates stored on files>]");
+            System.out.println(args[0]+" <host name> <CA certificate file name> [<"+NrOfThreadsAndNrOfTests.USAGE+">] [<wait time (ms) between each thread is started>] [<alias>] [<port>] [<protocol, http default, write tcp if you want socket.>] [<URL path of servlet. use 'null' to get EJBCA (not proxy) default>] [<certificate file prefix. set this if you want all received certificates stored on files>]");
             System.out.println("Requirements for the 'CMP Alias':");
             System.out.println("\t'Operational Mode' must be 'RA Mode'.");
             System.out.println("\t'RA Verify Proof-of-Possession' must be 'Allow'");
@@ -927,7 +926,7 @@ class CMPTest extends ClientToolBox {
                 return;
             }
 //            Security.addProvider(new BouncyCastleProvider());
-            new StressTest(hostName, port, isHttp, new FileInputStream(certFile), notanot.getThreads(), notanot.getTests(), waitTime, alias, urlPath, resultFilePrefix);
+            new StressTest(hostName, port, isHttp, new FileInputStream(certFile), notanot, waitTime, alias, urlPath, resultFilePrefix);
         } catch (SecurityException e) {
             throw e; // System.exit() called. Not thrown in normal operation but thrown by the custom SecurityManager when clientToolBoxTest is executed. Must not be caught.
         } catch (Exception e) {
@@ -51,6 +51,7 @@ public abstract class ClientToolBox {
         final ClientToolBox toolBox[] = {
                 new HealthCheck(),
                 new HealthCheckTest(),
+                new MockServerTest(),
                 new HSMKeyTool(),
                 new Ocsp(),
                 new EjbcaWsRaCli(),
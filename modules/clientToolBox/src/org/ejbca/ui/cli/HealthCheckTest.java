@@ -34,11 +34,10 @@ public class HealthCheckTest extends ClientToolBox {
         final PerformanceTest performanceTest;
        
         public StressTest( final String httpPath,
-                    final int numberOfThreads,
-                    final int nrOfTests,
+                    final NrOfThreadsAndNrOfTests notanot,
                     final int waitTime) throws Exception {
             performanceTest = new PerformanceTest();
-            performanceTest.execute(new MyCommandFactory(httpPath), numberOfThreads, nrOfTests, waitTime, System.out);
+            performanceTest.execute(new MyCommandFactory(httpPath), notanot, waitTime, System.out);
         }
         
         private class GetStatus implements Command {
@@ -104,7 +103,7 @@ public class HealthCheckTest extends ClientToolBox {
         final NrOfThreadsAndNrOfTests notanot;
         final int waitTime;
         if ( args.length < 2 ) {
-            System.out.println(args[0]+" <http URL> [<number of threads>] [<wait time (ms) between each thread is started>]");
+            System.out.println(args[0]+" <http URL> [<"+NrOfThreadsAndNrOfTests.USAGE+">] [<wait time (ms) between each thread is started>]");
             System.out.println("Example: healthCheckTest http://localhost:8080/ejbca/publicweb/healthcheck/ejbcahealth 10 10");
             return;
         }
@@ -112,7 +111,7 @@ public class HealthCheckTest extends ClientToolBox {
         notanot = new NrOfThreadsAndNrOfTests(args.length>2 ? args[2] : null);
         waitTime = args.length>3 ? Integer.parseInt(args[3].trim()):0;
         try {
-            new StressTest(httpPath, notanot.getThreads(), notanot.getTests(), waitTime);
+            new StressTest(httpPath, notanot, waitTime);
         } catch( SecurityException e ) {
             throw e; // System.exit() called. Not thrown in normal operation but thrown by the custom SecurityManager when clientToolBoxTest is executed. Must not be caught.
         } catch (Exception e) {
@@ -0,0 +1,68 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.ui.cli;
+
+import org.ejbca.util.MockServerCommandFactory;
+import org.ejbca.util.PerformanceTest;
+import org.ejbca.util.PerformanceTest.NrOfThreadsAndNrOfTests;
+
+/**
+ * Runs the stress test engine against a simulated server in the same JVM, to try out load parameters
+ * and to see how the server stalls show up in closed and open loop tests.
+ *
+ * @version $Id$
+ */
+public class MockServerTest extends ClientToolBox {
+
+    @Override
+    protected void execute(String[] args) {
+        if ( args.length < 2 ) {
+            System.out.println(args[0]+" <load> [<service time (ms)>] [<number of server threads>] [<stall interval (s)>] [<stall time (ms)>]");
+            System.out.println("<load> is "+NrOfThreadsAndNrOfTests.USAGE+".");
+            System.out.println("The server handles <number of server threads> requests at a time, each taking <service time> ms (default 10 ms and 4 threads).");
+            System.out.println("If <stall interval> is given the server stalls for <stall time> ms each <stall interval> seconds.");
+            System.out.println("Example, closed loop: "+args[0]+" 8,warmup=10,duration=60 10 4 10 1000");
+            System.out.println("Example, open loop:   "+args[0]+" 100,rate=200,warmup=10,duration=60,output=result.json 10 4 10 1000");
+            return;
+        }
+        final NrOfThreadsAndNrOfTests notanot;
+        final long serviceTime;
+        final int serverThreads;
+        final int stallInterval;
+        final long stallTime;
+        try {
+            notanot = new NrOfThreadsAndNrOfTests(args[1]);
+            serviceTime = args.length>2 ? Long.parseLong(args[2].trim()) : 10;
+            serverThreads = args.length>3 ? Integer.parseInt(args[3].trim()) : 4;
+            stallInterval = args.length>4 ? Integer.parseInt(args[4].trim()) : 0;
+            stallTime = args.length>5 ? Long.parseLong(args[5].trim()) : 0;
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid argument: "+e.getMessage());
+            System.exit(-1); // NOPMD, it's not a JEE app
+            return;
+        }
+        try {
+            new PerformanceTest().execute(new MockServerCommandFactory(serviceTime, serverThreads, stallInterval, stallTime), notanot, 0, System.out);
+        } catch( SecurityException e ) {
+            throw e; // System.exit() called. Not thrown in normal operation but thrown by the custom SecurityManager when clientToolBoxTest is executed. Must not be caught.
+        } catch (Exception e) {
+            System.out.println("Mock server test failed: "+e.getMessage());
+            System.exit(-1); // NOPMD, it's not a JEE app
+        }
+    }
+
+    @Override
+    protected String getName() {
+        return "mockServerTest";
+    }
+}
@@ -167,7 +167,7 @@ public class Ocsp extends ClientToolBox {
         StressTest(String args[]) throws Exception {
             if (args.length < 7) {
                 System.out
-                        .println("Usage: OCSP stress <OCSP URL> <Certificate serial number file> <ca cert file> <number of threads> <wait time between requests> [<POST | GET | FNR | FNRGET | FNRPOST>] [<request signing keystore file>] [<request signing password>]");
+                        .println("Usage: OCSP stress <OCSP URL> <Certificate serial number file> <ca cert file> <"+NrOfThreadsAndNrOfTests.USAGE+"> <wait time between requests> [<POST | GET | FNR | FNRGET | FNRPOST>] [<request signing keystore file>] [<request signing password>]");
                 System.out
                         .println("Certificate serial number file is creates using the WS stress command: ./ejbcawsracli.sh stress... or could also be a text file with one serial number on each row. Start with '0x' if hex.");
                 System.out.println("If the directory \"./" + OCSPUnidClient.requestDirectory
@@ -206,7 +206,7 @@ public class Ocsp extends ClientToolBox {
                 this.keyStorePassword = null;
             }
             this.performanceTest = new PerformanceTest();
-            this.performanceTest.execute(new MyCommandFactory(), notanot.getThreads(), notanot.getTests(), waitTime, System.out);
+            this.performanceTest.execute(new MyCommandFactory(), notanot, waitTime, System.out);
         }
     }
 
@@ -126,8 +126,7 @@ class SCEPTest extends ClientToolBox {
         private final String caName;
 
         StressTest( final String url,
-                    final int numberOfThreads,
-                    final int numberOfTests,
+                    final NrOfThreadsAndNrOfTests notanot,
                     final int waitTime,
                     final String caName,
                     final String userCNBase
@@ -145,7 +144,7 @@ class SCEPTest extends ClientToolBox {
             this.random.nextInt();
             
             this.performanceTest = new PerformanceTest();
-            this.performanceTest.execute(new MyCommandFactory(userCNBase), numberOfThreads, numberOfTests, waitTime, System.out);
+            this.performanceTest.execute(new MyCommandFactory(userCNBase), notanot, waitTime, System.out);
         }
 
         private class ScepGetCACertChain implements Command {
@@ -710,7 +709,7 @@ class SCEPTest extends ClientToolBox {
         final String caName;
         final String userCNBase;
         if ( args.length < 3 ) {
-            System.out.println(args[0]+" <SCEP url> <CA name> [<number of threads>] [<wait time between each thread is started>] [<user CN to be prepended by >]");
+            System.out.println(args[0]+" <SCEP url> <CA name> [<"+NrOfThreadsAndNrOfTests.USAGE+">] [<wait time between each thread is started>] [<user CN to be prepended by >]");
             System.out.println("SCEP URL extra example: http://127.0.0.1:8080/scepraserver/scep/pkiclient.exe");
             System.out.println("SCEP URL ca example: http://localhost:8080/ejbca/publicweb/apply/scep/noca/pkiclient.exe");
             System.out.println();
@@ -732,7 +731,7 @@ class SCEPTest extends ClientToolBox {
         userCNBase = args.length>5 ? args[5] : null;
 
         try {
-            new StressTest(url, notanot.getThreads(), notanot.getTests(), waitTime, caName, userCNBase);
+            new StressTest(url, notanot, waitTime, caName, userCNBase);
         } catch( SecurityException e ) {
             throw e; // System.exit() called. Not thrown in normal operation but thrown by the custom SecurityManager when clientToolBoxTest is executed. Must not be caught.
         } catch (Exception e) {
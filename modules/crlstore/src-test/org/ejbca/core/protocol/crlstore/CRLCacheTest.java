@@ -0,0 +1,208 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.protocol.crlstore;
+
+import static org.easymock.EasyMock.anyBoolean;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+import java.security.KeyPair;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.cesecore.certificates.ca.internal.CaCertificateCache;
+import org.cesecore.certificates.certificate.HashID;
+import org.cesecore.certificates.crl.CRLInfo;
+import org.cesecore.certificates.crl.CrlStoreSessionLocal;
+import org.cesecore.internal.CacheInvalidationListeners;
+import org.cesecore.keys.util.KeyTools;
+import org.cesecore.util.CertTools;
+import org.cesecore.util.CryptoProviderTools;
+import org.easymock.IAnswer;
+import org.ejbca.core.protocol.crlstore.CRLCache.CachedCrl;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the CRL snapshots of the CRL cache, with a mocked CRL store and the background checks for newer CRLs run by the test.
+ *
+ * @version $Id$
+ */
+public class CRLCacheTest {
+
+    private static final String CA_DN = "CN=CRLCacheTest,O=EJBCA,C=SE";
+    /** Long enough for the cache time not to pass during a test */
+    private static final long CACHE_TIME = 600000;
+
+    private static X509Certificate caCertificate;
+    private static HashID issuerId;
+
+    /** Current CRL in the mocked CRL store */
+    private volatile CRLInfo crlInfo;
+    private volatile byte[] crlBytes;
+    private final AtomicInteger crlReads = new AtomicInteger();
+    /** Checks for newer CRLs, which are run when the test calls {@link #runRefreshTasks()} */
+    private final List<Runnable> refreshTasks = new ArrayList<>();
+    private final Executor executor = new Executor() {
+        @Override
+        public void execute(final Runnable command) {
+            refreshTasks.add(command);
+        }
+    };
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        CryptoProviderTools.installBCProviderIfNotAvailable();
+        final KeyPair keyPair = KeyTools.genKeys("1024", "RSA");
+        caCertificate = CertTools.genSelfCert(CA_DN, 365, null, keyPair.getPrivate(), keyPair.getPublic(), "SHA256WithRSA", true);
+        CaCertificateCache.INSTANCE.loadCertificates(Collections.<Certificate>singletonList(caCertificate));
+        issuerId = HashID.getFromSubjectDN(caCertificate);
+    }
+
+    @Before
+    public void setUp() {
+        setCrl(1);
+    }
+
+    /** Stores a new CRL in the mocked CRL store */
+    private void setCrl(final int crlNumber) {
+        final long now = System.currentTimeMillis();
+        crlInfo = new CRLInfo(CA_DN, crlNumber, now, now + 3600000);
+        crlBytes = ("CRL number " + crlNumber).getBytes();
+    }
+
+    private CRLCache createCache(final boolean withCrl) {
+        final CrlStoreSessionLocal crlSession = createMock(CrlStoreSessionLocal.class);
+        expect(crlSession.getLastCRLInfo(anyString(), anyBoolean())).andStubAnswer(new IAnswer<CRLInfo>() {
+            @Override
+            public CRLInfo answer() {
+                return withCrl ? crlInfo : null;
+            }
+        });
+        expect(crlSession.getLastCRL(anyString(), anyBoolean())).andStubAnswer(new IAnswer<byte[]>() {
+            @Override
+            public byte[] answer() {
+                crlReads.incrementAndGet();
+                return crlBytes;
+            }
+        });
+        replay(crlSession);
+        return new CRLCache(crlSession, CaCertificateCache.INSTANCE, CACHE_TIME, executor);
+    }
+
+    private void runRefreshTasks() {
+        final List<Runnable> tasks = new ArrayList<>(refreshTasks);
+        refreshTasks.clear();
+        for (final Runnable task : tasks) {
+            task.run();
+        }
+    }
+
+    /** Signals a new CRL, after making sure that the signal is later than the last check of the cached CRL */
+    private static void signalNewCrl() throws InterruptedException {
+        Thread.sleep(5);
+        CacheInvalidationListeners.INSTANCE.invalidate(CacheInvalidationListeners.CRL, CA_DN);
+    }
+
+    @Test
+    public void testFirstLookupLoadsSynchronously() {
+        final CRLCache cache = createCache(true);
+        final CachedCrl cachedCrl = cache.findByIssuerDN(issuerId, false, -1);
+        assertArrayEquals(crlBytes, cachedCrl.getEncoded());
+        assertEquals(1, cachedCrl.getCrlNumber());
+        assertEquals(crlInfo.getCreateDate().getTime(), cachedCrl.getThisUpdate());
+        assertEquals(crlInfo.getExpireDate().getTime(), cachedCrl.getNextUpdate());
+        assertEquals(CertTools.getFingerprintAsString(crlBytes), cachedCrl.getETag());
+        assertEquals("No background check should be needed for a fresh CRL", 0, refreshTasks.size());
+        // Served from the cache
+        assertEquals(cachedCrl, cache.findByIssuerDN(issuerId, false, -1));
+        assertEquals(1, crlReads.get());
+    }
+
+    @Test
+    public void testNoCrl() {
+        final CRLCache cache = createCache(false);
+        assertNull(cache.findByIssuerDN(issuerId, false, -1));
+        assertNull(cache.findByIssuerDN(issuerId, true, -1));
+        assertEquals(0, crlReads.get());
+        assertNull("Unknown CA", cache.findByIssuerDN(HashID.getFromDNString("CN=Unknown"), false, -1));
+    }
+
+    /** The cached CRL must be served while the database is checked for a newer one, and be replaced once the check has finished */
+    @Test
+    public void testSnapshotSwapDuringRefresh() throws InterruptedException {
+        final CRLCache cache = createCache(true);
+        final CachedCrl first = cache.findByIssuerDN(issuerId, false, -1);
+        setCrl(2);
+        signalNewCrl();
+        assertEquals("Old CRL should be served until the check has finished", first, cache.findByIssuerDN(issuerId, false, -1));
+        assertEquals("Old CRL should be served until the check has finished", first, cache.findByIssuerDN(issuerId, false, -1));
+        assertEquals("Only one check should be queued for an issuer", 1, refreshTasks.size());
+        assertEquals(1, crlReads.get());
+        runRefreshTasks();
+        final CachedCrl second = cache.findByIssuerDN(issuerId, false, -1);
+        assertEquals(2, second.getCrlNumber());
+        assertArrayEquals(crlBytes, second.getEncoded());
+        assertNotEquals(first.getETag(), second.getETag());
+        assertEquals(2, crlReads.get());
+        assertEquals("The signal should be cleared when the new CRL has been found", 0, refreshTasks.size());
+        // The snapshot that was handed out before is not modified
+        assertEquals(1, first.getCrlNumber());
+    }
+
+    /** A CRL that is still the latest must not be read again */
+    @Test
+    public void testUnchangedCrlNotReadAgain() throws InterruptedException {
+        final CRLCache cache = createCache(true);
+        final CachedCrl first = cache.findByIssuerDN(issuerId, false, -1);
+        signalNewCrl();
+        cache.findByIssuerDN(issuerId, false, -1);
+        assertEquals(1, refreshTasks.size());
+        runRefreshTasks();
+        final CachedCrl checked = cache.findByIssuerDN(issuerId, false, -1);
+        assertEquals(1, checked.getCrlNumber());
+        assertEquals(first.getETag(), checked.getETag());
+        assertEquals(1, crlReads.get());
+    }
+
+    /** Full and delta CRLs are cached separately */
+    @Test
+    public void testDeltaCrl() throws InterruptedException {
+        final CRLCache cache = createCache(true);
+        final CachedCrl full = cache.findByIssuerDN(issuerId, false, -1);
+        setCrl(2);
+        final CachedCrl delta = cache.findByIssuerDN(issuerId, true, -1);
+        assertEquals(1, full.getCrlNumber());
+        assertEquals(2, delta.getCrlNumber());
+        setCrl(3);
+        signalNewCrl();
+        cache.findByIssuerDN(issuerId, false, -1);
+        cache.findByIssuerDN(issuerId, true, -1);
+        assertEquals("Both full and delta CRL should be checked", 2, refreshTasks.size());
+        runRefreshTasks();
+        assertEquals(3, cache.findByIssuerDN(issuerId, false, -1).getCrlNumber());
+        assertEquals(3, cache.findByIssuerDN(issuerId, true, -1).getCrlNumber());
+    }
+}
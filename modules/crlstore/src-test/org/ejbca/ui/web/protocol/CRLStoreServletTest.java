@@ -0,0 +1,235 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.ui.web.protocol;
+
+import static org.easymock.EasyMock.anyBoolean;
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.createMock;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Collections;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.cesecore.certificates.certificate.HashID;
+import org.easymock.Capture;
+import org.easymock.EasyMockRunner;
+import org.easymock.Mock;
+import org.easymock.TestSubject;
+import org.ejbca.core.protocol.crlstore.CRLCache;
+import org.ejbca.core.protocol.crlstore.CRLCache.CachedCrl;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests the cache headers and conditional requests of the CRL store servlet, with a mocked CRL cache.
+ *
+ * @version $Id$
+ */
+@RunWith(EasyMockRunner.class)
+public class CRLStoreServletTest {
+
+    /** Any valid issuer hash, the CRL cache is mocked */
+    private static final String ISSUER_HASH = HashID.getFromDNString("CN=CRLStoreServletTest").getB64();
+    private static final byte[] CRL_BYTES = "CRL data".getBytes();
+    private static final long THIS_UPDATE = 1500000000000L;
+
+    @TestSubject
+    private final CRLStoreServlet servlet = new CRLStoreServlet();
+
+    @Mock
+    private CRLCache crlCache;
+
+    private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+    private void expectCrl(final CachedCrl cachedCrl) {
+        expect(crlCache.findByIssuerDN(anyObject(HashID.class), anyBoolean(), anyInt())).andReturn(cachedCrl);
+        replay(crlCache);
+    }
+
+    private static CachedCrl crl(final long nextUpdate) {
+        return new CachedCrl(CRL_BYTES, 1, THIS_UPDATE, nextUpdate, System.currentTimeMillis());
+    }
+
+    private static String quotedETag(final CachedCrl cachedCrl) {
+        return "\"" + cachedCrl.getETag() + "\"";
+    }
+
+    /** @return a request for the latest full CRL, with the given conditional headers */
+    private static HttpServletRequest request(final String ifNoneMatch, final long ifModifiedSince) {
+        final HttpServletRequest req = createMock(HttpServletRequest.class);
+        expect(req.getParameterMap()).andStubReturn(Collections.<String, String[]>emptyMap());
+        expect(req.getParameter("crlnumber")).andStubReturn(null);
+        expect(req.getHeader("If-None-Match")).andStubReturn(ifNoneMatch);
+        expect(req.getDateHeader("If-Modified-Since")).andStubReturn(ifModifiedSince);
+        replay(req);
+        return req;
+    }
+
+    /** @return a response that expects the CRL not to be sent */
+    private static HttpServletResponse notModifiedResponse() {
+        final HttpServletResponse resp = createNiceMock(HttpServletResponse.class);
+        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        expectLastCall().once();
+        replay(resp);
+        return resp;
+    }
+
+    /** @return a response that expects the CRL to be sent, and writes it to {@link #body} */
+    private HttpServletResponse okResponse() throws Exception {
+        final HttpServletResponse resp = createNiceMock(HttpServletResponse.class);
+        resp.setContentType("application/pkix-crl");
+        expectLastCall().once();
+        expect(resp.getOutputStream()).andReturn(bodyStream());
+        replay(resp);
+        return resp;
+    }
+
+    /** @return a stream that writes to {@link #body} */
+    private ServletOutputStream bodyStream() {
+        return new ServletOutputStream() {
+            @Override
+            public void write(final int b) {
+                body.write(b);
+            }
+
+            @Override
+            public boolean isReady() {
+                return true;
+            }
+
+            @Override
+            public void setWriteListener(final WriteListener writeListener) {
+            }
+        };
+    }
+
+    @Test
+    public void testIfNoneMatch() throws Exception {
+        final CachedCrl cachedCrl = crl(0);
+        expectCrl(cachedCrl);
+        final HttpServletResponse resp = notModifiedResponse();
+        servlet.iHash(ISSUER_HASH, resp, request("\"other\", " + quotedETag(cachedCrl), -1));
+        verify(resp);
+    }
+
+    @Test
+    public void testIfNoneMatchWeakETag() throws Exception {
+        final CachedCrl cachedCrl = crl(0);
+        expectCrl(cachedCrl);
+        final HttpServletResponse resp = notModifiedResponse();
+        servlet.iHash(ISSUER_HASH, resp, request("W/" + quotedETag(cachedCrl), -1));
+        verify(resp);
+    }
+
+    @Test
+    public void testIfNoneMatchAny() throws Exception {
+        expectCrl(crl(0));
+        final HttpServletResponse resp = notModifiedResponse();
+        servlet.iHash(ISSUER_HASH, resp, request("*", -1));
+        verify(resp);
+    }
+
+    /** A client with another CRL must get the CRL, even if it is not modified since the given time, since If-None-Match takes precedence */
+    @Test
+    public void testIfNoneMatchOtherCrl() throws Exception {
+        expectCrl(crl(0));
+        final HttpServletResponse resp = okResponse();
+        servlet.iHash(ISSUER_HASH, resp, request("\"0123456789abcdef\"", THIS_UPDATE + 1000));
+        verify(resp);
+        assertArrayEquals(CRL_BYTES, body.toByteArray());
+    }
+
+    @Test
+    public void testIfModifiedSince() throws Exception {
+        expectCrl(crl(0));
+        final HttpServletResponse resp = notModifiedResponse();
+        // HTTP dates have a resolution of seconds, so the milliseconds of thisUpdate must not count
+        servlet.iHash(ISSUER_HASH, resp, request(null, THIS_UPDATE - THIS_UPDATE % 1000));
+        verify(resp);
+    }
+
+    @Test
+    public void testModifiedSince() throws Exception {
+        expectCrl(crl(0));
+        final HttpServletResponse resp = okResponse();
+        servlet.iHash(ISSUER_HASH, resp, request(null, THIS_UPDATE - 1000));
+        verify(resp);
+        assertArrayEquals(CRL_BYTES, body.toByteArray());
+    }
+
+    /** The CRL may be cached until its nextUpdate */
+    @Test
+    public void testCacheHeaders() throws Exception {
+        final long nextUpdate = System.currentTimeMillis() + 3600000;
+        final CachedCrl cachedCrl = crl(nextUpdate);
+        expectCrl(cachedCrl);
+        final HttpServletResponse resp = createNiceMock(HttpServletResponse.class);
+        final Capture<String> eTag = Capture.newInstance();
+        final Capture<String> cacheControl = Capture.newInstance();
+        resp.setHeader(eq("ETag"), capture(eTag));
+        resp.setHeader(eq("Cache-Control"), capture(cacheControl));
+        resp.setDateHeader("Last-Modified", THIS_UPDATE);
+        expectLastCall().once();
+        resp.setDateHeader("Expires", nextUpdate);
+        expectLastCall().once();
+        resp.setHeader(eq("Content-disposition"), anyString());
+        expect(resp.getOutputStream()).andReturn(bodyStream());
+        replay(resp);
+        servlet.iHash(ISSUER_HASH, resp, request(null, -1));
+        verify(resp);
+        assertArrayEquals(CRL_BYTES, body.toByteArray());
+        assertEquals(quotedETag(cachedCrl), eTag.getValue());
+        assertTrue("Unexpected Cache-Control: " + cacheControl.getValue(), cacheControl.getValue().matches("max-age=3(5\\d\\d|600)"));
+    }
+
+    /** A CRL without nextUpdate, or an expired CRL, must be revalidated every time */
+    @Test
+    public void testCacheHeadersExpiredCrl() throws Exception {
+        expectCrl(crl(System.currentTimeMillis() - 1000));
+        final HttpServletResponse resp = createNiceMock(HttpServletResponse.class);
+        resp.setHeader("Cache-Control", "max-age=0, must-revalidate");
+        expectLastCall().once();
+        resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+        expectLastCall().once();
+        replay(resp);
+        servlet.iHash(ISSUER_HASH, resp, request("*", -1));
+        verify(resp);
+    }
+
+    @Test
+    public void testNoCrl() throws Exception {
+        expectCrl(null);
+        final HttpServletResponse resp = createMock(HttpServletResponse.class);
+        resp.sendError(eq(HttpServletResponse.SC_NO_CONTENT), anyString());
+        expectLastCall().once();
+        replay(resp);
+        servlet.iHash(ISSUER_HASH, resp, request(null, -1));
+        verify(resp);
+    }
+}
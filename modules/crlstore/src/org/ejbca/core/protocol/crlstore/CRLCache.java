@@ -13,9 +13,16 @@
 
 package org.ejbca.core.protocol.crlstore;
 
+import java.security.cert.CRLException;
+import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
@@ -24,42 +31,113 @@ import org.cesecore.certificates.ca.internal.CaCertificateCache;
 import org.cesecore.certificates.certificate.HashID;
 import org.cesecore.certificates.crl.CRLInfo;
 import org.cesecore.certificates.crl.CrlStoreSessionLocal;
+import org.cesecore.internal.CacheInvalidationListener;
+import org.cesecore.internal.CacheInvalidationListeners;
 import org.cesecore.util.CertTools;
+import org.ejbca.config.WebConfiguration;
 
 /**
- * An implementation of this is managing a cache of CRLs. The implementation should be optimized for quick lookups of CRLs that the 
+ * An implementation of this is managing a cache of CRLs. The implementation should be optimized for quick lookups of CRLs that the
  * VA responder needs to fetch.
  *
+ * The latest CRL of each issuer is kept as an immutable {@link CachedCrl}, which is replaced atomically when a newer CRL is found.
+ * Lookups never wait for the database, except for the very first lookup of an issuer. When a cached CRL is older than the configured
+ * cache time, or a new CRL has been stored for the issuer (see {@link CacheInvalidationListeners#CRL}), the database is checked in
+ * the background and the cached CRL is served meanwhile.
+ *
  * @version $Id: CRLCache.java 25645 2017-04-04 09:22:52Z anatom $
  */
 public class CRLCache {
 	private static final Logger log = Logger.getLogger(CRLCache.class);
-	
+
+	/** How often the database is checked, at most, after a new CRL has been signalled for an issuer, in milliseconds */
+	private static final long STALE_RECHECK_TIME = 1000L;
+	/** How long a signalled CRL is waited for, in milliseconds. The signal is sent before the CRL is committed to the database */
+	private static final long STALE_TIMEOUT = 30000L;
+
     private static CRLCache instance = null;
     private static final Lock lock = new ReentrantLock();
-	
+
 	private final CrlStoreSessionLocal crlSession;
 	private final CaCertificateCache certCache;
-	final private Map<Integer, CRLEntity> crls = new HashMap<Integer, CRLEntity>();
-	final private Map<Integer, CRLEntity> deltaCrls = new HashMap<Integer, CRLEntity>();
-	private class CRLEntity {
-		final CRLInfo crlInfo;
-		final byte encoded[];
+	private final long cacheTime;
+	/** Latest CRL by the ID of the issuer DN */
+	private final Map<Integer, CachedCrl> crls = new ConcurrentHashMap<>();
+	/** Latest delta CRL by the ID of the issuer DN */
+	private final Map<Integer, CachedCrl> deltaCrls = new ConcurrentHashMap<>();
+	/** Time when a new CRL was signalled, by the ID of the issuer DN */
+	private final Map<Integer, Long> staleCrls = new ConcurrentHashMap<>();
+	private final Map<Integer, Long> staleDeltaCrls = new ConcurrentHashMap<>();
+	/** ID of the issuer DN by the issuer DN in BC format, for the invalidation signals, which identify the issuer by DN */
+	private final Map<String, Integer> issuerKeys = new ConcurrentHashMap<>();
+	/** Issuers that are being checked in the background, so that only one check per issuer is queued */
+	private final Set<Integer> refreshingCrls = ConcurrentHashMap.newKeySet();
+	private final Set<Integer> refreshingDeltaCrls = ConcurrentHashMap.newKeySet();
+	/** Checks the database for newer CRLs in the background */
+	private final Executor refreshExecutor;
+
+	/**
+	 * An immutable snapshot of a CRL, with the information needed to answer conditional requests.
+	 */
+	public static final class CachedCrl {
+		private final byte[] encoded;
+		private final int crlNumber;
+		private final long thisUpdate;
+		private final long nextUpdate;
+		private final String eTag;
+		/** When the database was last checked for a newer CRL */
+		private final long checkTime;
+
 		/**
-		 * @param crlInfo
-		 * @param encoded
+		 * @param encoded the DER encoded CRL, or null if the issuer has no CRL
+		 * @param crlNumber the CRL number, or -1 if the issuer has no CRL
+		 * @param thisUpdate thisUpdate of the CRL in milliseconds since epoch, or 0 if unknown
+		 * @param nextUpdate nextUpdate of the CRL in milliseconds since epoch, or 0 if the CRL has no nextUpdate
+		 * @param checkTime when the database was last checked for a newer CRL, in milliseconds since epoch
 		 */
-		CRLEntity(CRLInfo crlInfo, byte[] encoded) {
-			super();
-			this.crlInfo = crlInfo;
+		public CachedCrl(final byte[] encoded, final int crlNumber, final long thisUpdate, final long nextUpdate, final long checkTime) {
 			this.encoded = encoded;
+			this.crlNumber = crlNumber;
+			this.thisUpdate = thisUpdate;
+			this.nextUpdate = nextUpdate;
+			this.eTag = encoded == null ? null : CertTools.getFingerprintAsString(encoded);
+			this.checkTime = checkTime;
+		}
+
+		private CachedCrl(final CachedCrl other, final long checkTime) {
+			this.encoded = other.encoded;
+			this.crlNumber = other.crlNumber;
+			this.thisUpdate = other.thisUpdate;
+			this.nextUpdate = other.nextUpdate;
+			this.eTag = other.eTag;
+			this.checkTime = checkTime;
+		}
+
+		/** @return the DER encoded CRL, or null if the issuer has no CRL. The returned array must not be modified. */
+		public byte[] getEncoded() {
+			return encoded;
+		}
+
+		/** @return the CRL number, or -1 if the issuer has no CRL */
+		public int getCrlNumber() {
+			return crlNumber;
+		}
+
+		/** @return thisUpdate of the CRL in milliseconds since epoch, or 0 if unknown */
+		public long getThisUpdate() {
+			return thisUpdate;
+		}
+
+		/** @return nextUpdate of the CRL in milliseconds since epoch, or 0 if the CRL has no nextUpdate */
+		public long getNextUpdate() {
+			return nextUpdate;
+		}
+
+		/** @return the hex encoded SHA-1 fingerprint of the CRL, or null if the issuer has no CRL */
+		public String getETag() {
+			return eTag;
 		}
 	}
-	/** We need an object to synchronize around when rebuilding and reading the cache. When rebuilding the cache no thread
-	 * can be allowed to read the cache, since the cache will be in an inconsistent state. In the normal case we want to use
-	 * as fast objects as possible (HashMap) for reading fast.
-	 */
-	final private Lock rebuildlock = new ReentrantLock();
 
 	 /**
      * @return  {@link CRLCache} for the CA.
@@ -78,24 +156,49 @@ public class CRLCache {
             lock.unlock();
         }
     }
-	
+
 	/**
 	 * @param crlSession reference to CRLStoreSession
 	 * @param certStore references to needed CA certificates.
 	 */
 	private CRLCache(CrlStoreSessionLocal crlSession, CaCertificateCache certCache) {
+		this(crlSession, certCache, WebConfiguration.getCrlStoreCacheTime(), Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(final Runnable runnable) {
+				final Thread thread = new Thread(runnable, "CRLCache-refresh");
+				thread.setDaemon(true);
+				return thread;
+			}
+		}));
+	}
+
+	/**
+	 * Creates a cache that is not shared through {@link #getInstance(CrlStoreSessionLocal, CaCertificateCache)}, for tests.
+	 *
+	 * @param cacheTime how long a CRL is served before the database is checked for a newer CRL, in milliseconds
+	 * @param refreshExecutor executor for the checks for newer CRLs
+	 */
+	CRLCache(CrlStoreSessionLocal crlSession, CaCertificateCache certCache, long cacheTime, Executor refreshExecutor) {
 		super();
 		this.crlSession = crlSession;
 		this.certCache = certCache;
+		this.cacheTime = cacheTime;
+		this.refreshExecutor = refreshExecutor;
+		CacheInvalidationListeners.INSTANCE.addListener(CacheInvalidationListeners.CRL, new CacheInvalidationListener() {
+			@Override
+			public void onInvalidation(final String issuerDN) {
+				markStale(issuerDN);
+			}
+		});
 	}
 
 	/**
      * @param id The ID of the subject key identifier.
      * @param isDelta true if delta CRL
      * @param crlNumber specific crlNumber of the CRL to be retrieved, when not the latest, or -1 for the latest
-     * @return CRL or null if the CRL does not exist in the cache.
+     * @return CRL or null if the CRL does not exist.
      */
-	public byte[] findBySubjectKeyIdentifier(HashID id, boolean isDelta, int crlNumber) {
+	public CachedCrl findBySubjectKeyIdentifier(HashID id, boolean isDelta, int crlNumber) {
 		return findCRL(certCache.findBySubjectKeyIdentifier(id), isDelta, crlNumber);
 	}
 
@@ -103,58 +206,177 @@ public class CRLCache {
      * @param id The ID of the issuer DN.
      * @param isDelta true if delta CRL
      * @param crlNumber specific crlNumber of the CRL to be retrieved, when not the latest, or -1 for the latest
-     * @return CRL or null if the CRL does not exist in the cache.
+     * @return CRL or null if the CRL does not exist.
      */
-	public byte[] findByIssuerDN(HashID id, boolean isDelta, int crlNumber) {
+	public CachedCrl findByIssuerDN(HashID id, boolean isDelta, int crlNumber) {
 		return findCRL(certCache.findLatestBySubjectDN(id), isDelta, crlNumber);
 	}
 
-	private byte[] findCRL(X509Certificate caCert, boolean isDelta, int crlNumber) {
+	private CachedCrl findCRL(X509Certificate caCert, boolean isDelta, int crlNumber) {
 		if ( caCert==null ) {
 			if (log.isDebugEnabled()) {
 				log.debug("No CA certificate, returning null.");
 			}
 			return null;
 		}
-		final HashID id = HashID.getFromSubjectDN(caCert);
 		final String issuerDN = CertTools.getSubjectDN(caCert);
-		this.rebuildlock.lock();
-		try {
-			final CRLInfo crlInfo = this.crlSession.getLastCRLInfo(issuerDN, isDelta);
-			if ( crlInfo==null ) {
-				if (log.isDebugEnabled()) {
-					log.debug("No CRL found with issuerDN '"+issuerDN+"', returning null.");
-				}
-				return null;
-			}
-            final Map<Integer, CRLEntity> usedCrls = isDelta ? this.deltaCrls : this.crls;
-			// If we have not specified a crlNumber we can try to find the latest CRL in the cache
-			if (crlNumber == -1) {
-			    final CRLEntity cachedCRL = usedCrls.get(id.getKey());
-			    if ( cachedCRL!=null && !crlInfo.getCreateDate().after(cachedCRL.crlInfo.getCreateDate()) ) {
-			        if (log.isDebugEnabled()) {
-			            log.debug("Retrieved CRL (from cache) with issuerDN '"+issuerDN+"', with CRL number "+crlInfo.getLastCRLNumber());
-			        }
-			        return cachedCRL.encoded;
-			    }
+		if (crlNumber > -1) {
+			// Only latest CRLs are cached, these should be the ones accessed regularly, and we don't want to fill the cache with old CRLs
+			return findSpecificCRL(issuerDN, crlNumber);
+		}
+		final Integer issuerKey = HashID.getFromSubjectDN(caCert).getKey();
+		final Map<Integer, CachedCrl> usedCrls = isDelta ? this.deltaCrls : this.crls;
+		CachedCrl cachedCrl = usedCrls.get(issuerKey);
+		if (cachedCrl == null) {
+			this.issuerKeys.put(CertTools.stringToBCDNString(issuerDN), issuerKey);
+			cachedCrl = loadCRL(issuerDN, isDelta, null);
+			usedCrls.put(issuerKey, cachedCrl);
+		} else if (isRefreshNeeded(cachedCrl, isDelta ? this.staleDeltaCrls : this.staleCrls, issuerKey)) {
+			scheduleRefresh(issuerDN, issuerKey, isDelta);
+			if (log.isDebugEnabled()) {
+				log.debug("Retrieved CRL (from cache) with issuerDN '"+issuerDN+"', with CRL number "+cachedCrl.getCrlNumber()+", checking for a newer CRL.");
 			}
-			final CRLEntity entry;
-			if (crlNumber > -1) {
-			    if (log.isDebugEnabled()) {
-			        log.debug("Getting CRL with CRL number "+crlNumber);
-			    }
-			    entry = new CRLEntity( crlInfo, this.crlSession.getCRL(issuerDN, crlNumber) );			    
-			} else {
-			    entry = new CRLEntity( crlInfo, this.crlSession.getLastCRL(issuerDN, isDelta) );
-			    // Only cache latest CRLs, these should be the ones accessed regularly, and we don't want to fill the cache with old CRLs
-	            usedCrls.put(id.getKey(), entry);
+		} else if (log.isDebugEnabled()) {
+			log.debug("Retrieved CRL (from cache) with issuerDN '"+issuerDN+"', with CRL number "+cachedCrl.getCrlNumber());
+		}
+		if (cachedCrl.getEncoded() == null) {
+			if (log.isDebugEnabled()) {
+				log.debug("No CRL found with issuerDN '"+issuerDN+"', returning null.");
 			}
+			return null;
+		}
+		return cachedCrl;
+	}
+
+	private CachedCrl findSpecificCRL(final String issuerDN, final int crlNumber) {
+		if (log.isDebugEnabled()) {
+			log.debug("Getting CRL with CRL number "+crlNumber);
+		}
+		final byte[] encoded = this.crlSession.getCRL(issuerDN, crlNumber);
+		if (encoded == null) {
 			if (log.isDebugEnabled()) {
-				log.debug("Retrieved CRL (not from cache) with issuerDN '"+issuerDN+"', with CRL number "+crlInfo.getLastCRLNumber());
+				log.debug("No CRL found with issuerDN '"+issuerDN+"' and CRL number "+crlNumber+", returning null.");
+			}
+			return null;
+		}
+		long thisUpdate = 0;
+		long nextUpdate = 0;
+		try {
+			final X509CRL crl = CertTools.getCRLfromByteArray(encoded);
+			thisUpdate = crl.getThisUpdate().getTime();
+			nextUpdate = crl.getNextUpdate() == null ? 0 : crl.getNextUpdate().getTime();
+		} catch (CRLException e) {
+			log.info("Could not parse CRL with issuerDN '"+issuerDN+"' and CRL number "+crlNumber+": "+e.getMessage());
+		}
+		return new CachedCrl(encoded, crlNumber, thisUpdate, nextUpdate, System.currentTimeMillis());
+	}
+
+	private boolean isRefreshNeeded(final CachedCrl cachedCrl, final Map<Integer, Long> staleMarks, final Integer issuerKey) {
+		final long now = System.currentTimeMillis();
+		final long age = now - cachedCrl.checkTime;
+		if (age >= this.cacheTime) {
+			return true;
+		}
+		final Long staleSince = staleMarks.get(issuerKey);
+		if (staleSince == null) {
+			return false;
+		}
+		if (now - staleSince.longValue() > STALE_TIMEOUT) {
+			// The signalled CRL never showed up, for example because the transaction was rolled back
+			staleMarks.remove(issuerKey, staleSince);
+			return false;
+		}
+		return age >= STALE_RECHECK_TIME || cachedCrl.checkTime < staleSince.longValue();
+	}
+
+	private void scheduleRefresh(final String issuerDN, final Integer issuerKey, final boolean isDelta) {
+		final Set<Integer> refreshing = isDelta ? this.refreshingDeltaCrls : this.refreshingCrls;
+		if (!refreshing.add(issuerKey)) {
+			return; // Already queued
+		}
+		try {
+			this.refreshExecutor.execute(new Runnable() {
+				@Override
+				public void run() {
+					try {
+						refresh(issuerDN, issuerKey, isDelta);
+					} catch (RuntimeException e) {
+						// Keep serving the cached CRL, the database is checked again on the next request after the cache time
+						log.warn("Failed to check for a new CRL with issuerDN '"+issuerDN+"': "+e.getMessage());
+						if (log.isDebugEnabled()) {
+							log.debug("Failed to check for a new CRL.", e);
+						}
+					} finally {
+						refreshing.remove(issuerKey);
+					}
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			refreshing.remove(issuerKey);
+			log.info("Could not schedule check for a new CRL with issuerDN '"+issuerDN+"': "+e.getMessage());
+		}
+	}
+
+	private void refresh(final String issuerDN, final Integer issuerKey, final boolean isDelta) {
+		final Map<Integer, CachedCrl> usedCrls = isDelta ? this.deltaCrls : this.crls;
+		final Map<Integer, Long> staleMarks = isDelta ? this.staleDeltaCrls : this.staleCrls;
+		final CachedCrl cachedCrl = usedCrls.get(issuerKey);
+		final CachedCrl loaded = loadCRL(issuerDN, isDelta, cachedCrl);
+		if (cachedCrl != null && loaded.getCrlNumber() != cachedCrl.getCrlNumber()) {
+			// Failed CRL signals are removed in isRefreshNeeded after STALE_TIMEOUT
+			staleMarks.remove(issuerKey);
+		}
+		usedCrls.put(issuerKey, loaded);
+	}
+
+	/**
+	 * Reads the latest CRL of an issuer from the database.
+	 *
+	 * @param cachedCrl the currently cached CRL, which is returned with an updated check time if it is still the latest, or null
+	 * @return the latest CRL, or a CRL without data if the issuer has no CRL
+	 */
+	private CachedCrl loadCRL(final String issuerDN, final boolean isDelta, final CachedCrl cachedCrl) {
+		final long now = System.currentTimeMillis();
+		final CRLInfo crlInfo = this.crlSession.getLastCRLInfo(issuerDN, isDelta);
+		if (crlInfo == null) {
+			return new CachedCrl(null, -1, 0, 0, now);
+		}
+		if (cachedCrl != null && cachedCrl.getEncoded() != null && cachedCrl.getCrlNumber() == crlInfo.getLastCRLNumber()) {
+			return new CachedCrl(cachedCrl, now);
+		}
+		final byte[] encoded = this.crlSession.getLastCRL(issuerDN, isDelta);
+		if (log.isDebugEnabled()) {
+			log.debug("Retrieved CRL (not from cache) with issuerDN '"+issuerDN+"', with CRL number "+crlInfo.getLastCRLNumber());
+		}
+		final long nextUpdate = crlInfo.getExpireDate() == null ? 0 : crlInfo.getExpireDate().getTime();
+		return new CachedCrl(encoded, crlInfo.getLastCRLNumber(), crlInfo.getCreateDate().getTime(), nextUpdate, now);
+	}
+
+	/** Called when a new CRL has been stored, on this node or another node in the cluster */
+	private void markStale(final String issuerDN) {
+		final Long now = Long.valueOf(System.currentTimeMillis());
+		if (issuerDN == null) {
+			for (final Integer issuerKey : this.crls.keySet()) {
+				this.staleCrls.put(issuerKey, now);
+			}
+			for (final Integer issuerKey : this.deltaCrls.keySet()) {
+				this.staleDeltaCrls.put(issuerKey, now);
 			}
-			return entry.encoded;
-		} finally {
-			this.rebuildlock.unlock();
+			return;
+		}
+		final Integer issuerKey = this.issuerKeys.get(CertTools.stringToBCDNString(issuerDN));
+		if (log.isDebugEnabled()) {
+			log.debug("New CRL signalled for issuerDN '"+issuerDN+"'"+(issuerKey == null ? ", which is not cached." : "."));
+		}
+		if (issuerKey == null) {
+			return;
+		}
+		// We don't know whether it was a full or delta CRL, so both are checked
+		if (this.crls.containsKey(issuerKey)) {
+			this.staleCrls.put(issuerKey, now);
+		}
+		if (this.deltaCrls.containsKey(issuerKey)) {
+			this.staleDeltaCrls.put(issuerKey, now);
 		}
 	}
 }
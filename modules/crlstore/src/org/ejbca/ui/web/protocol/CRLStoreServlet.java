@@ -28,6 +28,7 @@ import org.cesecore.certificates.certificate.HashID;
 import org.cesecore.certificates.crl.CrlStoreSessionLocal;
 import org.cesecore.util.StringTools;
 import org.ejbca.core.protocol.crlstore.CRLCache;
+import org.ejbca.core.protocol.crlstore.CRLCache.CachedCrl;
 import org.ejbca.util.HTMLTools;
 
 /** 
@@ -61,7 +62,7 @@ public class CRLStoreServlet extends StoreServletBase {
 
 	@Override
 	public void iHash(String iHash, HttpServletResponse resp, HttpServletRequest req) throws IOException, ServletException {
-		returnCrl( this.crlCache.findByIssuerDN(HashID.getFromB64(iHash), isDelta(req), getCrlNumber(req, resp)), resp, iHash, isDelta(req) );		
+		returnCrl( this.crlCache.findByIssuerDN(HashID.getFromB64(iHash), isDelta(req), getCrlNumber(req, resp)), req, resp, iHash, isDelta(req) );		
 	}
 
 	@Override
@@ -71,7 +72,7 @@ public class CRLStoreServlet extends StoreServletBase {
 
 	@Override
 	public void sKIDHash(String sKIDHash, HttpServletResponse resp, HttpServletRequest req, String name) throws IOException, ServletException {
-		returnCrl( this.crlCache.findBySubjectKeyIdentifier(HashID.getFromB64(sKIDHash), isDelta(req), getCrlNumber(req, resp)), resp, name, isDelta(req) );
+		returnCrl( this.crlCache.findBySubjectKeyIdentifier(HashID.getFromB64(sKIDHash), isDelta(req), getCrlNumber(req, resp)), req, resp, name, isDelta(req) );
 	}
 
 	@Override
@@ -101,14 +102,69 @@ public class CRLStoreServlet extends StoreServletBase {
         return -1;
 	}
 
-	private void returnCrl( byte crl[], HttpServletResponse resp, String name, boolean isDelta ) throws IOException {
+	private void returnCrl( CachedCrl cachedCrl, HttpServletRequest req, HttpServletResponse resp, String name, boolean isDelta ) throws IOException {
+		final byte crl[] = cachedCrl==null ? null : cachedCrl.getEncoded();
 		if ( crl==null || crl.length<1 ) {
 			resp.sendError(HttpServletResponse.SC_NO_CONTENT, "No CRL with hash: "+HTMLTools.htmlescape(name));
 			return;
 		}
+		addCacheHeaders(cachedCrl, resp);
+		if (isNotModified(cachedCrl, req)) {
+			resp.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+			return;
+		}
 		resp.setContentType("application/pkix-crl");
 		resp.setHeader("Content-disposition", "attachment; filename=\""+(isDelta?"delta":"") + StringTools.stripFilename(name) + ".crl\"");
 		resp.setContentLength(crl.length);
 		resp.getOutputStream().write(crl);
 	}
+
+	/**
+	 * Adds the headers that let clients and HTTP caches keep the CRL until its nextUpdate, and revalidate it with a conditional request.
+	 * Same as for OCSP responses in RFC 5019 6.2, the ETag is the hex encoded SHA-1 hash of the CRL.
+	 */
+	private void addCacheHeaders(CachedCrl cachedCrl, HttpServletResponse resp) {
+		resp.setHeader("ETag", "\""+cachedCrl.getETag()+"\"");
+		if (cachedCrl.getThisUpdate() > 0) {
+			resp.setDateHeader("Last-Modified", cachedCrl.getThisUpdate());
+		}
+		final long now = System.currentTimeMillis();
+		final long nextUpdate = cachedCrl.getNextUpdate();
+		if (nextUpdate > now) {
+			resp.setDateHeader("Expires", nextUpdate); // This is overridden by max-age on HTTP/1.1 compatible components
+			resp.setHeader("Cache-Control", "max-age="+((nextUpdate-now)/1000));
+		} else {
+			// No nextUpdate, or an expired CRL, clients have to check for a new CRL every time
+			resp.setHeader("Cache-Control", "max-age=0, must-revalidate");
+		}
+	}
+
+	/** @return true if the client already has this CRL, according to the If-None-Match or If-Modified-Since header of the request */
+	private boolean isNotModified(CachedCrl cachedCrl, HttpServletRequest req) {
+		final String ifNoneMatch = req.getHeader("If-None-Match");
+		if (ifNoneMatch != null) {
+			// If-Modified-Since is ignored when If-None-Match is present (RFC 7232 3.3)
+			for (String eTag : ifNoneMatch.split(",")) {
+				eTag = eTag.trim();
+				if (eTag.startsWith("W/")) {
+					eTag = eTag.substring(2);
+				}
+				if ("*".equals(eTag) || ("\""+cachedCrl.getETag()+"\"").equals(eTag)) {
+					return true;
+				}
+			}
+			return false;
+		}
+		if (cachedCrl.getThisUpdate() <= 0) {
+			return false;
+		}
+		final long ifModifiedSince;
+		try {
+			ifModifiedSince = req.getDateHeader("If-Modified-Since");
+		} catch (IllegalArgumentException e) {
+			return false; // Invalid date, so the header is ignored
+		}
+		// HTTP dates have a resolution of seconds
+		return ifModifiedSince >= 0 && cachedCrl.getThisUpdate()/1000 <= ifModifiedSince/1000;
+	}
 }
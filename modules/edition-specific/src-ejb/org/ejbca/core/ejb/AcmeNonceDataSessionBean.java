@@ -16,11 +16,17 @@ package org.ejbca.core.ejb;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import javax.persistence.Query;
 
+import org.apache.log4j.Logger;
+import org.ejbca.acme.AcmeNonceData;
 import org.ejbca.core.protocol.acme.AcmeNonceDataSessionLocal;
 
 /**
- * Not available in Community Edition
+ * Database storage of used ACME replay nonces, for strict replay protection in a cluster.
  *
  * @version $Id: AcmeNonceDataSessionBean.java 29618 2018-08-13 18:29:05Z mikekushner $
  */
@@ -28,13 +34,42 @@ import org.ejbca.core.protocol.acme.AcmeNonceDataSessionLocal;
 @TransactionAttribute(TransactionAttributeType.SUPPORTS)
 public class AcmeNonceDataSessionBean implements AcmeNonceDataSessionLocal {
 
+    private static final Logger log = Logger.getLogger(AcmeNonceDataSessionBean.class);
+
+    /** Nonces are kept this long after they have expired, to account for clock drift between the nodes */
+    private static final long CLEAN_UP_MARGIN = 3600 * 1000L;
+
+    @PersistenceContext(unitName = "ejbca")
+    private EntityManager entityManager;
+
     @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
     public boolean useNonce(final String nonce, final long timeCreated, final long timeExpires) {
-        throw new UnsupportedOperationException("ACME calls are only supported in EJBCA Enterprise");
+        if (timeExpires < System.currentTimeMillis()) {
+            return false;
+        }
+        try {
+            entityManager.persist(new AcmeNonceData(nonce, timeExpires));
+            // Insert now, so that a nonce that has been used before fails here with a duplicate primary key, instead of at commit
+            entityManager.flush();
+            return true;
+        } catch (PersistenceException e) {
+            // The failed insert has marked the transaction for rollback, which the container does when this method returns
+            if (log.isDebugEnabled()) {
+                log.debug("Replay nonce '" + nonce + "' has already been used: " + e.getMessage());
+            }
+            return false;
+        }
     }
 
     @Override
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
     public void cleanUpExpired() {
-        throw new UnsupportedOperationException("ACME calls are only supported in EJBCA Enterprise");
+        final Query query = entityManager.createQuery("DELETE FROM AcmeNonceData a WHERE a.timeExpires<:timeExpires");
+        query.setParameter("timeExpires", System.currentTimeMillis() - CLEAN_UP_MARGIN);
+        final int removed = query.executeUpdate();
+        if (log.isDebugEnabled()) {
+            log.debug("Removed " + removed + " expired ACME replay nonces.");
+        }
     }
 }
@@ -12,16 +12,38 @@
  *************************************************************************/
 package org.ejbca.core.ejb;
 
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.annotation.PostConstruct;
 import javax.ejb.ConcurrencyManagement;
 import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.EJBTransactionRolledbackException;
 import javax.ejb.Singleton;
 import javax.ejb.TransactionManagement;
 import javax.ejb.TransactionManagementType;
 
+import org.apache.log4j.Logger;
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.bouncycastle.util.encoders.Hex;
+import org.cesecore.authentication.tokens.AlwaysAllowLocalAuthenticationToken;
+import org.cesecore.authentication.tokens.AuthenticationToken;
+import org.cesecore.authentication.tokens.UsernamePrincipal;
+import org.cesecore.authorization.AuthorizationDeniedException;
+import org.cesecore.configuration.GlobalConfigurationSessionLocal;
+import org.ejbca.config.GlobalAcmeConfiguration;
+import org.ejbca.core.protocol.acme.AcmeNonceDataSessionLocal;
 import org.ejbca.core.protocol.acme.AcmeNonceSingletonLocal;
+import org.ejbca.core.protocol.acme.AcmeReplayNonceEngine;
 
 /**
- * Not available in Community Edition
+ * Issues and validates ACME replay nonces with an {@link AcmeReplayNonceEngine}, using the shared secrets and validity of the
+ * global ACME configuration. Nonces are validated from memory, and in strict mode also marked as used in the database, so
+ * that they can not be replayed on another node.
  *
  * @version $Id: AcmeNonceSingletonBean.java 29618 2018-08-13 18:29:05Z mikekushner $
  */
@@ -31,15 +53,121 @@ import org.ejbca.core.protocol.acme.AcmeNonceSingletonLocal;
 @TransactionManagement(TransactionManagementType.BEAN)
 public class AcmeNonceSingletonBean implements AcmeNonceSingletonLocal {
 
+    private static final Logger log = Logger.getLogger(AcmeNonceSingletonBean.class);
+    private static final String HMAC_OID = PKCSObjectIdentifiers.id_hmacWithSHA256.getId();
+    private static final int SHARED_SECRET_LENGTH = 32;
+    /** Length of each window of used nonces, which is also the allowed clock difference between the nodes */
+    private static final long WINDOW_LENGTH = 60 * 1000L;
+
+    private final AuthenticationToken internalAdmin = new AlwaysAllowLocalAuthenticationToken(new UsernamePrincipal("AcmeNonceSingletonBean"));
+    private final byte[] nodeId = new byte[AcmeReplayNonceEngine.NODE_ID_LENGTH];
+    private final AtomicLong nextCleanUp = new AtomicLong();
+    private volatile AcmeReplayNonceEngine engine = null;
+    private volatile List<String> engineSecrets = null;
+
+    @EJB
+    private GlobalConfigurationSessionLocal globalConfigurationSession;
+    @EJB
+    private AcmeNonceDataSessionLocal acmeNonceDataSession;
+
+    @PostConstruct
+    public void initialize() {
+        new SecureRandom().nextBytes(nodeId);
+    }
+
     @Override
     public boolean isNonceValid(final String nonce) {
-        throw new UnsupportedOperationException("ACME calls are only supported in EJBCA Enterprise");
+        final GlobalAcmeConfiguration globalAcmeConfiguration = getGlobalAcmeConfiguration();
+        final AcmeReplayNonceEngine currentEngine = getEngine(globalAcmeConfiguration);
+        final long now = System.currentTimeMillis();
+        final long timeCreated = currentEngine.useNonce(nonce, now);
+        if (timeCreated == AcmeReplayNonceEngine.INVALID) {
+            if (log.isDebugEnabled()) {
+                log.debug("Rejected replay nonce '" + nonce + "' that is not authentic, has expired or has been used on this node.");
+            }
+            return false;
+        }
+        if (!globalAcmeConfiguration.isReplayNonceStrict()) {
+            return true;
+        }
+        cleanUpExpired(now, currentEngine.getValidity());
+        try {
+            return acmeNonceDataSession.useNonce(nonce, timeCreated, timeCreated + currentEngine.getValidity());
+        } catch (EJBTransactionRolledbackException e) {
+            if (log.isDebugEnabled()) {
+                log.debug("Rejected replay nonce '" + nonce + "' that has been used on another node.");
+            }
+            return false;
+        }
     }
 
     @Override
     public String getReplayNonce() throws IllegalStateException {
-        throw new UnsupportedOperationException("ACME calls are only supported in EJBCA Enterprise");
+        return getEngine(getGlobalAcmeConfiguration()).getReplayNonce(System.currentTimeMillis());
     }
 
+    private GlobalAcmeConfiguration getGlobalAcmeConfiguration() {
+        return (GlobalAcmeConfiguration) globalConfigurationSession.getCachedConfiguration(GlobalAcmeConfiguration.ACME_CONFIGURATION_ID);
+    }
+
+    /** @return an engine for the current shared secrets and validity. Used nonces are remembered when the shared secrets change. */
+    private AcmeReplayNonceEngine getEngine(final GlobalAcmeConfiguration globalAcmeConfiguration) {
+        final List<String> secrets = getSharedSecrets(globalAcmeConfiguration);
+        final AcmeReplayNonceEngine current = engine;
+        if (current != null && secrets.equals(engineSecrets) && current.getValidity() == globalAcmeConfiguration.getReplayNonceValidity()) {
+            return current;
+        }
+        synchronized (this) {
+            final List<byte[]> decodedSecrets = new ArrayList<>(secrets.size());
+            for (final String secret : secrets) {
+                decodedSecrets.add(Hex.decode(secret));
+            }
+            if (engine != null && engine.getValidity() == globalAcmeConfiguration.getReplayNonceValidity()) {
+                engine.setSecrets(decodedSecrets);
+            } else {
+                engine = new AcmeReplayNonceEngine(decodedSecrets, nodeId, globalAcmeConfiguration.getReplayNonceValidity(), WINDOW_LENGTH);
+            }
+            engineSecrets = new ArrayList<>(secrets);
+            return engine;
+        }
+    }
 
+    /** @return the configured shared secrets, after creating the first one if none has been configured yet */
+    private List<String> getSharedSecrets(final GlobalAcmeConfiguration globalAcmeConfiguration) {
+        try {
+            return globalAcmeConfiguration.getReplayNonceSharedSecrets(HMAC_OID);
+        } catch (IllegalStateException e) {
+            synchronized (this) {
+                final GlobalAcmeConfiguration current = getGlobalAcmeConfiguration();
+                try {
+                    return current.getReplayNonceSharedSecrets(HMAC_OID);
+                } catch (IllegalStateException e2) {
+                    log.info("Creating a shared secret for ACME replay nonces.");
+                    final byte[] secret = new byte[SHARED_SECRET_LENGTH];
+                    new SecureRandom().nextBytes(secret);
+                    current.addReplayNonceSharedSecret(HMAC_OID, secret);
+                    try {
+                        globalConfigurationSession.saveConfiguration(internalAdmin, current);
+                    } catch (AuthorizationDeniedException e3) {
+                        throw new IllegalStateException(e3);
+                    }
+                    final List<String> secrets = new ArrayList<>();
+                    secrets.add(new String(Hex.encode(secret), StandardCharsets.UTF_8));
+                    return secrets;
+                }
+            }
+        }
+    }
+
+    /** Removes expired nonces from the database, at most once per validity period on each node */
+    private void cleanUpExpired(final long now, final long validity) {
+        final long next = nextCleanUp.get();
+        if (now >= next && nextCleanUp.compareAndSet(next, now + validity)) {
+            try {
+                acmeNonceDataSession.cleanUpExpired();
+            } catch (RuntimeException e) { // NOPMD: a failed clean up will be retried later
+                log.info("Failed to remove expired ACME replay nonces: " + e.getMessage());
+            }
+        }
+    }
 }
@@ -27,8 +27,9 @@ public interface AcmeNonceDataSessionLocal {
      * @param nonce the replay nonce to store
      * @param timeCreated the time when the replay nonce was created
      * @param timeExpires the time when the replay nonce expires
-     * @return true if the given nonce has NOT been used before and has not expired, false if it has expired
-     * @throws EJBTransactionRolledbackException if the nonce is already present in the database
+     * @return true if the given nonce has NOT been used before and has not expired, false if it has expired or is already
+     *      present in the database
+     * @throws EJBTransactionRolledbackException if the nonce could not be stored for another reason
      */
     boolean useNonce(String nonce, long timeCreated, long timeExpires);
 
@@ -0,0 +1,232 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.ui.tcp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Tests the CMP TCP server over the loopback interface, with a handler that echoes the messages back.
+ *
+ * @version $Id$
+ */
+public class CmpTcpServerTest {
+
+    private static final String LOOPBACK = "127.0.0.1";
+    private static final int SOCKET_TIMEOUT = 10000;
+
+    private final EchoHandler handler = new EchoHandler();
+    private final CmpTcpServer server = new CmpTcpServer(handler);
+    private final List<Socket> sockets = new ArrayList<>();
+
+    @After
+    public void tearDown() throws IOException {
+        handler.release.countDown();
+        for (final Socket socket : sockets) {
+            socket.close();
+        }
+        server.stop();
+    }
+
+    /** Handler that echoes the CMP message back, and optionally blocks until it is released */
+    private static class EchoHandler extends CmpTcpCommandHandler {
+        private final AtomicInteger messages = new AtomicInteger();
+        private final AtomicInteger active = new AtomicInteger();
+        private final AtomicInteger maxActive = new AtomicInteger();
+        private volatile CountDownLatch release = new CountDownLatch(0);
+
+        @Override
+        public TcpReturnMessage handleMessage(final String hostAddress, final byte[] command) throws IOException {
+            messages.incrementAndGet();
+            final int nowActive = active.incrementAndGet();
+            synchronized (maxActive) {
+                maxActive.set(Math.max(maxActive.get(), nowActive));
+            }
+            try {
+                release.await(SOCKET_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                active.decrementAndGet();
+            }
+            final TcpReceivedMessage received = TcpReceivedMessage.getTcpMessage(command);
+            if (received.message == null) {
+                return null;
+            }
+            return TcpReturnMessage.createMessage(received.message, received.doClose);
+        }
+    }
+
+    private Socket connect() throws IOException {
+        final Socket socket = new Socket(LOOPBACK, server.getLocalPort());
+        socket.setSoTimeout(SOCKET_TIMEOUT);
+        sockets.add(socket);
+        return socket;
+    }
+
+    private static byte[] encode(final String payload, final boolean close) throws IOException {
+        final byte[] message = payload.getBytes(StandardCharsets.UTF_8);
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream dos = new DataOutputStream(baos);
+        dos.writeInt(message.length + 3);
+        dos.writeByte(10); // version
+        dos.writeByte(close ? 1 : 0); // flags
+        dos.writeByte(0); // pkiReq
+        dos.write(message);
+        dos.flush();
+        return baos.toByteArray();
+    }
+
+    private static void send(final Socket socket, final String payload, final boolean close) throws IOException {
+        final OutputStream out = socket.getOutputStream();
+        out.write(encode(payload, close));
+        out.flush();
+    }
+
+    /** @return the payload of the response, after checking that it is a pkiRep with the expected close flag */
+    private static String receive(final Socket socket, final boolean close) throws IOException {
+        final DataInputStream in = new DataInputStream(socket.getInputStream());
+        final int length = in.readInt();
+        assertEquals("Wrong version", 10, in.readByte());
+        assertEquals("Wrong close flag", close ? 1 : 0, in.readByte());
+        assertEquals("Response should be a pkiRep", 5, in.readByte());
+        final byte[] payload = new byte[length - 3];
+        in.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+
+    /** @return true if the server has closed the connection */
+    private static boolean isClosedByServer(final Socket socket) throws IOException {
+        return socket.getInputStream().read() == -1;
+    }
+
+    /** Messages split over several TCP segments must be put together, and several messages must be served on the same connection */
+    @Test
+    public void testFramingAndConnectionReuse() throws Exception {
+        server.start(LOOPBACK, 0, 1, 2, 10, 10, 60000);
+        final Socket socket = connect();
+        final byte[] first = encode("first message", false);
+        final OutputStream out = socket.getOutputStream();
+        // Split in the middle of the length field, and in the middle of the message
+        out.write(first, 0, 2);
+        out.flush();
+        Thread.sleep(100);
+        out.write(first, 2, 8);
+        out.flush();
+        Thread.sleep(100);
+        out.write(first, 10, first.length - 10);
+        out.flush();
+        assertEquals("first message", receive(socket, false));
+        // Two messages sent at once must be answered one by one
+        final byte[] second = encode("second message", false);
+        final byte[] third = encode("third message", true);
+        final byte[] both = new byte[second.length + third.length];
+        System.arraycopy(second, 0, both, 0, second.length);
+        System.arraycopy(third, 0, both, second.length, third.length);
+        out.write(both);
+        out.flush();
+        assertEquals("second message", receive(socket, false));
+        assertEquals("third message", receive(socket, true));
+        assertTrue("Connection should be closed when the client asks for it", isClosedByServer(socket));
+        assertEquals(3, handler.messages.get());
+    }
+
+    /** A message with an invalid length must close the connection without calling the handler */
+    @Test
+    public void testInvalidLength() throws Exception {
+        server.start(LOOPBACK, 0, 1, 2, 10, 10, 60000);
+        final Socket socket = connect();
+        final DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeInt(TcpReceivedMessage.MAX_MESSAGE_LENGTH);
+        out.flush();
+        assertTrue("Connection with too long message should be closed", isClosedByServer(socket));
+        assertEquals(0, handler.messages.get());
+        // The server should still serve other clients
+        final Socket other = connect();
+        send(other, "hello", false);
+        assertEquals("hello", receive(other, false));
+    }
+
+    /** Connections without traffic must be closed after the idle timeout, but not while a message is being processed */
+    @Test
+    public void testIdleTimeout() throws Exception {
+        server.start(LOOPBACK, 0, 1, 2, 10, 10, 200);
+        final Socket idle = connect();
+        handler.release = new CountDownLatch(1);
+        final Socket busy = connect();
+        send(busy, "slow message", false);
+        final long start = System.currentTimeMillis();
+        assertTrue("Idle connection should be closed", isClosedByServer(idle));
+        assertTrue("Idle connection was closed too late", System.currentTimeMillis() - start < 5000);
+        Thread.sleep(1500);
+        handler.release.countDown();
+        assertEquals("Connection with a message being processed should not be closed", "slow message", receive(busy, false));
+    }
+
+    /**
+     * When the worker thread is busy and the queue is full, more messages must wait without being processed, and be processed
+     * as soon as the worker thread is available.
+     */
+    @Test
+    public void testBackpressure() throws Exception {
+        handler.release = new CountDownLatch(1);
+        // One worker thread and room for one message in the queue
+        server.start(LOOPBACK, 0, 1, 1, 1, 10, 60000);
+        final List<Socket> clients = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            final Socket socket = connect();
+            send(socket, "message " + i, false);
+            clients.add(socket);
+        }
+        Thread.sleep(500);
+        assertEquals("Only one message should be processed while the worker thread is blocked", 1, handler.messages.get());
+        handler.release.countDown();
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < clients.size(); i++) {
+            assertEquals("message " + i, receive(clients.get(i), false));
+        }
+        assertTrue("Waiting messages should be handed over without waiting for the select timeout", System.currentTimeMillis() - start < 1000);
+        assertEquals(4, handler.messages.get());
+        assertEquals("Messages should be processed by one worker thread at a time", 1, handler.maxActive.get());
+        // The connections are still usable
+        send(clients.get(0), "again", false);
+        assertEquals("again", receive(clients.get(0), false));
+    }
+
+    @Test
+    public void testStop() throws Exception {
+        server.start(LOOPBACK, 0, 2, 2, 10, 10, 60000);
+        final Socket socket = connect();
+        send(socket, "hello", false);
+        assertEquals("hello", receive(socket, false));
+        server.stop();
+        assertEquals(-1, server.getLocalPort());
+        assertTrue("Connections should be closed when the server stops", isClosedByServer(socket));
+    }
+}
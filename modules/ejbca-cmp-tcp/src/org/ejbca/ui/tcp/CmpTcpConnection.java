@@ -0,0 +1,184 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+
+package org.ejbca.ui.tcp;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+/**
+ * State of a client connection to the {@link CmpTcpServer}.
+ *
+ * Messages are framed as described in the CMP TCP transport draft (see RFC 4210), with a 32 bit length followed by
+ * version, flags, message type and the CMP message. Only one message per connection is processed at a time, the
+ * connection is not read from while a message is processed or the response is written.
+ *
+ * All methods except {@link #setResponse(TcpReturnMessage)} are only called from the I/O thread that owns the connection.
+ *
+ * @version $Id$
+ */
+class CmpTcpConnection {
+
+    /** Length of the length field of a TCP message */
+    private static final int LENGTH_FIELD_LENGTH = 4;
+    /** Length of the version, flags and message type fields of a TCP message */
+    private static final int MIN_MESSAGE_LENGTH = 3;
+
+    private final SocketChannel channel;
+    private final String hostAddress;
+    private final ByteBuffer lengthBuffer = ByteBuffer.allocate(LENGTH_FIELD_LENGTH);
+    private ByteBuffer messageBuffer = null;
+    private ByteBuffer writeBuffer = null;
+    private SelectionKey key;
+    private long lastActivity;
+    /** True from the time a complete message has been received, until the response has been written */
+    private boolean busy = false;
+    private boolean closeAfterWrite = false;
+    /** A received message that is waiting for a worker thread */
+    private byte[] waitingMessage = null;
+    /** The response from the worker thread, handed over to the I/O thread */
+    private volatile TcpReturnMessage response = null;
+
+    CmpTcpConnection(final SocketChannel channel, final long now) {
+        this.channel = channel;
+        this.lastActivity = now;
+        final SocketAddress remoteAddress = channel.socket().getRemoteSocketAddress();
+        if (remoteAddress instanceof InetSocketAddress) {
+            this.hostAddress = ((InetSocketAddress) remoteAddress).getAddress().getHostAddress();
+        } else {
+            this.hostAddress = String.valueOf(remoteAddress);
+        }
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    String getHostAddress() {
+        return hostAddress;
+    }
+
+    SelectionKey getKey() {
+        return key;
+    }
+
+    void setKey(final SelectionKey key) {
+        this.key = key;
+    }
+
+    boolean isBusy() {
+        return busy;
+    }
+
+    long getLastActivity() {
+        return lastActivity;
+    }
+
+    byte[] getWaitingMessage() {
+        return waitingMessage;
+    }
+
+    void setWaitingMessage(final byte[] waitingMessage) {
+        this.waitingMessage = waitingMessage;
+    }
+
+    /**
+     * Reads available data from the client.
+     *
+     * @param now the current time
+     * @param maxMessageLength the maximum length of a message, as given in the length field
+     * @return a complete TCP message, including the length field, or null if the message has not been completely received yet
+     * @throws EOFException if the client has closed the connection
+     * @throws IOException if reading fails, or the client sent an invalid message length
+     */
+    byte[] read(final long now, final int maxMessageLength) throws IOException {
+        if (messageBuffer == null) {
+            if (channel.read(lengthBuffer) < 0) {
+                throw new EOFException();
+            }
+            lastActivity = now;
+            if (lengthBuffer.hasRemaining()) {
+                return null;
+            }
+            lengthBuffer.flip();
+            final int length = lengthBuffer.getInt();
+            lengthBuffer.clear();
+            if (length < MIN_MESSAGE_LENGTH || length >= maxMessageLength) {
+                throw new IOException("Invalid message length " + length + " from " + hostAddress);
+            }
+            messageBuffer = ByteBuffer.allocate(LENGTH_FIELD_LENGTH + length);
+            messageBuffer.putInt(length);
+        }
+        if (channel.read(messageBuffer) < 0) {
+            throw new EOFException();
+        }
+        lastActivity = now;
+        if (messageBuffer.hasRemaining()) {
+            return null;
+        }
+        final byte[] ret = messageBuffer.array();
+        messageBuffer = null;
+        busy = true;
+        return ret;
+    }
+
+    /** Called by a worker thread when a message has been processed. A null response means that the connection should be closed. */
+    void setResponse(final TcpReturnMessage response) {
+        this.response = response;
+    }
+
+    /**
+     * Starts writing the response set by {@link #setResponse(TcpReturnMessage)}.
+     *
+     * @return false if there is no response, and the connection should be closed
+     */
+    boolean startWrite() {
+        final TcpReturnMessage current = response;
+        response = null;
+        if (current == null) {
+            return false;
+        }
+        writeBuffer = ByteBuffer.wrap(current.message);
+        closeAfterWrite = current.doClose;
+        return true;
+    }
+
+    /**
+     * Writes as much as possible of the response to the client.
+     *
+     * @param now the current time
+     * @return true if the whole response has been written
+     * @throws IOException if writing fails
+     */
+    boolean write(final long now) throws IOException {
+        if (channel.write(writeBuffer) > 0) {
+            lastActivity = now;
+        }
+        if (writeBuffer.hasRemaining()) {
+            return false;
+        }
+        writeBuffer = null;
+        busy = false;
+        return true;
+    }
+
+    /** @return true if the client or the server asked for the connection to be closed after the last response */
+    boolean isCloseAfterWrite() {
+        return closeAfterWrite;
+    }
+}
@@ -13,101 +13,419 @@
 
 package org.ejbca.ui.tcp;
 
-import java.io.File;
-import java.net.UnknownHostException;
-import java.util.logging.FileHandler;
-import java.util.logging.Level;
-import java.util.logging.Logger;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
 import org.ejbca.config.CmpTcpConfiguration;
-import org.quickserver.net.AppException;
-import org.quickserver.net.server.QuickServer;
 
 /**
- * Starts and stops the CMP TCP listener service
- * 
+ * Starts and stops the CMP TCP listener service.
+ *
+ * The server uses non-blocking I/O, so the number of threads does not grow with the number of client connections.
+ * An acceptor thread accepts new connections and hands them over to a small number of I/O threads, each serving its
+ * connections with a selector. Complete messages are processed by a bounded pool of worker threads. When all worker
+ * threads are busy and the work queue is full, received messages wait in the I/O thread and no more data is read from
+ * those clients, so that the clients are slowed down by TCP flow control. The waiting messages are handed over as soon as
+ * a worker thread has finished a message. Connections are kept open between messages,
+ * until the client asks for the connection to be closed or the connection has been idle for too long.
+ *
  * @version $Id: CmpTcpServer.java 19902 2014-09-30 14:32:24Z anatom $
  */
 public class CmpTcpServer {
 
-	private static final org.apache.log4j.Logger LOG = org.apache.log4j.Logger.getLogger(CmpTcpServer.class);
-	private static final String VER = "1.0";
-
-	private transient QuickServer myServer = null;
-	
-	public void start() throws UnknownHostException	{
-		final String cmdHandle = org.ejbca.ui.tcp.CmpTcpCommandHandler.class.getName();
-
-		myServer = new QuickServer();
-		myServer.setClientAuthenticationHandler(null);
-		myServer.setBindAddr(CmpTcpConfiguration.getTCPBindAdress());
-		myServer.setPort(CmpTcpConfiguration.getTCPPortNumber());
-		myServer.setName("CMP TCP Server v " + VER);
-		if(QuickServer.getVersionNo() >= 1.2) {
-			LOG.info("Using 1.2 feature");
-			myServer.setClientBinaryHandler(cmdHandle);
-			myServer.setClientEventHandler(cmdHandle);
-
-			//reduce info to Console
-			myServer.setConsoleLoggingToMicro();
-		}
-
-		//setup logger to log to file
-		Logger logger = null;
-		FileHandler txtLog = null;
-		final String logDir = CmpTcpConfiguration.getTCPLogDir();
-		final File logFile = new File(logDir + "/");
-		if(!logFile.canRead()) {
-			logFile.mkdir();
-		}
-		try	{
-			logger = Logger.getLogger("");
-			logger.setLevel(Level.INFO);
-
-			logger = Logger.getLogger("cmptcpserver");
-			logger.setLevel(Level.FINEST); 
-			txtLog = new FileHandler(logDir+"/cmptcpserver.log");
-			//reduce info 
-			txtLog.setFormatter(new org.quickserver.util.logging.MicroFormatter());
-			logger.addHandler(txtLog);
-
-			myServer.setAppLogger(logger); //imp
-
-			//myServer.setConsoleLoggingToMicro();
-			myServer.setConsoleLoggingFormatter("org.quickserver.util.logging.SimpleTextFormatter");
-			myServer.setConsoleLoggingLevel(Level.INFO);
-		} catch(Exception e){
-			LOG.error("Could not create xmlLog FileHandler : ", e);
-		}
-		try	{
-			final String confFile = CmpTcpConfiguration.getTCPConfigFile();
-			if (!StringUtils.isEmpty(confFile)) {
-				final Object config[] = new Object[] {confFile};
-				if (!myServer.initService(config)) {
-					LOG.error("Configuration from config file "+confFile+" failed!");
+	private static final Logger LOG = Logger.getLogger(CmpTcpServer.class);
+
+	/** Maximum time in milliseconds that an I/O thread waits for network events, before checking for idle connections */
+	private static final long SELECT_TIMEOUT = 1000;
+
+	private final CmpTcpCommandHandler commandHandler;
+	private ServerSocketChannel serverChannel = null;
+	private Thread acceptorThread = null;
+	private IoLoop[] ioLoops = null;
+	private ThreadPoolExecutor workers = null;
+	/** One permit for each message that can be processed or wait in the work queue, so the executor never has to reject a message */
+	private Semaphore workerCapacity = null;
+	private long idleTimeout;
+	private volatile boolean running = false;
+
+	public CmpTcpServer() {
+		this(new CmpTcpCommandHandler());
+	}
+
+	/** @param commandHandler the handler processing the messages received by the server */
+	public CmpTcpServer(final CmpTcpCommandHandler commandHandler) {
+		this.commandHandler = commandHandler;
+	}
+
+	/** Starts the server with the configuration from {@link CmpTcpConfiguration} */
+	public void start() throws IOException {
+		start(CmpTcpConfiguration.getTCPBindAdress(), CmpTcpConfiguration.getTCPPortNumber(), CmpTcpConfiguration.getTCPIoThreads(),
+				CmpTcpConfiguration.getTCPWorkerThreads(), CmpTcpConfiguration.getTCPQueueSize(), CmpTcpConfiguration.getTCPBacklog(),
+				CmpTcpConfiguration.getTCPIdleTimeout());
+	}
+
+	/**
+	 * Starts the server.
+	 *
+	 * @param bindAddress the address to listen on
+	 * @param port the port to listen on, or 0 for any free port
+	 * @param ioThreads number of threads handling network I/O
+	 * @param workerThreads number of threads processing messages
+	 * @param queueSize number of messages that can wait for a worker thread
+	 * @param backlog number of incoming connections that can wait to be accepted
+	 * @param idleTimeout time in milliseconds after which an idle connection is closed
+	 * @throws IOException if the server socket could not be opened
+	 */
+	public synchronized void start(final String bindAddress, final int port, final int ioThreads, final int workerThreads, final int queueSize,
+			final int backlog, final long idleTimeout) throws IOException {
+		if (running) {
+			throw new IllegalStateException("CMP TCP server is already running.");
+		}
+		this.idleTimeout = idleTimeout;
+		workers = new ThreadPoolExecutor(workerThreads, workerThreads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize),
+				new NamedThreadFactory("CmpTcpWorker"));
+		workerCapacity = new Semaphore(workerThreads + queueSize);
+		serverChannel = ServerSocketChannel.open();
+		serverChannel.socket().setReuseAddress(true);
+		serverChannel.socket().bind(new InetSocketAddress(bindAddress, port), backlog);
+		running = true;
+		ioLoops = new IoLoop[ioThreads];
+		final ThreadFactory ioThreadFactory = new NamedThreadFactory("CmpTcpIo");
+		for (int i = 0; i < ioThreads; i++) {
+			ioLoops[i] = new IoLoop(Selector.open());
+			ioLoops[i].thread = ioThreadFactory.newThread(ioLoops[i]);
+			ioLoops[i].thread.start();
+		}
+		acceptorThread = new NamedThreadFactory("CmpTcpAcceptor").newThread(new Runnable() {
+			@Override
+			public void run() {
+				accept();
+			}
+		});
+		acceptorThread.start();
+		LOG.info("CMP TCP server listening on " + bindAddress + ":" + getLocalPort() + " with " + ioThreads + " I/O threads and " + workerThreads
+				+ " worker threads.");
+	}
+
+	/** @return the port the server listens on, or -1 if the server is not running */
+	public int getLocalPort() {
+		final ServerSocketChannel channel = serverChannel;
+		return channel == null ? -1 : channel.socket().getLocalPort();
+	}
+
+	public synchronized void stop() {
+		if (!running) {
+			return;
+		}
+		running = false;
+		try {
+			serverChannel.close();
+		} catch (IOException e) {
+			LOG.error("Error closing server socket: ", e);
+		}
+		for (final IoLoop ioLoop : ioLoops) {
+			ioLoop.selector.wakeup();
+		}
+		workers.shutdown();
+		try {
+			acceptorThread.join(SELECT_TIMEOUT);
+			for (final IoLoop ioLoop : ioLoops) {
+				ioLoop.thread.join(SELECT_TIMEOUT);
+			}
+			if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+				LOG.warn("CMP TCP worker threads did not finish in time.");
+				workers.shutdownNow();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		serverChannel = null;
+		LOG.info("CMP TCP server stopped.");
+	}
+
+	/** Accepts new connections and distributes them over the I/O threads */
+	private void accept() {
+		int next = 0;
+		while (running) {
+			try {
+				final SocketChannel channel = serverChannel.accept();
+				channel.configureBlocking(false);
+				channel.socket().setTcpNoDelay(true);
+				ioLoops[next].addChannel(channel);
+				next = (next + 1) % ioLoops.length;
+			} catch (ClosedChannelException e) {
+				// The server is stopping
+				break;
+			} catch (IOException e) {
+				if (running) {
+					LOG.error("Error accepting CMP TCP connection: ", e);
 				}
 			}
-			myServer.startServer();	
-			//myServer.getQSAdminServer().setShellEnable(true);
-			//myServer.startQSAdminServer();			
-		} catch(AppException e){
-			LOG.error("Error in server : ", e);
 		}
 	}
 
-	public void stop() {
-		if (myServer != null) {
+	/**
+	 * Hands over a received message to the worker threads.
+	 *
+	 * @return false if all worker threads are busy and the work queue is full
+	 */
+	private boolean submit(final IoLoop ioLoop, final CmpTcpConnection connection, final byte[] message) {
+		if (!workerCapacity.tryAcquire()) {
+			return false;
+		}
+		try {
+			workers.execute(new Runnable() {
+				@Override
+				public void run() {
+					TcpReturnMessage response = null;
+					try {
+						response = commandHandler.handleMessage(connection.getHostAddress(), message);
+					} catch (IOException | RuntimeException e) {
+						LOG.error("Error processing CMP TCP message from " + connection.getHostAddress() + ": ", e);
+					} finally {
+						connection.setResponse(response);
+						workerCapacity.release();
+						ioLoop.responseReady(connection);
+						wakeUpWaiting();
+					}
+				}
+			});
+			return true;
+		} catch (RejectedExecutionException e) {
+			// The server is stopping
+			workerCapacity.release();
+			return false;
+		}
+	}
+
+	/** Wakes up the I/O threads with messages waiting for a worker thread, so they are handed over without waiting for the select timeout */
+	private void wakeUpWaiting() {
+		for (final IoLoop ioLoop : ioLoops) {
+			if (ioLoop.hasWaiting) {
+				ioLoop.selector.wakeup();
+			}
+		}
+	}
+
+	/** An I/O thread serving a number of connections with a selector */
+	private class IoLoop implements Runnable {
+		private final Selector selector;
+		private final Queue<SocketChannel> newChannels = new ConcurrentLinkedQueue<>();
+		private final Queue<CmpTcpConnection> completed = new ConcurrentLinkedQueue<>();
+		/** Connections with a received message that could not be handed over to the worker threads yet */
+		private final List<CmpTcpConnection> waiting = new ArrayList<>();
+		/** True if there are messages in {@link #waiting}, read by the worker threads */
+		private volatile boolean hasWaiting = false;
+		private Thread thread;
+		private long lastIdleCheck = System.currentTimeMillis();
+
+		private IoLoop(final Selector selector) {
+			this.selector = selector;
+		}
+
+		private void addChannel(final SocketChannel channel) {
+			newChannels.add(channel);
+			selector.wakeup();
+		}
+
+		private void responseReady(final CmpTcpConnection connection) {
+			completed.add(connection);
+			selector.wakeup();
+		}
+
+		@Override
+		public void run() {
+			try {
+				while (running) {
+					selector.select(SELECT_TIMEOUT);
+					final long now = System.currentTimeMillis();
+					registerNewChannels(now);
+					writeCompleted(now);
+					submitWaiting();
+					final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+					while (keys.hasNext()) {
+						final SelectionKey key = keys.next();
+						keys.remove();
+						final CmpTcpConnection connection = (CmpTcpConnection) key.attachment();
+						if (!key.isValid()) {
+							continue;
+						}
+						if (key.isReadable()) {
+							read(connection, now);
+						} else if (key.isWritable()) {
+							write(connection, now);
+						}
+					}
+					if (now - lastIdleCheck >= SELECT_TIMEOUT) {
+						closeIdleConnections(now);
+						lastIdleCheck = now;
+					}
+				}
+			} catch (IOException | RuntimeException e) {
+				LOG.error("Error in CMP TCP I/O thread: ", e);
+			} finally {
+				for (final SelectionKey key : selector.keys()) {
+					closeQuietly(key.channel());
+				}
+				SocketChannel channel;
+				while ((channel = newChannels.poll()) != null) {
+					closeQuietly(channel);
+				}
+				closeQuietly(selector);
+			}
+		}
+
+		private void registerNewChannels(final long now) {
+			SocketChannel channel;
+			while ((channel = newChannels.poll()) != null) {
+				final CmpTcpConnection connection = new CmpTcpConnection(channel, now);
+				try {
+					connection.setKey(channel.register(selector, SelectionKey.OP_READ, connection));
+					if (LOG.isDebugEnabled()) {
+						LOG.debug("CMP connection opened: " + connection.getHostAddress());
+					}
+				} catch (ClosedChannelException e) {
+					closeQuietly(channel);
+				}
+			}
+		}
+
+		private void read(final CmpTcpConnection connection, final long now) {
 			try {
-				myServer.stopService();
-				myServer.closeAllPools();
-			} catch (AppException e) {
-				LOG.error("Error in server : ", e);
-			} catch (Exception e) {
-				LOG.error("Error in server : ", e);
+				final byte[] message = connection.read(now, TcpReceivedMessage.MAX_MESSAGE_LENGTH);
+				if (message != null) {
+					// Don't read the next message before this one has been answered
+					connection.getKey().interestOps(0);
+					if (!submit(this, connection, message)) {
+						if (LOG.isDebugEnabled()) {
+							LOG.debug("All CMP TCP worker threads are busy, message from " + connection.getHostAddress() + " will wait.");
+						}
+						connection.setWaitingMessage(message);
+						waiting.add(connection);
+						hasWaiting = true;
+						// A worker thread may have finished before hasWaiting was set, without waking up this thread
+						submitWaiting();
+					}
+				}
+			} catch (EOFException e) {
+				close(connection, "Connection closed by client: ");
+			} catch (IOException e) {
+				LOG.info("Error reading CMP TCP message from " + connection.getHostAddress() + ": " + e.getMessage());
+				close(connection, null);
+			}
+		}
+
+		private void write(final CmpTcpConnection connection, final long now) {
+			try {
+				if (connection.write(now)) {
+					if (connection.isCloseAfterWrite()) {
+						close(connection, "Connection closed: ");
+					} else {
+						// Wait for the next message on the same connection
+						connection.getKey().interestOps(SelectionKey.OP_READ);
+					}
+				} else {
+					connection.getKey().interestOps(SelectionKey.OP_WRITE);
+				}
+			} catch (IOException e) {
+				LOG.info("Error writing CMP TCP response to " + connection.getHostAddress() + ": " + e.getMessage());
+				close(connection, null);
+			}
+		}
+
+		private void writeCompleted(final long now) {
+			CmpTcpConnection connection;
+			while ((connection = completed.poll()) != null) {
+				if (!connection.getKey().isValid()) {
+					continue;
+				}
+				if (connection.startWrite()) {
+					write(connection, now);
+				} else {
+					close(connection, "Connection closed without response: ");
+				}
+			}
+		}
+
+		private void submitWaiting() {
+			final Iterator<CmpTcpConnection> iterator = waiting.iterator();
+			while (iterator.hasNext()) {
+				final CmpTcpConnection connection = iterator.next();
+				if (!connection.getKey().isValid()) {
+					iterator.remove();
+				} else if (submit(this, connection, connection.getWaitingMessage())) {
+					connection.setWaitingMessage(null);
+					iterator.remove();
+				} else {
+					// Still no capacity, try again when the next worker thread has finished
+					break;
+				}
+			}
+			hasWaiting = !waiting.isEmpty();
+		}
+
+		private void closeIdleConnections(final long now) {
+			for (final SelectionKey key : selector.keys()) {
+				final CmpTcpConnection connection = (CmpTcpConnection) key.attachment();
+				if (key.isValid() && !connection.isBusy() && now - connection.getLastActivity() > idleTimeout) {
+					close(connection, "Idle connection closed: ");
+				}
+			}
+		}
+
+		private void close(final CmpTcpConnection connection, final String debugMessage) {
+			if (debugMessage != null && LOG.isDebugEnabled()) {
+				LOG.debug(debugMessage + connection.getHostAddress());
+			}
+			connection.getKey().cancel();
+			closeQuietly(connection.getChannel());
+		}
+	}
+
+	private static void closeQuietly(final Closeable closeable) {
+		try {
+			closeable.close();
+		} catch (IOException e) {
+			if (LOG.isDebugEnabled()) {
+				LOG.debug("Error closing CMP TCP connection: " + e.getMessage());
 			}
 		}
 	}
-}
 
+	/** Creates daemon threads with a name prefix, so the threads are easy to identify in thread dumps */
+	private static class NamedThreadFactory implements ThreadFactory {
+		private final String prefix;
+		private final AtomicInteger count = new AtomicInteger();
 
+		private NamedThreadFactory(final String prefix) {
+			this.prefix = prefix;
+		}
+
+		@Override
+		public Thread newThread(final Runnable runnable) {
+			final Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
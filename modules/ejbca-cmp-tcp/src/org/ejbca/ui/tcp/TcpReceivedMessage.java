@@ -32,6 +32,8 @@ public class TcpReceivedMessage {
 	private static final Logger log = Logger.getLogger(TcpReceivedMessage.class.getName());
 	/** Internal localization of logs and errors */
 	private static final InternalEjbcaResources intres = InternalEjbcaResources.getInstance();
+	/** Messages must be shorter than this, as given by the length field */
+	static final int MAX_MESSAGE_LENGTH = 5000;
 	/**
 	 * true if the session should be closed after returning to the client
 	 */
@@ -93,7 +95,7 @@ public class TcpReceivedMessage {
 			log.error( intres.getLocalizedMessage("cmp.errortcpwronglen", Integer.valueOf(msgLen), Integer.valueOf(len)) );
 			return new TcpReceivedMessage();// This is something malicious
 		}
-		if ( msgLen>=5000 ) {
+		if ( msgLen>=MAX_MESSAGE_LENGTH ) {
 			log.error( intres.getLocalizedMessage("cmp.errortcptoolongmsg", Integer.valueOf(msgLen)) );
 			return new TcpReceivedMessage();// This is something malicious
 		}
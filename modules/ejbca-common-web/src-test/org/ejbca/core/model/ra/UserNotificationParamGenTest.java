@@ -18,6 +18,7 @@ import org.cesecore.certificates.endentity.EndEntityType;
 import org.cesecore.certificates.endentity.EndEntityTypes;
 import org.cesecore.util.ValidityDate;
 import org.ejbca.core.model.SecConst;
+import org.ejbca.util.NotificationParamGen;
 import org.junit.Test;
 
 /** Tests some substitution variables for user notifications
@@ -71,6 +72,28 @@ public class UserNotificationParamGenTest {
                 " CN=The CA,O=Org,C=NO Revoked certificateHold 123", msg);
 		
 	}
+
+	/** Tests that a pre-parsed template gives the same result as interpolating the text directly */
+	@Test
+	public void testInterpolateTemplate() {
+		EndEntityInformation userdata =
+		        new EndEntityInformation("foo", "CN=foome,O=Org,C=SE", 123, 
+		                                 "rfc822Name=fooalt@foo.se", "fooee@foo.se", 
+		                                 EndEntityConstants.STATUS_GENERATED, 
+		                                 new EndEntityType(EndEntityTypes.ENDUSER), 
+		                                 EndEntityConstants.EMPTY_END_ENTITY_PROFILE, 
+		                                 CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER, 
+		                                 new Date(), null, SecConst.TOKEN_SOFT_P12, SecConst.NO_HARDTOKENISSUER, null);
+		userdata.setPassword("foo$123\\bar");
+		final UserNotificationParamGen paramGen = new UserNotificationParamGen(userdata);
+		final String[] inputs = { "Dear ${USERNAME},${NL}your password is ${PASSWORD} and ${unknown.KEY} stays.", "${CN}${C}", "No patterns", "", "${O}" };
+		for (final String input : inputs) {
+			final NotificationParamGen.Template template = new NotificationParamGen.Template(input);
+			assertEquals("Template gave different result for '" + input + "'", paramGen.interpolate(input), paramGen.interpolate(template));
+		}
+		assertEquals("Dear foo, password foo$123\\bar, ${unknown.KEY}",
+		        paramGen.interpolate(new NotificationParamGen.Template("Dear ${USERNAME}, password ${PASSWORD}, ${unknown.KEY}")));
+	}
 	
 
 }
@@ -0,0 +1,113 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.services.workers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import org.ejbca.core.model.services.ActionException;
+import org.ejbca.core.model.services.ActionInfo;
+import org.ejbca.core.model.services.IAction;
+import org.ejbca.core.model.services.ServiceExecutionFailedException;
+import org.ejbca.core.model.services.actions.MailActionInfo;
+import org.junit.Test;
+
+/**
+ * Tests that the status of each object is updated right after its email has been sent, also when a later email fails.
+ *
+ * @version $Id$
+ */
+public class EmailSendingWorkerTest {
+
+    /** Action that fails for one email */
+    private static class FailingAction implements IAction {
+        private final String failingReceiver;
+        private final List<String> sent = new ArrayList<>();
+
+        FailingAction(final String failingReceiver) {
+            this.failingReceiver = failingReceiver;
+        }
+
+        @Override
+        public void init(final Properties properties, final String serviceName) {
+        }
+
+        @Override
+        public void performAction(final ActionInfo actionInfo, final Map<Class<?>, Object> ejbs) throws ActionException {
+            final String receiver = ((MailActionInfo) actionInfo).getReciever();
+            if (receiver.equals(failingReceiver)) {
+                throw new ActionException("Simulated failure");
+            }
+            sent.add(receiver);
+        }
+    }
+
+    /** Worker that records status updates */
+    private static class TestWorker extends EmailSendingWorker {
+        private final IAction action;
+        private final List<String> updated = new ArrayList<>();
+
+        TestWorker(final IAction action) {
+            this.action = action;
+        }
+
+        @Override
+        protected IAction getAction() {
+            return action;
+        }
+
+        @Override
+        protected void updateStatus(final String pk, final int status) {
+            updated.add(pk);
+        }
+
+        @Override
+        public void work(final Map<Class<?>, Object> ejbs) {
+        }
+    }
+
+    private static ArrayList<EmailSendingWorker.EmailCertData> queue(final TestWorker worker, final String... fingerprints) {
+        final ArrayList<EmailSendingWorker.EmailCertData> queue = new ArrayList<>();
+        for (final String fingerprint : fingerprints) {
+            queue.add(worker.new EmailCertData(fingerprint, new MailActionInfo(fingerprint + "@example.com", "Subject", "Message")));
+        }
+        return queue;
+    }
+
+    @Test
+    public void testStatusUpdatedAfterEachEmail() throws Exception {
+        final FailingAction action = new FailingAction("c@example.com");
+        final TestWorker worker = new TestWorker(action);
+        try {
+            worker.sendEmails(queue(worker, "a", "b", "c", "d"), null);
+            fail("Failing email should abort sending");
+        } catch (ServiceExecutionFailedException e) {
+            // Expected
+        }
+        assertEquals(Arrays.asList("a@example.com", "b@example.com"), action.sent);
+        assertEquals("Emails sent before the failure should have their status updated", Arrays.asList("a", "b"), worker.updated);
+    }
+
+    @Test
+    public void testAllStatusUpdated() throws Exception {
+        final TestWorker worker = new TestWorker(new FailingAction(null));
+        worker.sendEmails(queue(worker, "a", "b", "c"), null);
+        assertEquals(Arrays.asList("a", "b", "c"), worker.updated);
+    }
+}
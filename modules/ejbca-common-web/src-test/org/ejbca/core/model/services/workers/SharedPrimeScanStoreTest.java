@@ -0,0 +1,129 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.services.workers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Tests the disk backed store of the shared prime scan worker.
+ *
+ * @version $Id$
+ */
+public class SharedPrimeScanStoreTest {
+
+    private static final long OVERLAP = 1000;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final Random random = new Random(4711);
+
+    private BigInteger prime() {
+        return BigInteger.probablePrime(64, random);
+    }
+
+    private static Set<BigInteger> moduli(final BigInteger... moduli) {
+        return new LinkedHashSet<>(Arrays.asList(moduli));
+    }
+
+    private static Map<String, Long> certificates(final long updateTime, final String... fingerprints) {
+        final Map<String, Long> ret = new HashMap<>();
+        for (final String fingerprint : fingerprints) {
+            ret.put(fingerprint, updateTime);
+        }
+        return ret;
+    }
+
+    /** Stored moduli must be spread over chunk files, and moduli in every chunk must be compared with new ones */
+    @Test
+    public void testChunkRollover() throws IOException {
+        final File directory = folder.newFolder();
+        final SharedPrimeScanStore store = new SharedPrimeScanStore(directory, 3, OVERLAP);
+        final BigInteger shared = prime();
+        final BigInteger first = shared.multiply(prime());
+        assertTrue(store.scanAndAdd(moduli(first, prime().multiply(prime())), certificates(1, "a", "b")).isEmpty());
+        assertTrue(store.scanAndAdd(moduli(prime().multiply(prime()), prime().multiply(prime()), prime().multiply(prime())),
+                certificates(2, "c", "d", "e")).isEmpty());
+        assertEquals(5, store.getSize());
+        assertTrue(new File(directory, "moduli-1.bin").exists());
+        final BigInteger last = shared.multiply(prime());
+        final Set<BigInteger> hits = store.scanAndAdd(moduli(prime().multiply(prime()), last), certificates(3, "f", "g"));
+        assertEquals(moduli(last, first), hits);
+        assertEquals(7, store.getSize());
+        assertTrue(new File(directory, "moduli-2.bin").exists());
+    }
+
+    /** A modulus that is already stored must not be reported as sharing a factor with itself, nor be stored again */
+    @Test
+    public void testDuplicateModulus() throws IOException {
+        final SharedPrimeScanStore store = new SharedPrimeScanStore(folder.newFolder(), 2, OVERLAP);
+        final BigInteger modulus = prime().multiply(prime());
+        assertTrue(store.scanAndAdd(moduli(modulus, prime().multiply(prime()), prime().multiply(prime())), certificates(1, "a", "b", "c")).isEmpty());
+        assertTrue(store.scanAndAdd(moduli(modulus), certificates(2, "d")).isEmpty());
+        assertEquals(3, store.getSize());
+    }
+
+    /** A new store on the same directory must continue where the previous one stopped */
+    @Test
+    public void testResume() throws IOException {
+        final File directory = folder.newFolder();
+        final BigInteger shared = prime();
+        final BigInteger first = shared.multiply(prime());
+        final SharedPrimeScanStore store = new SharedPrimeScanStore(directory, 10, OVERLAP);
+        assertEquals(0, store.getResumeUpdateTime());
+        store.scanAndAdd(moduli(first), certificates(5000, "a"));
+        store.saveScanPosition(certificates(5500, "b"));
+
+        final SharedPrimeScanStore resumed = new SharedPrimeScanStore(directory, 10, OVERLAP);
+        assertEquals(5500, resumed.getUpdateTime());
+        assertEquals(5500 - OVERLAP, resumed.getResumeUpdateTime());
+        assertEquals(1, resumed.getSize());
+        assertTrue(resumed.isScanned("a"));
+        assertTrue(resumed.isScanned("b"));
+        final BigInteger second = shared.multiply(prime());
+        assertEquals(moduli(second, first), resumed.scanAndAdd(moduli(second), certificates(6000, "c")));
+    }
+
+    /** Fingerprints must be remembered within the overlap window only */
+    @Test
+    public void testOverlapWindow() throws IOException {
+        final SharedPrimeScanStore store = new SharedPrimeScanStore(folder.newFolder(), 10, OVERLAP);
+        store.saveScanPosition(certificates(5000, "a"));
+        // A certificate that commits late, with an update time before the last scanned one
+        store.saveScanPosition(certificates(4500, "b"));
+        assertEquals(5000, store.getUpdateTime());
+        assertTrue(store.isScanned("a"));
+        assertTrue(store.isScanned("b"));
+        store.saveScanPosition(certificates(5800, "c"));
+        assertEquals(4800, store.getResumeUpdateTime());
+        assertTrue(store.isScanned("a"));
+        assertFalse(store.isScanned("b"));
+        assertTrue(store.isScanned("c"));
+    }
+}
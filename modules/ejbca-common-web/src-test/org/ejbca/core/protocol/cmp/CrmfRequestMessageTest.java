@@ -39,6 +39,7 @@ import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
 import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1EncodableVector;
@@ -52,10 +53,14 @@ import org.bouncycastle.asn1.DEROutputStream;
 import org.bouncycastle.asn1.DERSequence;
 import org.bouncycastle.asn1.DERTaggedObject;
 import org.bouncycastle.asn1.DERUTF8String;
+import org.bouncycastle.asn1.cmp.CMPObjectIdentifiers;
+import org.bouncycastle.asn1.cmp.CertRepMessage;
+import org.bouncycastle.asn1.cmp.CertResponse;
 import org.bouncycastle.asn1.cmp.PKIBody;
 import org.bouncycastle.asn1.cmp.PKIHeader;
 import org.bouncycastle.asn1.cmp.PKIHeaderBuilder;
 import org.bouncycastle.asn1.cmp.PKIMessage;
+import org.bouncycastle.asn1.cmp.PKIStatus;
 import org.bouncycastle.asn1.crmf.AttributeTypeAndValue;
 import org.bouncycastle.asn1.crmf.CRMFObjectIdentifiers;
 import org.bouncycastle.asn1.crmf.CertReqMessages;
@@ -64,6 +69,8 @@ import org.bouncycastle.asn1.crmf.CertRequest;
 import org.bouncycastle.asn1.crmf.CertTemplateBuilder;
 import org.bouncycastle.asn1.crmf.OptionalValidity;
 import org.bouncycastle.asn1.crmf.ProofOfPossession;
+import org.bouncycastle.asn1.iana.IANAObjectIdentifiers;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
 import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
 import org.bouncycastle.asn1.x500.X500Name;
 import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
@@ -74,6 +81,7 @@ import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
 import org.bouncycastle.cms.CMSSignedGenerator;
 import org.bouncycastle.jce.X509KeyUsage;
 import org.bouncycastle.operator.OperatorCreationException;
+import org.cesecore.certificates.certificate.request.FailInfo;
 import org.cesecore.keys.util.KeyTools;
 import org.cesecore.util.Base64;
 import org.cesecore.util.CertTools;
@@ -151,6 +159,112 @@ public class CrmfRequestMessageTest {
 	    }
 	}
 
+    @Test
+    public void testMultipleCertReqMsg() throws Exception {
+        final PKIMessage multiMessage = createMultiCertReqMsgPKIMessage();
+        final CrmfRequestMessage crmf = new CrmfRequestMessage(multiMessage, "CN=SomeCA", true, null);
+        assertEquals("Wrong number of CertReqMsg", 2, crmf.getCertReqMsgCount());
+        assertEquals("The first CertReqMsg should be used for the message itself", "CN=subject1", crmf.getSubjectDN());
+        assertFalse(crmf.isResponseProtectionDeferred());
+        final List<CrmfRequestMessage> requests = crmf.getCertReqMsgRequests();
+        assertEquals(2, requests.size());
+        assertEquals(4, requests.get(0).getRequestId());
+        assertEquals("CN=subject1", requests.get(0).getSubjectDN());
+        assertEquals(5, requests.get(1).getRequestId());
+        assertEquals("CN=subject2", requests.get(1).getSubjectDN());
+        for (final CrmfRequestMessage request : requests) {
+            assertTrue("Response protection should be deferred for requests in a multi request message", request.isResponseProtectionDeferred());
+            assertEquals(crmf.getTransactionId(), request.getTransactionId());
+            assertEquals(crmf.getSenderNonce(), request.getSenderNonce());
+            assertEquals(0, request.getRequestType());
+        }
+        // The right CertReqMsg should be used after serialization as well
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(requests.get(1));
+        final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()));
+        final CrmfRequestMessage deserialized = (CrmfRequestMessage) ois.readObject();
+        assertEquals(5, deserialized.getRequestId());
+        assertEquals("CN=subject2", deserialized.getSubjectDN());
+    }
+
+    @Test
+    public void testMultipleCertResponses() throws Exception {
+        final CrmfRequestMessage crmf = new CrmfRequestMessage(createMultiCertReqMsgPKIMessage(), "CN=SomeCA", true, null);
+        final List<CrmfRequestMessage> requests = crmf.getCertReqMsgRequests();
+        final String pbeDigestAlg = OIWObjectIdentifiers.idSHA1.getId();
+        final String pbeMacAlg = IANAObjectIdentifiers.hmacSHA1.getId();
+        final KeyPair keys = KeyTools.genKeys("512", "RSA");
+        final X509Certificate cert = CertTools.genSelfCert("CN=subject1", 10, null, keys.getPrivate(), keys.getPublic(), "SHA256WithRSA", false);
+        // The first request is granted, with a response that is not protected by itself
+        final CrmfRequestMessage first = requests.get(0);
+        first.setPbeParameters("keyId", "password", pbeDigestAlg, pbeMacAlg, 1024);
+        final CmpResponseMessage firstResponse = new CmpResponseMessage();
+        firstResponse.setProtectionParamsFromRequest(first);
+        firstResponse.setRequestId(first.getRequestId());
+        firstResponse.setRequestType(first.getRequestType());
+        firstResponse.setCertificate(cert);
+        assertTrue(firstResponse.create());
+        assertNull("A response to a single request in a multi request message should not be protected", firstResponse.getResponseMessage());
+        // The second request fails
+        final CmpErrorResponseMessage secondResponse = new CmpErrorResponseMessage();
+        secondResponse.setFailInfo(FailInfo.INCORRECT_DATA);
+        secondResponse.setFailText("Wrong subject");
+
+        final CmpMultiCertResponseMessage resp = new CmpMultiCertResponseMessage(crmf);
+        resp.addResponse(first.getRequestId(), firstResponse);
+        resp.addResponse(requests.get(1).getRequestId(), secondResponse);
+        assertTrue(resp.create());
+        final PKIMessage respMessage = PKIMessage.getInstance(resp.getResponseMessage());
+        assertEquals("Response should be protected once with PBE", CMPObjectIdentifiers.passwordBasedMac, respMessage.getHeader().getProtectionAlg().getAlgorithm());
+        assertNotNull(respMessage.getProtection());
+        assertEquals("Response to an ir should be an ip", PKIBody.TYPE_INIT_REP, respMessage.getBody().getType());
+        final CertResponse[] certResponses = CertRepMessage.getInstance(respMessage.getBody().getContent()).getResponse();
+        assertEquals(2, certResponses.length);
+        assertEquals(4, certResponses[0].getCertReqId().getValue().intValue());
+        assertEquals(PKIStatus.GRANTED, certResponses[0].getStatus().getStatus().intValue());
+        assertNotNull(certResponses[0].getCertifiedKeyPair());
+        assertEquals(5, certResponses[1].getCertReqId().getValue().intValue());
+        assertEquals(PKIStatus.REJECTION, certResponses[1].getStatus().getStatus().intValue());
+        assertEquals("Wrong subject", certResponses[1].getStatus().getStatusString().getStringAt(0).getString());
+    }
+
+    /** A response where every certificate request was rejected must be protected with the RA shared secret as well */
+    @Test
+    public void testMultipleCertResponsesAllRejected() throws Exception {
+        final CrmfRequestMessage crmf = new CrmfRequestMessage(createMultiCertReqMsgPKIMessage(), "CN=SomeCA", true, null);
+        final List<CrmfRequestMessage> requests = crmf.getCertReqMsgRequests();
+        final CmpMultiCertResponseMessage resp = new CmpMultiCertResponseMessage(crmf);
+        for (final CrmfRequestMessage request : requests) {
+            final CmpErrorResponseMessage errorResponse = new CmpErrorResponseMessage();
+            errorResponse.setFailInfo(FailInfo.INCORRECT_DATA);
+            errorResponse.setFailText("Wrong subject");
+            resp.addResponse(request.getRequestId(), errorResponse);
+        }
+        resp.setPbeParameters("keyId", "password", OIWObjectIdentifiers.idSHA1.getId(), IANAObjectIdentifiers.hmacSHA1.getId(), 1024);
+        assertTrue(resp.create());
+        final PKIMessage respMessage = PKIMessage.getInstance(resp.getResponseMessage());
+        assertEquals("Response should be protected with PBE", CMPObjectIdentifiers.passwordBasedMac, respMessage.getHeader().getProtectionAlg().getAlgorithm());
+        assertNotNull(respMessage.getProtection());
+        final CertResponse[] certResponses = CertRepMessage.getInstance(respMessage.getBody().getContent()).getResponse();
+        assertEquals(2, certResponses.length);
+        for (final CertResponse certResponse : certResponses) {
+            assertEquals(PKIStatus.REJECTION, certResponse.getStatus().getStatus().intValue());
+        }
+    }
+
+    /** Creates an ir with two certificate requests, with certReqId 4 and 5 */
+    private PKIMessage createMultiCertReqMsgPKIMessage() throws InvalidAlgorithmParameterException, IOException {
+        final PKIMessage first = createPKIMessage("CN=bogusIssuer", "CN=subject1");
+        final PKIMessage second = createPKIMessage("CN=bogusIssuer", "CN=subject2");
+        final CertReqMsg firstReq = ((CertReqMessages) first.getBody().getContent()).toCertReqMsgArray()[0];
+        final CertReqMsg secondReq = ((CertReqMessages) second.getBody().getContent()).toCertReqMsgArray()[0];
+        final CertReqMsg renumberedReq = new CertReqMsg(new CertRequest(5, secondReq.getCertReq().getCertTemplate(), null), secondReq.getPopo(),
+                secondReq.getRegInfo());
+        final CertReqMessages certReqMessages = new CertReqMessages(new CertReqMsg[] { firstReq, renumberedReq });
+        return new PKIMessage(first.getHeader(), new PKIBody(PKIBody.TYPE_INIT_REQ, certReqMessages));
+    }
+
     private PKIMessage createPKIMessage(final String issuerDN, final String subjectDN) throws InvalidAlgorithmParameterException, IOException {
 		KeyPair keys = KeyTools.genKeys("1024", "RSA");
 		ASN1EncodableVector optionalValidityV = new ASN1EncodableVector();
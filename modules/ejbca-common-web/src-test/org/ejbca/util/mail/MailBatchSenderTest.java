@@ -0,0 +1,132 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.util.mail;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import javax.mail.Address;
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.NoSuchProviderException;
+import javax.mail.Provider;
+import javax.mail.Session;
+import javax.mail.Transport;
+import javax.mail.URLName;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests sending of mails over a shared connection, using a stub SMTP transport that records the connections and messages.
+ *
+ * @version $Id$
+ */
+public class MailBatchSenderTest {
+
+    /** Stub transport registered as the "smtp" provider of the test mail session */
+    public static class StubTransport extends Transport {
+        static int connects = 0;
+        static int closes = 0;
+        static int failNextSends = 0;
+        static final List<String> subjects = new ArrayList<>();
+
+        public StubTransport(final Session session, final URLName urlname) {
+            super(session, urlname);
+        }
+
+        @Override
+        protected boolean protocolConnect(final String host, final int port, final String user, final String password) {
+            connects++;
+            return true;
+        }
+
+        @Override
+        public void sendMessage(final Message msg, final Address[] addresses) throws MessagingException {
+            if (failNextSends > 0) {
+                failNextSends--;
+                throw new MessagingException("Connection closed by stub server");
+            }
+            subjects.add(msg.getSubject());
+        }
+
+        @Override
+        public synchronized void close() throws MessagingException {
+            closes++;
+            super.close();
+        }
+    }
+
+    private Session session;
+
+    @Before
+    public void setUp() throws NoSuchProviderException {
+        StubTransport.connects = 0;
+        StubTransport.closes = 0;
+        StubTransport.failNextSends = 0;
+        StubTransport.subjects.clear();
+        session = Session.getInstance(new Properties());
+        session.setProvider(new Provider(Provider.Type.TRANSPORT, "smtp", StubTransport.class.getName(), "EJBCA", "1.0"));
+        session.setProtocolForAddress("rfc822", "smtp");
+    }
+
+    private boolean send(final MailBatchSender sender, final String subject) {
+        return sender.sendMail("ca@example.com", Arrays.asList("user@example.com"), MailSender.NO_CC, subject, "Your certificate expires soon",
+                MailSender.NO_ATTACHMENTS);
+    }
+
+    @Test
+    public void testConnectionReuse() {
+        try (final MailBatchSender sender = new MailBatchSender(session, 100)) {
+            for (int i = 0; i < 250; i++) {
+                assertTrue("Sending failed", send(sender, "Message " + i));
+            }
+            assertEquals("A new connection should be opened every 100 messages", 3, sender.getConnectionCount());
+        }
+        assertEquals(250, StubTransport.subjects.size());
+        assertEquals("Message 0", StubTransport.subjects.get(0));
+        assertEquals("Message 249", StubTransport.subjects.get(249));
+        assertEquals(3, StubTransport.connects);
+        assertEquals("All connections should be closed", 3, StubTransport.closes);
+    }
+
+    @Test
+    public void testRetryOnNewConnection() {
+        try (final MailBatchSender sender = new MailBatchSender(session, 100)) {
+            assertTrue(send(sender, "First"));
+            // The server drops the connection, the message should be retried once on a new connection
+            StubTransport.failNextSends = 1;
+            assertTrue(send(sender, "Second"));
+            assertEquals(2, sender.getConnectionCount());
+            // A message is only retried once
+            StubTransport.failNextSends = 2;
+            assertFalse(send(sender, "Third"));
+            assertTrue(send(sender, "Fourth"));
+        }
+        assertEquals(Arrays.asList("First", "Second", "Fourth"), StubTransport.subjects);
+    }
+
+    @Test
+    public void testNoRecipient() {
+        try (final MailBatchSender sender = new MailBatchSender(session, 100)) {
+            assertFalse(sender.sendMail("ca@example.com", MailSender.NO_TO, MailSender.NO_CC, "Subject", "Content", MailSender.NO_ATTACHMENTS));
+            assertEquals("No connection should be opened without anything to send", 0, sender.getConnectionCount());
+        }
+    }
+}
@@ -34,4 +34,16 @@ public class MailConfiguration {
 		return "text/plain;charset=" + EjbcaConfigurationHolder.getExpandedString("mail.contentencoding");
 	}
 
+	/**
+	 * Maximum number of messages sent over the same SMTP connection when sending many notifications at once.
+	 */
+	public static int getMailMaxMessagesPerConnection() {
+		final String value = EjbcaConfigurationHolder.getString("mail.maxmessagesperconnection");
+		try {
+			return Integer.parseInt(value.trim());
+		} catch (NumberFormatException | NullPointerException e) {
+			return 100;
+		}
+	}
+
 }
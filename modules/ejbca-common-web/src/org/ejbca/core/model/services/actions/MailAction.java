@@ -13,6 +13,7 @@
 package org.ejbca.core.model.services.actions;
 
 import java.util.Arrays;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
@@ -20,6 +21,7 @@ import org.ejbca.core.model.InternalEjbcaResources;
 import org.ejbca.core.model.services.ActionException;
 import org.ejbca.core.model.services.ActionInfo;
 import org.ejbca.core.model.services.BaseAction;
+import org.ejbca.util.mail.MailBatchSender;
 import org.ejbca.util.mail.MailException;
 import org.ejbca.util.mail.MailSender;
 
@@ -37,6 +39,16 @@ public class MailAction extends BaseAction {
     public static final String PROP_SENDERADDRESS = "action.mail.senderAddress";
     public static final String PROP_RECIEVERADDRESS = "action.mail.recieverAddress";
 
+    /** Receives a call after each mail sent by {@link MailAction#performActions} */
+    public interface MailSentCallback {
+        /**
+         * Called after a mail has been sent, or has failed to send and been logged, like {@link MailAction#performAction} does.
+         * 
+         * @param index index of the mail in the list passed to performActions
+         */
+        void sent(int index);
+    }
+
     /**
      * Sends the mail
      * 
@@ -46,30 +58,73 @@ public class MailAction extends BaseAction {
      */
     public void performAction(ActionInfo actionInfo, Map<Class<?>, Object> ejbs) throws ActionException {
         checkConfig(actionInfo);
+        final MailActionInfo mailActionInfo = (MailActionInfo) actionInfo;
+        final String reciverAddress = getRecieverAddress(mailActionInfo);
+        try {
+            MailSender.sendMailOrThrow(properties.getProperty(PROP_SENDERADDRESS), Arrays.asList(reciverAddress), MailSender.NO_CC, mailActionInfo.getSubject(),
+                    mailActionInfo.getMessage(), MailSender.NO_ATTACHMENTS);
+            logSent(mailActionInfo, reciverAddress);
+        } catch (MailException e) {
+            String msg = intres.getLocalizedMessage("services.mailaction.errorsend", reciverAddress);
+            log.info(msg, e);
+        }
+    }
 
-        MailActionInfo mailActionInfo = (MailActionInfo) actionInfo;
-        String senderAddress = properties.getProperty(PROP_SENDERADDRESS);
+    /**
+     * Sends a number of mails over a shared SMTP connection, which is much faster than calling {@link #performAction} for
+     * each mail when there are many of them.
+     * 
+     * Only supports the MailActionInfo otherwise is ActionException thrown.
+     * 
+     * @param actionInfos the mails to send
+     * @param ejbs A map between Local EJB interface classes and their injected stub
+     * @param callback called after each mail, so that the caller can record progress before the next mail is sent
+     * @throws ActionException if the configuration is invalid, or a mail has no receiver. Mails before the one with no receiver have been sent.
+     */
+    public void performActions(List<? extends ActionInfo> actionInfos, Map<Class<?>, Object> ejbs, MailSentCallback callback) throws ActionException {
+        if (actionInfos.isEmpty()) {
+            return;
+        }
+        for (final ActionInfo actionInfo : actionInfos) {
+            checkConfig(actionInfo);
+        }
+        final String senderAddress = properties.getProperty(PROP_SENDERADDRESS);
+        try (final MailBatchSender mailBatchSender = MailSender.createBatchSender()) {
+            for (int i = 0; i < actionInfos.size(); i++) {
+                final MailActionInfo mailActionInfo = (MailActionInfo) actionInfos.get(i);
+                final String reciverAddress = getRecieverAddress(mailActionInfo);
+                try {
+                    mailBatchSender.sendMailOrThrow(senderAddress, Arrays.asList(reciverAddress), MailSender.NO_CC, mailActionInfo.getSubject(),
+                            mailActionInfo.getMessage(), MailSender.NO_ATTACHMENTS);
+                    logSent(mailActionInfo, reciverAddress);
+                } catch (MailException e) {
+                    String msg = intres.getLocalizedMessage("services.mailaction.errorsend", reciverAddress);
+                    log.info(msg, e);
+                }
+                callback.sent(i);
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Sent " + actionInfos.size() + " mails using " + mailBatchSender.getConnectionCount() + " connections.");
+            }
+        }
+    }
 
+    private String getRecieverAddress(final MailActionInfo mailActionInfo) throws ActionException {
         String reciverAddress = mailActionInfo.getReciever();
         if (reciverAddress == null) {
             reciverAddress = properties.getProperty(PROP_RECIEVERADDRESS);
         }
-
         if (reciverAddress == null || reciverAddress.trim().equals("")) {
             String msg = intres.getLocalizedMessage("services.mailaction.errorreceiveraddress");
             throw new ActionException(msg);
         }
+        return reciverAddress;
+    }
 
-        try {
-            MailSender.sendMailOrThrow(senderAddress, Arrays.asList(reciverAddress), MailSender.NO_CC, mailActionInfo.getSubject(),
-                    mailActionInfo.getMessage(), MailSender.NO_ATTACHMENTS);
-            if (mailActionInfo.isLoggingEnabled()) {
-                String logmsg = intres.getLocalizedMessage("services.mailaction.sent", reciverAddress);
-                log.info(logmsg);
-            }
-        } catch (MailException e) {
-            String msg = intres.getLocalizedMessage("services.mailaction.errorsend", reciverAddress);
-            log.info(msg, e);
+    private void logSent(final MailActionInfo mailActionInfo, final String reciverAddress) {
+        if (mailActionInfo.isLoggingEnabled()) {
+            String logmsg = intres.getLocalizedMessage("services.mailaction.sent", reciverAddress);
+            log.info(logmsg);
         }
     }
 
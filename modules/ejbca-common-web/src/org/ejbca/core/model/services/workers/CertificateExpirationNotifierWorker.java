@@ -16,8 +16,11 @@ import java.security.cert.Certificate;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import org.apache.log4j.Logger;
 import org.cesecore.authorization.AuthorizationDeniedException;
@@ -32,6 +35,7 @@ import org.ejbca.core.model.SecConst;
 import org.ejbca.core.model.ra.UserNotificationParamGen;
 import org.ejbca.core.model.services.ServiceExecutionFailedException;
 import org.ejbca.core.model.services.actions.MailActionInfo;
+import org.ejbca.util.NotificationParamGen;
 
 /**
  * Makes queries about which certificates that is about to expire in a given number of days and creates a 
@@ -43,6 +47,9 @@ public class CertificateExpirationNotifierWorker extends EmailSendingWorker {
 
     private static final Logger log = Logger.getLogger(CertificateExpirationNotifierWorker.class);
 
+    /** Number of certificates that are processed, and marked as notified, together */
+    private static final int CHUNK_SIZE = 500;
+
     private CertificateStoreSessionLocal certificateStoreSession;
     private transient List<Integer> certificateProfileIds;
 
@@ -58,9 +65,6 @@ public class CertificateExpirationNotifierWorker extends EmailSendingWorker {
         certificateStoreSession = ((CertificateStoreSessionLocal) ejbs.get(CertificateStoreSessionLocal.class));
         final EndEntityAccessSessionLocal endEntityAccessSession = ((EndEntityAccessSessionLocal) ejbs.get(EndEntityAccessSessionLocal.class));
 
-        ArrayList<EmailCertData> userEmailQueue = new ArrayList<EmailCertData>();
-        ArrayList<EmailCertData> adminEmailQueue = new ArrayList<EmailCertData>();
-
         // Build Query
         Collection<String> cas = new ArrayList<String>();
         Collection<Integer> caIds = getCAIdsToCheck(false);
@@ -132,70 +136,38 @@ public class CertificateExpirationNotifierWorker extends EmailSendingWorker {
                     log.debug("Looking for expiring certificates for CAs '"+caIds+"' and certificate profiles '"+certificateProfileIds+"', with expire treshold: "+thresHold+
                             ". activeNotifiedExpireDateMin: "+now+", activeNotifiedExpireDateMax: "+(nextRunTimeStamp + thresHold)+", activeExpireDateMin: "+(runTimeStamp + thresHold));
                 }
-                try {
-                    List<Object[]> fingerprintUsernameList = certificateStoreSession.findExpirationInfo(cas, certificateProfileIds, now, (nextRunTimeStamp + thresHold),
-                            (runTimeStamp + thresHold));
-                    int count = 0;
-                    for (Object[] next : fingerprintUsernameList) {
-                        count++;
-                        // For each certificate update status.
-                        String fingerprint = (String) next[0];
-                        String username = (String) next[1];
-                        // Get the certificate through a session bean
-                        log.debug("Found a certificate we should notify. Username=" + username + ", fp=" + fingerprint);
-                        Certificate cert = certificateStoreSession.findCertificateByFingerprint(fingerprint);
-                        EndEntityInformation userData = endEntityAccessSession.findUser(getAdmin(), username);
-                        if (userData != null) {
-                            if (isSendToEndUsers()) {
-                                if (userData.getEmail() == null || userData.getEmail().trim().equals("")) {
-                                    log.info(InternalEjbcaResources.getInstance().getLocalizedMessage("services.errorworker.errornoemail", username));
-                                } else {
-                                    // Populate end user message
-                                    log.debug("Adding to email queue for user: " + userData.getEmail());
-                                    final UserNotificationParamGen userNotificationParamGen = new UserNotificationParamGen(userData, cert);
-                                    final String message = userNotificationParamGen.interpolate(getEndUserMessage());
-                                    final String subject = userNotificationParamGen.interpolate(getEndUserSubject());
-                                    final MailActionInfo mailActionInfo = new MailActionInfo(userData.getEmail(), subject, message);
-                                    userEmailQueue.add(new EmailCertData(fingerprint, mailActionInfo));
-                                }
-                            }
-                        } else {
-                            log.debug("Trying to send notification to user, but no UserData can be found for user '" + username
-                                    + "', will only send to admin if admin notifications are defined.");
-                        }
-                        if (isSendToAdmins()) {
-                            // If we did not have any user for this, we will simply use empty values for substitution
-                            if (userData == null) {
-                                userData = new EndEntityInformation();
-                                userData.setUsername(username);
-                            }
-                            // Populate admin message
-                            log.debug("Adding to email queue for admin");
-                            final UserNotificationParamGen userNotificationParamGen = new UserNotificationParamGen(userData, cert);
-                            final String message = userNotificationParamGen.interpolate(getAdminMessage());
-                            final String subject = userNotificationParamGen.interpolate(getAdminSubject());
-                            final MailActionInfo mailActionInfo = new MailActionInfo(null, subject, message);
-                            adminEmailQueue.add(new EmailCertData(fingerprint, mailActionInfo));
-                        }
-                        if (!isSendToEndUsers() && !isSendToAdmins()) {
-                            // a little bit of a kludge to make JUnit testing feasible...
-                            log.debug("nobody to notify for cert with fp:" + fingerprint);
-                            updateStatus(fingerprint, CertificateConstants.CERT_NOTIFIEDABOUTEXPIRATION);
-                        }
+                // The message templates are the same for all certificates, so only parse them once
+                final NotificationParamGen.Template endUserMessage = new NotificationParamGen.Template(getEndUserMessage());
+                final NotificationParamGen.Template endUserSubject = new NotificationParamGen.Template(getEndUserSubject());
+                final NotificationParamGen.Template adminMessage = new NotificationParamGen.Template(getAdminMessage());
+                final NotificationParamGen.Template adminSubject = new NotificationParamGen.Template(getAdminSubject());
+                // Process the certificates in chunks, so that the memory usage is bounded, and so that certificates that have been
+                // notified are marked as such even if the service run is aborted, for example by a transaction timeout
+                String lastFingerprint = null;
+                int count = 0;
+                while (true) {
+                    final List<Object[]> fingerprintUsernameList;
+                    try {
+                        fingerprintUsernameList = certificateStoreSession.findExpirationInfo(cas, certificateProfileIds, now,
+                                (nextRunTimeStamp + thresHold), (runTimeStamp + thresHold), lastFingerprint, CHUNK_SIZE);
+                    } catch (Exception fe) {
+                        log.error("Error running service work: ", fe);
+                        throw new ServiceExecutionFailedException(fe);
                     }
-                    if (count == 0) {
-                        log.debug("No certificates found for notification.");
+                    if (fingerprintUsernameList.isEmpty()) {
+                        break;
                     }
-
-                } catch (Exception fe) {
-                    log.error("Error running service work: ", fe);
-                    throw new ServiceExecutionFailedException(fe);
-                }
-                if (isSendToEndUsers()) {
-                    sendEmails(userEmailQueue, ejbs);
+                    count += fingerprintUsernameList.size();
+                    processChunk(fingerprintUsernameList, endEntityAccessSession, endUserMessage, endUserSubject, adminMessage, adminSubject, ejbs);
+                    if (fingerprintUsernameList.size() < CHUNK_SIZE) {
+                        break;
+                    }
+                    lastFingerprint = (String) fingerprintUsernameList.get(fingerprintUsernameList.size() - 1)[0];
                 }
-                if (isSendToAdmins()) {
-                    sendEmails(adminEmailQueue, ejbs);
+                if (count == 0) {
+                    log.debug("No certificates found for notification.");
+                } else if (log.isDebugEnabled()) {
+                    log.debug("Processed " + count + " certificates for expiration notification.");
                 }
             } else {
                 log.info("CAs select collection is empty, there were ids but no names?");
@@ -206,6 +178,123 @@ public class CertificateExpirationNotifierWorker extends EmailSendingWorker {
         log.trace("<CertificateExpirationNotifierWorker.work ended");
     }
 
+    /**
+     * Creates and sends the notifications for one chunk of expiring certificates. Each certificate is marked as notified right after
+     * its last notification has been sent, so that a failure part way through the chunk does not cause certificates to be notified again.
+     * 
+     * @param fingerprintUsernameList [0] = (String) fingerprint, [1] = (String) username
+     */
+    private void processChunk(final List<Object[]> fingerprintUsernameList, final EndEntityAccessSessionLocal endEntityAccessSession,
+            final NotificationParamGen.Template endUserMessage, final NotificationParamGen.Template endUserSubject,
+            final NotificationParamGen.Template adminMessage, final NotificationParamGen.Template adminSubject, final Map<Class<?>, Object> ejbs)
+            throws ServiceExecutionFailedException {
+        final List<EmailCertData> userEmailQueue = new ArrayList<>();
+        final List<EmailCertData> adminEmailQueue = new ArrayList<>();
+        // Number of emails left to send for each certificate, and certificates that have nobody to notify
+        final Map<String, Integer> pendingEmails = new HashMap<>();
+        final Set<String> notifiedFingerprints = new LinkedHashSet<>();
+        // Users often have several expiring certificates, so only look up each user once per chunk
+        final Map<String, EndEntityInformation> users = new HashMap<>();
+        try {
+            for (Object[] next : fingerprintUsernameList) {
+                String fingerprint = (String) next[0];
+                String username = (String) next[1];
+                // Get the certificate through a session bean
+                if (log.isDebugEnabled()) {
+                    log.debug("Found a certificate we should notify. Username=" + username + ", fp=" + fingerprint);
+                }
+                Certificate cert = certificateStoreSession.findCertificateByFingerprint(fingerprint);
+                EndEntityInformation userData;
+                if (users.containsKey(username)) {
+                    userData = users.get(username);
+                } else {
+                    userData = endEntityAccessSession.findUser(getAdmin(), username);
+                    users.put(username, userData);
+                }
+                if (userData != null) {
+                    if (isSendToEndUsers()) {
+                        if (userData.getEmail() == null || userData.getEmail().trim().equals("")) {
+                            log.info(InternalEjbcaResources.getInstance().getLocalizedMessage("services.errorworker.errornoemail", username));
+                        } else {
+                            // Populate end user message
+                            log.debug("Adding to email queue for user: " + userData.getEmail());
+                            final UserNotificationParamGen userNotificationParamGen = new UserNotificationParamGen(userData, cert);
+                            final String message = userNotificationParamGen.interpolate(endUserMessage);
+                            final String subject = userNotificationParamGen.interpolate(endUserSubject);
+                            final MailActionInfo mailActionInfo = new MailActionInfo(userData.getEmail(), subject, message);
+                            userEmailQueue.add(new EmailCertData(fingerprint, mailActionInfo));
+                            pendingEmails.put(fingerprint, pendingEmails.containsKey(fingerprint) ? pendingEmails.get(fingerprint) + 1 : 1);
+                        }
+                    }
+                } else {
+                    log.debug("Trying to send notification to user, but no UserData can be found for user '" + username
+                            + "', will only send to admin if admin notifications are defined.");
+                }
+                if (isSendToAdmins()) {
+                    // If we did not have any user for this, we will simply use empty values for substitution
+                    if (userData == null) {
+                        userData = new EndEntityInformation();
+                        userData.setUsername(username);
+                    }
+                    // Populate admin message
+                    log.debug("Adding to email queue for admin");
+                    final UserNotificationParamGen userNotificationParamGen = new UserNotificationParamGen(userData, cert);
+                    final String message = userNotificationParamGen.interpolate(adminMessage);
+                    final String subject = userNotificationParamGen.interpolate(adminSubject);
+                    final MailActionInfo mailActionInfo = new MailActionInfo(null, subject, message);
+                    adminEmailQueue.add(new EmailCertData(fingerprint, mailActionInfo));
+                    pendingEmails.put(fingerprint, pendingEmails.containsKey(fingerprint) ? pendingEmails.get(fingerprint) + 1 : 1);
+                }
+                if (!isSendToEndUsers() && !isSendToAdmins()) {
+                    // a little bit of a kludge to make JUnit testing feasible...
+                    log.debug("nobody to notify for cert with fp:" + fingerprint);
+                    notifiedFingerprints.add(fingerprint);
+                }
+            }
+        } catch (Exception fe) {
+            log.error("Error running service work: ", fe);
+            throw new ServiceExecutionFailedException(fe);
+        }
+        // Update the status of the certificates that have nobody to notify in one transaction
+        updateStatus(notifiedFingerprints, CertificateConstants.CERT_NOTIFIEDABOUTEXPIRATION);
+        final EmailSentCallback callback = new EmailSentCallback() {
+            @Override
+            public void sent(final EmailCertData emailCertData) {
+                final String fingerprint = emailCertData.getFingerPrint();
+                final int left = pendingEmails.get(fingerprint) - 1;
+                if (left == 0) {
+                    pendingEmails.remove(fingerprint);
+                    updateStatus(fingerprint, CertificateConstants.CERT_NOTIFIEDABOUTEXPIRATION);
+                } else {
+                    pendingEmails.put(fingerprint, left);
+                }
+            }
+        };
+        if (isSendToEndUsers()) {
+            sendEmails(userEmailQueue, ejbs, callback);
+        }
+        if (isSendToAdmins()) {
+            sendEmails(adminEmailQueue, ejbs, callback);
+        }
+    }
+
+    @Override
+    protected void updateStatus(Collection<String> pks, int status) {
+        if (pks.isEmpty()) {
+            return;
+        }
+        try {
+            final int updated = certificateStoreSession.setStatus(getAdmin(), pks, status);
+            if (updated != pks.size()) {
+                log.error("Error updating certificate status for " + (pks.size() - updated) + " of " + pks.size() + " certificates.");
+            }
+        } catch (AuthorizationDeniedException e) {
+            // Should not be possible...
+            log.error("Internal admin not authorized: ", e);
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * Method that must be implemented by all subclasses to EmailSendingWorker, used to update status of a certificate, user, or similar
      * 
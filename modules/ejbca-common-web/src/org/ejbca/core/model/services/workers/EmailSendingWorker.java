@@ -14,13 +14,16 @@
 package org.ejbca.core.model.services.workers;
 
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 import org.apache.log4j.Logger;
 import org.cesecore.certificates.certificate.CertificateConstants;
 import org.ejbca.core.model.services.BaseWorker;
+import org.ejbca.core.model.services.IAction;
 import org.ejbca.core.model.services.ServiceExecutionFailedException;
+import org.ejbca.core.model.services.actions.MailAction;
 import org.ejbca.core.model.services.actions.MailActionInfo;
 import org.ejbca.core.model.services.workers.EmailSendingWorkerConstants;
 
@@ -60,6 +63,11 @@ public abstract class EmailSendingWorker extends BaseWorker {
 		}
 	}
 
+	/** Receives a call after each email sent by {@link EmailSendingWorker#sendEmails(List, Map, EmailSentCallback)} */
+	protected interface EmailSentCallback {
+		void sent(EmailCertData emailCertData);
+	}
+
 	/** Method that must be implemented by all subclasses to EmailSendingWorker, used to update status of 
 	 * a certificate, user, or similar
 	 * @param pk primary key of object to update
@@ -67,17 +75,57 @@ public abstract class EmailSendingWorker extends BaseWorker {
 	 */
 	protected abstract void updateStatus(String pk, int status);
 	
+	/** Used to update the status of a number of certificates, users, or similar. The default implementation calls 
+	 * {@link #updateStatus(String, int)} for each primary key, subclasses may override it with a bulk update.
+	 * @param pks primary keys of the objects to update
+	 * @param status status to update to 
+	 */
+	protected void updateStatus(Collection<String> pks, int status) {
+		for (final String pk : pks) {
+			updateStatus(pk, status);
+		}
+	}
+
+	/** Sends the emails in the queue, and updates the status of each object right after its email has been sent. */
 	protected void sendEmails(ArrayList<EmailCertData> queue, Map<Class<?>, Object> ejbs) throws ServiceExecutionFailedException {
-		Iterator<EmailCertData> iter = queue.iterator();
-		while(iter.hasNext()){			
-			try{
-				EmailCertData next = iter.next();								
-				getAction().performAction(next.getActionInfo(), ejbs);
-				updateStatus(next.getFingerPrint(), CertificateConstants.CERT_NOTIFIEDABOUTEXPIRATION);
-			} catch (Exception fe) {
-				log.error("Error sending emails: ", fe);
-				throw new ServiceExecutionFailedException(fe);
-			} 
+		sendEmails(queue, ejbs, new EmailSentCallback() {
+			@Override
+			public void sent(final EmailCertData emailCertData) {
+				updateStatus(emailCertData.getFingerPrint(), CertificateConstants.CERT_NOTIFIEDABOUTEXPIRATION);
+			}
+		});
+	}
+
+	/**
+	 * Sends the emails in the queue, and calls the callback after each email, so that a failure does not leave the status of
+	 * already sent emails unrecorded. When the configured action is a {@link MailAction} all emails are sent over a shared connection.
+	 */
+	protected void sendEmails(final List<EmailCertData> queue, Map<Class<?>, Object> ejbs, final EmailSentCallback callback) throws ServiceExecutionFailedException {
+		if (queue.isEmpty()) {
+			return;
+		}
+		final IAction action = getAction();
+		try {
+			if (action instanceof MailAction) {
+				final List<MailActionInfo> actionInfos = new ArrayList<MailActionInfo>(queue.size());
+				for (final EmailCertData next : queue) {
+					actionInfos.add(next.getActionInfo());
+				}
+				((MailAction) action).performActions(actionInfos, ejbs, new MailAction.MailSentCallback() {
+					@Override
+					public void sent(final int index) {
+						callback.sent(queue.get(index));
+					}
+				});
+			} else {
+				for (final EmailCertData next : queue) {
+					action.performAction(next.getActionInfo(), ejbs);
+					callback.sent(next);
+				}
+			}
+		} catch (Exception fe) {
+			log.error("Error sending emails: ", fe);
+			throw new ServiceExecutionFailedException(fe);
 		}
 	}
 
@@ -0,0 +1,277 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.services.workers;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.cesecore.keys.validation.BatchGcd;
+
+/**
+ * Disk backed store of all RSA moduli scanned so far by the {@link SharedPrimeScanWorker}.
+ *
+ * The moduli are kept in chunk files of at most chunkSize moduli each, so that only one chunk plus the batch of new moduli
+ * has to be kept in memory during a scan. The store also holds the position in the certificate table up to which
+ * certificates have been scanned, so the next scan only has to process newly issued or updated certificates.
+ * <p>
+ * The update time of a certificate is set before its transaction commits, so a certificate can become visible after
+ * certificates with a later update time have been scanned. Scans therefore resume an overlap window before the last scanned
+ * update time, and the fingerprints of the certificates scanned within the window are kept, so that they are skipped
+ * instead of being scanned again. Certificates that commit later than the overlap window are missed.
+ *
+ * @version $Id$
+ */
+public class SharedPrimeScanStore {
+
+    private static final Logger log = Logger.getLogger(SharedPrimeScanStore.class);
+
+    private static final String STATE_FILE = "state.properties";
+    private static final String RECENT_FILE = "recent.txt";
+    private static final String CHUNK_FILE_PREFIX = "moduli-";
+    private static final String CHUNK_FILE_SUFFIX = ".bin";
+    private static final String STATE_UPDATE_TIME = "updateTime";
+    private static final String STATE_CHUNK_COUNT = "chunkCount";
+    private static final String STATE_LAST_CHUNK_SIZE = "lastChunkSize";
+
+    private final File directory;
+    private final int chunkSize;
+    private final long overlapMillis;
+    private long updateTime = 0;
+    private int chunkCount = 0;
+    private int lastChunkSize = 0;
+    /** Update times of the scanned certificates within the overlap window, by fingerprint */
+    private final Map<String, Long> recent = new HashMap<>();
+
+    /**
+     * Opens the store in the given directory, creating it if it does not exist.
+     *
+     * @param directory directory for the chunk files and the scan position
+     * @param chunkSize maximum number of moduli in each chunk file
+     * @param overlapMillis how long before the last scanned update time a scan resumes, in milliseconds
+     * @throws IOException if the directory can not be created or the state can not be read
+     */
+    public SharedPrimeScanStore(final File directory, final int chunkSize, final long overlapMillis) throws IOException {
+        this.directory = directory;
+        this.chunkSize = chunkSize;
+        this.overlapMillis = overlapMillis;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Unable to create directory " + directory.getAbsolutePath());
+        }
+        final File stateFile = new File(directory, STATE_FILE);
+        if (stateFile.exists()) {
+            final Properties state = new Properties();
+            try (final InputStream is = new FileInputStream(stateFile)) {
+                state.load(is);
+            }
+            updateTime = Long.parseLong(state.getProperty(STATE_UPDATE_TIME, "0"));
+            chunkCount = Integer.parseInt(state.getProperty(STATE_CHUNK_COUNT, "0"));
+            lastChunkSize = Integer.parseInt(state.getProperty(STATE_LAST_CHUNK_SIZE, "0"));
+        }
+        final File recentFile = new File(directory, RECENT_FILE);
+        if (recentFile.exists()) {
+            try (final BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(recentFile), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    final int separator = line.indexOf(';');
+                    if (separator > 0) {
+                        recent.put(line.substring(separator + 1), Long.valueOf(line.substring(0, separator)));
+                    }
+                }
+            }
+        }
+    }
+
+    /** @return the highest update time of the scanned certificates, 0 if nothing has been scanned yet */
+    public long getUpdateTime() {
+        return updateTime;
+    }
+
+    /** @return the update time to resume scanning from, which is the overlap window before the highest scanned update time */
+    public long getResumeUpdateTime() {
+        return Math.max(0, updateTime - overlapMillis);
+    }
+
+    /** @return true if the certificate has been scanned, and its update time is within the overlap window */
+    public boolean isScanned(final String fingerprint) {
+        return recent.containsKey(fingerprint);
+    }
+
+    /** @return the number of moduli in the store (approximate if a previous run was interrupted) */
+    public long getSize() {
+        return chunkCount == 0 ? 0 : (long) (chunkCount - 1) * chunkSize + lastChunkSize;
+    }
+
+    /**
+     * Checks a batch of new moduli against each other and against all moduli in the store, then adds the new moduli to the store
+     * and saves the new scan position.
+     *
+     * Moduli in the batch that are already present in the store (for example when a key has been reused for a new certificate)
+     * are not compared to their copy, and are not stored again.
+     *
+     * @param batch new moduli to check and add, at most chunkSize
+     * @param certificates update times of all certificates read for the batch, by fingerprint, including those without an RSA key
+     * @return the moduli (both new and previously stored) that share a prime factor with another modulus
+     * @throws IOException if the chunk files can not be read or written
+     */
+    public Set<BigInteger> scanAndAdd(final Set<BigInteger> batch, final Map<String, Long> certificates) throws IOException {
+        final Set<BigInteger> ret = new LinkedHashSet<>();
+        final Set<BigInteger> remaining = new LinkedHashSet<>(batch);
+        for (int i = 0; i < chunkCount && !remaining.isEmpty(); i++) {
+            final List<BigInteger> chunk = readChunk(i);
+            final Set<BigInteger> chunkSet = new HashSet<>(chunk);
+            for (final Iterator<BigInteger> iterator = remaining.iterator(); iterator.hasNext();) {
+                if (chunkSet.contains(iterator.next())) {
+                    iterator.remove();
+                }
+            }
+            final List<BigInteger> newModuli = new ArrayList<>(remaining);
+            addHits(ret, newModuli, BatchGcd.gcdWithProduct(newModuli, chunk));
+            addHits(ret, chunk, BatchGcd.gcdWithProduct(chunk, newModuli));
+        }
+        final List<BigInteger> newModuli = new ArrayList<>(remaining);
+        addHits(ret, newModuli, BatchGcd.gcdWithOthers(newModuli));
+        append(newModuli);
+        saveScanPosition(certificates);
+        return ret;
+    }
+
+    /**
+     * Saves the scan position without adding any moduli, for batches of certificates without any RSA keys.
+     *
+     * @param certificates update times of the scanned certificates, by fingerprint
+     */
+    public void saveScanPosition(final Map<String, Long> certificates) throws IOException {
+        for (final Long certificateUpdateTime : certificates.values()) {
+            updateTime = Math.max(updateTime, certificateUpdateTime);
+        }
+        recent.putAll(certificates);
+        final long resumeUpdateTime = getResumeUpdateTime();
+        for (final Iterator<Long> iterator = recent.values().iterator(); iterator.hasNext();) {
+            if (iterator.next() < resumeUpdateTime) {
+                iterator.remove();
+            }
+        }
+        saveRecent();
+        saveState();
+    }
+
+    private void addHits(final Set<BigInteger> hits, final List<BigInteger> moduli, final BigInteger[] gcds) {
+        for (int i = 0; i < gcds.length; i++) {
+            if (gcds[i].compareTo(BigInteger.ONE) > 0) {
+                hits.add(moduli.get(i));
+            }
+        }
+    }
+
+    private File getChunkFile(final int index) {
+        return new File(directory, CHUNK_FILE_PREFIX + index + CHUNK_FILE_SUFFIX);
+    }
+
+    private List<BigInteger> readChunk(final int index) throws IOException {
+        final List<BigInteger> ret = new ArrayList<>(chunkSize);
+        final File file = getChunkFile(index);
+        if (!file.exists()) {
+            log.warn("Missing chunk file " + file.getAbsolutePath() + ". Moduli in it will not be checked.");
+            return ret;
+        }
+        try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                final int length;
+                try {
+                    length = dis.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+                final byte[] bytes = new byte[length];
+                dis.readFully(bytes);
+                ret.add(new BigInteger(1, bytes));
+            }
+        }
+        return ret;
+    }
+
+    private void append(final List<BigInteger> moduli) throws IOException {
+        int position = 0;
+        while (position < moduli.size()) {
+            if (chunkCount == 0 || lastChunkSize >= chunkSize) {
+                chunkCount++;
+                lastChunkSize = 0;
+            }
+            final int count = Math.min(chunkSize - lastChunkSize, moduli.size() - position);
+            try (final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(getChunkFile(chunkCount - 1), true)))) {
+                for (int i = position; i < position + count; i++) {
+                    final byte[] bytes = moduli.get(i).toByteArray();
+                    dos.writeInt(bytes.length);
+                    dos.write(bytes);
+                }
+            }
+            position += count;
+            lastChunkSize += count;
+        }
+    }
+
+    private void saveState() throws IOException {
+        final Properties state = new Properties();
+        state.setProperty(STATE_UPDATE_TIME, String.valueOf(updateTime));
+        state.setProperty(STATE_CHUNK_COUNT, String.valueOf(chunkCount));
+        state.setProperty(STATE_LAST_CHUNK_SIZE, String.valueOf(lastChunkSize));
+        // Write to a temporary file first, so an interrupted write does not leave a corrupt state behind
+        final File tempFile = new File(directory, STATE_FILE + ".tmp");
+        try (final OutputStream os = new FileOutputStream(tempFile)) {
+            state.store(os, "Shared prime scan position");
+        }
+        replace(tempFile, new File(directory, STATE_FILE));
+    }
+
+    private void saveRecent() throws IOException {
+        final File tempFile = new File(directory, RECENT_FILE + ".tmp");
+        try (final BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tempFile), StandardCharsets.UTF_8))) {
+            for (final Map.Entry<String, Long> entry : recent.entrySet()) {
+                writer.write(entry.getValue() + ";" + entry.getKey());
+                writer.newLine();
+            }
+        }
+        replace(tempFile, new File(directory, RECENT_FILE));
+    }
+
+    private void replace(final File tempFile, final File file) throws IOException {
+        if (file.exists() && !file.delete() || !tempFile.renameTo(file)) {
+            throw new IOException("Unable to save scan position in " + file.getAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.services.workers;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.cert.Certificate;
+import java.security.interfaces.RSAPublicKey;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.cesecore.authorization.AuthorizationDeniedException;
+import org.cesecore.certificates.certificate.CertificateData;
+import org.cesecore.certificates.certificate.CertificateDataWrapper;
+import org.cesecore.certificates.certificate.CertificateStoreSessionLocal;
+import org.ejbca.core.ejb.ca.validation.BlacklistExistsException;
+import org.ejbca.core.ejb.ca.validation.BlacklistSessionLocal;
+import org.ejbca.core.model.InternalEjbcaResources;
+import org.ejbca.core.model.services.BaseWorker;
+import org.ejbca.core.model.services.ServiceExecutionFailedException;
+import org.ejbca.core.model.validation.PublicKeyBlacklistEntry;
+
+/**
+ * Worker that looks for issued RSA keys that share a prime factor with another issued RSA key, which means that both keys
+ * can be factored. Such keys are typically the result of a key generator with too little entropy.
+ *
+ * All RSA moduli in the certificate table are compared with a batch GCD, and the affected moduli are added to the public key
+ * blacklist, so that the key blacklist validator can reject them. The moduli that have been scanned are stored in a work directory
+ * on the local file system, together with the position in the certificate table, so each run only has to process certificates
+ * that were added or updated since the previous run. Only one chunk of stored moduli is kept in memory at a time.
+ * <p>
+ * The work directory must be configured, and should be on persistent storage, since the first scan of a large database takes a
+ * long time.
+ *
+ * @version $Id$
+ */
+public class SharedPrimeScanWorker extends BaseWorker {
+
+    private static final Logger log = Logger.getLogger(SharedPrimeScanWorker.class);
+
+    /** Directory where scanned moduli and the scan position are stored. Required. */
+    public static final String PROP_WORK_DIRECTORY = "worker.sharedprimescan.workdir";
+    /** Number of moduli to keep in memory, and in each file in the work directory */
+    public static final String PROP_CHUNK_SIZE = "worker.sharedprimescan.chunksize";
+    /** Number of seconds before the last scanned update time that each run starts from, to pick up certificates that were committed late */
+    public static final String PROP_OVERLAP = "worker.sharedprimescan.overlap";
+
+    private static final String DEFAULT_CHUNK_SIZE = "20000";
+    private static final String DEFAULT_OVERLAP = "600";
+    /** Number of certificates read from the database in each query */
+    private static final int PAGE_SIZE = 1000;
+
+    /** Semaphore that tries to make sure that this job does not run several times on the same machine,
+     * since the first scan of a large database can take a lot of time.
+     */
+    private static final AtomicBoolean running = new AtomicBoolean(false);
+
+    @Override
+    public void work(Map<Class<?>, Object> ejbs) throws ServiceExecutionFailedException {
+        final CertificateStoreSessionLocal certificateStoreSession = (CertificateStoreSessionLocal) ejbs.get(CertificateStoreSessionLocal.class);
+        final BlacklistSessionLocal blacklistSession = (BlacklistSessionLocal) ejbs.get(BlacklistSessionLocal.class);
+        if (running.compareAndSet(false, true)) {
+            try {
+                final SharedPrimeScanStore store = new SharedPrimeScanStore(getWorkDirectory(), getChunkSize(), getOverlapMillis());
+                if (log.isDebugEnabled()) {
+                    log.debug("Starting shared prime scan at update time " + store.getResumeUpdateTime() + " with " + store.getSize() + " stored moduli.");
+                }
+                long cursorTime = store.getResumeUpdateTime();
+                String cursorFingerprint = "";
+                final Set<BigInteger> batch = new LinkedHashSet<>();
+                final Map<BigInteger, String> fingerprints = new HashMap<>();
+                final Map<String, Long> certificates = new HashMap<>();
+                int found = 0;
+                while (true) {
+                    final List<CertificateDataWrapper> page = certificateStoreSession.getCertificateDatasByUpdateTime(cursorTime, cursorFingerprint, PAGE_SIZE);
+                    for (final CertificateDataWrapper cdw : page) {
+                        final CertificateData certificateData = cdw.getCertificateData();
+                        cursorTime = certificateData.getUpdateTime() == null ? 0 : certificateData.getUpdateTime();
+                        cursorFingerprint = certificateData.getFingerprint();
+                        if (store.isScanned(cursorFingerprint)) {
+                            continue;
+                        }
+                        certificates.put(cursorFingerprint, cursorTime);
+                        final Certificate certificate = cdw.getCertificate();
+                        if (certificate != null && certificate.getPublicKey() instanceof RSAPublicKey) {
+                            final BigInteger modulus = ((RSAPublicKey) certificate.getPublicKey()).getModulus();
+                            if (batch.add(modulus)) {
+                                fingerprints.put(modulus, cursorFingerprint);
+                            }
+                        }
+                    }
+                    final boolean done = page.size() < PAGE_SIZE;
+                    if (batch.size() >= getChunkSize() || (done && !batch.isEmpty())) {
+                        found += blacklist(blacklistSession, store.scanAndAdd(batch, certificates), fingerprints);
+                        batch.clear();
+                        fingerprints.clear();
+                        certificates.clear();
+                    } else if (certificates.size() >= getChunkSize() || (done && !certificates.isEmpty())) {
+                        store.saveScanPosition(certificates);
+                        certificates.clear();
+                    }
+                    if (done) {
+                        break;
+                    }
+                }
+                log.info("Shared prime scan finished with " + store.getSize() + " stored moduli. Found " + found + " new keys sharing a prime factor.");
+            } catch (IOException e) {
+                log.error("Shared prime scan failed to access work directory: " + e.getMessage());
+                throw new ServiceExecutionFailedException(e);
+            } catch (AuthorizationDeniedException e) {
+                log.info("Authorization denied executing service: ", e);
+                throw new ServiceExecutionFailedException(e);
+            } finally {
+                running.set(false);
+            }
+        } else {
+            log.info(InternalEjbcaResources.getInstance().getLocalizedMessage("services.alreadyrunninginvm", SharedPrimeScanWorker.class.getName()));
+        }
+    }
+
+    /** Adds the moduli to the public key blacklist. Returns the number of moduli that were not already blacklisted. */
+    private int blacklist(final BlacklistSessionLocal blacklistSession, final Set<BigInteger> moduli, final Map<BigInteger, String> fingerprints)
+            throws AuthorizationDeniedException {
+        int ret = 0;
+        for (final BigInteger modulus : moduli) {
+            final PublicKeyBlacklistEntry entry = new PublicKeyBlacklistEntry();
+            entry.setFingerprint(PublicKeyBlacklistEntry.createFingerprint(modulus));
+            entry.setKeyspec(Integer.toString(modulus.bitLength()));
+            try {
+                blacklistSession.addBlacklistEntry(getAdmin(), entry);
+                ret++;
+                // Moduli from earlier runs are not mapped to a certificate, the key can be found in the blacklist by its fingerprint
+                final String certificateFingerprint = fingerprints.get(modulus);
+                log.info("RSA key with modulus fingerprint " + entry.getFingerprint() + " shares a prime factor with another issued key"
+                        + (certificateFingerprint != null ? " (certificate fingerprint " + certificateFingerprint + ")" : "")
+                        + ". Added to the public key blacklist.");
+            } catch (BlacklistExistsException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("RSA key with modulus fingerprint " + entry.getFingerprint() + " is already blacklisted.");
+                }
+            }
+        }
+        return ret;
+    }
+
+    private File getWorkDirectory() throws ServiceExecutionFailedException {
+        final String value = properties.getProperty(PROP_WORK_DIRECTORY);
+        if (StringUtils.isBlank(value)) {
+            throw new ServiceExecutionFailedException("The work directory " + PROP_WORK_DIRECTORY + " is not configured.");
+        }
+        return new File(value.trim());
+    }
+
+    private long getOverlapMillis() throws ServiceExecutionFailedException {
+        final String value = properties.getProperty(PROP_OVERLAP, DEFAULT_OVERLAP);
+        try {
+            final long ret = Long.parseLong(value.trim());
+            if (ret >= 0) {
+                return ret * 1000L;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through
+        }
+        throw new ServiceExecutionFailedException("Invalid value of " + PROP_OVERLAP + ": " + value);
+    }
+
+    private int getChunkSize() throws ServiceExecutionFailedException {
+        final String value = properties.getProperty(PROP_CHUNK_SIZE, DEFAULT_CHUNK_SIZE);
+        try {
+            final int ret = Integer.parseInt(value.trim());
+            if (ret > 0) {
+                return ret;
+            }
+        } catch (NumberFormatException e) {
+            // Fall through
+        }
+        throw new ServiceExecutionFailedException("Invalid value of " + PROP_CHUNK_SIZE + ": " + value);
+    }
+}
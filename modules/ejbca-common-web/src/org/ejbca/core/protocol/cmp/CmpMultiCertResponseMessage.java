@@ -0,0 +1,302 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+
+package org.ejbca.core.protocol.cmp;
+
+import java.security.InvalidKeyException;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.PrivateKey;
+import java.security.SignatureException;
+import java.security.cert.CRL;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateEncodingException;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.commons.collections.CollectionUtils;
+import org.apache.log4j.Logger;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.DERUTF8String;
+import org.bouncycastle.asn1.cmp.CMPCertificate;
+import org.bouncycastle.asn1.cmp.CMPObjectIdentifiers;
+import org.bouncycastle.asn1.cmp.CertRepMessage;
+import org.bouncycastle.asn1.cmp.CertResponse;
+import org.bouncycastle.asn1.cmp.InfoTypeAndValue;
+import org.bouncycastle.asn1.cmp.PKIBody;
+import org.bouncycastle.asn1.cmp.PKIFreeText;
+import org.bouncycastle.asn1.cmp.PKIHeaderBuilder;
+import org.bouncycastle.asn1.cmp.PKIMessage;
+import org.bouncycastle.asn1.cmp.PKIStatus;
+import org.bouncycastle.asn1.cmp.PKIStatusInfo;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.GeneralName;
+import org.bouncycastle.util.encoders.Base64;
+import org.cesecore.certificates.certificate.request.FailInfo;
+import org.cesecore.certificates.certificate.request.RequestMessage;
+import org.cesecore.certificates.certificate.request.ResponseMessage;
+import org.cesecore.certificates.certificate.request.ResponseStatus;
+import org.cesecore.util.CertTools;
+
+/**
+ * CMP certificate response message to a PKIMessage with several certificate requests (CertReqMsg).
+ *
+ * Each certificate request is processed as a separate {@link CrmfRequestMessage}, see {@link CrmfRequestMessage#getCertReqMsgRequests()},
+ * which gives an unprotected {@link CmpResponseMessage}, or an error message if the request failed. This message combines the
+ * certificate responses into a single CertRepMessage with one CertResponse for each request, which is protected only once,
+ * with PBE or signed by the CA, in the same way as a {@link CmpResponseMessage}. If no certificate was issued, the message is
+ * protected with the PBE parameters set by {@link #setPbeParameters(String, String, String, String, int)}, if any.
+ *
+ * @version $Id$
+ */
+public class CmpMultiCertResponseMessage extends BaseCmpMessage implements ResponseMessage {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Logger log = Logger.getLogger(CmpMultiCertResponseMessage.class);
+
+    /** The encoded response message */
+    private byte[] responseMessage = null;
+    private int requestType;
+    private boolean implicitConfirm = false;
+    /** The certReqIds of the requests, in the same order as the responses */
+    private final List<Integer> requestIds = new ArrayList<>();
+    /** The responses to the separate requests */
+    private transient List<ResponseMessage> responses = new ArrayList<>();
+
+    /**
+     * Creates a response to a PKIMessage with several certificate requests. The sender and recipient, nonces and transaction ID
+     * are taken from the request, and the responses are added with {@link #addResponse(int, ResponseMessage)}.
+     *
+     * @param request the request message with several CertReqMsg
+     */
+    public CmpMultiCertResponseMessage(final CrmfRequestMessage request) {
+        setSender(request.getRecipient());
+        setRecipient(request.getSender());
+        setRecipientNonce(request.getSenderNonce());
+        setSenderNonce(new String(Base64.encode(CmpMessageHelper.createSenderNonce())));
+        if (request.getTransactionId() != null) {
+            setTransactionId(request.getTransactionId());
+        } else {
+            // Choose a random transaction ID if the client did not provide one
+            setTransactionId(new String(Base64.encode(CmpMessageHelper.createSenderNonce())));
+        }
+        this.requestType = request.getRequestType();
+        this.implicitConfirm = request.isImplicitConfirm();
+    }
+
+    /**
+     * Adds the response to one of the certificate requests.
+     *
+     * @param requestId the certReqId of the request
+     * @param response the response to the request, a {@link CmpResponseMessage} with deferred protection or an error message
+     */
+    public void addResponse(final int requestId, final ResponseMessage response) {
+        requestIds.add(requestId);
+        responses.add(response);
+    }
+
+    @Override
+    public boolean create() throws InvalidKeyException, NoSuchAlgorithmException, NoSuchProviderException {
+        final CertResponse[] certResponses = new CertResponse[responses.size()];
+        final List<CMPCertificate> caPubs = new ArrayList<>();
+        // The response to the first accepted request decides how the whole message is protected
+        CmpResponseMessage protectingResponse = null;
+        for (int i = 0; i < responses.size(); i++) {
+            final ResponseMessage response = responses.get(i);
+            CertResponse certResponse = null;
+            if (response instanceof CmpResponseMessage && ((CmpResponseMessage) response).isProtectionDeferred()) {
+                final CmpResponseMessage cmpResponse = (CmpResponseMessage) response;
+                certResponse = cmpResponse.getCertResponse();
+                for (final CMPCertificate caPub : cmpResponse.getCaPubs()) {
+                    if (!caPubs.contains(caPub)) {
+                        caPubs.add(caPub);
+                    }
+                }
+                if (protectingResponse == null && cmpResponse.getStatus() == ResponseStatus.SUCCESS) {
+                    protectingResponse = cmpResponse;
+                }
+            }
+            if (certResponse == null) {
+                certResponse = new CertResponse(new ASN1Integer(requestIds.get(i)), createRejectionStatusInfo(response));
+            }
+            certResponses[i] = certResponse;
+        }
+        final CertRepMessage certRepMessage = new CertRepMessage(caPubs.isEmpty() ? null : caPubs.toArray(new CMPCertificate[caPubs.size()]),
+                certResponses);
+        final int respType = requestType + 1; // 1 = initialization response, 3 = certification response etc
+        if (log.isDebugEnabled()) {
+            log.debug("Creating response body of type " + respType + " with " + certResponses.length + " certificate responses");
+        }
+        final PKIBody pkiBody = new PKIBody(respType, certRepMessage);
+        try {
+            if (protectingResponse == null && getPbeKeyId() != null && getPbeKey() != null && getPbeDigestAlg() != null && getPbeMacAlg() != null) {
+                // No certificate was issued, but the request was verified with the RA shared secret, so the response is protected with it
+                final PKIHeaderBuilder headerBuilder = createHeaderBuilder(getSender());
+                headerBuilder.setProtectionAlg(new AlgorithmIdentifier(CMPObjectIdentifiers.passwordBasedMac));
+                responseMessage = CmpMessageHelper.protectPKIMessageWithPBE(new PKIMessage(headerBuilder.build(), pkiBody), getPbeKeyId(), getPbeKey(),
+                        getPbeDigestAlg(), getPbeMacAlg(), getPbeIterationCount());
+            } else if (protectingResponse == null) {
+                // No certificate was issued and there is no shared secret, so there is nothing to protect the response with
+                final PKIHeaderBuilder headerBuilder = createHeaderBuilder(getSender());
+                responseMessage = CmpMessageHelper.pkiMessageToByteArray(new PKIMessage(headerBuilder.build(), pkiBody));
+            } else if (protectingResponse.getPbeKeyId() != null && protectingResponse.getPbeKey() != null && protectingResponse.getPbeDigestAlg() != null
+                    && protectingResponse.getPbeMacAlg() != null) {
+                final PKIHeaderBuilder headerBuilder = createHeaderBuilder(getSender());
+                headerBuilder.setProtectionAlg(new AlgorithmIdentifier(CMPObjectIdentifiers.passwordBasedMac));
+                responseMessage = CmpMessageHelper.protectPKIMessageWithPBE(new PKIMessage(headerBuilder.build(), pkiBody),
+                        protectingResponse.getPbeKeyId(), protectingResponse.getPbeKey(), protectingResponse.getPbeDigestAlg(),
+                        protectingResponse.getPbeMacAlg(), protectingResponse.getPbeIterationCount());
+            } else {
+                final Collection<Certificate> signCertChain = protectingResponse.getSignCertChain();
+                Certificate signCert = null;
+                GeneralName sender = getSender();
+                if (CollectionUtils.isNotEmpty(signCertChain)) {
+                    signCert = signCertChain.iterator().next();
+                    sender = new GeneralName(new X500Name(((X509Certificate) signCert).getSubjectDN().getName()));
+                }
+                final PKIHeaderBuilder headerBuilder = createHeaderBuilder(sender);
+                headerBuilder.setProtectionAlg(new AlgorithmIdentifier(new ASN1ObjectIdentifier(protectingResponse.getDigest())));
+                if (signCert != null) {
+                    headerBuilder.setSenderKID(CertTools.getSubjectKeyId(signCert));
+                }
+                final Collection<Certificate> extraCertsList = new ArrayList<>();
+                if (signCertChain != null) {
+                    extraCertsList.addAll(signCertChain);
+                }
+                for (final Certificate extraCert : protectingResponse.getExtraCerts()) {
+                    if (!extraCertsList.contains(extraCert)) {
+                        extraCertsList.add(extraCert);
+                    }
+                }
+                final PrivateKey signKey = protectingResponse.getSignKey();
+                responseMessage = CmpMessageHelper.signPKIMessage(new PKIMessage(headerBuilder.build(), pkiBody), extraCertsList, signKey,
+                        protectingResponse.getDigest(), protectingResponse.getProvider());
+            }
+        } catch (CertificateEncodingException | SignatureException | SecurityException e) {
+            log.error("Error creating CertRepMessage: ", e);
+            return false;
+        }
+        return true;
+    }
+
+    private PKIHeaderBuilder createHeaderBuilder(final GeneralName sender) {
+        final PKIHeaderBuilder headerBuilder = CmpMessageHelper.createPKIHeaderBuilder(sender, getRecipient(), getSenderNonce(), getRecipientNonce(),
+                getTransactionId());
+        if (implicitConfirm) {
+            if (log.isDebugEnabled()) {
+                log.debug("Adding implicitConfirm to CMP response message with transId: " + getTransactionId());
+            }
+            headerBuilder.setGeneralInfo(new InfoTypeAndValue(CMPObjectIdentifiers.it_implicitConfirm));
+        }
+        return headerBuilder;
+    }
+
+    /** Creates a rejection status for a request that did not give a certificate response, for example because the request could not be verified */
+    private PKIStatusInfo createRejectionStatusInfo(final ResponseMessage response) {
+        final String failText = response == null ? null : response.getFailText();
+        final FailInfo failInfo = response == null || response.getFailInfo() == null ? FailInfo.BAD_REQUEST : response.getFailInfo();
+        if (failText != null) {
+            return new PKIStatusInfo(PKIStatus.rejection, new PKIFreeText(new DERUTF8String(failText)), CmpMessageHelper.getPKIFailureInfo(failInfo.intValue()));
+        }
+        return new PKIStatusInfo(PKIStatus.rejection, null, CmpMessageHelper.getPKIFailureInfo(failInfo.intValue()));
+    }
+
+    @Override
+    public byte[] getResponseMessage() {
+        return responseMessage;
+    }
+
+    /** @return the number of certificate responses in the message */
+    public int getResponseCount() {
+        return responses.size();
+    }
+
+    @Override
+    public void setCrl(CRL crl) {
+    }
+
+    @Override
+    public void setIncludeCACert(boolean incCACert) {
+    }
+
+    @Override
+    public void setCACert(Certificate cACert) {
+    }
+
+    @Override
+    public void setStatus(ResponseStatus status) {
+    }
+
+    @Override
+    public ResponseStatus getStatus() {
+        for (final ResponseMessage response : responses) {
+            if (response != null && response.getStatus() == ResponseStatus.SUCCESS) {
+                return ResponseStatus.SUCCESS;
+            }
+        }
+        return ResponseStatus.FAILURE;
+    }
+
+    @Override
+    public void setFailInfo(FailInfo failInfo) {
+    }
+
+    @Override
+    public FailInfo getFailInfo() {
+        return null;
+    }
+
+    @Override
+    public void setFailText(String failText) {
+    }
+
+    @Override
+    public String getFailText() {
+        return null;
+    }
+
+    @Override
+    public boolean requireSignKeyInfo() {
+        return false;
+    }
+
+    @Override
+    public void setSignKeyInfo(Collection<Certificate> certs, PrivateKey key, String provider) {
+    }
+
+    @Override
+    public void setRecipientKeyInfo(byte[] recipientKeyInfo) {
+    }
+
+    @Override
+    public void setPreferredDigestAlg(String digest) {
+    }
+
+    @Override
+    public void setRequestType(int reqtype) {
+        this.requestType = reqtype;
+    }
+
+    @Override
+    public void setRequestId(int reqid) {
+    }
+
+    @Override
+    public void setProtectionParamsFromRequest(RequestMessage reqMsg) {
+    }
+}
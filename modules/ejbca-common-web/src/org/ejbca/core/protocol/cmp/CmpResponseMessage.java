@@ -145,6 +145,12 @@ public class CmpResponseMessage implements CertificateResponseMessage {
     private transient boolean implicitConfirm = false;
     private transient CertificateData certificateData;
     private transient Base64CertData base64CertData;
+    /** True if the response is part of a response to a message with several certificate requests, see {@link CmpMultiCertResponseMessage} */
+    private transient boolean protectionDeferred = false;
+    /** The certificate response created for the request, used when the protection is deferred */
+    private transient CertResponse certResponse = null;
+    /** The caPubs of the response, used when the protection is deferred */
+    private transient List<CMPCertificate> caPubs = new ArrayList<CMPCertificate>();
 
     @Override
     public CertificateData getCertificateData() {
@@ -307,12 +313,12 @@ public class CmpResponseMessage implements CertificateResponseMessage {
                                 myCertifiedKeyPair = new CertifiedKeyPair(retCert);                                
                             }
                             // If we have server generated keys, add privateKey
-                            final CertResponse certResponse = new CertResponse(new ASN1Integer(requestId), myPKIStatusInfo, myCertifiedKeyPair, null);
+                            certResponse = new CertResponse(new ASN1Integer(requestId), myPKIStatusInfo, myCertifiedKeyPair, null);
                             final CertResponse[] certResponses = { certResponse };
                             
                             // Add the user certificates signing CA certificate (at index 0) and the others by the CMP configuration to the CMP 
                             // response 'caPubs' field (added previously to the response with CertificateResponseMessage.addAdditionalCaCertificates().
-                            final List<CMPCertificate> caPubs = new ArrayList<CMPCertificate>();
+                            caPubs.clear();
                             for (Certificate certificate : this.cacert) {
                                 try (ASN1InputStream stream = new ASN1InputStream(new ByteArrayInputStream(certificate.getEncoded()));) {
                                     caPubs.add(CMPCertificate.getInstance(stream.readObject()));
@@ -353,7 +359,7 @@ public class CmpResponseMessage implements CertificateResponseMessage {
                 statusInfoV.add(CmpMessageHelper.getPKIFailureInfo(failInfo.intValue()));
                 PKIStatusInfo myPKIStatusInfo = PKIStatusInfo.getInstance(ASN1Sequence.getInstance(new DERSequence(statusInfoV)));
                 myPKIBody = CmpMessageHelper.createCertRequestRejectBody(myPKIStatusInfo, requestId, requestType);
-                
+                certResponse = new CertResponse(new ASN1Integer(requestId), myPKIStatusInfo);
             } else {
                 if (log.isDebugEnabled()) {
                     log.debug("Creating a 'waiting' message?");
@@ -372,7 +378,12 @@ public class CmpResponseMessage implements CertificateResponseMessage {
                 myPKIBody = new PKIBody(23, myErrorContent); // 23 = error                
             }
             
-            if ((pbeKeyId != null) && (pbeKey != null) && (pbeDigestAlg != null) && (pbeMacAlg != null)) {
+            if (protectionDeferred) {
+                // The certificate response is combined with the other responses and protected by CmpMultiCertResponseMessage
+                if (log.isDebugEnabled()) {
+                    log.debug("Deferring protection of response to certReqId " + requestId);
+                }
+            } else if ((pbeKeyId != null) && (pbeKey != null) && (pbeDigestAlg != null) && (pbeMacAlg != null)) {
                 myPKIHeader.setProtectionAlg(new AlgorithmIdentifier(CMPObjectIdentifiers.passwordBasedMac));
                 PKIHeader header = myPKIHeader.build();
                 myPKIMessage = new PKIMessage(header, myPKIBody);
@@ -479,6 +490,64 @@ public class CmpResponseMessage implements CertificateResponseMessage {
             this.pbeKey = crmf.getPbeKey();
             this.implicitConfirm = crmf.isImplicitConfirm();
         }
+        if (reqMsg instanceof CrmfRequestMessage) {
+            this.protectionDeferred = ((CrmfRequestMessage) reqMsg).isResponseProtectionDeferred();
+        }
+    }
+
+    /** @return true if the response is not protected by {@link #create()}, but is combined with other responses by {@link CmpMultiCertResponseMessage} */
+    boolean isProtectionDeferred() {
+        return protectionDeferred;
+    }
+
+    /** @return the certificate response created by {@link #create()}, or null if it has not been created or the request was not accepted or rejected */
+    CertResponse getCertResponse() {
+        return certResponse;
+    }
+
+    /** @return the caPubs created by {@link #create()} */
+    List<CMPCertificate> getCaPubs() {
+        return caPubs;
+    }
+
+    Collection<Certificate> getSignCertChain() {
+        return signCertChain;
+    }
+
+    PrivateKey getSignKey() {
+        return signKey;
+    }
+
+    String getProvider() {
+        return provider;
+    }
+
+    String getDigest() {
+        return digest;
+    }
+
+    Collection<Certificate> getExtraCerts() {
+        return extraCerts;
+    }
+
+    int getPbeIterationCount() {
+        return pbeIterationCount;
+    }
+
+    String getPbeDigestAlg() {
+        return pbeDigestAlg;
+    }
+
+    String getPbeMacAlg() {
+        return pbeMacAlg;
+    }
+
+    String getPbeKeyId() {
+        return pbeKeyId;
+    }
+
+    String getPbeKey() {
+        return pbeKey;
     }
 
     @Override
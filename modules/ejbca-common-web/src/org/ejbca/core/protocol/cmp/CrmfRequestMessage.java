@@ -28,7 +28,9 @@ import java.security.SignatureException;
 import java.security.cert.Certificate;
 import java.security.spec.InvalidKeySpecException;
 import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
@@ -111,6 +113,10 @@ public class CrmfRequestMessage extends BaseCmpMessage implements ICrmfRequestMe
      * we can restore the PKIMessage after serialization/deserialization. */
     private byte[] pkimsgbytes = null;
     private transient CertReqMsg req = null;
+    /** Index of the CertReqMsg in the CertReqMessages of the PKIMessage that this request message represents */
+    private int certReqMsgIndex = 0;
+    /** True if the response to this request is combined with the responses to the other CertReqMsgs in the same PKIMessage */
+    private boolean responseProtectionDeferred = false;
 
     /** Because CertReqMsg is not serializable we may need to encode/decode bytes if the object is lost during deserialization. */
     private CertReqMsg getReq() {
@@ -164,14 +170,18 @@ public class CrmfRequestMessage extends BaseCmpMessage implements ICrmfRequestMe
 
     private void init() {
         final PKIBody pkiBody = getPKIMessage().getBody();
-        final PKIHeader pkiHeader = getPKIMessage().getHeader();
         requestType = pkiBody.getType();
         final CertReqMessages msgs = getCertReqFromTag(pkiBody, requestType);
         try {
-            this.req = msgs.toCertReqMsgArray()[0];
+            this.req = msgs.toCertReqMsgArray()[certReqMsgIndex];
         } catch(Exception e) {
             this.req = CmpMessageHelper.getNovosecCertReqMsg(msgs);
         }
+        initFromCertReqMsg();
+    }
+
+    private void initFromCertReqMsg() {
+        final PKIHeader pkiHeader = getPKIMessage().getHeader();
         requestId = this.req.getCertReq().getCertReqId().getValue().intValue();
         setTransactionId(getBase64FromAsn1OctetString(pkiHeader.getTransactionID()));
         setSenderNonce(getBase64FromAsn1OctetString(pkiHeader.getSenderNonce()));
@@ -179,6 +189,52 @@ public class CrmfRequestMessage extends BaseCmpMessage implements ICrmfRequestMe
         setSender(pkiHeader.getSender());
     }
 
+    /** @return the number of CertReqMsg in the PKIMessage, a PKIMessage can contain several certificate requests */
+    public int getCertReqMsgCount() {
+        final PKIBody pkiBody = getPKIMessage().getBody();
+        try {
+            return getCertReqFromTag(pkiBody, pkiBody.getType()).toCertReqMsgArray().length;
+        } catch (Exception e) {
+            // Old Novosec encoded messages can only be parsed as a single request
+            return 1;
+        }
+    }
+
+    /**
+     * Creates one request message for each CertReqMsg in the PKIMessage, so that each certificate request can be processed by itself.
+     * The PKIMessage, configuration and additional response certificates are shared with this message. The responses to the
+     * returned messages are not protected, but should be combined into a single response with {@link CmpMultiCertResponseMessage}.
+     *
+     * @return a list of request messages, one for each CertReqMsg in the PKIMessage, in the order of the PKIMessage
+     */
+    public List<CrmfRequestMessage> getCertReqMsgRequests() {
+        final CertReqMsg[] reqMsgs = getCertReqFromTag(getPKIMessage().getBody(), requestType).toCertReqMsgArray();
+        final List<CrmfRequestMessage> ret = new ArrayList<>(reqMsgs.length);
+        for (int i = 0; i < reqMsgs.length; i++) {
+            final CrmfRequestMessage subRequest = new CrmfRequestMessage();
+            // Share the encoded message instead of encoding it again for every request
+            subRequest.pkimsgbytes = this.pkimsgbytes;
+            subRequest.setMessage(getPKIMessage());
+            subRequest.defaultCADN = this.defaultCADN;
+            subRequest.allowRaVerifyPopo = this.allowRaVerifyPopo;
+            subRequest.extractUsernameComponent = this.extractUsernameComponent;
+            subRequest.requestType = this.requestType;
+            subRequest.certReqMsgIndex = i;
+            subRequest.responseProtectionDeferred = true;
+            subRequest.req = reqMsgs[i];
+            subRequest.initFromCertReqMsg();
+            subRequest.setAdditionalCaCertificates(getAdditionalCaCertificates());
+            subRequest.setAdditionalExtraCertsCertificates(getAdditionalExtraCertsCertificates());
+            ret.add(subRequest);
+        }
+        return ret;
+    }
+
+    /** @return true if the response to this request is combined with responses to other requests in the same PKIMessage, see {@link #getCertReqMsgRequests()} */
+    public boolean isResponseProtectionDeferred() {
+        return responseProtectionDeferred;
+    }
+
     @Override
     public PublicKey getRequestPublicKey() throws InvalidKeyException, NoSuchAlgorithmException, NoSuchProviderException {
         // If we have generated a key pair by the server, we should use this one
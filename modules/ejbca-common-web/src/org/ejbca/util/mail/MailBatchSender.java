@@ -0,0 +1,144 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.util.mail;
+
+import java.io.Closeable;
+import java.util.List;
+
+import javax.mail.Message;
+import javax.mail.MessagingException;
+import javax.mail.Session;
+import javax.mail.Transport;
+
+import org.apache.log4j.Logger;
+
+/**
+ * Sends a number of messages over a shared SMTP connection, instead of opening a new connection for each message
+ * as {@link MailSender#sendMail} does.
+ *
+ * The connection is opened when the first message is sent, and re-opened after a configurable number of messages,
+ * since many SMTP servers limit the number of messages per connection. If sending over an already used connection fails,
+ * for example because the server has closed an idle connection, the message is retried once over a new connection.
+ *
+ * Instances are not thread safe and must be closed after use.
+ *
+ * @version $Id$
+ */
+public class MailBatchSender implements Closeable {
+
+    private static final Logger log = Logger.getLogger(MailBatchSender.class);
+
+    private final Session mailSession;
+    private final int maxMessagesPerConnection;
+    private Transport transport = null;
+    private int messagesOnConnection = 0;
+    private int connectionCount = 0;
+
+    /**
+     * @param mailSession the mail session to send messages with
+     * @param maxMessagesPerConnection number of messages to send before the connection is re-opened
+     */
+    public MailBatchSender(final Session mailSession, final int maxMessagesPerConnection) {
+        this.mailSession = mailSession;
+        this.maxMessagesPerConnection = Math.max(1, maxMessagesPerConnection);
+    }
+
+    /**
+     * Sends a message over the shared connection. See {@link MailSender#sendMail} for a description of the parameters.
+     *
+     * @return true if the message was successfully handed over to the SMTP server
+     */
+    public boolean sendMail(String fromAddress, List<String> toList, List<String> ccList, String subject, String content, List<MailAttachment> attachments) {
+        final Message msg;
+        try {
+            msg = MailSender.createMessage(mailSession, fromAddress, toList, ccList, subject, content, attachments);
+            if (msg == null) {
+                return false;   // We need at least one recipient.. either TO or CC
+            }
+            msg.saveChanges();
+        } catch (MessagingException e) {
+            log.error("Unable to create email: ", e);
+            return false;
+        }
+        final boolean reused = transport != null && transport.isConnected() && messagesOnConnection < maxMessagesPerConnection;
+        try {
+            send(msg);
+        } catch (MessagingException e) {
+            closeTransport();
+            if (!reused) {
+                log.error("Unable to send email: ", e);
+                return false;
+            }
+            if (log.isDebugEnabled()) {
+                log.debug("Sending over existing connection failed, retrying over a new connection: " + e.getMessage());
+            }
+            try {
+                send(msg);
+            } catch (MessagingException e2) {
+                closeTransport();
+                log.error("Unable to send email: ", e2);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Sends a message over the shared connection. See {@link MailSender#sendMail} for a description of the parameters.
+     *
+     * @throws MailException if the message could not be successfully handed over to the SMTP server
+     */
+    public void sendMailOrThrow(String fromAddress, List<String> toList, List<String> ccList, String subject, String content, List<MailAttachment> attachments) throws MailException {
+        if (!sendMail(fromAddress, toList, ccList, subject, content, attachments)) {
+            throw new MailException("Failed to hand over email to JavaMail.");
+        }
+    }
+
+    /** @return the number of connections opened so far */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    private void send(final Message msg) throws MessagingException {
+        if (transport == null || !transport.isConnected() || messagesOnConnection >= maxMessagesPerConnection) {
+            closeTransport();
+            // The same lookup as Transport.send(Message) uses, so the configured protocol (smtp or smtps) is honored
+            final Transport newTransport = mailSession.getTransport(msg.getAllRecipients()[0]);
+            newTransport.connect();
+            transport = newTransport;
+            connectionCount++;
+        }
+        messagesOnConnection++;
+        transport.sendMessage(msg, msg.getAllRecipients());
+    }
+
+    private void closeTransport() {
+        if (transport != null) {
+            try {
+                transport.close();
+            } catch (MessagingException e) {
+                if (log.isDebugEnabled()) {
+                    log.debug("Failed to close mail transport: " + e.getMessage());
+                }
+            }
+            transport = null;
+        }
+        messagesOnConnection = 0;
+    }
+
+    /** Closes the shared connection, if open */
+    @Override
+    public void close() {
+        closeTransport();
+    }
+}
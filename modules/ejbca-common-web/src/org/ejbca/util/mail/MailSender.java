@@ -79,62 +79,11 @@ public class MailSender {
         // mail.smtp.timeout
         // mail.smtp.connectiontimeout
         // mail.smtp.writetimeout
-        Message msg = new MimeMessage(mailSession);
         try {
-        	if (log.isDebugEnabled()) {
-        		log.debug("from: " + fromAddress);
-        	}
-			msg.setFrom(new InternetAddress(fromAddress));
-			boolean atLeastOneRecipient = false;
-			if (toList != null) {
-				for (int i=0; i<toList.size(); i++) {
-					String to = toList.get(i);
-					msg.addRecipients(javax.mail.Message.RecipientType.TO, InternetAddress.parse(to, false));
-		        	if (log.isDebugEnabled()) {
-		        		log.debug("to: " + to);
-		        	}
-					atLeastOneRecipient = true;
-				}
-			}
-			if (ccList != null) {
-				for (int i=0; i<ccList.size(); i++) {
-					String cc = ccList.get(i);
-					msg.addRecipients(javax.mail.Message.RecipientType.CC, InternetAddress.parse(cc, false));
-		        	if (log.isDebugEnabled()) {
-		        		log.debug("cc: " + cc);
-		        	}
-					atLeastOneRecipient = true;
-				}
-			}
-			if (!atLeastOneRecipient) {
-				return false;	// We need at least one recipient.. either TO or CC
-			}
-	        msg.setSubject(subject);
-        	if (log.isDebugEnabled()) {
-        		log.debug("subject: " + subject);
-        	}
-	        if (attachments == null || attachments.size() == 0) {
-		        msg.setContent(content, MailConfiguration.getMailMimeType());
-	        	if (log.isDebugEnabled()) {
-	        		log.debug("content: " + content);
-	        	}
-	        } else {
-		        Multipart multipart = new MimeMultipart();
-		        // Add the text message first
-		        MimeBodyPart msgBody = new MimeBodyPart();
-		        msgBody.setContent(content, MailConfiguration.getMailMimeType());
-		        multipart.addBodyPart(msgBody);
-		        // Attach all the requested files
-                for (MailAttachment mailAttachment : attachments) {
-                    MimeBodyPart msgAttachment = new MimeBodyPart();
-                    msgAttachment.setDataHandler(mailAttachment.getDataHandler());
-                    msgAttachment.setFileName(mailAttachment.getName());
-                    multipart.addBodyPart(msgAttachment);
-                }
-		        msg.setContent(multipart);
-	        }
-	        msg.setHeader("X-Mailer", "JavaMailer");
-	        msg.setSentDate(new Date());
+            final Message msg = createMessage(mailSession, fromAddress, toList, ccList, subject, content, attachments);
+            if (msg == null) {
+                return false;	// We need at least one recipient.. either TO or CC
+            }
 	        Transport.send(msg);
 		} catch (MessagingException e) {
 			log.error("Unable to send email: ", e);
@@ -142,4 +91,82 @@ public class MailSender {
 		}
         return true;
 	}
+
+	/**
+	 * Creates a batch sender using the mail service configured in mail.properties. Use this instead of {@link #sendMail} when sending
+	 * many messages at once, so the SMTP connection is re-used. The batch sender must be closed after use.
+	 * 
+	 * @return a new batch sender
+	 */
+	public static MailBatchSender createBatchSender() {
+	    final Session mailSession = ServiceLocator.getInstance().getMailSession(MailConfiguration.getMailJndiName());
+	    return new MailBatchSender(mailSession, MailConfiguration.getMailMaxMessagesPerConnection());
+	}
+
+	/**
+	 * Creates a message ready to be sent. See {@link #sendMail} for a description of the parameters.
+	 * 
+	 * @param mailSession the mail session to create the message in
+	 * @return the message, or null if there are no recipients
+	 * @throws MessagingException if an address or the content is invalid
+	 */
+	static Message createMessage(Session mailSession, String fromAddress, List<String> toList, List<String> ccList, String subject, String content,
+	        List<MailAttachment> attachments) throws MessagingException {
+        Message msg = new MimeMessage(mailSession);
+    	if (log.isDebugEnabled()) {
+    		log.debug("from: " + fromAddress);
+    	}
+		msg.setFrom(new InternetAddress(fromAddress));
+		boolean atLeastOneRecipient = false;
+		if (toList != null) {
+			for (int i=0; i<toList.size(); i++) {
+				String to = toList.get(i);
+				msg.addRecipients(javax.mail.Message.RecipientType.TO, InternetAddress.parse(to, false));
+	        	if (log.isDebugEnabled()) {
+	        		log.debug("to: " + to);
+	        	}
+				atLeastOneRecipient = true;
+			}
+		}
+		if (ccList != null) {
+			for (int i=0; i<ccList.size(); i++) {
+				String cc = ccList.get(i);
+				msg.addRecipients(javax.mail.Message.RecipientType.CC, InternetAddress.parse(cc, false));
+	        	if (log.isDebugEnabled()) {
+	        		log.debug("cc: " + cc);
+	        	}
+				atLeastOneRecipient = true;
+			}
+		}
+		if (!atLeastOneRecipient) {
+			return null;
+		}
+        msg.setSubject(subject);
+    	if (log.isDebugEnabled()) {
+    		log.debug("subject: " + subject);
+    	}
+        if (attachments == null || attachments.size() == 0) {
+	        msg.setContent(content, MailConfiguration.getMailMimeType());
+        	if (log.isDebugEnabled()) {
+        		log.debug("content: " + content);
+        	}
+        } else {
+	        Multipart multipart = new MimeMultipart();
+	        // Add the text message first
+	        MimeBodyPart msgBody = new MimeBodyPart();
+	        msgBody.setContent(content, MailConfiguration.getMailMimeType());
+	        multipart.addBodyPart(msgBody);
+	        // Attach all the requested files
+            for (MailAttachment mailAttachment : attachments) {
+                MimeBodyPart msgAttachment = new MimeBodyPart();
+                msgAttachment.setDataHandler(mailAttachment.getDataHandler());
+                msgAttachment.setFileName(mailAttachment.getName());
+                multipart.addBodyPart(msgAttachment);
+            }
+	        msg.setContent(multipart);
+        }
+        msg.setHeader("X-Mailer", "JavaMailer");
+        msg.setSentDate(new Date());
+        return msg;
+	}
 }
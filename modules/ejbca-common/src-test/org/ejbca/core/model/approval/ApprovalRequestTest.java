@@ -15,6 +15,7 @@ package org.ejbca.core.model.approval;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -23,6 +24,7 @@ import java.io.IOException;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.security.cert.X509Certificate;
+import java.util.Date;
 
 import org.cesecore.authentication.tokens.AuthenticationToken;
 import org.cesecore.authentication.tokens.PublicAccessAuthenticationToken;
@@ -107,6 +109,49 @@ public class ApprovalRequestTest {
 		
 	}
     
+    /** Tests that a value object decodes the approval request and the approvals from their database representation when they are used */
+    @Test
+    public void testValueObjectWithEncodedData() throws Exception {
+        X509Certificate testcert = CertTools.getCertfromByteArray(testcertenc, X509Certificate.class);
+        AuthenticationToken token = new X509CertificateAuthenticationToken(testcert);
+
+        AccumulativeApprovalProfile approvalProfile = new AccumulativeApprovalProfile("AccumulativeApprovalProfile");
+        approvalProfile.initialize();
+        approvalProfile.setNumberOfApprovalsRequired(2);
+        DummyApprovalRequest ar = new DummyApprovalRequest(token, null, 1, 2, false, approvalProfile);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ObjectOutputStream oos = new ObjectOutputStream(baos);
+        oos.writeObject(ar);
+        oos.flush();
+        final String encodedRequest = new String(Base64.encode(baos.toByteArray(), false));
+        baos = new ByteArrayOutputStream();
+        oos = new ObjectOutputStream(baos);
+        oos.writeInt(1);
+        oos.writeObject(new Approval("test", 0, 0));
+        oos.flush();
+        final String encodedApprovals = new String(Base64.encode(baos.toByteArray(), false));
+
+        final ApprovalDataVO advo = new ApprovalDataVO(1, ar.generateApprovalId(), ar.getApprovalType(), 2, 1, null, null,
+                ApprovalDataVO.STATUS_WAITINGFORAPPROVAL, encodedApprovals, encodedRequest, new Date(), new Date());
+        assertEquals(1, advo.getApprovals().size());
+        assertEquals("test", advo.getApprovals().iterator().next().getComment());
+        assertEquals(approvalProfile.getProfileName(), advo.getApprovalProfile().getProfileName());
+
+        // The decoded objects should be sent when the value object is serialized, as before
+        baos = new ByteArrayOutputStream();
+        oos = new ObjectOutputStream(baos);
+        oos.writeObject(new ApprovalDataVO(1, ar.generateApprovalId(), ar.getApprovalType(), 2, 1, null, null,
+                ApprovalDataVO.STATUS_WAITINGFORAPPROVAL, encodedApprovals, encodedRequest, new Date(), new Date()));
+        oos.flush();
+        final ApprovalDataVO received;
+        try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            received = (ApprovalDataVO) ois.readObject();
+        }
+        assertNotNull(received.getApprovalRequest());
+        assertEquals(2, received.getApprovalRequest().getEndEntityProfileId());
+        assertEquals(1, received.getApprovals().size());
+    }
+
     private  ApprovalRequest getApprovalRequest(String data) throws IOException, ClassNotFoundException {
         ApprovalRequest retval = null; 
         ObjectInputStream ois = null;
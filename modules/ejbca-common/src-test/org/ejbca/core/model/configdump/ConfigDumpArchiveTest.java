@@ -0,0 +1,135 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.configdump;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.cesecore.certificates.certificateprofile.CertificateProfile;
+import org.cesecore.certificates.certificateprofile.CertificateProfileConstants;
+import org.cesecore.certificates.util.DnComponents;
+import org.ejbca.core.model.ra.raadmin.EndEntityProfile;
+import org.junit.Test;
+
+/**
+ * Unit tests for reading and writing configuration dump archives.
+ *
+ * @version $Id$
+ */
+public class ConfigDumpArchiveTest {
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        final CertificateProfile certificateProfile = new CertificateProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER);
+        certificateProfile.setAvailableCAs(new ArrayList<>(Arrays.asList(123, 456)));
+        final EndEntityProfile endEntityProfile = new EndEntityProfile(true);
+        endEntityProfile.addField(DnComponents.ORGANIZATION);
+        endEntityProfile.setValue(DnComponents.ORGANIZATION, 0, "R\u00e4ksm\u00f6rg\u00e5s; with a separator and non-ASCII characters");
+        final List<ConfigDumpItem> items = new ArrayList<>();
+        // Written in reverse dependency order, to check that they are sorted
+        items.add(new ConfigDumpItem(ConfigDumpItem.Type.END_ENTITY_PROFILE, 2000, "EE;profile", endEntityProfile.getRawData()));
+        items.add(new ConfigDumpItem(ConfigDumpItem.Type.CERTIFICATE_PROFILE, 1002, "Cert profile 2", certificateProfile.getRawData()));
+        items.add(new ConfigDumpItem(ConfigDumpItem.Type.CERTIFICATE_PROFILE, 1001, "Cert profile 1", certificateProfile.getRawData()));
+
+        final byte[] archive = write(items);
+        assertEquals("Profiles with the same content should be stored once", 3, countEntries(archive));
+        final List<ConfigDumpItem> read = ConfigDumpArchive.read(new ByteArrayInputStream(archive), 4);
+        assertEquals(3, read.size());
+        assertEquals("Cert profile 1", read.get(0).getName());
+        assertEquals(1001, read.get(0).getId());
+        assertEquals("Cert profile 2", read.get(1).getName());
+        assertEquals("EE;profile", read.get(2).getName());
+        assertEquals(ConfigDumpItem.Type.END_ENTITY_PROFILE, read.get(2).getType());
+        assertEquals(items.get(0).getHash(), read.get(2).getHash());
+
+        final CertificateProfile readCertificateProfile = new CertificateProfile();
+        readCertificateProfile.loadData(read.get(0).getData());
+        assertEquals(Arrays.asList(123, 456), readCertificateProfile.getAvailableCAs());
+        final EndEntityProfile readEndEntityProfile = new EndEntityProfile();
+        readEndEntityProfile.loadData(read.get(2).getData());
+        assertEquals("R\u00e4ksm\u00f6rg\u00e5s; with a separator and non-ASCII characters", readEndEntityProfile.getValue(DnComponents.ORGANIZATION, 0));
+        assertEquals("Decoding and encoding again should give the same hash", read.get(2).getHash(),
+                new ConfigDumpItem(ConfigDumpItem.Type.END_ENTITY_PROFILE, 1, "x", readEndEntityProfile.getRawData()).getHash());
+    }
+
+    @Test
+    public void testCorruptObjectIsRejected() throws IOException {
+        final CertificateProfile certificateProfile = new CertificateProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER);
+        final byte[] archive = write(Arrays.asList(
+                new ConfigDumpItem(ConfigDumpItem.Type.CERTIFICATE_PROFILE, 1001, "Cert profile", certificateProfile.getRawData())));
+        // Copy the archive, and add whitespace to the profile data, which still decodes but has another hash
+        final ByteArrayOutputStream tampered = new ByteArrayOutputStream();
+        try (final ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(archive));
+                final ZipOutputStream out = new ZipOutputStream(tampered)) {
+            ZipEntry entry;
+            while ((entry = in.getNextEntry()) != null) {
+                byte[] data = IOUtils.toByteArray(in);
+                if (entry.getName().startsWith(ConfigDumpArchive.OBJECTS_DIR)) {
+                    data = new String(data, "UTF-8").replace("</java>", " </java>").getBytes("UTF-8");
+                }
+                out.putNextEntry(new ZipEntry(entry.getName()));
+                out.write(data);
+                out.closeEntry();
+            }
+        }
+        try {
+            ConfigDumpArchive.read(new ByteArrayInputStream(tampered.toByteArray()), 2);
+            fail("Corrupt archive should be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("hash does not match"));
+        }
+    }
+
+    @Test
+    public void testMissingManifestIsRejected() throws IOException {
+        final ByteArrayOutputStream archive = new ByteArrayOutputStream();
+        try (final ZipOutputStream out = new ZipOutputStream(archive)) {
+            out.putNextEntry(new ZipEntry("something.txt"));
+            out.closeEntry();
+        }
+        try {
+            ConfigDumpArchive.read(new ByteArrayInputStream(archive.toByteArray()), 2);
+            fail("Archive without manifest should be rejected");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains(ConfigDumpArchive.MANIFEST));
+        }
+    }
+
+    private static byte[] write(final List<ConfigDumpItem> items) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConfigDumpArchive.write(out, items, 4);
+        return out.toByteArray();
+    }
+
+    private static int countEntries(final byte[] archive) throws IOException {
+        int entries = 0;
+        try (final ZipInputStream in = new ZipInputStream(new ByteArrayInputStream(archive))) {
+            while (in.getNextEntry() != null) {
+                entries++;
+            }
+        }
+        return entries;
+    }
+}
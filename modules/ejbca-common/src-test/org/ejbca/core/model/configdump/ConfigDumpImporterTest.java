@@ -0,0 +1,363 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.configdump;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.cesecore.authentication.tokens.X509CertificateAuthenticationTokenMetaData;
+import org.cesecore.authorization.user.AccessMatchType;
+import org.cesecore.authorization.user.matchvalues.X500PrincipalAccessMatchValue;
+import org.cesecore.certificates.certificateprofile.CertificateProfile;
+import org.cesecore.certificates.certificateprofile.CertificateProfileConstants;
+import org.cesecore.keybind.InternalKeyBinding;
+import org.cesecore.keybind.InternalKeyBindingFactory;
+import org.cesecore.keybind.InternalKeyBindingStatus;
+import org.cesecore.keybind.InternalKeyBindingTrustEntry;
+import org.cesecore.keybind.impl.OcspKeyBinding;
+import org.cesecore.roles.Role;
+import org.cesecore.roles.member.RoleMember;
+import org.ejbca.core.model.SecConst;
+import org.ejbca.core.model.ca.publisher.BasePublisher;
+import org.ejbca.core.model.ca.publisher.PublisherConst;
+import org.ejbca.core.model.configdump.ConfigDumpImportResult.Action;
+import org.ejbca.core.model.ra.raadmin.EndEntityProfile;
+import org.ejbca.core.model.services.IWorker;
+import org.ejbca.core.model.services.ServiceConfiguration;
+import org.junit.Test;
+
+/**
+ * Unit tests for planning and committing imports of configuration dumps, using an in-memory target system.
+ *
+ * @version $Id$
+ */
+public class ConfigDumpImporterTest {
+
+    private static final int CA_ID = 123;
+    private static final int PUBLISHER_ID = 77;
+
+    /** Target system that keeps publishers and profiles in memory, and records the batches that are stored */
+    private static class MemoryTarget implements ConfigDumpTarget {
+        private final Map<ConfigDumpItem.Type, Map<String, ConfigDumpItem>> items = new LinkedHashMap<>();
+        private final List<List<ConfigDumpItem>> batches = new ArrayList<>();
+
+        MemoryTarget() {
+            for (final ConfigDumpItem.Type type : ConfigDumpItem.Type.values()) {
+                items.put(type, new LinkedHashMap<String, ConfigDumpItem>());
+            }
+        }
+
+        @Override
+        public List<ConfigDumpItem> getItems(final ConfigDumpItem.Type type) {
+            return new ArrayList<>(items.get(type).values());
+        }
+
+        @Override
+        public Set<Integer> getCaIds() {
+            return Collections.singleton(CA_ID);
+        }
+
+        @Override
+        public void store(final ConfigDumpItem.Type type, final List<ConfigDumpItem> batch) throws ConfigDumpException {
+            for (final ConfigDumpItem item : batch) {
+                final ConfigDumpItem existing = items.get(type).get(item.getName());
+                if (existing != null && existing.getId() != item.getId()) {
+                    throw new ConfigDumpException("Name " + item.getName() + " is taken");
+                }
+                items.get(type).put(item.getName(), item);
+            }
+            batches.add(batch);
+        }
+
+        void add(final ConfigDumpItem item) {
+            items.get(item.getType()).put(item.getName(), item);
+        }
+
+        ConfigDumpItem get(final ConfigDumpItem.Type type, final String name) {
+            return items.get(type).get(name);
+        }
+    }
+
+    @Test
+    public void testImportResolvesReferences() throws Exception {
+        final MemoryTarget target = new MemoryTarget();
+        target.add(publisher(PUBLISHER_ID, "Existing publisher", PublisherConst.TYPE_LDAPPUBLISHER));
+        target.add(certificateProfile(5000, "Existing", Arrays.asList(CA_ID)));
+        // Certificate profile with an id that is taken, and one CA that exists and one that does not
+        final List<ConfigDumpItem> archive = new ArrayList<>();
+        final CertificateProfile certificateProfile = new CertificateProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER);
+        certificateProfile.setAvailableCAs(new ArrayList<>(Arrays.asList(CA_ID, 999)));
+        certificateProfile.setPublisherList(new ArrayList<>(Arrays.asList(PUBLISHER_ID, 88)));
+        archive.add(new ConfigDumpItem(ConfigDumpItem.Type.CERTIFICATE_PROFILE, 5000, "Imported", certificateProfile.getRawData()));
+        // End entity profile referencing the certificate profile above, a fixed one and one that does not exist
+        final EndEntityProfile endEntityProfile = new EndEntityProfile(true);
+        endEntityProfile.setAvailableCertificateProfileIds(Arrays.asList(5000, CertificateProfileConstants.CERTPROFILE_FIXED_SERVER, 6000));
+        endEntityProfile.setDefaultCertificateProfile(6000);
+        endEntityProfile.setAvailableCAs(Arrays.asList(999));
+        endEntityProfile.setDefaultCA(999);
+        archive.add(new ConfigDumpItem(ConfigDumpItem.Type.END_ENTITY_PROFILE, 7000, "EE", endEntityProfile.getRawData()));
+        archive.add(certificateProfile(CertificateProfileConstants.CERTPROFILE_FIXED_SUBCA, "SUBCA", Arrays.asList(CA_ID)));
+
+        final ConfigDumpImporter importer = new ConfigDumpImporter(target);
+        final List<ConfigDumpImportResult> plan = importer.plan(roundTrip(archive));
+        assertEquals(3, plan.size());
+        final ConfigDumpImportResult fixedResult = plan.get(0);
+        assertEquals("Fixed profiles should be skipped", Action.SKIP, fixedResult.getAction());
+        final ConfigDumpImportResult certificateProfileResult = plan.get(1);
+        assertEquals(Action.ADD, certificateProfileResult.getAction());
+        assertEquals(5000, certificateProfileResult.getArchivedId());
+        final int newId = certificateProfileResult.getItem().getId();
+        assertNotEquals("Taken id should be replaced", 5000, newId);
+        final ConfigDumpImportResult endEntityProfileResult = plan.get(2);
+        assertEquals(Action.ADD, endEntityProfileResult.getAction());
+        assertEquals(7000, endEntityProfileResult.getItem().getId());
+        assertFalse(endEntityProfileResult.getWarnings().isEmpty());
+        assertTrue("Nothing should be stored before commit", target.batches.isEmpty());
+
+        assertEquals(2, importer.commit(plan, 10));
+        assertEquals("One batch per type", 2, target.batches.size());
+        final CertificateProfile storedCertificateProfile = new CertificateProfile();
+        storedCertificateProfile.loadData(target.get(ConfigDumpItem.Type.CERTIFICATE_PROFILE, "Imported").getData());
+        assertEquals(Arrays.asList(CA_ID), storedCertificateProfile.getAvailableCAs());
+        assertEquals(Arrays.asList(PUBLISHER_ID), storedCertificateProfile.getPublisherList());
+        final EndEntityProfile storedEndEntityProfile = new EndEntityProfile();
+        storedEndEntityProfile.loadData(target.get(ConfigDumpItem.Type.END_ENTITY_PROFILE, "EE").getData());
+        assertEquals(Arrays.asList(newId, CertificateProfileConstants.CERTPROFILE_FIXED_SERVER),
+                storedEndEntityProfile.getAvailableCertificateProfileIds());
+        assertEquals("Missing default certificate profile should be replaced with the first available", newId,
+                storedEndEntityProfile.getDefaultCertificateProfile());
+        assertEquals("No CAs left, so all CAs should be available", Arrays.asList(SecConst.ALLCAS), storedEndEntityProfile.getAvailableCAs());
+    }
+
+    @Test
+    public void testExistingProfiles() throws Exception {
+        final MemoryTarget target = new MemoryTarget();
+        target.add(certificateProfile(5001, "Same", Arrays.asList(CA_ID)));
+        target.add(certificateProfile(5002, "Changed", Arrays.asList(CA_ID)));
+        final List<ConfigDumpItem> archive = new ArrayList<>();
+        archive.add(certificateProfile(6001, "Same", Arrays.asList(CA_ID)));
+        archive.add(certificateProfile(6002, "Changed", Arrays.asList(CertificateProfile.ANYCA)));
+        final EndEntityProfile endEntityProfile = new EndEntityProfile(true);
+        endEntityProfile.setAvailableCertificateProfileIds(Arrays.asList(6001, 6002));
+        endEntityProfile.setDefaultCertificateProfile(6002);
+        archive.add(new ConfigDumpItem(ConfigDumpItem.Type.END_ENTITY_PROFILE, 7000, "EE", endEntityProfile.getRawData()));
+
+        final ConfigDumpImporter importer = new ConfigDumpImporter(target);
+        List<ConfigDumpImportResult> plan = importer.plan(roundTrip(archive));
+        assertEquals(Action.UNCHANGED, plan.get(0).getAction());
+        assertEquals("Profiles with other content should be skipped by default", Action.SKIP, plan.get(1).getAction());
+        final EndEntityProfile planned = new EndEntityProfile();
+        planned.loadData(plan.get(2).getItem().getData());
+        assertEquals("References should point to the existing profiles with the same names", Arrays.asList(5001, 5002),
+                planned.getAvailableCertificateProfileIds());
+        assertEquals(5002, planned.getDefaultCertificateProfile());
+
+        importer.setOverwrite(true);
+        plan = importer.plan(roundTrip(archive));
+        assertEquals(Action.UNCHANGED, plan.get(0).getAction());
+        assertEquals(Action.UPDATE, plan.get(1).getAction());
+        assertEquals(5002, plan.get(1).getItem().getId());
+        assertEquals(2, importer.commit(plan, 10));
+        final CertificateProfile stored = new CertificateProfile();
+        stored.loadData(target.get(ConfigDumpItem.Type.CERTIFICATE_PROFILE, "Changed").getData());
+        assertEquals(Arrays.asList(CertificateProfile.ANYCA), stored.getAvailableCAs());
+
+        plan = importer.plan(roundTrip(archive));
+        for (final ConfigDumpImportResult result : plan) {
+            assertEquals("Importing again should not change anything: " + result, Action.UNCHANGED, result.getAction());
+        }
+        assertEquals(0, importer.commit(plan, 10));
+    }
+
+    @Test
+    public void testBatches() throws Exception {
+        final MemoryTarget target = new MemoryTarget();
+        final List<ConfigDumpItem> archive = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            archive.add(certificateProfile(5000 + i, "Profile " + i, Arrays.asList(CA_ID)));
+        }
+        final EndEntityProfile endEntityProfile = new EndEntityProfile(true);
+        archive.add(new ConfigDumpItem(ConfigDumpItem.Type.END_ENTITY_PROFILE, 7000, "EE", endEntityProfile.getRawData()));
+        final ConfigDumpImporter importer = new ConfigDumpImporter(target);
+        assertEquals(6, importer.commit(importer.plan(archive), 2));
+        assertEquals(4, target.batches.size());
+        assertEquals(2, target.batches.get(0).size());
+        assertEquals(1, target.batches.get(2).size());
+        assertEquals("Certificate profiles should be stored before end entity profiles", ConfigDumpItem.Type.END_ENTITY_PROFILE,
+                target.batches.get(3).get(0).getType());
+        final Set<Integer> ids = new HashSet<>();
+        for (final ConfigDumpItem item : target.getItems(ConfigDumpItem.Type.CERTIFICATE_PROFILE)) {
+            ids.add(item.getId());
+        }
+        assertEquals(new HashSet<>(Arrays.asList(5000, 5001, 5002, 5003, 5004)), ids);
+    }
+
+    @Test
+    public void testPublishers() throws Exception {
+        final MemoryTarget target = new MemoryTarget();
+        target.add(publisher(PUBLISHER_ID, "LDAP", PublisherConst.TYPE_LDAPPUBLISHER));
+        final List<ConfigDumpItem> archive = new ArrayList<>();
+        // Same name and content as the existing publisher, but another id
+        archive.add(publisher(78, "LDAP", PublisherConst.TYPE_LDAPPUBLISHER));
+        // Id is taken by the existing publisher
+        archive.add(publisher(PUBLISHER_ID, "AD", PublisherConst.TYPE_ADPUBLISHER));
+        // Multi group publisher with a lower id than the publishers it references, and a reference to a publisher that does not exist
+        final Map<Object, Object> multiGroupData = new LinkedHashMap<>();
+        multiGroupData.put(BasePublisher.TYPE, PublisherConst.TYPE_MULTIGROUPPUBLISHER);
+        multiGroupData.put("publishergroups", new ArrayList<>(Arrays.asList(new TreeSet<>(Arrays.asList(PUBLISHER_ID, 78)),
+                new TreeSet<>(Arrays.asList(99)))));
+        archive.add(new ConfigDumpItem(ConfigDumpItem.Type.PUBLISHER, 50, "Multi", multiGroupData));
+        final CertificateProfile certificateProfile = new CertificateProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER);
+        certificateProfile.setPublisherList(new ArrayList<>(Arrays.asList(PUBLISHER_ID, 78, 50, 99)));
+        archive.add(new ConfigDumpItem(ConfigDumpItem.Type.CERTIFICATE_PROFILE, 5000, "Profile", certificateProfile.getRawData()));
+
+        final ConfigDumpImporter importer = new ConfigDumpImporter(target);
+        final List<ConfigDumpImportResult> plan = importer.plan(roundTrip(archive));
+        assertEquals(4, plan.size());
+        assertEquals(Action.ADD, plan.get(0).getAction());
+        final int newId = plan.get(0).getItem().getId();
+        assertNotEquals("Taken id should be replaced", PUBLISHER_ID, newId);
+        assertEquals(Action.UNCHANGED, plan.get(1).getAction());
+        assertEquals(PUBLISHER_ID, plan.get(1).getItem().getId());
+        assertEquals("Multi group publishers should be planned after the publishers they reference", "Multi", plan.get(2).getItem().getName());
+        assertEquals(Action.ADD, plan.get(2).getAction());
+        assertEquals(50, plan.get(2).getItem().getId());
+
+        assertEquals(3, importer.commit(plan, 10));
+        assertEquals("Publishers should be stored before certificate profiles", ConfigDumpItem.Type.PUBLISHER, target.batches.get(0).get(0).getType());
+        assertEquals(Arrays.asList(new TreeSet<>(Arrays.asList(newId, PUBLISHER_ID))),
+                target.get(ConfigDumpItem.Type.PUBLISHER, "Multi").getData().get("publishergroups"));
+        final CertificateProfile stored = new CertificateProfile();
+        stored.loadData(target.get(ConfigDumpItem.Type.CERTIFICATE_PROFILE, "Profile").getData());
+        assertEquals(Arrays.asList(newId, PUBLISHER_ID, 50), stored.getPublisherList());
+    }
+
+    @Test
+    public void testRolesAndServices() throws Exception {
+        final MemoryTarget target = new MemoryTarget();
+        // Takes the id of the archived end entity profile
+        target.add(new ConfigDumpItem(ConfigDumpItem.Type.END_ENTITY_PROFILE, 7000, "Existing", new EndEntityProfile(true).getRawData()));
+        final List<ConfigDumpItem> archive = new ArrayList<>();
+        archive.add(new ConfigDumpItem(ConfigDumpItem.Type.END_ENTITY_PROFILE, 7000, "EE", new EndEntityProfile(true).getRawData()));
+        archive.add(certificateProfile(5000, "Profile", Arrays.asList(CA_ID)));
+        final Role role = new Role(null, "Operators", Arrays.asList("/ra_functionality/", "/endentityprofilesrules/7000/view_end_entity/",
+                "/ca/" + CA_ID + "/", "/ca/999/"), null);
+        role.setRoleId(-42);
+        final List<RoleMember> roleMembers = Arrays.asList(roleMember(CA_ID, "Operator"), roleMember(999, "Unknown"));
+        archive.add(ConfigDumpTools.fromRole(role, roleMembers));
+        final ServiceConfiguration service = new ServiceConfiguration();
+        final Properties workerProperties = new Properties();
+        workerProperties.setProperty(IWorker.PROP_CAIDSTOCHECK, CA_ID + ";999");
+        workerProperties.setProperty(IWorker.PROP_CERTIFICATE_PROFILE_IDS_TO_CHECK, "5000;6000");
+        service.setWorkerProperties(workerProperties);
+        archive.add(ConfigDumpTools.fromService(300, "Expiration", service));
+
+        final ConfigDumpImporter importer = new ConfigDumpImporter(target);
+        List<ConfigDumpImportResult> plan = importer.plan(roundTrip(archive));
+        assertEquals(4, plan.size());
+        final int endEntityProfileId = plan.get(1).getItem().getId();
+        assertNotEquals("Taken id should be replaced", 7000, endEntityProfileId);
+        assertEquals(ConfigDumpItem.Type.SERVICE, plan.get(2).getItem().getType());
+        assertEquals("Roles should be planned last", ConfigDumpItem.Type.ROLE, plan.get(3).getItem().getType());
+        assertEquals(Action.ADD, plan.get(3).getAction());
+        assertEquals(-42, plan.get(3).getItem().getId());
+        assertEquals(4, importer.commit(plan, 10));
+
+        final ConfigDumpItem storedRole = target.get(ConfigDumpItem.Type.ROLE, Role.getRoleNameFullAsCacheName(null, "Operators"));
+        assertEquals(new HashSet<>(Arrays.asList("/ra_functionality/", "/endentityprofilesrules/" + endEntityProfileId + "/view_end_entity/",
+                "/ca/" + CA_ID + "/")), ConfigDumpTools.toRole(storedRole).getAccessRules().keySet());
+        final List<RoleMember> storedRoleMembers = ConfigDumpTools.toRoleMembers(storedRole);
+        assertEquals("Members issued by CAs that do not exist should be removed", 1, storedRoleMembers.size());
+        assertEquals("Operator", storedRoleMembers.get(0).getTokenMatchValue());
+        assertEquals(-42, storedRoleMembers.get(0).getRoleId());
+        final Properties storedWorkerProperties = ConfigDumpTools.toService(target.get(ConfigDumpItem.Type.SERVICE, "Expiration")).getWorkerProperties();
+        assertEquals(String.valueOf(CA_ID), storedWorkerProperties.getProperty(IWorker.PROP_CAIDSTOCHECK));
+        assertEquals(String.valueOf(plan.get(0).getItem().getId()), storedWorkerProperties.getProperty(IWorker.PROP_CERTIFICATE_PROFILE_IDS_TO_CHECK));
+
+        plan = importer.plan(roundTrip(archive));
+        for (final ConfigDumpImportResult result : plan) {
+            assertEquals("Importing again should not change anything: " + result, Action.UNCHANGED, result.getAction());
+        }
+    }
+
+    @Test
+    public void testInternalKeyBindings() throws Exception {
+        final MemoryTarget target = new MemoryTarget();
+        final InternalKeyBinding internalKeyBinding = InternalKeyBindingFactory.INSTANCE.create(OcspKeyBinding.IMPLEMENTATION_ALIAS, -5, "OCSP",
+                InternalKeyBindingStatus.ACTIVE, "abcdef", 11, "signKey", new LinkedHashMap<Object, Object>());
+        internalKeyBinding.setSignatureAlgorithm("SHA256WithRSA");
+        internalKeyBinding.setProperty(OcspKeyBinding.PROPERTY_NON_EXISTING_GOOD, Boolean.TRUE);
+        internalKeyBinding.setTrustedCertificateReferences(Arrays.asList(new InternalKeyBindingTrustEntry(CA_ID, BigInteger.TEN, "Trusted"),
+                new InternalKeyBindingTrustEntry(999, null)));
+        final List<ConfigDumpItem> archive = new ArrayList<>();
+        archive.add(ConfigDumpTools.fromInternalKeyBinding(internalKeyBinding));
+
+        final ConfigDumpImporter importer = new ConfigDumpImporter(target);
+        final List<ConfigDumpImportResult> plan = importer.plan(roundTrip(archive));
+        assertEquals(Action.ADD, plan.get(0).getAction());
+        assertEquals(1, plan.get(0).getWarnings().size());
+        assertEquals(1, importer.commit(plan, 10));
+        final InternalKeyBinding stored = ConfigDumpTools.toInternalKeyBinding(target.get(ConfigDumpItem.Type.INTERNAL_KEY_BINDING, "OCSP"));
+        assertEquals(-5, stored.getId());
+        assertEquals(InternalKeyBindingStatus.ACTIVE, stored.getStatus());
+        assertEquals("abcdef", stored.getCertificateId());
+        assertEquals(11, stored.getCryptoTokenId());
+        assertEquals("signKey", stored.getKeyPairAlias());
+        assertEquals("SHA256WithRSA", stored.getSignatureAlgorithm());
+        assertEquals(Boolean.TRUE, stored.getProperty(OcspKeyBinding.PROPERTY_NON_EXISTING_GOOD).getValue());
+        assertEquals("Trust entries for CAs that do not exist should be removed",
+                Arrays.asList(new InternalKeyBindingTrustEntry(CA_ID, BigInteger.TEN, "Trusted")), stored.getTrustedCertificateReferences());
+    }
+
+    private static RoleMember roleMember(final int caId, final String commonName) {
+        return new RoleMember(X509CertificateAuthenticationTokenMetaData.TOKEN_TYPE, caId, X500PrincipalAccessMatchValue.WITH_COMMONNAME.getNumericValue(),
+                AccessMatchType.TYPE_EQUALCASE.getNumericValue(), commonName, RoleMember.NO_ROLE, null);
+    }
+
+    private static ConfigDumpItem publisher(final int id, final String name, final int publisherType) {
+        final Map<Object, Object> data = new LinkedHashMap<>();
+        data.put(BasePublisher.TYPE, publisherType);
+        data.put("description", "Publisher of type " + publisherType);
+        return new ConfigDumpItem(ConfigDumpItem.Type.PUBLISHER, id, name, data);
+    }
+
+    private static ConfigDumpItem certificateProfile(final int id, final String name, final List<Integer> caIds) {
+        final CertificateProfile profile = new CertificateProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER);
+        profile.setAvailableCAs(new ArrayList<>(caIds));
+        return new ConfigDumpItem(ConfigDumpItem.Type.CERTIFICATE_PROFILE, id, name, profile.getRawData());
+    }
+
+    /** Writes the items to an archive and reads them back, as the CLI commands do */
+    private static List<ConfigDumpItem> roundTrip(final List<ConfigDumpItem> items) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ConfigDumpArchive.write(out, items, 2);
+        return ConfigDumpArchive.read(new ByteArrayInputStream(out.toByteArray()), 2);
+    }
+}
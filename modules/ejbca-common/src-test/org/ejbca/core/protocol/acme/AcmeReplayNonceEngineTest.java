@@ -0,0 +1,211 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.protocol.acme;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests issuing, validation and replay detection of ACME replay nonces.
+ *
+ * @version $Id$
+ */
+public class AcmeReplayNonceEngineTest {
+
+    private static final long VALIDITY = 600 * 1000L;
+    private static final long WINDOW = 60 * 1000L;
+    private static final long NOW = 1546300800000L;
+    private static final byte[] SECRET = "0123456789abcdef0123456789abcdef".getBytes();
+    private static final byte[] OTHER_SECRET = "fedcba9876543210fedcba9876543210".getBytes();
+
+    private static byte[] nodeId(final int id) {
+        final byte[] nodeId = new byte[AcmeReplayNonceEngine.NODE_ID_LENGTH];
+        nodeId[0] = (byte) id;
+        return nodeId;
+    }
+
+    private static AcmeReplayNonceEngine engine(final int nodeId, final byte[]... secrets) {
+        return new AcmeReplayNonceEngine(Arrays.asList(secrets), nodeId(nodeId), VALIDITY, WINDOW);
+    }
+
+    @Test
+    public void testUseOnce() {
+        final AcmeReplayNonceEngine engine = engine(1, SECRET);
+        final String nonce = engine.getReplayNonce(NOW);
+        assertEquals("Nonce should be 64 bytes in url-safe base64 without padding", 86, nonce.length());
+        assertFalse(nonce.contains("=") || nonce.contains("+") || nonce.contains("/"));
+        assertEquals(NOW, engine.useNonce(nonce, NOW + 1000));
+        assertEquals("Nonce must only be accepted once", AcmeReplayNonceEngine.INVALID, engine.useNonce(nonce, NOW + 2000));
+        assertNotEquals(nonce, engine.getReplayNonce(NOW));
+    }
+
+    @Test
+    public void testOtherNode() {
+        final AcmeReplayNonceEngine node1 = engine(1, SECRET);
+        final AcmeReplayNonceEngine node2 = engine(2, SECRET);
+        final String nonce1 = node1.getReplayNonce(NOW);
+        final String nonce2 = node2.getReplayNonce(NOW);
+        // Both nodes have counter 0 in this window, which must not be mixed up
+        assertEquals("Nonce from another node with the same secret should be accepted", NOW, node2.useNonce(nonce1, NOW));
+        assertEquals(NOW, node2.useNonce(nonce2, NOW));
+        assertEquals(AcmeReplayNonceEngine.INVALID, node2.useNonce(nonce1, NOW));
+        assertEquals("Nonce from a node with another secret must be rejected", AcmeReplayNonceEngine.INVALID,
+                engine(3, OTHER_SECRET).useNonce(node1.getReplayNonce(NOW), NOW));
+    }
+
+    @Test
+    public void testInvalidNonces() {
+        final AcmeReplayNonceEngine engine = engine(1, SECRET);
+        final byte[] decoded = Base64.getUrlDecoder().decode(engine.getReplayNonce(NOW));
+        for (int i = 0; i < decoded.length; i++) {
+            final byte[] tampered = decoded.clone();
+            tampered[i] ^= 1;
+            assertEquals("Modified byte " + i + " was not detected", AcmeReplayNonceEngine.INVALID,
+                    engine.useNonce(Base64.getUrlEncoder().withoutPadding().encodeToString(tampered), NOW));
+        }
+        assertEquals(AcmeReplayNonceEngine.INVALID, engine.useNonce(null, NOW));
+        assertEquals(AcmeReplayNonceEngine.INVALID, engine.useNonce("", NOW));
+        assertEquals(AcmeReplayNonceEngine.INVALID, engine.useNonce("D8s4D2mLs8Vn-goWuPQeKA", NOW));
+        assertEquals(AcmeReplayNonceEngine.INVALID, engine.useNonce("not base64!", NOW));
+    }
+
+    @Test
+    public void testExpiry() {
+        final AcmeReplayNonceEngine engine = engine(1, SECRET);
+        final String nonce = engine.getReplayNonce(NOW);
+        assertEquals("Expired nonce must be rejected", AcmeReplayNonceEngine.INVALID, engine.useNonce(nonce, NOW + VALIDITY + 1));
+        final String lastValid = engine.getReplayNonce(NOW);
+        assertEquals(NOW, engine.useNonce(lastValid, NOW + VALIDITY));
+        final String fromTheFuture = engine.getReplayNonce(NOW + 2 * WINDOW);
+        assertEquals("Nonce from a node with a clock too far ahead must be rejected", AcmeReplayNonceEngine.INVALID,
+                engine.useNonce(fromTheFuture, NOW));
+    }
+
+    @Test
+    public void testOldWindowsAreRemoved() {
+        final AcmeReplayNonceEngine engine = engine(1, SECRET);
+        for (long time = NOW; time < NOW + 3 * VALIDITY; time += WINDOW) {
+            assertEquals(time, engine.useNonce(engine.getReplayNonce(time), time));
+        }
+        assertTrue("Windows with only expired nonces should be removed, found " + engine.getWindowCount(),
+                engine.getWindowCount() <= VALIDITY / WINDOW + 1);
+    }
+
+    @Test
+    public void testSecretRollover() {
+        final AcmeReplayNonceEngine engine = engine(1, SECRET);
+        final String oldNonce = engine.getReplayNonce(NOW);
+        final String usedNonce = engine.getReplayNonce(NOW);
+        assertEquals(NOW, engine.useNonce(usedNonce, NOW));
+        engine.setSecrets(Arrays.asList(SECRET, OTHER_SECRET));
+        final String newNonce = engine.getReplayNonce(NOW);
+        assertEquals("Nonce with the previous secret should still be accepted", NOW, engine.useNonce(oldNonce, NOW));
+        assertEquals(NOW, engine.useNonce(newNonce, NOW));
+        assertEquals("Used nonces must be remembered when the secrets change", AcmeReplayNonceEngine.INVALID, engine.useNonce(usedNonce, NOW));
+        assertEquals("New nonces must use the newest secret", NOW, engine(2, OTHER_SECRET).useNonce(engine.getReplayNonce(NOW), NOW));
+    }
+
+    @Test
+    public void testBitmap() {
+        final AcmeReplayNonceEngine.ConcurrentBitmap bitmap = new AcmeReplayNonceEngine.ConcurrentBitmap();
+        for (final long index : new long[] { 0, 1, 63, 64, 65535, 65536, AcmeReplayNonceEngine.ConcurrentBitmap.CAPACITY - 1 }) {
+            assertFalse("Bit " + index + " was set", bitmap.getAndSet(index));
+            assertTrue("Bit " + index + " was not set", bitmap.getAndSet(index));
+        }
+        assertFalse(bitmap.getAndSet(2));
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentReplay() throws InterruptedException {
+        final AcmeReplayNonceEngine engine = engine(1, SECRET);
+        final int nonceCount = 20000;
+        final int threadCount = 8;
+        final List<String> nonces = new ArrayList<>(nonceCount);
+        for (int i = 0; i < nonceCount; i++) {
+            nonces.add(engine.getReplayNonce(NOW));
+        }
+        assertEquals("Nonces must be unique", nonceCount, new HashSet<>(nonces).size());
+        final AtomicInteger accepted = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < threadCount; t++) {
+            // Every thread tries to use every nonce, in its own order
+            final List<String> ownOrder = new ArrayList<>(nonces);
+            Collections.shuffle(ownOrder);
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (final String nonce : ownOrder) {
+                        if (engine.useNonce(nonce, NOW) != AcmeReplayNonceEngine.INVALID) {
+                            accepted.incrementAndGet();
+                        }
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        start.countDown();
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals("Each nonce should be accepted exactly once", nonceCount, accepted.get());
+    }
+
+    @Test(timeout = 60000)
+    public void testConcurrentIssue() throws InterruptedException {
+        final AcmeReplayNonceEngine engine = engine(1, SECRET);
+        final int perThread = 5000;
+        final Set<String> nonces = Collections.synchronizedSet(new HashSet<String>());
+        final List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 8; t++) {
+            final Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < perThread; i++) {
+                        // Threads cross a window boundary while issuing
+                        nonces.add(engine.getReplayNonce(NOW + WINDOW - perThread / 2 + i));
+                    }
+                }
+            });
+            thread.start();
+            threads.add(thread);
+        }
+        for (final Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals("Nonces must be unique", 8 * perThread, nonces.size());
+        for (final String nonce : nonces) {
+            assertNotEquals("Issued nonce was rejected", AcmeReplayNonceEngine.INVALID, engine.useNonce(nonce, NOW + WINDOW));
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+
+package org.ejbca.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+import org.cesecore.metrics.LatencyHistogram;
+import org.junit.Test;
+
+/**
+ * Tests the CSV and JSON output of {@link PerformanceTestReport}.
+ *
+ * @version $Id$
+ */
+public class PerformanceTestReportTest {
+
+    private PerformanceTestReport createReport() {
+        final LatencyHistogram histogram = new LatencyHistogram("Test response time");
+        for (int i = 1; i <= 1000; i++) {
+            histogram.recordValue(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+        final LatencyHistogram empty = new LatencyHistogram("Not used");
+        final PerformanceTestReport report = new PerformanceTestReport();
+        report.addParameter("mode", "open");
+        report.addParameter("threads", Integer.valueOf(8));
+        report.addParameter("throughput", Double.valueOf(99.5));
+        report.addLatencies(histogram.getSnapshot());
+        report.addLatencies(empty.getSnapshot());
+        return report;
+    }
+
+    @Test
+    public void testCsv() {
+        final String[] lines = createReport().toCsv().split("\n");
+        assertEquals(5, lines.length);
+        assertEquals("# mode: open", lines[0]);
+        assertEquals("# threads: 8", lines[1]);
+        assertEquals("# throughput: 99.500", lines[2]);
+        assertEquals("name,count,mean_ms,p50_ms,p90_ms,p99_ms,p99_9_ms,max_ms", lines[3]);
+        assertEquals("Test response time,1000,1.000,1.000,1.000,1.000,1.000,1.000", lines[4]);
+    }
+
+    @Test
+    public void testJson() {
+        final String json = createReport().toJson();
+        assertTrue(json, json.contains("\"mode\": \"open\""));
+        assertTrue(json, json.contains("\"threads\": 8"));
+        assertTrue(json, json.contains("\"name\": \"Test response time\", \"count\": 1000"));
+        assertTrue(json, json.contains("\"p99_9_ms\": 1.000"));
+        assertTrue("Empty histograms should not be included", !json.contains("Not used"));
+    }
+
+    @Test
+    public void testQuoting() {
+        final PerformanceTestReport report = new PerformanceTestReport();
+        final LatencyHistogram histogram = new LatencyHistogram("Job \"a\", b");
+        histogram.recordValue(1);
+        report.addLatencies(histogram.getSnapshot());
+        assertTrue(report.toCsv().contains("\"Job \"\"a\"\", b\",1,"));
+        assertTrue(report.toJson().contains("\"name\": \"Job \\\"a\\\", b\""));
+    }
+
+    @Test
+    public void testWriteFormatFromFileName() throws Exception {
+        final File json = File.createTempFile("report", ".json");
+        final File csv = File.createTempFile("report", ".csv");
+        try {
+            final PerformanceTestReport report = createReport();
+            report.write(json);
+            report.write(csv);
+            assertEquals(report.toJson(), new String(Files.readAllBytes(json.toPath()), StandardCharsets.UTF_8));
+            assertEquals(report.toCsv(), new String(Files.readAllBytes(csv.toPath()), StandardCharsets.UTF_8));
+        } finally {
+            json.delete();
+            csv.delete();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+
+package org.ejbca.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import org.cesecore.metrics.LatencyHistogram;
+import org.ejbca.util.PerformanceTest.NrOfThreadsAndNrOfTests;
+import org.ejbca.util.PerformanceTest.Schedule;
+import org.junit.Test;
+
+/**
+ * Tests parsing of the load argument of the stress tests, when tests are started, and the result written to the output file.
+ *
+ * @version $Id$
+ */
+public class PerformanceTestTest {
+
+    @Test
+    public void testDefaultLoad() {
+        final NrOfThreadsAndNrOfTests load = new NrOfThreadsAndNrOfTests((String) null);
+        assertEquals(1, load.getThreads());
+        assertEquals(-1, load.getTests());
+        assertFalse(load.isOpenLoop());
+        assertEquals(0, load.getWarmupSeconds());
+        assertEquals(0, load.getDurationSeconds());
+        assertNull(load.getOutputFile());
+    }
+
+    @Test
+    public void testThreadsAndTests() {
+        assertEquals(10, new NrOfThreadsAndNrOfTests("10").getThreads());
+        assertEquals(-1, new NrOfThreadsAndNrOfTests("10").getTests());
+        final NrOfThreadsAndNrOfTests load = new NrOfThreadsAndNrOfTests(" 4:100 ");
+        assertEquals(4, load.getThreads());
+        assertEquals(100, load.getTests());
+        assertFalse(load.isOpenLoop());
+    }
+
+    @Test
+    public void testOpenLoopOptions() {
+        final NrOfThreadsAndNrOfTests load = new NrOfThreadsAndNrOfTests("50,rate=200.5,warmup=10,duration=60,output=result.json");
+        assertEquals(50, load.getThreads());
+        assertEquals(-1, load.getTests());
+        assertTrue(load.isOpenLoop());
+        assertEquals(200.5, load.getRate(), 0.0);
+        assertEquals(10, load.getWarmupSeconds());
+        assertEquals(60, load.getDurationSeconds());
+        assertEquals("result.json", load.getOutputFile());
+    }
+
+    @Test
+    public void testOpenLoopSchedule() {
+        final long startTime = 1000;
+        final Schedule schedule = new Schedule(new NrOfThreadsAndNrOfTests("4,rate=200,warmup=1,duration=2"));
+        assertEquals(startTime, schedule.getNextStartTime(startTime, 0, startTime));
+        assertEquals(startTime + TimeUnit.MILLISECONDS.toNanos(5), schedule.getNextStartTime(startTime, 1, startTime));
+        // When the threads are busy the tests are still scheduled at the rate, so the waiting is included in the response time
+        assertEquals(startTime + TimeUnit.MILLISECONDS.toNanos(50), schedule.getNextStartTime(startTime, 10, startTime + TimeUnit.SECONDS.toNanos(10)));
+        assertTrue(schedule.isMoreTestsToStart(startTime, 599, startTime));
+        assertFalse("All tests of the warmup and duration should have been started", schedule.isMoreTestsToStart(startTime, 600, startTime));
+    }
+
+    @Test
+    public void testClosedLoopSchedule() {
+        final long startTime = 1000;
+        final long now = startTime + TimeUnit.SECONDS.toNanos(1);
+        final Schedule limitedTests = new Schedule(new NrOfThreadsAndNrOfTests("4:10"));
+        assertEquals(now, limitedTests.getNextStartTime(startTime, 5, now));
+        assertTrue(limitedTests.isMoreTestsToStart(startTime, 9, now));
+        assertFalse(limitedTests.isMoreTestsToStart(startTime, 10, now));
+        final Schedule limitedTime = new Schedule(new NrOfThreadsAndNrOfTests("4,warmup=1,duration=2"));
+        assertTrue(limitedTime.isMoreTestsToStart(startTime, 1000000, startTime + TimeUnit.SECONDS.toNanos(3) - 1));
+        assertFalse(limitedTime.isMoreTestsToStart(startTime, 1000000, startTime + TimeUnit.SECONDS.toNanos(3)));
+        final Schedule unlimited = new Schedule(new NrOfThreadsAndNrOfTests("4,warmup=1"));
+        assertTrue(unlimited.isMoreTestsToStart(startTime, 1000000, startTime + TimeUnit.DAYS.toNanos(1)));
+    }
+
+    @Test
+    public void testReport() {
+        final LatencyHistogram responseTime = new LatencyHistogram("Test response time");
+        responseTime.recordValue(TimeUnit.MILLISECONDS.toNanos(2));
+        final LatencyHistogram startDelay = new LatencyHistogram("Test start delay");
+        final String closed = PerformanceTest.createReport(new NrOfThreadsAndNrOfTests("4:100"), TimeUnit.SECONDS.toNanos(2), 100, 3,
+                Arrays.asList(responseTime.getSnapshot(), startDelay.getSnapshot())).toCsv();
+        assertTrue(closed, closed.startsWith("# mode: closed\n# threads: 4\n# warmupSeconds: 0\n# measuredSeconds: 2.000\n"
+                + "# successes: 100\n# failures: 3\n# throughput: 50.000\n"));
+        assertTrue(closed, closed.contains("\nTest response time,1,2.000,"));
+        assertFalse("Start delays are not recorded in a closed loop", closed.contains("Test start delay"));
+        startDelay.recordValue(TimeUnit.MILLISECONDS.toNanos(1));
+        final String open = PerformanceTest.createReport(new NrOfThreadsAndNrOfTests("4,rate=50,warmup=10"), TimeUnit.SECONDS.toNanos(4), 200, 0,
+                Arrays.asList(responseTime.getSnapshot(), startDelay.getSnapshot())).toCsv();
+        assertTrue(open, open.startsWith("# mode: open\n# threads: 4\n# rate: 50.000\n# warmupSeconds: 10\n"));
+        assertTrue(open, open.contains("\nTest start delay,1,1.000,"));
+    }
+
+    @Test
+    public void testInvalidOptions() {
+        for (final String s : new String[] { "1,speed=10", "1,rate", "1,rate=0" }) {
+            try {
+                new NrOfThreadsAndNrOfTests(s);
+                fail("'" + s + "' should not be accepted");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+}
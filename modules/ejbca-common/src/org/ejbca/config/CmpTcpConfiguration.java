@@ -1,20 +1,55 @@
 package org.ejbca.config;
 
+import org.apache.log4j.Logger;
+
 public class CmpTcpConfiguration {
-    
+
+    private static final Logger log = Logger.getLogger(CmpTcpConfiguration.class);
+
     public static int getTCPPortNumber() {
         return Integer.valueOf(EjbcaConfigurationHolder.getString("cmp.tcp.portno"));
     }
-    
-    public static String getTCPLogDir() {
-        return EjbcaConfigurationHolder.getString("cmp.tcp.logdir");
-    }
-    
-    public static String getTCPConfigFile() {
-        return EjbcaConfigurationHolder.getString("cmp.tcp.conffile");
-    }
-    
+
     public static String getTCPBindAdress() {
         return EjbcaConfigurationHolder.getString("cmp.tcp.bindadress");
     }
-}
\ No newline at end of file
+
+    /** @return the number of threads handling network I/O of the client connections */
+    public static int getTCPIoThreads() {
+        return getPositiveInt("cmp.tcp.iothreads", 2);
+    }
+
+    /** @return the number of threads processing CMP messages */
+    public static int getTCPWorkerThreads() {
+        return getPositiveInt("cmp.tcp.workerthreads", 16);
+    }
+
+    /** @return the number of received CMP messages that can wait for a worker thread, before the server stops reading from the clients */
+    public static int getTCPQueueSize() {
+        return getPositiveInt("cmp.tcp.queuesize", 1000);
+    }
+
+    /** @return the maximum number of incoming connections that can wait to be accepted by the server */
+    public static int getTCPBacklog() {
+        return getPositiveInt("cmp.tcp.backlog", 50);
+    }
+
+    /** @return the time in milliseconds after which an idle client connection is closed */
+    public static long getTCPIdleTimeout() {
+        return getPositiveInt("cmp.tcp.idletimeout", 60) * 1000L;
+    }
+
+    private static int getPositiveInt(final String key, final int defaultValue) {
+        int value = defaultValue;
+        try {
+            value = Integer.parseInt(EjbcaConfigurationHolder.getString(key).trim());
+        } catch (NumberFormatException | NullPointerException e) {
+            log.warn("\"" + key + "\" is not a decimal number. Using default value: " + defaultValue);
+        }
+        if (value <= 0) {
+            log.warn("\"" + key + "\" must be a positive number. Using default value: " + defaultValue);
+            value = defaultValue;
+        }
+        return value;
+    }
+}
@@ -116,6 +116,28 @@ public final class EjbcaConfiguration {
         return EjbcaConfigurationHolder.getExpandedString("healthcheck.dbquery");
     }
 
+    /** @return the maximum number of worker threads that migrate chunks of items concurrently during the post-upgrade */
+    public static int getPostUpgradeWorkers() {
+        int value = 4;
+        try {
+            value = Integer.parseInt(EjbcaConfigurationHolder.getString("upgrade.postupgrade.workers"));
+        } catch (NumberFormatException e) {
+            log.warn("\"upgrade.postupgrade.workers\" is not a decimal number. Using default value: " + value);
+        }
+        return Math.max(value, 1);
+    }
+
+    /** @return the number of items, e.g. certificate profiles, in each chunk that is migrated and checkpointed during the post-upgrade */
+    public static int getPostUpgradeChunkSize() {
+        int value = 100;
+        try {
+            value = Integer.parseInt(EjbcaConfigurationHolder.getString("upgrade.postupgrade.chunksize"));
+        } catch (NumberFormatException e) {
+            log.warn("\"upgrade.postupgrade.chunksize\" is not a decimal number. Using default value: " + value);
+        }
+        return Math.max(value, 1);
+    }
+
     /**
      * Parameter to specify location of file containing information about maintenance
      */
@@ -137,6 +159,21 @@ public final class EjbcaConfiguration {
         return TRUE.equalsIgnoreCase(EjbcaConfigurationHolder.getString("healthcheck.publisherconnections"));
     }
 
+    /**
+     * Parameter specifying the time in milliseconds between two runs of a background health check, used for the readiness probe.
+     * @param checkName name of the check, e.g. "database" for "healthcheck.interval.database"
+     */
+    public static long getHealthCheckInterval(final String checkName) {
+        final String property = "healthcheck.interval." + checkName;
+        long value = 10000;
+        try {
+            value = Long.parseLong(EjbcaConfigurationHolder.getString(property));
+        } catch (NumberFormatException e) {
+            log.warn("\"" + property + "\" is not a decimal number. Using default value: " + value);
+        }
+        return Math.max(value, 100L);
+    }
+
     /**
      * Parameter to specify location of file containing information about maintenance
      */
@@ -39,6 +39,7 @@ public class GlobalAcmeConfiguration extends ConfigurationBase {
     private static final String KEY_ACME_CONFIGURATION_PREFIX = "acmeConfiguration_";
     private static final String KEY_REPLAY_NONCE_VALIDITY = "replayNonceValiditity";
     private static final String KEY_REPLAY_NONCE_SECRETS_HMAC_WITH_SHA256 = "replayNonceSecretsHmacWithSHA256";
+    private static final String KEY_REPLAY_NONCE_STRICT = "replayNonceStrict";
 
     @Override
     public void upgrade() {}
@@ -53,6 +54,7 @@ public class GlobalAcmeConfiguration extends ConfigurationBase {
         properties.put(KEY_INITIALIZED, isInitialized());
         properties.put(KEY_DEFAULT_ACME_CONFIGURATION_ID, getDefaultAcmeConfigurationId());
         properties.put(KEY_REPLAY_NONCE_VALIDITY, getReplayNonceValidity());
+        properties.put(KEY_REPLAY_NONCE_STRICT, isReplayNonceStrict());
         properties.put("acmeConfigurationIds", Arrays.toString(getAcmeConfigurationIds().toArray()));
         properties.put(KEY_REPLAY_NONCE_SECRETS_HMAC_WITH_SHA256,
                 getReplayNonceSharedSecrets(PKCSObjectIdentifiers.id_hmacWithSHA256.getId())==null ? "not configured" : "configured");
@@ -112,6 +114,17 @@ public class GlobalAcmeConfiguration extends ConfigurationBase {
         data.put(KEY_REPLAY_NONCE_VALIDITY, replayNonceValidity);
     }
 
+    /**
+     * @return true if used replay-nonces should be stored in the database, to prevent replay on other nodes in the cluster.
+     * Otherwise replay is only prevented on the node where the nonce was first used, which is enough with sticky sessions.
+     */
+    public boolean isReplayNonceStrict() {
+        return Boolean.valueOf((String)data.get(KEY_REPLAY_NONCE_STRICT));
+    }
+    public void setReplayNonceStrict(final boolean replayNonceStrict) {
+        data.put(KEY_REPLAY_NONCE_STRICT, String.valueOf(replayNonceStrict));
+    }
+
     /** @return all replay-nonce secrets for the specified algorithm that have been configured */
     @SuppressWarnings("unchecked")
     public ArrayList<String> getReplayNonceSharedSecrets(final String hmacOid) throws IllegalArgumentException, IllegalStateException {
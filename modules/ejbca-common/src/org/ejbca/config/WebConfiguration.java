@@ -303,4 +303,18 @@ public class WebConfiguration {
         }
         return value;
     }
+
+    /**
+     * Returns the time in milliseconds that the CRL store serves a cached CRL before checking the database for a newer one.
+     * A stored CRL is picked up earlier, when the cache is notified of it. Default is 10 seconds.
+     */
+    public static long getCrlStoreCacheTime() {
+        long value = 10;
+        try {
+            value = Long.parseLong(EjbcaConfigurationHolder.getString("crlstore.cachetime"));
+        } catch (NumberFormatException e) {
+            log.warn("\"crlstore.cachetime\" is not a decimal number. Using default value: " + value);
+        }
+        return value * 1000L;
+    }
 }
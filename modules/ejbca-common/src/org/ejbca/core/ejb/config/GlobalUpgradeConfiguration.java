@@ -12,7 +12,11 @@
  *************************************************************************/
 package org.ejbca.core.ejb.config;
 
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Properties;
+import java.util.Set;
 
 import org.cesecore.configuration.ConfigurationBase;
 
@@ -32,6 +36,7 @@ public class GlobalUpgradeConfiguration extends ConfigurationBase {
     private static final String EEP_IN_CERTIFICATE_DATA = "endEntityProfileInCertificateData";
     private static final String POST_UPGRADE_STARTED = "postUpgradeStarted";
     private static final String UPGRADED_FROM        = "upgradedFromVersion";
+    private static final String MIGRATION_CHECKPOINT_PREFIX = "migrationCheckpoint.";
     
     public String getUpgradedToVersion() {
         return (String) data.get(UPGRADED_TO_VERSION);
@@ -91,4 +96,20 @@ public class GlobalUpgradeConfiguration extends ConfigurationBase {
     public void setPostUpgradeStarted(long startTimeMs) {
         data.put(POST_UPGRADE_STARTED, String.valueOf(startTimeMs));
     }
+
+    /** @return the ids of the chunks of a post-upgrade step that have completed, so that an interrupted post-upgrade can continue */
+    public Set<String> getMigrationCheckpoint(final String step) {
+        @SuppressWarnings("unchecked")
+        final List<String> value = (List<String>) data.get(MIGRATION_CHECKPOINT_PREFIX + step);
+        return value == null ? new HashSet<String>() : new HashSet<>(value);
+    }
+    public void addMigrationCheckpoint(final String step, final String chunkId) {
+        final Set<String> chunkIds = getMigrationCheckpoint(step);
+        chunkIds.add(chunkId);
+        data.put(MIGRATION_CHECKPOINT_PREFIX + step, new ArrayList<>(chunkIds));
+    }
+    /** Removes the checkpoint of a post-upgrade step, when the step has completed */
+    public void clearMigrationCheckpoint(final String step) {
+        data.remove(MIGRATION_CHECKPOINT_PREFIX + step);
+    }
 }
@@ -12,11 +12,19 @@
  *************************************************************************/
 package org.ejbca.core.model.approval;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
+import java.util.List;
 
+import org.apache.log4j.Logger;
 import org.cesecore.certificates.endentity.EndEntityConstants;
+import org.cesecore.util.Base64;
 import org.ejbca.core.model.SecConst;
 import org.ejbca.core.model.approval.profile.ApprovalProfile;
 
@@ -29,6 +37,7 @@ import org.ejbca.core.model.approval.profile.ApprovalProfile;
 public class ApprovalDataVO implements Serializable {
 
 	private static final long serialVersionUID = -2L;
+	private static final Logger log = Logger.getLogger(ApprovalDataVO.class);
 
 	// Status constants
 	public static final int STATUS_WAITINGFORAPPROVAL = -1;
@@ -81,6 +90,9 @@ public class ApprovalDataVO implements Serializable {
     private ApprovalRequest approvalRequest = null;
     private Date requestDate = null;
     private Date expireDate = null;
+    /** Encoded approvals and approval request from the database, which are decoded on first use */
+    private transient String encodedApprovals = null;
+    private transient String encodedApprovalRequest = null;
 
 	/**
 	 * @param id unique row id
@@ -119,6 +131,66 @@ public class ApprovalDataVO implements Serializable {
 		this.requestDate = requestDate;
 		this.expireDate = expireDate;
 	}
+
+    /**
+     * Creates a value object where the approvals and the approval request are decoded from their database representation
+     * when they are first used. Searches that only use the other fields will then not have to deserialize them.
+     *
+     * @param encodedApprovals the approvals, as encoded in the database
+     * @param encodedApprovalRequest the approval request, as encoded in the database
+     * @see #ApprovalDataVO(int, int, int, int, int, String, String, int, Collection, ApprovalRequest, Date, Date)
+     */
+    public ApprovalDataVO(int id, int approvalId, int approvalType, int endEntityProfileiId, int cAId, String reqadmincertissuerdn,
+            String reqadmincertsn, int status, String encodedApprovals, String encodedApprovalRequest, Date requestDate, Date expireDate) {
+        this(id, approvalId, approvalType, endEntityProfileiId, cAId, reqadmincertissuerdn, reqadmincertsn, status, (Collection<Approval>) null,
+                (ApprovalRequest) null, requestDate, expireDate);
+        this.encodedApprovals = encodedApprovals;
+        this.encodedApprovalRequest = encodedApprovalRequest;
+    }
+
+    /**
+     * Decodes an approval request as stored in the database.
+     *
+     * @param encodedApprovalRequest Base64 encoded serialized approval request
+     * @return the approval request
+     * @throws IllegalStateException if the approval request could not be decoded
+     */
+    public static ApprovalRequest decodeApprovalRequest(final String encodedApprovalRequest) {
+        try (final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(Base64.decode(encodedApprovalRequest.getBytes())))) {
+            return (ApprovalRequest) ois.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            log.error("Error building approval request.", e);
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Decodes a list of approvals as stored in the database.
+     *
+     * @param encodedApprovals Base64 encoded number of approvals, followed by the serialized approvals
+     * @return the approvals, never null
+     * @throws IllegalStateException if the approvals could not be decoded
+     */
+    public static List<Approval> decodeApprovals(final String encodedApprovals) {
+        final List<Approval> approvals = new ArrayList<>();
+        try (final ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(Base64.decode(encodedApprovals.getBytes())))) {
+            final int size = ois.readInt();
+            for (int i = 0; i < size; i++) {
+                approvals.add((Approval) ois.readObject());
+            }
+        } catch (IOException | ClassNotFoundException e) {
+            log.error("Error building approvals.", e);
+            throw new IllegalStateException(e);
+        }
+        return approvals;
+    }
+
+    /** Decodes the approvals and the approval request before serialization, so the receiver gets the same object as before */
+    private void writeObject(final ObjectOutputStream out) throws IOException {
+        getApprovals();
+        getApprovalRequest();
+        out.defaultWriteObject();
+    }
 	/**
 	 *  Constructed from action data as actiontype, admin, username etc. It should
      *  result in the same approvalid if the admin tries to request the same action twice.
@@ -134,11 +206,16 @@ public class ApprovalDataVO implements Serializable {
 	 * @return Returns the approvalRequest.
 	 */
 	public ApprovalRequest getApprovalRequest() {
+	    if (encodedApprovalRequest != null) {
+	        approvalRequest = decodeApprovalRequest(encodedApprovalRequest);
+	        encodedApprovalRequest = null;
+	    }
 		return approvalRequest;
 	}
 
 	public void setApprovalRequest(ApprovalRequest approvalRequest) {
 	    this.approvalRequest = approvalRequest;
+	    this.encodedApprovalRequest = null;
 	}
 
 	/**
@@ -147,6 +224,10 @@ public class ApprovalDataVO implements Serializable {
 	 * @return Returns the approvals.
 	 */
 	public Collection<Approval> getApprovals() {
+	    if (encodedApprovals != null) {
+	        approvals = decodeApprovals(encodedApprovals);
+	        encodedApprovals = null;
+	    }
 		return approvals;
 	}
 
@@ -198,7 +279,7 @@ public class ApprovalDataVO implements Serializable {
 	}
 
 	public ApprovalProfile getApprovalProfile() {
-	    return approvalRequest.getApprovalProfile();
+	    return getApprovalRequest().getApprovalProfile();
 	}
 
     public int getRemainingApprovals() {
@@ -0,0 +1,228 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.configdump;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Reads and writes configuration dumps as zip archives.
+ * <p>
+ * Each object is stored once, as <code>objects/&lt;SHA-256 of content&gt;.xml</code>, so objects with identical content,
+ * such as copies of a profile, take no extra space. The file <code>manifest.txt</code> lists the objects in dependency
+ * order, one per line: <code>type;id;URL encoded name;hash</code>.
+ * <p>
+ * Objects are encoded and decoded on a pool of worker threads, since XMLEncoder/XMLDecoder is what dominates the time
+ * for large numbers of profiles.
+ *
+ * @version $Id$
+ */
+public final class ConfigDumpArchive {
+
+    private static final Logger log = Logger.getLogger(ConfigDumpArchive.class);
+
+    static final String MANIFEST = "manifest.txt";
+    static final String OBJECTS_DIR = "objects/";
+    private static final String OBJECT_SUFFIX = ".xml";
+
+    private ConfigDumpArchive() { }
+
+    /**
+     * Writes objects to an archive. The stream is not closed.
+     *
+     * @param out stream to write the zip archive to
+     * @param items objects to write, in any order
+     * @param threads number of threads to encode objects with
+     * @throws IOException if writing fails
+     */
+    public static void write(final OutputStream out, final Collection<ConfigDumpItem> items, final int threads) throws IOException {
+        final List<ConfigDumpItem> sorted = new ArrayList<>(items);
+        sorted.sort(ConfigDumpItem.DEPENDENCY_ORDER);
+        final List<Callable<String>> tasks = new ArrayList<>();
+        for (final ConfigDumpItem item : sorted) {
+            tasks.add(new Callable<String>() {
+                @Override
+                public String call() {
+                    return item.getHash(); // encodes the object
+                }
+            });
+        }
+        invokeAll(tasks, threads, "ConfigDumpEncoder");
+
+        final StringBuilder manifest = new StringBuilder();
+        for (final ConfigDumpItem item : sorted) {
+            manifest.append(item.getType().getLabel()).append(';').append(item.getId()).append(';').append(urlEncode(item.getName())).append(';')
+                    .append(item.getHash()).append('\n');
+        }
+        final ZipOutputStream zip = new ZipOutputStream(out);
+        zip.putNextEntry(new ZipEntry(MANIFEST));
+        zip.write(manifest.toString().getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+        final Set<String> written = new HashSet<>();
+        for (final ConfigDumpItem item : sorted) {
+            if (written.add(item.getHash())) {
+                zip.putNextEntry(new ZipEntry(OBJECTS_DIR + item.getHash() + OBJECT_SUFFIX));
+                zip.write(item.getEncoded());
+                zip.closeEntry();
+            }
+        }
+        zip.finish();
+        if (log.isDebugEnabled()) {
+            log.debug("Wrote " + sorted.size() + " objects to configuration dump, " + written.size() + " of them with distinct content.");
+        }
+    }
+
+    /**
+     * Reads an archive written by {@link #write}. The hash of every object is verified.
+     *
+     * @param in stream to read the zip archive from. The stream is not closed.
+     * @param threads number of threads to decode objects with
+     * @return the objects, in dependency order
+     * @throws IOException if the archive could not be read, or is malformed or corrupt
+     */
+    public static List<ConfigDumpItem> read(final InputStream in, final int threads) throws IOException {
+        final Map<String, byte[]> objects = new HashMap<>();
+        String manifest = null;
+        final ZipInputStream zip = new ZipInputStream(in);
+        ZipEntry entry;
+        while ((entry = zip.getNextEntry()) != null) {
+            final String name = entry.getName();
+            if (MANIFEST.equals(name)) {
+                manifest = new String(IOUtils.toByteArray(zip), StandardCharsets.UTF_8);
+            } else if (name.startsWith(OBJECTS_DIR) && name.endsWith(OBJECT_SUFFIX)) {
+                objects.put(name.substring(OBJECTS_DIR.length(), name.length() - OBJECT_SUFFIX.length()), IOUtils.toByteArray(zip));
+            } else {
+                log.info("Ignoring unknown entry '" + name + "' in configuration dump.");
+            }
+        }
+        if (manifest == null) {
+            throw new IOException("Configuration dump does not contain " + MANIFEST + ".");
+        }
+
+        final List<Callable<ConfigDumpItem>> tasks = new ArrayList<>();
+        final BufferedReader reader = new BufferedReader(new StringReader(manifest));
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (line.trim().isEmpty()) {
+                continue;
+            }
+            final String[] fields = line.split(";", -1);
+            final ConfigDumpItem.Type type = fields.length == 4 ? ConfigDumpItem.Type.fromLabel(fields[0]) : null;
+            if (type == null) {
+                throw new IOException("Malformed line " + lineNumber + " in " + MANIFEST + ".");
+            }
+            final int id;
+            try {
+                id = Integer.parseInt(fields[1]);
+            } catch (NumberFormatException e) {
+                throw new IOException("Malformed id on line " + lineNumber + " in " + MANIFEST + ".");
+            }
+            final String name = urlDecode(fields[2]);
+            final String hash = fields[3];
+            final byte[] encoded = objects.get(hash);
+            if (encoded == null) {
+                throw new IOException("Configuration dump does not contain the data of " + type.getLabel() + " '" + name + "'.");
+            }
+            tasks.add(new Callable<ConfigDumpItem>() {
+                @Override
+                public ConfigDumpItem call() throws IOException {
+                    if (!hash.equals(ConfigDumpItem.sha256(encoded))) {
+                        throw new IOException("Data of " + type.getLabel() + " '" + name + "' is corrupt, the hash does not match.");
+                    }
+                    return ConfigDumpItem.decode(type, id, name, encoded);
+                }
+            });
+        }
+        final List<ConfigDumpItem> items = invokeAll(tasks, threads, "ConfigDumpDecoder");
+        items.sort(ConfigDumpItem.DEPENDENCY_ORDER);
+        return items;
+    }
+
+    /** Runs the tasks on a pool of daemon threads, and returns the results in the same order as the tasks */
+    private static <T> List<T> invokeAll(final List<Callable<T>> tasks, final int threads, final String threadName) throws IOException {
+        final List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.isEmpty()) {
+            return results;
+        }
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ExecutorService executorService = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, threadName + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        try {
+            for (final Future<T> future : executorService.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while processing configuration dump.", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            executorService.shutdownNow();
+        }
+        return results;
+    }
+
+    private static String urlEncode(final String value) {
+        try {
+            return URLEncoder.encode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 was not a known encoding", e);
+        }
+    }
+
+    private static String urlDecode(final String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException("UTF-8 was not a known encoding", e);
+        }
+    }
+}
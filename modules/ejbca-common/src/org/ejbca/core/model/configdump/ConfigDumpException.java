@@ -0,0 +1,31 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.configdump;
+
+/**
+ * Thrown when objects from a configuration dump could not be stored in the target system.
+ *
+ * @version $Id$
+ */
+public class ConfigDumpException extends Exception {
+
+    private static final long serialVersionUID = -4915739520185521762L;
+
+    public ConfigDumpException(final String message) {
+        super(message);
+    }
+
+    public ConfigDumpException(final String message, final Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,78 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.configdump;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * What the import of one object from a configuration dump does, or would do in a dry run.
+ *
+ * @version $Id$
+ */
+public final class ConfigDumpImportResult {
+
+    public enum Action {
+        /** Object does not exist in the target system, and is added */
+        ADD,
+        /** Object exists with other content, and is overwritten */
+        UPDATE,
+        /** Object exists with the same content */
+        UNCHANGED,
+        /** Object is not imported, because it is fixed or it exists with other content and overwriting was not requested */
+        SKIP
+    }
+
+    private final ConfigDumpItem item;
+    private final int archivedId;
+    private final Action action;
+    private final List<String> warnings;
+
+    ConfigDumpImportResult(final ConfigDumpItem item, final int archivedId, final Action action, final List<String> warnings) {
+        this.item = item;
+        this.archivedId = archivedId;
+        this.action = action;
+        this.warnings = Collections.unmodifiableList(new ArrayList<>(warnings));
+    }
+
+    /** @return the object with references resolved, and with the id it has in the target system */
+    public ConfigDumpItem getItem() {
+        return item;
+    }
+
+    /** @return id of the object in the archive, which differs from the id of {@link #getItem()} if the id was taken in the target system */
+    public int getArchivedId() {
+        return archivedId;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    /** @return descriptions of references that were changed or removed, since they do not exist in the target system */
+    public List<String> getWarnings() {
+        return warnings;
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append(action).append(' ').append(item.getType().getLabel()).append(" '").append(item.getName()).append("' (").append(archivedId);
+        if (archivedId != item.getId()) {
+            sb.append(" -> ").append(item.getId());
+        }
+        sb.append(')');
+        return sb.toString();
+    }
+}
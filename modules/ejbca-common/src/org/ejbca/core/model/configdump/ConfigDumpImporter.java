@@ -0,0 +1,576 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.configdump;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+import org.cesecore.authentication.tokens.AuthenticationTokenMetaData;
+import org.cesecore.authorization.AuthorizationDeniedException;
+import org.cesecore.authorization.control.StandardRules;
+import org.cesecore.authorization.user.matchvalues.AccessMatchValue;
+import org.cesecore.authorization.user.matchvalues.AccessMatchValueReverseLookupRegistry;
+import org.cesecore.certificates.certificateprofile.CertificateProfile;
+import org.cesecore.certificates.certificateprofile.CertificateProfileConstants;
+import org.cesecore.certificates.endentity.EndEntityConstants;
+import org.cesecore.roles.Role;
+import org.cesecore.roles.member.RoleMember;
+import org.cesecore.util.ProfileID;
+import org.ejbca.core.model.SecConst;
+import org.ejbca.core.model.authorization.AccessRulesConstants;
+import org.ejbca.core.model.ca.publisher.BasePublisher;
+import org.ejbca.core.model.ca.publisher.PublisherConst;
+import org.ejbca.core.model.configdump.ConfigDumpImportResult.Action;
+import org.ejbca.core.model.ra.raadmin.EndEntityProfile;
+import org.ejbca.core.model.services.IWorker;
+import org.ejbca.core.model.services.ServiceConfiguration;
+
+/**
+ * Imports a configuration dump in two steps. {@link #plan} compares the dump with the current state of the target system,
+ * and resolves all references in one pass over the objects, in dependency order. The plan can be shown as a dry run, or
+ * passed to {@link #commit}, which stores the objects in batches.
+ * <p>
+ * References are resolved in the same way as by the importprofiles CLI command: publishers, certificate profiles and end entity
+ * profiles that get a new id are referenced by the new id, and references to CAs, publishers and profiles that do not exist are
+ * removed. This applies to the references from profiles, services, role access rules, role members and internal key binding trust
+ * entries. References to crypto tokens, which are not part of the dump, are kept as they are.
+ *
+ * @version $Id$
+ */
+public class ConfigDumpImporter {
+
+    private static final Logger log = Logger.getLogger(ConfigDumpImporter.class);
+
+    public static final int DEFAULT_BATCH_SIZE = 100;
+
+    /** Key of the publisher groups in the data of a multi group publisher. Same as in MultiGroupPublisher, which is not available here. */
+    private static final String PUBLISHER_GROUPS_KEY = "publishergroups";
+    /** Key of the publisher ids in the worker properties of a service. Same as in PublishQueueProcessWorker, which is not available here. */
+    private static final String PUBLISHER_IDS_KEY = "publisherids";
+
+    /** Dependency order, with multi group publishers after the publishers they may reference */
+    private static final Comparator<ConfigDumpItem> IMPORT_ORDER = new Comparator<ConfigDumpItem>() {
+        @Override
+        public int compare(final ConfigDumpItem o1, final ConfigDumpItem o2) {
+            if (o1.getType() == o2.getType() && isMultiGroupPublisher(o1) != isMultiGroupPublisher(o2)) {
+                return isMultiGroupPublisher(o1) ? 1 : -1;
+            }
+            return ConfigDumpItem.DEPENDENCY_ORDER.compare(o1, o2);
+        }
+    };
+
+    private final ConfigDumpTarget target;
+    private boolean overwrite = false;
+    private Integer defaultCaId = null;
+
+    public ConfigDumpImporter(final ConfigDumpTarget target) {
+        this.target = target;
+    }
+
+    /** @param overwrite true to overwrite existing objects with the same name, false to skip them */
+    public void setOverwrite(final boolean overwrite) {
+        this.overwrite = overwrite;
+    }
+
+    /** @param defaultCaId CA to use in profiles where none of the available CAs exist, or null to make them available to any CA */
+    public void setDefaultCaId(final Integer defaultCaId) {
+        this.defaultCaId = defaultCaId;
+    }
+
+    /**
+     * Decides what to do with each object, and resolves references. Nothing is stored.
+     *
+     * @param items objects read from a configuration dump
+     * @return one result per object, in dependency order
+     * @throws AuthorizationDeniedException if not authorized to read the existing objects
+     */
+    public List<ConfigDumpImportResult> plan(final List<ConfigDumpItem> items) throws AuthorizationDeniedException {
+        final Set<Integer> caIds = target.getCaIds();
+        final Map<ConfigDumpItem.Type, Map<String, ConfigDumpItem>> existingByName = new EnumMap<>(ConfigDumpItem.Type.class);
+        final Map<ConfigDumpItem.Type, Set<Integer>> usedIds = new EnumMap<>(ConfigDumpItem.Type.class);
+        for (final ConfigDumpItem.Type type : ConfigDumpItem.Type.values()) {
+            final Map<String, ConfigDumpItem> byName = new HashMap<>();
+            final Set<Integer> ids = new HashSet<>();
+            for (final ConfigDumpItem existing : target.getItems(type)) {
+                byName.put(existing.getName(), existing);
+                ids.add(existing.getId());
+            }
+            existingByName.put(type, byName);
+            usedIds.put(type, ids);
+        }
+        final Set<Integer> existingPublisherIds = new HashSet<>(usedIds.get(ConfigDumpItem.Type.PUBLISHER));
+        final Set<Integer> existingCertificateProfileIds = new HashSet<>(usedIds.get(ConfigDumpItem.Type.CERTIFICATE_PROFILE));
+        final Set<Integer> existingEndEntityProfileIds = new HashSet<>(usedIds.get(ConfigDumpItem.Type.END_ENTITY_PROFILE));
+        // Archived id -> id in the target system, for resolving references to publishers and profiles
+        final Map<Integer, Integer> publisherIdMapping = new HashMap<>();
+        final Map<Integer, Integer> certificateProfileIdMapping = new HashMap<>();
+        final Map<Integer, Integer> endEntityProfileIdMapping = new HashMap<>();
+
+        final List<ConfigDumpItem> sorted = new ArrayList<>(items);
+        sorted.sort(IMPORT_ORDER);
+        final List<ConfigDumpImportResult> results = new ArrayList<>(sorted.size());
+        for (final ConfigDumpItem item : sorted) {
+            final List<String> warnings = new ArrayList<>();
+            if (isFixed(item)) {
+                warnings.add("Fixed profiles are not imported.");
+                results.add(new ConfigDumpImportResult(item, item.getId(), Action.SKIP, warnings));
+                continue;
+            }
+            final ConfigDumpItem existing = existingByName.get(item.getType()).get(item.getName());
+            final Set<Integer> typeUsedIds = usedIds.get(item.getType());
+            final int id;
+            if (existing != null) {
+                id = existing.getId();
+            } else if (!isValidId(item.getType(), item.getId()) || typeUsedIds.contains(item.getId())) {
+                id = ProfileID.getNotUsedID(new ProfileID.DB() {
+                    @Override
+                    public boolean isFree(final int i) {
+                        return !typeUsedIds.contains(i);
+                    }
+                });
+                warnings.add("Id " + item.getId() + " is already in use. Using " + id + " instead.");
+            } else {
+                id = item.getId();
+            }
+            typeUsedIds.add(id);
+            final ConfigDumpItem resolved;
+            switch (item.getType()) {
+            case PUBLISHER:
+                publisherIdMapping.put(item.getId(), id);
+                resolved = resolvePublisher(item, id, existingPublisherIds, publisherIdMapping, warnings);
+                break;
+            case CERTIFICATE_PROFILE:
+                certificateProfileIdMapping.put(item.getId(), id);
+                resolved = resolveCertificateProfile(item, id, caIds, existingPublisherIds, publisherIdMapping, warnings);
+                break;
+            case END_ENTITY_PROFILE:
+                endEntityProfileIdMapping.put(item.getId(), id);
+                resolved = resolveEndEntityProfile(item, id, caIds, existingCertificateProfileIds, certificateProfileIdMapping, warnings);
+                break;
+            case INTERNAL_KEY_BINDING:
+                resolved = resolveInternalKeyBinding(item, id, caIds, warnings);
+                break;
+            case SERVICE:
+                resolved = resolveService(item, id, caIds, existingPublisherIds, publisherIdMapping, existingCertificateProfileIds,
+                        certificateProfileIdMapping, warnings);
+                break;
+            case ROLE:
+                resolved = resolveRole(item, id, caIds, existingEndEntityProfileIds, endEntityProfileIdMapping, warnings);
+                break;
+            default:
+                throw new IllegalStateException("Unknown type " + item.getType());
+            }
+            final Action action;
+            if (existing == null) {
+                action = Action.ADD;
+            } else if (existing.getHash().equals(resolved.getHash())) {
+                action = Action.UNCHANGED;
+            } else {
+                action = overwrite ? Action.UPDATE : Action.SKIP;
+                if (!overwrite) {
+                    warnings.add("An object of the same type and name but with other content already exists.");
+                }
+            }
+            results.add(new ConfigDumpImportResult(resolved, item.getId(), action, warnings));
+        }
+        return results;
+    }
+
+    /**
+     * Stores the objects that are added or updated in a plan. Objects of one type are stored in batches of at most batchSize
+     * objects, and all objects of a type are stored before the objects of the next type.
+     *
+     * @param plan plan returned by {@link #plan}
+     * @param batchSize maximum number of objects to store in one transaction
+     * @return number of objects stored
+     * @throws AuthorizationDeniedException if not authorized to store the objects. Earlier batches remain stored.
+     * @throws ConfigDumpException if a batch could not be stored. Earlier batches remain stored.
+     */
+    public int commit(final List<ConfigDumpImportResult> plan, final int batchSize) throws AuthorizationDeniedException, ConfigDumpException {
+        int stored = 0;
+        ConfigDumpItem.Type batchType = null;
+        List<ConfigDumpItem> batch = new ArrayList<>();
+        for (final ConfigDumpImportResult result : plan) {
+            if (result.getAction() != Action.ADD && result.getAction() != Action.UPDATE) {
+                continue;
+            }
+            if (!batch.isEmpty() && (result.getItem().getType() != batchType || batch.size() >= batchSize)) {
+                stored += storeBatch(batchType, batch);
+                batch = new ArrayList<>();
+            }
+            batchType = result.getItem().getType();
+            batch.add(result.getItem());
+        }
+        if (!batch.isEmpty()) {
+            stored += storeBatch(batchType, batch);
+        }
+        return stored;
+    }
+
+    private int storeBatch(final ConfigDumpItem.Type type, final List<ConfigDumpItem> batch) throws AuthorizationDeniedException, ConfigDumpException {
+        target.store(type, batch);
+        if (log.isDebugEnabled()) {
+            log.debug("Stored batch of " + batch.size() + " " + type.getLabel() + " objects.");
+        }
+        return batch.size();
+    }
+
+    private static boolean isFixed(final ConfigDumpItem item) {
+        switch (item.getType()) {
+        case CERTIFICATE_PROFILE:
+            return CertificateProfileConstants.isFixedCertificateProfile(item.getId());
+        case END_ENTITY_PROFILE:
+            return item.getId() == EndEntityConstants.EMPTY_END_ENTITY_PROFILE || EndEntityConstants.EMPTY_ENDENTITYPROFILENAME.equals(item.getName());
+        default:
+            return false;
+        }
+    }
+
+    /** @return true if the id is outside of the range of ids reserved for fixed profiles, and not the id that means "unassigned" */
+    private static boolean isValidId(final ConfigDumpItem.Type type, final int id) {
+        switch (type) {
+        case PUBLISHER:
+        case SERVICE:
+            return id > 0;
+        case CERTIFICATE_PROFILE:
+            return id > CertificateProfileConstants.FIXED_CERTIFICATEPROFILE_BOUNDRY;
+        case END_ENTITY_PROFILE:
+            return id > EndEntityConstants.EMPTY_END_ENTITY_PROFILE;
+        default:
+            // Role and internal key binding ids may be negative
+            return id != 0;
+        }
+    }
+
+    private static boolean isMultiGroupPublisher(final ConfigDumpItem item) {
+        return item.getType() == ConfigDumpItem.Type.PUBLISHER
+                && Integer.valueOf(PublisherConst.TYPE_MULTIGROUPPUBLISHER).equals(item.getData().get(BasePublisher.TYPE));
+    }
+
+    /** Resolves the references of multi group publishers to other publishers. Other publishers are returned with the new id only. */
+    private ConfigDumpItem resolvePublisher(final ConfigDumpItem item, final int id, final Set<Integer> existingPublisherIds,
+            final Map<Integer, Integer> publisherIdMapping, final List<String> warnings) {
+        if (!isMultiGroupPublisher(item)) {
+            return item.withId(id);
+        }
+        final LinkedHashMap<Object, Object> data = item.getData();
+        final List<TreeSet<Integer>> groups = new ArrayList<>();
+        final Object archivedGroups = data.get(PUBLISHER_GROUPS_KEY);
+        if (archivedGroups instanceof Collection) {
+            for (final Object archivedGroup : (Collection<?>) archivedGroups) {
+                final TreeSet<Integer> group = new TreeSet<>();
+                for (final Object publisherId : (Collection<?>) archivedGroup) {
+                    final Integer resolvedId = resolvePublisherId((Integer) publisherId, existingPublisherIds, publisherIdMapping, warnings);
+                    if (resolvedId != null) {
+                        group.add(resolvedId);
+                    }
+                }
+                if (!group.isEmpty()) {
+                    groups.add(group);
+                }
+            }
+        }
+        data.put(PUBLISHER_GROUPS_KEY, groups);
+        return new ConfigDumpItem(item.getType(), id, item.getName(), data);
+    }
+
+    private ConfigDumpItem resolveCertificateProfile(final ConfigDumpItem item, final int id, final Set<Integer> caIds,
+            final Set<Integer> existingPublisherIds, final Map<Integer, Integer> publisherIdMapping, final List<String> warnings) {
+        final CertificateProfile profile = new CertificateProfile();
+        profile.loadData(item.getData());
+        final List<Integer> cas = new ArrayList<>();
+        if (profile.getAvailableCAs() != null) {
+            for (final Integer caId : profile.getAvailableCAs()) {
+                if (caId.intValue() == CertificateProfile.ANYCA || caIds.contains(caId)) {
+                    cas.add(caId);
+                } else {
+                    warnings.add("CA with id " + caId + " was not found and will not be used.");
+                }
+            }
+        }
+        if (cas.isEmpty()) {
+            cas.add(defaultCaId != null ? defaultCaId : Integer.valueOf(CertificateProfile.ANYCA));
+            warnings.add("No CAs left. Using " + (defaultCaId != null ? "CA with id " + defaultCaId : "ANYCA") + ".");
+        }
+        profile.setAvailableCAs(cas);
+        final List<Integer> publishers = new ArrayList<>();
+        for (final Integer publisherId : profile.getPublisherList()) {
+            final Integer resolvedId = resolvePublisherId(publisherId, existingPublisherIds, publisherIdMapping, warnings);
+            if (resolvedId != null) {
+                publishers.add(resolvedId);
+            }
+        }
+        profile.setPublisherList(publishers);
+        return new ConfigDumpItem(item.getType(), id, item.getName(), (Map<?, ?>) profile.saveData());
+    }
+
+    private ConfigDumpItem resolveEndEntityProfile(final ConfigDumpItem item, final int id, final Set<Integer> caIds,
+            final Set<Integer> existingCertificateProfileIds, final Map<Integer, Integer> certificateProfileIdMapping, final List<String> warnings) {
+        final EndEntityProfile profile = new EndEntityProfile();
+        profile.loadData(item.getData());
+        final List<Integer> certificateProfiles = new ArrayList<>();
+        for (final Integer certificateProfileId : profile.getAvailableCertificateProfileIds()) {
+            final Integer resolvedId = resolveCertificateProfileId(certificateProfileId, existingCertificateProfileIds, certificateProfileIdMapping);
+            if (resolvedId == null) {
+                warnings.add("Certificate profile with id " + certificateProfileId + " was not found and will not be used.");
+            } else {
+                if (!resolvedId.equals(certificateProfileId)) {
+                    warnings.add("Replacing certificate profile with id " + certificateProfileId + " with " + resolvedId + ".");
+                }
+                certificateProfiles.add(resolvedId);
+            }
+        }
+        if (certificateProfiles.isEmpty()) {
+            certificateProfiles.add(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER);
+            warnings.add("No certificate profiles left. Using ENDUSER.");
+        }
+        profile.setAvailableCertificateProfileIds(certificateProfiles);
+        final Integer defaultCertificateProfile = resolveCertificateProfileId(profile.getDefaultCertificateProfile(), existingCertificateProfileIds,
+                certificateProfileIdMapping);
+        profile.setDefaultCertificateProfile(defaultCertificateProfile != null && certificateProfiles.contains(defaultCertificateProfile)
+                ? defaultCertificateProfile : certificateProfiles.get(0));
+
+        final List<Integer> cas = new ArrayList<>();
+        for (final Integer caId : profile.getAvailableCAs()) {
+            if (caId.intValue() == SecConst.ALLCAS || caIds.contains(caId)) {
+                cas.add(caId);
+            } else {
+                warnings.add("CA with id " + caId + " was not found and will not be used.");
+            }
+        }
+        if (cas.isEmpty()) {
+            cas.add(defaultCaId != null ? defaultCaId : Integer.valueOf(SecConst.ALLCAS));
+            warnings.add("No CAs left. Using " + (defaultCaId != null ? "CA with id " + defaultCaId : "all CAs") + ".");
+        }
+        profile.setAvailableCAs(cas);
+        // getDefaultCA() returns -1 for "all CAs"
+        final int defaultCa = profile.getDefaultCA() == -1 ? SecConst.ALLCAS : profile.getDefaultCA();
+        if (!cas.contains(defaultCa)) {
+            profile.setDefaultCA(cas.get(0));
+            warnings.add("Changing default CA to " + cas.get(0) + ".");
+        }
+        return new ConfigDumpItem(item.getType(), id, item.getName(), (Map<?, ?>) profile.saveData());
+    }
+
+    /** Removes trust entries for CAs that do not exist */
+    private static ConfigDumpItem resolveInternalKeyBinding(final ConfigDumpItem item, final int id, final Set<Integer> caIds,
+            final List<String> warnings) {
+        final LinkedHashMap<Object, Object> data = item.getData();
+        final List<Map<?, ?>> trustEntries = new ArrayList<>();
+        for (final Map<?, ?> trustEntry : ConfigDumpTools.getMaps(data.get(ConfigDumpTools.KEYBINDING_TRUST_ENTRIES_KEY))) {
+            final Integer caId = (Integer) trustEntry.get(ConfigDumpTools.TRUST_ENTRY_CA_ID_KEY);
+            if (caIds.contains(caId)) {
+                trustEntries.add(trustEntry);
+            } else {
+                warnings.add("CA with id " + caId + " was not found and will not be trusted.");
+            }
+        }
+        data.put(ConfigDumpTools.KEYBINDING_TRUST_ENTRIES_KEY, trustEntries);
+        return new ConfigDumpItem(item.getType(), id, item.getName(), data);
+    }
+
+    /** Resolves the CAs, certificate profiles and publishers in the worker properties */
+    private static ConfigDumpItem resolveService(final ConfigDumpItem item, final int id, final Set<Integer> caIds, final Set<Integer> existingPublisherIds,
+            final Map<Integer, Integer> publisherIdMapping, final Set<Integer> existingCertificateProfileIds,
+            final Map<Integer, Integer> certificateProfileIdMapping, final List<String> warnings) {
+        final ServiceConfiguration service = ConfigDumpTools.toService(item);
+        // Copy the properties, since they are shared with the archived item
+        final Properties workerProperties = new Properties();
+        if (service.getWorkerProperties() != null) {
+            workerProperties.putAll(service.getWorkerProperties());
+        }
+        final String caIdsToCheck = workerProperties.getProperty(IWorker.PROP_CAIDSTOCHECK);
+        if (StringUtils.isNotEmpty(caIdsToCheck)) {
+            final List<Integer> cas = new ArrayList<>();
+            for (final Integer caId : parseIds(caIdsToCheck, warnings)) {
+                if (caId.intValue() == SecConst.ALLCAS || caIds.contains(caId)) {
+                    cas.add(caId);
+                } else {
+                    warnings.add("CA with id " + caId + " was not found and will not be used.");
+                }
+            }
+            workerProperties.setProperty(IWorker.PROP_CAIDSTOCHECK, StringUtils.join(cas, ';'));
+        }
+        final String certificateProfileIdsToCheck = workerProperties.getProperty(IWorker.PROP_CERTIFICATE_PROFILE_IDS_TO_CHECK);
+        if (StringUtils.isNotEmpty(certificateProfileIdsToCheck)) {
+            final List<Integer> certificateProfiles = new ArrayList<>();
+            for (final Integer certificateProfileId : parseIds(certificateProfileIdsToCheck, warnings)) {
+                final Integer resolvedId = resolveCertificateProfileId(certificateProfileId, existingCertificateProfileIds, certificateProfileIdMapping);
+                if (resolvedId == null) {
+                    warnings.add("Certificate profile with id " + certificateProfileId + " was not found and will not be used.");
+                } else {
+                    if (!resolvedId.equals(certificateProfileId)) {
+                        warnings.add("Replacing certificate profile with id " + certificateProfileId + " with " + resolvedId + ".");
+                    }
+                    certificateProfiles.add(resolvedId);
+                }
+            }
+            workerProperties.setProperty(IWorker.PROP_CERTIFICATE_PROFILE_IDS_TO_CHECK, StringUtils.join(certificateProfiles, ';'));
+        }
+        final String publisherIds = workerProperties.getProperty(PUBLISHER_IDS_KEY);
+        if (StringUtils.isNotEmpty(publisherIds)) {
+            final List<Integer> publishers = new ArrayList<>();
+            for (final Integer publisherId : parseIds(publisherIds, warnings)) {
+                final Integer resolvedId = resolvePublisherId(publisherId, existingPublisherIds, publisherIdMapping, warnings);
+                if (resolvedId != null) {
+                    publishers.add(resolvedId);
+                }
+            }
+            workerProperties.setProperty(PUBLISHER_IDS_KEY, StringUtils.join(publishers, ';'));
+        }
+        service.setWorkerProperties(workerProperties);
+        return ConfigDumpTools.fromService(id, item.getName(), service);
+    }
+
+    /** Resolves the CAs and end entity profiles in the access rules, and removes members that are issued by CAs that do not exist */
+    private static ConfigDumpItem resolveRole(final ConfigDumpItem item, final int id, final Set<Integer> caIds,
+            final Set<Integer> existingEndEntityProfileIds, final Map<Integer, Integer> endEntityProfileIdMapping, final List<String> warnings) {
+        // Copy the role, since the access rules are shared with the archived item
+        final Role role = new Role(ConfigDumpTools.toRole(item));
+        role.setRoleId(id);
+        final LinkedHashMap<String, Boolean> accessRules = new LinkedHashMap<>();
+        for (final Map.Entry<String, Boolean> accessRule : role.getAccessRules().entrySet()) {
+            final String resource = resolveResource(accessRule.getKey(), caIds, existingEndEntityProfileIds, endEntityProfileIdMapping, warnings);
+            if (resource != null) {
+                accessRules.put(resource, accessRule.getValue());
+            }
+        }
+        role.getAccessRules().clear();
+        role.getAccessRules().putAll(accessRules);
+        final List<RoleMember> roleMembers = new ArrayList<>();
+        for (final RoleMember roleMember : ConfigDumpTools.toRoleMembers(item)) {
+            if (isIssuedByCa(roleMember) && !caIds.contains(roleMember.getTokenIssuerId())) {
+                warnings.add("CA with id " + roleMember.getTokenIssuerId() + " was not found. Role member matching '" + roleMember.getTokenMatchValue()
+                        + "' will not be used.");
+            } else {
+                roleMembers.add(roleMember);
+            }
+        }
+        return ConfigDumpTools.fromRole(role, roleMembers);
+    }
+
+    /** @return the resource with the CA or end entity profile id resolved, or null if the referenced CA or end entity profile does not exist */
+    private static String resolveResource(final String resource, final Set<Integer> caIds, final Set<Integer> existingEndEntityProfileIds,
+            final Map<Integer, Integer> endEntityProfileIdMapping, final List<String> warnings) {
+        final String caPrefix = StandardRules.CAACCESS.resource();
+        final String endEntityProfilePrefix = AccessRulesConstants.ENDENTITYPROFILEPREFIX;
+        if (resource.startsWith(caPrefix)) {
+            final Integer caId = parseResourceId(resource, caPrefix);
+            if (caId != null && !caIds.contains(caId)) {
+                warnings.add("CA with id " + caId + " was not found. Access rule '" + resource + "' will not be used.");
+                return null;
+            }
+        } else if (resource.startsWith(endEntityProfilePrefix)) {
+            final Integer profileId = parseResourceId(resource, endEntityProfilePrefix);
+            if (profileId != null) {
+                final Integer resolvedId = resolveEndEntityProfileId(profileId, existingEndEntityProfileIds, endEntityProfileIdMapping);
+                if (resolvedId == null) {
+                    warnings.add("End entity profile with id " + profileId + " was not found. Access rule '" + resource + "' will not be used.");
+                    return null;
+                }
+                if (!resolvedId.equals(profileId)) {
+                    return endEntityProfilePrefix + resolvedId + resource.substring(endEntityProfilePrefix.length() + profileId.toString().length());
+                }
+            }
+        }
+        return resource;
+    }
+
+    /** @return the id following the prefix in a resource such as /ca/123/, or null if there is no id */
+    private static Integer parseResourceId(final String resource, final String prefix) {
+        final int end = resource.indexOf('/', prefix.length());
+        try {
+            return Integer.valueOf(end == -1 ? resource.substring(prefix.length()) : resource.substring(prefix.length(), end));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /** @return true if the role member matches certificates issued by the CA with the token issuer id */
+    private static boolean isIssuedByCa(final RoleMember roleMember) {
+        final AuthenticationTokenMetaData metaData = AccessMatchValueReverseLookupRegistry.INSTANCE.getMetaData(roleMember.getTokenType());
+        if (metaData == null) {
+            return false;
+        }
+        final AccessMatchValue accessMatchValue = metaData.getAccessMatchValueIdMap().get(roleMember.getTokenMatchKey());
+        return accessMatchValue != null && accessMatchValue.isIssuedByCa();
+    }
+
+    /** @return the ids in a ';' separated list, such as the CA ids in the worker properties of a service */
+    private static List<Integer> parseIds(final String ids, final List<String> warnings) {
+        final List<Integer> ret = new ArrayList<>();
+        for (final String id : StringUtils.split(ids, ';')) {
+            try {
+                ret.add(Integer.valueOf(id.trim()));
+            } catch (NumberFormatException e) {
+                warnings.add("Invalid id '" + id + "' will not be used.");
+            }
+        }
+        return ret;
+    }
+
+    /** @return the id of the referenced publisher in the target system, or null if it does not exist */
+    private static Integer resolvePublisherId(final int archivedId, final Set<Integer> existingPublisherIds, final Map<Integer, Integer> publisherIdMapping,
+            final List<String> warnings) {
+        final Integer mapped = publisherIdMapping.get(archivedId);
+        if (mapped != null) {
+            if (mapped.intValue() != archivedId) {
+                warnings.add("Replacing publisher with id " + archivedId + " with " + mapped + ".");
+            }
+            return mapped;
+        }
+        if (existingPublisherIds.contains(archivedId)) {
+            return archivedId;
+        }
+        warnings.add("Publisher with id " + archivedId + " was not found and will not be used.");
+        return null;
+    }
+
+    /** @return the id of the referenced certificate profile in the target system, or null if it does not exist */
+    private static Integer resolveCertificateProfileId(final int archivedId, final Set<Integer> existingCertificateProfileIds,
+            final Map<Integer, Integer> certificateProfileIdMapping) {
+        final Integer mapped = certificateProfileIdMapping.get(archivedId);
+        if (mapped != null) {
+            return mapped;
+        }
+        if (existingCertificateProfileIds.contains(archivedId) || CertificateProfileConstants.isFixedCertificateProfile(archivedId)) {
+            return archivedId;
+        }
+        return null;
+    }
+
+    /** @return the id of the referenced end entity profile in the target system, or null if it does not exist */
+    private static Integer resolveEndEntityProfileId(final int archivedId, final Set<Integer> existingEndEntityProfileIds,
+            final Map<Integer, Integer> endEntityProfileIdMapping) {
+        final Integer mapped = endEntityProfileIdMapping.get(archivedId);
+        if (mapped != null) {
+            return mapped;
+        }
+        if (existingEndEntityProfileIds.contains(archivedId) || archivedId == EndEntityConstants.EMPTY_END_ENTITY_PROFILE) {
+            return archivedId;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,214 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.configdump;
+
+import java.beans.XMLEncoder;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.bouncycastle.util.encoders.Hex;
+import org.cesecore.util.Base64GetHashMap;
+import org.cesecore.util.Base64PutHashMap;
+import org.cesecore.util.SecureXMLDecoder;
+
+/**
+ * One configuration object in a configuration dump, e.g. a certificate profile, a publisher or a role, with its id, name and data map.
+ * <p>
+ * The data is stored in a canonical form, with the keys sorted, so that objects with equal content get equal
+ * encodings and hashes. The hash is used to address the object in the archive and to detect unchanged objects on import.
+ *
+ * @version $Id$
+ */
+public final class ConfigDumpItem {
+
+    /** Types of objects in a dump. The order is the dependency order, i.e. objects may only reference objects of earlier types. */
+    public enum Type {
+        /** Multi group publishers reference other publishers, all other publishers reference nothing */
+        PUBLISHER("publisher"),
+        /** References publishers, and CAs, which are not part of the dump */
+        CERTIFICATE_PROFILE("certprofile"),
+        /** References certificate profiles and CAs */
+        END_ENTITY_PROFILE("entityprofile"),
+        /** References CAs and crypto tokens, which are not part of the dump */
+        INTERNAL_KEY_BINDING("keybinding"),
+        /** References CAs, certificate profiles and publishers */
+        SERVICE("service"),
+        /** References CAs and end entity profiles. The role members are part of the role. */
+        ROLE("role");
+
+        private final String label;
+
+        private Type(final String label) {
+            this.label = label;
+        }
+
+        /** @return name used in the archive manifest and in reports. For profiles, same as the prefix used by the exportprofiles CLI command. */
+        public String getLabel() {
+            return label;
+        }
+
+        public static Type fromLabel(final String label) {
+            for (final Type type : values()) {
+                if (type.label.equals(label)) {
+                    return type;
+                }
+            }
+            return null;
+        }
+    }
+
+    /** Sorts items in dependency order, and by id within each type */
+    public static final Comparator<ConfigDumpItem> DEPENDENCY_ORDER = new Comparator<ConfigDumpItem>() {
+        @Override
+        public int compare(final ConfigDumpItem o1, final ConfigDumpItem o2) {
+            final int ret = o1.type.compareTo(o2.type);
+            return ret != 0 ? ret : Integer.compare(o1.id, o2.id);
+        }
+    };
+
+    private final Type type;
+    private final int id;
+    private final String name;
+    private final LinkedHashMap<Object, Object> data;
+    private volatile byte[] encoded;
+    private volatile String hash;
+
+    /**
+     * @param type type of object
+     * @param id id of the object, e.g. certificate profile id
+     * @param name name of the object
+     * @param data data map of the object, as returned by saveData(). The map is copied.
+     */
+    public ConfigDumpItem(final Type type, final int id, final String name, final Map<?, ?> data) {
+        this.type = type;
+        this.id = id;
+        this.name = name;
+        this.data = canonicalize(data);
+    }
+
+    private ConfigDumpItem(final Type type, final int id, final String name, final LinkedHashMap<Object, Object> data, final byte[] encoded,
+            final String hash) {
+        this.type = type;
+        this.id = id;
+        this.name = name;
+        this.data = data;
+        this.encoded = encoded;
+        this.hash = hash;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** @return a copy of the data map, which may be passed to loadData() */
+    public LinkedHashMap<Object, Object> getData() {
+        return new LinkedHashMap<Object, Object>(data);
+    }
+
+    /** @return the same object with another id, e.g. when the id is already taken in the target system */
+    public ConfigDumpItem withId(final int newId) {
+        return new ConfigDumpItem(type, newId, name, data, encoded, hash);
+    }
+
+    /** @return the data map serialized with XMLEncoder, with strings Base64 encoded in the same way as in the database */
+    public byte[] getEncoded() {
+        byte[] ret = encoded;
+        if (ret == null) {
+            final LinkedHashMap<Object, Object> b64DataMap = new Base64PutHashMap();
+            // Copy one by one through put(), since putAll() does not encode the values
+            for (final Map.Entry<Object, Object> entry : data.entrySet()) {
+                b64DataMap.put(entry.getKey(), entry.getValue());
+            }
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (final XMLEncoder encoder = new XMLEncoder(baos)) {
+                encoder.writeObject(b64DataMap);
+            }
+            ret = baos.toByteArray();
+            encoded = ret;
+        }
+        return ret;
+    }
+
+    /** @return hex encoded SHA-256 hash of the encoded data. Objects with equal data have equal hashes, regardless of id and name. */
+    public String getHash() {
+        String ret = hash;
+        if (ret == null) {
+            ret = sha256(getEncoded());
+            hash = ret;
+        }
+        return ret;
+    }
+
+    /**
+     * Decodes an object that was encoded with {@link #getEncoded()}
+     *
+     * @throws IOException if the data could not be decoded
+     */
+    public static ConfigDumpItem decode(final Type type, final int id, final String name, final byte[] encoded) throws IOException {
+        final Object decoded;
+        try (final SecureXMLDecoder decoder = new SecureXMLDecoder(new ByteArrayInputStream(encoded))) {
+            decoded = decoder.readObject();
+        }
+        if (!(decoded instanceof Map)) {
+            throw new IOException("Data of " + type.getLabel() + " '" + name + "' is not a map.");
+        }
+        return new ConfigDumpItem(type, id, name, canonicalize(new Base64GetHashMap((Map<?, ?>) decoded)), encoded, null);
+    }
+
+    static String sha256(final byte[] bytes) {
+        try {
+            return Hex.toHexString(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /** Copies the map with the keys sorted by their string value, since profiles use both string and integer keys */
+    private static LinkedHashMap<Object, Object> canonicalize(final Map<?, ?> map) {
+        final List<Object> keys = new ArrayList<Object>(map.keySet());
+        Collections.sort(keys, new Comparator<Object>() {
+            @Override
+            public int compare(final Object o1, final Object o2) {
+                return String.valueOf(o1).compareTo(String.valueOf(o2));
+            }
+        });
+        final LinkedHashMap<Object, Object> ret = new LinkedHashMap<Object, Object>();
+        for (final Object key : keys) {
+            // Copy through get(), so Base64 encoded values are decoded
+            ret.put(key, map.get(key));
+        }
+        return ret;
+    }
+
+    @Override
+    public String toString() {
+        return type.getLabel() + " '" + name + "' (" + id + ")";
+    }
+}
@@ -0,0 +1,47 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.configdump;
+
+import java.util.List;
+import java.util.Set;
+
+import org.cesecore.authorization.AuthorizationDeniedException;
+
+/**
+ * The system that a configuration dump is imported into. {@link ConfigDumpImporter} reads the current state once through this
+ * interface, and then resolves all references in memory.
+ *
+ * @version $Id$
+ */
+public interface ConfigDumpTarget {
+
+    /**
+     * @return all existing objects of the given type, except the fixed ones
+     * @throws AuthorizationDeniedException if not authorized to read the objects
+     */
+    List<ConfigDumpItem> getItems(ConfigDumpItem.Type type) throws AuthorizationDeniedException;
+
+    /** @return ids of all existing CAs */
+    Set<Integer> getCaIds();
+
+    /**
+     * Stores a batch of objects of one type, in a single transaction if the target supports it. Objects with a name that already
+     * exists with the same id are updated, and all other objects are added with the given id.
+     *
+     * @param type type of all objects in the batch
+     * @param batch objects to store, with references already resolved
+     * @throws AuthorizationDeniedException if not authorized to store the objects
+     * @throws ConfigDumpException if the objects could not be stored, e.g. because the id or name was taken after the import was planned
+     */
+    void store(ConfigDumpItem.Type type, List<ConfigDumpItem> batch) throws AuthorizationDeniedException, ConfigDumpException;
+}
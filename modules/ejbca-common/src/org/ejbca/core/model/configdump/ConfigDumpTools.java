@@ -0,0 +1,207 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.configdump;
+
+import java.io.Serializable;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.cesecore.keybind.InternalKeyBinding;
+import org.cesecore.keybind.InternalKeyBindingFactory;
+import org.cesecore.keybind.InternalKeyBindingStatus;
+import org.cesecore.keybind.InternalKeyBindingTrustEntry;
+import org.cesecore.roles.Role;
+import org.cesecore.roles.member.RoleMember;
+import org.ejbca.core.model.services.ServiceConfiguration;
+
+/**
+ * Converts roles, services and internal key bindings to and from {@link ConfigDumpItem}s.
+ * <p>
+ * Services are stored with their data map as is. Roles are stored with their data map, and with the name space, the name and the
+ * members added. Internal key bindings are stored as plain maps and lists, since their data map contains objects that can't be
+ * decoded with SecureXMLDecoder.
+ *
+ * @version $Id$
+ */
+public final class ConfigDumpTools {
+
+    static final String ROLE_NAMESPACE_KEY = "nameSpace";
+    static final String ROLE_NAME_KEY = "roleName";
+    static final String ROLE_MEMBERS_KEY = "roleMembers";
+    static final String MEMBER_TOKEN_TYPE_KEY = "tokenType";
+    static final String MEMBER_TOKEN_ISSUER_ID_KEY = "tokenIssuerId";
+    static final String MEMBER_TOKEN_MATCH_KEY_KEY = "tokenMatchKey";
+    static final String MEMBER_TOKEN_MATCH_OPERATOR_KEY = "tokenMatchOperator";
+    static final String MEMBER_TOKEN_MATCH_VALUE_KEY = "tokenMatchValue";
+    static final String MEMBER_DESCRIPTION_KEY = "description";
+
+    static final String KEYBINDING_TYPE_KEY = "type";
+    static final String KEYBINDING_STATUS_KEY = "status";
+    static final String KEYBINDING_CERTIFICATE_ID_KEY = "certificateId";
+    static final String KEYBINDING_CRYPTO_TOKEN_ID_KEY = "cryptoTokenId";
+    static final String KEYBINDING_KEY_PAIR_ALIAS_KEY = "keyPairAlias";
+    static final String KEYBINDING_NEXT_KEY_PAIR_ALIAS_KEY = "nextKeyPairAlias";
+    static final String KEYBINDING_SIGNATURE_ALGORITHM_KEY = "signatureAlgorithm";
+    static final String KEYBINDING_OCSP_EXTENSIONS_KEY = "ocspExtensions";
+    static final String KEYBINDING_PROPERTIES_KEY = "properties";
+    static final String KEYBINDING_TRUST_ENTRIES_KEY = "trustEntries";
+    static final String TRUST_ENTRY_CA_ID_KEY = "caId";
+    static final String TRUST_ENTRY_SERIAL_NUMBER_KEY = "serialNumber";
+    static final String TRUST_ENTRY_DESCRIPTION_KEY = "description";
+
+    /** Sorts role members by content, so that roles with the same members get equal hashes regardless of the member ids */
+    private static final Comparator<Map<String, Object>> MEMBER_ORDER = new Comparator<Map<String, Object>>() {
+        @Override
+        public int compare(final Map<String, Object> o1, final Map<String, Object> o2) {
+            return o1.toString().compareTo(o2.toString());
+        }
+    };
+
+    private ConfigDumpTools() {}
+
+    public static ConfigDumpItem fromService(final int id, final String name, final ServiceConfiguration serviceConfiguration) {
+        return new ConfigDumpItem(ConfigDumpItem.Type.SERVICE, id, name, (Map<?, ?>) serviceConfiguration.saveData());
+    }
+
+    public static ServiceConfiguration toService(final ConfigDumpItem item) {
+        final ServiceConfiguration serviceConfiguration = new ServiceConfiguration();
+        serviceConfiguration.loadData(item.getData());
+        return serviceConfiguration;
+    }
+
+    /**
+     * @param role role to store. The name of the item is the name space and name of the role, in the same form as in the role cache.
+     * @param roleMembers members of the role
+     */
+    public static ConfigDumpItem fromRole(final Role role, final Collection<RoleMember> roleMembers) {
+        final LinkedHashMap<Object, Object> data = new LinkedHashMap<>((Map<?, ?>) role.saveData());
+        data.put(ROLE_NAMESPACE_KEY, role.getNameSpace());
+        data.put(ROLE_NAME_KEY, role.getRoleName());
+        final List<Map<String, Object>> members = new ArrayList<>();
+        for (final RoleMember roleMember : roleMembers) {
+            final Map<String, Object> member = new LinkedHashMap<>();
+            member.put(MEMBER_TOKEN_TYPE_KEY, roleMember.getTokenType());
+            member.put(MEMBER_TOKEN_ISSUER_ID_KEY, roleMember.getTokenIssuerId());
+            member.put(MEMBER_TOKEN_MATCH_KEY_KEY, roleMember.getTokenMatchKey());
+            member.put(MEMBER_TOKEN_MATCH_OPERATOR_KEY, roleMember.getTokenMatchOperator());
+            member.put(MEMBER_TOKEN_MATCH_VALUE_KEY, roleMember.getTokenMatchValue());
+            member.put(MEMBER_DESCRIPTION_KEY, roleMember.getDescription());
+            members.add(member);
+        }
+        Collections.sort(members, MEMBER_ORDER);
+        data.put(ROLE_MEMBERS_KEY, members);
+        return new ConfigDumpItem(ConfigDumpItem.Type.ROLE, role.getRoleId(), Role.getRoleNameFullAsCacheName(role.getNameSpace(), role.getRoleName()),
+                data);
+    }
+
+    /** @return the role, with the id of the item and without members */
+    public static Role toRole(final ConfigDumpItem item) {
+        final LinkedHashMap<Object, Object> data = item.getData();
+        final String nameSpace = (String) data.remove(ROLE_NAMESPACE_KEY);
+        final String roleName = (String) data.remove(ROLE_NAME_KEY);
+        data.remove(ROLE_MEMBERS_KEY);
+        return new Role(item.getId(), nameSpace, roleName, data);
+    }
+
+    /** @return the members of the role, with the id of the item as role id */
+    public static List<RoleMember> toRoleMembers(final ConfigDumpItem item) {
+        final List<RoleMember> roleMembers = new ArrayList<>();
+        for (final Map<?, ?> member : getMaps(item.getData().get(ROLE_MEMBERS_KEY))) {
+            roleMembers.add(new RoleMember((String) member.get(MEMBER_TOKEN_TYPE_KEY), (Integer) member.get(MEMBER_TOKEN_ISSUER_ID_KEY),
+                    (Integer) member.get(MEMBER_TOKEN_MATCH_KEY_KEY), (Integer) member.get(MEMBER_TOKEN_MATCH_OPERATOR_KEY),
+                    (String) member.get(MEMBER_TOKEN_MATCH_VALUE_KEY), item.getId(), (String) member.get(MEMBER_DESCRIPTION_KEY)));
+        }
+        return roleMembers;
+    }
+
+    public static ConfigDumpItem fromInternalKeyBinding(final InternalKeyBinding internalKeyBinding) {
+        final LinkedHashMap<Object, Object> data = new LinkedHashMap<>();
+        data.put(KEYBINDING_TYPE_KEY, internalKeyBinding.getImplementationAlias());
+        data.put(KEYBINDING_STATUS_KEY, internalKeyBinding.getStatus().name());
+        data.put(KEYBINDING_CERTIFICATE_ID_KEY, internalKeyBinding.getCertificateId());
+        data.put(KEYBINDING_CRYPTO_TOKEN_ID_KEY, internalKeyBinding.getCryptoTokenId());
+        data.put(KEYBINDING_KEY_PAIR_ALIAS_KEY, internalKeyBinding.getKeyPairAlias());
+        data.put(KEYBINDING_NEXT_KEY_PAIR_ALIAS_KEY, internalKeyBinding.getNextKeyPairAlias());
+        data.put(KEYBINDING_SIGNATURE_ALGORITHM_KEY, internalKeyBinding.getSignatureAlgorithm());
+        data.put(KEYBINDING_OCSP_EXTENSIONS_KEY, new ArrayList<>(internalKeyBinding.getOcspExtensions()));
+        final LinkedHashMap<String, Object> properties = new LinkedHashMap<>();
+        for (final String name : internalKeyBinding.getCopyOfProperties().keySet()) {
+            properties.put(name, internalKeyBinding.getProperty(name).getValue());
+        }
+        data.put(KEYBINDING_PROPERTIES_KEY, properties);
+        final List<Map<String, Object>> trustEntries = new ArrayList<>();
+        for (final InternalKeyBindingTrustEntry trustEntry : internalKeyBinding.getTrustedCertificateReferences()) {
+            final Map<String, Object> entry = new LinkedHashMap<>();
+            entry.put(TRUST_ENTRY_CA_ID_KEY, trustEntry.getCaId());
+            entry.put(TRUST_ENTRY_SERIAL_NUMBER_KEY, trustEntry.getCertificateSerialNumberDecimal());
+            entry.put(TRUST_ENTRY_DESCRIPTION_KEY, trustEntry.getTrustEntryDescription());
+            trustEntries.add(entry);
+        }
+        data.put(KEYBINDING_TRUST_ENTRIES_KEY, trustEntries);
+        return new ConfigDumpItem(ConfigDumpItem.Type.INTERNAL_KEY_BINDING, internalKeyBinding.getId(), internalKeyBinding.getName(), data);
+    }
+
+    /**
+     * @return the internal key binding, with the id of the item
+     * @throws IllegalArgumentException if the type of internal key binding is not available
+     */
+    public static InternalKeyBinding toInternalKeyBinding(final ConfigDumpItem item) {
+        final LinkedHashMap<Object, Object> data = item.getData();
+        final String type = (String) data.get(KEYBINDING_TYPE_KEY);
+        final InternalKeyBinding internalKeyBinding = InternalKeyBindingFactory.INSTANCE.create(type, item.getId(), item.getName(),
+                InternalKeyBindingStatus.valueOf((String) data.get(KEYBINDING_STATUS_KEY)), (String) data.get(KEYBINDING_CERTIFICATE_ID_KEY),
+                (Integer) data.get(KEYBINDING_CRYPTO_TOKEN_ID_KEY), (String) data.get(KEYBINDING_KEY_PAIR_ALIAS_KEY), new LinkedHashMap<Object, Object>());
+        if (internalKeyBinding == null) {
+            throw new IllegalArgumentException("Internal key binding type '" + type + "' of " + item + " is not available.");
+        }
+        internalKeyBinding.setNextKeyPairAlias((String) data.get(KEYBINDING_NEXT_KEY_PAIR_ALIAS_KEY));
+        internalKeyBinding.setSignatureAlgorithm((String) data.get(KEYBINDING_SIGNATURE_ALGORITHM_KEY));
+        final List<String> ocspExtensions = new ArrayList<>();
+        if (data.get(KEYBINDING_OCSP_EXTENSIONS_KEY) instanceof Collection) {
+            for (final Object ocspExtension : (Collection<?>) data.get(KEYBINDING_OCSP_EXTENSIONS_KEY)) {
+                ocspExtensions.add((String) ocspExtension);
+            }
+        }
+        internalKeyBinding.setOcspExtensions(ocspExtensions);
+        if (data.get(KEYBINDING_PROPERTIES_KEY) instanceof Map) {
+            for (final Map.Entry<?, ?> property : ((Map<?, ?>) data.get(KEYBINDING_PROPERTIES_KEY)).entrySet()) {
+                internalKeyBinding.setProperty((String) property.getKey(), (Serializable) property.getValue());
+            }
+        }
+        final List<InternalKeyBindingTrustEntry> trustEntries = new ArrayList<>();
+        for (final Map<?, ?> entry : getMaps(data.get(KEYBINDING_TRUST_ENTRIES_KEY))) {
+            final String serialNumber = (String) entry.get(TRUST_ENTRY_SERIAL_NUMBER_KEY);
+            trustEntries.add(new InternalKeyBindingTrustEntry((Integer) entry.get(TRUST_ENTRY_CA_ID_KEY),
+                    serialNumber == null ? null : new BigInteger(serialNumber), (String) entry.get(TRUST_ENTRY_DESCRIPTION_KEY)));
+        }
+        internalKeyBinding.setTrustedCertificateReferences(trustEntries);
+        return internalKeyBinding;
+    }
+
+    /** @return the maps in a list of maps in the data of an item, or an empty list if there is none */
+    static List<Map<?, ?>> getMaps(final Object list) {
+        final List<Map<?, ?>> ret = new ArrayList<>();
+        if (list instanceof Collection) {
+            for (final Object map : (Collection<?>) list) {
+                ret.add((Map<?, ?>) map);
+            }
+        }
+        return ret;
+    }
+}
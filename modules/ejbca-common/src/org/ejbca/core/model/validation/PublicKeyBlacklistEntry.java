@@ -14,6 +14,7 @@
 package org.ejbca.core.model.validation;
 
 import java.io.Serializable;
+import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.PublicKey;
@@ -138,20 +139,7 @@ public class PublicKeyBlacklistEntry extends BlacklistEntry implements Serializa
             // This because blacklist is typically due to weak random number generator (Debian weak keys) and we then want to capture all keys 
             // generated by this, so we don't want to include the chosen e, only the randomly generated n.
             RSAPublicKey rsapk = (RSAPublicKey)pk;
-            byte[] modulusBytes = rsapk.getModulus().toByteArray();
-            MessageDigest digest;
-            try {
-                digest = MessageDigest.getInstance(PublicKeyBlacklistEntry.DIGEST_ALGORITHM);
-            } catch (NoSuchAlgorithmException e) {
-                throw new RuntimeException("Unable to create hash "+PublicKeyBlacklistEntry.DIGEST_ALGORITHM, e);
-            }
-            digest.reset();
-            digest.update(modulusBytes);
-            final String fingerprint = Hex.toHexString(digest.digest());
-            if (log.isTraceEnabled()) {
-                log.trace("Created fingerprint for RSA public key: "+fingerprint);
-            }
-            return fingerprint;
+            return createFingerprint(rsapk.getModulus());
         } else {
             final String fingerprint = CertTools.createPublicKeyFingerprint(pk, PublicKeyBlacklistEntry.DIGEST_ALGORITHM);
             if (log.isTraceEnabled()) {
@@ -161,6 +149,28 @@ public class PublicKeyBlacklistEntry extends BlacklistEntry implements Serializa
         }
     }
     
+    /** Creates the fingerprint in the correct format from an RSA public key modulus
+     * see {@link #setFingerprint(String)}
+     * @param modulus the modulus of an RSA public key
+     * @return public key fingerprint, as required by Blacklist
+     */
+    public static String createFingerprint(BigInteger modulus) {
+        byte[] modulusBytes = modulus.toByteArray();
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance(PublicKeyBlacklistEntry.DIGEST_ALGORITHM);
+        } catch (NoSuchAlgorithmException e) {
+            throw new RuntimeException("Unable to create hash "+PublicKeyBlacklistEntry.DIGEST_ALGORITHM, e);
+        }
+        digest.reset();
+        digest.update(modulusBytes);
+        final String fingerprint = Hex.toHexString(digest.digest());
+        if (log.isTraceEnabled()) {
+            log.trace("Created fingerprint for RSA public key: "+fingerprint);
+        }
+        return fingerprint;
+    }
+
     /**
      * Gets the public key, have to be set transient with {@link #setPublicKey(PublicKey)}, not available after serialization
      * or storage.
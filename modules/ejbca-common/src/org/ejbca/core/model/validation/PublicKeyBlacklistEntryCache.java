@@ -77,6 +77,11 @@ public enum PublicKeyBlacklistEntryCache implements CommonCache<PublicKeyBlackli
         cache.removeEntry(id);
     }
 
+    @Override
+    public void markStale(int id) {
+        cache.markStale(id);
+    }
+
     @Override
     public String getName(int id) {
         return cache.getName(id);
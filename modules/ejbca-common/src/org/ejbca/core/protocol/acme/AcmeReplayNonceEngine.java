@@ -0,0 +1,288 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.protocol.acme;
+
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+/**
+ * Issues and validates ACME replay nonces without any shared state, see {@link AcmeNonceSingletonLocal} for the format.
+ *
+ * Any node that has the shared secret can validate a nonce issued by another node. Time is divided into windows, and the
+ * counter of each node starts from 0 in every window, so the nonces of one node in one window are tracked as used in a
+ * compact bitmap. Bitmaps are dropped when all nonces of their window have expired, so the memory used does not grow
+ * over time.
+ *
+ * The bitmaps only prevent replay of nonces on this node. Strict replay protection in a cluster without sticky sessions
+ * needs a shared store of used nonces in addition, see {@link AcmeNonceDataSessionLocal}.
+ *
+ * @version $Id$
+ */
+public class AcmeReplayNonceEngine {
+
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+    private static final int TIMESTAMP_LENGTH = 8;
+    private static final int COUNTER_LENGTH = 8;
+    public static final int NODE_ID_LENGTH = 16;
+    private static final int MESSAGE_LENGTH = TIMESTAMP_LENGTH + COUNTER_LENGTH + NODE_ID_LENGTH;
+    private static final int HMAC_LENGTH = 32;
+    private static final int NONCE_LENGTH = MESSAGE_LENGTH + HMAC_LENGTH;
+
+    /** Value returned by {@link #useNonce(String, long)} for nonces that must be rejected */
+    public static final long INVALID = -1L;
+
+    private final byte[] nodeId;
+    private final long validity;
+    private final long windowLength;
+    private final AtomicReference<IssueWindow> issueWindow = new AtomicReference<>(new IssueWindow(Long.MIN_VALUE));
+    /** Used nonces for each window that can hold unexpired nonces, and each node that has issued nonces in that window */
+    private final ConcurrentNavigableMap<Long, ConcurrentMap<ByteBuffer, ConcurrentBitmap>> usedNonces = new ConcurrentSkipListMap<>();
+    /** Windows before this one only contain expired nonces. Raised before the bitmaps of old windows are removed. */
+    private final AtomicLong oldestWindow = new AtomicLong(Long.MIN_VALUE);
+    private volatile List<Mac> macs;
+
+    /**
+     * @param secrets the shared secrets for HMAC-SHA256, oldest first. New nonces are authenticated with the last secret,
+     *      and nonces authenticated with any of the secrets are accepted.
+     * @param nodeId an identity of this node, {@value #NODE_ID_LENGTH} bytes, that is unique in the cluster
+     * @param validity time in milliseconds that a nonce can be used after it has been issued
+     * @param windowLength time in milliseconds of each window of used nonces. Also the allowed clock difference between nodes.
+     */
+    public AcmeReplayNonceEngine(final List<byte[]> secrets, final byte[] nodeId, final long validity, final long windowLength) {
+        if (nodeId.length != NODE_ID_LENGTH) {
+            throw new IllegalArgumentException("The node identity must be " + NODE_ID_LENGTH + " bytes.");
+        }
+        if (validity <= 0 || windowLength <= 0) {
+            throw new IllegalArgumentException("Validity and window length must be positive.");
+        }
+        this.nodeId = nodeId.clone();
+        this.validity = validity;
+        this.windowLength = windowLength;
+        setSecrets(secrets);
+    }
+
+    /** Replaces the shared secrets, without forgetting which nonces have been used. */
+    public void setSecrets(final List<byte[]> secrets) {
+        if (secrets.isEmpty()) {
+            throw new IllegalArgumentException("At least one secret is required.");
+        }
+        final List<Mac> newMacs = new ArrayList<>(secrets.size());
+        // Newest secret first, since most nonces will be authenticated with it
+        for (int i = secrets.size() - 1; i >= 0; i--) {
+            try {
+                final Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+                mac.init(new SecretKeySpec(secrets.get(i), HMAC_ALGORITHM));
+                newMacs.add(mac);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Unable to initialize " + HMAC_ALGORITHM + ".", e);
+            }
+        }
+        this.macs = Collections.unmodifiableList(newMacs);
+    }
+
+    /** @return time in milliseconds that a nonce can be used after it has been issued */
+    public long getValidity() {
+        return validity;
+    }
+
+    /**
+     * @param now the current time in milliseconds
+     * @return a new nonce as a base64 url-safe encoded String, without padding
+     * @throws IllegalStateException if so many nonces have been issued in the current window that they can not be tracked
+     */
+    public String getReplayNonce(final long now) throws IllegalStateException {
+        final long window = Math.floorDiv(now, windowLength);
+        IssueWindow current = issueWindow.get();
+        while (current.window < window) {
+            final IssueWindow next = new IssueWindow(window);
+            if (issueWindow.compareAndSet(current, next)) {
+                current = next;
+            } else {
+                current = issueWindow.get();
+            }
+        }
+        final long counter = current.counter.getAndIncrement();
+        if (counter >= ConcurrentBitmap.CAPACITY) {
+            throw new IllegalStateException("More than " + ConcurrentBitmap.CAPACITY + " replay nonces requested within " + windowLength + " ms.");
+        }
+        // If another thread has already moved on to a later window, the timestamp must belong to that window
+        final long timestamp = Math.max(now, current.window * windowLength);
+        final ByteBuffer nonce = ByteBuffer.allocate(NONCE_LENGTH);
+        nonce.putLong(timestamp).putLong(counter).put(nodeId);
+        nonce.put(getHmac(macs.get(0), nonce.array()));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(nonce.array());
+    }
+
+    /**
+     * Validates a nonce and marks it as used.
+     *
+     * @param nonce a nonce from {@link #getReplayNonce(long)} on this or another node with the same secrets
+     * @param now the current time in milliseconds
+     * @return the time the nonce was issued if it is authentic, has not expired and has not been used on this node before,
+     *      or {@link #INVALID} otherwise
+     */
+    public long useNonce(final String nonce, final long now) {
+        if (nonce == null || nonce.length() > NONCE_LENGTH * 2) {
+            return INVALID;
+        }
+        final byte[] decoded;
+        try {
+            decoded = Base64.getUrlDecoder().decode(nonce);
+        } catch (IllegalArgumentException e) {
+            return INVALID;
+        }
+        if (decoded.length != NONCE_LENGTH || !isAuthentic(decoded)) {
+            return INVALID;
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(decoded);
+        final long timestamp = buffer.getLong();
+        final long counter = buffer.getLong();
+        if (timestamp > now + windowLength || now - timestamp > validity || counter < 0 || counter >= ConcurrentBitmap.CAPACITY) {
+            return INVALID;
+        }
+        removeExpiredWindows(now);
+        final long window = Math.floorDiv(timestamp, windowLength);
+        if (window < oldestWindow.get()) {
+            return INVALID;
+        }
+        ConcurrentMap<ByteBuffer, ConcurrentBitmap> nodes = usedNonces.get(window);
+        if (nodes == null) {
+            final ConcurrentMap<ByteBuffer, ConcurrentBitmap> newNodes = new ConcurrentHashMap<>();
+            nodes = usedNonces.putIfAbsent(window, newNodes);
+            if (nodes == null) {
+                nodes = newNodes;
+            }
+        }
+        final ByteBuffer issuer = ByteBuffer.wrap(Arrays.copyOfRange(decoded, TIMESTAMP_LENGTH + COUNTER_LENGTH, MESSAGE_LENGTH));
+        ConcurrentBitmap bitmap = nodes.get(issuer);
+        if (bitmap == null) {
+            final ConcurrentBitmap newBitmap = new ConcurrentBitmap();
+            bitmap = nodes.putIfAbsent(issuer, newBitmap);
+            if (bitmap == null) {
+                bitmap = newBitmap;
+            }
+        }
+        if (bitmap.getAndSet(counter)) {
+            return INVALID;
+        }
+        // The bitmap could have been removed while it was updated, and then a later use of the nonce would not be detected.
+        // Windows are marked as expired before they are removed, so it is enough to check again here.
+        return window < oldestWindow.get() ? INVALID : timestamp;
+    }
+
+    /** @return the number of windows that currently have bitmaps of used nonces */
+    int getWindowCount() {
+        return usedNonces.size();
+    }
+
+    private void removeExpiredWindows(final long now) {
+        final long expiredBefore = Math.floorDiv(now - validity, windowLength);
+        long oldest = oldestWindow.get();
+        while (oldest < expiredBefore) {
+            if (oldestWindow.compareAndSet(oldest, expiredBefore)) {
+                usedNonces.headMap(expiredBefore).clear();
+                return;
+            }
+            oldest = oldestWindow.get();
+        }
+    }
+
+    private boolean isAuthentic(final byte[] decoded) {
+        final byte[] message = Arrays.copyOf(decoded, MESSAGE_LENGTH);
+        final byte[] hmac = Arrays.copyOfRange(decoded, MESSAGE_LENGTH, NONCE_LENGTH);
+        for (final Mac mac : macs) {
+            if (MessageDigest.isEqual(hmac, getHmac(mac, message))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /** @return the HMAC of the first {@value #MESSAGE_LENGTH} bytes of the data */
+    private static byte[] getHmac(final Mac prototype, final byte[] data) {
+        Mac mac;
+        try {
+            // Cloning an initialized Mac is much faster than initializing a new one, and the prototype is shared between threads
+            mac = (Mac) prototype.clone();
+        } catch (CloneNotSupportedException e) {
+            synchronized (prototype) {
+                prototype.update(data, 0, MESSAGE_LENGTH);
+                return prototype.doFinal();
+            }
+        }
+        mac.update(data, 0, MESSAGE_LENGTH);
+        return mac.doFinal();
+    }
+
+    /** Counter of the nonces issued by this node in one window */
+    private static final class IssueWindow {
+        private final long window;
+        private final AtomicLong counter = new AtomicLong();
+
+        private IssueWindow(final long window) {
+            this.window = window;
+        }
+    }
+
+    /** Lock-free set of counter values. Pages of the bitmap are allocated when they are first needed. */
+    static final class ConcurrentBitmap {
+        private static final int BITS_PER_PAGE = 1 << 16;
+        private static final int MAX_PAGES = 256;
+        /** The largest number of nonces that one node can issue in one window */
+        static final long CAPACITY = (long) BITS_PER_PAGE * MAX_PAGES;
+
+        private final AtomicReferenceArray<AtomicLongArray> pages = new AtomicReferenceArray<>(MAX_PAGES);
+
+        /**
+         * Sets a bit.
+         * @param index a value between 0 and {@link #CAPACITY}
+         * @return true if the bit was already set
+         */
+        boolean getAndSet(final long index) {
+            final int pageIndex = (int) (index / BITS_PER_PAGE);
+            AtomicLongArray page = pages.get(pageIndex);
+            if (page == null) {
+                pages.compareAndSet(pageIndex, null, new AtomicLongArray(BITS_PER_PAGE / Long.SIZE));
+                page = pages.get(pageIndex);
+            }
+            final int bitInPage = (int) (index % BITS_PER_PAGE);
+            final int wordIndex = bitInPage / Long.SIZE;
+            final long mask = 1L << (bitInPage % Long.SIZE);
+            long word = page.get(wordIndex);
+            while ((word & mask) == 0) {
+                if (page.compareAndSet(wordIndex, word, word | mask)) {
+                    return false;
+                }
+                word = page.get(wordIndex);
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.util;
+
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.ejbca.util.PerformanceTest.Command;
+import org.ejbca.util.PerformanceTest.CommandFactory;
+
+/**
+ * Commands for a {@link PerformanceTest} that simulate a server in the same JVM, so that the load generator itself
+ * can be tested without a running EJBCA.
+ *
+ * The simulated server handles a limited number of requests at a time. Each request takes the service time with
+ * up to 10% random jitter. The server can also be made to stall periodically, e.g. like a garbage collection
+ * pause, so that the difference between a closed and an open loop test can be seen in the percentiles.
+ *
+ * @version $Id$
+ */
+public class MockServerCommandFactory implements CommandFactory {
+
+    private final Semaphore serverThreads;
+    private final long serviceTimeNanos;
+    private final long stallIntervalNanos;
+    private final long stallTimeNanos;
+    private final long startTime;
+    private final Random random = new Random();
+
+    /**
+     * @param serviceTimeMillis the time each request takes
+     * @param nrOfServerThreads number of requests that are handled at the same time
+     * @param stallIntervalSeconds the server stalls each stallIntervalSeconds, or never if 0
+     * @param stallTimeMillis how long each stall lasts
+     */
+    public MockServerCommandFactory(final long serviceTimeMillis, final int nrOfServerThreads, final int stallIntervalSeconds, final long stallTimeMillis) {
+        this.serverThreads = new Semaphore(nrOfServerThreads, true);
+        this.serviceTimeNanos = TimeUnit.MILLISECONDS.toNanos(serviceTimeMillis);
+        this.stallIntervalNanos = TimeUnit.SECONDS.toNanos(stallIntervalSeconds);
+        this.stallTimeNanos = TimeUnit.MILLISECONDS.toNanos(stallTimeMillis);
+        this.startTime = System.nanoTime();
+    }
+
+    @Override
+    public Command[] getCommands() {
+        return new Command[] { new Request() };
+    }
+
+    /** @return the time left of the current stall of the server, or 0 if the server is not stalled */
+    private long getStallTimeLeft(final long now) {
+        if (stallIntervalNanos <= 0 || stallTimeNanos <= 0) {
+            return 0;
+        }
+        final long timeInInterval = (now - startTime) % stallIntervalNanos;
+        final long timeToStallEnd = stallIntervalNanos - timeInInterval;
+        return timeToStallEnd <= stallTimeNanos ? timeToStallEnd : 0;
+    }
+
+    private long getServiceTime() {
+        final double jitter;
+        synchronized (random) {
+            jitter = (random.nextDouble() - 0.5) / 5;
+        }
+        return (long) (serviceTimeNanos * (1 + jitter));
+    }
+
+    private class Request implements Command {
+        @Override
+        public boolean doIt() throws InterruptedException {
+            serverThreads.acquire();
+            try {
+                long stall;
+                while ((stall = getStallTimeLeft(System.nanoTime())) > 0) {
+                    TimeUnit.NANOSECONDS.sleep(stall);
+                }
+                final long end = System.nanoTime() + getServiceTime();
+                long left;
+                while ((left = end - System.nanoTime()) > 0) {
+                    TimeUnit.NANOSECONDS.sleep(left);
+                }
+            } finally {
+                serverThreads.release();
+            }
+            return true;
+        }
+
+        @Override
+        public String getJobTimeDescription() {
+            return "Mock server request";
+        }
+    }
+}
@@ -12,8 +12,11 @@
  *************************************************************************/
 package org.ejbca.util;
 
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -116,6 +119,70 @@ public class NotificationParamGen {
       return sb.toString();
   }
   
+  /**
+   * Interpolate the patterns in a pre-parsed template, see {@link Template}.
+   * @param template the template to be interpolated
+   * @return the interpolated content
+   */
+  public String interpolate(Template template) {
+      return template.interpolate(getParams());
+  }
+
+  /**
+   * A notification text that has been parsed for '${pattern}' once, so it can be interpolated with the parameters of many
+   * notifications (for example all certificates found by the expiration notification service) without evaluating the regexp
+   * every time. Patterns without a value are kept as is, just like {@link NotificationParamGen#interpolate(HashMap, String)}.
+   */
+  public static final class Template {
+      /** Literal text before each key, and after the last key. Always one element longer than keys. */
+      private final String[] literals;
+      private final String[] keys;
+      private final String[] patterns;
+      private final int literalLength;
+
+      public Template(final String input) {
+          final List<String> literalList = new ArrayList<String>();
+          final List<String> keyList = new ArrayList<String>();
+          final List<String> patternList = new ArrayList<String>();
+          final Matcher m = PATTERN.matcher(input);
+          int position = 0;
+          int length = 0;
+          while (m.find()) {
+              final String literal = input.substring(position, m.start());
+              literalList.add(literal);
+              length += literal.length();
+              keyList.add(m.group(1));
+              patternList.add(m.group(0));
+              position = m.end();
+          }
+          final String tail = input.substring(position);
+          literalList.add(tail);
+          length += tail.length();
+          this.literals = literalList.toArray(new String[literalList.size()]);
+          this.keys = keyList.toArray(new String[keyList.size()]);
+          this.patterns = patternList.toArray(new String[patternList.size()]);
+          this.literalLength = length;
+      }
+
+      /**
+       * @param params the values to replace the patterns with
+       * @return the interpolated content
+       */
+      public String interpolate(final Map<String, String> params) {
+          if (keys.length == 0) {
+              return literals[0];
+          }
+          final StringBuilder sb = new StringBuilder(literalLength + 16 * keys.length);
+          for (int i = 0; i < keys.length; i++) {
+              sb.append(literals[i]);
+              final String value = params.get(keys[i]);
+              sb.append(value != null ? value : patterns[i]);
+          }
+          sb.append(literals[keys.length]);
+          return sb.toString();
+      }
+  }
+
   protected String fastDateFormat(Date date) {
 	  return ValidityDate.formatAsISO8601(date, ValidityDate.TIMEZONE_SERVER);
   }
@@ -12,6 +12,7 @@
  *************************************************************************/
 package org.ejbca.util;
 
+import java.io.File;
 import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
@@ -20,28 +21,48 @@ import java.io.ObjectOutputStream;
 import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.Date;
-import java.util.HashMap;
-import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.cesecore.metrics.LatencyHistogram;
 
 /**
+ * Load generator used by the stress tests of the clientToolBox. Each test is a sequence of {@link Command}s, executed by a number of threads.
+ *
+ * Tests are started either in a closed loop, where each thread starts a new test as soon as its previous test is finished, or in an
+ * open loop, where tests are started at a constant rate no matter how long the previous tests took. In a closed loop a slow server
+ * also slows down the client, so the tests that would have been started while the server was slow are never measured (coordinated
+ * omission). In an open loop the response time is measured from the time the test was scheduled to start, so it includes the time
+ * the test had to wait for a free thread. See {@link NrOfThreadsAndNrOfTests} for how the load is specified.
+ *
+ * Response times are recorded in histograms, and percentiles are printed when the test is finished. Tests that finish during
+ * the warmup period are not included in the statistics.
+ *
  * @version $Id: PerformanceTest.java 30693 2018-11-30 10:23:09Z mikekushner $
  */
 @SuppressWarnings("synthetic-access")
 public class PerformanceTest {
 
     private final int STATISTIC_UPDATE_PERIOD_IN_SECONDS = 10;
+    /** Returned by {@link Statistic#startTest()} when all tests have been started */
+    private static final long NO_MORE_TESTS = Long.MIN_VALUE;
+    private static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 99.9 };
     private final Log log;
     private final Random random;
     private boolean isSomeThreadUsingRandom;
+    private boolean isFinished;
     public PerformanceTest() {
         this.log =new Log();
         this.random = new Random();
         this.isSomeThreadUsingRandom = false;
+        this.isFinished = false;
     }
     public long nextLong() {
         synchronized (this.random) {
@@ -81,7 +102,7 @@ public class PerformanceTest {
     private class JobRunner implements Runnable { // NOPMD this is a standalone test, not run in jee app
         final private Command command;
         private boolean bIsFinished;
-        private int time;
+        private long time;
         private boolean isSuccess = false;
         JobRunner( Command _command ) throws Exception {
             this.bIsFinished = false;
@@ -106,9 +127,9 @@ public class PerformanceTest {
         @Override
         public void run() {
             try {
-                final long startTime = new Date().getTime();
+                final long startTime = System.nanoTime();
                 this.isSuccess = this.command.doIt();
-                this.time = (int)(new Date().getTime()-startTime);
+                this.time = System.nanoTime()-startTime;
                 this.bIsFinished = true;
             } catch (Throwable t) { // NOPMD: keep on testing 
                 PerformanceTest.this.log.error("Command failure. "+this.command, t);
@@ -118,7 +139,8 @@ public class PerformanceTest {
                 }
             }
         }
-        public int getTimeConsumed() {
+        /** @return the time the command took in nanoseconds */
+        public long getTimeConsumed() {
             return this.time;
         }
     }
@@ -152,18 +174,27 @@ public class PerformanceTest {
         @Override
         public void run() {
             PerformanceTest.this.log.info("Thread nr "+ this.nr +" started.");
-            while(this.statistic.doMoreTests()) {
+            long scheduledStartTime;
+            while((scheduledStartTime = this.statistic.startTest()) != NO_MORE_TESTS) {
                 try {
-                    final long startTime = new Date().getTime();
+                    // In an open loop the test may be scheduled in the future, or in the past if all threads have been busy
+                    long delay;
+                    while ((delay = scheduledStartTime - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.sleep(delay);
+                    }
+                    final long startTime = System.nanoTime();
+                    long waitedTime = 0;
                     Command failingCommand = null;
                     for (int i=0; failingCommand==null && i<this.commands.length; i++) {
-                        if ( this.maxWaitTime > 0 ) {
+                        // The wait between jobs is only used in a closed loop. In an open loop the load is set by the rate.
+                        if ( this.maxWaitTime > 0 && !this.statistic.isOpenLoop() ) {
                             final int waitTime = (int)(this.maxWaitTime*PerformanceTest.this.random.nextFloat());
                             if ( waitTime > 0) {
                                 synchronized(this) {
                                     wait(waitTime);
                                 }
-                                this.statistic.addTime("Time waiting between jobs",waitTime);
+                                this.statistic.addTime("Time waiting between jobs", TimeUnit.MILLISECONDS.toNanos(waitTime));
+                                waitedTime += TimeUnit.MILLISECONDS.toNanos(waitTime);
                             }
                         }
                         final Command command = this.commands[i];
@@ -173,6 +204,8 @@ public class PerformanceTest {
                         }
                         this.statistic.addTime(command.getJobTimeDescription(), jobRunner.getTimeConsumed());
                     }
+                    final long endTime = System.nanoTime();
+                    this.statistic.addResponseTime(endTime - scheduledStartTime - waitedTime, startTime - scheduledStartTime);
                     String sResult = "Test in thread "+this.nr+" completed ";
                     if ( failingCommand==null ) {
                         this.statistic.taskFinished();
@@ -181,7 +214,7 @@ public class PerformanceTest {
                         this.statistic.taskFailed();
                         sResult += "but failed when the command '"+failingCommand.getClass().getCanonicalName()+"' was executed";
                     }
-                    sResult += ". The time it took was "+(new Date().getTime()-startTime) + " ms.";
+                    sResult += ". The time it took was "+TimeUnit.NANOSECONDS.toMillis(endTime-startTime) + " ms.";
                     if ( failingCommand==null ) {
                         PerformanceTest.this.log.info(sResult);
                     } else {
@@ -195,12 +228,37 @@ public class PerformanceTest {
         }
     }
 
+    /** Runs a closed loop test, where each thread waits between 0 and waitTime milliseconds between the commands of a test, and then exits. */
     public void execute(CommandFactory commandFactory, int numberOfThreads, int numberOfTests, int waitTime, PrintStream printStream) throws Exception {
-        final Statistic statistic = new Statistic(numberOfThreads, numberOfTests, printStream);
+        execute(commandFactory, new NrOfThreadsAndNrOfTests(numberOfThreads, numberOfTests), waitTime, printStream);
+    }
+
+    /**
+     * Runs a test and then exits, with the number of failed tests as exit code.
+     *
+     * @param load the number of threads and tests, and how the tests are started
+     * @param waitTime each thread waits between 0 and waitTime milliseconds between the commands of a test. Only used in a closed loop.
+     */
+    public void execute(CommandFactory commandFactory, NrOfThreadsAndNrOfTests load, int waitTime, PrintStream printStream) throws Exception {
+        final int nrOfFailures = run(commandFactory, load, waitTime, printStream);
+        printStream.format("Test exited with %d number of failures.%n", nrOfFailures);
+        System.exit( nrOfFailures );
+    }
+
+    /**
+     * Runs a test and prints the statistics, but does not exit.
+     *
+     * @see #execute(CommandFactory, NrOfThreadsAndNrOfTests, int, PrintStream)
+     * @return the number of failed tests
+     */
+    public int run(CommandFactory commandFactory, NrOfThreadsAndNrOfTests load, int waitTime, PrintStream printStream) throws Exception {
+        final int numberOfThreads = load.getThreads();
+        final Statistic statistic = new Statistic(load, printStream);
         final Thread threads[] = new Thread[numberOfThreads]; // NOPMD this is a standalone test, not run in jee app
         for(int i=0; i < numberOfThreads;i++) {
             threads[i] = new Thread(new TestInstance(i, waitTime, statistic, commandFactory)); // NOPMD this is a standalone test, not run in jee app
         }
+        statistic.start();
         for(int i=0; i < numberOfThreads;i++) {
             threads[i].start();
         }
@@ -208,33 +266,62 @@ public class PerformanceTest {
         printStream.println("Test client started, tail info and error files in this directory for output.");
         printStream.println("Statistic will be written to standard output each "+this.STATISTIC_UPDATE_PERIOD_IN_SECONDS+" second.");
         printStream.println("The test was started at "+ new Date());
-        printStream.format("%d threads will be started and %d number of tests will be performed. Each thread will wait between 0 and %d milliseconds between each test.%n", numberOfThreads, numberOfTests, waitTime);
+        if ( load.isOpenLoop() ) {
+            printStream.format(Locale.ROOT, "%d threads will be started and tests will be started at a rate of %.1f each second (open loop).%n", numberOfThreads, load.getRate());
+        } else {
+            printStream.format("%d threads will be started and %d number of tests will be performed. Each thread will wait between 0 and %d milliseconds between each test.%n", numberOfThreads, load.getTests(), waitTime);
+        }
+        if ( load.getWarmupSeconds() > 0 ) {
+            printStream.format("Tests finished during the first %d seconds are not included in the statistics.%n", load.getWarmupSeconds());
+        }
+        if ( load.getDurationSeconds() > 0 ) {
+            printStream.format("No tests will be started after %d seconds.%n", load.getWarmupSeconds() + load.getDurationSeconds());
+        }
         synchronized(this) {
-            wait();
+            while ( !this.isFinished ) {
+                wait();
+            }
         }
-        printStream.format("Test exited with %d number of failures.%n", statistic.getNrOfFailures());
-        System.exit( statistic.getNrOfFailures() );
+        return statistic.getNrOfFailures();
     }
     
     private class Statistic implements Runnable { // NOPMD this is a standalone test, not run in jee app
+        private final NrOfThreadsAndNrOfTests load;
         private final int nrOfThreads;
-        private final int nrOfTests;
         private final Map<String, Job> jobs;
+        /** Time from when a test was scheduled to start until it was finished */
+        private final Job responseTime;
+        /** Time from when a test was scheduled to start until it was started, because all threads were busy */
+        private final Job startDelay;
+        private final Schedule schedule;
+        private final long warmupTime;
+        private final long durationTime;
+        private long startTime;
+        private long measureStartTime;
+        private boolean isMeasuring;
         private int nrOfStarted = 0;
         private int nrOfSuccesses = 0;
         private int nrOfSuccessesLastTime = 0;
         private int nrOfFailures = 0;
+        private int nrOfSuccessesBeforeMeasuring = 0;
+        private int nrOfFailuresBeforeMeasuring = 0;
         private final PrintStream printStream;
         
-        public Statistic(int _nrOfThreads, int _nrOfTests, PrintStream _printStream) {
-            this.nrOfThreads = _nrOfThreads;
-            this.nrOfTests = _nrOfTests;
-            this.jobs = new HashMap<String, Job>();
+        public Statistic(NrOfThreadsAndNrOfTests _load, PrintStream _printStream) {
+            this.load = _load;
+            this.nrOfThreads = _load.getThreads();
+            this.jobs = new LinkedHashMap<String, Job>();
+            this.responseTime = new Job("Test response time");
+            this.startDelay = new Job("Test start delay");
+            this.schedule = new Schedule(_load);
+            this.warmupTime = TimeUnit.SECONDS.toNanos(_load.getWarmupSeconds());
+            this.durationTime = TimeUnit.SECONDS.toNanos(_load.getDurationSeconds());
             this.printStream = _printStream;
         }
         
         private class Job {
             private final String name;
+            private final LatencyHistogram histogram;
             private long totalTime;
             private long minTime = Long.MAX_VALUE;
             private long maxTime = Long.MIN_VALUE;
@@ -243,10 +330,12 @@ public class PerformanceTest {
             
             private Job(String _name) {
                 this.name = _name;
+                this.histogram = new LatencyHistogram(_name);
                 this.totalTime = 0;
             }
             
-            private void addTime(long duration) {
+            private synchronized void addTime(long duration) {
+                this.histogram.recordValue(duration);
                 this.totalTime += duration;
                 final Date now = new Date();
 
@@ -259,22 +348,46 @@ public class PerformanceTest {
                     this.maxTimeAt = now;
                 }
             }
+
+            private synchronized void reset() {
+                this.histogram.reset();
+                this.totalTime = 0;
+                this.minTime = Long.MAX_VALUE;
+                this.maxTime = Long.MIN_VALUE;
+                this.minTimeAt = null;
+                this.maxTimeAt = null;
+            }
             
-            private long getTimeSpent() {
+            private synchronized long getTimeSpent() {
                 return this.totalTime;
             }
             
-            private void printRelativeTime(long allThreadsTime) {
-                printLine(this.name, new Float((float)this.totalTime / allThreadsTime));
+            private void printRelativeTime(PrintWriter pw, long allThreadsTime) {
+                printLine(pw, this.name, Float.valueOf((float)getTimeSpent() / allThreadsTime));
             }
             
-            private void printMinMaxTime() {
-                printLine("Min time for job '"+this.name+"' (ms)", Long.toString(this.minTime), this.minTimeAt);
-                printLine("Max time per job '"+this.name+"' (ms)", Long.toString(this.maxTime), this.maxTimeAt);
+            private synchronized void printMinMaxTime(PrintWriter pw) {
+                if (this.minTimeAt == null) {
+                    return;
+                }
+                printLine(pw, "Min time for job '"+this.name+"' (ms)", toMillis(this.minTime), this.minTimeAt);
+                printLine(pw, "Max time per job '"+this.name+"' (ms)", toMillis(this.maxTime), this.maxTimeAt);
+            }
+
+            private void printPercentiles(PrintWriter pw) {
+                final LatencyHistogram.Snapshot snapshot = this.histogram.getSnapshot();
+                if (snapshot.getCount() == 0) {
+                    return;
+                }
+                pw.println("Percentiles for '" + this.name + "' (ms):");
+                for (final double percentile : PERCENTILES) {
+                    printLine(pw, "  p" + PerformanceTestReport.formatPercentile(percentile), toMillis(snapshot.getValueAtPercentile(percentile)));
+                }
+                printLine(pw, "  max", toMillis(snapshot.getMax()));
             }
         }
         
-        private Job getJob(String name) {
+        private synchronized Job getJob(String name) {
             Job job = this.jobs.get(name);
             if ( job!=null ) {
                 return job;
@@ -283,9 +396,27 @@ public class PerformanceTest {
             this.jobs.put(name, job);
             return job;
         }
+
+        private synchronized List<Job> getJobs() {
+            return new ArrayList<Job>(this.jobs.values());
+        }
+
+        private synchronized void start() {
+            this.startTime = System.nanoTime();
+            this.measureStartTime = this.startTime;
+            this.isMeasuring = this.warmupTime <= 0;
+        }
+
+        private boolean isOpenLoop() {
+            return this.load.isOpenLoop();
+        }
+
+        private boolean isMoreTestsToStart() {
+            return this.schedule.isMoreTestsToStart(this.startTime, this.nrOfStarted, System.nanoTime());
+        }
         
-        private boolean isNotReady() {
-            return this.nrOfTests<0 || (this.nrOfFailures+this.nrOfSuccesses)<this.nrOfTests;
+        private synchronized boolean isNotReady() {
+            return (this.nrOfFailures+this.nrOfSuccesses)<this.nrOfStarted || isMoreTestsToStart();
         }
         
         private void killMeIfReady() {
@@ -305,99 +436,277 @@ public class PerformanceTest {
             killMeIfReady();
         }
         
-        private synchronized boolean doMoreTests() {
-            return this.nrOfTests<0 || this.nrOfStarted++<this.nrOfTests;
+        /** @return the time when the test should be started, or NO_MORE_TESTS if all tests have been started */
+        private synchronized long startTest() {
+            if ( !isMoreTestsToStart() ) {
+                return NO_MORE_TESTS;
+            }
+            final long scheduledStartTime = this.schedule.getNextStartTime(this.startTime, this.nrOfStarted, System.nanoTime());
+            this.nrOfStarted++;
+            return scheduledStartTime;
         }
         
         private void addTime(String timeName, long duration) {
             getJob(timeName).addTime(duration);
         }
+
+        private void addResponseTime(long duration, long delay) {
+            this.responseTime.addTime(duration);
+            if ( isOpenLoop() ) {
+                this.startDelay.addTime(delay);
+            }
+        }
+
+        /** Called at the end of the warmup. Everything recorded so far is discarded. */
+        private void startMeasuring(final long now) {
+            for (final Job job : getJobs()) {
+                job.reset();
+            }
+            this.responseTime.reset();
+            this.startDelay.reset();
+            synchronized (this) {
+                this.nrOfSuccessesBeforeMeasuring = this.nrOfSuccesses;
+                this.nrOfFailuresBeforeMeasuring = this.nrOfFailures;
+                this.nrOfSuccessesLastTime = this.nrOfSuccesses;
+                this.measureStartTime = now;
+                this.isMeasuring = true;
+            }
+            this.printStream.println("Warmup finished at "+new Date()+", statistics are reset.");
+        }
+
+        private synchronized int getNrOfMeasuredSuccesses() {
+            return this.nrOfSuccesses - this.nrOfSuccessesBeforeMeasuring;
+        }
+
+        private synchronized int getNrOfMeasuredFailures() {
+            return this.nrOfFailures - this.nrOfFailuresBeforeMeasuring;
+        }
+
+        /** @return milliseconds until the statistics should be printed, the warmup ends or the last test should be started */
+        private synchronized long getWaitTime(final long periodStartTime) {
+            final long now = System.nanoTime();
+            long waitTime = periodStartTime + TimeUnit.SECONDS.toNanos(PerformanceTest.this.STATISTIC_UPDATE_PERIOD_IN_SECONDS) - now;
+            if ( !this.isMeasuring ) {
+                waitTime = Math.min(waitTime, this.startTime + this.warmupTime - now);
+            }
+            if ( this.durationTime > 0 ) {
+                final long timeToEnd = this.startTime + this.warmupTime + this.durationTime - now;
+                if ( timeToEnd > 0 ) {
+                    waitTime = Math.min(waitTime, timeToEnd);
+                }
+            }
+            return Math.max(1, TimeUnit.NANOSECONDS.toMillis(waitTime));
+        }
         
-        private void printLine(String description, Object value) {
-        	printLine(description, value, null);
+        private void printLine(PrintWriter pw, String description, Object value) {
+        	printLine(pw, description, value, null);
         }
         
-        private void printLine(String description, Object value, Object value2) {
-            String padding = new String();
+        private void printLine(PrintWriter pw, String description, Object value, Object value2) {
+            final StringBuilder padding = new StringBuilder();
             for ( int i=description.length(); i<50; i++ ) {
-                padding += ' ';
+                padding.append(' ');
             }
             if (value2 == null) {
-                this.printStream.println(description+": "+padding+value);
+                pw.println(description+": "+padding+value);
             } else {            	
-                this.printStream.println(description+": "+padding+value+" ("+value2+")");
+                pw.println(description+": "+padding+value+" ("+value2+")");
             }
         }
+
+        private String toMillis(long nanos) {
+            return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+        }
         
-        private void printStatistics(final long startTime, final long periodStartTime, final long endTime) {
-            final long time = (int)(endTime-startTime);
+        private void printStatistics(final long periodStartTime, final long endTime, final boolean isFinal) {
+            final long time = Math.max(1, endTime-this.measureStartTime);
             final long allThreadsTime = this.nrOfThreads*time;
-            final Float testsPerSecond = new Float((float)this.nrOfSuccesses*1000/time);
-            final Float testsPerSecondInLastPeriod = new Float((float)(this.nrOfSuccesses - this.nrOfSuccessesLastTime)*1000/(endTime-periodStartTime));
-            this.nrOfSuccessesLastTime = this.nrOfSuccesses;
+            final int nrOfMeasuredSuccesses = getNrOfMeasuredSuccesses();
+            final Float testsPerSecond = Float.valueOf((float)nrOfMeasuredSuccesses*TimeUnit.SECONDS.toNanos(1)/time);
+            final int nrOfSuccessesInPeriod;
+            synchronized (this) {
+                nrOfSuccessesInPeriod = this.nrOfSuccesses - this.nrOfSuccessesLastTime;
+                this.nrOfSuccessesLastTime = this.nrOfSuccesses;
+            }
+            final Float testsPerSecondInLastPeriod = Float.valueOf((float)nrOfSuccessesInPeriod*TimeUnit.SECONDS.toNanos(1)/Math.max(1, endTime-periodStartTime));
+            final List<Job> currentJobs = getJobs();
             final float relativeWork; 
             {
                 long tmp = 0;
-                Iterator<Job> i=this.jobs.values().iterator();
-                while (i.hasNext() ) {
-                    tmp += i.next().getTimeSpent();
+                for (final Job job : currentJobs) {
+                    tmp += job.getTimeSpent();
                 }
                 relativeWork = (float)(allThreadsTime-tmp) / allThreadsTime;
             }
             final String CSI = "\u001B[";
+            final StringWriter sw = new StringWriter();
+            final PrintWriter pw = new PrintWriter(sw);
 
-            this.printStream.println(CSI+"J"); // clear rest of screen on VT100 terminals.
-            printLine("Total # of successfully performed tests", Integer.valueOf(this.nrOfSuccesses));
-            printLine("Total # of failed tests", Integer.valueOf(this.nrOfFailures));
-            printLine("# of tests completed each second", testsPerSecond);
-            printLine("# of tests completed each second in last period", testsPerSecondInLastPeriod);
-            this.printStream.println();
-            this.printStream.println("Relative average time for different tasks (all should sum up to 1):");
-            {
-                final Iterator<Job> i = this.jobs.values().iterator();
-                while( i.hasNext() ) {
-                    i.next().printRelativeTime(allThreadsTime);
-                }
+            pw.println(CSI+"J"); // clear rest of screen on VT100 terminals.
+            if ( !this.isMeasuring ) {
+                pw.println("Warming up. These values will be discarded when the warmup is finished.");
             }
-            printLine("Time spent with test client work", new Float(relativeWork));
-            this.printStream.println();
-            this.printStream.println("Absolute extremes:");
-            {
-                final Iterator<Job> i = this.jobs.values().iterator();
-                while( i.hasNext() ) {
-                    i.next().printMinMaxTime();
+            printLine(pw, "Total # of successfully performed tests", Integer.valueOf(nrOfMeasuredSuccesses));
+            printLine(pw, "Total # of failed tests", Integer.valueOf(getNrOfMeasuredFailures()));
+            if ( isOpenLoop() ) {
+                printLine(pw, "# of tests scheduled to start each second", Float.valueOf((float)this.load.getRate()));
+            }
+            printLine(pw, "# of tests completed each second", testsPerSecond);
+            printLine(pw, "# of tests completed each second in last period", testsPerSecondInLastPeriod);
+            pw.println();
+            pw.println("Relative average time for different tasks (all should sum up to 1):");
+            for (final Job job : currentJobs) {
+                job.printRelativeTime(pw, allThreadsTime);
+            }
+            printLine(pw, "Time spent with test client work", Float.valueOf(relativeWork));
+            pw.println();
+            this.responseTime.printPercentiles(pw);
+            this.startDelay.printPercentiles(pw);
+            pw.println();
+            pw.println("Absolute extremes:");
+            for (final Job job : currentJobs) {
+                job.printMinMaxTime(pw);
+            }
+            if ( isFinal ) {
+                pw.println();
+                for (final Job job : currentJobs) {
+                    job.printPercentiles(pw);
                 }
             }
-            if ( isNotReady() ) { // move up if test is not finished.
-                this.printStream.print(CSI+(10+this.jobs.size()*3)+"A"); // move up. 3 lines for each job. relative max min
+            pw.flush();
+            final String output = sw.toString();
+            this.printStream.print(output);
+            if ( !isFinal ) { // move up if test is not finished.
+                int lines = 0;
+                for (int i=0; i<output.length(); i++) {
+                    if (output.charAt(i) == '\n') {
+                        lines++;
+                    }
+                }
+                this.printStream.print(CSI+lines+"A");
             }
             this.printStream.flush();
         }
+
+        private void writeReport(final long endTime) {
+            final String fileName = this.load.getOutputFile();
+            if ( fileName == null ) {
+                return;
+            }
+            final List<LatencyHistogram.Snapshot> latencies = new ArrayList<LatencyHistogram.Snapshot>();
+            latencies.add(this.responseTime.histogram.getSnapshot());
+            latencies.add(this.startDelay.histogram.getSnapshot());
+            for (final Job job : getJobs()) {
+                latencies.add(job.histogram.getSnapshot());
+            }
+            final PerformanceTestReport report = createReport(this.load, endTime-this.measureStartTime, getNrOfMeasuredSuccesses(),
+                    getNrOfMeasuredFailures(), latencies);
+            try {
+                report.write(new File(fileName));
+                this.printStream.println("Result written to "+fileName);
+            } catch (IOException e) {
+                PerformanceTest.this.log.error("Could not write the result to "+fileName, e);
+                this.printStream.println("Could not write the result to "+fileName+": "+e.getMessage());
+            }
+        }
         
         @Override
         public void run() {
-            final long startTime = new Date().getTime();
-            long periodStartTime = startTime;
+            long periodStartTime = this.startTime;
             while(isNotReady()) {
                 synchronized(this) {
                     try {
-                        wait(PerformanceTest.this.STATISTIC_UPDATE_PERIOD_IN_SECONDS*1000);
+                        wait(getWaitTime(periodStartTime));
                     } catch (InterruptedException e) {
                         // do nothing
                     }
                 }
-                final long endTime = new Date().getTime();
-                printStatistics(startTime, periodStartTime, endTime);
-                periodStartTime = endTime;
+                final long endTime = System.nanoTime();
+                if ( !this.isMeasuring && endTime-this.startTime >= this.warmupTime ) {
+                    startMeasuring(endTime);
+                    periodStartTime = endTime;
+                    continue;
+                }
+                if ( endTime-periodStartTime >= TimeUnit.SECONDS.toNanos(PerformanceTest.this.STATISTIC_UPDATE_PERIOD_IN_SECONDS) ) {
+                    printStatistics(periodStartTime, endTime, false);
+                    periodStartTime = endTime;
+                }
             }
+            final long endTime = System.nanoTime();
+            printStatistics(periodStartTime, endTime, true);
+            writeReport(endTime);
             PerformanceTest.this.log.deActivate();
         }
         
-        public int getNrOfFailures() {
+        public synchronized int getNrOfFailures() {
             return this.nrOfFailures;
         }
     }
     
+    /**
+     * Creates the result that is written to the output file of a test.
+     *
+     * @param measuredTime nanoseconds from the end of the warmup until the test was finished
+     * @param latencies the response times, start delays and job times recorded after the warmup. Empty histograms are not included.
+     */
+    static PerformanceTestReport createReport(final NrOfThreadsAndNrOfTests load, final long measuredTime, final int nrOfSuccesses,
+            final int nrOfFailures, final List<LatencyHistogram.Snapshot> latencies) {
+        final double seconds = (double)Math.max(1, measuredTime) / TimeUnit.SECONDS.toNanos(1);
+        final PerformanceTestReport report = new PerformanceTestReport();
+        report.addParameter("mode", load.isOpenLoop() ? "open" : "closed");
+        report.addParameter("threads", Integer.valueOf(load.getThreads()));
+        if ( load.isOpenLoop() ) {
+            report.addParameter("rate", Double.valueOf(load.getRate()));
+        }
+        report.addParameter("warmupSeconds", Integer.valueOf(load.getWarmupSeconds()));
+        report.addParameter("measuredSeconds", Double.valueOf(seconds));
+        report.addParameter("successes", Integer.valueOf(nrOfSuccesses));
+        report.addParameter("failures", Integer.valueOf(nrOfFailures));
+        report.addParameter("throughput", Double.valueOf(nrOfSuccesses / seconds));
+        for (final LatencyHistogram.Snapshot snapshot : latencies) {
+            report.addLatencies(snapshot);
+        }
+        return report;
+    }
+
+    /**
+     * When the tests of a load are started. All times are in nanoseconds, as returned by {@link System#nanoTime()}.
+     */
+    static class Schedule {
+        private final int nrOfTests;
+        /** Nanoseconds between the starts of tests in an open loop, or 0 in a closed loop */
+        private final double interval;
+        /** Nanoseconds after the start when no more tests are started, or 0 if not limited */
+        private final long endTime;
+
+        Schedule(final NrOfThreadsAndNrOfTests load) {
+            this.nrOfTests = load.getTests();
+            this.interval = load.isOpenLoop() ? TimeUnit.SECONDS.toNanos(1) / load.getRate() : 0;
+            this.endTime = load.getDurationSeconds() > 0 ? TimeUnit.SECONDS.toNanos(load.getWarmupSeconds() + load.getDurationSeconds()) : 0;
+        }
+
+        /**
+         * @param startTime the time the whole test was started
+         * @param nrOfStarted the number of tests started so far
+         * @param now the current time
+         * @return the time the next test should be started at. In an open loop this is in the past if all threads have been busy.
+         */
+        long getNextStartTime(final long startTime, final int nrOfStarted, final long now) {
+            if ( this.interval > 0 ) {
+                return startTime + (long)(nrOfStarted * this.interval);
+            }
+            return now;
+        }
+
+        /** @return true if the next test should be started, false if the number of tests or the duration has been reached */
+        boolean isMoreTestsToStart(final long startTime, final int nrOfStarted, final long now) {
+            if ( this.nrOfTests>=0 && nrOfStarted>=this.nrOfTests ) {
+                return false;
+            }
+            return this.endTime<=0 || getNextStartTime(startTime, nrOfStarted, now)-startTime < this.endTime;
+        }
+    }
+
     public class Log {
         private final PrintWriter errorPrinter;
         private final PrintWriter infoPrinter;
@@ -509,6 +818,7 @@ public class PerformanceTest {
                 }
                 synchronized (PerformanceTest.this) {
                     // stop wait in main thread.
+                    PerformanceTest.this.isFinished = true;
                     PerformanceTest.this.notifyAll();
                 }
             }
@@ -538,14 +848,39 @@ public class PerformanceTest {
         }
     }
     /**
+     * The load of a test, parsed from a command line argument on the form
+     * <code>m[:n][,rate=r][,warmup=w][,duration=d][,output=file]</code>:
+     * <ul>
+     * <li>m: number of threads</li>
+     * <li>n: number of tests, or unlimited if not given</li>
+     * <li>rate: number of tests to start each second. If given, tests are started in an open loop at this rate
+     * by the m threads, otherwise each thread starts a new test when the previous one is finished.</li>
+     * <li>warmup: number of seconds before the statistics are collected</li>
+     * <li>duration: number of seconds to run the test after the warmup</li>
+     * <li>output: file to write the result to, in JSON format if the file name ends with .json and CSV otherwise</li>
+     * </ul>
      * This class will be removed when the new CLI with arguments identifiers
      * is introduces.
      *
      */
     public static class NrOfThreadsAndNrOfTests {
 
+        /** Description of the argument, for usage texts */
+        public static final String USAGE = "'m[:n][,rate=r][,warmup=w][,duration=d][,output=file]' m # of threads, n # of tests, "
+                + "r # of tests started each second in an open loop, w and d warmup time and duration in seconds, "
+                + "file .csv or .json file to write the result to";
+
         private final int threads;
         private final int tests;
+        private double rate = 0;
+        private int warmupSeconds = 0;
+        private int durationSeconds = 0;
+        private String outputFile = null;
+
+        public NrOfThreadsAndNrOfTests(final int _threads, final int _tests) {
+            this.threads = _threads;
+            this.tests = _tests;
+        }
 
         public NrOfThreadsAndNrOfTests(final String _s) {
             if (_s == null) {
@@ -553,24 +888,71 @@ public class PerformanceTest {
                 this.tests = -1;
                 return;
             }
-            final String s = _s.trim();
+            final String[] parts = _s.trim().split(",");
+            final String s = parts[0].trim();
             final int sepPos = s.indexOf(':');
             if (sepPos < 0) {
                 this.threads = Integer.parseInt(s);
                 this.tests = -1;
-                return;
+            } else {
+                this.threads = Integer.parseInt(s.substring(0, sepPos));
+                this.tests = Integer.parseInt(s.substring(sepPos + 1));
+            }
+            for (int i = 1; i < parts.length; i++) {
+                final String option = parts[i].trim();
+                final int equalsPos = option.indexOf('=');
+                if (equalsPos < 0) {
+                    throw new IllegalArgumentException("Option '" + option + "' has no value. The argument should be " + USAGE);
+                }
+                final String name = option.substring(0, equalsPos).trim().toLowerCase(Locale.ROOT);
+                final String value = option.substring(equalsPos + 1).trim();
+                if (name.equals("rate")) {
+                    this.rate = Double.parseDouble(value);
+                    if (this.rate <= 0) {
+                        throw new IllegalArgumentException("The rate must be greater than 0.");
+                    }
+                } else if (name.equals("warmup")) {
+                    this.warmupSeconds = Integer.parseInt(value);
+                } else if (name.equals("duration")) {
+                    this.durationSeconds = Integer.parseInt(value);
+                } else if (name.equals("output")) {
+                    this.outputFile = value;
+                } else {
+                    throw new IllegalArgumentException("Unknown option '" + name + "'. The argument should be " + USAGE);
+                }
             }
-            this.threads = Integer.parseInt(s.substring(0, sepPos));
-            this.tests = Integer.parseInt(s.substring(sepPos + 1));
         }
 
         public int getThreads() {
             return threads;
         }
 
+        /** @return the number of tests, or -1 if unlimited */
         public int getTests() {
             return tests;
         }
 
+        /** @return the number of tests to start each second, or 0 for a closed loop */
+        public double getRate() {
+            return rate;
+        }
+
+        public boolean isOpenLoop() {
+            return rate > 0;
+        }
+
+        public int getWarmupSeconds() {
+            return warmupSeconds;
+        }
+
+        /** @return the number of seconds to run the test after the warmup, or 0 if unlimited */
+        public int getDurationSeconds() {
+            return durationSeconds;
+        }
+
+        /** @return the file to write the result to, or null */
+        public String getOutputFile() {
+            return outputFile;
+        }
     }
 }
@@ -0,0 +1,177 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import org.cesecore.metrics.LatencyHistogram;
+
+/**
+ * Result of a {@link PerformanceTest}, that can be written as CSV or JSON so that results of different runs can be compared by scripts.
+ *
+ * All latencies are written in milliseconds.
+ *
+ * @version $Id$
+ */
+public class PerformanceTestReport {
+
+    private static final double[] PERCENTILES = { 50.0, 90.0, 99.0, 99.9 };
+
+    private final Map<String, Object> parameters = new LinkedHashMap<>();
+    private final List<LatencyHistogram.Snapshot> latencies = new ArrayList<>();
+
+    /** Adds a parameter or a summary value of the test, e.g. the number of threads or the throughput */
+    public void addParameter(final String name, final Object value) {
+        parameters.put(name, value);
+    }
+
+    /** Adds the latencies of a job. Jobs without any recorded values are ignored. */
+    public void addLatencies(final LatencyHistogram.Snapshot snapshot) {
+        if (snapshot.getCount() > 0) {
+            latencies.add(snapshot);
+        }
+    }
+
+    /**
+     * @return the parameters as comment lines starting with '#', followed by one line for each job with
+     * the number of values, the mean, the percentiles and the maximum
+     */
+    public String toCsv() {
+        final StringBuilder sb = new StringBuilder();
+        for (final Map.Entry<String, Object> entry : parameters.entrySet()) {
+            sb.append("# ").append(entry.getKey()).append(": ").append(formatValue(entry.getValue())).append('\n');
+        }
+        sb.append("name,count,mean_ms");
+        for (final double percentile : PERCENTILES) {
+            sb.append(",p").append(formatPercentile(percentile).replace('.', '_')).append("_ms");
+        }
+        sb.append(",max_ms\n");
+        for (final LatencyHistogram.Snapshot snapshot : latencies) {
+            sb.append(quoteCsv(snapshot.getName())).append(',').append(snapshot.getCount());
+            sb.append(',').append(formatMillis(snapshot.getMean()));
+            for (final double percentile : PERCENTILES) {
+                sb.append(',').append(formatMillis(snapshot.getValueAtPercentile(percentile)));
+            }
+            sb.append(',').append(formatMillis(snapshot.getMax())).append('\n');
+        }
+        return sb.toString();
+    }
+
+    /** @return the parameters and the latencies of each job as a JSON object */
+    public String toJson() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("{\n  \"parameters\": {");
+        String separator = "\n";
+        for (final Map.Entry<String, Object> entry : parameters.entrySet()) {
+            sb.append(separator).append("    ").append(quoteJson(entry.getKey())).append(": ");
+            final Object value = entry.getValue();
+            if (value instanceof Number) {
+                sb.append(formatValue(value));
+            } else {
+                sb.append(quoteJson(String.valueOf(value)));
+            }
+            separator = ",\n";
+        }
+        sb.append("\n  },\n  \"latencies\": [");
+        separator = "\n";
+        for (final LatencyHistogram.Snapshot snapshot : latencies) {
+            sb.append(separator).append("    {\"name\": ").append(quoteJson(snapshot.getName()));
+            sb.append(", \"count\": ").append(snapshot.getCount());
+            sb.append(", \"mean_ms\": ").append(formatMillis(snapshot.getMean()));
+            for (final double percentile : PERCENTILES) {
+                sb.append(", \"p").append(formatPercentile(percentile).replace('.', '_')).append("_ms\": ");
+                sb.append(formatMillis(snapshot.getValueAtPercentile(percentile)));
+            }
+            sb.append(", \"max_ms\": ").append(formatMillis(snapshot.getMax())).append('}');
+            separator = ",\n";
+        }
+        sb.append("\n  ]\n}\n");
+        return sb.toString();
+    }
+
+    /** Writes the report as JSON if the file name ends with .json, and as CSV otherwise */
+    public void write(final File file) throws IOException {
+        final boolean isJson = file.getName().toLowerCase(Locale.ROOT).endsWith(".json");
+        try (final Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+            writer.write(isJson ? toJson() : toCsv());
+        }
+    }
+
+    /** @return the percentile without trailing zeros, e.g. "99" or "99.9" */
+    static String formatPercentile(final double percentile) {
+        if (percentile == Math.rint(percentile)) {
+            return String.valueOf((long) percentile);
+        }
+        return String.valueOf(percentile);
+    }
+
+    private static String formatMillis(final double nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1000000.0);
+    }
+
+    private static String formatValue(final Object value) {
+        if (value instanceof Double || value instanceof Float) {
+            return String.format(Locale.ROOT, "%.3f", ((Number) value).doubleValue());
+        }
+        return String.valueOf(value);
+    }
+
+    private static String quoteCsv(final String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String quoteJson(final String value) {
+        final StringBuilder sb = new StringBuilder(value.length() + 2);
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '"':
+                sb.append("\\\"");
+                break;
+            case '\\':
+                sb.append("\\\\");
+                break;
+            case '\n':
+                sb.append("\\n");
+                break;
+            case '\r':
+                sb.append("\\r");
+                break;
+            case '\t':
+                sb.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    sb.append(String.format("\\u%04x", Integer.valueOf(c)));
+                } else {
+                    sb.append(c);
+                }
+            }
+        }
+        return sb.append('"').toString();
+    }
+}
@@ -34,10 +34,15 @@ public class ApprovalMatch extends BasicMatch {
     public static final int MATCH_WITH_REQUESTADMINCERTSERIALNUMBER  = 6;
     public static final int MATCH_WITH_STATUS                        = 7; 
     public static final int MATCH_WITH_REMAININGAPPROVALS            = 8;
+    /** Match with the approval profile id, which is null for requests that have not been updated since before the column was added */
+    public static final int MATCH_WITH_APPROVALPROFILEID             = 9;
+    /** Match with the ordinal of the approval step being evaluated, see {@link #MATCH_WITH_APPROVALPROFILEID} */
+    public static final int MATCH_WITH_APPROVALSTEP                  = 10;
 
     /** These refer to column names in the database and are used for native SQL querying. */
     private static final String[] MATCH_WITH_SQLNAMES = {
-        "id", "approvalId", "approvalType", "endEntityProfileId", "cAId", "reqAdminCertIssuerDn", "reqAdminCertSn", "status", "remainingApprovals"
+        "id", "approvalId", "approvalType", "endEntityProfileId", "cAId", "reqAdminCertIssuerDn", "reqAdminCertSn", "status", "remainingApprovals",
+        "approvalProfileId", "approvalStep"
     };
 
     private int matchwith;
@@ -74,7 +79,7 @@ public class ApprovalMatch extends BasicMatch {
             // Because some databases (read JavaDB/Derby) does not allow matching of integer with a string expression
             // like "where status='10'" instead of "where status=10", we have to hav e some special handling here.
             String stringChar = "'";
-            if ((matchwith >= MATCH_WITH_UNIQUEID && matchwith <= MATCH_WITH_CAID) || (matchwith == MATCH_WITH_STATUS) || (matchwith == MATCH_WITH_REMAININGAPPROVALS)) {
+            if ((matchwith >= MATCH_WITH_UNIQUEID && matchwith <= MATCH_WITH_CAID) || (matchwith >= MATCH_WITH_STATUS && matchwith <= MATCH_WITH_APPROVALSTEP)) {
                 stringChar = "";
             }
             returnval = MATCH_WITH_SQLNAMES[matchwith] + " = "+stringChar + matchvalue.trim() + stringChar;
@@ -0,0 +1,147 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.ui.cli.ca;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.cesecore.authorization.AuthorizationDeniedException;
+import org.cesecore.certificates.certificateprofile.CertificateProfile;
+import org.cesecore.certificates.certificateprofile.CertificateProfileConstants;
+import org.cesecore.certificates.certificateprofile.CertificateProfileSessionRemote;
+import org.cesecore.certificates.endentity.EndEntityConstants;
+import org.cesecore.util.EjbRemoteHelper;
+import org.ejbca.core.ejb.ca.publisher.PublisherSessionRemote;
+import org.ejbca.core.ejb.ra.raadmin.EndEntityProfileSessionRemote;
+import org.ejbca.core.model.authorization.AccessRulesConstants;
+import org.ejbca.core.model.configdump.ConfigDumpArchive;
+import org.ejbca.core.model.configdump.ConfigDumpItem;
+import org.ejbca.core.model.ra.raadmin.EndEntityProfile;
+import org.ejbca.ui.cli.infrastructure.command.CommandResult;
+import org.ejbca.ui.cli.infrastructure.parameter.Parameter;
+import org.ejbca.ui.cli.infrastructure.parameter.ParameterContainer;
+import org.ejbca.ui.cli.infrastructure.parameter.enums.MandatoryMode;
+import org.ejbca.ui.cli.infrastructure.parameter.enums.ParameterMode;
+import org.ejbca.ui.cli.infrastructure.parameter.enums.StandaloneMode;
+
+/**
+ * Export publishers, profiles, internal key bindings, services and roles from the database to a single archive, which is faster than
+ * exportprofiles for large numbers of profiles.
+ *
+ * @version $Id$
+ */
+public class CaExportProfileArchiveCommand extends BaseCaAdminCommand {
+
+    private static final Logger log = Logger.getLogger(CaExportProfileArchiveCommand.class);
+
+    private static final String FILE_KEY = "-f";
+    private static final String THREADS_KEY = "--threads";
+
+    {
+        registerParameter(new Parameter(FILE_KEY, "Archive file", MandatoryMode.MANDATORY, StandaloneMode.ALLOW, ParameterMode.ARGUMENT,
+                "The zip file to write."));
+        registerParameter(new Parameter(THREADS_KEY, "Threads", MandatoryMode.OPTIONAL, StandaloneMode.FORBID, ParameterMode.ARGUMENT,
+                "Number of threads to encode profiles with. Default is the number of processors."));
+    }
+
+    @Override
+    public String getMainCommand() {
+        return "exportprofilearchive";
+    }
+
+    @Override
+    public CommandResult execute(ParameterContainer parameters) {
+        final String outfile = parameters.get(FILE_KEY);
+        final int threads;
+        try {
+            threads = parameters.get(THREADS_KEY) == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(parameters.get(THREADS_KEY));
+        } catch (NumberFormatException e) {
+            log.error("Number of threads must be an integer.");
+            return CommandResult.CLI_FAILURE;
+        }
+        final CertificateProfileSessionRemote certificateProfileSession = EjbRemoteHelper.INSTANCE.getRemoteSession(CertificateProfileSessionRemote.class);
+        final EndEntityProfileSessionRemote endEntityProfileSession = EjbRemoteHelper.INSTANCE.getRemoteSession(EndEntityProfileSessionRemote.class);
+        final PublisherSessionRemote publisherSession = EjbRemoteHelper.INSTANCE.getRemoteSession(PublisherSessionRemote.class);
+        final List<ConfigDumpItem> items = new ArrayList<>();
+        // Read all objects of each type in one call, since there may be thousands of profiles
+        final Map<Integer, String> publisherIdToNameMap = publisherSession.getPublisherIdToNameMap();
+        for (final Map.Entry<Integer, Map<?, ?>> entry : publisherSession.getAllPublisherData().entrySet()) {
+            items.add(new ConfigDumpItem(ConfigDumpItem.Type.PUBLISHER, entry.getKey(), publisherIdToNameMap.get(entry.getKey()), entry.getValue()));
+        }
+        final Map<Integer, String> certificateProfileIdToNameMap = certificateProfileSession.getCertificateProfileIdToNameMap();
+        final Map<Integer, CertificateProfile> certificateProfiles = certificateProfileSession.getAllCertificateProfiles();
+        for (final int profileid : certificateProfileSession.getAuthorizedCertificateProfileIds(getAuthenticationToken(), 0)) {
+            if (!CertificateProfileConstants.isFixedCertificateProfile(profileid)) {
+                final CertificateProfile profile = certificateProfiles.get(profileid);
+                if (profile == null) {
+                    log.error("Couldn't find certificate profile with id " + profileid + " in database.");
+                } else {
+                    items.add(new ConfigDumpItem(ConfigDumpItem.Type.CERTIFICATE_PROFILE, profileid, certificateProfileIdToNameMap.get(profileid),
+                            profile.getRawData()));
+                }
+            }
+        }
+        final Map<Integer, String> endEntityProfileIdToNameMap = endEntityProfileSession.getEndEntityProfileIdToNameMap();
+        final Map<Integer, EndEntityProfile> endEntityProfiles = endEntityProfileSession.getAllEndEntityProfiles();
+        for (final int profileid : endEntityProfileSession.getAuthorizedEndEntityProfileIds(getAuthenticationToken(), AccessRulesConstants.VIEW_END_ENTITY)) {
+            if (profileid != EndEntityConstants.EMPTY_END_ENTITY_PROFILE) {
+                final EndEntityProfile profile = endEntityProfiles.get(profileid);
+                if (profile == null) {
+                    log.error("Couldn't find end entity profile with id " + profileid + " in database.");
+                } else {
+                    items.add(new ConfigDumpItem(ConfigDumpItem.Type.END_ENTITY_PROFILE, profileid, endEntityProfileIdToNameMap.get(profileid),
+                            profile.getRawData()));
+                }
+            }
+        }
+        final ConfigDumpRemoteTarget target = new ConfigDumpRemoteTarget(getAuthenticationToken());
+        try {
+            items.addAll(target.getItems(ConfigDumpItem.Type.INTERNAL_KEY_BINDING));
+            items.addAll(target.getItems(ConfigDumpItem.Type.SERVICE));
+            items.addAll(target.getItems(ConfigDumpItem.Type.ROLE));
+        } catch (AuthorizationDeniedException e) {
+            log.error("Current CLI user doesn't have sufficient privileges to export the configuration: " + e.getMessage());
+            return CommandResult.AUTHORIZATION_FAILURE;
+        }
+        try (final OutputStream out = new FileOutputStream(outfile)) {
+            ConfigDumpArchive.write(out, items, threads);
+        } catch (IOException e) {
+            log.error("Could not write archive '" + outfile + "': " + e.getMessage());
+            return CommandResult.FUNCTIONAL_FAILURE;
+        }
+        log.info("Exported " + items.size() + " objects to '" + outfile + "'.");
+        return CommandResult.SUCCESS;
+    }
+
+    @Override
+    public String getCommandDescription() {
+        return "Export publishers, profiles, internal key bindings, services and roles from the database to a zip archive.";
+    }
+
+    @Override
+    public String getFullHelpText() {
+        return getCommandDescription() + " The objects are written in dependency order, "
+                + "and objects with identical content are stored once. CAs and crypto tokens are not exported. "
+                + "Use importprofilearchive to import the archive.";
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return log;
+    }
+}
@@ -0,0 +1,161 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.ui.cli.ca;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.log4j.Logger;
+import org.cesecore.authorization.AuthorizationDeniedException;
+import org.cesecore.certificates.ca.CAInfo;
+import org.cesecore.certificates.ca.CaSessionRemote;
+import org.cesecore.util.CryptoProviderTools;
+import org.cesecore.util.EjbRemoteHelper;
+import org.ejbca.core.model.configdump.ConfigDumpArchive;
+import org.ejbca.core.model.configdump.ConfigDumpException;
+import org.ejbca.core.model.configdump.ConfigDumpImportResult;
+import org.ejbca.core.model.configdump.ConfigDumpImporter;
+import org.ejbca.core.model.configdump.ConfigDumpItem;
+import org.ejbca.ui.cli.infrastructure.command.CommandResult;
+import org.ejbca.ui.cli.infrastructure.parameter.Parameter;
+import org.ejbca.ui.cli.infrastructure.parameter.ParameterContainer;
+import org.ejbca.ui.cli.infrastructure.parameter.enums.MandatoryMode;
+import org.ejbca.ui.cli.infrastructure.parameter.enums.ParameterMode;
+import org.ejbca.ui.cli.infrastructure.parameter.enums.StandaloneMode;
+
+/**
+ * Import publishers, profiles, internal key bindings, services and roles from an archive written by exportprofilearchive. The profiles are
+ * stored in batches, one transaction per batch.
+ *
+ * @version $Id$
+ */
+public class CaImportProfileArchiveCommand extends BaseCaAdminCommand {
+
+    private static final Logger log = Logger.getLogger(CaImportProfileArchiveCommand.class);
+
+    private static final String FILE_KEY = "-f";
+    private static final String CA_NAME_KEY = "--caname";
+    private static final String OVERWRITE_KEY = "--overwrite";
+    private static final String DRY_RUN_KEY = "--dryrun";
+    private static final String THREADS_KEY = "--threads";
+    private static final String BATCH_SIZE_KEY = "--batchsize";
+
+    {
+        registerParameter(new Parameter(FILE_KEY, "Archive file", MandatoryMode.MANDATORY, StandaloneMode.ALLOW, ParameterMode.ARGUMENT,
+                "The zip file to read."));
+        registerParameter(new Parameter(CA_NAME_KEY, "CA Name", MandatoryMode.OPTIONAL, StandaloneMode.FORBID, ParameterMode.ARGUMENT,
+                "Name of a CA to use in profiles where none of the available CAs exist."));
+        registerParameter(new Parameter(OVERWRITE_KEY, "Overwrite", MandatoryMode.OPTIONAL, StandaloneMode.FORBID, ParameterMode.FLAG,
+                "Overwrite existing objects with the same name. By default they are skipped. Existing role members are always kept."));
+        registerParameter(new Parameter(DRY_RUN_KEY, "Dry run", MandatoryMode.OPTIONAL, StandaloneMode.FORBID, ParameterMode.FLAG,
+                "Only show which objects would be added, updated or skipped, and which references would be changed."));
+        registerParameter(new Parameter(THREADS_KEY, "Threads", MandatoryMode.OPTIONAL, StandaloneMode.FORBID, ParameterMode.ARGUMENT,
+                "Number of threads to decode profiles with. Default is the number of processors."));
+        registerParameter(new Parameter(BATCH_SIZE_KEY, "Batch size", MandatoryMode.OPTIONAL, StandaloneMode.FORBID, ParameterMode.ARGUMENT,
+                "Number of profiles to store in each transaction. Default is " + ConfigDumpImporter.DEFAULT_BATCH_SIZE + "."));
+    }
+
+    @Override
+    public String getMainCommand() {
+        return "importprofilearchive";
+    }
+
+    @Override
+    public CommandResult execute(ParameterContainer parameters) {
+        final String infile = parameters.get(FILE_KEY);
+        final boolean dryRun = parameters.containsKey(DRY_RUN_KEY);
+        final int threads;
+        final int batchSize;
+        try {
+            threads = parameters.get(THREADS_KEY) == null ? Runtime.getRuntime().availableProcessors() : Integer.parseInt(parameters.get(THREADS_KEY));
+            batchSize = parameters.get(BATCH_SIZE_KEY) == null ? ConfigDumpImporter.DEFAULT_BATCH_SIZE : Integer.parseInt(parameters.get(BATCH_SIZE_KEY));
+        } catch (NumberFormatException e) {
+            log.error("Number of threads and batch size must be integers.");
+            return CommandResult.CLI_FAILURE;
+        }
+        final ConfigDumpImporter importer = new ConfigDumpImporter(new ConfigDumpRemoteTarget(getAuthenticationToken()));
+        importer.setOverwrite(parameters.containsKey(OVERWRITE_KEY));
+        final String caName = parameters.get(CA_NAME_KEY);
+        if (caName != null) {
+            try {
+                final CAInfo ca = EjbRemoteHelper.INSTANCE.getRemoteSession(CaSessionRemote.class).getCAInfo(getAuthenticationToken(), caName);
+                if (ca == null) {
+                    log.error("CA '" + caName + "' does not exist.");
+                    return CommandResult.FUNCTIONAL_FAILURE;
+                }
+                importer.setDefaultCaId(ca.getCAId());
+            } catch (AuthorizationDeniedException e) {
+                log.error("CLI user not authorized to CA '" + caName + "'.");
+                return CommandResult.AUTHORIZATION_FAILURE;
+            }
+        }
+        CryptoProviderTools.installBCProvider();
+        final List<ConfigDumpItem> items;
+        try (final InputStream in = new FileInputStream(infile)) {
+            items = ConfigDumpArchive.read(in, threads);
+        } catch (IOException e) {
+            log.error("Could not read archive '" + infile + "': " + e.getMessage());
+            return CommandResult.FUNCTIONAL_FAILURE;
+        }
+        final List<ConfigDumpImportResult> plan;
+        try {
+            plan = importer.plan(items);
+        } catch (AuthorizationDeniedException e) {
+            log.error("Current CLI user doesn't have sufficient privileges to read the existing configuration: " + e.getMessage());
+            return CommandResult.AUTHORIZATION_FAILURE;
+        }
+        final Map<ConfigDumpImportResult.Action, Integer> counts = new EnumMap<>(ConfigDumpImportResult.Action.class);
+        for (final ConfigDumpImportResult result : plan) {
+            log.info(result.toString());
+            for (final String warning : result.getWarnings()) {
+                log.warn("    " + warning);
+            }
+            counts.put(result.getAction(), counts.containsKey(result.getAction()) ? counts.get(result.getAction()) + 1 : 1);
+        }
+        log.info((dryRun ? "Dry run: " : "") + plan.size() + " objects in archive: " + counts + ".");
+        if (dryRun) {
+            return CommandResult.SUCCESS;
+        }
+        try {
+            final int stored = importer.commit(plan, batchSize);
+            log.info("Stored " + stored + " objects.");
+        } catch (AuthorizationDeniedException e) {
+            log.error("Current CLI user doesn't have sufficient privileges to import the configuration: " + e.getMessage());
+            return CommandResult.AUTHORIZATION_FAILURE;
+        } catch (ConfigDumpException e) {
+            log.error(e.getMessage());
+            return CommandResult.FUNCTIONAL_FAILURE;
+        }
+        return CommandResult.SUCCESS;
+    }
+
+    @Override
+    public String getCommandDescription() {
+        return "Import publishers, profiles, internal key bindings, services and roles from a zip archive to the database";
+    }
+
+    @Override
+    public String getFullHelpText() {
+        return getCommandDescription() + ". References to publishers and profiles that get a new id are updated, and references to CAs, publishers "
+                + "and profiles that do not exist are removed. Crypto tokens are not imported, and must exist with the same ids. Use " + DRY_RUN_KEY + " to see the changes without storing anything.";
+    }
+
+    @Override
+    protected Logger getLogger() {
+        return log;
+    }
+}
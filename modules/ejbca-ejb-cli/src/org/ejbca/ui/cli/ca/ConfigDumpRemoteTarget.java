@@ -0,0 +1,240 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.ui.cli.ca;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.log4j.Logger;
+import org.cesecore.authentication.tokens.AuthenticationToken;
+import org.cesecore.authorization.AuthorizationDeniedException;
+import org.cesecore.certificates.ca.CaSessionRemote;
+import org.cesecore.certificates.ca.InvalidAlgorithmException;
+import org.cesecore.certificates.certificateprofile.CertificateProfile;
+import org.cesecore.certificates.certificateprofile.CertificateProfileConstants;
+import org.cesecore.certificates.certificateprofile.CertificateProfileExistsException;
+import org.cesecore.certificates.certificateprofile.CertificateProfileSessionRemote;
+import org.cesecore.certificates.endentity.EndEntityConstants;
+import org.cesecore.keybind.InternalKeyBinding;
+import org.cesecore.keybind.InternalKeyBindingMgmtSessionRemote;
+import org.cesecore.keybind.InternalKeyBindingNameInUseException;
+import org.cesecore.keys.token.CryptoTokenOfflineException;
+import org.cesecore.roles.Role;
+import org.cesecore.roles.RoleExistsException;
+import org.cesecore.roles.management.RoleSessionRemote;
+import org.cesecore.roles.member.RoleMember;
+import org.cesecore.roles.member.RoleMemberSessionRemote;
+import org.cesecore.util.EjbRemoteHelper;
+import org.ejbca.core.ejb.ca.publisher.PublisherSessionRemote;
+import org.ejbca.core.ejb.ra.raadmin.EndEntityProfileSessionRemote;
+import org.ejbca.core.ejb.services.ServiceSessionRemote;
+import org.ejbca.core.model.ca.publisher.PublisherExistsException;
+import org.ejbca.core.model.configdump.ConfigDumpException;
+import org.ejbca.core.model.configdump.ConfigDumpItem;
+import org.ejbca.core.model.configdump.ConfigDumpTarget;
+import org.ejbca.core.model.configdump.ConfigDumpTools;
+import org.ejbca.core.model.ra.raadmin.EndEntityProfile;
+import org.ejbca.core.model.ra.raadmin.EndEntityProfileExistsException;
+import org.ejbca.core.model.services.ServiceExistsException;
+
+/**
+ * Reads and stores the objects of a configuration dump through the remote session beans.
+ *
+ * @version $Id$
+ */
+class ConfigDumpRemoteTarget implements ConfigDumpTarget {
+
+    private static final Logger log = Logger.getLogger(ConfigDumpRemoteTarget.class);
+
+    private final AuthenticationToken authenticationToken;
+    private final CertificateProfileSessionRemote certificateProfileSession = EjbRemoteHelper.INSTANCE
+            .getRemoteSession(CertificateProfileSessionRemote.class);
+    private final EndEntityProfileSessionRemote endEntityProfileSession = EjbRemoteHelper.INSTANCE.getRemoteSession(EndEntityProfileSessionRemote.class);
+    private final PublisherSessionRemote publisherSession = EjbRemoteHelper.INSTANCE.getRemoteSession(PublisherSessionRemote.class);
+    private final InternalKeyBindingMgmtSessionRemote internalKeyBindingSession = EjbRemoteHelper.INSTANCE
+            .getRemoteSession(InternalKeyBindingMgmtSessionRemote.class);
+    private final ServiceSessionRemote serviceSession = EjbRemoteHelper.INSTANCE.getRemoteSession(ServiceSessionRemote.class);
+    private final RoleSessionRemote roleSession = EjbRemoteHelper.INSTANCE.getRemoteSession(RoleSessionRemote.class);
+    private final RoleMemberSessionRemote roleMemberSession = EjbRemoteHelper.INSTANCE.getRemoteSession(RoleMemberSessionRemote.class);
+
+    ConfigDumpRemoteTarget(final AuthenticationToken authenticationToken) {
+        this.authenticationToken = authenticationToken;
+    }
+
+    @Override
+    public List<ConfigDumpItem> getItems(final ConfigDumpItem.Type type) throws AuthorizationDeniedException {
+        final List<ConfigDumpItem> items = new ArrayList<>();
+        switch (type) {
+        case PUBLISHER:
+            final Map<Integer, String> publisherIdToNameMap = publisherSession.getPublisherIdToNameMap();
+            for (final Map.Entry<Integer, Map<?, ?>> entry : publisherSession.getAllPublisherData().entrySet()) {
+                items.add(new ConfigDumpItem(type, entry.getKey(), publisherIdToNameMap.get(entry.getKey()), entry.getValue()));
+            }
+            break;
+        case CERTIFICATE_PROFILE:
+            final Map<Integer, String> certificateProfileIdToNameMap = certificateProfileSession.getCertificateProfileIdToNameMap();
+            for (final Map.Entry<Integer, CertificateProfile> entry : certificateProfileSession.getAllCertificateProfiles().entrySet()) {
+                if (!CertificateProfileConstants.isFixedCertificateProfile(entry.getKey())) {
+                    items.add(new ConfigDumpItem(type, entry.getKey(), certificateProfileIdToNameMap.get(entry.getKey()), entry.getValue().getRawData()));
+                }
+            }
+            break;
+        case END_ENTITY_PROFILE:
+            final Map<Integer, String> endEntityProfileIdToNameMap = endEntityProfileSession.getEndEntityProfileIdToNameMap();
+            for (final Map.Entry<Integer, EndEntityProfile> entry : endEntityProfileSession.getAllEndEntityProfiles().entrySet()) {
+                if (entry.getKey() != EndEntityConstants.EMPTY_END_ENTITY_PROFILE) {
+                    items.add(new ConfigDumpItem(type, entry.getKey(), endEntityProfileIdToNameMap.get(entry.getKey()), entry.getValue().getRawData()));
+                }
+            }
+            break;
+        case INTERNAL_KEY_BINDING:
+            for (final int internalKeyBindingId : internalKeyBindingSession.getInternalKeyBindingIds(authenticationToken, null)) {
+                final InternalKeyBinding internalKeyBinding = internalKeyBindingSession.getInternalKeyBinding(authenticationToken, internalKeyBindingId);
+                if (internalKeyBinding != null) {
+                    items.add(ConfigDumpTools.fromInternalKeyBinding(internalKeyBinding));
+                }
+            }
+            break;
+        case SERVICE:
+            for (final int serviceId : serviceSession.getVisibleServiceIds()) {
+                final String name = serviceSession.getServiceName(serviceId);
+                items.add(ConfigDumpTools.fromService(serviceId, name, serviceSession.getService(name)));
+            }
+            break;
+        case ROLE:
+            for (final Role role : roleSession.getAuthorizedRoles(authenticationToken)) {
+                items.add(ConfigDumpTools.fromRole(role, roleMemberSession.getRoleMembersByRoleId(authenticationToken, role.getRoleId())));
+            }
+            break;
+        default:
+            throw new IllegalStateException("Unknown type " + type);
+        }
+        return items;
+    }
+
+    @Override
+    public Set<Integer> getCaIds() {
+        return new HashSet<>(EjbRemoteHelper.INSTANCE.getRemoteSession(CaSessionRemote.class).getAllCaIds());
+    }
+
+    @Override
+    public void store(final ConfigDumpItem.Type type, final List<ConfigDumpItem> batch) throws AuthorizationDeniedException, ConfigDumpException {
+        final Map<Integer, String> idToNameMap = new LinkedHashMap<>();
+        for (final ConfigDumpItem item : batch) {
+            idToNameMap.put(item.getId(), item.getName());
+        }
+        try {
+            switch (type) {
+            case PUBLISHER:
+                // Publishers are few, so they are stored one by one
+                final Map<Integer, String> existingIdToNameMap = publisherSession.getPublisherIdToNameMap();
+                for (final ConfigDumpItem item : batch) {
+                    if (item.getName().equals(existingIdToNameMap.get(item.getId()))) {
+                        publisherSession.changePublisherFromData(authenticationToken, item.getName(), item.getData());
+                    } else {
+                        publisherSession.addPublisherFromData(authenticationToken, item.getId(), item.getName(), item.getData());
+                    }
+                }
+                break;
+            case CERTIFICATE_PROFILE:
+                final Map<Integer, CertificateProfile> certificateProfiles = new LinkedHashMap<>();
+                for (final ConfigDumpItem item : batch) {
+                    final CertificateProfile profile = new CertificateProfile();
+                    profile.loadData(item.getData());
+                    certificateProfiles.put(item.getId(), profile);
+                }
+                certificateProfileSession.importCertificateProfiles(authenticationToken, idToNameMap, certificateProfiles);
+                break;
+            case END_ENTITY_PROFILE:
+                final Map<Integer, EndEntityProfile> endEntityProfiles = new LinkedHashMap<>();
+                for (final ConfigDumpItem item : batch) {
+                    final EndEntityProfile profile = new EndEntityProfile();
+                    profile.loadData(item.getData());
+                    endEntityProfiles.put(item.getId(), profile);
+                }
+                endEntityProfileSession.importEndEntityProfiles(authenticationToken, idToNameMap, endEntityProfiles);
+                break;
+            case INTERNAL_KEY_BINDING:
+                for (final ConfigDumpItem item : batch) {
+                    storeInternalKeyBinding(item);
+                }
+                break;
+            case SERVICE:
+                for (final ConfigDumpItem item : batch) {
+                    if (item.getName().equals(serviceSession.getServiceName(item.getId()))) {
+                        serviceSession.changeService(authenticationToken, item.getName(), ConfigDumpTools.toService(item), false);
+                    } else {
+                        serviceSession.addService(authenticationToken, item.getId(), item.getName(), ConfigDumpTools.toService(item));
+                    }
+                    serviceSession.activateServiceTimer(authenticationToken, item.getName());
+                }
+                break;
+            case ROLE:
+                for (final ConfigDumpItem item : batch) {
+                    storeRole(item);
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown type " + type);
+            }
+        } catch (PublisherExistsException e) {
+            // PublisherExistsException has no message
+            throw new ConfigDumpException("Could not store " + type.getLabel() + " in batch starting with " + batch.get(0)
+                    + ", since the id or name is already taken.", e);
+        } catch (CertificateProfileExistsException | EndEntityProfileExistsException | InternalKeyBindingNameInUseException | ServiceExistsException
+                | RoleExistsException e) {
+            throw new ConfigDumpException("Could not store batch starting with " + batch.get(0) + ": " + e.getMessage(), e);
+        }
+        log.info("Stored " + batch.size() + " " + type.getLabel() + " objects.");
+    }
+
+    /** Adds a new internal key binding disabled, unless its certificate exists, and then updates it with all data from the dump */
+    private void storeInternalKeyBinding(final ConfigDumpItem item)
+            throws AuthorizationDeniedException, InternalKeyBindingNameInUseException, ConfigDumpException {
+        final InternalKeyBinding internalKeyBinding = ConfigDumpTools.toInternalKeyBinding(item);
+        final Integer existingId = internalKeyBindingSession.getIdFromName(item.getName());
+        if (existingId == null || existingId.intValue() != item.getId()) {
+            try {
+                internalKeyBindingSession.createInternalKeyBinding(authenticationToken, internalKeyBinding.getImplementationAlias(), item.getId(),
+                        item.getName(), internalKeyBinding.getStatus(), internalKeyBinding.getCertificateId(), internalKeyBinding.getCryptoTokenId(),
+                        internalKeyBinding.getKeyPairAlias(), true, internalKeyBinding.getSignatureAlgorithm(), null,
+                        internalKeyBinding.getTrustedCertificateReferences());
+            } catch (CryptoTokenOfflineException | InvalidAlgorithmException e) {
+                throw new ConfigDumpException("Could not store " + item + ": " + e.getMessage(), e);
+            }
+            // The status may have been changed to disabled, since the certificate does not exist
+            internalKeyBinding.setStatus(internalKeyBindingSession.getInternalKeyBinding(authenticationToken, item.getId()).getStatus());
+        }
+        internalKeyBindingSession.persistInternalKeyBinding(authenticationToken, internalKeyBinding);
+    }
+
+    /** Stores a role, and adds the members that it does not have already. Existing members are kept. */
+    private void storeRole(final ConfigDumpItem item) throws AuthorizationDeniedException, RoleExistsException {
+        final Role role = roleSession.persistRole(authenticationToken, ConfigDumpTools.toRole(item));
+        final List<RoleMember> existingRoleMembers = roleMemberSession.getRoleMembersByRoleId(authenticationToken, role.getRoleId());
+        for (final RoleMember roleMember : ConfigDumpTools.toRoleMembers(item)) {
+            boolean exists = false;
+            for (final RoleMember existingRoleMember : existingRoleMembers) {
+                exists |= existingRoleMember.isSameAs(roleMember);
+            }
+            if (!exists) {
+                roleMember.setRoleId(role.getRoleId());
+                roleMemberSession.persist(authenticationToken, roleMember);
+            }
+        }
+    }
+}
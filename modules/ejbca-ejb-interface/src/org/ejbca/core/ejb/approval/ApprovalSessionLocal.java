@@ -62,12 +62,31 @@ public interface ApprovalSessionLocal extends ApprovalSession {
 	ApprovalData findNonExpiredApprovalDataLocal(int approvalId);
 	
 	/**
-	 * Returns a list of all approval requests whose status is WAITING_FOR_APPROVAL only (aka. not including status APPROVED).
+	 * Returns a page of the approval requests whose status is WAITING_FOR_APPROVAL only (aka. not including status APPROVED), ordered by id.
 	 * This method is called mainly when upgrading older approval requests to EJBCA 6.6.0 or later.
 	 * 
-	 * @return A list of all approval requests whose status is WAITING_FOR_APPROVAL
+	 * @param afterId the id of the last approval request of the previous page, or Integer.MIN_VALUE to get the first page
+	 * @param maxResults maximum number of approval requests to return
+	 * @return A list of approval requests whose status is WAITING_FOR_APPROVAL. Less than maxResults are returned only if this is the last page.
 	 */
-	List<ApprovalData> findWaitingForApprovalApprovalDataLocal();
+	List<ApprovalData> findWaitingForApprovalApprovalDataLocal(int afterId, int maxResults);
+
+	/**
+	 * Returns the ids of the approval requests where the approvalProfileId column has not been filled in, because they were
+	 * stored before the column was added. Used by the post-upgrade to EJBCA 7.0.1.
+	 *
+	 * @return the ids of the approval requests, never null
+	 */
+	List<Integer> findIdsWithoutApprovalProfileId();
+
+	/**
+	 * Fills in the approvalProfileId and approvalStep columns of an approval request that was stored before they were added,
+	 * so that it can be searched for without decoding it. Does nothing if the columns have already been filled in.
+	 * Used by the post-upgrade to EJBCA 7.0.1.
+	 *
+	 * @param approvalDataId the unique id of the approval request (the value in the "Id" column in the "ApprovalData" table)
+	 */
+	void updateApprovalProfileColumns(int approvalDataId);
 	
     /**
      * Method that takes an approvalId (hash) and returns the request's ID (the value in the "Id" column in the "ApprovalData" table in the database)
@@ -135,4 +154,17 @@ public interface ApprovalSessionLocal extends ApprovalSession {
      List<ApprovalDataVO> queryByStatus(boolean includeUnfinished, boolean includeProcessed, boolean includeExpired,
              final Date startDate, final Date endDate, final Date expiresBefore, int index, int numberofrows, String caAuthorizationString,
              String endEntityProfileAuthorizationString);
+
+     /**
+      * Returns a page of approvals with the given statuses, like {@link #queryByStatus(boolean, boolean, boolean, Date, Date, Date, int, int, String, String)},
+      * but continues after the last approval of the previous page instead of skipping a number of rows. The database can then use
+      * an index to find the start of the page, and a page does not skip or repeat rows when requests are added or removed.
+      * 
+      * @param after the last approval of the previous page, or null to get the first page
+      * @param numberofrows maximum number of rows
+      * @return a List of ApprovalDataVO, never null. Less than numberofrows approvals are returned only if this is the last page.
+      */
+     List<ApprovalDataVO> queryByStatusAfter(boolean includeUnfinished, boolean includeProcessed, boolean includeExpired,
+             final Date startDate, final Date endDate, final Date expiresBefore, ApprovalDataVO after, int numberofrows, String caAuthorizationString,
+             String endEntityProfileAuthorizationString);
 }
@@ -58,6 +58,12 @@ public interface PublisherSession {
      */
     Map<?, ?> getPublisherData(int id) throws PublisherDoesntExistsException;
 
+    /**
+     * @return the data hashmaps of all publishers, by publisher id. Used where it's not possible to pass BasePublisher objects,
+     * such as in the CLI tools.
+     */
+    Map<Integer, Map<?, ?>> getAllPublisherData();
+
     /** @return mapping of publisher id (Integer) to publisher name (String). */
     HashMap<Integer,String> getPublisherIdToNameMap();
 
@@ -84,9 +90,18 @@ public interface PublisherSession {
      * 
      * @throws PublisherExistsException if publisher already exists.
      * @throws AuthorizationDeniedException required access rights are ca_functionality/edit_publisher
+     * @throws IllegalArgumentException if the data does not contain the type of an available publisher
      */
     void addPublisherFromData(AuthenticationToken admin, int id, String name, Map<?, ?> data) throws PublisherExistsException, AuthorizationDeniedException;
 
+    /**
+     * Updates publisher data. Used where it's not possible to pass a BasePublisher object, such as in the CLI tools.
+     * 
+     * @throws AuthorizationDeniedException required access rights are ca_functionality/edit_publisher
+     * @throws IllegalArgumentException if the data does not contain the type of an available publisher
+     */
+    void changePublisherFromData(AuthenticationToken admin, String name, Map<?, ?> data) throws AuthorizationDeniedException;
+
     /**
      * Adds a publisher to the database.
      * 
@@ -22,6 +22,8 @@ import org.cesecore.authentication.tokens.AuthenticationToken;
 import org.cesecore.certificates.endentity.EndEntityInformation;
 import org.ejbca.core.model.ra.NotFoundException;
 import org.ejbca.util.crypto.SupportedPasswordHashAlgorithm;
+import org.ejbca.util.query.IllegalQueryException;
+import org.ejbca.util.query.Query;
 
 /**
  * @version $Id: EndEntityAccessSessionLocal.java 29288 2018-06-19 15:18:11Z andresjakobs $
@@ -37,6 +39,22 @@ public interface EndEntityAccessSessionLocal extends EndEntityAccessSession {
      */
     EndEntityInformation findUser(String username);
     
+    /**
+     * Like {@link #query(AuthenticationToken, Query, String, String, int, String)} with the authorization strings of the administrator,
+     * but ordered by username and only returning end entities after the given username, so that all matching end entities can be
+     * fetched in pages. Pass the username of the last end entity of the previous page to get the next page.
+     *
+     * @param admin the administrator performing the query
+     * @param query a legal Query object
+     * @param afterUsername username of the last end entity of the previous page, or null to start from the beginning
+     * @param numberofrows the number of rows to fetch, use 0 for the maximum query count define in the global configuration.
+     * @param endentityAccessRule the end entity access rule that is necessary to execute the query
+     * @return a list of EndEntityInformation ordered by username, or an empty list if there are no more
+     * @throws IllegalQueryException when query parameters internal rules isn't fulfilled.
+     */
+    List<EndEntityInformation> queryNextPage(AuthenticationToken admin, Query query, String afterUsername, int numberofrows, String endentityAccessRule)
+            throws IllegalQueryException;
+
     /**
      * Using some heuristics and tarot cards, returns which algorithm and method that's been used to hash this user's password.
      * 
@@ -56,6 +56,19 @@ public interface EndEntityProfileSession {
     void addEndEntityProfile(AuthenticationToken admin, int profileid, String profilename, EndEntityProfile profile)
             throws EndEntityProfileExistsException, AuthorizationDeniedException;
 
+    /**
+     * Adds or updates a batch of end entity profiles in a single transaction. A profile whose name already exists with the same id
+     * is updated, and all other profiles are added with the given id. The profile cache is reloaded once for the whole batch.
+     *
+     * @param admin administrator performing task
+     * @param idToNameMap names of the profiles, by profile id
+     * @param profiles profiles to add or update, by profile id
+     * @throws AuthorizationDeniedException if admin is not authorized to edit one of the profiles. Nothing in the batch is stored.
+     * @throws EndEntityProfileExistsException if a profile could not be added because the id or name is taken. Nothing in the batch is stored.
+     */
+    void importEndEntityProfiles(AuthenticationToken admin, Map<Integer, String> idToNameMap, Map<Integer, EndEntityProfile> profiles)
+            throws AuthorizationDeniedException, EndEntityProfileExistsException;
+
     /**
      * Adds a end entity profile to a group with the same content as the
      * original profile.
@@ -113,6 +126,9 @@ public interface EndEntityProfileSession {
     /** @return mapping of profile id (Integer) to profile name (String). */
     Map<Integer, String> getEndEntityProfileIdToNameMap();
 
+    /** @return all existing end entity profiles, by profile id. */
+    Map<Integer, EndEntityProfile> getAllEndEntityProfiles();
+
     /** Clear and reload end entity profile caches. */
     void flushProfileCache();
 
@@ -0,0 +1,118 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.ejb.upgrade;
+
+import java.io.Serializable;
+
+/**
+ * Immutable progress of one post-upgrade migration step, with the throughput and the estimated time remaining.
+ *
+ * @version $Id$
+ */
+public final class MigrationProgress implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String step;
+    private final int totalItems;
+    private final int resumedItems;
+    private final int completedItems;
+    private final long startTime;
+    private final long updateTime;
+
+    /**
+     * @param step name of the migration step, e.g. "6.10.1"
+     * @param totalItems number of items that the step migrates
+     * @param resumedItems number of items that were migrated by an earlier, interrupted run of the step
+     * @param completedItems number of items that have been migrated by this run of the step
+     * @param startTime time in milliseconds when this run of the step started
+     * @param updateTime time in milliseconds when the progress was measured
+     */
+    public MigrationProgress(final String step, final int totalItems, final int resumedItems, final int completedItems, final long startTime,
+            final long updateTime) {
+        this.step = step;
+        this.totalItems = totalItems;
+        this.resumedItems = resumedItems;
+        this.completedItems = completedItems;
+        this.startTime = startTime;
+        this.updateTime = updateTime;
+    }
+
+    public String getStep() {
+        return step;
+    }
+
+    public int getTotalItems() {
+        return totalItems;
+    }
+
+    public int getResumedItems() {
+        return resumedItems;
+    }
+
+    public int getCompletedItems() {
+        return completedItems;
+    }
+
+    /** @return the number of items that have been migrated, including items migrated by an earlier run */
+    public int getDoneItems() {
+        return resumedItems + completedItems;
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getUpdateTime() {
+        return updateTime;
+    }
+
+    /** @return the number of items migrated per second by this run of the step */
+    public double getThroughput() {
+        final long elapsed = updateTime - startTime;
+        return elapsed <= 0 ? 0 : completedItems * 1000.0 / elapsed;
+    }
+
+    /** @return the estimated time in milliseconds until the step has completed, or -1 if it can not be estimated yet */
+    public long getEstimatedRemainingMillis() {
+        final int remaining = totalItems - getDoneItems();
+        if (remaining <= 0) {
+            return 0;
+        }
+        if (completedItems == 0) {
+            return -1;
+        }
+        return (long) (remaining * 1000.0 / getThroughput());
+    }
+
+    /** @return the percentage of the items that have been migrated */
+    public int getPercentDone() {
+        return totalItems == 0 ? 100 : (int) (100L * getDoneItems() / totalItems);
+    }
+
+    @Override
+    public String toString() {
+        final StringBuilder sb = new StringBuilder();
+        sb.append("Post-upgrade to ").append(step).append(": ").append(getDoneItems()).append(" of ").append(totalItems)
+                .append(" items migrated (").append(getPercentDone()).append("%)");
+        if (resumedItems > 0) {
+            sb.append(", ").append(resumedItems).append(" by an earlier run");
+        }
+        sb.append(", ").append(Math.round(getThroughput() * 10) / 10.0).append(" items/s");
+        final long remainingMillis = getEstimatedRemainingMillis();
+        if (remainingMillis >= 0) {
+            sb.append(", about ").append((remainingMillis + 999) / 1000).append(" s remaining");
+        }
+        return sb.append('.').toString();
+    }
+}
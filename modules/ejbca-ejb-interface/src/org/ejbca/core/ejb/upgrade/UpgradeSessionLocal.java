@@ -12,6 +12,7 @@
  *************************************************************************/
 package org.ejbca.core.ejb.upgrade;
 
+import java.util.List;
 import java.util.concurrent.Future;
 
 import javax.ejb.Local;
@@ -71,6 +72,12 @@ public interface UpgradeSessionLocal  extends UpgradeSession{
     void migrateDatabase6140() throws UpgradeFailedException;
     /** For internal user from UpgradeSessionBean only! */
     void migrateDatabase6150() throws UpgradeFailedException;
+    /** For internal user from UpgradeSessionBean only! Removes legacy CT data from the given certificate profiles in a new transaction. */
+    void postMigrateDatabase6101CertificateProfiles(List<Integer> certificateProfileIds);
+    /** For internal user from UpgradeSessionBean only! Fills in the approval profile and step columns of the given approval requests in a new transaction. */
+    void postMigrateDatabase701ApprovalData(List<Integer> approvalDataIds);
+    /** For internal user from UpgradeSessionBean only! Records in a new transaction that a chunk of a post-upgrade step has completed. */
+    void addMigrationCheckpoint(String step, String chunkId);
 
     
     /** Persist the time when the post-upgrade starts or 0L when it is no longer running. */
@@ -42,4 +42,10 @@ public interface UpgradeStatusSingletonLocal {
     /** Stop listen to Log4J log events */
     void logAppenderDetach(org.apache.log4j.Logger log);
 
+    /** @return the progress of the currently running post-upgrade step on this node, or null if no step has reported progress */
+    MigrationProgress getMigrationProgress();
+
+    /** Publishes the progress of the currently running post-upgrade step */
+    void setMigrationProgress(MigrationProgress migrationProgress);
+
 }
@@ -0,0 +1,78 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.era;
+
+import java.io.Serializable;
+import java.security.cert.Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
+
+import org.cesecore.certificates.certificate.CertificateWrapper;
+import org.cesecore.util.CertTools;
+
+/**
+ * One page of certificates from a paged search, ordered by expire date and fingerprint.
+ *
+ * @version $Id$
+ */
+public class RaCertificatePage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<CertificateWrapper> certificates;
+    private final String continuationToken;
+
+    /**
+     * @param certificates the certificates of the page
+     * @param continuationToken token for fetching the next page, or null if this is the last page
+     */
+    public RaCertificatePage(final List<CertificateWrapper> certificates, final String continuationToken) {
+        this.certificates = certificates;
+        this.continuationToken = continuationToken;
+    }
+
+    /** @return the certificates of the page, never null */
+    public List<CertificateWrapper> getCertificates() {
+        return certificates;
+    }
+
+    /** @return an opaque token for fetching the next page, or null if this is the last page */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    /**
+     * Merges pages fetched with the same continuation token from several backends.
+     *
+     * @param pages the pages returned by the backends
+     * @param pageSize the maximum number of certificates in the merged page
+     * @return a page with the first certificates in the combined order, without duplicates
+     * @see RaContinuationToken#mergePages(java.util.NavigableMap, Collection, int)
+     */
+    public static RaCertificatePage merge(final Collection<RaCertificatePage> pages, final int pageSize) {
+        final TreeMap<RaContinuationToken, CertificateWrapper> items = new TreeMap<>();
+        final List<String> continuationTokens = new ArrayList<>();
+        for (final RaCertificatePage page : pages) {
+            for (final CertificateWrapper certificateWrapper : page.getCertificates()) {
+                final Certificate certificate = certificateWrapper.getCertificate();
+                items.put(RaContinuationToken.forCertificate(CertTools.getNotAfter(certificate).getTime(), CertTools.getFingerprintAsString(certificate)),
+                        certificateWrapper);
+            }
+            continuationTokens.add(page.getContinuationToken());
+        }
+        final String continuationToken = RaContinuationToken.mergePages(items, continuationTokens, pageSize);
+        return new RaCertificatePage(new ArrayList<>(items.values()), continuationToken);
+    }
+}
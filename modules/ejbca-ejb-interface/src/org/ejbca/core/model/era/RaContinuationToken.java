@@ -0,0 +1,217 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.era;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.NavigableMap;
+
+/**
+ * Position in a paged search, after the last returned item. The position is a keyset of the columns that the result is ordered by,
+ * (expire date, fingerprint) for certificates or username for end entities, so that the next page is found with an indexed query
+ * instead of skipping rows with an offset, and no rows are missed or repeated when rows are added or removed between pages.
+ * <p>
+ * Certificate tokens of several backends are merged into one, see {@link #mergePages(NavigableMap, Collection, int)}. End entity
+ * tokens are not, since the database orders usernames by its collation, which may differ between databases and from the Java order
+ * (for example case insensitive on MySQL). A search over several backends instead keeps the position in each backend, see
+ * {@link #encodeBackendPositions(String[])}.
+ * <p>
+ * Clients get the token as an opaque string, and must not depend on its format.
+ *
+ * @version $Id$
+ */
+public final class RaContinuationToken implements Comparable<RaContinuationToken> {
+
+    private static final String CERTIFICATE_PREFIX = "c:";
+    private static final String USERNAME_PREFIX = "u:";
+    private static final String BACKENDS_PREFIX = "b:";
+    private static final String BACKENDS_SEPARATOR = ",";
+
+    /** Position of a backend that has no more items, in {@link #encodeBackendPositions(String[])} */
+    public static final String BACKEND_DONE = ".";
+
+    private final long expireDate;
+    private final String fingerprint;
+    private final String username;
+
+    private RaContinuationToken(final long expireDate, final String fingerprint, final String username) {
+        this.expireDate = expireDate;
+        this.fingerprint = fingerprint;
+        this.username = username;
+    }
+
+    /** @return a token for the position after a certificate in a search ordered by expire date and fingerprint */
+    public static RaContinuationToken forCertificate(final long expireDate, final String fingerprint) {
+        return new RaContinuationToken(expireDate, fingerprint, null);
+    }
+
+    /** @return a token for the position after an end entity in a search ordered by username */
+    public static RaContinuationToken forUsername(final String username) {
+        return new RaContinuationToken(0, null, username);
+    }
+
+    /**
+     * @param token a token from {@link #encode()}
+     * @return the decoded token
+     * @throws IllegalArgumentException if the token is malformed
+     */
+    public static RaContinuationToken decode(final String token) {
+        final String value;
+        try {
+            value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed continuation token: " + token, e);
+        }
+        if (value.startsWith(USERNAME_PREFIX)) {
+            return forUsername(value.substring(USERNAME_PREFIX.length()));
+        }
+        final int separator = value.indexOf(':', CERTIFICATE_PREFIX.length());
+        if (value.startsWith(CERTIFICATE_PREFIX) && separator != -1) {
+            try {
+                return forCertificate(Long.parseLong(value.substring(CERTIFICATE_PREFIX.length(), separator)), value.substring(separator + 1));
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed continuation token: " + token, e);
+            }
+        }
+        throw new IllegalArgumentException("Malformed continuation token: " + token);
+    }
+
+    /** @return the token as an URL safe string */
+    public String encode() {
+        final String value = username != null ? USERNAME_PREFIX + username : CERTIFICATE_PREFIX + expireDate + ":" + fingerprint;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Encodes the positions of a search in several backends, which are searched one after the other in the same order every time.
+     *
+     * @param positions the continuation token of each backend, null for a backend that has not been searched yet, or
+     *      {@link #BACKEND_DONE} for a backend that has no more items
+     * @return the positions as an URL safe string
+     */
+    public static String encodeBackendPositions(final String[] positions) {
+        final StringBuilder value = new StringBuilder(BACKENDS_PREFIX);
+        for (int i = 0; i < positions.length; i++) {
+            if (i > 0) {
+                value.append(BACKENDS_SEPARATOR);
+            }
+            // Continuation tokens are base64url, so they contain neither the separator nor the done marker
+            value.append(positions[i] == null ? "" : positions[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @param token a token from {@link #encodeBackendPositions(String[])}
+     * @param backends the number of backends
+     * @return the position in each backend, as given to {@link #encodeBackendPositions(String[])}
+     * @throws IllegalArgumentException if the token is malformed, or is for another number of backends
+     */
+    public static String[] decodeBackendPositions(final String token, final int backends) {
+        final String value;
+        try {
+            value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed continuation token: " + token, e);
+        }
+        if (!value.startsWith(BACKENDS_PREFIX)) {
+            throw new IllegalArgumentException("Malformed continuation token: " + token);
+        }
+        final String[] positions = value.substring(BACKENDS_PREFIX.length()).split(BACKENDS_SEPARATOR, -1);
+        if (positions.length != backends) {
+            throw new IllegalArgumentException("Continuation token is for " + positions.length + " backends instead of " + backends + ": " + token);
+        }
+        for (int i = 0; i < positions.length; i++) {
+            if (positions[i].isEmpty()) {
+                positions[i] = null;
+            }
+        }
+        return positions;
+    }
+
+    /** @return the expire date of the last certificate of the previous page */
+    public long getExpireDate() {
+        return expireDate;
+    }
+
+    /** @return the fingerprint of the last certificate of the previous page, or null for an end entity token */
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /** @return the username of the last end entity of the previous page, or null for a certificate token */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Merges pages that have been fetched with the same continuation token from several backends. Each backend returns its items
+     * in order, up to the page size, and a continuation token after its last item if it may have more. Items after the lowest of
+     * these tokens are removed, since items of the other backends that come before them have not been fetched yet, and so are
+     * items beyond the page size. Only for certificate tokens, which are ordered in the same way in Java and in all databases.
+     *
+     * @param items all returned items, keyed by their position. Modified to contain the items of the merged page.
+     * @param continuationTokens the continuation tokens returned by the backends, null for backends without more items
+     * @param pageSize the maximum number of items in the merged page
+     * @return the continuation token of the merged page, or null if there are no more items
+     */
+    public static <T> String mergePages(final NavigableMap<RaContinuationToken, T> items, final Collection<String> continuationTokens,
+            final int pageSize) {
+        RaContinuationToken lowest = null;
+        for (final String continuationToken : continuationTokens) {
+            if (continuationToken != null) {
+                final RaContinuationToken token = decode(continuationToken);
+                if (lowest == null || token.compareTo(lowest) < 0) {
+                    lowest = token;
+                }
+            }
+        }
+        if (lowest != null) {
+            items.tailMap(lowest, false).clear();
+        }
+        if (items.size() > pageSize) {
+            RaContinuationToken last = items.firstKey();
+            for (int i = 1; i < pageSize; i++) {
+                last = items.higherKey(last);
+            }
+            items.tailMap(last, false).clear();
+            return last.encode();
+        }
+        return lowest == null ? null : lowest.encode();
+    }
+
+    @Override
+    public int compareTo(final RaContinuationToken other) {
+        if (username != null || other.username != null) {
+            return String.valueOf(username).compareTo(String.valueOf(other.username));
+        }
+        final int ret = Long.compare(expireDate, other.expireDate);
+        return ret != 0 ? ret : fingerprint.compareTo(other.fingerprint);
+    }
+
+    @Override
+    public boolean equals(final Object other) {
+        return other instanceof RaContinuationToken && compareTo((RaContinuationToken) other) == 0;
+    }
+
+    @Override
+    public int hashCode() {
+        return username != null ? username.hashCode() : Long.hashCode(expireDate) * 31 + fingerprint.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return username != null ? "username=" + username : "expireDate=" + expireDate + ", fingerprint=" + fingerprint;
+    }
+}
@@ -0,0 +1,50 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.era;
+
+import java.io.Serializable;
+import java.util.List;
+
+import org.ejbca.core.protocol.ws.objects.UserDataVOWS;
+
+/**
+ * One page of end entities from a paged search, ordered by username in each backend.
+ *
+ * @version $Id$
+ */
+public class RaEndEntityPage implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<UserDataVOWS> endEntities;
+    private final String continuationToken;
+
+    /**
+     * @param endEntities the end entities of the page
+     * @param continuationToken token for fetching the next page, or null if this is the last page
+     */
+    public RaEndEntityPage(final List<UserDataVOWS> endEntities, final String continuationToken) {
+        this.endEntities = endEntities;
+        this.continuationToken = continuationToken;
+    }
+
+    /** @return the end entities of the page, never null */
+    public List<UserDataVOWS> getEndEntities() {
+        return endEntities;
+    }
+
+    /** @return an opaque token for fetching the next page, or null if this is the last page */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+}
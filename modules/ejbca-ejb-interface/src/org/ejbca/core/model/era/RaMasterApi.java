@@ -920,6 +920,28 @@ public interface RaMasterApi {
     List<UserDataVOWS> findUserWS(AuthenticationToken authenticationToken, UserMatch usermatch, int maxNumberOfRows)
             throws AuthorizationDeniedException, IllegalQueryException, EjbcaException, EndEntityProfileNotFoundException;
 
+    /**
+     * Retrieves information about users, one page at a time in username order. Pass the continuation token of the returned
+     * page to get the next page, until a page without a continuation token is returned. Usernames are ordered by the collation
+     * of the database. With several backends, the backends are searched one after the other, and an end entity that exists in
+     * more than one backend is returned once for each of them.
+     *
+     * Authorization requirements: same as for {@link #findUserWS(AuthenticationToken, UserMatch, int)}
+     *
+     * @param authenticationToken the administrator performing the action
+     * @param usermatch the unique user pattern to search for
+     * @param pageSize the maximum number of users in the page
+     * @param continuationToken the continuation token of the previous page, or null to get the first page
+     * @return a page of users, ordered by username
+     * @throws AuthorizationDeniedException if client is not authorized to request.
+     * @throws IllegalQueryException if query isn't valid
+     * @throws EjbcaException if the continuation token is malformed, or is not from an end entity search
+     * @throws EndEntityProfileNotFoundException
+     * @since RA Master API version 7 (EJBCA 7.1.0)
+     */
+    RaEndEntityPage findUserWSPage(AuthenticationToken authenticationToken, UserMatch usermatch, int pageSize, String continuationToken)
+            throws AuthorizationDeniedException, IllegalQueryException, EjbcaException, EndEntityProfileNotFoundException;
+
     /**
      * Returns the length of a publisher queue (aggregated over all separate instances, if found).
      *
@@ -1015,6 +1037,24 @@ public interface RaMasterApi {
     Collection<CertificateWrapper> getCertificatesByExpirationTime(AuthenticationToken authenticationToken, long days, int maxNumberOfResults,
             int offset) throws AuthorizationDeniedException;
 
+    /**
+     * Fetches one page of certificates which expire within the next <code>days</code> days, ordered by expire date and fingerprint.
+     * Pass the continuation token of the returned page to get the next page, until a page without a continuation token is returned.
+     * <p>
+     * Authorization requirements: same as for {@link #getCertificatesByExpirationTime(AuthenticationToken, long, int, int)}
+     *
+     * @param authenticationToken an authentication token used for access control
+     * @param days the maximum number of days before the certificates expire
+     * @param pageSize the maximum number of certificates in the page
+     * @param continuationToken the continuation token of the previous page, or null to get the first page
+     * @return a page of certificates
+     * @throws AuthorizationDeniedException if the calling user is not authorized to fetch the certificates
+     * @throws EjbcaException if the continuation token is malformed
+     * @since RA Master API version 7 (EJBCA 7.1.0)
+     */
+    RaCertificatePage getCertificatesByExpirationTimePage(AuthenticationToken authenticationToken, long days, int pageSize, String continuationToken)
+            throws AuthorizationDeniedException, EjbcaException;
+
 
     /**
      * Fetches a list of certificates that will expire within the given number of days and of the given type.
@@ -0,0 +1,77 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.ejb;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+
+import org.easymock.EasyMockRunner;
+import org.easymock.Mock;
+import org.easymock.TestSubject;
+import org.ejbca.acme.AcmeNonceData;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests storing of used ACME replay nonces in the database, for strict replay protection, with a mocked database.
+ *
+ * @version $Id$
+ */
+@RunWith(EasyMockRunner.class)
+public class AcmeNonceDataSessionBeanUnitTest {
+
+    private static final String NONCE = "nonce";
+
+    @TestSubject
+    private final AcmeNonceDataSessionBean acmeNonceDataSession = new AcmeNonceDataSessionBean();
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Test
+    public void testUseNonce() {
+        entityManager.persist(anyObject(AcmeNonceData.class));
+        expectLastCall().once();
+        entityManager.flush();
+        expectLastCall().once();
+        replay(entityManager);
+        assertTrue(acmeNonceDataSession.useNonce(NONCE, System.currentTimeMillis(), System.currentTimeMillis() + 60000));
+        verify(entityManager);
+    }
+
+    /** A nonce that is already in the database must be rejected when it is inserted, and not fail the commit */
+    @Test
+    public void testUseNonceTwice() {
+        entityManager.persist(anyObject(AcmeNonceData.class));
+        expectLastCall().once();
+        entityManager.flush();
+        expectLastCall().andThrow(new PersistenceException("Duplicate entry 'nonce' for key 'PRIMARY'"));
+        replay(entityManager);
+        assertFalse(acmeNonceDataSession.useNonce(NONCE, System.currentTimeMillis(), System.currentTimeMillis() + 60000));
+        verify(entityManager);
+    }
+
+    @Test
+    public void testExpiredNonce() {
+        replay(entityManager);
+        assertFalse(acmeNonceDataSession.useNonce(NONCE, System.currentTimeMillis() - 120000, System.currentTimeMillis() - 60000));
+        verify(entityManager);
+    }
+}
@@ -0,0 +1,98 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.ejb;
+
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+import static org.easymock.EasyMock.replay;
+import static org.easymock.EasyMock.verify;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.bouncycastle.asn1.pkcs.PKCSObjectIdentifiers;
+import org.cesecore.configuration.GlobalConfigurationSessionLocal;
+import org.easymock.EasyMockRunner;
+import org.easymock.Mock;
+import org.easymock.TestSubject;
+import org.ejbca.config.GlobalAcmeConfiguration;
+import org.ejbca.core.protocol.acme.AcmeNonceDataSessionLocal;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Tests validation of ACME replay nonces, with and without strict replay protection in the database.
+ *
+ * @version $Id$
+ */
+@RunWith(EasyMockRunner.class)
+public class AcmeNonceSingletonBeanUnitTest {
+
+    @TestSubject
+    private final AcmeNonceSingletonBean acmeNonceSingleton = new AcmeNonceSingletonBean();
+
+    @Mock
+    private GlobalConfigurationSessionLocal globalConfigurationSession;
+
+    @Mock
+    private AcmeNonceDataSessionLocal acmeNonceDataSession;
+
+    private final GlobalAcmeConfiguration globalAcmeConfiguration = new GlobalAcmeConfiguration();
+
+    @Before
+    public void setUp() {
+        acmeNonceSingleton.initialize();
+        globalAcmeConfiguration.addReplayNonceSharedSecret(PKCSObjectIdentifiers.id_hmacWithSHA256.getId(), "0123456789abcdef0123456789abcdef".getBytes());
+        expect(globalConfigurationSession.getCachedConfiguration(GlobalAcmeConfiguration.ACME_CONFIGURATION_ID)).andStubReturn(globalAcmeConfiguration);
+        replay(globalConfigurationSession);
+    }
+
+    @Test
+    public void testNotStrict() {
+        replay(acmeNonceDataSession);
+        final String nonce = acmeNonceSingleton.getReplayNonce();
+        assertTrue(acmeNonceSingleton.isNonceValid(nonce));
+        assertFalse("Nonce should only be valid once", acmeNonceSingleton.isNonceValid(nonce));
+        // The database is not used
+        verify(acmeNonceDataSession);
+    }
+
+    @Test
+    public void testStrict() {
+        globalAcmeConfiguration.setReplayNonceStrict(true);
+        final String nonce = acmeNonceSingleton.getReplayNonce();
+        acmeNonceDataSession.cleanUpExpired();
+        expectLastCall().once();
+        expect(acmeNonceDataSession.useNonce(eq(nonce), anyLong(), anyLong())).andReturn(true).once();
+        replay(acmeNonceDataSession);
+        assertTrue(acmeNonceSingleton.isNonceValid(nonce));
+        assertFalse("Nonce used on this node should be rejected without a database lookup", acmeNonceSingleton.isNonceValid(nonce));
+        assertFalse("Nonce that is not authentic should be rejected without a database lookup", acmeNonceSingleton.isNonceValid("AAAA"));
+        verify(acmeNonceDataSession);
+    }
+
+    /** A nonce that has been used on another node is already stored in the database, and must be rejected */
+    @Test
+    public void testStrictUsedOnOtherNode() {
+        globalAcmeConfiguration.setReplayNonceStrict(true);
+        final String nonce = acmeNonceSingleton.getReplayNonce();
+        acmeNonceDataSession.cleanUpExpired();
+        expectLastCall().once();
+        expect(acmeNonceDataSession.useNonce(eq(nonce), anyLong(), anyLong())).andReturn(false).once();
+        replay(acmeNonceDataSession);
+        assertFalse(acmeNonceSingleton.isNonceValid(nonce));
+        verify(acmeNonceDataSession);
+    }
+}
@@ -0,0 +1,214 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.ejb.upgrade;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Tests chunking, checkpointing and resumption of post-upgrade migrations.
+ *
+ * @version $Id$
+ */
+public class ChunkedMigrationTest {
+
+    /** Checkpoint kept in memory, like the one kept in GlobalUpgradeConfiguration */
+    private static class MemoryCheckpoint implements ChunkedMigration.Checkpoint {
+        private final Map<String, Set<String>> completed = new HashMap<>();
+        private final AtomicInteger concurrentCalls = new AtomicInteger();
+        private volatile boolean concurrentCallDetected = false;
+
+        @Override
+        public Set<String> getCompletedChunks(final String step) {
+            return completed.containsKey(step) ? new HashSet<>(completed.get(step)) : new HashSet<String>();
+        }
+
+        @Override
+        public void chunkCompleted(final String step, final String chunkId) {
+            if (concurrentCalls.incrementAndGet() > 1) {
+                concurrentCallDetected = true;
+            }
+            if (!completed.containsKey(step)) {
+                completed.put(step, new HashSet<String>());
+            }
+            completed.get(step).add(chunkId);
+            concurrentCalls.decrementAndGet();
+        }
+    }
+
+    /** Counts how many times each item was migrated, and can fail for one item */
+    private static class CountingTask implements ChunkedMigration.ChunkTask<Integer> {
+        private final Map<Integer, AtomicInteger> migrated = new ConcurrentHashMap<>();
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+        private volatile int failingItem = -1;
+
+        @Override
+        public void migrate(final List<Integer> chunk) throws Exception {
+            final int nowRunning = running.incrementAndGet();
+            try {
+                int max = maxRunning.get();
+                while (nowRunning > max && !maxRunning.compareAndSet(max, nowRunning)) {
+                    max = maxRunning.get();
+                }
+                Thread.sleep(2);
+                if (chunk.contains(failingItem)) {
+                    throw new IllegalStateException("Simulated database failure");
+                }
+                for (final Integer item : chunk) {
+                    migrated.putIfAbsent(item, new AtomicInteger());
+                    migrated.get(item).incrementAndGet();
+                }
+            } finally {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    private static List<Integer> items(final int count) {
+        final List<Integer> items = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            items.add(1000 + 7 * i);
+        }
+        Collections.shuffle(items);
+        return items;
+    }
+
+    @Test(timeout = 30000)
+    public void testAllItemsAreMigratedOnce() {
+        final MemoryCheckpoint checkpoint = new MemoryCheckpoint();
+        final CountingTask task = new CountingTask();
+        final List<MigrationProgress> progress = Collections.synchronizedList(new ArrayList<MigrationProgress>());
+        final ChunkedMigration migration = new ChunkedMigration(4, 10, checkpoint, new ChunkedMigration.ProgressListener() {
+            @Override
+            public void progress(final MigrationProgress migrationProgress) {
+                progress.add(migrationProgress);
+            }
+        });
+        final List<Integer> items = items(995);
+        assertTrue(migration.run("6.10.1", items, task));
+        assertEquals(995, task.migrated.size());
+        for (final AtomicInteger count : task.migrated.values()) {
+            assertEquals("Each item should be migrated once", 1, count.get());
+        }
+        assertEquals("Each chunk should be checkpointed", 100, checkpoint.getCompletedChunks("6.10.1").size());
+        assertFalse("Checkpoint must not be called concurrently", checkpoint.concurrentCallDetected);
+        assertTrue("Chunks should run concurrently", task.maxRunning.get() > 1);
+        assertTrue("At most 4 chunks should run concurrently", task.maxRunning.get() <= 4);
+        final MigrationProgress last = progress.get(progress.size() - 1);
+        assertEquals(995, last.getDoneItems());
+        assertEquals(100, last.getPercentDone());
+        assertEquals(0, last.getEstimatedRemainingMillis());
+    }
+
+    @Test(timeout = 30000)
+    public void testResumeAfterFailure() {
+        final MemoryCheckpoint checkpoint = new MemoryCheckpoint();
+        final CountingTask task = new CountingTask();
+        final List<Integer> items = items(500);
+        task.failingItem = 1000 + 7 * 250;
+        assertFalse("Migration with a failing chunk should not succeed", new ChunkedMigration(1, 20, checkpoint, null).run("6.10.1", items, task));
+        final int migratedBeforeFailure = task.migrated.size();
+        assertTrue("Chunks before the failing chunk should have been migrated", migratedBeforeFailure >= 240);
+        assertTrue("No chunks should be started after a failure", migratedBeforeFailure < 500);
+        assertEquals(migratedBeforeFailure / 20, checkpoint.getCompletedChunks("6.10.1").size());
+        // Run again after the problem has been fixed
+        task.failingItem = -1;
+        final List<MigrationProgress> progress = new ArrayList<>();
+        assertTrue(new ChunkedMigration(3, 20, checkpoint, new ChunkedMigration.ProgressListener() {
+            @Override
+            public void progress(final MigrationProgress migrationProgress) {
+                synchronized (progress) {
+                    progress.add(migrationProgress);
+                }
+            }
+        }).run("6.10.1", items, task));
+        assertEquals(500, task.migrated.size());
+        for (final AtomicInteger count : task.migrated.values()) {
+            assertEquals("Completed chunks should not be migrated again", 1, count.get());
+        }
+        assertEquals("Resumed items should be reported", migratedBeforeFailure, progress.get(0).getResumedItems());
+        assertEquals(500, progress.get(progress.size() - 1).getDoneItems());
+    }
+
+    @Test(timeout = 30000)
+    public void testStepsAreCheckpointedSeparately() {
+        final MemoryCheckpoint checkpoint = new MemoryCheckpoint();
+        final CountingTask task = new CountingTask();
+        assertTrue(new ChunkedMigration(2, 5, checkpoint, null).run("6.8.0", items(50), task));
+        final CountingTask otherTask = new CountingTask();
+        assertTrue(new ChunkedMigration(2, 5, checkpoint, null).run("6.10.1", items(50), otherTask));
+        assertEquals("Checkpoint of another step must not cause items to be skipped", 50, otherTask.migrated.size());
+        // Running a completed step again does nothing
+        final CountingTask againTask = new CountingTask();
+        assertTrue(new ChunkedMigration(2, 5, checkpoint, null).run("6.10.1", items(50), againTask));
+        assertEquals(0, againTask.migrated.size());
+    }
+
+    /** An item that is added between the first and last item of a completed chunk must be migrated when the step is resumed */
+    @Test(timeout = 30000)
+    public void testItemAddedInsideCompletedChunk() {
+        final MemoryCheckpoint checkpoint = new MemoryCheckpoint();
+        final List<Integer> items = items(50);
+        assertTrue(new ChunkedMigration(2, 10, checkpoint, null).run("6.10.1", items, new CountingTask()));
+        // Items are 1000, 1007, ..., 1343, so this item falls inside the last chunk, which starts with 1280
+        items.add(1281);
+        final CountingTask task = new CountingTask();
+        assertTrue(new ChunkedMigration(2, 10, checkpoint, null).run("6.10.1", items, task));
+        assertTrue("The added item should be migrated", task.migrated.containsKey(1281));
+        assertFalse("Chunks with the same items should not be migrated again", task.migrated.containsKey(1000));
+    }
+
+    @Test
+    public void testChunkIdCoversAllItems() {
+        assertEquals(ChunkedMigration.getChunkId(Arrays.asList(1, 2, 3)), ChunkedMigration.getChunkId(Arrays.asList(1, 2, 3)));
+        assertNotEquals(ChunkedMigration.getChunkId(Arrays.asList(1, 2, 3)), ChunkedMigration.getChunkId(Arrays.asList(1, 3)));
+        assertNotEquals(ChunkedMigration.getChunkId(Arrays.asList(1, 23)), ChunkedMigration.getChunkId(Arrays.asList(12, 3)));
+        assertTrue(ChunkedMigration.getChunkId(Arrays.asList(1, 2, 3)).startsWith("1-3-"));
+    }
+
+    @Test
+    public void testEmptyStep() {
+        final CountingTask task = new CountingTask();
+        assertTrue(new ChunkedMigration(2, 5, new MemoryCheckpoint(), null).run("6.10.1", new ArrayList<Integer>(), task));
+        assertEquals(0, task.migrated.size());
+    }
+
+    @Test
+    public void testProgressEstimate() {
+        final MigrationProgress progress = new MigrationProgress("6.10.1", 1000, 200, 400, 10000L, 12000L);
+        assertEquals(600, progress.getDoneItems());
+        assertEquals(60, progress.getPercentDone());
+        assertEquals(200.0, progress.getThroughput(), 0.001);
+        assertEquals(2000L, progress.getEstimatedRemainingMillis());
+        assertEquals("Post-upgrade to 6.10.1: 600 of 1000 items migrated (60%), 200 by an earlier run, 200.0 items/s, about 2 s remaining.",
+                progress.toString());
+        assertEquals("ETA can not be estimated before any item has been migrated", -1L,
+                new MigrationProgress("6.10.1", 1000, 200, 0, 10000L, 12000L).getEstimatedRemainingMillis());
+    }
+}
@@ -0,0 +1,79 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.era;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collection;
+import java.util.Date;
+
+import org.ejbca.core.model.approval.Approval;
+import org.ejbca.core.model.approval.ApprovalDataVO;
+import org.ejbca.core.model.approval.ApprovalRequest;
+import org.junit.Test;
+
+/**
+ * Tests the checks of approval requests by status and expire date, which are done before the requests are decoded in an RA approval search.
+ *
+ * @version $Id$
+ */
+public class RaApprovalSearchUnitTest {
+
+    private final Date now = new Date();
+
+    private ApprovalDataVO approval(final int status, final boolean expired) {
+        final Date expireDate = new Date(now.getTime() + (expired ? -60000L : 60000L));
+        return new ApprovalDataVO(1, 2, 3, 4, 5, null, null, status, (Collection<Approval>) null, (ApprovalRequest) null,
+                new Date(now.getTime() - 120000L), expireDate);
+    }
+
+    private static RaRequestsSearchRequest request(final boolean waitingForMe, final boolean pending, final boolean historical, final boolean expired,
+            final boolean includeOtherAdmins) {
+        final RaRequestsSearchRequest request = new RaRequestsSearchRequest();
+        request.setSearchingWaitingForMe(waitingForMe);
+        request.setSearchingPending(pending);
+        request.setSearchingHistorical(historical);
+        request.setSearchingExpired(expired);
+        request.setIncludeOtherAdmins(includeOtherAdmins);
+        return request;
+    }
+
+    @Test
+    public void testProcessedOnlyInHistory() {
+        final ApprovalDataVO executed = approval(ApprovalDataVO.STATUS_EXECUTED, false);
+        assertTrue(RaMasterApiSessionBean.isApprovalSearchCandidate(request(false, false, true, false, false), executed, now));
+        assertFalse(RaMasterApiSessionBean.isApprovalSearchCandidate(request(true, true, false, true, false), executed, now));
+        assertFalse(RaMasterApiSessionBean.isApprovalSearchCandidate(request(true, true, false, true, true), executed, now));
+    }
+
+    @Test
+    public void testExpired() {
+        final ApprovalDataVO expired = approval(ApprovalDataVO.STATUS_WAITINGFORAPPROVAL, true);
+        assertTrue(RaMasterApiSessionBean.isApprovalSearchCandidate(request(false, false, false, true, true), expired, now));
+        assertFalse("Expired requests are not waiting for any admin", RaMasterApiSessionBean.isApprovalSearchCandidate(request(true, true, false, false, true), expired, now));
+        assertFalse(RaMasterApiSessionBean.isApprovalSearchCandidate(request(false, false, true, false, false), expired, now));
+        final ApprovalDataVO expiredStatus = approval(ApprovalDataVO.STATUS_EXPIRED, true);
+        assertFalse("Requests with expired status are never waiting for me", RaMasterApiSessionBean.isApprovalSearchCandidate(request(true, false, false, false, false), expiredStatus, now));
+        assertTrue("Requests with expired status are pending for me", RaMasterApiSessionBean.isApprovalSearchCandidate(request(false, true, false, false, false), expiredStatus, now));
+    }
+
+    @Test
+    public void testWaiting() {
+        final ApprovalDataVO waiting = approval(ApprovalDataVO.STATUS_WAITINGFORAPPROVAL, false);
+        assertTrue(RaMasterApiSessionBean.isApprovalSearchCandidate(request(true, false, false, false, false), waiting, now));
+        assertTrue(RaMasterApiSessionBean.isApprovalSearchCandidate(request(false, true, false, false, true), waiting, now));
+        assertFalse(RaMasterApiSessionBean.isApprovalSearchCandidate(request(false, false, false, true, true), waiting, now));
+        assertFalse(RaMasterApiSessionBean.isApprovalSearchCandidate(request(false, false, true, false, false), waiting, now));
+    }
+}
@@ -0,0 +1,194 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.model.era;
+
+import static org.easymock.EasyMock.anyInt;
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.anyString;
+import static org.easymock.EasyMock.createNiceMock;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
+import static org.easymock.EasyMock.replay;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.cesecore.ErrorCode;
+import org.cesecore.authentication.tokens.AuthenticationToken;
+import org.easymock.IAnswer;
+import org.ejbca.core.EjbcaException;
+import org.ejbca.core.protocol.ws.objects.UserDataVOWS;
+import org.ejbca.core.protocol.ws.objects.UserMatch;
+import org.junit.Test;
+
+/**
+ * Tests encoding of continuation tokens for paged searches, and paged searches over several backends.
+ *
+ * @version $Id$
+ */
+public class RaContinuationTokenTest {
+
+    @Test
+    public void testEncodeDecode() {
+        final RaContinuationToken certificateToken = RaContinuationToken.decode(RaContinuationToken.forCertificate(1546300800000L, "a1b2c3").encode());
+        assertEquals(1546300800000L, certificateToken.getExpireDate());
+        assertEquals("a1b2c3", certificateToken.getFingerprint());
+        assertNull(certificateToken.getUsername());
+        final String username = "user:with/odd chars åäö";
+        final String encoded = RaContinuationToken.forUsername(username).encode();
+        assertTrue("Token should be URL safe: " + encoded, encoded.matches("[A-Za-z0-9_-]+"));
+        final RaContinuationToken usernameToken = RaContinuationToken.decode(encoded);
+        assertEquals(username, usernameToken.getUsername());
+        assertNull(usernameToken.getFingerprint());
+    }
+
+    @Test
+    public void testMalformedToken() {
+        for (final String token : Arrays.asList("not base64!", "eDoxMjM", RaContinuationToken.forUsername("x").encode().replace('d', '*'),
+                "Yzpub3RhbnVtYmVyOmFiYw")) {
+            try {
+                RaContinuationToken.decode(token);
+                fail("Malformed token should not be accepted: " + token);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void testOrder() {
+        assertTrue(RaContinuationToken.forCertificate(1, "ff").compareTo(RaContinuationToken.forCertificate(2, "00")) < 0);
+        assertTrue(RaContinuationToken.forCertificate(2, "01").compareTo(RaContinuationToken.forCertificate(2, "00")) > 0);
+        assertEquals(0, RaContinuationToken.forCertificate(2, "01").compareTo(RaContinuationToken.forCertificate(2, "01")));
+        assertTrue(RaContinuationToken.forUsername("alice").compareTo(RaContinuationToken.forUsername("bob")) < 0);
+    }
+
+    @Test
+    public void testBackendPositions() {
+        final String first = RaContinuationToken.forUsername("alice").encode();
+        final String[] positions = { first, null, RaContinuationToken.BACKEND_DONE };
+        final String encoded = RaContinuationToken.encodeBackendPositions(positions);
+        assertTrue("Token should be URL safe: " + encoded, encoded.matches("[A-Za-z0-9_-]+"));
+        assertArrayEquals(positions, RaContinuationToken.decodeBackendPositions(encoded, 3));
+        for (final String token : Arrays.asList(encoded, first)) {
+            try {
+                RaContinuationToken.decodeBackendPositions(token, 2);
+                fail("Token should not be accepted for two backends: " + token);
+            } catch (IllegalArgumentException e) {
+                // Expected
+            }
+        }
+    }
+
+    /** Items after the lowest continuation token of the backends must be left for the next page */
+    @Test
+    public void testMergeCertificatePages() {
+        final TreeMap<RaContinuationToken, String> items = new TreeMap<>();
+        for (final String fingerprint : Arrays.asList("01", "02", "03", "04")) {
+            items.put(RaContinuationToken.forCertificate(1, fingerprint), fingerprint);
+        }
+        final String lowest = RaContinuationToken.forCertificate(1, "03").encode();
+        assertEquals(lowest, RaContinuationToken.mergePages(items, Arrays.asList(null, lowest, RaContinuationToken.forCertificate(1, "04").encode()), 10));
+        assertEquals(Arrays.asList("01", "02", "03"), new ArrayList<>(items.values()));
+        assertEquals(RaContinuationToken.forCertificate(1, "02").encode(), RaContinuationToken.mergePages(items, Arrays.<String>asList(null, null), 2));
+        assertEquals(Arrays.asList("01", "02"), new ArrayList<>(items.values()));
+    }
+
+    /**
+     * Reads all pages from backends with overlapping usernames, through the proxy, and checks that each username is returned, in
+     * the order of its backend. One backend orders usernames case insensitively, as on MySQL, where "B" comes after "a".
+     */
+    @Test
+    public void testEndEntityPagesOfSeveralBackends() throws Exception {
+        final List<String> binaryOrder = Arrays.asList("A", "B", "a", "b");
+        final List<String> caseInsensitiveOrder = Arrays.asList("a", "B", "c", "D", "e");
+        // The proxy searches the last backend first
+        final RaMasterApiProxyBean proxy = new RaMasterApiProxyBean(null, null, null, backend(Collections.<String>emptyList(), null),
+                backend(binaryOrder, null), backend(caseInsensitiveOrder, String.CASE_INSENSITIVE_ORDER));
+        final List<String> expected = Arrays.asList("a", "B", "c", "D", "e", "A", "b");
+        for (int pageSize = 1; pageSize <= 8; pageSize++) {
+            final List<String> result = new ArrayList<>();
+            String continuationToken = null;
+            int pages = 0;
+            do {
+                final RaEndEntityPage page = proxy.findUserWSPage(null, null, pageSize, continuationToken);
+                assertTrue(page.getEndEntities().size() <= pageSize);
+                for (final UserDataVOWS endEntity : page.getEndEntities()) {
+                    result.add(endEntity.getUsername());
+                }
+                continuationToken = page.getContinuationToken();
+                // Duplicates in different pages are returned once per backend
+                assertTrue("Too many pages", ++pages <= expected.size() + 3);
+            } while (continuationToken != null);
+            assertEquals("Wrong result with page size " + pageSize, expected, new ArrayList<>(new LinkedHashSet<>(result)));
+            assertTrue("Usernames should be returned at most once per backend with page size " + pageSize, result.size() <= expected.size() + 2);
+        }
+    }
+
+    @Test
+    public void testWrongTokenType() throws Exception {
+        final RaMasterApiProxyBean proxy = new RaMasterApiProxyBean(null, null, null, backend(Arrays.asList("a"), null));
+        try {
+            proxy.findUserWSPage(null, null, 10, RaContinuationToken.forUsername("a").encode());
+            fail("Token of a backend should not be accepted by the proxy");
+        } catch (EjbcaException e) {
+            assertEquals(ErrorCode.FIELD_VALUE_NOT_VALID, e.getErrorCode());
+        }
+    }
+
+    /** @return a backend that returns pages in the same way as RaMasterApiSessionBean, from a database with the given collation */
+    private static RaMasterApi backend(final List<String> usernames, final Comparator<String> collation) throws Exception {
+        final RaMasterApi backend = createNiceMock(RaMasterApi.class);
+        expect(backend.isBackendAvailable()).andStubReturn(true);
+        expect(backend.getApiVersion()).andStubReturn(7);
+        expect(backend.findUserWSPage(anyObject(AuthenticationToken.class), anyObject(UserMatch.class), anyInt(), anyString())).andStubAnswer(
+                new IAnswer<RaEndEntityPage>() {
+            @Override
+            public RaEndEntityPage answer() {
+                final Object[] arguments = getCurrentArguments();
+                return getPage(usernames, collation, (Integer) arguments[2], (String) arguments[3]);
+            }
+        });
+        replay(backend);
+        return backend;
+    }
+
+    private static RaEndEntityPage getPage(final List<String> usernames, final Comparator<String> collation, final int pageSize,
+            final String continuationToken) {
+        final String after = continuationToken == null ? null : RaContinuationToken.decode(continuationToken).getUsername();
+        final TreeSet<String> sorted = new TreeSet<>(collation);
+        sorted.addAll(usernames);
+        final List<UserDataVOWS> result = new ArrayList<>();
+        for (final String username : after == null ? sorted : sorted.tailSet(after, false)) {
+            if (result.size() <= pageSize) {
+                final UserDataVOWS endEntity = new UserDataVOWS();
+                endEntity.setUsername(username);
+                result.add(endEntity);
+            }
+        }
+        final boolean morePages = result.size() > pageSize;
+        final List<UserDataVOWS> endEntities = new ArrayList<>(result.subList(0, Math.min(result.size(), pageSize)));
+        return new RaEndEntityPage(endEntities, morePages ? RaContinuationToken.forUsername(endEntities.get(pageSize - 1).getUsername()).encode() : null);
+    }
+}
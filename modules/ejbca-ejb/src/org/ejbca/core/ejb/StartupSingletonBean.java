@@ -60,8 +60,12 @@ import org.cesecore.certificates.endentity.EndEntityConstants;
 import org.cesecore.certificates.endentity.EndEntityInformation;
 import org.cesecore.certificates.ocsp.OcspResponseGeneratorSessionLocal;
 import org.cesecore.config.CesecoreConfiguration;
+import org.cesecore.configuration.CacheInvalidationSessionLocal;
 import org.cesecore.configuration.GlobalConfigurationSessionLocal;
+import org.cesecore.internal.CacheInvalidationListener;
+import org.cesecore.internal.CacheInvalidationListeners;
 import org.cesecore.keys.token.CryptoTokenFactory;
+import org.cesecore.metrics.MetricsRegistry;
 import org.cesecore.util.Base64;
 import org.cesecore.util.CertTools;
 import org.cesecore.util.CryptoProviderTools;
@@ -72,6 +76,7 @@ import org.ejbca.core.ejb.audit.enums.EjbcaModuleTypes;
 import org.ejbca.core.ejb.audit.enums.EjbcaServiceTypes;
 import org.ejbca.core.ejb.authorization.AuthorizationSystemSessionLocal;
 import org.ejbca.core.ejb.ca.caadmin.CAAdminSessionLocal;
+import org.ejbca.core.ejb.ca.publisher.PublisherCache;
 import org.ejbca.core.ejb.ocsp.OcspKeyRenewalSessionLocal;
 import org.ejbca.core.ejb.ra.EndEntityAccessSessionLocal;
 import org.ejbca.core.ejb.ra.EndEntityManagementSessionLocal;
@@ -104,6 +109,8 @@ public class StartupSingletonBean {
     @EJB
     private AuthorizationSystemSessionLocal authorizationSystemSession;
     @EJB
+    private CacheInvalidationSessionLocal cacheInvalidationSession;
+    @EJB
     private CAAdminSessionLocal caAdminSession;
     @EJB
     private CertificateCreateSessionLocal certCreateSession;
@@ -134,6 +141,7 @@ public class StartupSingletonBean {
     private void shutdown() {
         String iMsg = InternalEjbcaResources.getInstance().getLocalizedMessage("startservice.shutdown");
         log.info(iMsg);
+        MetricsRegistry.INSTANCE.unregisterMBean();
         // Make a log row that EJBCA is stopping
         //final Map<String, Object> details = new LinkedHashMap<String, Object>();
         //details.put("msg", iMsg);
@@ -247,6 +255,8 @@ public class StartupSingletonBean {
         CryptoTokenFactory.instance();
         
         authorizationSession.scheduleBackgroundRefresh();
+        registerCacheInvalidationListeners();
+        cacheInvalidationSession.scheduleBackgroundPoll();
         // Load CAs at startup to improve impression of speed the first time a CA is accessed, it takes a little time to load it.
         log.trace(">init loading CAs into cache");
         try {
@@ -332,6 +342,8 @@ public class StartupSingletonBean {
         } else {
             certificateStoreSession.setUniqueCertificateSerialNumberIndex(unique);
         }
+        // Make the issuance latency metrics available over JMX
+        MetricsRegistry.INSTANCE.registerMBean();
         // Perform (automatic) upgrades, if needed
         upgradeSession.performPreUpgrade(isFreshInstallation);
         upgradeSession.performUpgrade();
@@ -444,4 +456,33 @@ public class StartupSingletonBean {
         }
         return hostname;
     }    
+
+    /**
+     * Subscribes the EJBCA caches of this node to changes made on other nodes, written to the cluster cache invalidation log.
+     * The CESeCore caches are subscribed by {@link CacheInvalidationSessionLocal#scheduleBackgroundPoll()}.
+     */
+    private void registerCacheInvalidationListeners() {
+        CacheInvalidationListeners.INSTANCE.addListener(CacheInvalidationListeners.PUBLISHER, PublisherCache.INSTANCE);
+        CacheInvalidationListeners.INSTANCE.addListener(CacheInvalidationListeners.CERTIFICATEPROFILE, new CacheInvalidationListener() {
+            @Override
+            public void onInvalidation(final String entryKey) {
+                // The profile cache is always reloaded as a whole
+                certificateProfileSession.flushProfileCache();
+            }
+        });
+        CacheInvalidationListeners.INSTANCE.addListener(CacheInvalidationListeners.ENDENTITYPROFILE, new CacheInvalidationListener() {
+            @Override
+            public void onInvalidation(final String entryKey) {
+                endEntityProfileSession.flushProfileCache();
+            }
+        });
+        CacheInvalidationListeners.INSTANCE.addListener(CacheInvalidationListeners.GLOBALCONFIGURATION, new CacheInvalidationListener() {
+            @Override
+            public void onInvalidation(final String entryKey) {
+                if (entryKey != null) {
+                    globalConfigurationSession.flushConfigurationCache(entryKey);
+                }
+            }
+        });
+    }
 }
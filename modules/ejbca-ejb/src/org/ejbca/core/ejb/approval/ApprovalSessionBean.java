@@ -231,7 +231,7 @@ public class ApprovalSessionBean implements ApprovalSessionLocal, ApprovalSessio
             approvalData.setReqadmincertsn(CertTools.getSerialNumberAsString(approvalRequest.getRequestAdminCert()));
         }
         setApprovalRequest(approvalData, approvalRequest);
-        setApprovals(approvalData, new ArrayList<Approval>());
+        setApprovals(approvalData, approvalRequest, new ArrayList<Approval>());
         approvalData.setExpiredate((new Date()).getTime() + approvalRequest.getRequestValidity());
         //Kept for legacy reasons
         approvalData.setRemainingapprovals(approvalRequest.getNumOfRequiredApprovals());
@@ -334,11 +334,30 @@ public class ApprovalSessionBean implements ApprovalSessionLocal, ApprovalSessio
     
     @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     @Override
-    public List<ApprovalData> findWaitingForApprovalApprovalDataLocal() {
-        final TypedQuery<ApprovalData> query = entityManager
-                .createQuery("SELECT a FROM ApprovalData a WHERE a.status=" + ApprovalDataVO.STATUS_WAITINGFORAPPROVAL, ApprovalData.class);
-        List<ApprovalData> result = query.getResultList();
-        return result;
+    public List<ApprovalData> findWaitingForApprovalApprovalDataLocal(final int afterId, final int maxResults) {
+        final TypedQuery<ApprovalData> query = entityManager.createQuery(
+                "SELECT a FROM ApprovalData a WHERE a.status=:status AND a.id>:afterId ORDER BY a.id", ApprovalData.class);
+        query.setParameter("status", ApprovalDataVO.STATUS_WAITINGFORAPPROVAL);
+        query.setParameter("afterId", afterId);
+        query.setMaxResults(maxResults);
+        return query.getResultList();
+    }
+
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    @Override
+    public List<Integer> findIdsWithoutApprovalProfileId() {
+        final TypedQuery<Integer> query = entityManager.createQuery("SELECT a.id FROM ApprovalData a WHERE a.approvalprofileid IS NULL", Integer.class);
+        return query.getResultList();
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRED)
+    @Override
+    public void updateApprovalProfileColumns(final int approvalDataId) {
+        final ApprovalData approvalData = findById(approvalDataId);
+        if (approvalData == null || approvalData.getApprovalprofileid() != null) {
+            return; // Removed, or already updated since the post-upgrade started
+        }
+        setApprovalProfileColumns(approvalData, approvalData.getApprovalRequest());
     }
 
     @TransactionAttribute(TransactionAttributeType.SUPPORTS)
@@ -406,14 +425,45 @@ public class ApprovalSessionBean implements ApprovalSessionLocal, ApprovalSessio
             final Date startDate, final Date endDate, final Date expiresBefore, int index, int numberofrows, String caAuthorizationString,
             String endEntityProfileAuthorizationString) {
         log.trace(">queryByStatus()");
-        
+        final String queryString = getQueryByStatusString(includeUnfinished, includeProcessed, includeExpired, startDate, endDate, expiresBefore);
+        final List<ApprovalDataVO> ret = queryInternal(queryString, index, numberofrows,
+                caAuthorizationString, endEntityProfileAuthorizationString,
+                getQueryByStatusOrderByString(includeProcessed));
+        log.trace("<queryByStatus()");
+        return ret;
+    }
+
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    @Override
+    public List<ApprovalDataVO> queryByStatusAfter(final boolean includeUnfinished, final boolean includeProcessed, final boolean includeExpired,
+            final Date startDate, final Date endDate, final Date expiresBefore, final ApprovalDataVO after, int numberofrows,
+            String caAuthorizationString, String endEntityProfileAuthorizationString) {
+        log.trace(">queryByStatusAfter()");
+        final StringBuilder sb = new StringBuilder(
+                getQueryByStatusString(includeUnfinished, includeProcessed, includeExpired, startDate, endDate, expiresBefore));
+        if (after != null) {
+            // Continue after the last row of the previous page, in the same order as getQueryByStatusOrderByString
+            final long afterRequestDate = after.getRequestDate().getTime();
+            final char comparison = includeProcessed ? '<' : '>';
+            sb.append(" AND (requestDate ").append(comparison).append(' ').append(afterRequestDate);
+            sb.append(" OR (requestDate = ").append(afterRequestDate).append(" AND id ").append(comparison).append(' ').append(after.getId()).append("))");
+        }
+        final List<ApprovalDataVO> ret = queryInternal(sb.toString(), 0, numberofrows,
+                caAuthorizationString, endEntityProfileAuthorizationString,
+                getQueryByStatusOrderByString(includeProcessed));
+        log.trace("<queryByStatusAfter()");
+        return ret;
+    }
+
+    /** @return the condition for {@link #queryByStatus(boolean, boolean, boolean, Date, Date, Date, int, int, String, String)} */
+    private String getQueryByStatusString(final boolean includeUnfinished, final boolean includeProcessed, final boolean includeExpired,
+            final Date startDate, final Date endDate, final Date expiresBefore) {
         if (!includeUnfinished && !includeProcessed && !includeExpired) {
             throw new IllegalArgumentException("At least one of includeUnfinished, includeProcessed or includeExpired must be true");
         }
         
         final StringBuilder sb = new StringBuilder();
         
-        String orderByString = null;
         sb.append('(');
         boolean first = true;
         if (includeUnfinished || includeExpired) {
@@ -442,14 +492,12 @@ public class ApprovalSessionBean implements ApprovalSessionLocal, ApprovalSessio
             }
             // "STATUS_APPROVED" means that the request is still waiting to be executed by the requester
             sb.append("status IN (" + ApprovalDataVO.STATUS_WAITINGFORAPPROVAL + ", " + ApprovalDataVO.STATUS_APPROVED + (includeExpired ? ", " + ApprovalDataVO.STATUS_EXPIRED + ", " + ApprovalDataVO.STATUS_EXPIREDANDNOTIFIED : "") + "))");
-            orderByString = "ORDER BY requestDate ASC"; // oldest first
             first = false;
         }
         if (includeProcessed) {
             if (!first) { sb.append(" OR "); }
             sb.append("status IN (" + ApprovalDataVO.STATUS_EXECUTED + ", " + ApprovalDataVO.STATUS_EXECUTIONDENIED + ", " +
                     ApprovalDataVO.STATUS_EXECUTIONFAILED + ", " + ApprovalDataVO.STATUS_REJECTED + ")");
-            orderByString = "ORDER BY requestDate DESC"; // most recently created first
             first = false;
         }
         sb.append(')');
@@ -460,11 +508,15 @@ public class ApprovalSessionBean implements ApprovalSessionLocal, ApprovalSessio
         if (endDate != null) {
             sb.append(" AND requestDate < " + endDate.getTime()); 
         }
-        final List<ApprovalDataVO> ret = queryInternal(sb.toString(), index, numberofrows,
-                caAuthorizationString, endEntityProfileAuthorizationString,
-                orderByString);
-        log.trace("<queryByStatus()");
-        return ret;
+        return sb.toString();
+    }
+
+    /** @return the order of {@link #queryByStatus(boolean, boolean, boolean, Date, Date, Date, int, int, String, String)}, with the id to make it unique */
+    private String getQueryByStatusOrderByString(final boolean includeProcessed) {
+        if (includeProcessed) {
+            return "ORDER BY requestDate DESC, id DESC"; // most recently created first
+        }
+        return "ORDER BY requestDate ASC, id ASC"; // oldest first
     }
     
     private List<ApprovalDataVO> queryInternal(final String query, int index, int numberofrows, String caAuthorizationString,
@@ -485,69 +537,87 @@ public class ApprovalSessionBean implements ApprovalSessionLocal, ApprovalSessio
         final List<ApprovalDataVO> returnData = new ArrayList<>(approvalDataList.size());
         for (ApprovalData approvalData : approvalDataList) {
             final ApprovalDataVO approvalInformation = approvalData.getApprovalDataVO();
-            //Perform a lazy upgrade of incoming approval requests produced prior to 6.5.0, which will lack a reference to an approval profile. The 
-            //upgrade procedure will have created the required approval profiles. 
-            ApprovalRequest approvalRequest = approvalInformation.getApprovalRequest();
-            if(approvalRequest.getApprovalProfile() == null) {
-                if(log.isDebugEnabled()) {
-                    log.debug("Attempting to upgrade approval with ID " + approvalData.getApprovalid() 
-                    + " to 6.6.0+ status by retrieving an approval profile from either the certificate profile or the CA.");
-                }
-                ApprovalProfile approvalProfile;
-
-                //For the sake of upgrade, we're forced to use instanceof to find the relevant certificate profile ID, based on the behavior in 
-                //6.5.x 
-                CertificateProfile certificateProfile = null;
-                if (approvalRequest instanceof ActivateCATokenApprovalRequest) {
-                    //See legacy instantiation in CAAdminSessionBean
-                    certificateProfile = certificateProfileSession
-                            .getCertificateProfile(caSession.getCAInfoInternal(approvalRequest.getCAId()).getCertificateProfileId());
-                } else if (approvalRequest instanceof AddEndEntityApprovalRequest) {
-                    //See legacy instantiation in EndEntityManagementSessionBean
-                    certificateProfile = certificateProfileSession.getCertificateProfile(
-                            ((AddEndEntityApprovalRequest) approvalRequest).getEndEntityInformation().getCertificateProfileId());
-                } else if (approvalRequest instanceof ChangeStatusEndEntityApprovalRequest) {
-                    //See legacy instantiation in EndEntityManagementSessionBean
-                    EndEntityInformation endEntityInformation = endEntityAccessSession
-                            .findUser(((ChangeStatusEndEntityApprovalRequest) approvalRequest).getUsername());
-                    certificateProfile = certificateProfileSession.getCertificateProfile(endEntityInformation.getCertificateProfileId());
-                } else if (approvalRequest instanceof EditEndEntityApprovalRequest) {
-                    //See legacy instantiation in EndEntityManagementSessionBean
-                    certificateProfile = certificateProfileSession.getCertificateProfile(
-                            ((EditEndEntityApprovalRequest) approvalRequest).getNewEndEntityInformation().getCertificateProfileId());
-                } else if (approvalRequest instanceof GenerateTokenApprovalRequest) {
-                    //TODO: Handle 100% uptime for hard token requests under ECA-5078
-                } else if (approvalRequest instanceof KeyRecoveryApprovalRequest) {
-                    //See legacy instantiation in KeyRecoverySessionBean
-                    final CertificateInfo certificateInfor = certificateStoreSession.getCertificateInfo(
-                            CertTools.getFingerprintAsString(((KeyRecoveryApprovalRequest) approvalRequest).getRequestAdminCert()));
-                    certificateProfile = certificateProfileSession.getCertificateProfile(certificateInfor.getCertificateProfileId());
-                } else if (approvalRequest instanceof RevocationApprovalRequest) {
-                    //See legacy instantiation in RevocationSessionBean
-                    EndEntityInformation endEntityInformation = endEntityAccessSession
-                            .findUser(((RevocationApprovalRequest) approvalRequest).getUsername());
-                    certificateProfile = certificateProfileSession.getCertificateProfile(endEntityInformation.getCertificateProfileId());
-                } else if (approvalRequest instanceof ViewHardTokenDataApprovalRequest) {
-                    //TODO: Handle 100% uptime for hard token requests under ECA-5078
-                }
-                approvalProfile = approvalProfileSession.getApprovalProfileForAction(
-                        ApprovalRequestType.getFromIntegerValue(approvalRequest.getApprovalRequestType()),
-                        caSession.getCAInfoInternal(approvalRequest.getCAId()), certificateProfile);
-             
-                approvalRequest.setApprovalProfile(approvalProfile);
-                approvalInformation.setApprovalRequest(approvalRequest);
-                approvalSession.updateApprovalRequest(approvalData.getId(), approvalRequest);
-                if (log.isDebugEnabled()) {
-                    log.debug("Upgraded approval with ID " + approvalData.getApprovalid() + " to 6.6.0+ by setting approval profile with ID "
-                            + approvalProfile != null ? (approvalProfile.getProfileId() + "(" + approvalProfile.getProfileName() + ")") : "(no approval profile)" + ".");
-                }
+            if (approvalData.getApprovalprofileid() != null) {
+                // The request has an approval profile, so it does not have to be decoded until it is used
+                returnData.add(approvalInformation);
+                continue;
             }
+            final ApprovalRequest approvalRequest = approvalInformation.getApprovalRequest();
+            setApprovalProfileColumns(approvalData, approvalRequest);
+            approvalInformation.setApprovalRequest(approvalRequest);
             returnData.add(approvalInformation);         
         }
         log.trace("<queryInternal()");
         return returnData;
     }
 
+    /**
+     * Fills in the approvalProfileId and approvalStep columns of an approval request that was stored before they were added.
+     * Also performs a lazy upgrade of approval requests produced prior to 6.5.0, which will lack a reference to an approval profile.
+     * The upgrade procedure will have created the required approval profiles.
+     *
+     * @param approvalData the stored approval request, where the approvalProfileId column is null
+     * @param approvalRequest the decoded approval request. The approval profile is set in it, if it was missing.
+     */
+    private void setApprovalProfileColumns(final ApprovalData approvalData, final ApprovalRequest approvalRequest) {
+        if (approvalRequest.getApprovalProfile() != null) {
+            // Stored before the approvalProfileId column was added. Fill in the columns, so it can be found by them and is not decoded again here.
+            approvalSession.updateApprovalRequest(approvalData.getId(), approvalRequest);
+        } else {
+            if(log.isDebugEnabled()) {
+                log.debug("Attempting to upgrade approval with ID " + approvalData.getApprovalid() 
+                + " to 6.6.0+ status by retrieving an approval profile from either the certificate profile or the CA.");
+            }
+            ApprovalProfile approvalProfile;
+
+            //For the sake of upgrade, we're forced to use instanceof to find the relevant certificate profile ID, based on the behavior in 
+            //6.5.x 
+            CertificateProfile certificateProfile = null;
+            if (approvalRequest instanceof ActivateCATokenApprovalRequest) {
+                //See legacy instantiation in CAAdminSessionBean
+                certificateProfile = certificateProfileSession
+                        .getCertificateProfile(caSession.getCAInfoInternal(approvalRequest.getCAId()).getCertificateProfileId());
+            } else if (approvalRequest instanceof AddEndEntityApprovalRequest) {
+                //See legacy instantiation in EndEntityManagementSessionBean
+                certificateProfile = certificateProfileSession.getCertificateProfile(
+                        ((AddEndEntityApprovalRequest) approvalRequest).getEndEntityInformation().getCertificateProfileId());
+            } else if (approvalRequest instanceof ChangeStatusEndEntityApprovalRequest) {
+                //See legacy instantiation in EndEntityManagementSessionBean
+                EndEntityInformation endEntityInformation = endEntityAccessSession
+                        .findUser(((ChangeStatusEndEntityApprovalRequest) approvalRequest).getUsername());
+                certificateProfile = certificateProfileSession.getCertificateProfile(endEntityInformation.getCertificateProfileId());
+            } else if (approvalRequest instanceof EditEndEntityApprovalRequest) {
+                //See legacy instantiation in EndEntityManagementSessionBean
+                certificateProfile = certificateProfileSession.getCertificateProfile(
+                        ((EditEndEntityApprovalRequest) approvalRequest).getNewEndEntityInformation().getCertificateProfileId());
+            } else if (approvalRequest instanceof GenerateTokenApprovalRequest) {
+                //TODO: Handle 100% uptime for hard token requests under ECA-5078
+            } else if (approvalRequest instanceof KeyRecoveryApprovalRequest) {
+                //See legacy instantiation in KeyRecoverySessionBean
+                final CertificateInfo certificateInfor = certificateStoreSession.getCertificateInfo(
+                        CertTools.getFingerprintAsString(((KeyRecoveryApprovalRequest) approvalRequest).getRequestAdminCert()));
+                certificateProfile = certificateProfileSession.getCertificateProfile(certificateInfor.getCertificateProfileId());
+            } else if (approvalRequest instanceof RevocationApprovalRequest) {
+                //See legacy instantiation in RevocationSessionBean
+                EndEntityInformation endEntityInformation = endEntityAccessSession
+                        .findUser(((RevocationApprovalRequest) approvalRequest).getUsername());
+                certificateProfile = certificateProfileSession.getCertificateProfile(endEntityInformation.getCertificateProfileId());
+            } else if (approvalRequest instanceof ViewHardTokenDataApprovalRequest) {
+                //TODO: Handle 100% uptime for hard token requests under ECA-5078
+            }
+            approvalProfile = approvalProfileSession.getApprovalProfileForAction(
+                    ApprovalRequestType.getFromIntegerValue(approvalRequest.getApprovalRequestType()),
+                    caSession.getCAInfoInternal(approvalRequest.getCAId()), certificateProfile);
+         
+            approvalRequest.setApprovalProfile(approvalProfile);
+            approvalSession.updateApprovalRequest(approvalData.getId(), approvalRequest);
+            if (log.isDebugEnabled()) {
+                log.debug("Upgraded approval with ID " + approvalData.getApprovalid() + " to 6.6.0+ by setting approval profile with ID "
+                        + approvalProfile != null ? (approvalProfile.getProfileId() + "(" + approvalProfile.getProfileName() + ")") : "(no approval profile)" + ".");
+            }
+        }
+    }
+
     @Override
     @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     public void sendApprovalNotifications(final ApprovalRequest approvalRequest, final ApprovalProfile approvalProfile,
@@ -793,6 +863,7 @@ public class ApprovalSessionBean implements ApprovalSessionLocal, ApprovalSessio
     public void updateApprovalRequest(final int approvalDataId, final ApprovalRequest approvalRequest) {
         ApprovalData approvalData = findById(approvalDataId);
         setApprovalRequest(approvalData, approvalRequest);
+        setApprovalStep(approvalData, approvalRequest, approvalData.getApprovals());
         entityManager.merge(approvalData);
     }
     
@@ -807,10 +878,32 @@ public class ApprovalSessionBean implements ApprovalSessionLocal, ApprovalSessio
             log.error("Error building approval request.", e);
             throw new IllegalStateException(e);
         }
+        final ApprovalProfile approvalProfile = approvalRequest.getApprovalProfile();
+        approvalData.setApprovalprofileid(approvalProfile == null ? null : approvalProfile.getProfileId());
+    }
+    
+    /** Sets the approvalStep column, which is used for searching without decoding the request and the approvals */
+    private void setApprovalStep(final ApprovalData approvalData, final ApprovalRequest approvalRequest, final Collection<Approval> approvals) {
+        final ApprovalProfile approvalProfile = approvalRequest.getApprovalProfile();
+        if (approvalProfile == null) {
+            approvalData.setApprovalstep(null);
+            return;
+        }
+        try {
+            approvalData.setApprovalstep(approvalProfile.getOrdinalOfStepBeingEvaluated(approvals));
+        } catch (AuthenticationFailedException e) {
+            log.debug("Exception occurred while getting current step of approval request " + approvalData.getId(), e);
+            approvalData.setApprovalstep(-1);
+        }
     }
     
     @Override
     public void setApprovals(ApprovalData approvalData, final Collection<Approval> approvals) {
+        setApprovals(approvalData, approvalData.getApprovalRequest(), approvals);
+    }
+
+    private void setApprovals(final ApprovalData approvalData, final ApprovalRequest approvalRequest, final Collection<Approval> approvals) {
+        setApprovalStep(approvalData, approvalRequest, approvals);
         try {
             final ByteArrayOutputStream baos = new ByteArrayOutputStream();
             final ObjectOutputStream oos = new ObjectOutputStream(baos);
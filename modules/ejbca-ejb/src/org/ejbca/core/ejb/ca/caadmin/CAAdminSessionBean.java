@@ -109,6 +109,7 @@ import org.cesecore.certificates.ca.extendedservices.ExtendedCAServiceRequestExc
 import org.cesecore.certificates.ca.extendedservices.ExtendedCAServiceResponse;
 import org.cesecore.certificates.ca.extendedservices.ExtendedCAServiceTypes;
 import org.cesecore.certificates.ca.extendedservices.IllegalExtendedCAServiceRequestException;
+import org.cesecore.certificates.ca.internal.CaCertificateCache;
 import org.cesecore.certificates.certificate.CertificateConstants;
 import org.cesecore.certificates.certificate.CertificateDataWrapper;
 import org.cesecore.certificates.certificate.CertificateRevokeException;
@@ -3105,7 +3106,10 @@ public class CAAdminSessionBean implements CAAdminSessionLocal, CAAdminSessionRe
                 certificateDataWrapper = certificateStoreSession.storeCertificate(admin, cert, name, cafp,
                         futureRollover ? CertificateConstants.CERT_ROLLOVERPENDING : CertificateConstants.CERT_ACTIVE, type,
                         CertificateProfileConstants.NO_CERTIFICATE_PROFILE, EndEntityConstants.NO_END_ENTITY_PROFILE, null, updateTime);
-                certificateStoreSession.reloadCaCertificateCache();
+                if (type != CertificateConstants.CERTTYPE_ENDENTITY) {
+                    // Only this certificate has changed, so there is no need to reload all CA certificates from the database
+                    CaCertificateCache.INSTANCE.addCertificate(cert);
+                }
             }
             if (usedpublishers != null) {
                 publisherSession.storeCertificate(admin, usedpublishers, certificateDataWrapper, null, caDataDN, null);
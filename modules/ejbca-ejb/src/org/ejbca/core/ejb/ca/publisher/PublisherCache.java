@@ -68,6 +68,11 @@ public enum PublisherCache implements CommonCache<BasePublisher> {
         cache.removeEntry(id);
     }
 
+    @Override
+    public void markStale(int id) {
+        cache.markStale(id);
+    }
+
     @Override
     public String getName(int id) {
         return cache.getName(id);
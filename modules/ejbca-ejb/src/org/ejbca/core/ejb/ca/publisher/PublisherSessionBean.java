@@ -49,7 +49,9 @@ import org.cesecore.certificates.certificate.CertificateStoreSessionLocal;
 import org.cesecore.certificates.certificateprofile.CertificateProfileSessionLocal;
 import org.cesecore.certificates.endentity.ExtendedInformation;
 import org.cesecore.common.exception.ReferencesToItemExistException;
+import org.cesecore.configuration.CacheInvalidationSessionLocal;
 import org.cesecore.configuration.GlobalConfigurationSessionLocal;
+import org.cesecore.internal.CacheInvalidationListeners;
 import org.cesecore.jndi.JndiConstants;
 import org.cesecore.util.Base64GetHashMap;
 import org.cesecore.util.CertTools;
@@ -96,6 +98,8 @@ public class PublisherSessionBean implements PublisherSessionLocal, PublisherSes
     @EJB
     private AuthorizationSessionLocal authorizationSession;
     @EJB
+    private CacheInvalidationSessionLocal cacheInvalidationSession;
+    @EJB
     private CAAdminSessionLocal caAdminSession;
     @EJB
     private CertificateProfileSessionLocal certificateProfileSession;
@@ -381,13 +385,32 @@ public class PublisherSessionBean implements PublisherSessionLocal, PublisherSes
     @Override
     public void addPublisherFromData(AuthenticationToken admin, int id, String name, Map<?, ?> data) throws PublisherExistsException,
             AuthorizationDeniedException {
-        final BasePublisher publisher = constructPublisher(((Integer) (data.get(BasePublisher.TYPE))).intValue());
-        if (publisher != null) {
-            publisher.setPublisherId(id);
-            publisher.setName(name);
-            publisher.loadData(data);
-            addPublisher(admin, id, name, publisher);
+        final BasePublisher publisher = constructPublisherFromData(name, data);
+        publisher.setPublisherId(id);
+        publisher.setName(name);
+        publisher.loadData(data);
+        addPublisher(admin, id, name, publisher);
+    }
+
+    @Override
+    public void changePublisherFromData(AuthenticationToken admin, String name, Map<?, ?> data) throws AuthorizationDeniedException {
+        final BasePublisher publisher = constructPublisherFromData(name, data);
+        publisher.setName(name);
+        publisher.loadData(data);
+        changePublisher(admin, name, publisher);
+    }
+
+    /** @return an empty publisher of the type given in the data map */
+    private BasePublisher constructPublisherFromData(final String name, final Map<?, ?> data) {
+        final Object type = data.get(BasePublisher.TYPE);
+        if (!(type instanceof Integer)) {
+            throw new IllegalArgumentException("The data of publisher '" + name + "' does not contain a publisher type.");
         }
+        final BasePublisher publisher = constructPublisher((Integer) type);
+        if (publisher == null) {
+            throw new IllegalArgumentException("Publisher type " + type + " of publisher '" + name + "' is not available.");
+        }
+        return publisher;
     }
 
     private void addPublisherInternal(AuthenticationToken admin, int id, String name, BasePublisher publisher) throws AuthorizationDeniedException,
@@ -421,6 +444,7 @@ public class PublisherSessionBean implements PublisherSessionLocal, PublisherSes
             htp.setPublisher(publisher);
             // Since loading a Publisher is quite complex, we simple purge the cache here
             PublisherCache.INSTANCE.removeEntry(htp.getId());
+            cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.PUBLISHER, htp.getId());
             final String msg = intres.getLocalizedMessage("publisher.changedpublisher", name);
             final Map<String, Object> details = new LinkedHashMap<String, Object>();
             details.put("msg", msg);
@@ -492,6 +516,7 @@ public class PublisherSessionBean implements PublisherSessionLocal, PublisherSes
                 entityManager.remove(htp);
                 // Purge the cache here
                 PublisherCache.INSTANCE.removeEntry(htp.getId());
+                cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.PUBLISHER, htp.getId());
                 final String msg = intres.getLocalizedMessage("publisher.removedpublisher", name);
                 final Map<String, Object> details = new LinkedHashMap<>();
                 details.put("msg", msg);
@@ -565,6 +590,7 @@ public class PublisherSessionBean implements PublisherSessionLocal, PublisherSes
                 success = true;
                 // Since loading a Publisher is quite complex, we simple purge the cache here
                 PublisherCache.INSTANCE.removeEntry(htp.getId());
+                cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.PUBLISHER, htp.getId());
             }
         }
         if (success) {
@@ -607,6 +633,19 @@ public class PublisherSessionBean implements PublisherSessionLocal, PublisherSes
         return returnval;
     }
 
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    @Override
+    public Map<Integer, Map<?, ?>> getAllPublisherData() {
+        final Map<Integer, Map<?, ?>> returnval = new HashMap<>();
+        for (final PublisherData publisherData : PublisherData.findAll(entityManager)) {
+            final BasePublisher publisher = getPublisher(publisherData);
+            if (publisher != null) {
+                returnval.put(publisherData.getId(), (Map<?, ?>) publisher.saveData());
+            }
+        }
+        return returnval;
+    }
+
     @TransactionAttribute(TransactionAttributeType.SUPPORTS)
     @Override
     public HashMap<Integer, String> getPublisherIdToNameMap() {
@@ -120,6 +120,7 @@ import org.cesecore.keys.token.CryptoTokenManagementSessionLocal;
 import org.cesecore.keys.token.CryptoTokenOfflineException;
 import org.cesecore.keys.util.KeyTools;
 import org.cesecore.keys.util.PublicKeyWrapper;
+import org.cesecore.metrics.IssuanceStage;
 import org.cesecore.util.Base64;
 import org.cesecore.util.CertTools;
 import org.cesecore.util.CryptoProviderTools;
@@ -438,6 +439,7 @@ public class SignSessionBean implements SignSessionLocal, SignSessionRemote {
         if (log.isTraceEnabled()) {
             log.trace(">createCertificate(RequestMessage)");
         }
+        final long issuanceStart = System.nanoTime();
         // Get CA that will receive request
         EndEntityInformation endEntityInformation = null;
         CertificateResponseMessage ret = null;
@@ -500,6 +502,9 @@ public class SignSessionBean implements SignSessionLocal, SignSessionRemote {
             if (ca.isUseUserStorage() && endEntityInformation != null) {
                 finishUser(ca, endEntityInformation);
             }
+            if (ret.getStatus() == ResponseStatus.SUCCESS) {
+                IssuanceStage.ISSUANCE.recordSince(issuanceStart);
+            }
         } catch (CustomCertificateSerialNumberException e) {
             cleanUserCertDataSN(endEntityInformation);
             throw e;
@@ -549,6 +554,7 @@ public class SignSessionBean implements SignSessionLocal, SignSessionRemote {
         if (log.isTraceEnabled()) {
             log.trace(">createCertificate(pk, ku, date)");
         }
+        final long issuanceStart = System.nanoTime();
         // Authorize user and get DN
         final EndEntityInformation data = authUser(admin, username, password);
         if (log.isDebugEnabled()) {
@@ -583,6 +589,7 @@ public class SignSessionBean implements SignSessionLocal, SignSessionRemote {
             cert = createCertificate(admin, data, ca, pk, keyusage, notBefore, notAfter, null, null);
             // Call authentication session and tell that we are finished with this user
             finishUser(ca, data);
+            IssuanceStage.ISSUANCE.recordSince(issuanceStart);
         } catch (CustomCertificateSerialNumberException e) {
             cleanUserCertDataSN(data);
             throw e;
@@ -1184,7 +1191,10 @@ public class SignSessionBean implements SignSessionLocal, SignSessionRemote {
     private EndEntityInformation authUser(final AuthenticationToken admin, final String username, final String password)
             throws NoSuchEndEntityException, AuthStatusException, AuthLoginException {
         // Authorize user and get DN
-        return endEntityAuthenticationSession.authenticateUser(admin, username, password);
+        final long start = System.nanoTime();
+        final EndEntityInformation endEntityInformation = endEntityAuthenticationSession.authenticateUser(admin, username, password);
+        IssuanceStage.END_ENTITY_LOOKUP.recordSince(start);
+        return endEntityInformation;
     }
 
     /** Finishes user, i.e. set status to generated, if it should do so.
@@ -1339,8 +1349,10 @@ public class SignSessionBean implements SignSessionLocal, SignSessionRemote {
         final CertificateProfile certProfile = certificateProfileSession.getCertificateProfile(certProfileId);
         final Collection<Integer> publishers = certProfile.getPublisherList();
         if (!publishers.isEmpty()) {
+            final long start = System.nanoTime();
             publisherSession.storeCertificate(authenticationToken, publishers, certificateWrapper, endEntity.getPassword(),
                     endEntity.getCertificateDN(), endEntity.getExtendedInformation());
+            IssuanceStage.PUBLISHING.recordSince(start);
         }
     }
 
@@ -61,11 +61,11 @@ import org.cesecore.certificates.crl.CRLInfo;
 import org.cesecore.certificates.crl.CrlCreateSessionLocal;
 import org.cesecore.certificates.crl.CrlStoreSessionLocal;
 import org.cesecore.certificates.crl.RevokedCertInfo;
+import org.cesecore.certificates.crl.RevokedCertInfoCollection;
 import org.cesecore.internal.InternalResources;
 import org.cesecore.jndi.JndiConstants;
 import org.cesecore.keys.token.CryptoTokenOfflineException;
 import org.cesecore.util.CertTools;
-import org.cesecore.util.CompressedCollection;
 import org.cesecore.util.CryptoProviderTools;
 import org.ejbca.core.ejb.ca.publisher.PublisherSessionLocal;
 
@@ -452,16 +452,18 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
                                 for(RevokedCertInfo tmp : revokedCertInfo){ //for loop is necessary because revokedCertInfo.toArray is not supported...
                                     revokedCertificatesBeforeLastCANameChange.add(tmp);
                                 }
+                                revokedCertInfo.clear(); // Release unused resources
                             }
                         }
                     }
                     //Make sure new compressed collection is created if revokedCertificatesBeforeLastCANameChange need to be added!
                     Collection<RevokedCertInfo> revokedCertificatesAfterLastCANameChange = revokedCertificates;
-                    revokedCertificates = new CompressedCollection<>();
+                    revokedCertificates = new RevokedCertInfoCollection();
                     if(!revokedCertificatesBeforeLastCANameChange.isEmpty()){
                         revokedCertificates.addAll(revokedCertificatesBeforeLastCANameChange);
                     }
                     revokedCertificates.addAll(revokedCertificatesAfterLastCANameChange);
+                    revokedCertificatesAfterLastCANameChange.clear(); // Release unused resources
                 }
 
                 if (log.isDebugEnabled()) {
@@ -536,7 +538,7 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
             log.error(e);
             throw new EJBException(e);
         } finally {
-            // Special treatment of our CompressedCollection to ensure that we release all resources
+            // Special treatment of our RevokedCertInfoCollection to ensure that we release all resources
             if (revokedCertificates!=null) {
                 revokedCertificates.clear();
             }
@@ -578,7 +580,7 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
         }
         byte[] crlBytes = null;
         Collection<RevokedCertInfo> revcertinfos = null;
-        CompressedCollection<RevokedCertInfo> certs = null;
+        RevokedCertInfoCollection certs = null;
         try {
             final Certificate cacert = getCaCertificate(cainfo);
             final String caCertSubjectDN = cacert==null ? null : CertTools.getSubjectDN(cacert);
@@ -609,23 +611,25 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
                                 for(RevokedCertInfo tmp : revokedCertInfo){ //for loop is necessary because revokedCertInfo.toArray is not supported...
                                     revokedCertificatesBeforeLastCANameChange.add(tmp);
                                 }
+                                revokedCertInfo.clear(); // Release unused resources
                             }
                         }
                     }
                     //Make sure new compressed collection is created if revokedCertificatesBeforeLastCANameChange need to be added!
                     Collection<RevokedCertInfo> revokedCertificatesAfterLastCANameChange = revcertinfos;
-                    revcertinfos = new CompressedCollection<>();
+                    revcertinfos = new RevokedCertInfoCollection();
                     if(!revokedCertificatesBeforeLastCANameChange.isEmpty()){
                         revcertinfos.addAll(revokedCertificatesBeforeLastCANameChange);
                     }
                     revcertinfos.addAll(revokedCertificatesAfterLastCANameChange);
+                    revokedCertificatesAfterLastCANameChange.clear(); // Release unused resources
                 }
 
                 if (log.isDebugEnabled()) {
                     log.debug("Found "+revcertinfos.size()+" revoked certificates.");
                 }
                 // Go through them and create a CRL, i.e. add to cert list to be included in CRL
-                certs = new CompressedCollection<>();
+                certs = new RevokedCertInfoCollection();
                 for (final RevokedCertInfo ci : revcertinfos) {
                     if (ci.getRevocationDate() == null) {
                         ci.setRevocationDate(new Date());
@@ -649,7 +653,7 @@ public class PublishingCrlSessionBean implements PublishingCrlSessionLocal, Publ
             log.error(e);
             throw new EJBException(e);
         } finally {
-            // Special treatment of our CompressedCollections to ensure that we release all resources
+            // Special treatment of our RevokedCertInfoCollections to ensure that we release all resources
             if (revcertinfos!=null) {
                 revcertinfos.clear();
             }
@@ -464,6 +464,23 @@ public class EndEntityAccessSessionBean implements EndEntityAccessSessionLocal,
     @Override
     public Collection<EndEntityInformation> query(final AuthenticationToken admin, final Query query, final String caauthorizationstr,
             final String endentityprofilestr, final int numberofrows, final String endentityAccessRule) throws IllegalQueryException {
+        return query(admin, query, caauthorizationstr, endentityprofilestr, false, null, numberofrows, endentityAccessRule);
+    }
+
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    @Override
+    public List<EndEntityInformation> queryNextPage(final AuthenticationToken admin, final Query query, final String afterUsername, final int numberofrows,
+            final String endentityAccessRule) throws IllegalQueryException {
+        return query(admin, query, null, null, true, afterUsername, numberofrows, endentityAccessRule);
+    }
+
+    /**
+     * @param orderByUsername true to order the result by username, false to order it by creation time, newest first
+     * @param afterUsername if not null, only end entities after this username are returned. Only used when ordering by username.
+     */
+    private List<EndEntityInformation> query(final AuthenticationToken admin, final Query query, final String caauthorizationstr,
+            final String endentityprofilestr, final boolean orderByUsername, final String afterUsername, final int numberofrows,
+            final String endentityAccessRule) throws IllegalQueryException {
         boolean authorizedtoanyprofile = true;
         final String caauthorizationstring = StringTools.strip(caauthorizationstr);
         final String endentityprofilestring = StringTools.strip(endentityprofilestr);
@@ -515,13 +532,28 @@ public class EndEntityAccessSessionBean implements EndEntityAccessSessionLocal,
                 }
             }
         }
-        // Finally order the return values
-        sqlquery += " ORDER BY " + USERDATA_CREATED_COL + " DESC";
+        if (orderByUsername) {
+            // Keyset pagination, on the unique username
+            if (afterUsername != null) {
+                if (StringUtils.isBlank(sqlquery)) {
+                    sqlquery = "username>:afterUsername";
+                } else {
+                    sqlquery = "(" + sqlquery + ") AND username>:afterUsername";
+                }
+            }
+            sqlquery += " ORDER BY username ASC";
+        } else {
+            // Finally order the return values
+            sqlquery += " ORDER BY " + USERDATA_CREATED_COL + " DESC";
+        }
         if (log.isDebugEnabled()) {
             log.debug("generated query: " + sqlquery);
         }
         if (authorizedtoanyprofile) {
             final javax.persistence.Query dbQuery = entityManager.createQuery("SELECT a FROM UserData a WHERE " + sqlquery);
+            if (orderByUsername && afterUsername != null) {
+                dbQuery.setParameter("afterUsername", afterUsername);
+            }
             if (fetchsize > 0) {
                 dbQuery.setMaxResults(fetchsize);
             }
@@ -26,7 +26,9 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.TreeMap;
 
+import javax.annotation.Resource;
 import javax.ejb.EJB;
+import javax.ejb.SessionContext;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionAttribute;
 import javax.ejb.TransactionAttributeType;
@@ -46,6 +48,8 @@ import org.cesecore.certificates.ca.CADoesntExistsException;
 import org.cesecore.certificates.ca.CaSessionLocal;
 import org.cesecore.certificates.certificateprofile.CertificateProfileSessionLocal;
 import org.cesecore.certificates.endentity.EndEntityConstants;
+import org.cesecore.configuration.CacheInvalidationSessionLocal;
+import org.cesecore.internal.CacheInvalidationListeners;
 import org.cesecore.jndi.JndiConstants;
 import org.cesecore.util.ProfileID;
 import org.ejbca.core.ejb.audit.enums.EjbcaEventTypes;
@@ -74,10 +78,14 @@ public class EndEntityProfileSessionBean implements EndEntityProfileSessionLocal
 
     @PersistenceContext(unitName = "ejbca")
     private EntityManager entityManager;
+    @Resource
+    private SessionContext sessionContext;
 
     @EJB
     private AuthorizationSessionLocal authorizationSession;
     @EJB
+    private CacheInvalidationSessionLocal cacheInvalidationSession;
+    @EJB
     private CaSessionLocal caSession;
     @EJB
     private SecurityEventsLoggerSessionLocal auditSession;
@@ -93,6 +101,40 @@ public class EndEntityProfileSessionBean implements EndEntityProfileSessionLocal
 
     @Override
     public void addEndEntityProfile(final AuthenticationToken admin, final int profileid, final String profilename, final EndEntityProfile profile) throws AuthorizationDeniedException, EndEntityProfileExistsException {
+        addEndEntityProfileNoFlushCache(admin, profileid, profilename, profile);
+        flushProfileCache();
+        cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.ENDENTITYPROFILE, null);
+    }
+
+    @Override
+    public void importEndEntityProfiles(final AuthenticationToken admin, final Map<Integer, String> idToNameMap, final Map<Integer, EndEntityProfile> profiles)
+            throws AuthorizationDeniedException, EndEntityProfileExistsException {
+        try {
+            for (final Entry<Integer, EndEntityProfile> entry : profiles.entrySet()) {
+                final int profileid = entry.getKey();
+                final String profilename = idToNameMap.get(entry.getKey());
+                final EndEntityProfileData existing = EndEntityProfileData.findByProfileName(entityManager, profilename);
+                if (existing != null && existing.getId() == profileid) {
+                    internalChangeEndEntityProfileNoFlushCache(admin, profilename, entry.getValue());
+                } else {
+                    addEndEntityProfileNoFlushCache(admin, profileid, profilename, entry.getValue());
+                }
+            }
+        } catch (EndEntityProfileExistsException e) {
+            sessionContext.setRollbackOnly(); // This is an application exception so it wont trigger a roll-back automatically
+            throw e;
+        } catch (EndEntityProfileNotFoundException e) {
+            // Can't happen, since the profile was found above
+            throw new IllegalStateException(e);
+        }
+        // Reload the cache once for the whole batch, since each reload reads all profiles from the database
+        flushProfileCache();
+        cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.ENDENTITYPROFILE, null);
+    }
+
+    /** Persists a new profile, and leaves it to the caller to flush the profile cache */
+    private void addEndEntityProfileNoFlushCache(final AuthenticationToken admin, final int profileid, final String profilename, final EndEntityProfile profile)
+            throws AuthorizationDeniedException, EndEntityProfileExistsException {
         if (profilename.trim().equalsIgnoreCase(EndEntityConstants.EMPTY_ENDENTITYPROFILENAME)) {
             final String msg = INTRES.getLocalizedMessage("ra.erroraddprofilefixed", profilename, EndEntityConstants.EMPTY_ENDENTITYPROFILENAME);
             LOG.info(msg);
@@ -110,7 +152,6 @@ public class EndEntityProfileSessionBean implements EndEntityProfileSessionLocal
             authorizedToEditProfile(admin, profile);
             try {
                 entityManager.persist(new EndEntityProfileData(Integer.valueOf(profileid), profilename, profile));
-                flushProfileCache();
                 final String msg = INTRES.getLocalizedMessage("ra.addedprofile", profilename);
                 final Map<String, Object> details = new LinkedHashMap<String, Object>();
                 details.put("msg", msg);
@@ -129,6 +170,7 @@ public class EndEntityProfileSessionBean implements EndEntityProfileSessionLocal
     public void changeEndEntityProfile(final AuthenticationToken admin, final String profilename, final EndEntityProfile profile) throws AuthorizationDeniedException, EndEntityProfileNotFoundException {
         internalChangeEndEntityProfileNoFlushCache(admin, profilename, profile);
         flushProfileCache();
+        cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.ENDENTITYPROFILE, null);
     }
 
     @Override
@@ -149,6 +191,7 @@ public class EndEntityProfileSessionBean implements EndEntityProfileSessionLocal
             		final int profileid = findFreeEndEntityProfileId();
             		entityManager.persist(new EndEntityProfileData(profileid, newname, (EndEntityProfile)profile.clone()));
             		flushProfileCache();
+            		cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.ENDENTITYPROFILE, null);
             		final String msg = INTRES.getLocalizedMessage("ra.clonedprofile", newname, orgname);
                     final Map<String, Object> details = new LinkedHashMap<String, Object>();
                     details.put("msg", msg);
@@ -485,6 +528,12 @@ public class EndEntityProfileSessionBean implements EndEntityProfileSessionLocal
         return EndEntityProfileCache.INSTANCE.getIdNameMapCache(entityManager);
     }
 
+    @TransactionAttribute(TransactionAttributeType.SUPPORTS)
+    @Override
+    public Map<Integer, EndEntityProfile> getAllEndEntityProfiles() {
+        return EndEntityProfileCache.INSTANCE.getProfileCache(entityManager);
+    }
+
     @Override
     public void initializeAndUpgradeProfiles() {
     	final Collection<EndEntityProfileData> result = EndEntityProfileData.findAll(entityManager);
@@ -539,6 +588,7 @@ public class EndEntityProfileSessionBean implements EndEntityProfileSessionLocal
     		    try {
     		        entityManager.remove(pdl);
     		        flushProfileCache();
+    		        cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.ENDENTITYPROFILE, null);
     		        final String msg = INTRES.getLocalizedMessage("ra.removedprofile", profilename);
     		        final Map<String, Object> details = new LinkedHashMap<String, Object>();
     		        details.put("msg", msg);
@@ -571,6 +621,7 @@ public class EndEntityProfileSessionBean implements EndEntityProfileSessionLocal
                 authorizedToEditProfile(admin, pdl.getProfile());
                 pdl.setProfileName(newprofilename);
                 flushProfileCache();
+                cacheInvalidationSession.signalInvalidation(CacheInvalidationListeners.ENDENTITYPROFILE, null);
                 final String msg = INTRES.getLocalizedMessage("ra.renamedprofile", oldprofilename, newprofilename);
                 final Map<String, Object> details = new LinkedHashMap<String, Object>();
                 details.put("msg", msg);
@@ -0,0 +1,235 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.ejb.upgrade;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.log4j.Logger;
+import org.bouncycastle.util.encoders.Hex;
+
+/**
+ * Runs a post-upgrade migration step in chunks, on a bounded pool of worker threads.
+ *
+ * The items of a step (e.g. certificate profile ids) are sorted and split into chunks of a fixed size. Each chunk is
+ * identified by a hash of all its items, and is reported to the {@link Checkpoint} when it has completed. When a step is
+ * run again after a failure or a restart, chunks that have already completed with exactly the same items are skipped. The migration of a chunk must be
+ * idempotent, since a chunk can be migrated again if the step is interrupted before the chunk was checkpointed, or if
+ * items have been added or removed so that the chunks are split differently.
+ *
+ * If the migration of a chunk fails, no more chunks are started, and {@link #run(String, Collection, ChunkTask)} returns
+ * false when the running chunks have completed.
+ *
+ * @version $Id$
+ */
+public class ChunkedMigration {
+
+    private static final Logger log = Logger.getLogger(ChunkedMigration.class);
+
+    /** Minimum time in milliseconds between two progress messages in the log */
+    private static final long LOG_INTERVAL = 10000L;
+    /** Number of bytes of the SHA-256 hash of the items that is used in the chunk id */
+    private static final int CHUNK_HASH_LENGTH = 16;
+
+    /** Persistent record of the chunks that have completed */
+    public interface Checkpoint {
+        /** @return the ids of the chunks of the step that have completed, never null */
+        Set<String> getCompletedChunks(String step);
+
+        /** Records that a chunk has completed. Calls are never made concurrently. */
+        void chunkCompleted(String step, String chunkId);
+    }
+
+    /** Migration of the items in one chunk */
+    public interface ChunkTask<T> {
+        /** Migrates the items, typically in a transaction of its own. Must be idempotent. */
+        void migrate(List<T> chunk) throws Exception;
+    }
+
+    /** Receives the progress after each completed chunk */
+    public interface ProgressListener {
+        void progress(MigrationProgress progress);
+    }
+
+    private final int workers;
+    private final int chunkSize;
+    private final Checkpoint checkpoint;
+    private final ProgressListener progressListener;
+
+    /**
+     * @param workers maximum number of chunks that are migrated concurrently
+     * @param chunkSize number of items in each chunk
+     * @param checkpoint where completed chunks are recorded
+     * @param progressListener receives the progress after each completed chunk, or null
+     */
+    public ChunkedMigration(final int workers, final int chunkSize, final Checkpoint checkpoint, final ProgressListener progressListener) {
+        this.workers = Math.max(1, workers);
+        this.chunkSize = Math.max(1, chunkSize);
+        this.checkpoint = checkpoint;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * @return the id of a chunk, which only depends on the items in it. The id contains the first and last item for logging,
+     * and a hash of all items, so that a chunk is not considered completed if an item has been added between its first and last item.
+     */
+    static <T> String getChunkId(final List<T> chunk) {
+        final MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available.", e);
+        }
+        for (final T item : chunk) {
+            digest.update(String.valueOf(item).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+        }
+        return chunk.get(0) + "-" + chunk.get(chunk.size() - 1) + "-" + Hex.toHexString(digest.digest(), 0, CHUNK_HASH_LENGTH);
+    }
+
+    /**
+     * Migrates all items of a step, except the items in chunks that have already completed.
+     *
+     * @param step name of the step, e.g. the version that is upgraded to
+     * @param items items to migrate, duplicates are ignored
+     * @param task migration of one chunk of items
+     * @return true if all chunks have completed, false if a chunk failed or the calling thread was interrupted
+     */
+    public <T extends Comparable<T>> boolean run(final String step, final Collection<T> items, final ChunkTask<T> task) {
+        final List<T> sortedItems = new ArrayList<>(new TreeSet<>(items));
+        final Set<String> completedChunks = checkpoint.getCompletedChunks(step);
+        final List<List<T>> pendingChunks = new ArrayList<>();
+        int resumedItems = 0;
+        for (int i = 0; i < sortedItems.size(); i += chunkSize) {
+            final List<T> chunk = sortedItems.subList(i, Math.min(i + chunkSize, sortedItems.size()));
+            if (completedChunks.contains(getChunkId(chunk))) {
+                resumedItems += chunk.size();
+            } else {
+                pendingChunks.add(chunk);
+            }
+        }
+        final ProgressTracker tracker = new ProgressTracker(step, sortedItems.size(), resumedItems);
+        log.info("Starting post-upgrade to " + step + " of " + sortedItems.size() + " items in " + pendingChunks.size() + " chunks using "
+                + Math.min(workers, Math.max(1, pendingChunks.size())) + " worker threads."
+                + (resumedItems > 0 ? " " + resumedItems + " items were migrated by an earlier run." : ""));
+        tracker.report(true);
+        if (pendingChunks.isEmpty()) {
+            return true;
+        }
+        final AtomicBoolean failed = new AtomicBoolean(false);
+        final AtomicInteger threadNumber = new AtomicInteger();
+        final ExecutorService executorService = Executors.newFixedThreadPool(Math.min(workers, pendingChunks.size()), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "PostUpgrade-" + step + "-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        final List<Future<Boolean>> futures = new ArrayList<>(pendingChunks.size());
+        try {
+            for (final List<T> chunk : pendingChunks) {
+                futures.add(executorService.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        if (failed.get()) {
+                            return false;
+                        }
+                        final String chunkId = getChunkId(chunk);
+                        try {
+                            task.migrate(new ArrayList<>(chunk));
+                            synchronized (checkpoint) {
+                                checkpoint.chunkCompleted(step, chunkId);
+                            }
+                        } catch (Exception e) {
+                            log.error("Post-upgrade to " + step + " failed for items " + chunkId + ": " + e.getMessage(), e);
+                            failed.set(true);
+                            return false;
+                        }
+                        tracker.chunkCompleted(chunk.size());
+                        return true;
+                    }
+                }));
+            }
+            for (final Future<Boolean> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            log.info("Post-upgrade to " + step + " was interrupted. It will continue from the last completed chunk when started again.");
+            failed.set(true);
+            executorService.shutdownNow();
+            Thread.currentThread().interrupt();
+            return false;
+        } catch (ExecutionException e) {
+            // Not expected, since exceptions are caught by the task
+            log.error("Post-upgrade to " + step + " failed: " + e.getMessage(), e);
+            failed.set(true);
+        } finally {
+            executorService.shutdown();
+        }
+        tracker.report(true);
+        if (failed.get()) {
+            log.error("Post-upgrade to " + step + " did not complete. It will continue from the last completed chunk when started again.");
+            return false;
+        }
+        return true;
+    }
+
+    /** Counts completed items and reports the progress */
+    private class ProgressTracker {
+        private final String step;
+        private final int totalItems;
+        private final int resumedItems;
+        private final long startTime = System.currentTimeMillis();
+        private final AtomicInteger completedItems = new AtomicInteger();
+        private long lastLogged;
+
+        ProgressTracker(final String step, final int totalItems, final int resumedItems) {
+            this.step = step;
+            this.totalItems = totalItems;
+            this.resumedItems = resumedItems;
+            this.lastLogged = startTime;
+        }
+
+        void chunkCompleted(final int items) {
+            completedItems.addAndGet(items);
+            report(false);
+        }
+
+        synchronized void report(final boolean forceLog) {
+            final long now = System.currentTimeMillis();
+            final MigrationProgress progress = new MigrationProgress(step, totalItems, resumedItems, completedItems.get(), startTime, now);
+            if (progressListener != null) {
+                progressListener.progress(progress);
+            }
+            if (forceLog || now - lastLogged >= LOG_INTERVAL) {
+                lastLogged = now;
+                log.info(progress.toString());
+            }
+        }
+    }
+}
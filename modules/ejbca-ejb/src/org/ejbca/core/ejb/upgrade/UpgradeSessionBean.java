@@ -144,6 +144,9 @@ public class UpgradeSessionBean implements UpgradeSessionLocal, UpgradeSessionRe
 
     private static final Logger log = Logger.getLogger(UpgradeSessionBean.class);
 
+    /** Number of approval requests that are read at a time when upgrading approval requests */
+    private static final int APPROVAL_UPGRADE_PAGE_SIZE = 100;
+
     private static final AuthenticationToken authenticationToken = new AlwaysAllowLocalAuthenticationToken("Internal upgrade");
 
     @PersistenceContext(unitName = "ejbca")
@@ -314,7 +317,7 @@ public class UpgradeSessionBean implements UpgradeSessionLocal, UpgradeSessionRe
                 setEndEntityProfileInCertificateData(true);
                 // Since we know that this is a brand new installation, no upgrade should be needed
                 setLastUpgradedToVersion(InternalConfiguration.getAppVersionNumber());
-                setLastPostUpgradedToVersion("6.10.1");
+                setLastPostUpgradedToVersion("7.0.1");
             } else {
                 // Ensure that we save currently known oldest installation version before any upgrade is invoked
                 if(getLastUpgradedToVersion() != null) {
@@ -373,6 +376,7 @@ public class UpgradeSessionBean implements UpgradeSessionLocal, UpgradeSessionRe
         if (setPostUpgradeStartedInternal(System.currentTimeMillis())) {
             try {
                 upgradeStatusSingleton.logAppenderAttach(log);
+                upgradeStatusSingleton.logAppenderAttach(Logger.getLogger(ChunkedMigration.class));
                 if (upgradeStatusSingleton.setPostUpgradeInProgressIfDifferent(true)) {
                     try {
                         final String dbType = DatabaseConfiguration.getDatabaseName();
@@ -397,6 +401,7 @@ public class UpgradeSessionBean implements UpgradeSessionLocal, UpgradeSessionRe
             } finally {
                 setPostUpgradeStartedInternal(0L);
                 upgradeStatusSingleton.logAppenderDetach(log);
+                upgradeStatusSingleton.logAppenderDetach(Logger.getLogger(ChunkedMigration.class));
             }
         } else {
             log.info("Preventing start of post-upgrade background tasks since it has already been started by a cluster node.");
@@ -566,6 +571,12 @@ public class UpgradeSessionBean implements UpgradeSessionLocal, UpgradeSessionRe
             }
             setLastPostUpgradedToVersion("6.10.1");
         }
+        if (isLesserThan(oldVersion, "7.0.1")) {
+            if (!postMigrateDatabase701()) {
+                return false;
+            }
+            setLastPostUpgradedToVersion("7.0.1");
+        }
         // NOTE: If you add additional post upgrade tasks here, also modify isPostUpgradeNeeded() and performPreUpgrade()
         //setLastPostUpgradedToVersion(InternalConfiguration.getAppVersionNumber());
         return true;
@@ -574,7 +585,7 @@ public class UpgradeSessionBean implements UpgradeSessionLocal, UpgradeSessionRe
     @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     @Override
     public boolean isPostUpgradeNeeded() {
-        return isLesserThan(getLastPostUpgradedToVersion(), "6.10.1");
+        return isLesserThan(getLastPostUpgradedToVersion(), "7.0.1");
     }
 
     /**
@@ -977,38 +988,43 @@ public class UpgradeSessionBean implements UpgradeSessionLocal, UpgradeSessionRe
             // to the newly created partition so that the new code will recognize it. Note that an AccumulativeApprovalProfile
             // only has one step and one partition. The step ID is '0', which is the default step ID in an approval, which
             // is why the step ID in an approval does not need updating the same way as the partition ID needs updating.
-            List<ApprovalData> approvalRequests = approvalSession.findWaitingForApprovalApprovalDataLocal();
+            // The approval requests are read a page at a time, ordered by id, so that they do not all have to be kept in memory at once.
+            List<ApprovalData> approvalRequests = approvalSession.findWaitingForApprovalApprovalDataLocal(Integer.MIN_VALUE, APPROVAL_UPGRADE_PAGE_SIZE);
             if (approvalRequests.isEmpty()) {
                 log.debug("migrateDatabase660: No approval requests to upgrade");
             } else {
                 log.debug("migrateDatabase660: Upgrading approval requests");
             }
-            for(ApprovalData request : approvalRequests) {
-                Collection<Approval> approvals = request.getApprovals();
-                if(approvals.size() > 0) {
-                    final int nrOfRequiredApprovals = request.getRemainingapprovals() + approvals.size();
-                    final Integer partitionId = approvalPartitionCache.get(Integer.valueOf(nrOfRequiredApprovals));
-                    if (partitionId != null) {
-                        // It's an old approval from before 6.6.0, that needs upgrading
-                        for (Approval approval : approvals) {
-                            approval.setPartitionId(partitionId);
-                        }
-                        approvalSession.setApprovals(request, approvals);
-                    } else {
-                        // Might be an approval from 6.6.0, in case the upgrade fails at first and the user adds an approval (in 6.6 or later) before the successful upgrade.
-                        // Check that this is really the case
-                        boolean error = false;
-                        for (Approval approval : approvals) {
-                            if (approval.getPartitionId() == 0) { // not from 6.6.0, and can not be upgraded
-                                error = true;
+            while (!approvalRequests.isEmpty()) {
+                for(ApprovalData request : approvalRequests) {
+                    Collection<Approval> approvals = request.getApprovals();
+                    if(approvals.size() > 0) {
+                        final int nrOfRequiredApprovals = request.getRemainingapprovals() + approvals.size();
+                        final Integer partitionId = approvalPartitionCache.get(Integer.valueOf(nrOfRequiredApprovals));
+                        if (partitionId != null) {
+                            // It's an old approval from before 6.6.0, that needs upgrading
+                            for (Approval approval : approvals) {
+                                approval.setPartitionId(partitionId);
+                            }
+                            approvalSession.setApprovals(request, approvals);
+                        } else {
+                            // Might be an approval from 6.6.0, in case the upgrade fails at first and the user adds an approval (in 6.6 or later) before the successful upgrade.
+                            // Check that this is really the case
+                            boolean error = false;
+                            for (Approval approval : approvals) {
+                                if (approval.getPartitionId() == 0) { // not from 6.6.0, and can not be upgraded
+                                    error = true;
+                                }
+                            }
+                            if (error) {
+                                log.error("An approval in the approval request with ID " + request.getId() + " could not be upgraded because it could not be mapped to an accumulative approval profile. The approvals in this request have been deleted");
+                                approvalSession.setApprovals(request, new ArrayList<Approval>());
                             }
-                        }
-                        if (error) {
-                            log.error("An approval in the approval request with ID " + request.getId() + " could not be upgraded because it could not be mapped to an accumulative approval profile. The approvals in this request have been deleted");
-                            approvalSession.setApprovals(request, new ArrayList<Approval>());
                         }
                     }
                 }
+                approvalRequests = approvalSession.findWaitingForApprovalApprovalDataLocal(approvalRequests.get(approvalRequests.size() - 1).getId(),
+                        APPROVAL_UPGRADE_PAGE_SIZE);
             }
 
         } catch (AuthorizationDeniedException e) {
@@ -1550,11 +1566,31 @@ public class UpgradeSessionBean implements UpgradeSessionLocal, UpgradeSessionRe
     
     private boolean postMigrateDatabase6101() {
         log.info("Starting post upgrade to 6.10.1.");
-        final Map<Integer, CertificateProfile> allCertProfiles = certProfileSession.getAllCertificateProfiles();
+        final ChunkedMigration migration = createChunkedMigration();
+        final Set<Integer> certProfileIds = certProfileSession.getCertificateProfileIdToNameMap().keySet();
+        final boolean ret = migration.run("6.10.1", certProfileIds, new ChunkedMigration.ChunkTask<Integer>() {
+            @Override
+            public void migrate(final List<Integer> chunk) {
+                upgradeSession.postMigrateDatabase6101CertificateProfiles(chunk);
+            }
+        });
+        if (!ret) {
+            return false;
+        }
+        clearMigrationCheckpoint("6.10.1");
+        log.info("Post upgrade to 6.10.1 complete.");
+        return true;
+    }
 
-        for (Integer profileId : allCertProfiles.keySet()) {
-            CertificateProfile certProfile = allCertProfiles.get(profileId);
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    @Override
+    public void postMigrateDatabase6101CertificateProfiles(final List<Integer> certificateProfileIds) {
+        for (final Integer profileId : certificateProfileIds) {
+            final CertificateProfile certProfile = certProfileSession.getCertificateProfile(profileId);
             final String certProfileName = certProfileSession.getCertificateProfileName(profileId);
+            if (certProfile == null || certProfileName == null) {
+                continue; // Removed since the post-upgrade started
+            }
             certProfile.removeLegacyCtData();
             try {
                 certProfileSession.changeCertificateProfile(authenticationToken, certProfileName, certProfile);
@@ -1562,10 +1598,73 @@ public class UpgradeSessionBean implements UpgradeSessionLocal, UpgradeSessionRe
                 throw new IllegalStateException("Always allow token was denied access.", e);
             }
         }
-        log.info("Post upgrade to 6.10.1 complete.");
+    }
+
+    /**
+     * EJBCA 7.0.1: Fills in the approvalProfileId and approvalStep columns of the approval requests that were stored before
+     * the columns were added, so that approval searches do not have to decode them.
+     */
+    private boolean postMigrateDatabase701() {
+        log.info("Starting post upgrade to 7.0.1.");
+        final ChunkedMigration migration = createChunkedMigration();
+        final List<Integer> approvalDataIds = approvalSession.findIdsWithoutApprovalProfileId();
+        final boolean ret = migration.run("7.0.1", approvalDataIds, new ChunkedMigration.ChunkTask<Integer>() {
+            @Override
+            public void migrate(final List<Integer> chunk) {
+                upgradeSession.postMigrateDatabase701ApprovalData(chunk);
+            }
+        });
+        if (!ret) {
+            return false;
+        }
+        clearMigrationCheckpoint("7.0.1");
+        log.info("Post upgrade to 7.0.1 complete.");
         return true;
     }
 
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    @Override
+    public void postMigrateDatabase701ApprovalData(final List<Integer> approvalDataIds) {
+        for (final Integer approvalDataId : approvalDataIds) {
+            approvalSession.updateApprovalProfileColumns(approvalDataId);
+        }
+    }
+
+    /** @return a migration engine that records its progress in GlobalUpgradeConfiguration and in the UpgradeStatusSingleton */
+    private ChunkedMigration createChunkedMigration() {
+        return new ChunkedMigration(EjbcaConfiguration.getPostUpgradeWorkers(), EjbcaConfiguration.getPostUpgradeChunkSize(),
+                new ChunkedMigration.Checkpoint() {
+                    @Override
+                    public Set<String> getCompletedChunks(final String step) {
+                        return getGlobalUpgradeConfiguration().getMigrationCheckpoint(step);
+                    }
+
+                    @Override
+                    public void chunkCompleted(final String step, final String chunkId) {
+                        upgradeSession.addMigrationCheckpoint(step, chunkId);
+                    }
+                }, new ChunkedMigration.ProgressListener() {
+                    @Override
+                    public void progress(final MigrationProgress progress) {
+                        upgradeStatusSingleton.setMigrationProgress(progress);
+                    }
+                });
+    }
+
+    @TransactionAttribute(TransactionAttributeType.REQUIRES_NEW)
+    @Override
+    public void addMigrationCheckpoint(final String step, final String chunkId) {
+        final GlobalUpgradeConfiguration guc = getGlobalUpgradeConfiguration();
+        guc.addMigrationCheckpoint(step, chunkId);
+        setGlobalUpgradeConfiguration(guc);
+    }
+
+    private void clearMigrationCheckpoint(final String step) {
+        final GlobalUpgradeConfiguration guc = getGlobalUpgradeConfiguration();
+        guc.clearMigrationCheckpoint(step);
+        setGlobalUpgradeConfiguration(guc);
+    }
+
 
     @SuppressWarnings("deprecation")
     private boolean postMigrateDatabase680() {
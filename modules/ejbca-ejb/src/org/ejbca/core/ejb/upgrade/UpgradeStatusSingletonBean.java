@@ -75,6 +75,7 @@ public class UpgradeStatusSingletonBean implements UpgradeStatusSingletonLocal {
     };
 
     private AtomicBoolean postUpgradeInProgress = new AtomicBoolean(false);
+    private volatile MigrationProgress migrationProgress = null;
 
     /** Fixed size list (dropping oldest additions when running out of space) to prevent all memory from being consumed if attached process never detaches. */
     private List<LoggingEvent> logged = new LinkedList<LoggingEvent>() {
@@ -103,6 +104,7 @@ public class UpgradeStatusSingletonBean implements UpgradeStatusSingletonLocal {
     @Override
     public boolean setPostUpgradeInProgressIfDifferent(boolean newValue) {
         logged.clear();
+        migrationProgress = null;
         return this.postUpgradeInProgress.compareAndSet(!newValue, newValue);
     }
     
@@ -126,4 +128,14 @@ public class UpgradeStatusSingletonBean implements UpgradeStatusSingletonLocal {
         log.removeAppender(appender);
         
     }
+
+    @Override
+    public MigrationProgress getMigrationProgress() {
+        return migrationProgress;
+    }
+
+    @Override
+    public void setMigrationProgress(final MigrationProgress migrationProgress) {
+        this.migrationProgress = migrationProgress;
+    }
 }
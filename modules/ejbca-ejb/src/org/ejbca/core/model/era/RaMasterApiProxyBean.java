@@ -1947,6 +1947,68 @@ public class RaMasterApiProxyBean implements RaMasterApiProxyBeanLocal {
         return mergedResult;
     }
 
+    /**
+     * Searches the backends one after the other, in the same order every time, and fills up the page from the next backend when
+     * one has no more end entities. The pages of the backends are not merged, since the position of a username in the order of one
+     * database can not be compared with the order of another, so the continuation token keeps the position in each backend.
+     * A backend that is not available is skipped for the rest of the search, in the same way as in
+     * {@link #findUserWS(AuthenticationToken, UserMatch, int)}.
+     */
+    @Override
+    public RaEndEntityPage findUserWSPage(final AuthenticationToken authenticationToken, final UserMatch usermatch, final int pageSize,
+            final String continuationToken) throws AuthorizationDeniedException, IllegalQueryException, EjbcaException, EndEntityProfileNotFoundException {
+        final String[] positions;
+        try {
+            positions = continuationToken == null ? new String[raMasterApisLocalFirst.length]
+                    : RaContinuationToken.decodeBackendPositions(continuationToken, raMasterApisLocalFirst.length);
+        } catch (IllegalArgumentException e) {
+            throw new EjbcaException(ErrorCode.FIELD_VALUE_NOT_VALID, e.getMessage());
+        }
+        final List<UserDataVOWS> endEntities = new ArrayList<>();
+        final Set<String> usernames = new HashSet<>();
+        EndEntityProfileNotFoundException eeProfileNotFoundException = null;
+        boolean oneSucceeded = false;
+        for (int i = 0; i < raMasterApisLocalFirst.length && endEntities.size() < pageSize; i++) {
+            if (RaContinuationToken.BACKEND_DONE.equals(positions[i])) {
+                continue;
+            }
+            final RaMasterApi raMasterApi = raMasterApisLocalFirst[i];
+            // Unless the backend returns a continuation token, it is done
+            final String position = positions[i];
+            positions[i] = RaContinuationToken.BACKEND_DONE;
+            if (raMasterApi.isBackendAvailable() && raMasterApi.getApiVersion() >= 7) {
+                try {
+                    final RaEndEntityPage page = raMasterApi.findUserWSPage(authenticationToken, usermatch, pageSize - endEntities.size(), position);
+                    for (final UserDataVOWS endEntity : page.getEndEntities()) {
+                        if (usernames.add(endEntity.getUsername())) {
+                            endEntities.add(endEntity);
+                        }
+                    }
+                    if (page.getContinuationToken() != null) {
+                        positions[i] = page.getContinuationToken();
+                    }
+                    oneSucceeded = true;
+                } catch (EndEntityProfileNotFoundException e) {
+                    if (log.isDebugEnabled()) {
+                        log.debug("End entity profile not found on this peer. " + e.getMessage());
+                    }
+                    eeProfileNotFoundException = e;
+                } catch (UnsupportedOperationException | RaMasterBackendUnavailableException e) {
+                    // Just try next implementation
+                }
+            }
+        }
+        if (!oneSucceeded && eeProfileNotFoundException != null) {
+            throw eeProfileNotFoundException;
+        }
+        for (final String position : positions) {
+            if (!RaContinuationToken.BACKEND_DONE.equals(position)) {
+                return new RaEndEntityPage(endEntities, RaContinuationToken.encodeBackendPositions(positions));
+            }
+        }
+        return new RaEndEntityPage(endEntities, null);
+    }
+
     @Override
     public int getPublisherQueueLength(AuthenticationToken authenticationToken, String name) throws AuthorizationDeniedException, PublisherDoesntExistsException {
         PublisherDoesntExistsException publisherDoesntExistsException = null;
@@ -2239,6 +2301,30 @@ public class RaMasterApiProxyBean implements RaMasterApiProxyBeanLocal {
         return ret;
     }
 
+    @Override
+    public RaCertificatePage getCertificatesByExpirationTimePage(final AuthenticationToken authenticationToken, final long days, final int pageSize,
+            final String continuationToken) throws AuthorizationDeniedException, EjbcaException {
+        final List<RaCertificatePage> pages = new ArrayList<>();
+        AuthorizationDeniedException authorizationDeniedException = null;
+        for (final RaMasterApi raMasterApi : raMasterApisLocalFirst) {
+            if (raMasterApi.isBackendAvailable() && raMasterApi.getApiVersion() >= 7) {
+                try {
+                    pages.add(raMasterApi.getCertificatesByExpirationTimePage(authenticationToken, days, pageSize, continuationToken));
+                } catch (AuthorizationDeniedException e) {
+                    log.debug("Authorization was denied in getCertificatesByExpirationTimePage", e);
+                    authorizationDeniedException = e;
+                } catch (UnsupportedOperationException | RaMasterBackendUnavailableException e) {
+                    // Just try next implementation
+                }
+            }
+        }
+        if (pages.isEmpty() && authorizationDeniedException != null) {
+            throw authorizationDeniedException;
+        }
+        // All backends were asked for the same page, so the pages are merged instead of filling up from the next backend
+        return pages.size() == 1 ? pages.get(0) : RaCertificatePage.merge(pages, pageSize);
+    }
+
     @Override
     public Collection<CertificateWrapper> getCertificatesByExpirationTimeAndType(AuthenticationToken authenticationToken, long days, int certificateType, int maxNumberOfResults)
             throws AuthorizationDeniedException, EjbcaException {
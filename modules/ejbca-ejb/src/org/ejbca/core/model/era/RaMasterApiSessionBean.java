@@ -90,6 +90,7 @@ import org.cesecore.certificates.ca.SignRequestSignatureException;
 import org.cesecore.certificates.certificate.CertificateConstants;
 import org.cesecore.certificates.certificate.CertificateCreateException;
 import org.cesecore.certificates.certificate.CertificateCreateSessionLocal;
+import org.cesecore.certificates.certificate.CertificateData;
 import org.cesecore.certificates.certificate.CertificateDataWrapper;
 import org.cesecore.certificates.certificate.CertificateRevokeException;
 import org.cesecore.certificates.certificate.CertificateStatus;
@@ -231,6 +232,13 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
     private static final Logger log = Logger.getLogger(RaMasterApiSessionBean.class);
     private static final InternalEjbcaResources intres = InternalEjbcaResources.getInstance();
 
+    /** Number of approvals fetched at a time when searching for approval requests */
+    private static final int APPROVAL_SEARCH_PAGE_SIZE = 100;
+    /** Maximum number of approval requests decoded by a search, which is also the maximum number of results */
+    private static final int APPROVAL_SEARCH_MAX_DECODED = 100;
+    /** Maximum number of approvals checked by a search, by their status and expire date, including those that are not decoded */
+    private static final int APPROVAL_SEARCH_MAX_CHECKED = 1000;
+
     @EJB
     private AccessTreeUpdateSessionLocal accessTreeUpdateSession;
     @EJB
@@ -334,7 +342,7 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
      * <tr><th>4<td>=<td>6.14.0
      * <tr><th>4<td>=<td>6.15.0
      */
-    private static final int RA_MASTER_API_VERSION = 6; // v5 = 6.15.0, v6 = 7.0.0
+    private static final int RA_MASTER_API_VERSION = 7; // v5 = 6.15.0, v6 = 7.0.0, v7 = 7.1.0
 
     /** Cached value of an active CA, so we don't have to list through all CAs every time as this is a critical path executed every time */
     private int activeCaIdCache = -1;
@@ -858,52 +866,75 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
             return response; // not searching for anything. return empty response
         }
 
-        final List<ApprovalDataVO> approvals;
+        final String endEntityProfileAuthorizationString;
+        final String caAuthorizationString;
         try {
-            String endEntityProfileAuthorizationString = getEndEntityProfileAuthorizationString(authenticationToken, AccessRulesConstants.APPROVE_END_ENTITY);
+            endEntityProfileAuthorizationString = getEndEntityProfileAuthorizationString(authenticationToken, AccessRulesConstants.APPROVE_END_ENTITY);
             RAAuthorization raAuthorization = new RAAuthorization(authenticationToken, globalConfigurationSession,
                     authorizationSession, caSession, endEntityProfileSession);
-            approvals = approvalSession.queryByStatus(request.isSearchingWaitingForMe() || request.isSearchingPending(), request.isSearchingHistorical(),
-                    request.isSearchingExpired(), request.getStartDate(), request.getEndDate(), request.getExpiresBefore(), 0, 100, raAuthorization.getCAAuthorizationString(), endEntityProfileAuthorizationString);
+            caAuthorizationString = raAuthorization.getCAAuthorizationString();
         } catch (AuthorizationDeniedException e) {
             // Not currently ever thrown by query()
             throw new IllegalStateException(e);
         }
         final Date now = new Date();
 
-        if (log.isDebugEnabled()) {
-            log.debug("Got " + approvals.size() + " approvals from Master API");
-        }
-
-        if (approvals.size() >= 100) {
-            response.setMightHaveMoreResults(true);
-        }
-
-        for (final ApprovalDataVO advo : approvals) {
-            final List<ApprovalDataText> requestDataLite = advo.getApprovalRequest().getNewRequestDataAsText(authenticationToken); // this method isn't guaranteed to return the full information
-            final RaEditableRequestData editableData = getRequestEditableData(authenticationToken, advo);
-            // We don't pass the end entity profile or certificate profile details for each approval request, when searching.
-            // That information is only needed when viewing the details or editing a request.
-            final RaApprovalRequestInfo ari = new RaApprovalRequestInfo(authenticationToken, caIdToNameMap.get(advo.getCAId()), null, null, null,
-                    advo, requestDataLite, editableData);
-
-            // Check if this approval should be included in the search results
-            boolean include = false;
-            if (request.getIncludeOtherAdmins()) {
-                include = (request.isSearchingWaitingForMe() && ari.isWaitingForFirstApproval(now)) ||
-                        (request.isSearchingPending() && ari.isInProgress(now)) ||
+        // Approvals that are not visible to the administrator are filtered out below, so continue with the next page
+        // of approvals until there are enough results, or the maximum number of approvals have been checked.
+        // Approvals are first checked by their status and expire date, and only decoded if they might be included.
+        ApprovalDataVO lastApproval = null;
+        int checkedApprovals = 0;
+        int decodedApprovals = 0;
+        while (true) {
+            final List<ApprovalDataVO> approvals = approvalSession.queryByStatusAfter(request.isSearchingWaitingForMe() || request.isSearchingPending(),
+                    request.isSearchingHistorical(), request.isSearchingExpired(), request.getStartDate(), request.getEndDate(), request.getExpiresBefore(),
+                    lastApproval, APPROVAL_SEARCH_PAGE_SIZE, caAuthorizationString, endEntityProfileAuthorizationString);
+            if (log.isDebugEnabled()) {
+                log.debug("Got " + approvals.size() + " approvals from Master API");
+            }
+            for (final ApprovalDataVO advo : approvals) {
+                if (!isApprovalSearchCandidate(request, advo, now)) {
+                    continue;
+                }
+                if (decodedApprovals >= APPROVAL_SEARCH_MAX_DECODED) {
+                    response.setMightHaveMoreResults(true);
+                    break;
+                }
+                decodedApprovals++;
+                final List<ApprovalDataText> requestDataLite = advo.getApprovalRequest().getNewRequestDataAsText(authenticationToken); // this method isn't guaranteed to return the full information
+                final RaEditableRequestData editableData = getRequestEditableData(authenticationToken, advo);
+                // We don't pass the end entity profile or certificate profile details for each approval request, when searching.
+                // That information is only needed when viewing the details or editing a request.
+                final RaApprovalRequestInfo ari = new RaApprovalRequestInfo(authenticationToken, caIdToNameMap.get(advo.getCAId()), null, null, null,
+                        advo, requestDataLite, editableData);
+
+                // Check if this approval should be included in the search results
+                boolean include = false;
+                if (request.getIncludeOtherAdmins()) {
+                    include = (request.isSearchingWaitingForMe() && ari.isWaitingForFirstApproval(now)) ||
+                            (request.isSearchingPending() && ari.isInProgress(now)) ||
+                            (request.isSearchingHistorical() && ari.isProcessed()) ||
+                            (request.isSearchingExpired() && ari.isExpired(now));
+                } else {
+                    include = (request.isSearchingWaitingForMe() && ari.isWaitingForMe(authenticationToken)) ||
+                        (request.isSearchingPending() && ari.isPending(authenticationToken)) ||
                         (request.isSearchingHistorical() && ari.isProcessed()) ||
                         (request.isSearchingExpired() && ari.isExpired(now));
-            } else {
-                include = (request.isSearchingWaitingForMe() && ari.isWaitingForMe(authenticationToken)) ||
-                    (request.isSearchingPending() && ari.isPending(authenticationToken)) ||
-                    (request.isSearchingHistorical() && ari.isProcessed()) ||
-                    (request.isSearchingExpired() && ari.isExpired(now));
-            }
+                }
 
-            if (include) {
-                response.getApprovalRequests().add(ari);
+                if (include) {
+                    response.getApprovalRequests().add(ari);
+                }
             }
+            checkedApprovals += approvals.size();
+            if (response.isMightHaveMoreResults() || approvals.size() < APPROVAL_SEARCH_PAGE_SIZE) {
+                break;
+            }
+            if (checkedApprovals >= APPROVAL_SEARCH_MAX_CHECKED) {
+                response.setMightHaveMoreResults(true);
+                break;
+            }
+            lastApproval = approvals.get(approvals.size() - 1);
         }
         if (log.isDebugEnabled()) {
             log.debug("Returning " + response.getApprovalRequests().size() + " approvals from search");
@@ -911,6 +942,30 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
         return response;
     }
 
+    /**
+     * Checks if an approval might be included in the results of an approval search, using only its status and expire date,
+     * which do not require the approval request or the approvals to be decoded. Mirrors the checks in RaApprovalRequestInfo.
+     *
+     * @return false if the approval is never included in the search results, true if it must be decoded to find out
+     */
+    static boolean isApprovalSearchCandidate(final RaRequestsSearchRequest request, final ApprovalDataVO advo, final Date now) {
+        final int status = advo.getStatus();
+        final boolean processed = status != ApprovalDataVO.STATUS_WAITINGFORAPPROVAL && status != ApprovalDataVO.STATUS_APPROVED &&
+                status != ApprovalDataVO.STATUS_EXPIRED && status != ApprovalDataVO.STATUS_EXPIREDANDNOTIFIED;
+        if (processed) {
+            return request.isSearchingHistorical();
+        }
+        final boolean expired = advo.getExpireDate().before(now);
+        if (request.isSearchingExpired() && expired) {
+            return true;
+        }
+        if (request.getIncludeOtherAdmins()) {
+            return (request.isSearchingWaitingForMe() || request.isSearchingPending()) && !expired;
+        }
+        return request.isSearchingPending() ||
+                (request.isSearchingWaitingForMe() && (status == ApprovalDataVO.STATUS_WAITINGFORAPPROVAL || status == ApprovalDataVO.STATUS_APPROVED));
+    }
+
     // TODO this method is copied from RAAuthorization because we couldn't use ComplexAccessControlSession.
     // We should find a way to use ComplexAccessControlSession here instead
     private String getEndEntityProfileAuthorizationString(AuthenticationToken authenticationToken, String endentityAccessRule) throws AuthorizationDeniedException {
@@ -2062,6 +2117,39 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
         return retval;
     }
 
+    @Override
+    public RaEndEntityPage findUserWSPage(final AuthenticationToken authenticationToken, final UserMatch usermatch, final int pageSize,
+            final String continuationToken) throws AuthorizationDeniedException, IllegalQueryException, EjbcaException, EndEntityProfileNotFoundException {
+        final String afterUsername = continuationToken == null ? null : decodeContinuationToken(continuationToken).getUsername();
+        if (continuationToken != null && afterUsername == null) {
+            throw new EjbcaException(ErrorCode.FIELD_VALUE_NOT_VALID, "Continuation token is not for an end entity search.");
+        }
+        try {
+            final org.ejbca.util.query.Query query = ejbcaWSHelperSession.convertUserMatch(authenticationToken, usermatch);
+            // Fetch one more row than asked for, to know if there is a next page
+            final List<EndEntityInformation> result = endEntityAccessSession.queryNextPage(authenticationToken, query, afterUsername, pageSize + 1,
+                    AccessRulesConstants.VIEW_END_ENTITY); // also checks authorization
+            final boolean morePages = result.size() > pageSize;
+            final List<UserDataVOWS> endEntities = new ArrayList<>(Math.min(result.size(), pageSize));
+            for (final EndEntityInformation userdata : result.subList(0, Math.min(result.size(), pageSize))) {
+                endEntities.add(ejbcaWSHelperSession.convertEndEntityInformation(userdata));
+            }
+            final String nextToken = morePages ? RaContinuationToken.forUsername(endEntities.get(pageSize - 1).getUsername()).encode() : null;
+            return new RaEndEntityPage(endEntities, nextToken);
+        } catch (CesecoreException e) {
+            // Convert cesecore exception to EjbcaException
+            throw new EjbcaException(e.getErrorCode(), e);
+        }
+    }
+
+    private RaContinuationToken decodeContinuationToken(final String continuationToken) throws EjbcaException {
+        try {
+            return RaContinuationToken.decode(continuationToken);
+        } catch (IllegalArgumentException e) {
+            throw new EjbcaException(ErrorCode.FIELD_VALUE_NOT_VALID, e.getMessage());
+        }
+    }
+
     @Override
     public int getPublisherQueueLength(AuthenticationToken authenticationToken, String name) throws AuthorizationDeniedException, PublisherDoesntExistsException {
         final int id = publisherSession.getPublisherId(name);
@@ -2373,6 +2461,36 @@ public class RaMasterApiSessionBean implements RaMasterApiSessionLocal {
         return EJBTools.wrapCertCollection(certificateStoreSession.findExpiringCertificates(findDate, maxNumberOfResults, offset));
     }
 
+    @Override
+    public RaCertificatePage getCertificatesByExpirationTimePage(final AuthenticationToken authenticationToken, final long days, final int pageSize,
+            final String continuationToken) throws AuthorizationDeniedException, EjbcaException {
+        if (!authorizationSession.isAuthorizedNoLogging(authenticationToken, StandardRules.CAFUNCTIONALITY.resource() + "/view_certificate")) {
+            final String msg = intres.getLocalizedMessage("authorization.notauthorizedtoresource",
+                    StandardRules.CAFUNCTIONALITY.resource() + "/view_certificate", null);
+            throw new AuthorizationDeniedException(msg);
+        }
+        final RaContinuationToken after = continuationToken == null ? RaContinuationToken.forCertificate(0, "") : decodeContinuationToken(continuationToken);
+        if (after.getFingerprint() == null) {
+            throw new EjbcaException(ErrorCode.FIELD_VALUE_NOT_VALID, "Continuation token is not for a certificate search.");
+        }
+        // Fetch one more row than asked for, to know if there is a next page
+        final List<CertificateDataWrapper> result = certificateStoreSession.getCertificateDatasByExpireDate(getDate(days), after.getExpireDate(),
+                after.getFingerprint(), pageSize + 1);
+        final boolean morePages = result.size() > pageSize;
+        final List<CertificateWrapper> certificates = new ArrayList<>(Math.min(result.size(), pageSize));
+        CertificateData last = null;
+        for (final CertificateDataWrapper certificateDataWrapper : result.subList(0, Math.min(result.size(), pageSize))) {
+            last = certificateDataWrapper.getCertificateData();
+            if (certificateDataWrapper.getCertificate() == null) {
+                log.debug("Skipping CertificateData with fingerprint '" + last.getFingerprint() + "' since it has no stored certificate.");
+            } else {
+                certificates.add(EJBTools.wrap(certificateDataWrapper.getCertificate()));
+            }
+        }
+        final String nextToken = morePages ? RaContinuationToken.forCertificate(last.getExpireDate(), last.getFingerprint()).encode() : null;
+        return new RaCertificatePage(certificates, nextToken);
+    }
+
     @Override
     public Collection<CertificateWrapper> getCertificatesByExpirationTimeAndType(AuthenticationToken authenticationToken, long days, int certificateType, int maxNumberOfResults)
             throws AuthorizationDeniedException, EjbcaException {
@@ -114,6 +114,44 @@ public class CrmfKeyUpdateHandler extends BaseCmpMessageHandler implements ICmpM
      */
     @Override
     public ResponseMessage handleMessage(final BaseCmpMessage cmpRequestMessage, final boolean authenticated) {
+        if (cmpRequestMessage instanceof CrmfRequestMessage && ((CrmfRequestMessage) cmpRequestMessage).getCertReqMsgCount() > 1) {
+            return handleMultipleRequests((CrmfRequestMessage) cmpRequestMessage, authenticated);
+        }
+        return handleKeyUpdateRequest(cmpRequestMessage, authenticated);
+    }
+
+    /**
+     * Handles a key update request with several certificate requests (CertReqMsg). The end entity is identified by the old
+     * certificate, so only the first certificate request is processed. The other certificate requests are rejected, each with
+     * its own CertResponse, so that the client is not left waiting for certificates that will never be issued.
+     */
+    private ResponseMessage handleMultipleRequests(final CrmfRequestMessage crmfreq, final boolean authenticated) {
+        final List<CrmfRequestMessage> requests = crmfreq.getCertReqMsgRequests();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Handling CMP key update request with " + requests.size() + " certificate requests, only the first one is processed");
+        }
+        final CmpMultiCertResponseMessage resp = new CmpMultiCertResponseMessage(crmfreq);
+        final ResponseMessage firstResponse = handleKeyUpdateRequest(requests.get(0), authenticated);
+        if (firstResponse == null) {
+            // Fatal error, already logged
+            return null;
+        }
+        resp.addResponse(requests.get(0).getRequestId(), firstResponse);
+        for (final CrmfRequestMessage request : requests.subList(1, requests.size())) {
+            final String errMsg = "Only one certificate request is allowed in a key update request, rejecting certReqId " + request.getRequestId();
+            LOG.info(errMsg);
+            resp.addResponse(request.getRequestId(), CmpMessageHelper.createUnprotectedErrorMessage(request, FailInfo.BAD_REQUEST, errMsg));
+        }
+        try {
+            resp.create();
+        } catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchProviderException e) {
+            LOG.error(INTRES.getLocalizedMessage(CMP_ERRORGENERAL, e.getMessage()), e);
+            return CmpMessageHelper.createUnprotectedErrorMessage(crmfreq, FailInfo.SYSTEM_UNAVAILABLE, e.getMessage());
+        }
+        return resp;
+    }
+
+    private ResponseMessage handleKeyUpdateRequest(final BaseCmpMessage cmpRequestMessage, final boolean authenticated) {
         if (LOG.isTraceEnabled()) {
             LOG.trace(">handleMessage");
         }
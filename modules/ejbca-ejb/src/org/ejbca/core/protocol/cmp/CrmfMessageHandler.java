@@ -118,6 +118,10 @@ public class CrmfMessageHandler extends BaseCmpMessageHandler implements ICmpMes
     private final AuthorizationSession authorizationSession;
     private final WebAuthenticationProviderSessionLocal authenticationProviderSession;
     private final EndEntityManagementSession endEntityManagementSession;
+    /** True while the certificate requests in a PKIMessage with several CertReqMsg are processed */
+    private boolean processingMultipleRequests = false;
+    /** The authentication module that verified a PKIMessage with several CertReqMsg in RA mode, so the message is only verified once */
+    private ICMPAuthenticationModule multipleRequestsAuthenticationModule = null;
 
     /** Construct the message handler. */
     public CrmfMessageHandler(final AuthenticationToken authenticationToken, final CmpConfiguration cmpConfiguration, final String configAlias, final EjbBridgeSessionLocal ejbBridgeSession,
@@ -194,7 +198,57 @@ public class CrmfMessageHandler extends BaseCmpMessageHandler implements ICmpMes
     }
     
     @Override
-	public ResponseMessage handleMessage(final BaseCmpMessage cmpRequestMessage, final boolean authenticated) {
+    public ResponseMessage handleMessage(final BaseCmpMessage cmpRequestMessage, final boolean authenticated) {
+        if (cmpRequestMessage instanceof CrmfRequestMessage && ((CrmfRequestMessage) cmpRequestMessage).getCertReqMsgCount() > 1) {
+            return handleMultipleRequests((CrmfRequestMessage) cmpRequestMessage, authenticated);
+        }
+        return handleSingleRequest(cmpRequestMessage, authenticated);
+    }
+
+    /**
+     * Handles a PKIMessage with several certificate requests (CertReqMsg). Each request is processed as a separate request message,
+     * in the same transaction, and the responses are combined into one response message that is protected once.
+     * In RA mode, the PKIMessage protection is verified once for all requests. In client mode, each request belongs to a separate
+     * end entity, which is verified separately.
+     */
+    private ResponseMessage handleMultipleRequests(final CrmfRequestMessage crmfreq, final boolean authenticated) {
+        final List<CrmfRequestMessage> requests = crmfreq.getCertReqMsgRequests();
+        if (LOG.isDebugEnabled()) {
+            LOG.debug("Handling CMP message with " + requests.size() + " certificate requests");
+        }
+        final CmpMultiCertResponseMessage resp = new CmpMultiCertResponseMessage(crmfreq);
+        processingMultipleRequests = true;
+        try {
+            for (final CrmfRequestMessage request : requests) {
+                final ResponseMessage requestResponse = handleSingleRequest(request, authenticated);
+                if (requestResponse == null) {
+                    // Fatal error, already logged
+                    return null;
+                }
+                resp.addResponse(request.getRequestId(), requestResponse);
+            }
+            // Protect the response with the RA shared secret even if no certificate was issued, in the same way as when one was
+            if (multipleRequestsAuthenticationModule instanceof HMACAuthenticationModule && StringUtils.equals(this.responseProt, "pbe")) {
+                final CmpPbeVerifyer verifyer = ((HMACAuthenticationModule) multipleRequestsAuthenticationModule).getCmpPbeVerifyer();
+                if (verifyer.getOwfOid() != null && verifyer.getMacOid() != null && verifyer.getLastUsedRaSecret() != null) {
+                    resp.setPbeParameters(CmpMessageHelper.getStringFromOctets(crmfreq.getHeader().getSenderKID()), verifyer.getLastUsedRaSecret(),
+                            verifyer.getOwfOid(), verifyer.getMacOid(), verifyer.getIterationCount());
+                }
+            }
+        } finally {
+            processingMultipleRequests = false;
+            multipleRequestsAuthenticationModule = null;
+        }
+        try {
+            resp.create();
+        } catch (InvalidKeyException | NoSuchAlgorithmException | NoSuchProviderException e) {
+            LOG.error(INTRES.getLocalizedMessage(CMP_ERRORGENERAL, e.getMessage()), e);
+            return CmpMessageHelper.createUnprotectedErrorMessage(crmfreq, FailInfo.SYSTEM_UNAVAILABLE, e.getMessage());
+        }
+        return resp;
+    }
+
+	private ResponseMessage handleSingleRequest(final BaseCmpMessage cmpRequestMessage, final boolean authenticated) {
 		if (LOG.isTraceEnabled()) {
 			LOG.trace(">handleMessage");
 		}
@@ -353,11 +407,18 @@ public class CrmfMessageHandler extends BaseCmpMessageHandler implements ICmpMes
         final VerifyPKIMessage messageVerifyer = new VerifyPKIMessage(cainfo, this.confAlias, admin, caSession, 
                 endEntityAccessSession, certStoreSession, authorizationSession, endEntityProfileSession, certificateProfileSession,
                 authenticationProviderSession, endEntityManagementSession, this.cmpConfiguration);
-        ICMPAuthenticationModule authenticationModule = messageVerifyer.getUsedAuthenticationModule(crmfreq.getPKIMessage(),  null,  authenticated);
-        if(authenticationModule == null) {
-            String errmsg = messageVerifyer.getErrorMessage();
-            LOG.info(errmsg);
-            return CmpMessageHelper.createUnprotectedErrorMessage(crmfreq, FailInfo.BAD_REQUEST, errmsg);
+        // All requests in a PKIMessage share the same protection, so it only has to be verified for the first request
+        ICMPAuthenticationModule authenticationModule = multipleRequestsAuthenticationModule;
+        if (authenticationModule == null) {
+            authenticationModule = messageVerifyer.getUsedAuthenticationModule(crmfreq.getPKIMessage(),  null,  authenticated);
+            if(authenticationModule == null) {
+                String errmsg = messageVerifyer.getErrorMessage();
+                LOG.info(errmsg);
+                return CmpMessageHelper.createUnprotectedErrorMessage(crmfreq, FailInfo.BAD_REQUEST, errmsg);
+            }
+            if (processingMultipleRequests) {
+                multipleRequestsAuthenticationModule = authenticationModule;
+            }
         }
         
         try {
@@ -35,6 +35,7 @@ import org.cesecore.certificates.certificateprofile.CertificateProfileData;
 import org.cesecore.certificates.crl.CRLData;
 import org.cesecore.certificates.endentity.EndEntityInformation;
 import org.cesecore.certificates.endentity.ExtendedInformation;
+import org.cesecore.configuration.CacheInvalidationData;
 import org.cesecore.configuration.GlobalConfigurationData;
 import org.cesecore.internal.UpgradeableDataHashMap;
 import org.cesecore.keybind.InternalKeyBindingData;
@@ -181,6 +182,8 @@ public class DatabaseSchemaTest {
         ApprovalData entity = new ApprovalData();
         entity.setApprovalid(0);
         entity.setApprovaldata(CLOB_1MiB);
+        entity.setApprovalprofileid(0);
+        entity.setApprovalstep(0);
         entity.setApprovaltype(0);
         entity.setCaid(0);
         entity.setEndentityprofileid(0);
@@ -276,6 +279,22 @@ public class DatabaseSchemaTest {
         LOG.trace("<testCAData");
     }
 
+    @Test
+    public void testCacheInvalidationData() {
+        LOG.trace(">testCacheInvalidationData");
+        logMemStats();
+        CacheInvalidationData entity = new CacheInvalidationData();
+        entity.setCacheName(VARCHAR_250B);
+        entity.setEntryKey(VARCHAR_250B);
+        entity.setId(VARCHAR_250B);
+        entity.setNodeId(VARCHAR_250B);
+        entity.setRowProtection(CLOB_10KiB);
+        entity.setRowVersion(0);
+        entity.setTimeStamp(0L);
+        storeAndRemoveEntity(entity);
+        LOG.trace("<testCacheInvalidationData");
+    }
+
     @Test
     public void testCertificateProfileData() {
         LOG.trace(">testCertificateProfileData");
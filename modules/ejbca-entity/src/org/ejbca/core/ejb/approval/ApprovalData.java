@@ -13,11 +13,7 @@
 
 package org.ejbca.core.ejb.approval;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
-import java.io.ObjectInputStream;
 import java.io.Serializable;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
 
@@ -31,7 +27,6 @@ import javax.persistence.Transient;
 import org.apache.log4j.Logger;
 import org.cesecore.dbprotection.ProtectedData;
 import org.cesecore.dbprotection.ProtectionStringBuilder;
-import org.cesecore.util.Base64;
 import org.ejbca.core.model.approval.Approval;
 import org.ejbca.core.model.approval.ApprovalDataVO;
 import org.ejbca.core.model.approval.ApprovalRequest;
@@ -51,6 +46,8 @@ public class ApprovalData extends ProtectedData implements Serializable {
 	private int id; // the unique id stored in the database, also referred to as requestID
 	private int approvalId; // a hash of the request, referred to as approvalID
 	private int approvalType;
+	private Integer approvalProfileId;
+	private Integer approvalStep;
 	private int endEntityProfileId;
 	private int cAId;
 	private String reqAdminCertIssuerDn;
@@ -110,6 +107,28 @@ public class ApprovalData extends ProtectedData implements Serializable {
 	 * constants ex: ApprovalDataVO.APPROVALTYPE_ADDUSER
 	 */
 	public void setApprovaltype(int approvalType) { this.approvalType = approvalType; }
+
+	/**
+	 * The id of the approval profile of the request, copied from the request when it is stored so that requests can be
+	 * searched for without decoding them. Null for requests stored before this column was added, until they are updated.
+	 */
+	//@Column
+	public Integer getApprovalprofileid() { return approvalProfileId; }
+	/**
+	 * The id of the approval profile of the request, or null if the request has no approval profile
+	 */
+	public void setApprovalprofileid(Integer approvalProfileId) { this.approvalProfileId = approvalProfileId; }
+
+	/**
+	 * The ordinal (starting at 1) of the approval step that is being evaluated, updated when approvals are added.
+	 * Null for requests stored before this column was added, until they are updated.
+	 */
+	//@Column
+	public Integer getApprovalstep() { return approvalStep; }
+	/**
+	 * The ordinal (starting at 1) of the approval step that is being evaluated, or null if it is not known
+	 */
+	public void setApprovalstep(Integer approvalStep) { this.approvalStep = approvalStep; }
 	
 	/**
 	 * For RA specific approval requests should the related end entity profile id be specified
@@ -284,13 +303,17 @@ s	 */
         // rowVersion is automatically updated by JPA, so it's not important, it is only used for optimistic locking
         build.append(getId()).append(getApprovalid()).append(getApprovaltype()).append(getEndentityprofileid()).append(getCaid()).append(getReqadmincertissuerdn());
         build.append(getReqadmincertsn()).append(getStatus()).append(getApprovaldata()).append(getRequestdata()).append(getRequestdate()).append(getExpiredate()).append(getRemainingapprovals());
+        if (version >= 3) {
+            // In version 3 the approvalProfileId and approvalStep columns were added
+            build.append(String.valueOf(getApprovalprofileid())).append(String.valueOf(getApprovalstep()));
+        }
         return build.toString();
     }
 
     @Transient
     @Override
     protected int getProtectVersion() {
-        return 2;
+        return 3;
     }
 
     @PrePersist
@@ -319,49 +342,22 @@ s	 */
     //
     
     /**
-     * @return a value object representation of this entity bean
+     * @return a value object representation of this entity bean. The approvals and the approval request are decoded when they are first used.
      */
     @Transient
     public ApprovalDataVO getApprovalDataVO() {
         hasRequestOrApprovalExpired();
-        ApprovalDataVO result = new ApprovalDataVO(getId(), getApprovalid(), getApprovaltype(), getEndentityprofileid(), getCaid(), getReqadmincertissuerdn(),
-                getReqadmincertsn(), getStatus(), getApprovals(), getApprovalRequest(), getRequestDate(), getExpireDate());
-        return result;
+        return new ApprovalDataVO(getId(), getApprovalid(), getApprovaltype(), getEndentityprofileid(), getCaid(), getReqadmincertissuerdn(),
+                getReqadmincertsn(), getStatus(), getApprovaldata(), getRequestdata(), getRequestDate(), getExpireDate());
     }
     
     @Transient
     public ApprovalRequest getApprovalRequest() {
-        ApprovalRequest retval = null;      
-        try {
-            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(Base64.decode(getRequestdata().getBytes())));
-            retval= (ApprovalRequest) ois.readObject();
-        } catch (IOException e) {
-            log.error("Error building approval request.",e);
-            throw new IllegalStateException(e);
-        } catch (ClassNotFoundException e) {
-            log.error("Error building approval request.",e);
-            throw new IllegalStateException(e);
-        }
-        return retval;
+        return ApprovalDataVO.decodeApprovalRequest(getRequestdata());
     }
     
     @Transient
     public List<Approval> getApprovals() {
-        List<Approval> retval = new ArrayList<Approval>();
-        try{
-            ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(Base64.decode(getApprovaldata().getBytes())));
-            int size = ois.readInt();
-            for(int i=0;i<size;i++){
-                Approval next = (Approval) ois.readObject();
-                retval.add(next);
-            }
-        } catch (IOException e) {
-            log.error("Error building approvals.",e);
-            throw new IllegalStateException(e);
-        } catch (ClassNotFoundException e) {
-            log.error("Error building approvals.",e);
-            throw new IllegalStateException(e);
-        }
-        return retval;
+        return ApprovalDataVO.decodeApprovals(getApprovaldata());
     }
 }
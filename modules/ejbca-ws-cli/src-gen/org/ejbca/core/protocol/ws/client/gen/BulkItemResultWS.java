@@ -0,0 +1,114 @@
+
+package org.ejbca.core.protocol.ws.client.gen;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlType;
+
+
+/**
+ * <p>Java class for bulkItemResultWS complex type.
+ * 
+ * <p>The following schema fragment specifies the expected content contained within this class.
+ * 
+ * <pre>
+ * &lt;complexType name="bulkItemResultWS">
+ *   &lt;complexContent>
+ *     &lt;restriction base="{http://www.w3.org/2001/XMLSchema}anyType">
+ *       &lt;sequence>
+ *         &lt;element name="certificateResponse" type="{http://ws.protocol.core.ejbca.org/}certificateResponse" minOccurs="0"/>
+ *         &lt;element name="errorCode" type="{http://ws.protocol.core.ejbca.org/}errorCode" minOccurs="0"/>
+ *         &lt;element name="errorMessage" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *       &lt;/sequence>
+ *     &lt;/restriction>
+ *   &lt;/complexContent>
+ * &lt;/complexType>
+ * </pre>
+ * 
+ * 
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "bulkItemResultWS", propOrder = {
+    "certificateResponse",
+    "errorCode",
+    "errorMessage"
+})
+public class BulkItemResultWS {
+
+    protected CertificateResponse certificateResponse;
+    protected ErrorCode errorCode;
+    protected String errorMessage;
+
+    /**
+     * Gets the value of the certificateResponse property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link CertificateResponse }
+     *     
+     */
+    public CertificateResponse getCertificateResponse() {
+        return certificateResponse;
+    }
+
+    /**
+     * Sets the value of the certificateResponse property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link CertificateResponse }
+     *     
+     */
+    public void setCertificateResponse(CertificateResponse value) {
+        this.certificateResponse = value;
+    }
+
+    /**
+     * Gets the value of the errorCode property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link ErrorCode }
+     *     
+     */
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * Sets the value of the errorCode property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link ErrorCode }
+     *     
+     */
+    public void setErrorCode(ErrorCode value) {
+        this.errorCode = value;
+    }
+
+    /**
+     * Gets the value of the errorMessage property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    /**
+     * Sets the value of the errorMessage property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setErrorMessage(String value) {
+        this.errorMessage = value;
+    }
+
+}
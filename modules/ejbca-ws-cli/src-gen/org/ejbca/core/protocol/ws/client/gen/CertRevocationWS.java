@@ -0,0 +1,106 @@
+
+package org.ejbca.core.protocol.ws.client.gen;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlType;
+
+
+/**
+ * <p>Java class for certRevocationWS complex type.
+ * 
+ * <p>The following schema fragment specifies the expected content contained within this class.
+ * 
+ * <pre>
+ * &lt;complexType name="certRevocationWS">
+ *   &lt;complexContent>
+ *     &lt;restriction base="{http://www.w3.org/2001/XMLSchema}anyType">
+ *       &lt;sequence>
+ *         &lt;element name="certificateSN" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *         &lt;element name="issuerDN" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *         &lt;element name="reason" type="{http://www.w3.org/2001/XMLSchema}int"/>
+ *       &lt;/sequence>
+ *     &lt;/restriction>
+ *   &lt;/complexContent>
+ * &lt;/complexType>
+ * </pre>
+ * 
+ * 
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "certRevocationWS", propOrder = {
+    "certificateSN",
+    "issuerDN",
+    "reason"
+})
+public class CertRevocationWS {
+
+    protected String certificateSN;
+    protected String issuerDN;
+    protected int reason;
+
+    /**
+     * Gets the value of the certificateSN property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getCertificateSN() {
+        return certificateSN;
+    }
+
+    /**
+     * Sets the value of the certificateSN property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setCertificateSN(String value) {
+        this.certificateSN = value;
+    }
+
+    /**
+     * Gets the value of the issuerDN property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getIssuerDN() {
+        return issuerDN;
+    }
+
+    /**
+     * Sets the value of the issuerDN property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setIssuerDN(String value) {
+        this.issuerDN = value;
+    }
+
+    /**
+     * Gets the value of the reason property.
+     * 
+     */
+    public int getReason() {
+        return reason;
+    }
+
+    /**
+     * Sets the value of the reason property.
+     * 
+     */
+    public void setReason(int value) {
+        this.reason = value;
+    }
+
+}
@@ -0,0 +1,160 @@
+
+package org.ejbca.core.protocol.ws.client.gen;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlType;
+
+
+/**
+ * <p>Java class for certificateRequestWS complex type.
+ * 
+ * <p>The following schema fragment specifies the expected content contained within this class.
+ * 
+ * <pre>
+ * &lt;complexType name="certificateRequestWS">
+ *   &lt;complexContent>
+ *     &lt;restriction base="{http://www.w3.org/2001/XMLSchema}anyType">
+ *       &lt;sequence>
+ *         &lt;element name="hardTokenSN" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *         &lt;element name="requestData" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *         &lt;element name="requestType" type="{http://www.w3.org/2001/XMLSchema}int"/>
+ *         &lt;element name="responseType" type="{http://www.w3.org/2001/XMLSchema}string" minOccurs="0"/>
+ *         &lt;element name="userData" type="{http://ws.protocol.core.ejbca.org/}userDataVOWS" minOccurs="0"/>
+ *       &lt;/sequence>
+ *     &lt;/restriction>
+ *   &lt;/complexContent>
+ * &lt;/complexType>
+ * </pre>
+ * 
+ * 
+ */
+@XmlAccessorType(XmlAccessType.FIELD)
+@XmlType(name = "certificateRequestWS", propOrder = {
+    "hardTokenSN",
+    "requestData",
+    "requestType",
+    "responseType",
+    "userData"
+})
+public class CertificateRequestWS {
+
+    protected String hardTokenSN;
+    protected String requestData;
+    protected int requestType;
+    protected String responseType;
+    protected UserDataVOWS userData;
+
+    /**
+     * Gets the value of the hardTokenSN property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getHardTokenSN() {
+        return hardTokenSN;
+    }
+
+    /**
+     * Sets the value of the hardTokenSN property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setHardTokenSN(String value) {
+        this.hardTokenSN = value;
+    }
+
+    /**
+     * Gets the value of the requestData property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getRequestData() {
+        return requestData;
+    }
+
+    /**
+     * Sets the value of the requestData property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setRequestData(String value) {
+        this.requestData = value;
+    }
+
+    /**
+     * Gets the value of the requestType property.
+     * 
+     */
+    public int getRequestType() {
+        return requestType;
+    }
+
+    /**
+     * Sets the value of the requestType property.
+     * 
+     */
+    public void setRequestType(int value) {
+        this.requestType = value;
+    }
+
+    /**
+     * Gets the value of the responseType property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link String }
+     *     
+     */
+    public String getResponseType() {
+        return responseType;
+    }
+
+    /**
+     * Sets the value of the responseType property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link String }
+     *     
+     */
+    public void setResponseType(String value) {
+        this.responseType = value;
+    }
+
+    /**
+     * Gets the value of the userData property.
+     * 
+     * @return
+     *     possible object is
+     *     {@link UserDataVOWS }
+     *     
+     */
+    public UserDataVOWS getUserData() {
+        return userData;
+    }
+
+    /**
+     * Sets the value of the userData property.
+     * 
+     * @param value
+     *     allowed object is
+     *     {@link UserDataVOWS }
+     *     
+     */
+    public void setUserData(UserDataVOWS value) {
+        this.userData = value;
+    }
+
+}
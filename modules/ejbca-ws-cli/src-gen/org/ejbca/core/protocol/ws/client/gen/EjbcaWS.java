@@ -61,6 +61,24 @@ public interface EjbcaWS {
         throws ApprovalException_Exception, AuthorizationDeniedException_Exception, CADoesntExistsException_Exception, EjbcaException_Exception, UserDoesntFullfillEndEntityProfile_Exception, WaitingForApprovalException_Exception
     ;
 
+    /**
+     * 
+     * @param arg0
+     * @return
+     *     returns java.util.List<org.ejbca.core.protocol.ws.client.gen.BulkItemResultWS>
+     * @throws AuthorizationDeniedException_Exception
+     * @throws EjbcaException_Exception
+     */
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "addOrEditUsers", targetNamespace = "http://ws.protocol.core.ejbca.org/", className = "org.ejbca.core.protocol.ws.client.gen.AddOrEditUsers")
+    @ResponseWrapper(localName = "addOrEditUsersResponse", targetNamespace = "http://ws.protocol.core.ejbca.org/", className = "org.ejbca.core.protocol.ws.client.gen.AddOrEditUsersResponse")
+    public List<BulkItemResultWS> addOrEditUsers(
+        @WebParam(name = "arg0", targetNamespace = "")
+        List<UserDataVOWS> arg0)
+        throws AuthorizationDeniedException_Exception, EjbcaException_Exception
+    ;
+
     /**
      * 
      * @param arg0
@@ -81,6 +99,32 @@ public interface EjbcaWS {
         throws AuthorizationDeniedException_Exception, EjbcaException_Exception, EndEntityProfileNotFoundException_Exception, IllegalQueryException_Exception
     ;
 
+    /**
+     * 
+     * @param arg2
+     * @param arg1
+     * @param arg0
+     * @return
+     *     returns org.ejbca.core.protocol.ws.client.gen.UserDataVOWSPage
+     * @throws EndEntityProfileNotFoundException_Exception
+     * @throws AuthorizationDeniedException_Exception
+     * @throws IllegalQueryException_Exception
+     * @throws EjbcaException_Exception
+     */
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "findUserPage", targetNamespace = "http://ws.protocol.core.ejbca.org/", className = "org.ejbca.core.protocol.ws.client.gen.FindUserPage")
+    @ResponseWrapper(localName = "findUserPageResponse", targetNamespace = "http://ws.protocol.core.ejbca.org/", className = "org.ejbca.core.protocol.ws.client.gen.FindUserPageResponse")
+    public UserDataVOWSPage findUserPage(
+        @WebParam(name = "arg0", targetNamespace = "")
+        UserMatch arg0,
+        @WebParam(name = "arg1", targetNamespace = "")
+        int arg1,
+        @WebParam(name = "arg2", targetNamespace = "")
+        String arg2)
+        throws AuthorizationDeniedException_Exception, EjbcaException_Exception, EndEntityProfileNotFoundException_Exception, IllegalQueryException_Exception
+    ;
+
     /**
      * 
      * @param arg1
@@ -284,6 +328,29 @@ public interface EjbcaWS {
         throws EjbcaException_Exception
     ;
 
+    /**
+     * 
+     * @param arg2
+     * @param arg1
+     * @param arg0
+     * @return
+     *     returns org.ejbca.core.protocol.ws.client.gen.CertificatePage
+     * @throws EjbcaException_Exception
+     */
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "getCertificatesByExpirationTimePage", targetNamespace = "http://ws.protocol.core.ejbca.org/", className = "org.ejbca.core.protocol.ws.client.gen.GetCertificatesByExpirationTimePage")
+    @ResponseWrapper(localName = "getCertificatesByExpirationTimePageResponse", targetNamespace = "http://ws.protocol.core.ejbca.org/", className = "org.ejbca.core.protocol.ws.client.gen.GetCertificatesByExpirationTimePageResponse")
+    public CertificatePage getCertificatesByExpirationTimePage(
+        @WebParam(name = "arg0", targetNamespace = "")
+        long arg0,
+        @WebParam(name = "arg1", targetNamespace = "")
+        int arg1,
+        @WebParam(name = "arg2", targetNamespace = "")
+        String arg2)
+        throws EjbcaException_Exception
+    ;
+
     /**
      * 
      * @param arg2
@@ -663,6 +730,24 @@ public interface EjbcaWS {
         throws AlreadyRevokedException_Exception, ApprovalException_Exception, AuthorizationDeniedException_Exception, CADoesntExistsException_Exception, EjbcaException_Exception, NotFoundException_Exception, WaitingForApprovalException_Exception
     ;
 
+    /**
+     * 
+     * @param arg0
+     * @return
+     *     returns java.util.List<org.ejbca.core.protocol.ws.client.gen.BulkItemResultWS>
+     * @throws AuthorizationDeniedException_Exception
+     * @throws EjbcaException_Exception
+     */
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "revokeCerts", targetNamespace = "http://ws.protocol.core.ejbca.org/", className = "org.ejbca.core.protocol.ws.client.gen.RevokeCerts")
+    @ResponseWrapper(localName = "revokeCertsResponse", targetNamespace = "http://ws.protocol.core.ejbca.org/", className = "org.ejbca.core.protocol.ws.client.gen.RevokeCertsResponse")
+    public List<BulkItemResultWS> revokeCerts(
+        @WebParam(name = "arg0", targetNamespace = "")
+        List<CertRevocationWS> arg0)
+        throws AuthorizationDeniedException_Exception, EjbcaException_Exception
+    ;
+
     /**
      * 
      * @param arg3
@@ -1329,6 +1414,24 @@ public interface EjbcaWS {
         throws ApprovalException_Exception, AuthorizationDeniedException_Exception, EjbcaException_Exception, NotFoundException_Exception, UserDoesntFullfillEndEntityProfile_Exception, WaitingForApprovalException_Exception
     ;
 
+    /**
+     * 
+     * @param arg0
+     * @return
+     *     returns java.util.List<org.ejbca.core.protocol.ws.client.gen.BulkItemResultWS>
+     * @throws AuthorizationDeniedException_Exception
+     * @throws EjbcaException_Exception
+     */
+    @WebMethod
+    @WebResult(targetNamespace = "")
+    @RequestWrapper(localName = "certificateRequests", targetNamespace = "http://ws.protocol.core.ejbca.org/", className = "org.ejbca.core.protocol.ws.client.gen.CertificateRequests")
+    @ResponseWrapper(localName = "certificateRequestsResponse", targetNamespace = "http://ws.protocol.core.ejbca.org/", className = "org.ejbca.core.protocol.ws.client.gen.CertificateRequestsResponse")
+    public List<BulkItemResultWS> certificateRequests(
+        @WebParam(name = "arg0", targetNamespace = "")
+        List<CertificateRequestWS> arg0)
+        throws AuthorizationDeniedException_Exception, EjbcaException_Exception
+    ;
+
     /**
      * 
      * @param arg3
@@ -160,6 +160,16 @@ public class ObjectFactory {
     private final static QName _CreateCRL_QNAME = new QName("http://ws.protocol.core.ejbca.org/", "createCRL");
     private final static QName _GetProfileResponseReturn_QNAME = new QName("", "return");
     private final static QName _UpdateCaCertArg1_QNAME = new QName("", "arg1");
+    private final static QName _CertificateRequests_QNAME = new QName("http://ws.protocol.core.ejbca.org/", "certificateRequests");
+    private final static QName _GetCertificatesByExpirationTimePageResponse_QNAME = new QName("http://ws.protocol.core.ejbca.org/", "getCertificatesByExpirationTimePageResponse");
+    private final static QName _FindUserPage_QNAME = new QName("http://ws.protocol.core.ejbca.org/", "findUserPage");
+    private final static QName _GetCertificatesByExpirationTimePage_QNAME = new QName("http://ws.protocol.core.ejbca.org/", "getCertificatesByExpirationTimePage");
+    private final static QName _FindUserPageResponse_QNAME = new QName("http://ws.protocol.core.ejbca.org/", "findUserPageResponse");
+    private final static QName _RevokeCertsResponse_QNAME = new QName("http://ws.protocol.core.ejbca.org/", "revokeCertsResponse");
+    private final static QName _CertificateRequestsResponse_QNAME = new QName("http://ws.protocol.core.ejbca.org/", "certificateRequestsResponse");
+    private final static QName _AddOrEditUsersResponse_QNAME = new QName("http://ws.protocol.core.ejbca.org/", "addOrEditUsersResponse");
+    private final static QName _RevokeCerts_QNAME = new QName("http://ws.protocol.core.ejbca.org/", "revokeCerts");
+    private final static QName _AddOrEditUsers_QNAME = new QName("http://ws.protocol.core.ejbca.org/", "addOrEditUsers");
 
     /**
      * Create a new ObjectFactory that can be used to create new instances of schema derived classes for package: org.ejbca.core.protocol.ws.client.gen
@@ -1360,6 +1370,126 @@ public class ObjectFactory {
         return new NameAndId();
     }
 
+    /**
+     * Create an instance of {@link FindUserPage }
+     * 
+     */
+    public FindUserPage createFindUserPage() {
+        return new FindUserPage();
+    }
+
+    /**
+     * Create an instance of {@link GetCertificatesByExpirationTimePageResponse }
+     * 
+     */
+    public GetCertificatesByExpirationTimePageResponse createGetCertificatesByExpirationTimePageResponse() {
+        return new GetCertificatesByExpirationTimePageResponse();
+    }
+
+    /**
+     * Create an instance of {@link CertificateRequests }
+     * 
+     */
+    public CertificateRequests createCertificateRequests() {
+        return new CertificateRequests();
+    }
+
+    /**
+     * Create an instance of {@link AddOrEditUsersResponse }
+     * 
+     */
+    public AddOrEditUsersResponse createAddOrEditUsersResponse() {
+        return new AddOrEditUsersResponse();
+    }
+
+    /**
+     * Create an instance of {@link AddOrEditUsers }
+     * 
+     */
+    public AddOrEditUsers createAddOrEditUsers() {
+        return new AddOrEditUsers();
+    }
+
+    /**
+     * Create an instance of {@link RevokeCerts }
+     * 
+     */
+    public RevokeCerts createRevokeCerts() {
+        return new RevokeCerts();
+    }
+
+    /**
+     * Create an instance of {@link GetCertificatesByExpirationTimePage }
+     * 
+     */
+    public GetCertificatesByExpirationTimePage createGetCertificatesByExpirationTimePage() {
+        return new GetCertificatesByExpirationTimePage();
+    }
+
+    /**
+     * Create an instance of {@link RevokeCertsResponse }
+     * 
+     */
+    public RevokeCertsResponse createRevokeCertsResponse() {
+        return new RevokeCertsResponse();
+    }
+
+    /**
+     * Create an instance of {@link CertificateRequestsResponse }
+     * 
+     */
+    public CertificateRequestsResponse createCertificateRequestsResponse() {
+        return new CertificateRequestsResponse();
+    }
+
+    /**
+     * Create an instance of {@link FindUserPageResponse }
+     * 
+     */
+    public FindUserPageResponse createFindUserPageResponse() {
+        return new FindUserPageResponse();
+    }
+
+    /**
+     * Create an instance of {@link CertRevocationWS }
+     * 
+     */
+    public CertRevocationWS createCertRevocationWS() {
+        return new CertRevocationWS();
+    }
+
+    /**
+     * Create an instance of {@link UserDataVOWSPage }
+     * 
+     */
+    public UserDataVOWSPage createUserDataVOWSPage() {
+        return new UserDataVOWSPage();
+    }
+
+    /**
+     * Create an instance of {@link CertificatePage }
+     * 
+     */
+    public CertificatePage createCertificatePage() {
+        return new CertificatePage();
+    }
+
+    /**
+     * Create an instance of {@link CertificateRequestWS }
+     * 
+     */
+    public CertificateRequestWS createCertificateRequestWS() {
+        return new CertificateRequestWS();
+    }
+
+    /**
+     * Create an instance of {@link BulkItemResultWS }
+     * 
+     */
+    public BulkItemResultWS createBulkItemResultWS() {
+        return new BulkItemResultWS();
+    }
+
     /**
      * Create an instance of {@link JAXBElement }{@code <}{@link ExistsHardTokenResponse }{@code >}}
      * 
@@ -2629,4 +2759,94 @@ public class ObjectFactory {
         return new JAXBElement<byte[]>(_UpdateCaCertArg1_QNAME, byte[].class, ImportCaCert.class, ((byte[]) value));
     }
 
+    /**
+     * Create an instance of {@link JAXBElement }{@code <}{@link CertificateRequests }{@code >}}
+     * 
+     */
+    @XmlElementDecl(namespace = "http://ws.protocol.core.ejbca.org/", name = "certificateRequests")
+    public JAXBElement<CertificateRequests> createCertificateRequests(CertificateRequests value) {
+        return new JAXBElement<CertificateRequests>(_CertificateRequests_QNAME, CertificateRequests.class, null, value);
+    }
+
+    /**
+     * Create an instance of {@link JAXBElement }{@code <}{@link GetCertificatesByExpirationTimePageResponse }{@code >}}
+     * 
+     */
+    @XmlElementDecl(namespace = "http://ws.protocol.core.ejbca.org/", name = "getCertificatesByExpirationTimePageResponse")
+    public JAXBElement<GetCertificatesByExpirationTimePageResponse> createGetCertificatesByExpirationTimePageResponse(GetCertificatesByExpirationTimePageResponse value) {
+        return new JAXBElement<GetCertificatesByExpirationTimePageResponse>(_GetCertificatesByExpirationTimePageResponse_QNAME, GetCertificatesByExpirationTimePageResponse.class, null, value);
+    }
+
+    /**
+     * Create an instance of {@link JAXBElement }{@code <}{@link FindUserPage }{@code >}}
+     * 
+     */
+    @XmlElementDecl(namespace = "http://ws.protocol.core.ejbca.org/", name = "findUserPage")
+    public JAXBElement<FindUserPage> createFindUserPage(FindUserPage value) {
+        return new JAXBElement<FindUserPage>(_FindUserPage_QNAME, FindUserPage.class, null, value);
+    }
+
+    /**
+     * Create an instance of {@link JAXBElement }{@code <}{@link GetCertificatesByExpirationTimePage }{@code >}}
+     * 
+     */
+    @XmlElementDecl(namespace = "http://ws.protocol.core.ejbca.org/", name = "getCertificatesByExpirationTimePage")
+    public JAXBElement<GetCertificatesByExpirationTimePage> createGetCertificatesByExpirationTimePage(GetCertificatesByExpirationTimePage value) {
+        return new JAXBElement<GetCertificatesByExpirationTimePage>(_GetCertificatesByExpirationTimePage_QNAME, GetCertificatesByExpirationTimePage.class, null, value);
+    }
+
+    /**
+     * Create an instance of {@link JAXBElement }{@code <}{@link FindUserPageResponse }{@code >}}
+     * 
+     */
+    @XmlElementDecl(namespace = "http://ws.protocol.core.ejbca.org/", name = "findUserPageResponse")
+    public JAXBElement<FindUserPageResponse> createFindUserPageResponse(FindUserPageResponse value) {
+        return new JAXBElement<FindUserPageResponse>(_FindUserPageResponse_QNAME, FindUserPageResponse.class, null, value);
+    }
+
+    /**
+     * Create an instance of {@link JAXBElement }{@code <}{@link RevokeCertsResponse }{@code >}}
+     * 
+     */
+    @XmlElementDecl(namespace = "http://ws.protocol.core.ejbca.org/", name = "revokeCertsResponse")
+    public JAXBElement<RevokeCertsResponse> createRevokeCertsResponse(RevokeCertsResponse value) {
+        return new JAXBElement<RevokeCertsResponse>(_RevokeCertsResponse_QNAME, RevokeCertsResponse.class, null, value);
+    }
+
+    /**
+     * Create an instance of {@link JAXBElement }{@code <}{@link CertificateRequestsResponse }{@code >}}
+     * 
+     */
+    @XmlElementDecl(namespace = "http://ws.protocol.core.ejbca.org/", name = "certificateRequestsResponse")
+    public JAXBElement<CertificateRequestsResponse> createCertificateRequestsResponse(CertificateRequestsResponse value) {
+        return new JAXBElement<CertificateRequestsResponse>(_CertificateRequestsResponse_QNAME, CertificateRequestsResponse.class, null, value);
+    }
+
+    /**
+     * Create an instance of {@link JAXBElement }{@code <}{@link AddOrEditUsersResponse }{@code >}}
+     * 
+     */
+    @XmlElementDecl(namespace = "http://ws.protocol.core.ejbca.org/", name = "addOrEditUsersResponse")
+    public JAXBElement<AddOrEditUsersResponse> createAddOrEditUsersResponse(AddOrEditUsersResponse value) {
+        return new JAXBElement<AddOrEditUsersResponse>(_AddOrEditUsersResponse_QNAME, AddOrEditUsersResponse.class, null, value);
+    }
+
+    /**
+     * Create an instance of {@link JAXBElement }{@code <}{@link RevokeCerts }{@code >}}
+     * 
+     */
+    @XmlElementDecl(namespace = "http://ws.protocol.core.ejbca.org/", name = "revokeCerts")
+    public JAXBElement<RevokeCerts> createRevokeCerts(RevokeCerts value) {
+        return new JAXBElement<RevokeCerts>(_RevokeCerts_QNAME, RevokeCerts.class, null, value);
+    }
+
+    /**
+     * Create an instance of {@link JAXBElement }{@code <}{@link AddOrEditUsers }{@code >}}
+     * 
+     */
+    @XmlElementDecl(namespace = "http://ws.protocol.core.ejbca.org/", name = "addOrEditUsers")
+    public JAXBElement<AddOrEditUsers> createAddOrEditUsers(AddOrEditUsers value) {
+        return new JAXBElement<AddOrEditUsers>(_AddOrEditUsers_QNAME, AddOrEditUsers.class, null, value);
+    }
+
 }
@@ -13,6 +13,7 @@
 package org.ejbca.core.protocol.ws.client;
 
 import java.io.ByteArrayInputStream;
+import java.io.IOException;
 import java.math.BigInteger;
 import java.security.InvalidKeyException;
 import java.security.KeyPair;
@@ -37,7 +38,9 @@ import org.bouncycastle.pkcs.PKCS10CertificationRequest;
 import org.bouncycastle.util.encoders.Base64;
 import org.cesecore.certificates.endentity.EndEntityConstants;
 import org.cesecore.util.CertTools;
+import org.ejbca.core.protocol.ws.client.gen.BulkItemResultWS;
 import org.ejbca.core.protocol.ws.client.gen.Certificate;
+import org.ejbca.core.protocol.ws.client.gen.CertificateRequestWS;
 import org.ejbca.core.protocol.ws.client.gen.CertificateResponse;
 import org.ejbca.core.protocol.ws.client.gen.EjbcaWS;
 import org.ejbca.core.protocol.ws.client.gen.RevokeBackDateNotAllowedForProfileException_Exception;
@@ -57,10 +60,12 @@ import org.ejbca.util.query.BasicMatch;
  */
 public class StressTestCommand extends EJBCAWSRABaseCommand implements IAdminCommand {
 	final static private String USER_NAME_TAG = "<userName>";
+	final static private int DEFAULT_BULK_SIZE = 100;
 	final PerformanceTest performanceTest;
 	enum TestType {
 		BASIC,
 		BASICSINGLETRANS,
+		BULK,
 		REVOKE,
 		REVOKE_BACKDATED,
 		REVOKEALOT
@@ -72,14 +77,16 @@ public class StressTestCommand extends EJBCAWSRABaseCommand implements IAdminCom
 		final private TestType testType;
 		final private int maxCertificateSN;
 		final private String subjectDN;
+		final private int bulkSize;
 		MyCommandFactory( String _caName, String _endEntityProfileName, String _certificateProfileName,
-						  TestType _testType, int _maxCertificateSN, String _subjectDN ) {
+						  TestType _testType, int _maxCertificateSN, String _subjectDN, int _bulkSize ) {
 			this.testType = _testType;
 			this.caName = _caName;
 			this.endEntityProfileName = _endEntityProfileName;
 			this.certificateProfileName = _certificateProfileName;
 			this.maxCertificateSN = _maxCertificateSN;
 			this.subjectDN = _subjectDN;
+			this.bulkSize = _bulkSize;
 		}
 		@Override
 		public Command[] getCommands() throws Exception {
@@ -96,6 +103,10 @@ public class StressTestCommand extends EJBCAWSRABaseCommand implements IAdminCom
 				return new Command[]{
 									 new CertificateRequestCommand(ejbcaWS, this.caName, this.endEntityProfileName, this.certificateProfileName, jobData, true, this.maxCertificateSN, kpg.generateKeyPair())
 									};
+			case BULK:
+				return new Command[]{
+									 new BulkCertificateRequestCommand(ejbcaWS, this.caName, this.endEntityProfileName, this.certificateProfileName, jobData, this.maxCertificateSN, kpg.generateKeyPair(), this.bulkSize)
+									};
 			case REVOKE_BACKDATED:
 			case REVOKE:
 				return new Command[]{
@@ -457,6 +468,90 @@ public class StressTestCommand extends EJBCAWSRABaseCommand implements IAdminCom
 			return "Relative time spent setting status of user to NEW";
 		}
 	} // CertificateRequestCommand
+
+	/**
+	 * Command for using the bulk certificateRequests method from EjbcaWS. Each call registers bulkSize new users
+	 * and requests a certificate for each of them, so the throughput can be compared with {@link CertificateRequestCommand}.
+	 */
+	private class BulkCertificateRequestCommand extends BaseCommand implements Command {
+		final private EjbcaWS ejbcaWS;
+		final private String caName;
+		final private String endEntityProfileName;
+		final private String certificateProfileName;
+		final private int bitsInCertificateSN;
+		final private int bulkSize;
+		private String requestData;
+		BulkCertificateRequestCommand(EjbcaWS _ejbcaWS, String _caName, String _endEntityProfileName, String _certificateProfileName,
+						JobData _jobData, int _bitsInCertificateSN, KeyPair keys, int _bulkSize) {
+			super(_jobData);
+			this.ejbcaWS = _ejbcaWS;
+			this.caName = _caName;
+			this.endEntityProfileName = _endEntityProfileName;
+			this.certificateProfileName = _certificateProfileName;
+			this.bitsInCertificateSN = _bitsInCertificateSN;
+			this.bulkSize = _bulkSize;
+			try {
+				final PKCS10CertificationRequest pkcs10 = CertTools.genPKCS10CertificationRequest("SHA1WithRSA", CertTools.stringToBcX500Name("CN=NOUSED"), keys.getPublic(), new DERSet(), keys.getPrivate(), null);
+				this.requestData = new String(Base64.encode(pkcs10.getEncoded()));
+			} catch (OperatorCreationException | IOException e) {
+				getPrintStream().println(e.getLocalizedMessage());
+				e.printStackTrace(getPrintStream());
+			}
+		}
+		@Override
+		public boolean doIt() throws Exception {
+			final List<CertificateRequestWS> requests = new ArrayList<>(this.bulkSize);
+			final List<JobData> jobs = new ArrayList<>(this.bulkSize);
+			for ( int i=0; i<this.bulkSize; i++ ) {
+				final JobData job = new JobData(this.jobData.subjectDN);
+				job.passWord = "foo123";
+				job.userName = "WSTESTUSER"+StressTestCommand.this.performanceTest.nextLong();
+				final UserDataVOWS user = new UserDataVOWS();
+				user.setUsername(job.userName);
+				user.setPassword(job.passWord);
+				user.setClearPwd(true);
+				user.setSubjectDN(job.getDN());
+				user.setCaName(this.caName);
+				user.setStatus(EndEntityConstants.STATUS_NEW);
+				user.setTokenType(org.ejbca.core.protocol.ws.objects.UserDataVOWS.TOKEN_TYPE_USERGENERATED);
+				user.setEndEntityProfileName(this.endEntityProfileName);
+				user.setCertificateProfileName(this.certificateProfileName);
+				if ( this.bitsInCertificateSN>0 ) {
+					user.setCertificateSerialNumber(new BigInteger(this.bitsInCertificateSN, StressTestCommand.this.performanceTest.getRandom()));
+				}
+				final CertificateRequestWS request = new CertificateRequestWS();
+				request.setUserData(user);
+				request.setRequestData(this.requestData);
+				request.setRequestType(CertificateHelper.CERT_REQ_TYPE_PKCS10);
+				request.setResponseType(CertificateHelper.RESPONSETYPE_CERTIFICATE);
+				requests.add(request);
+				jobs.add(job);
+			}
+			final List<BulkItemResultWS> results = this.ejbcaWS.certificateRequests(requests);
+			if ( results.size()!=jobs.size() ) {
+				StressTestCommand.this.performanceTest.getLog().error("Got "+results.size()+" results for "+jobs.size()+" requests.");
+				return false;
+			}
+			boolean success = true;
+			for ( int i=0; i<results.size(); i++ ) {
+				final BulkItemResultWS result = results.get(i);
+				if ( result.getCertificateResponse()==null ) {
+					final String errorCode = result.getErrorCode()!=null ? result.getErrorCode().getInternalErrorCode() : null;
+					StressTestCommand.this.performanceTest.getLog().error("No certificate generated for user "+jobs.get(i).userName+". Error code: "+errorCode+" Message: "+result.getErrorMessage());
+					success = false;
+				} else if ( !checkAndLogCertificateResponse(result.getCertificateResponse(), jobs.get(i)) ) {
+					success = false;
+				}
+			}
+			this.jobData.userName = jobs.get(jobs.size()-1).userName;
+			this.jobData.passWord = jobs.get(jobs.size()-1).passWord;
+			return success;
+		}
+		@Override
+		public String getJobTimeDescription() {
+			return "Relative time spent registering "+this.bulkSize+" new users with one bulk request";
+		}
+	} // BulkCertificateRequestCommand
 	
 	/**
 	 * @param _args
@@ -491,6 +586,8 @@ public class StressTestCommand extends EJBCAWSRABaseCommand implements IAdminCom
 			getPrintStream().print(" " + testType);
 		}
 		getPrintStream().println();
+		getPrintStream().println("The "+TestType.BULK+" test sends the number of requests given by the java system property 'bulkSize' (default "+DEFAULT_BULK_SIZE+") in each bulk call.");
+		getPrintStream().println("Compare the result with the "+TestType.BASICSINGLETRANS+" test to see the throughput gain of the bulk operations.");
 	}
 
 	@Override
@@ -519,8 +616,9 @@ public class StressTestCommand extends EJBCAWSRABaseCommand implements IAdminCom
 				}
 				maxCertificateSN = iTmp;
 			}
+			final int bulkSize = Integer.parseInt(System.getProperty("bulkSize", String.valueOf(DEFAULT_BULK_SIZE)));
 			this.performanceTest.execute(new MyCommandFactory(
-			        caName, endEntityProfileName, certificateProfileName, testType, maxCertificateSN, subjectDN),
+			        caName, endEntityProfileName, certificateProfileName, testType, maxCertificateSN, subjectDN, bulkSize),
 			        notanot.getThreads(), notanot.getTests(), waitTime, getPrintStream());
 			getPrintStream().println("A test key for each thread is generated. This could take some time if you have specified many threads and long keys.");
 			synchronized(this) {
@@ -0,0 +1,94 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.protocol.ws;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import javax.ejb.EJBException;
+
+import org.cesecore.ErrorCode;
+import org.cesecore.authorization.AuthorizationDeniedException;
+import org.ejbca.core.EjbcaException;
+import org.ejbca.core.protocol.ws.objects.BulkItemResultWS;
+import org.ejbca.core.protocol.ws.objects.CertificateResponse;
+import org.junit.Test;
+
+/**
+ * Tests the processing of the items of the bulk WS operations.
+ *
+ * @version $Id$
+ */
+public class EjbcaWSBulkTest {
+
+    private final List<Integer> calls = new ArrayList<>();
+
+    /** @return an item that records its call, and fails with the given exception if not null */
+    private Callable<BulkItemResultWS> item(final int index, final Exception failure) {
+        return new Callable<BulkItemResultWS>() {
+            @Override
+            public BulkItemResultWS call() throws Exception {
+                calls.add(index);
+                if (failure != null) {
+                    throw failure;
+                }
+                return new BulkItemResultWS((CertificateResponse) null);
+            }
+        };
+    }
+
+    /** An item that fails in the middle of a bulk call must not cause the other items to be processed again */
+    @Test
+    public void testFailureInTheMiddle() {
+        final List<Callable<BulkItemResultWS>> items = new ArrayList<>();
+        final List<Integer> expectedCalls = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            items.add(item(i, i == 12 ? new EjbcaException(ErrorCode.CERT_PROFILE_NOT_EXISTS, "No such profile") : null));
+            expectedCalls.add(i);
+        }
+        final List<BulkItemResultWS> results = EjbcaWS.processBulkItems(items);
+        assertEquals("Each item should be processed exactly once, in order", expectedCalls, calls);
+        assertEquals(items.size(), results.size());
+        for (int i = 0; i < results.size(); i++) {
+            if (i == 12) {
+                assertEquals(ErrorCode.CERT_PROFILE_NOT_EXISTS, results.get(i).getErrorCode());
+                assertEquals("No such profile", results.get(i).getErrorMessage());
+            } else {
+                assertNull("Item " + i + " should have succeeded", results.get(i).getErrorCode());
+            }
+        }
+    }
+
+    /** Every failing item gets its own error, with the error code that the single item operation would have thrown */
+    @Test
+    public void testErrorCodes() {
+        final List<Callable<BulkItemResultWS>> items = new ArrayList<>();
+        items.add(item(0, new AuthorizationDeniedException("Denied")));
+        items.add(item(1, new EJBException(new EjbcaException(ErrorCode.CA_NOT_EXISTS, "No such CA"))));
+        items.add(item(2, null));
+        items.add(item(3, new IllegalStateException("Unexpected")));
+        items.add(item(4, new Exception("Other")));
+        final List<BulkItemResultWS> results = EjbcaWS.processBulkItems(items);
+        assertEquals(5, calls.size());
+        assertEquals(ErrorCode.NOT_AUTHORIZED, results.get(0).getErrorCode());
+        assertEquals(ErrorCode.CA_NOT_EXISTS, results.get(1).getErrorCode());
+        assertEquals("No such CA", results.get(1).getErrorMessage());
+        assertNull(results.get(2).getErrorCode());
+        assertEquals(ErrorCode.INTERNAL_ERROR, results.get(3).getErrorCode());
+        assertEquals(ErrorCode.NOT_SPECIFIED, results.get(4).getErrorCode());
+    }
+}
@@ -14,6 +14,7 @@
 package org.ejbca.config;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
 
 /**
  * Configuration from jaxws.properties
@@ -22,6 +23,8 @@ import org.apache.commons.lang.StringUtils;
  */
 public class WebServiceConfiguration {
 
+    private static final Logger log = Logger.getLogger(WebServiceConfiguration.class);
+
 	/**
      * Indicating if a call to genTokenCertificates and/or viewHardToken for non-authorized users should result in an
      * approval request instead of an authorized denied exception.
@@ -93,5 +96,25 @@ public class WebServiceConfiguration {
 	public static String getTransactionLogOrder() {
 		return EjbcaConfigurationHolder.getString("ejbcaws.trx-log-order");
 	}
+
+    /**
+     * @return the maximum number of items in one call to the bulk operations, such as addOrEditUsers
+     */
+    public static int getBulkMaxItems() {
+        return getIntProperty("jaxws.bulk.maxitems", 1000);
+    }
+
+    private static int getIntProperty(final String key, final int defaultValue) {
+        final String value = EjbcaConfigurationHolder.getString(key);
+        int ret = defaultValue;
+        try {
+            if (value != null) {
+                ret = Integer.parseInt(value.trim());
+            }
+        } catch (NumberFormatException e) {
+            log.error("Invalid value configured for '" + key + "', must be decimal number: " + e.getMessage());
+        }
+        return ret;
+    }
 	
 }
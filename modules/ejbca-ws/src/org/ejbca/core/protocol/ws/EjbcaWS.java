@@ -39,6 +39,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
 
 import javax.annotation.Resource;
 import javax.ejb.EJB;
@@ -147,6 +148,8 @@ import org.ejbca.core.model.ca.AuthStatusException;
 import org.ejbca.core.model.ca.publisher.PublisherDoesntExistsException;
 import org.ejbca.core.model.ca.publisher.PublisherException;
 import org.ejbca.core.model.era.IdNameHashMap;
+import org.ejbca.core.model.era.RaCertificatePage;
+import org.ejbca.core.model.era.RaEndEntityPage;
 import org.ejbca.core.model.era.RaMasterApiProxyBeanLocal;
 import org.ejbca.core.model.hardtoken.HardTokenConstants;
 import org.ejbca.core.model.hardtoken.HardTokenDoesntExistsException;
@@ -170,7 +173,11 @@ import org.ejbca.core.protocol.ws.common.CertificateHelper;
 import org.ejbca.core.protocol.ws.common.IEjbcaWS;
 import org.ejbca.core.protocol.ws.logger.TransactionLogger;
 import org.ejbca.core.protocol.ws.logger.TransactionTags;
+import org.ejbca.core.protocol.ws.objects.BulkItemResultWS;
+import org.ejbca.core.protocol.ws.objects.CertRevocationWS;
 import org.ejbca.core.protocol.ws.objects.Certificate;
+import org.ejbca.core.protocol.ws.objects.CertificatePage;
+import org.ejbca.core.protocol.ws.objects.CertificateRequestWS;
 import org.ejbca.core.protocol.ws.objects.CertificateResponse;
 import org.ejbca.core.protocol.ws.objects.HardTokenDataWS;
 import org.ejbca.core.protocol.ws.objects.KeyStore;
@@ -181,6 +188,7 @@ import org.ejbca.core.protocol.ws.objects.TokenCertificateRequestWS;
 import org.ejbca.core.protocol.ws.objects.TokenCertificateResponseWS;
 import org.ejbca.core.protocol.ws.objects.UserDataSourceVOWS;
 import org.ejbca.core.protocol.ws.objects.UserDataVOWS;
+import org.ejbca.core.protocol.ws.objects.UserDataVOWSPage;
 import org.ejbca.core.protocol.ws.objects.UserMatch;
 import org.ejbca.cvc.exception.ConstructionException;
 import org.ejbca.cvc.exception.ParseException;
@@ -260,6 +268,8 @@ public class EjbcaWS implements IEjbcaWS {
 
 	/** The maximum number of rows returned in array responses. */
 	private static final int MAXNUMBEROFROWS = 100;
+	/** The maximum number of rows returned in a page of paged responses. */
+	private static final int MAXPAGESIZE = 1000;
 
 	private static final Logger log = Logger.getLogger(EjbcaWS.class);
     /** Internal localization of logs and errors */
@@ -377,6 +387,35 @@ public class EjbcaWS implements IEjbcaWS {
         }
 	}
 
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED) // Items are processed in their own transactions
+    public List<BulkItemResultWS> addOrEditUsers(final List<UserDataVOWS> userdatas) throws AuthorizationDeniedException, EjbcaException {
+        final IPatternLogger logger = TransactionLogger.getPatternLogger();
+        try {
+            checkBulkSize(userdatas, logger);
+            final AuthenticationToken admin = getAdmin();
+            logAdminName(admin, logger);
+            final List<Callable<BulkItemResultWS>> items = new ArrayList<>(userdatas.size());
+            for (final UserDataVOWS userdata : userdatas) {
+                items.add(new Callable<BulkItemResultWS>() {
+                    @Override
+                    public BulkItemResultWS call() throws Exception {
+                        if (!raMasterApiProxyBean.editUserWs(admin, userdata)) {
+                            raMasterApiProxyBean.addUserFromWS(admin, userdata, userdata.isClearPwd());
+                        }
+                        return new BulkItemResultWS((CertificateResponse) null);
+                    }
+                });
+            }
+            return processBulkItems(items);
+        } catch (RuntimeException e) {  // ClassCastException, EJBException, ...
+            throw getInternalException(e, logger);
+        } finally {
+            logger.writeln();
+            logger.flush();
+        }
+    }
+
     @Override
 	public List<UserDataVOWS> findUser(UserMatch usermatch) throws AuthorizationDeniedException, IllegalQueryException, EjbcaException, EndEntityProfileNotFoundException {
     	if (log.isDebugEnabled()) {
@@ -395,6 +434,31 @@ public class EjbcaWS implements IEjbcaWS {
         }
 	}
 
+    @Override
+    public UserDataVOWSPage findUserPage(UserMatch usermatch, int pageSize, String continuationToken)
+            throws AuthorizationDeniedException, IllegalQueryException, EjbcaException, EndEntityProfileNotFoundException {
+        if (log.isDebugEnabled()) {
+            log.debug("Find user page with match '" + usermatch.getMatchvalue() + "'.");
+        }
+        final IPatternLogger logger = TransactionLogger.getPatternLogger();
+        try {
+            final AuthenticationToken admin = getAdmin();
+            logAdminName(admin, logger);
+            final RaEndEntityPage page = raMasterApiProxyBean.findUserWSPage(admin, usermatch, getPageSize(pageSize), continuationToken);
+            return new UserDataVOWSPage(page.getEndEntities(), page.getContinuationToken());
+        } catch (RuntimeException e) {  // ClassCastException, EJBException ...
+            throw getInternalException(e, logger);
+        } finally {
+            logger.writeln();
+            logger.flush();
+        }
+    }
+
+    /** @return the requested page size, limited to 1..MAXPAGESIZE */
+    private static int getPageSize(final int pageSize) {
+        return Math.max(1, Math.min(pageSize, MAXPAGESIZE));
+    }
+
     @Override
     @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED)
     public List<Certificate> findCerts(String username, boolean onlyValid) throws AuthorizationDeniedException, EjbcaException {
@@ -573,6 +637,18 @@ public class EjbcaWS implements IEjbcaWS {
         return unwrapCertificatesOrThrowInternalException(certificates);
     }
 
+    @Override
+    public CertificatePage getCertificatesByExpirationTimePage(long days, int pageSize, String continuationToken) throws EjbcaException {
+        RaCertificatePage page;
+        try {
+            page = raMasterApiProxyBean.getCertificatesByExpirationTimePage(getAdmin(), days, getPageSize(pageSize), continuationToken);
+        } catch (AuthorizationDeniedException e1) {
+            // No authorization required.
+            page = new RaCertificatePage(new ArrayList<CertificateWrapper>(), null);
+        }
+        return new CertificatePage(unwrapCertificatesOrThrowInternalException(page.getCertificates()), page.getContinuationToken());
+    }
+
 	@Override
     public List<Certificate> getCertificatesByExpirationTimeAndIssuer(long days, String issuer, int maxNumberOfResults) throws EjbcaException {
 	    final List<CertificateWrapper> certificates = new ArrayList<>();
@@ -970,6 +1046,36 @@ public class EjbcaWS implements IEjbcaWS {
 		}
 	}
 
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED) // Items are processed in their own transactions
+    public List<BulkItemResultWS> revokeCerts(final List<CertRevocationWS> revocations) throws AuthorizationDeniedException, EjbcaException {
+        final IPatternLogger logger = TransactionLogger.getPatternLogger();
+        try {
+            checkBulkSize(revocations, logger);
+            final AuthenticationToken admin = getAdmin();
+            logAdminName(admin, logger);
+            final List<Callable<BulkItemResultWS>> items = new ArrayList<>(revocations.size());
+            for (final CertRevocationWS revocation : revocations) {
+                items.add(new Callable<BulkItemResultWS>() {
+                    @Override
+                    public BulkItemResultWS call() throws Exception {
+                        final CertRevocationDto certRevocationDto = new CertRevocationDto(revocation.getIssuerDN(), revocation.getCertificateSN(),
+                                revocation.getReason());
+                        certRevocationDto.setCheckDate(true);
+                        raMasterApiProxyBean.revokeCertWithMetadata(admin, certRevocationDto);
+                        return new BulkItemResultWS((CertificateResponse) null);
+                    }
+                });
+            }
+            return processBulkItems(items);
+        } catch (RuntimeException e) {  // ClassCastException, EJBException, ...
+            throw getInternalException(e, logger);
+        } finally {
+            logger.writeln();
+            logger.flush();
+        }
+    }
+
 	@Override
 	public void revokeCertBackdated(final String issuerDN, final String certificateSN, final int reason, String sDate) throws CADoesntExistsException, AuthorizationDeniedException,
 			NotFoundException, EjbcaException, ApprovalException, WaitingForApprovalException, AlreadyRevokedException, RevokeBackDateNotAllowedForProfileException, DateNotValidException {
@@ -2331,6 +2437,34 @@ public class EjbcaWS implements IEjbcaWS {
         }
 	}
 
+    @Override
+    @TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED) // Items are processed in their own transactions
+    public List<BulkItemResultWS> certificateRequests(final List<CertificateRequestWS> requests) throws AuthorizationDeniedException, EjbcaException {
+        final IPatternLogger logger = TransactionLogger.getPatternLogger();
+        try {
+            checkBulkSize(requests, logger);
+            final AuthenticationToken admin = getAdmin(false);
+            logAdminName(admin, logger);
+            final List<Callable<BulkItemResultWS>> items = new ArrayList<>(requests.size());
+            for (final CertificateRequestWS request : requests) {
+                items.add(new Callable<BulkItemResultWS>() {
+                    @Override
+                    public BulkItemResultWS call() throws Exception {
+                        setUserDataVOWS(request.getUserData());
+                        return new BulkItemResultWS(new CertificateResponse(request.getResponseType(), raMasterApiProxyBean.createCertificateWS(admin,
+                                request.getUserData(), request.getRequestData(), request.getRequestType(), request.getHardTokenSN(), request.getResponseType())));
+                    }
+                });
+            }
+            return processBulkItems(items);
+        } catch (RuntimeException e) {  // ClassCastException, EJBException, ...
+            throw getInternalException(e, logger);
+        } finally {
+            logger.writeln();
+            logger.flush();
+        }
+    }
+
     @SuppressWarnings("deprecation")
     @Override
 	public KeyStore softTokenRequest(UserDataVOWS userdata, String hardTokenSN, String keyspec, String keyalg)
@@ -2428,6 +2562,56 @@ public class EjbcaWS implements IEjbcaWS {
         return result;
     }
 
+    private static void checkBulkSize(final List<?> items, final IPatternLogger logger) throws EjbcaException {
+        final int maxItems = WebServiceConfiguration.getBulkMaxItems();
+        if (items == null || items.size() > maxItems) {
+            throw getEjbcaException("A bulk operation must have at most " + maxItems + " items, and not " + (items == null ? "null" : items.size()) + ".",
+                    logger, ErrorCode.FIELD_VALUE_NOT_VALID, Level.INFO);
+        }
+    }
+
+    /**
+     * Processes the items of a bulk operation, each item exactly once. The items go through the RA master API, which runs each
+     * of them in its own transaction, so an item that fails does not roll back the items before it, and is not retried.
+     *
+     * @return the results of the items, in the same order as the items
+     */
+    static List<BulkItemResultWS> processBulkItems(final List<Callable<BulkItemResultWS>> items) {
+        final List<BulkItemResultWS> results = new ArrayList<>(items.size());
+        for (final Callable<BulkItemResultWS> item : items) {
+            try {
+                results.add(item.call());
+            } catch (Exception e) {
+                results.add(getBulkItemError(e));
+            }
+        }
+        return results;
+    }
+
+    /** @return the result of a failed item of a bulk operation, with the error code that the single item operation would have thrown */
+    static BulkItemResultWS getBulkItemError(final Exception exception) {
+        Throwable e = exception;
+        if (e instanceof EJBException && ((EJBException) e).getCausedByException() != null) {
+            e = ((EJBException) e).getCausedByException();
+        }
+        ErrorCode errorCode = null;
+        if (e instanceof EjbcaException) {
+            errorCode = ((EjbcaException) e).getErrorCode();
+        } else if (e instanceof CesecoreException) {
+            errorCode = ((CesecoreException) e).getErrorCode();
+        } else if (e instanceof AuthorizationDeniedException) {
+            errorCode = ErrorCode.NOT_AUTHORIZED;
+        } else if (e instanceof EndEntityProfileValidationException) {
+            errorCode = ErrorCode.USER_DOESNT_FULFILL_END_ENTITY_PROFILE;
+        } else if (e instanceof RuntimeException) {
+            log.error("EJBCA WebService error", e);
+            errorCode = ErrorCode.INTERNAL_ERROR;
+        } else {
+            log.debug("Bulk operation item failed", e);
+        }
+        return new BulkItemResultWS(errorCode != null ? errorCode : ErrorCode.NOT_SPECIFIED, e.getMessage());
+    }
+
     private static EjbcaException getInternalException(Throwable t, IPatternLogger logger) {
         return getEjbcaException( t, logger, ErrorCode.INTERNAL_ERROR, Level.ERROR);
     }
@@ -39,7 +39,11 @@ import org.ejbca.core.model.ra.raadmin.UserDoesntFullfillEndEntityProfile;
 import org.ejbca.core.model.ra.userdatasource.MultipleMatchException;
 import org.ejbca.core.model.ra.userdatasource.UserDataSourceException;
 import org.ejbca.core.protocol.ws.UnknownProfileTypeException;
+import org.ejbca.core.protocol.ws.objects.BulkItemResultWS;
+import org.ejbca.core.protocol.ws.objects.CertRevocationWS;
 import org.ejbca.core.protocol.ws.objects.Certificate;
+import org.ejbca.core.protocol.ws.objects.CertificatePage;
+import org.ejbca.core.protocol.ws.objects.CertificateRequestWS;
 import org.ejbca.core.protocol.ws.objects.CertificateResponse;
 import org.ejbca.core.protocol.ws.objects.HardTokenDataWS;
 import org.ejbca.core.protocol.ws.objects.KeyStore;
@@ -49,6 +53,7 @@ import org.ejbca.core.protocol.ws.objects.TokenCertificateRequestWS;
 import org.ejbca.core.protocol.ws.objects.TokenCertificateResponseWS;
 import org.ejbca.core.protocol.ws.objects.UserDataSourceVOWS;
 import org.ejbca.core.protocol.ws.objects.UserDataVOWS;
+import org.ejbca.core.protocol.ws.objects.UserDataVOWSPage;
 import org.ejbca.core.protocol.ws.objects.UserMatch;
 import org.ejbca.ui.web.protocol.DateNotValidException;
 import org.ejbca.util.KeyValuePair;
@@ -97,6 +102,22 @@ public interface IEjbcaWS {
     void editUser(UserDataVOWS userdata) throws CADoesntExistsException, AuthorizationDeniedException, UserDoesntFullfillEndEntityProfile,
             EjbcaException, ApprovalException, WaitingForApprovalException;
 
+	/**
+	 * Adds or edits several users in one call, in the same way as {@link #editUser(UserDataVOWS)}.
+	 *
+	 * Each item is processed once, in its own transaction, in the same way as a separate call, and the client is authenticated
+	 * once for all of them. A failing item does not stop the other items, instead its error is returned in the result
+	 * of the item.
+	 *
+	 * Authorization requirements: the same as for {@link #editUser(UserDataVOWS)}, for each user
+	 *
+	 * @param userdatas the users to add or edit, at most jaxws.bulk.maxitems (default 1000)
+	 * @return one result per user, in the same order as the users
+	 * @throws AuthorizationDeniedException if the client is not an administrator
+	 * @throws EjbcaException if there are too many users
+	 */
+	List<BulkItemResultWS> addOrEditUsers(List<UserDataVOWS> userdatas) throws AuthorizationDeniedException, EjbcaException;
+
 	/**
 	 * Retrieves information about users in the database.
 	 *
@@ -117,6 +138,29 @@ public interface IEjbcaWS {
 	List<UserDataVOWS> findUser(UserMatch usermatch)
 			throws AuthorizationDeniedException, IllegalQueryException, EjbcaException, EndEntityProfileNotFoundException;
 
+	/**
+	 * Retrieves information about users in the database, one page at a time in username order.
+	 *
+	 * Call with a null continuation token to get the first page, and then with the continuation token of the returned page
+	 * until a page without continuation token is returned. Users that are added or removed between the calls do not cause
+	 * other users to be skipped or returned twice. Usernames are ordered by the collation of the database, which may be case
+	 * insensitive. With upstream peer systems, the systems are searched one after the other, and a user that exists in more
+	 * than one of them is returned once for each.
+	 *
+	 * Authorization requirements: the same as for {@link #findUser(UserMatch)}
+	 *
+	 * @param usermatch the unique user pattern to search for
+	 * @param pageSize the maximum number of users in the page (Max 1000)
+	 * @param continuationToken the continuation token of the previous page, or null to get the first page
+	 * @return a page of {@link org.ejbca.core.protocol.ws.client.gen.UserDataVOWS} objects containing the information about the users
+	 * @throws AuthorizationDeniedException if client isn't authorized to request
+	 * @throws IllegalQueryException if query isn't valid
+	 * @throws EjbcaException if the continuation token is malformed
+	 * @throws EndEntityProfileNotFoundException
+	 */
+	UserDataVOWSPage findUserPage(UserMatch usermatch, int pageSize, String continuationToken)
+			throws AuthorizationDeniedException, IllegalQueryException, EjbcaException, EndEntityProfileNotFoundException;
+
 	/**
 	 * Retrieves a collection of certificates generated for a user.
 	 *
@@ -130,7 +174,10 @@ public interface IEjbcaWS {
 	 * <p>If authorization was denied or a certificate could not be encoded on the local system, 
      *    then the request will be forwarded to upstream peer systems (if any) and the resulting 
      *    certificates where merged by its fingerprint.</p>
-     * 
+     *
+	 * <p>The certificates are not paged, and are returned in one response. For users with very many certificates, use
+	 * {@link #getCertificatesByExpirationTimePage(long, int, String)} or the search in the RA web instead.</p>
+	 *
 	 * @param username a unique username
 	 * @param onlyValid only return valid certs not revoked or expired ones.
 	 * @return a collection of Certificates or an empty list if no certificates, or no user, could be found
@@ -603,6 +650,22 @@ public interface IEjbcaWS {
 	 */
 	void revokeCert(String issuerDN, String certificateSN, int reason) throws CADoesntExistsException, AuthorizationDeniedException, 
 	        NotFoundException, EjbcaException, ApprovalException, WaitingForApprovalException, AlreadyRevokedException;
+
+	/**
+	 * Revokes several certificates in one call, in the same way as {@link #revokeCert(String, String, int)}.
+	 *
+	 * Each item is processed once, in its own transaction, in the same way as a separate call, and the client is authenticated
+	 * once for all of them. A failing item does not stop the other items, instead its error is returned in the result
+	 * of the item.
+	 *
+	 * Authorization requirements: the same as for {@link #revokeCert(String, String, int)}, for each certificate
+	 *
+	 * @param revocations the certificates to revoke, at most jaxws.bulk.maxitems (default 1000)
+	 * @return one result per certificate, in the same order as the revocations
+	 * @throws AuthorizationDeniedException if the client is not an administrator
+	 * @throws EjbcaException if there are too many revocations
+	 */
+	List<BulkItemResultWS> revokeCerts(List<CertRevocationWS> revocations) throws AuthorizationDeniedException, EjbcaException;
 	
 	 /**
      * Revokes a user certificate. Allows to specify column values via metadata input param.
@@ -1298,6 +1361,23 @@ public interface IEjbcaWS {
 	throws CADoesntExistsException, AuthorizationDeniedException, NotFoundException, UserDoesntFullfillEndEntityProfile,
 	ApprovalException, WaitingForApprovalException, EjbcaException;
 
+	/**
+	 * Adds or edits users and issues certificates for them in one call, in the same way as
+	 * {@link #certificateRequest(UserDataVOWS, String, int, String, String)}.
+	 *
+	 * Each item is processed once, in its own transaction, in the same way as a separate call, and the client is authenticated
+	 * once for all of them. A failing item does not stop the other items, instead its error is returned in the result
+	 * of the item.
+	 *
+	 * Authorization requirements: the same as for {@link #certificateRequest(UserDataVOWS, String, int, String, String)}, for each request
+	 *
+	 * @param requests the certificate requests, at most jaxws.bulk.maxitems (default 1000)
+	 * @return one result per request, in the same order as the requests, with the issued certificate for successful requests
+	 * @throws AuthorizationDeniedException if the client is not an administrator
+	 * @throws EjbcaException if there are too many requests
+	 */
+	List<BulkItemResultWS> certificateRequests(List<CertificateRequestWS> requests) throws AuthorizationDeniedException, EjbcaException;
+
 
     /**
      * Returns the length of a publisher queue.
@@ -1338,6 +1418,27 @@ public interface IEjbcaWS {
      */
     List<Certificate> getCertificatesByExpirationTime(long days, int maxNumberOfResults) throws EjbcaException;
 
+    /**
+     * Retrieves the certificates whose expiration date is before the specified number of days, one page at a time
+     * ordered by expiration date.
+     *
+     * Call with a null continuation token to get the first page, and then with the continuation token of the returned page
+     * until a page without continuation token is returned. Certificates that are added or removed between the calls do not
+     * cause other certificates to be skipped or returned twice.
+     *
+     * Authorization requirements: the same as for {@link #getCertificatesByExpirationTime(long, int)}
+     *
+     * <p>If authorization was denied on the local system, then the request will be forwarded
+     *    to upstream peer systems (if any), and the pages of all systems are merged.</p>
+     *
+     * @param days the number of days before the certificates will expire
+     * @param pageSize the maximum number of certificates in the page (Max 1000)
+     * @param continuationToken the continuation token of the previous page, or null to get the first page
+     * @return a page of certificates
+     * @throws EjbcaException if at least one of the certificates is unreadable, or the continuation token is malformed
+     */
+    CertificatePage getCertificatesByExpirationTimePage(long days, int pageSize, String continuationToken) throws EjbcaException;
+
 
     /**
      * List certificates that will expire within the given number of days and issued by the given issuer
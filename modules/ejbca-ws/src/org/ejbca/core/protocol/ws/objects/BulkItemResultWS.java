@@ -0,0 +1,71 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.protocol.ws.objects;
+
+import org.cesecore.ErrorCode;
+
+/**
+ * Result of one item in a bulk WS call, such as addOrEditUsers. The results are returned in the same order as the items.
+ *
+ * @version $Id$
+ */
+public class BulkItemResultWS {
+
+    private ErrorCode errorCode = null;
+    private String errorMessage = null;
+    private CertificateResponse certificateResponse = null;
+
+    /**
+     * WS Constructor
+     */
+    public BulkItemResultWS() {
+    }
+
+    /** Creates a result for an item that succeeded, with the issued certificate if any */
+    public BulkItemResultWS(final CertificateResponse certificateResponse) {
+        this.certificateResponse = certificateResponse;
+    }
+
+    /** Creates a result for an item that failed */
+    public BulkItemResultWS(final ErrorCode errorCode, final String errorMessage) {
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+    }
+
+    /** @return the error code if the item failed, or null if it succeeded */
+    public ErrorCode getErrorCode() {
+        return errorCode;
+    }
+
+    public void setErrorCode(final ErrorCode errorCode) {
+        this.errorCode = errorCode;
+    }
+
+    /** @return a description of the error if the item failed, or null if it succeeded */
+    public String getErrorMessage() {
+        return errorMessage;
+    }
+
+    public void setErrorMessage(final String errorMessage) {
+        this.errorMessage = errorMessage;
+    }
+
+    /** @return the issued certificate for a successful certificate request, otherwise null */
+    public CertificateResponse getCertificateResponse() {
+        return certificateResponse;
+    }
+
+    public void setCertificateResponse(final CertificateResponse certificateResponse) {
+        this.certificateResponse = certificateResponse;
+    }
+}
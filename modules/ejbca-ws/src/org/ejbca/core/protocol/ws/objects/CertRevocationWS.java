@@ -0,0 +1,65 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.protocol.ws.objects;
+
+/**
+ * Holds the arguments of one revocation in a bulk revokeCerts call.
+ *
+ * @see org.ejbca.core.protocol.ws.common.IEjbcaWS#revokeCert(String, String, int)
+ * @version $Id$
+ */
+public class CertRevocationWS {
+
+    private String issuerDN = null;
+    private String certificateSN = null;
+    private int reason = 0;
+
+    /**
+     * WS Constructor
+     */
+    public CertRevocationWS() {
+    }
+
+    public CertRevocationWS(final String issuerDN, final String certificateSN, final int reason) {
+        this.issuerDN = issuerDN;
+        this.certificateSN = certificateSN;
+        this.reason = reason;
+    }
+
+    /** @return the issuer DN of the certificate */
+    public String getIssuerDN() {
+        return issuerDN;
+    }
+
+    public void setIssuerDN(final String issuerDN) {
+        this.issuerDN = issuerDN;
+    }
+
+    /** @return the serial number of the certificate in hex */
+    public String getCertificateSN() {
+        return certificateSN;
+    }
+
+    public void setCertificateSN(final String certificateSN) {
+        this.certificateSN = certificateSN;
+    }
+
+    /** @return the revocation reason, one of the RevokedCertInfo.REVOCATION_REASON_ constants */
+    public int getReason() {
+        return reason;
+    }
+
+    public void setReason(final int reason) {
+        this.reason = reason;
+    }
+}
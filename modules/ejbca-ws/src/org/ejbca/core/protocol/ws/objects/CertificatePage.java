@@ -0,0 +1,56 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.protocol.ws.objects;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds one page of certificates from a paged WS search.
+ *
+ * @version $Id$
+ */
+public class CertificatePage {
+
+    private List<Certificate> certificates = new ArrayList<>();
+    private String continuationToken = null;
+
+    /**
+     * WS Constructor
+     */
+    public CertificatePage() {
+    }
+
+    public CertificatePage(final List<Certificate> certificates, final String continuationToken) {
+        this.certificates = certificates;
+        this.continuationToken = continuationToken;
+    }
+
+    /** @return the certificates of the page */
+    public List<Certificate> getCertificates() {
+        return certificates;
+    }
+
+    public void setCertificates(final List<Certificate> certificates) {
+        this.certificates = certificates;
+    }
+
+    /** @return an opaque token to pass to get the next page, or null if this is the last page */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public void setContinuationToken(final String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
+}
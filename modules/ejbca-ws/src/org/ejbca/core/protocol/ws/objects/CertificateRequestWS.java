@@ -0,0 +1,88 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.protocol.ws.objects;
+
+/**
+ * Holds the arguments of one certificate request in a bulk certificateRequests call.
+ *
+ * @see org.ejbca.core.protocol.ws.common.IEjbcaWS#certificateRequest(UserDataVOWS, String, int, String, String)
+ * @version $Id$
+ */
+public class CertificateRequestWS {
+
+    private UserDataVOWS userData = null;
+    private String requestData = null;
+    private int requestType = 0;
+    private String hardTokenSN = null;
+    private String responseType = null;
+
+    /**
+     * WS Constructor
+     */
+    public CertificateRequestWS() {
+    }
+
+    public CertificateRequestWS(final UserDataVOWS userData, final String requestData, final int requestType, final String hardTokenSN,
+            final String responseType) {
+        this.userData = userData;
+        this.requestData = requestData;
+        this.requestType = requestType;
+        this.hardTokenSN = hardTokenSN;
+        this.responseType = responseType;
+    }
+
+    /** @return the end entity to add or edit before the certificate is issued */
+    public UserDataVOWS getUserData() {
+        return userData;
+    }
+
+    public void setUserData(final UserDataVOWS userData) {
+        this.userData = userData;
+    }
+
+    /** @return the base64 encoded request */
+    public String getRequestData() {
+        return requestData;
+    }
+
+    public void setRequestData(final String requestData) {
+        this.requestData = requestData;
+    }
+
+    /** @return one of the CertificateHelper.CERT_REQ_TYPE_ constants */
+    public int getRequestType() {
+        return requestType;
+    }
+
+    public void setRequestType(final int requestType) {
+        this.requestType = requestType;
+    }
+
+    /** @return hard token serial number, or null */
+    public String getHardTokenSN() {
+        return hardTokenSN;
+    }
+
+    public void setHardTokenSN(final String hardTokenSN) {
+        this.hardTokenSN = hardTokenSN;
+    }
+
+    /** @return one of the CertificateHelper.RESPONSETYPE_ constants */
+    public String getResponseType() {
+        return responseType;
+    }
+
+    public void setResponseType(final String responseType) {
+        this.responseType = responseType;
+    }
+}
@@ -0,0 +1,56 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.core.protocol.ws.objects;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds one page of users from a paged WS search.
+ *
+ * @version $Id$
+ */
+public class UserDataVOWSPage {
+
+    private List<UserDataVOWS> users = new ArrayList<>();
+    private String continuationToken = null;
+
+    /**
+     * WS Constructor
+     */
+    public UserDataVOWSPage() {
+    }
+
+    public UserDataVOWSPage(final List<UserDataVOWS> users, final String continuationToken) {
+        this.users = users;
+        this.continuationToken = continuationToken;
+    }
+
+    /** @return the users of the page */
+    public List<UserDataVOWS> getUsers() {
+        return users;
+    }
+
+    public void setUsers(final List<UserDataVOWS> users) {
+        this.users = users;
+    }
+
+    /** @return an opaque token to pass to get the next page, or null if this is the last page */
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public void setContinuationToken(final String continuationToken) {
+        this.continuationToken = continuationToken;
+    }
+}
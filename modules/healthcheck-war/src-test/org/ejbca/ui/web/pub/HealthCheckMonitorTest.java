@@ -0,0 +1,144 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+package org.ejbca.ui.web.pub;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests the background runner of health checks, that is used for the readiness probe.
+ *
+ * @version $Id$
+ */
+public class HealthCheckMonitorTest {
+
+    private static class FixedCheck extends HealthCheckMonitor.Check {
+        private volatile String error;
+        private volatile RuntimeException exception = null;
+
+        FixedCheck(final String name, final long intervalMillis, final String error) {
+            super(name, intervalMillis);
+            this.error = error;
+        }
+
+        @Override
+        public String run() {
+            if (exception != null) {
+                throw exception;
+            }
+            return error;
+        }
+    }
+
+    @Test
+    public void testNotCheckedYet() {
+        final HealthCheckMonitor monitor = new HealthCheckMonitor(Arrays.<HealthCheckMonitor.Check>asList(new FixedCheck("database", 1000, "")));
+        final HealthCheckMonitor.Snapshot snapshot = monitor.getSnapshot();
+        final String errors = snapshot.getErrors(System.currentTimeMillis());
+        assertNotNull("A check that has not run yet should be reported as an error", errors);
+        assertTrue(errors, errors.contains("database: Not checked yet"));
+        assertEquals("\ndatabase: ERROR", snapshot.getDetails(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void testResultsAreCombined() {
+        final FixedCheck database = new FixedCheck("database", 1000, "");
+        final FixedCheck catokens = new FixedCheck("catokens", 1000, "\nCA: Token offline");
+        final HealthCheckMonitor monitor = new HealthCheckMonitor(Arrays.<HealthCheckMonitor.Check>asList(database, catokens));
+        monitor.runCheck(database);
+        final HealthCheckMonitor.Snapshot before = monitor.getSnapshot();
+        monitor.runCheck(catokens);
+        final long now = System.currentTimeMillis();
+        assertEquals("Published snapshots must not change", "\ncatokens: Not checked yet", before.getErrors(now));
+        assertEquals("\nCA: Token offline", monitor.getSnapshot().getErrors(now));
+        final String details = monitor.getSnapshot().getDetails(now);
+        assertTrue(details, details.startsWith("\ndatabase: OK age="));
+        assertTrue(details, details.contains("\ncatokens: ERROR age="));
+        assertTrue(details, details.contains("latency="));
+        catokens.error = null;
+        monitor.runCheck(catokens);
+        assertNull(monitor.getSnapshot().getErrors(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void testExceptionIsReportedAsError() {
+        final FixedCheck publishers = new FixedCheck("publishers", 1000, "");
+        publishers.exception = new IllegalStateException("Connection refused");
+        final HealthCheckMonitor monitor = new HealthCheckMonitor(Arrays.<HealthCheckMonitor.Check>asList(publishers));
+        monitor.runCheck(publishers);
+        assertEquals("\npublishers: Connection refused", monitor.getSnapshot().getErrors(System.currentTimeMillis()));
+    }
+
+    @Test
+    public void testOldResultIsReportedAsError() {
+        final FixedCheck database = new FixedCheck("database", 1000, null);
+        final HealthCheckMonitor monitor = new HealthCheckMonitor(Arrays.<HealthCheckMonitor.Check>asList(database));
+        monitor.runCheck(database);
+        final HealthCheckMonitor.Result result = monitor.getSnapshot().getResults().get("database");
+        final long maxAge = HealthCheckMonitor.MAX_AGE_INTERVALS * 1000L;
+        assertNull(monitor.getSnapshot().getErrors(result.getCompletedAt() + maxAge));
+        final String errors = monitor.getSnapshot().getErrors(result.getCompletedAt() + maxAge + 1);
+        assertNotNull("A check that has not completed for too long should be reported as an error", errors);
+        assertTrue(errors, errors.startsWith("\ndatabase: Last check completed"));
+    }
+
+    @Test(timeout = 10000)
+    public void testChecksRunInBackground() throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(3);
+        final HealthCheckMonitor.Check check = new HealthCheckMonitor.Check("memory", 10) {
+            @Override
+            public String run() {
+                latch.countDown();
+                return "";
+            }
+        };
+        final HealthCheckMonitor monitor = new HealthCheckMonitor(Arrays.asList(check));
+        monitor.start();
+        try {
+            assertTrue("Check was not run periodically", latch.await(5, TimeUnit.SECONDS));
+        } finally {
+            monitor.shutdown();
+        }
+        assertNull(monitor.getSnapshot().getErrors(System.currentTimeMillis()));
+    }
+
+    /** The checks must not run until the monitor is started, and must not be started again after shutdown */
+    @Test
+    public void testStartAndShutdown() {
+        final HealthCheckMonitor.Check check = new HealthCheckMonitor.Check("memory", 60000) {
+            @Override
+            public String run() {
+                return "";
+            }
+        };
+        final HealthCheckMonitor monitor = new HealthCheckMonitor(Arrays.asList(check));
+        assertFalse(monitor.isStarted());
+        monitor.start();
+        assertTrue(monitor.isStarted());
+        monitor.start();
+        assertTrue(monitor.isStarted());
+        monitor.shutdown();
+        assertFalse(monitor.isStarted());
+        monitor.start();
+        assertFalse("A monitor that has been shut down should not start again", monitor.isStarted());
+    }
+}
@@ -0,0 +1,249 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+
+package org.ejbca.ui.web.pub;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Runs health checks in the background, each on its own schedule, and publishes the latest result of every check
+ * as an immutable {@link Snapshot}. Readiness probes are answered from the snapshot, so load balancers that poll
+ * often do not cause any database or HSM operations.
+ *
+ * Each check has its own thread, so a check that hangs (e.g. a CA token on an HSM that does not respond) does not
+ * delay the other checks. The result of a hanging check gets older and older, and is reported as an error when
+ * it is older than {@value #MAX_AGE_INTERVALS} check intervals.
+ *
+ * @version $Id$
+ */
+public class HealthCheckMonitor {
+
+    private static final Logger log = Logger.getLogger(HealthCheckMonitor.class);
+
+    /** A result that is older than this number of check intervals is reported as an error */
+    static final int MAX_AGE_INTERVALS = 3;
+
+    /** A health check that is run periodically by the monitor */
+    public static abstract class Check {
+        private final String name;
+        private final long intervalMillis;
+
+        /**
+         * @param name name of the check, used in the status report
+         * @param intervalMillis time in milliseconds between the end of one run of the check and the start of the next run
+         */
+        protected Check(final String name, final long intervalMillis) {
+            this.name = name;
+            this.intervalMillis = intervalMillis;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public long getIntervalMillis() {
+            return intervalMillis;
+        }
+
+        /** @return an error message, or null or an empty string if the check passed */
+        public abstract String run();
+    }
+
+    /** Result of one run of a check */
+    public static final class Result {
+        private final Check check;
+        private final String error;
+        private final long completedAt;
+        private final long latencyNanos;
+
+        private Result(final Check check, final String error, final long completedAt, final long latencyNanos) {
+            this.check = check;
+            this.error = error;
+            this.completedAt = completedAt;
+            this.latencyNanos = latencyNanos;
+        }
+
+        public String getName() {
+            return check.getName();
+        }
+
+        /** @return the error message of the check, or null if the check passed */
+        public String getError() {
+            return error;
+        }
+
+        /** @return the time in milliseconds when the check completed, or 0 if the check has not completed yet */
+        public long getCompletedAt() {
+            return completedAt;
+        }
+
+        /** @return the time in nanoseconds that the check took */
+        public long getLatencyNanos() {
+            return latencyNanos;
+        }
+
+        /** @return the error to report at the given time, if the check failed, has not completed yet or has not completed for too long */
+        String getError(final long now) {
+            if (completedAt == 0) {
+                return "\n" + getName() + ": Not checked yet";
+            }
+            final long maxAge = MAX_AGE_INTERVALS * check.getIntervalMillis();
+            if (now - completedAt > maxAge) {
+                return "\n" + getName() + ": Last check completed " + (now - completedAt) + " ms ago, which is more than " + maxAge + " ms ago";
+            }
+            return error;
+        }
+    }
+
+    /** Immutable view of the latest result of each check */
+    public static final class Snapshot {
+        private final Map<String, Result> results;
+
+        private Snapshot(final Map<String, Result> results) {
+            this.results = Collections.unmodifiableMap(results);
+        }
+
+        /** @return the latest result of each check, in the order the checks were given to the monitor */
+        public Map<String, Result> getResults() {
+            return results;
+        }
+
+        /** @return the errors of all checks at the given time, or null if all checks passed */
+        public String getErrors(final long now) {
+            final StringBuilder sb = new StringBuilder();
+            for (final Result result : results.values()) {
+                final String error = result.getError(now);
+                if (error != null) {
+                    sb.append(error);
+                }
+            }
+            return sb.length() == 0 ? null : sb.toString();
+        }
+
+        /** @return one line for each check, with the status, the age and the latency of its latest result */
+        public String getDetails(final long now) {
+            final StringBuilder sb = new StringBuilder();
+            for (final Result result : results.values()) {
+                sb.append('\n').append(result.getName()).append(": ").append(result.getError(now) == null ? "OK" : "ERROR");
+                if (result.getCompletedAt() != 0) {
+                    sb.append(" age=").append(now - result.getCompletedAt()).append("ms");
+                    sb.append(" latency=").append(TimeUnit.NANOSECONDS.toMicros(result.getLatencyNanos())).append("us");
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    private final List<Check> checks;
+    private final Object updateLock = new Object();
+    private volatile Snapshot snapshot;
+    private volatile ScheduledExecutorService executor = null;
+    private boolean stopped = false;
+
+    public HealthCheckMonitor(final List<Check> checks) {
+        this.checks = new ArrayList<>(checks);
+        final Map<String, Result> results = new LinkedHashMap<>();
+        for (final Check check : this.checks) {
+            results.put(check.getName(), new Result(check, null, 0, 0));
+        }
+        this.snapshot = new Snapshot(results);
+    }
+
+    /** @return the latest result of each check. Never blocks. */
+    public Snapshot getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Starts running the checks in the background, unless they are already running or the monitor has been shut down.
+     * The first run of each check starts immediately. Cheap when the checks are already running, so it can be called for
+     * every readiness request.
+     */
+    public void start() {
+        if (executor == null) {
+            startExecutor();
+        }
+    }
+
+    private synchronized void startExecutor() {
+        if (executor != null || stopped) {
+            return;
+        }
+        final AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(Math.max(1, checks.size()), new ThreadFactory() {
+            @Override
+            public Thread newThread(final Runnable runnable) {
+                final Thread thread = new Thread(runnable, "HealthCheckMonitor-" + threadNumber.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        for (final Check check : checks) {
+            executor.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    runCheck(check);
+                }
+            }, 0, check.getIntervalMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /** @return true if the checks are running in the background */
+    public boolean isStarted() {
+        return executor != null;
+    }
+
+    /** Stops running the checks, for good. Checks that are running are interrupted. */
+    public synchronized void shutdown() {
+        stopped = true;
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    /** Runs a check and publishes its result. A check that throws is reported as failed, and is run again at the next interval. */
+    void runCheck(final Check check) {
+        final long startTime = System.nanoTime();
+        String error;
+        try {
+            error = check.run();
+        } catch (Throwable t) { // NOPMD: an exception must not stop the check from being scheduled again
+            log.error("Health check '" + check.getName() + "' failed.", t);
+            error = "\n" + check.getName() + ": " + t.getMessage();
+        }
+        final long latencyNanos = System.nanoTime() - startTime;
+        final Result result = new Result(check, StringUtils.isEmpty(error) ? null : error, System.currentTimeMillis(), latencyNanos);
+        if (log.isDebugEnabled()) {
+            log.debug("Health check '" + check.getName() + "' completed in " + TimeUnit.NANOSECONDS.toMillis(latencyNanos) + " ms"
+                    + (result.getError() == null ? "." : " with error: " + result.getError()));
+        }
+        synchronized (updateLock) {
+            final Map<String, Result> results = new LinkedHashMap<>(snapshot.getResults());
+            results.put(check.getName(), result);
+            snapshot = new Snapshot(results);
+        }
+    }
+}
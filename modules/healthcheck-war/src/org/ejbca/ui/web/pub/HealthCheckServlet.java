@@ -19,6 +19,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 import javax.ejb.EJB;
@@ -54,6 +56,15 @@ import org.ejbca.core.model.InternalEjbcaResources;
  * 
  * * Optionally you can configure the CAToken test to also make a test signature, not only check if the token status is active.
  * 
+ * The checks are available in three tiers:
+ * 
+ * * /ejbcahealth/live only tells that the application is deployed and answering requests.
+ * * /ejbcahealth/ready answers from the latest results of the checks, which are run in the background by a {@link HealthCheckMonitor},
+ *   each on its own schedule. This is cheap enough to be polled often by load balancers. The background checks start with the first
+ *   /ready request, so nodes that are never polled on /ready do not run them. Until the checks have completed once, /ready answers
+ *   with an error.
+ * * /ejbcahealth/deep, and /ejbcahealth, runs all checks for every request (concurrent requests share the result).
+ * 
  * @version $Id: HealthCheckServlet.java 25741 2017-04-25 08:18:56Z anatom $
  */
 public class HealthCheckServlet extends HttpServlet {
@@ -70,6 +81,7 @@ public class HealthCheckServlet extends HttpServlet {
 
     private final long minfreememory = EjbcaConfiguration.getHealthCheckAmountFreeMem();
     private boolean checkPublishers = EjbcaConfiguration.getHealthCheckPublisherConnections();
+    private HealthCheckMonitor monitor = null;
 
     @EJB
     private CAAdminSessionLocal caAdminSession;
@@ -94,6 +106,60 @@ public class HealthCheckServlet extends HttpServlet {
             log.warn("CheckPublishers servlet parameter has been dropped. Use \"healthcheck.publisherconnections\" property instead.");
         }
         initMaintenanceFile();
+        // Started by the first readiness request
+        monitor = new HealthCheckMonitor(getBackgroundChecks());
+    }
+
+    @Override
+    public void destroy() {
+        if (monitor != null) {
+            monitor.shutdown();
+        }
+        super.destroy();
+    }
+
+    /** @return the checks that are run in the background for the readiness probe. The same checks as in {@link #doAllHealthChecks(HttpServletRequest)}. */
+    private List<HealthCheckMonitor.Check> getBackgroundChecks() {
+        final List<HealthCheckMonitor.Check> checks = new ArrayList<>();
+        checks.add(new HealthCheckMonitor.Check("maintenance", EjbcaConfiguration.getHealthCheckInterval("maintenance")) {
+            @Override
+            public String run() {
+                return getMaintenanceStatus();
+            }
+        });
+        checks.add(new HealthCheckMonitor.Check("memory", EjbcaConfiguration.getHealthCheckInterval("memory")) {
+            @Override
+            public String run() {
+                return getMemoryStatus();
+            }
+        });
+        checks.add(new HealthCheckMonitor.Check("database", EjbcaConfiguration.getHealthCheckInterval("database")) {
+            @Override
+            public String run() {
+                return healthCheckSession.getDatabaseStatus();
+            }
+        });
+        checks.add(new HealthCheckMonitor.Check("catokens", EjbcaConfiguration.getHealthCheckInterval("catokens")) {
+            @Override
+            public String run() {
+                return caAdminSession.healthCheck();
+            }
+        });
+        if (checkPublishers) {
+            checks.add(new HealthCheckMonitor.Check("publishers", EjbcaConfiguration.getHealthCheckInterval("publishers")) {
+                @Override
+                public String run() {
+                    return publisherSession.testAllConnections();
+                }
+            });
+        }
+        checks.add(new HealthCheckMonitor.Check("ocspkeybindings", EjbcaConfiguration.getHealthCheckInterval("ocspkeybindings")) {
+            @Override
+            public String run() {
+                return ocspResponseGeneratorSession.healthCheck();
+            }
+        });
+        return checks;
     }
 
     @Override
@@ -104,7 +170,19 @@ public class HealthCheckServlet extends HttpServlet {
     @Override
     public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
         if (isAuthorized(request, response)) {
-            respond(getRateLimitedResult(request), response);
+            final String pathInfo = request.getPathInfo();
+            if (pathInfo == null || "/".equals(pathInfo) || "/deep".equals(pathInfo)) {
+                respond(getRateLimitedResult(request), null, response);
+            } else if ("/ready".equals(pathInfo)) {
+                monitor.start();
+                final long now = System.currentTimeMillis();
+                final HealthCheckMonitor.Snapshot snapshot = monitor.getSnapshot();
+                respond(snapshot.getErrors(now), snapshot.getDetails(now), response);
+            } else if ("/live".equals(pathInfo)) {
+                respond(null, null, response);
+            } else {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            }
         }
     }
     
@@ -140,13 +218,21 @@ public class HealthCheckServlet extends HttpServlet {
         return result.getValue();
     }
     
-    private void respond(String status, HttpServletResponse resp) {
+    /**
+     * @param status null if the node is healthy, otherwise the errors found
+     * @param details extra information that is appended to the message, or null
+     */
+    private void respond(String status, final String details, HttpServletResponse resp) {
         resp.setContentType("text/plain");
+        resp.setHeader("Cache-Control", "no-cache");
         try {
             final Writer out = resp.getWriter();
             if (status == null) {
                 // Return ok message
                 out.write(EjbcaConfiguration.getOkMessage());
+                if (details != null) {
+                    out.write(details);
+                }
             } else {
                 // Check if we return a static error message or the more informative
                 final String customErrorMessage = EjbcaConfiguration.getCustomErrorMessage();
@@ -155,6 +241,8 @@ public class HealthCheckServlet extends HttpServlet {
                 }
                 if (customErrorMessage != null) {
                     status = customErrorMessage;
+                } else if (details != null) {
+                    status += details;
                 }
                 // Return fail message
                 if (EjbcaConfiguration.getSendServerError()) {
@@ -175,11 +263,10 @@ public class HealthCheckServlet extends HttpServlet {
             log.debug("Starting HealthCheck requested by : " + request.getRemoteAddr());
         }
         // Start by checking if we are in maintance mode
-        final Properties maintenanceProperties = getMaintenanceProperties();
-        final String maintenancePropertyName = EjbcaConfiguration.getHealthCheckMaintenancePropertyName();
-        if (maintenanceProperties != null && Boolean.valueOf(maintenanceProperties.getProperty(maintenancePropertyName))) {
+        final String maintenanceStatus = getMaintenanceStatus();
+        if (maintenanceStatus != null) {
             // Return directly without performing any more checks
-            return "MAINT: " + maintenancePropertyName;
+            return maintenanceStatus;
         }
         final StringBuilder sb = new StringBuilder(0);
         if (log.isDebugEnabled()) {
@@ -187,23 +274,7 @@ public class HealthCheckServlet extends HttpServlet {
         }
         sb.append(healthCheckSession.getDatabaseStatus());
         if (sb.length()==0) { 
-            if (log.isDebugEnabled()) {
-                log.debug("Checking JVM heap memory.");
-            }
-            // Memory still not allocated by the JVM + available memory of what is allocated by the JVM
-            final long maxAllocation = Runtime.getRuntime().maxMemory();
-            // The total amount of memory allocated to the JVM.
-            final long currentlyAllocation = Runtime.getRuntime().totalMemory();
-            // Available memory of what is allocated by the JVM
-            final long freeAllocated = Runtime.getRuntime().freeMemory();
-            // Memory still not allocated by the JVM + available memory of what is allocated by the JVM
-            final long currentFreeMemory = maxAllocation - currentlyAllocation + freeAllocated;
-            if (log.isDebugEnabled()) {
-                log.debug((100L*(maxAllocation-currentFreeMemory)/maxAllocation)+"% of the " + (maxAllocation/1048576L) + " MiB heap is currently used.");
-            }
-            if (minfreememory >= currentFreeMemory) {
-                sb.append("\nMEM: Error Virtual Memory is about to run out, currently free memory :").append(String.valueOf(Runtime.getRuntime().freeMemory()));    
-            }
+            sb.append(getMemoryStatus());
             if (log.isDebugEnabled()) {
                 log.debug("Checking CAs.");
             }
@@ -222,6 +293,38 @@ public class HealthCheckServlet extends HttpServlet {
         return sb.length()==0 ? null : sb.toString();
     }
 
+    /** @return "MAINT: " and the name of the maintenance property if this node is down for maintenance, or null otherwise */
+    private String getMaintenanceStatus() {
+        final Properties maintenanceProperties = getMaintenanceProperties();
+        final String maintenancePropertyName = EjbcaConfiguration.getHealthCheckMaintenancePropertyName();
+        if (maintenanceProperties != null && Boolean.valueOf(maintenanceProperties.getProperty(maintenancePropertyName))) {
+            return "MAINT: " + maintenancePropertyName;
+        }
+        return null;
+    }
+
+    /** @return an error message if the JVM is about to run out of heap memory, or an empty string otherwise */
+    private String getMemoryStatus() {
+        if (log.isDebugEnabled()) {
+            log.debug("Checking JVM heap memory.");
+        }
+        // Memory still not allocated by the JVM + available memory of what is allocated by the JVM
+        final long maxAllocation = Runtime.getRuntime().maxMemory();
+        // The total amount of memory allocated to the JVM.
+        final long currentlyAllocation = Runtime.getRuntime().totalMemory();
+        // Available memory of what is allocated by the JVM
+        final long freeAllocated = Runtime.getRuntime().freeMemory();
+        // Memory still not allocated by the JVM + available memory of what is allocated by the JVM
+        final long currentFreeMemory = maxAllocation - currentlyAllocation + freeAllocated;
+        if (log.isDebugEnabled()) {
+            log.debug((100L*(maxAllocation-currentFreeMemory)/maxAllocation)+"% of the " + (maxAllocation/1048576L) + " MiB heap is currently used.");
+        }
+        if (minfreememory >= currentFreeMemory) {
+            return "\nMEM: Error Virtual Memory is about to run out, currently free memory :" + String.valueOf(Runtime.getRuntime().freeMemory());
+        }
+        return "";
+    }
+
     /** Create the maintenance file if it should be used and does not exists */
     private void initMaintenanceFile() {
         final String maintenanceFile = EjbcaConfiguration.getHealthCheckMaintenanceFile();
@@ -0,0 +1,75 @@
+/*************************************************************************
+ *                                                                       *
+ *  EJBCA Community: The OpenSource Certificate Authority                *
+ *                                                                       *
+ *  This software is free software; you can redistribute it and/or       *
+ *  modify it under the terms of the GNU Lesser General Public           *
+ *  License as published by the Free Software Foundation; either         *
+ *  version 2.1 of the License, or any later version.                    *
+ *                                                                       *
+ *  See terms of license at gnu.org.                                     *
+ *                                                                       *
+ *************************************************************************/
+
+package org.ejbca.ui.web.pub;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javax.servlet.ServletConfig;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.apache.commons.lang.ArrayUtils;
+import org.apache.log4j.Logger;
+import org.cesecore.metrics.MetricsRegistry;
+import org.ejbca.config.EjbcaConfiguration;
+import org.ejbca.core.model.InternalEjbcaResources;
+
+/**
+ * Servlet returning the in-process metrics of this EJBCA instance, such as the latency of each stage of certificate issuance,
+ * in the Prometheus text format. The same metrics are available over JMX as org.cesecore:type=Metrics.
+ *
+ * Access is limited to the IP addresses that are authorized to use the health check, see healthcheck.authorizedips.
+ *
+ * @version $Id$
+ */
+public class MetricsServlet extends HttpServlet {
+
+    private static final Logger log = Logger.getLogger(MetricsServlet.class);
+    private static final long serialVersionUID = 1L;
+
+    /** Internal localization of logs and errors */
+    private static final InternalEjbcaResources intres = InternalEjbcaResources.getInstance();
+
+    private String[] authIPs = null;
+    private boolean anyIpAuthorized = false;
+
+    @Override
+    public void init(ServletConfig config) throws ServletException {
+        super.init(config);
+        authIPs = EjbcaConfiguration.getHealthCheckAuthorizedIps().split(";");
+        anyIpAuthorized = ArrayUtils.contains(authIPs, "ANY");
+    }
+
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
+        String remoteIP = request.getRemoteAddr();
+        if (remoteIP == null || remoteIP.length()>100) {
+            remoteIP = "unknown";
+        }
+        if (!anyIpAuthorized && !ArrayUtils.contains(authIPs, remoteIP)) {
+            log.error(intres.getLocalizedMessage("healthcheck.errorauth", remoteIP));
+            response.sendError(HttpServletResponse.SC_UNAUTHORIZED, "ERROR : Metrics request received from an non authorized IP: " + remoteIP);
+            return;
+        }
+        response.setContentType("text/plain; version=0.0.4");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Cache-Control", "no-cache");
+        final Writer out = response.getWriter();
+        out.write(MetricsRegistry.INSTANCE.getReport());
+        out.flush();
+    }
+}
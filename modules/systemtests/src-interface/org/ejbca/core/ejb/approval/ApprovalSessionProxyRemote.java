@@ -53,6 +53,12 @@ public interface ApprovalSessionProxyRemote {
      */
     List<ApprovalDataVO> queryByStatus(boolean includeUnfinished, boolean includeProcessed, boolean includeExpired, Date startDate, Date endDate, Date expiresBefore,
             int index, int numberofrows, String caAuthorizationString, String endEntityProfileAuthorizationString);
+
+    /**
+     * @see ApprovalSessionBean#queryByStatusAfter(boolean, boolean, boolean, java.util.Date, java.util.Date, java.util.Date, ApprovalDataVO, int, String, String)
+     */
+    List<ApprovalDataVO> queryByStatusAfter(boolean includeUnfinished, boolean includeProcessed, boolean includeExpired, Date startDate, Date endDate,
+            Date expiresBefore, ApprovalDataVO after, int numberofrows, String caAuthorizationString, String endEntityProfileAuthorizationString);
     
     /**
      * Extends the validity of an approval request.
@@ -614,6 +614,48 @@ public class ApprovalSessionTest extends CaTestCase {
         log.trace("<testQuery");
     }
 
+    @Test
+    public void testQueryByStatusAfter() throws Exception {
+        log.trace(">testQueryByStatusAfter");
+        final DummyApprovalRequest req1 = new DummyApprovalRequest(reqadmin, null, caid, EndEntityConstants.EMPTY_END_ENTITY_PROFILE, false, approvalProfile);
+        final DummyApprovalRequest req2 = new DummyApprovalRequest(admin1, null, caid, EndEntityConstants.EMPTY_END_ENTITY_PROFILE, false, approvalProfile);
+        final DummyApprovalRequest req3 = new DummyApprovalRequest(admin2, null, caid, EndEntityConstants.EMPTY_END_ENTITY_PROFILE, false, approvalProfile);
+        final Set<Integer> requestIds = new HashSet<>();
+        for (final DummyApprovalRequest request : Arrays.asList(req1, req2, req3)) {
+            removeApprovalIds.add(request.generateApprovalId());
+            requestIds.add(approvalSessionRemote.addApprovalRequest(admin1, request));
+        }
+        // Page through the requests one at a time, oldest first
+        final String caAuthorizationString = "cAId=" + caid;
+        final String endEntityProfileAuthorizationString = "(endEntityProfileId=" + EndEntityConstants.EMPTY_END_ENTITY_PROFILE + ")";
+        final List<Integer> foundIds = new ArrayList<>();
+        ApprovalDataVO last = null;
+        while (true) {
+            final List<ApprovalDataVO> page = approvalSessionProxyRemote.queryByStatusAfter(true, false, false, null, null, null, last, 1,
+                    caAuthorizationString, endEntityProfileAuthorizationString);
+            if (page.isEmpty()) {
+                break;
+            }
+            assertEquals("Page size", 1, page.size());
+            last = page.get(0);
+            assertFalse("Request " + last.getId() + " was returned twice", foundIds.contains(last.getId()));
+            foundIds.add(last.getId());
+        }
+        assertTrue("All added requests should have been found, found " + foundIds, foundIds.containsAll(requestIds));
+        // The approval profile and step are stored in columns of their own
+        final Query query = new Query(Query.TYPE_APPROVALQUERY);
+        query.add(ApprovalMatch.MATCH_WITH_APPROVALPROFILEID, BasicMatch.MATCH_TYPE_EQUALS, String.valueOf(approvalProfile.getProfileId()),
+                Query.CONNECTOR_AND);
+        query.add(ApprovalMatch.MATCH_WITH_APPROVALSTEP, BasicMatch.MATCH_TYPE_EQUALS, "1");
+        final List<ApprovalDataVO> result = approvalSessionProxyRemote.query(query, 0, 100, caAuthorizationString, endEntityProfileAuthorizationString);
+        final Set<Integer> resultIds = new HashSet<>();
+        for (final ApprovalDataVO approvalDataVO : result) {
+            resultIds.add(approvalDataVO.getId());
+        }
+        assertTrue("Requests were not found by approval profile and step", resultIds.containsAll(requestIds));
+        log.trace("<testQueryByStatusAfter");
+    }
+
     @Test
     public void testExpiredQuery() throws Exception {
         log.trace(">testExpiredQuery");
@@ -837,6 +837,38 @@ public class UpgradeSessionBeanTest {
         }
     }
 
+    /**
+     * Tests post-upgrade from 6.9.0 to 6.10.1, which migrates certificate profiles in checkpointed chunks.
+     * A checkpoint left by an earlier, interrupted post-upgrade must not prevent the migration of the profiles,
+     * and the checkpoint must be removed when the step has completed.
+     */
+    @Test
+    public void testPostUpgradeTo6101IsCheckpointed() throws CertificateProfileExistsException, AuthorizationDeniedException {
+        final List<String> profileNames = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            profileNames.add(TESTCLASS + "_6101_" + i);
+        }
+        for (final String profileName : profileNames) {
+            certificateProfileSession.addCertificateProfile(alwaysAllowtoken, profileName, new CertificateProfile(CertificateProfileConstants.CERTPROFILE_FIXED_ENDUSER));
+        }
+        GlobalUpgradeConfiguration guc = (GlobalUpgradeConfiguration) globalConfigSession.getCachedConfiguration(GlobalUpgradeConfiguration.CONFIGURATION_ID);
+        guc.addMigrationCheckpoint("6.10.1", "0-0");
+        globalConfigSession.saveConfiguration(alwaysAllowtoken, guc);
+        try {
+            assertTrue("Post-upgrade to 6.10.1 failed", upgradeSession.upgrade(null, "6.9.0", true));
+            guc = (GlobalUpgradeConfiguration) globalConfigSession.getCachedConfiguration(GlobalUpgradeConfiguration.CONFIGURATION_ID);
+            assertTrue("Checkpoint should be removed when the post-upgrade step has completed", guc.getMigrationCheckpoint("6.10.1").isEmpty());
+            assertEquals("7.0.1", guc.getPostUpgradedToVersion());
+            for (final String profileName : profileNames) {
+                assertNotNull("Certificate profile was lost during post-upgrade", certificateProfileSession.getCertificateProfile(profileName));
+            }
+        } finally {
+            for (final String profileName : profileNames) {
+                certificateProfileSession.removeCertificateProfile(alwaysAllowtoken, profileName);
+            }
+        }
+    }
+
     /**
      * Tests upgrade to 6.11.0. Expected behavior is roles with access to /ra_master/invoke_api before upgrade
      * should be granted 'Allow' access to the new set of rules controlling protocol access of remote RA 
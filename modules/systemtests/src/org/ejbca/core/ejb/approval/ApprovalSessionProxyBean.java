@@ -49,6 +49,14 @@ public class ApprovalSessionProxyBean implements ApprovalSessionProxyRemote {
         return approvalSession.queryByStatus(includeUnfinished, includeProcessed, includeExpired, startDate, endDate, expiresBefore,
                 index, numberofrows, caAuthorizationString, endEntityProfileAuthorizationString);
     }
+
+    @Override
+    public List<ApprovalDataVO> queryByStatusAfter(boolean includeUnfinished, boolean includeProcessed, boolean includeExpired, Date startDate,
+            Date endDate, Date expiresBefore, ApprovalDataVO after, int numberofrows, String caAuthorizationString,
+            String endEntityProfileAuthorizationString) {
+        return approvalSession.queryByStatusAfter(includeUnfinished, includeProcessed, includeExpired, startDate, endDate, expiresBefore,
+                after, numberofrows, caAuthorizationString, endEntityProfileAuthorizationString);
+    }
     
     @Override
     public void extendApprovalRequestNoAuth(final AuthenticationToken authenticationToken, final int approvalRequestId, final long extendForMillis) {
@@ -0,0 +1,6 @@
+-- New columns in ApprovalData are added by the JPA provider if there are sufficient privileges
+-- if not added automatically the following SQL statements can be run to add the new columns 
+-- ALTER TABLE ApprovalData ADD approvalProfileId INT4;
+-- ALTER TABLE ApprovalData ADD approvalStep INT4;
+-- The columns of existing approval requests are filled in by the post-upgrade to 7.0.1
+-- See doc/sql-scripts/create-index-ejbca.sql for the new ApprovalData indexes